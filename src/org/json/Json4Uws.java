@@ -16,10 +16,12 @@ package org.json;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Iterator;
 
 import uws.ISO8601Format;
@@ -38,7 +40,7 @@ import uws.service.UWSUrl;
  * Useful conversion functions from UWS to JSON.
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (03/2018)
+ * @version 4.5 (10/2026)
  */
 public final class Json4Uws {
 
@@ -118,13 +120,13 @@ public final class Json4Uws {
 			JSONArray jsonJobs = new JSONArray();
 			UWSUrl jobsListUrl = jobsList.getUrl();
 
-			// Security filter: retrieve only the jobs of the specified owner:
-			Iterator<UWSJob> it = jobsList.getJobs(owner);
+			/* Security filter: retrieve only the jobs of the specified owner
+			 * + User filter: filter the jobs in function of filters specified by the
+			 * user (if possible, thanks to the indexes of the jobs list): */
+			Iterator<UWSJob> it = (listRefiner != null) ? listRefiner.refine(jobsList, owner) : jobsList.getJobs(owner);
 
-			/* User filter: filter the jobs in function of filters specified by
-			 * the user:  */
-			if (listRefiner != null)
-				it = listRefiner.refine(it);
+			// URL of the next page (if any):
+			String nextUrl = (listRefiner != null) ? listRefiner.getNextPageURL(jobsListUrl) : null;
 
 			// Append the JSON serialization of all filtered jobs:
 			JSONObject jsonObj = null;
@@ -136,10 +138,84 @@ public final class Json4Uws {
 			}
 
 			json.put("jobs", jsonJobs);
+
+			if (nextUrl != null)
+				json.put("next", nextUrl);
 		}
 		return json;
 	}
 
+	/**
+	 * Writes the JSON representation of the given jobs list by filtering by
+	 * owner and some user-filters (e.g. on phase, creation time).
+	 *
+	 * <p>
+	 * 	Contrary to {@link #getJson(JobList, JobOwner, JobListRefiner)}, the
+	 * 	JSON representation of each job is written as soon as built ; the
+	 * 	whole JSON representation of the jobs list is never kept in memory.
+	 * </p>
+	 *
+	 * @param output		The writer in which the JSON representation must be
+	 *              		written.
+	 * @param jobsList		The jobs list to represent in JSON.
+	 * @param owner			The user who asks to serialize the given jobs list.
+	 *             			(MAY BE NULL)
+	 * @param listRefiner	Represent all the specified job filters to apply ;
+	 *                   	only the job that pass through this filter should be
+	 *                   	displayed. If NULL, all jobs are displayed.
+	 *
+	 * @throws JSONException	If there is an error while building a JSON
+	 *                      	object.
+	 * @throws IOException		If there is an error while writing.
+	 *
+	 * @since 4.5
+	 */
+	public final static void writeJson(final Writer output, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner) throws JSONException, IOException{
+		if (jobsList == null){
+			output.write("{}");
+			return;
+		}
+
+		output.write("{\"name\":");
+		output.write(JSONObject.quote(jobsList.getName()));
+		output.write(",\"version\":");
+		output.write(JSONObject.quote(UWS.VERSION));
+		output.write(",\"jobs\":[");
+
+		UWSUrl jobsListUrl = jobsList.getUrl();
+
+		/* Security filter: retrieve only the jobs of the specified owner
+		 * + User filter: filter the jobs in function of filters specified by the
+		 * user (if possible, thanks to the indexes of the jobs list): */
+		Iterator<UWSJob> it = (listRefiner != null) ? listRefiner.refine(jobsList, owner) : jobsList.getJobs(owner);
+
+		// URL of the next page (if any):
+		String nextUrl = (listRefiner != null) ? listRefiner.getNextPageURL(jobsListUrl) : null;
+
+		// Write the JSON serialization of all filtered jobs (one after the other):
+		boolean first = true;
+		JSONObject jsonObj = null;
+		while(it.hasNext()){
+			jsonObj = getJson(it.next(), jobsListUrl, true);
+			if (jsonObj != null){
+				if (!first)
+					output.write(',');
+				jsonObj.write(output);
+				first = false;
+			}
+		}
+
+		output.write(']');
+
+		// Link to the next page (if any):
+		if (nextUrl != null){
+			output.write(",\"next\":");
+			output.write(JSONObject.quote(nextUrl));
+		}
+
+		output.write('}');
+	}
+
 	/**
 	 * Gets the JSON representation of the given job.
 	 * @param job				The job to represent in JSON.
@@ -295,6 +371,8 @@ public final class Json4Uws {
 				resultJson.put("mime-type", r.getMimeType());
 			if (r.getSize() >= 0)
 				resultJson.put("size", r.getSize());
+			if (r.getLastModified() >= 0)
+				resultJson.put("last-modified", r.getLastModified());
 			resultJson.put("redirection", r.isRedirectionRequired());
 		}
 		return resultJson;
@@ -16,7 +16,7 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2019 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -105,7 +105,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (03/2019)
+ * @version 2.4 (10/2026)
  */
 public class ADQLExecutor {
 
@@ -121,6 +121,10 @@ public class ADQLExecutor {
 	/** Description of the ADQL schema containing all the tables uploaded by the user for this specific query execution.
 	 * <i>Note: This attribute is NULL before calling one of the start(...) function. It MAY be NULL also after if no table has been uploaded.</i> */
 	protected TAPSchema uploadSchema = null;
+	/** The object which has uploaded the tables of {@link #uploadSchema}.
+	 * <i>Note: This attribute is NULL if no table has been uploaded.</i>
+	 * @since 2.4 */
+	protected Uploader uploader = null;
 
 	/** The HTTP response in which the query execution must be written. This attribute is NULL if the execution is asynchronous. */
 	protected HttpServletResponse response;
@@ -136,6 +140,11 @@ public class ADQLExecutor {
 	private ExecutionProgression progression = null;
 	/** Date/Time at which the current query processing step has started. */
 	private long startStep = -1;
+	/** Estimation of the resources needed by the query.
+	 * <i>Note: This attribute is NULL until {@link #getResourceEstimate(TAPParameters)} is called
+	 * and stays NULL if no {@link ExecutionBudget} is set.</i>
+	 * @since 2.4 */
+	private ExecutionBudget.Estimate estimate = null;
 
 	/**
 	 * Build an {@link ADQLExecutor}.
@@ -257,8 +266,85 @@ public class ADQLExecutor {
 	 * @since 2.0
 	 */
 	public final void initDBConnection(final String jobID) throws TAPException{
-		if (dbConn == null)
-			dbConn = service.getFactory().getConnection(jobID);
+		initDBConnection(jobID, null);
+	}
+
+	/**
+	 * <p>Create the database connection required for the ADQL execution,
+	 * after having reserved the resources needed by the query in the
+	 * {@link ExecutionBudget} of the TAP service (if any).</p>
+	 *
+	 * <p><i>Note: This function has no effect if the DB connection already exists.</i></p>
+	 *
+	 * @param jobID		ID of the job which will be executed by this {@link ADQLExecutor}.
+	 *             		This ID will be the database connection ID.
+	 * @param params	Parameters of the query to execute (used to estimate the needed resources).
+	 *              	<i>If NULL, the query resources are considered as unknown.</i>
+	 *
+	 * @throws TAPException	If the execution budget is not large enough for this query
+	 *                     	or if the DB connection creation fails.
+	 *
+	 * @see TAPFactory#getExecutionBudget()
+	 * @see TAPFactory#getConnection(String)
+	 *
+	 * @since 2.4
+	 */
+	public final void initDBConnection(final String jobID, final TAPParameters params) throws TAPException{
+		if (dbConn == null){
+			// Reserve the needed resources, if there is a budget:
+			ExecutionBudget budget = service.getFactory().getExecutionBudget();
+			if (budget != null && !budget.acquire(jobID, getResourceEstimate(params)))
+				throw new TAPException("Not enough resources to execute the query " + jobID + " for the moment!", UWSException.SERVICE_UNAVAILABLE);
+
+			// Get a connection:
+			try{
+				dbConn = service.getFactory().getConnection(jobID);
+			}catch(TAPException te){
+				if (budget != null)
+					budget.release(jobID);
+				throw te;
+			}
+		}
+	}
+
+	/**
+	 * <p>Get the estimation of the resources needed by the query to execute.</p>
+	 *
+	 * <p><i>Note:
+	 * 	The estimation is done only once by {@link ExecutionBudget#estimate(TAPParameters)}.
+	 * 	It is then kept in this executor.
+	 * </i></p>
+	 *
+	 * @param params	Parameters of the query to execute.
+	 *
+	 * @return	The estimation of the needed resources,
+	 *        	or NULL if no {@link ExecutionBudget} is set in the TAP service.
+	 *
+	 * @since 2.4
+	 */
+	public final ExecutionBudget.Estimate getResourceEstimate(final TAPParameters params){
+		if (estimate == null && service.getFactory().getExecutionBudget() != null)
+			estimate = service.getFactory().getExecutionBudget().estimate(params);
+		return estimate;
+	}
+
+	/**
+	 * Free the DB connection (if any) and give back the resources reserved
+	 * in the {@link ExecutionBudget} of the TAP service (if any).
+	 *
+	 * @param jobID	ID of the executed job.
+	 *
+	 * @since 2.4
+	 */
+	private void freeDBConnection(final String jobID){
+		// Free the connection (so that giving it back to a pool if any, otherwise just free resources):
+		if (dbConn != null){
+			service.getFactory().freeConnection(dbConn);
+			dbConn = null;
+		}
+		// Release the reserved resources:
+		if (service.getFactory().getExecutionBudget() != null)
+			service.getFactory().getExecutionBudget().release(jobID);
 	}
 
 	/**
@@ -346,7 +432,7 @@ public class ADQLExecutor {
 
 		try{
 			// Get a "database" connection:
-			initDBConnection(report.jobID);
+			initDBConnection(report.jobID, tapParams);
 
 			// 1. UPLOAD TABLES, if there is any:
 			if (tapParams.getUploadedTables() != null && tapParams.getUploadedTables().length > 0){
@@ -394,6 +480,7 @@ public class ADQLExecutor {
 
 			// Report the COMPLETED status:
 			tapParams.remove(TAPJob.PARAM_PROGRESSION);
+			notifyProgression();
 			report.success = true;
 
 			// Set the total duration in the report:
@@ -423,11 +510,8 @@ public class ADQLExecutor {
 				logger.logTAP(LogLevel.WARNING, report, "END_EXEC", "Can not drop the uploaded tables from the database!", e);
 			}
 
-			// Free the connection (so that giving it back to a pool if any, otherwise just free resources):
-			if (dbConn != null){
-				service.getFactory().freeConnection(dbConn);
-				dbConn = null;
-			}
+			// Free the connection and the reserved resources:
+			freeDBConnection(report.jobID);
 		}
 	}
 
@@ -456,12 +540,26 @@ public class ADQLExecutor {
 		// Update the job parameter "progression", to notify the user about the progression of the query processing:
 		try{
 			tapParams.set(TAPJob.PARAM_PROGRESSION, this.progression);
+			notifyProgression();
 		}catch(UWSException ue){
 			// should not happen, but just in case...
 			logger.logTAP(LogLevel.WARNING, report, "START_STEP", "Can not set/update the informative job parameter \"" + TAPJob.PARAM_PROGRESSION + "\" (this parameter would be just for notification purpose about the execution progression)!", ue);
 		}
 	}
 
+	/**
+	 * Notify the observers of the executed job (if asynchronous) that the
+	 * job parameter "progression" has been updated.
+	 *
+	 * @see uws.job.UWSJob#notifyParameterChanged(String)
+	 *
+	 * @since 2.4
+	 */
+	private void notifyProgression(){
+		if (thread != null && thread instanceof AsyncThread)
+			((AsyncThread)thread).getTAPJob().notifyParameterChanged(TAPJob.PARAM_PROGRESSION);
+	}
+
 	/**
 	 * <p>Set the duration of the current step in the execution report.</p>
 	 *
@@ -504,7 +602,8 @@ public class ADQLExecutor {
 		// Upload them, if needed:
 		if (tables.length > 0){
 			logger.logTAP(LogLevel.INFO, report, "UPLOADING", "Loading uploaded tables (" + tables.length + ")", null);
-			uploadSchema = service.getFactory().createUploader(dbConn).upload(tables);
+			uploader = service.getFactory().createUploader(dbConn);
+			uploadSchema = uploader.upload(tables);
 		}
 	}
 
@@ -513,6 +612,11 @@ public class ADQLExecutor {
 	 *
 	 * <p>The query factory and the query checker are got from the TAP factory.</p>
 	 *
+	 * <p><i>Note:
+	 * 	If the query has already been parsed by {@link ExecutionBudget#estimate(TAPParameters)}
+	 * 	and if no table is uploaded, this parsed query is used instead of parsing it again.
+	 * </i></p>
+	 *
 	 * <p>
 	 * 	The configuration of this TAP service list all allowed coordinate systems. These are got here and provided to the query checker
 	 * 	in order to ensure the coordinate systems used in the query are in this list.
@@ -535,46 +639,54 @@ public class ADQLExecutor {
 		// Log the start of the parsing:
 		logger.logTAP(LogLevel.INFO, report, "PARSING", "Parsing ADQL: " + tapParams.getQuery().replaceAll("(\t|\r?\n)+", " "), null);
 
-		// Create the ADQL parser:
-		ADQLParser parser = service.getFactory().createADQLParser();
-		if (parser == null){
-			logger.logTAP(LogLevel.WARNING, null, "PARSING", "No ADQL parser returned by the TAPFactory! The default implementation is used instead.", null);
-			parser = new ADQLParser();
-		}
+		/* Reuse the query already parsed for the resource estimation (if any).
+		 * note: not if tables are uploaded, because they were unknown when
+		 *       checking the query for this estimation. */
+		ADQLQuery query = null;
+		if (estimate != null && estimate.query != null && uploadSchema == null){
+			logger.logTAP(LogLevel.DEBUG, report, "PARSING", "ADQL query already parsed for its resource estimation.", null);
+			query = estimate.query;
+		}else{
+			// Create the ADQL parser:
+			ADQLParser parser = service.getFactory().createADQLParser();
+			if (parser == null){
+				logger.logTAP(LogLevel.WARNING, null, "PARSING", "No ADQL parser returned by the TAPFactory! The default implementation is used instead.", null);
+				parser = new ADQLParser();
+			}
 
-		// Set the ADQL factory:
-		if (parser.getQueryFactory() == null || parser.getQueryFactory().getClass() == ADQLQueryFactory.class)
-			parser.setQueryFactory(service.getFactory().createQueryFactory());
+			// Set the ADQL factory:
+			if (parser.getQueryFactory() == null || parser.getQueryFactory().getClass() == ADQLQueryFactory.class)
+				parser.setQueryFactory(service.getFactory().createQueryFactory());
 
-		// Set the query checker:
-		if (parser.getQueryChecker() == null)
-			parser.setQueryChecker(service.getFactory().createQueryChecker(uploadSchema));
+			// Set the query checker:
+			if (parser.getQueryChecker() == null)
+				parser.setQueryChecker(service.getFactory().createQueryChecker(uploadSchema));
 
-		// Parse the ADQL query:
-		ADQLQuery query = null;
-		// if the fixOnFail option is enabled...
-		if (service.fixOnFailEnabled()){
-			try{
-				// try parsing the query:
+			// Parse the ADQL query:
+			// if the fixOnFail option is enabled...
+			if (service.fixOnFailEnabled()){
+				try{
+					// try parsing the query:
+					query = parser.parseQuery(tapParams.getQuery());
+				}catch(ParseException pe){
+					// if it fails...
+					// ...log the auto fix attempt:
+					logger.logTAP(LogLevel.INFO, report, "PARSING", "Parse attempt of the original input query failed! Trying auto-fix...", null);
+					// ...try fixing the query:
+					String fixedQuery = parser.tryQuickFix(tapParams.getQuery());
+					// ...log the auto fixed query, if successful:
+					logger.logTAP(LogLevel.INFO, report, "PARSING", "Auto-fixed query: " + fixedQuery.replaceAll("(\t|\r?\n)+", " "), null);
+					// ...keep this fixed query in the exec report:
+					report.fixedQuery = fixedQuery;
+					// ...and finally try parsing it a last time:
+					query = parser.parseQuery(fixedQuery);
+				}
+			}
+			// if not enabled, parse immediately the query:
+			else{
 				query = parser.parseQuery(tapParams.getQuery());
-			}catch(ParseException pe){
-				// if it fails...
-				// ...log the auto fix attempt:
-				logger.logTAP(LogLevel.INFO, report, "PARSING", "Parse attempt of the original input query failed! Trying auto-fix...", null);
-				// ...try fixing the query:
-				String fixedQuery = parser.tryQuickFix(tapParams.getQuery());
-				// ...log the auto fixed query, if successful:
-				logger.logTAP(LogLevel.INFO, report, "PARSING", "Auto-fixed query: " + fixedQuery.replaceAll("(\t|\r?\n)+", " "), null);
-				// ...keep this fixed query in the exec report:
-				report.fixedQuery = fixedQuery;
-				// ...and finally try parsing it a last time:
-				query = parser.parseQuery(fixedQuery);
 			}
 		}
-		// if not enabled, parse immediately the query:
-		else{
-			query = parser.parseQuery(tapParams.getQuery());
-		}
 
 		// Set or check the row limit:
 		final int limit = query.getSelect().getLimit();
@@ -757,14 +869,20 @@ public class ADQLExecutor {
 	 * 	By default, if an error occurs while dropping a table from the database, the error will just be logged ; it won't be thrown/propagated.
 	 * </i></p>
 	 *
+	 * <p><i>Note:
+	 * 	The tables kept in an upload cache are not dropped ; they are just given back to the cache
+	 * 	(see {@link Uploader#releaseCachedTable(TAPTable)}).
+	 * </i></p>
+	 *
 	 * @throws TAPException	If a grave error occurs. <i>By default, no exception is thrown ; they are just logged.</i>
 	 */
 	protected void dropUploadedTables() throws TAPException{
 		if (uploadSchema != null){
-			// Drop all uploaded tables:
+			// Drop all uploaded tables (except the cached ones):
 			for(TAPTable t : uploadSchema){
 				try{
-					dbConn.dropUploadedTable(t);
+					if (uploader == null || !uploader.releaseCachedTable(t))
+						dbConn.dropUploadedTable(t);
 				}catch(DBException dbe){
 					logger.logTAP(LogLevel.ERROR, report, "DROP_UPLOAD", "Can not drop the uploaded table \"" + t.getDBName() + "\" (in adql \"" + t.getADQLName() + "\") from the database!", dbe);
 				}
@@ -16,7 +16,7 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012-2015 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -28,7 +28,7 @@ import uws.service.error.ServiceErrorWriter;
  * Thread in charge of a TAP job execution.
  * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.0 (02/2015)
+ * @version 2.4 (10/2026)
  */
 public class AsyncThread extends JobThread {
 
@@ -59,7 +59,8 @@ public class AsyncThread extends JobThread {
 	 * 	then this thread can not start and this function return FALSE. In all the other cases, TRUE is returned.
 	 * </p>
 	 * 
-	 * <p><b>Warning:</b> This function will indirectly open and keep a database connection, so that the job can be started just after its call.
+	 * <p><b>Warning:</b> This function will indirectly reserve resources in the {@link ExecutionBudget} of the service (if any)
+	 * and open and keep a database connection, so that the job can be started just after its call.
 	 * If it turns out that the execution won't start just after this call, the DB connection should be closed in some way in order to save database resources.</i></p>
 	 * 
 	 * @return	<i>true</i> if this thread can start right now, <i>false</i> otherwise.
@@ -68,13 +69,31 @@ public class AsyncThread extends JobThread {
 	 */
 	public final boolean isReadyForExecution(){
 		try{
-			executor.initDBConnection(job.getJobId());
+			executor.initDBConnection(job.getJobId(), getTAPJob().getTapParams());
 			return true;
 		}catch(TAPException te){
 			return false;
 		}
 	}
 
+	/**
+	 * <p>Tell whether the query to execute is cheap enough to bypass the execution queue.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This function always returns <i>false</i> if no {@link ExecutionBudget} is set in the TAP service.
+	 * </i></p>
+	 *
+	 * @return	<i>true</i> if the query is cheap, <i>false</i> otherwise.
+	 *
+	 * @see ExecutionBudget#isCheap(ExecutionBudget.Estimate)
+	 *
+	 * @since 2.4
+	 */
+	public final boolean isCheap(){
+		ExecutionBudget budget = executor.service.getFactory().getExecutionBudget();
+		return budget != null && budget.isCheap(executor.getResourceEstimate(getTAPJob().getTapParams()));
+	}
+
 	@Override
 	protected void jobWork() throws UWSException, InterruptedException{
 		try{
@@ -0,0 +1,62 @@
+package tap;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import adql.query.ADQLQuery;
+import tap.parameters.TAPParameters;
+
+/**
+ * Estimate the cost of an ADQL query before its execution.
+ *
+ * <p>
+ * 	The returned cost is expressed in an arbitrary unit which only has to be
+ * 	consistent with the cost budget set in the {@link ExecutionBudget}
+ * 	(see {@link ExecutionBudget#getMaxCost()}). It could be for instance the
+ * 	cost returned by an <code>EXPLAIN</code> of the translated SQL query, or a
+ * 	simple heuristic based on the queried tables.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	This function is called before any DB connection is allocated for the
+ * 	query. It should then be fast and should not block.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ *
+ * @see ExecutionBudget
+ */
+public interface CostEstimator {
+
+	/**
+	 * Estimate the cost of the given query.
+	 *
+	 * @param query		The parsed ADQL query.
+	 *             		<i>MAY be NULL if the query could not be parsed (e.g.
+	 *             		it is using uploaded tables not yet known).</i>
+	 * @param params	All the TAP parameters of the query to estimate.
+	 *
+	 * @return	The estimated cost,
+	 *        	or a negative value if the cost can not be estimated.
+	 */
+	public long estimateCost(final ADQLQuery query, final TAPParameters params);
+
+}
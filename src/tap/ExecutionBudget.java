@@ -0,0 +1,592 @@
+package tap;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import adql.db.DBColumn;
+import adql.db.DBType;
+import adql.parser.ADQLParser;
+import adql.parser.ADQLQueryFactory;
+import adql.query.ADQLQuery;
+import tap.log.TAPLog;
+import tap.parameters.TAPParameters;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * Set of resource budgets shared by all the queries (synchronous AND
+ * asynchronous) of a TAP service.
+ *
+ * <p>
+ * 	Before getting a database connection, every query must reserve a part of
+ * 	this budget (see {@link #acquire(String, Estimate)}). This reservation is
+ * 	given back when the query execution is finished
+ * 	(see {@link #release(String)}). If the budget is not large enough, the
+ * 	query can not start: a synchronous query is rejected and an asynchronous
+ * 	one stays in the queue.
+ * </p>
+ *
+ * <p>Three budgets are managed:</p>
+ * <ul>
+ * 	<li><b>DB connections:</b> the number of queries using a database
+ * 		connection at the same time,</li>
+ * 	<li><b>estimated result size:</b> the sum of the estimated size (in bytes)
+ * 		of the results being produced. The size of a result is estimated from
+ * 		its maximum number of rows (MAXREC and TOP) and from the width of each
+ * 		column returned by {@link ADQLQuery#getResultingColumns()},</li>
+ * 	<li><b>estimated cost:</b> the sum of the costs estimated by a
+ * 		{@link CostEstimator}. This budget is used only if such estimator is
+ * 		set.</li>
+ * </ul>
+ *
+ * <p>
+ * 	A null or negative limit means that the corresponding budget is unlimited.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	A query whose the estimation exceeds alone the whole budget can still be
+ * 	executed ; but only when no other query is running. Otherwise, such query
+ * 	could never be executed.
+ * </i></p>
+ *
+ * <h3>Cheap queries</h3>
+ *
+ * <p>
+ * 	A query whose the estimated result size and cost are both less or equal
+ * 	than the thresholds set with {@link #setCheapThresholds(long, long)} is
+ * 	considered as <i>cheap</i>. Cheap asynchronous jobs are allowed to bypass
+ * 	the execution queue (see {@link #isCheap(Estimate)}), but they still have
+ * 	to reserve their part of this budget.
+ * </p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public class ExecutionBudget {
+
+	/** Value of a limit meaning that there is no limit. */
+	public final static int NO_LIMIT = -1;
+
+	/** Number of bytes used for a column whose the size can not be guessed
+	 * (e.g. VARCHAR without length or unknown type). */
+	public final static int DEFAULT_COLUMN_SIZE = 32;
+
+	/** Description of the TAP service using this budget. */
+	protected final ServiceConnection service;
+
+	/** Maximum number of DB connections that can be used simultaneously.
+	 * <i>A value &le;0 means no limit.</i> */
+	protected final int maxConnections;
+
+	/** Maximum sum of the estimated result sizes (in bytes) of all running
+	 * queries. <i>A value &le;0 means no limit.</i> */
+	protected final long maxResultSize;
+
+	/** Maximum sum of the estimated costs of all running queries.
+	 * <i>A value &le;0 means no limit.</i> */
+	protected final long maxCost;
+
+	/** Maximum estimated result size (in bytes) of a cheap query.
+	 * <i>A negative value means that no query is cheap.</i> */
+	protected long cheapResultSize = NO_LIMIT;
+
+	/** Maximum estimated cost of a cheap query.
+	 * <i>A negative value means that the cost is not considered.</i> */
+	protected long cheapCost = NO_LIMIT;
+
+	/** Object to use to estimate the cost of a query.
+	 * <i>If NULL, the cost budget is not used.</i> */
+	protected CostEstimator costEstimator = null;
+
+	/** Current number of used DB connections. */
+	private int usedConnections = 0;
+	/** Current sum of the estimated result sizes of all running queries. */
+	private long usedResultSize = 0;
+	/** Current sum of the estimated costs of all running queries. */
+	private long usedCost = 0;
+	/** Current number of additional DB connections reserved with
+	 * {@link #acquireConnection()}. <i>Included in {@link #usedConnections}.</i> */
+	private int extraConnections = 0;
+
+	/** All current reservations, indexed by job ID. */
+	private final Map<String,Estimate> reservations = new HashMap<String,Estimate>();
+
+	/**
+	 * Build an execution budget.
+	 *
+	 * @param service		Description of the TAP service using this budget.
+	 * @param maxConnections	Maximum number of DB connections usable at the
+	 *                      	same time. <i>&le;0 means no limit.</i>
+	 * @param maxResultSize	Maximum sum (in bytes) of the estimated result
+	 *                     	sizes. <i>&le;0 means no limit.</i>
+	 * @param maxCost		Maximum sum of the estimated query costs.
+	 *               		<i>&le;0 means no limit.</i>
+	 *
+	 * @throws NullPointerException	If the given service description is NULL.
+	 */
+	public ExecutionBudget(final ServiceConnection service, final int maxConnections, final long maxResultSize, final long maxCost) throws NullPointerException{
+		if (service == null)
+			throw new NullPointerException("Missing the service description! Can not create an ExecutionBudget without.");
+		this.service = service;
+		this.maxConnections = (maxConnections <= 0) ? NO_LIMIT : maxConnections;
+		this.maxResultSize = (maxResultSize <= 0) ? NO_LIMIT : maxResultSize;
+		this.maxCost = (maxCost <= 0) ? NO_LIMIT : maxCost;
+	}
+
+	/* ***************** */
+	/* GETTERS & SETTERS */
+	/* ***************** */
+
+	/**
+	 * Get the maximum number of DB connections usable at the same time.
+	 *
+	 * @return	Maximum number of connections, or {@link #NO_LIMIT}.
+	 */
+	public final int getMaxConnections(){
+		return maxConnections;
+	}
+
+	/**
+	 * Get the maximum sum of the estimated result sizes (in bytes).
+	 *
+	 * @return	Maximum result size, or {@link #NO_LIMIT}.
+	 */
+	public final long getMaxResultSize(){
+		return maxResultSize;
+	}
+
+	/**
+	 * Get the maximum sum of the estimated query costs.
+	 *
+	 * @return	Maximum cost, or {@link #NO_LIMIT}.
+	 */
+	public final long getMaxCost(){
+		return maxCost;
+	}
+
+	/**
+	 * Get the object used to estimate the cost of a query.
+	 *
+	 * @return	The cost estimator, or NULL if none is set.
+	 */
+	public final CostEstimator getCostEstimator(){
+		return costEstimator;
+	}
+
+	/**
+	 * Set the object to use to estimate the cost of a query.
+	 *
+	 * @param estimator	The cost estimator to use.
+	 *                 	<i>NULL to not estimate any query cost.</i>
+	 */
+	public final void setCostEstimator(final CostEstimator estimator){
+		costEstimator = estimator;
+	}
+
+	/**
+	 * Set the thresholds under which a query is considered as cheap.
+	 *
+	 * @param maxResultSize	Maximum estimated result size (in bytes) of a cheap
+	 *                     	query. <i>A negative value means that no query is
+	 *                     	cheap.</i>
+	 * @param maxCost		Maximum estimated cost of a cheap query.
+	 *               		<i>A negative value means that the cost is not
+	 *               		considered.</i>
+	 */
+	public final void setCheapThresholds(final long maxResultSize, final long maxCost){
+		cheapResultSize = (maxResultSize < 0) ? NO_LIMIT : maxResultSize;
+		cheapCost = (maxCost < 0) ? NO_LIMIT : maxCost;
+	}
+
+	/**
+	 * Get the number of DB connections currently reserved.
+	 *
+	 * @return	Number of used connections.
+	 */
+	public final synchronized int getUsedConnections(){
+		return usedConnections;
+	}
+
+	/**
+	 * Get the sum of the estimated result sizes of all running queries.
+	 *
+	 * @return	Used result size (in bytes).
+	 */
+	public final synchronized long getUsedResultSize(){
+		return usedResultSize;
+	}
+
+	/**
+	 * Get the sum of the estimated costs of all running queries.
+	 *
+	 * @return	Used cost.
+	 */
+	public final synchronized long getUsedCost(){
+		return usedCost;
+	}
+
+	/* ********** */
+	/* ESTIMATION */
+	/* ********** */
+
+	/**
+	 * Estimate the resources needed by the query described by the given
+	 * parameters.
+	 *
+	 * <p>
+	 * 	The query is parsed and checked against the published tables in order
+	 * 	to get the resulting columns. If it fails (for instance if the query is
+	 * 	using uploaded tables, not yet known at this point), the result size is
+	 * 	considered as unknown.
+	 * </p>
+
+	 * <p><i>Note:
+	 * 	The parsed query is kept in the returned estimation, so that
+	 * 	{@link ADQLExecutor} does not have to parse it again.
+	 * </i></p>
+	 *
+	 * @param params	Parameters of the query to execute.
+	 *
+	 * @return	The resulting estimation. <i>Never NULL.</i>
+	 */
+	public Estimate estimate(final TAPParameters params){
+		if (params == null || params.getQuery() == null)
+			return new Estimate(NO_LIMIT, NO_LIMIT, NO_LIMIT);
+
+		// Parse the query:
+		ADQLQuery query = null;
+		try{
+			ADQLParser parser = service.getFactory().createADQLParser();
+			if (parser == null)
+				parser = new ADQLParser();
+			if (parser.getQueryFactory() == null || parser.getQueryFactory().getClass() == ADQLQueryFactory.class)
+				parser.setQueryFactory(service.getFactory().createQueryFactory());
+			if (parser.getQueryChecker() == null)
+				parser.setQueryChecker(service.getFactory().createQueryChecker(null));
+			query = parser.parseQuery(params.getQuery());
+		}catch(Exception ex){
+			TAPLog logger = service.getLogger();
+			if (logger != null)
+				logger.logTAP(LogLevel.DEBUG, null, "ESTIMATE", "Impossible to parse the query for its resource estimation: " + ex.getMessage(), null);
+		}
+
+		// Determine the maximum number of rows:
+		long nbRows = NO_LIMIT;
+		Integer maxRec = params.getMaxRec();
+		if (maxRec != null && maxRec >= 0)
+			nbRows = maxRec;
+		if (query != null && query.getSelect().hasLimit() && (nbRows < 0 || query.getSelect().getLimit() < nbRows))
+			nbRows = query.getSelect().getLimit();
+
+		// Estimate the result size:
+		long resultSize = NO_LIMIT;
+		if (nbRows >= 0 && query != null){
+			long rowSize = 0;
+			for(DBColumn col : query.getResultingColumns())
+				rowSize += getColumnSize((col == null) ? null : col.getDatatype());
+			resultSize = nbRows * rowSize;
+		}
+
+		// Estimate the cost:
+		long cost = NO_LIMIT;
+		if (costEstimator != null){
+			try{
+				cost = costEstimator.estimateCost(query, params);
+			}catch(Exception ex){
+				TAPLog logger = service.getLogger();
+				if (logger != null)
+					logger.logTAP(LogLevel.WARNING, null, "ESTIMATE", "The cost estimator failed to estimate a query cost! This cost is considered as unknown.", ex);
+			}
+		}
+
+		return new Estimate(nbRows, resultSize, (cost < 0) ? NO_LIMIT : cost, query);
+	}
+
+	/**
+	 * Get the number of bytes that a value of the given type should take.
+	 *
+	 * @param type	Type of a resulting column. <i>MAY be NULL.</i>
+	 *
+	 * @return	The estimated size (in bytes) of a single value.
+	 */
+	protected int getColumnSize(final DBType type){
+		if (type == null)
+			return DEFAULT_COLUMN_SIZE;
+
+		switch(type.type){
+			case SMALLINT:
+				return 2;
+			case INTEGER:
+			case REAL:
+				return 4;
+			case BIGINT:
+			case DOUBLE:
+			case UNKNOWN_NUMERIC:
+				return 8;
+			case TIMESTAMP:
+				return 24;
+			case CHAR:
+			case VARCHAR:
+			case BINARY:
+			case VARBINARY:
+				return (type.length > 0) ? type.length : DEFAULT_COLUMN_SIZE;
+			case POINT:
+				return 16;
+			case REGION:
+			case BLOB:
+			case CLOB:
+				return 4 * DEFAULT_COLUMN_SIZE;
+			default:
+				return DEFAULT_COLUMN_SIZE;
+		}
+	}
+
+	/**
+	 * Tell whether the estimated query is cheap enough to bypass the queue of
+	 * asynchronous jobs.
+	 *
+	 * @param estimate	Estimation of the query.
+	 *
+	 * @return	<i>true</i> if the query is cheap,
+	 *        	<i>false</i> otherwise.
+	 */
+	public boolean isCheap(final Estimate estimate){
+		if (estimate == null || cheapResultSize < 0 || estimate.resultSize < 0 || estimate.resultSize > cheapResultSize)
+			return false;
+		else if (costEstimator != null && cheapCost >= 0)
+			return estimate.cost >= 0 && estimate.cost <= cheapCost;
+		else
+			return true;
+	}
+
+	/* ********************** */
+	/* RESERVATION MANAGEMENT */
+	/* ********************** */
+
+	/**
+	 * Reserve the resources needed by the given job.
+	 *
+	 * <p><i>Note:
+	 * 	If the given job has already a reservation, nothing is done and
+	 * 	<i>true</i> is returned.
+	 * </i></p>
+	 *
+	 * <p><i>Note:
+	 * 	An unknown result size (or cost) is considered as taking the whole
+	 * 	corresponding budget.
+	 * </i></p>
+	 *
+	 * @param jobID		ID of the job (synchronous or asynchronous) to start.
+	 * @param estimate	Estimation of the resources needed by the job.
+	 *
+	 * @return	<i>true</i> if the resources have been reserved,
+	 *        	<i>false</i> if the budget is currently not large enough.
+	 */
+	public synchronized boolean acquire(final String jobID, final Estimate estimate){
+		if (jobID == null)
+			return false;
+		else if (reservations.containsKey(jobID))
+			return true;
+
+		final Estimate est = (estimate == null) ? new Estimate(NO_LIMIT, NO_LIMIT, NO_LIMIT) : estimate;
+
+		// Check the number of DB connections:
+		if (maxConnections > 0 && usedConnections >= maxConnections)
+			return false;
+
+		// Check the result size:
+		if (!fits(usedResultSize, est.resultSize, maxResultSize))
+			return false;
+
+		// Check the cost:
+		if (costEstimator != null && !fits(usedCost, est.cost, maxCost))
+			return false;
+
+		// Reserve (an unknown amount takes the whole budget):
+		final Estimate reserved = new Estimate(est.nbRows, reserved(est.resultSize, maxResultSize), reserved(est.cost, (costEstimator == null) ? NO_LIMIT : maxCost));
+		usedConnections++;
+		usedResultSize += reserved.resultSize;
+		usedCost += reserved.cost;
+		reservations.put(jobID, reserved);
+
+		return true;
+	}
+
+	/**
+	 * Get the amount of a budget to reserve for the given estimated amount.
+	 *
+	 * @param amount	Estimated amount. <i>Negative if unknown.</i>
+	 * @param max		The budget. <i>&le;0 if unlimited.</i>
+	 *
+	 * @return	The amount to reserve: the whole budget if the amount is unknown.
+	 */
+	private long reserved(final long amount, final long max){
+		if (amount >= 0)
+			return amount;
+		else
+			return Math.max(0, max);
+	}
+
+	/**
+	 * Tell whether the given amount can be added to the used part of a budget.
+	 *
+	 * @param used		Used part of the budget.
+	 * @param amount	Amount to add. <i>Negative if unknown.</i>
+	 * @param max		The budget. <i>&le;0 if unlimited.</i>
+	 *
+	 * @return	<i>true</i> if the amount fits,
+	 *        	<i>false</i> otherwise.
+	 */
+	private boolean fits(final long used, final long amount, final long max){
+		if (max <= 0 || used == 0)
+			return true;
+		else if (amount < 0)
+			return false;
+		else
+			return used + amount <= max;
+	}
+
+	/**
+	 * Give back the resources reserved by the given job.
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done if the given job has no reservation.
+	 * </i></p>
+	 *
+	 * @param jobID	ID of the job whose the reservation must be released.
+	 */
+	public synchronized void release(final String jobID){
+		if (jobID == null)
+			return;
+
+		Estimate est = reservations.remove(jobID);
+		if (est != null){
+			usedConnections--;
+			usedResultSize -= est.resultSize;
+			usedCost -= est.cost;
+		}
+	}
+
+	/**
+	 * Reserve one additional DB connection for a query which has already its
+	 * reservation (e.g. to load several uploaded tables at the same time).
+	 *
+	 * <p>
+	 * 	This function never waits: if all connections are currently used, it
+	 * 	returns immediately <i>false</i>.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	This connection must be given back with {@link #releaseConnection()}.
+	 * </i></p>
+	 *
+	 * @return	<i>true</i> if a connection has been reserved,
+	 *        	<i>false</i> if the connection budget is currently exhausted.
+	 */
+	public synchronized boolean acquireConnection(){
+		if (maxConnections > 0 && usedConnections >= maxConnections)
+			return false;
+		usedConnections++;
+		extraConnections++;
+		return true;
+	}
+
+	/**
+	 * Give back a DB connection reserved with {@link #acquireConnection()}.
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done if no additional connection is reserved.
+	 * </i></p>
+	 */
+	public synchronized void releaseConnection(){
+		if (extraConnections > 0){
+			extraConnections--;
+			usedConnections--;
+		}
+	}
+
+	/**
+	 * Tell whether the given job currently has a reservation.
+	 *
+	 * @param jobID	ID of the job to test.
+	 *
+	 * @return	<i>true</i> if this job has reserved resources,
+	 *        	<i>false</i> otherwise.
+	 */
+	public synchronized boolean hasReservation(final String jobID){
+		return jobID != null && reservations.containsKey(jobID);
+	}
+
+	/**
+	 * Estimation of the resources needed by a query.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	public static class Estimate {
+		/** Maximum number of rows of the result. <i>Negative if unknown.</i> */
+		public final long nbRows;
+		/** Estimated size (in bytes) of the result. <i>Negative if unknown.</i> */
+		public final long resultSize;
+		/** Estimated cost of the query. <i>Negative if unknown.</i> */
+		public final long cost;
+		/** The query parsed for this estimation, so that it does not have to be
+		 * parsed again for its execution (see {@link ADQLExecutor#parseADQL()}).
+		 * <i>NULL if the query could not be parsed.</i> */
+		public final ADQLQuery query;
+
+		/**
+		 * Build a resource estimation.
+		 *
+		 * @param nbRows		Maximum number of rows. <i>Negative if unknown.</i>
+		 * @param resultSize	Estimated result size (in bytes).
+		 *                  	<i>Negative if unknown.</i>
+		 * @param cost			Estimated query cost. <i>Negative if unknown.</i>
+		 */
+		public Estimate(final long nbRows, final long resultSize, final long cost){
+			this(nbRows, resultSize, cost, null);
+		}
+
+		/**
+		 * Build a resource estimation.
+		 *
+		 * @param nbRows		Maximum number of rows. <i>Negative if unknown.</i>
+		 * @param resultSize	Estimated result size (in bytes).
+		 *                  	<i>Negative if unknown.</i>
+		 * @param cost			Estimated query cost. <i>Negative if unknown.</i>
+		 * @param query			The parsed query. <i>NULL if unknown.</i>
+		 */
+		public Estimate(final long nbRows, final long resultSize, final long cost, final ADQLQuery query){
+			this.nbRows = nbRows;
+			this.resultSize = resultSize;
+			this.cost = cost;
+			this.query = query;
+		}
+
+		@Override
+		public String toString(){
+			return "{rows: " + (nbRows < 0 ? "?" : nbRows) + ", size: " + (resultSize < 0 ? "?" : resultSize + "B") + ", cost: " + (cost < 0 ? "?" : cost) + "}";
+		}
+	}
+
+}
@@ -16,7 +16,7 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -36,15 +36,19 @@ import tap.parameters.TAPParameters;
 import tap.upload.Uploader;
 import uws.UWSException;
 import uws.job.ErrorSummary;
+import uws.job.JobList;
 import uws.job.JobThread;
 import uws.job.Result;
 import uws.job.UWSJob;
+import uws.job.manager.ExecutionManager;
 import uws.job.parameters.UWSParameters;
 import uws.job.user.JobOwner;
 import uws.service.UWSFactory;
 import uws.service.UWSService;
+import uws.service.backup.JobStore;
 import uws.service.backup.UWSBackupManager;
 import uws.service.error.ServiceErrorWriter;
+import uws.service.file.ResultLifecycleManager;
 import uws.service.file.UWSFileManager;
 import uws.service.request.RequestParser;
 
@@ -64,7 +68,7 @@ import uws.service.request.RequestParser;
  * </ul>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (09/2018)
+ * @version 2.4 (10/2026)
  */
 public abstract class TAPFactory implements UWSFactory {
 
@@ -152,6 +156,28 @@ public abstract class TAPFactory implements UWSFactory {
 	 */
 	public abstract void freeConnection(final DBConnection conn);
 
+	/**
+	 * <p>Get the resource budget shared by all synchronous and asynchronous queries.</p>
+	 *
+	 * <p>
+	 * 	When a budget is returned, every query must reserve a part of it before getting
+	 * 	a database connection (see {@link ADQLExecutor#initDBConnection(String, TAPParameters)}).
+	 * 	The same instance MUST then be returned at each call of this function.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	By default, no budget is set: queries are only limited by {@link ServiceConnection#getNbMaxAsyncJobs()}
+	 * 	and by the availability of database connections.
+	 * </i></p>
+	 *
+	 * @return	The shared execution budget, or NULL if none.
+	 *
+	 * @since 2.4
+	 */
+	public ExecutionBudget getExecutionBudget(){
+		return null;
+	}
+
 	/**
 	 * <p>Destroy all resources (and particularly DB connections and JDBC driver) allocated in this factory.</p>
 	 *
@@ -300,6 +326,77 @@ public abstract class TAPFactory implements UWSFactory {
 	 */
 	public abstract UWSBackupManager createUWSBackupManager(final UWSService uws) throws TAPException;
 
+	/**
+	 * <p>Create the store in which the finished asynchronous jobs must be saved, instead of being kept in memory.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This implementation returns NULL: all asynchronous jobs stay in memory.
+	 * </i></p>
+	 *
+	 * @param uws	The UWS service whose the jobs must be stored.
+	 *
+	 * @return	The job store to use. <i>MAY be NULL</i>
+	 *
+	 * @throws TAPException	If any error occurs while creating this job store.
+	 *
+	 * @see JobList#setJobStore(JobStore)
+	 *
+	 * @since 2.4
+	 */
+	public JobStore createJobStore(final UWSService uws) throws TAPException{
+		return null;
+	}
+
+	/**
+	 * <p>Create the execution manager of the asynchronous jobs.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This implementation returns NULL: the asynchronous jobs are then executed by a local queue limited by
+	 * 	{@link ServiceConnection#getNbMaxAsyncJobs()}.
+	 * </i></p>
+	 *
+	 * <p><i>Note:
+	 * 	If a {@link uws.job.manager.ClusterExecutionManager} is returned, the job store returned by
+	 * 	{@link #createJobStore(UWSService)} is shared with the other nodes of the cluster.
+	 * </i></p>
+	 *
+	 * @param jobList	The list of the asynchronous jobs.
+	 *
+	 * @return	The execution manager to use. <i>MAY be NULL</i>
+	 *
+	 * @throws TAPException	If any error occurs while creating this execution manager.
+	 *
+	 * @see JobList#setExecutionManager(ExecutionManager)
+	 *
+	 * @since 2.4
+	 */
+	public ExecutionManager createExecutionManager(final JobList jobList) throws TAPException{
+		return null;
+	}
+
+	/**
+	 * <p>Create the service compressing and/or archiving in background the idle results of the asynchronous jobs.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This implementation returns NULL: the results stay as written by the jobs.
+	 * </i></p>
+	 *
+	 * <p><i>Note:
+	 * 	The returned manager is started with the asynchronous resource and stopped when this resource is destroyed.
+	 * </i></p>
+	 *
+	 * @param uws	The UWS service whose the results must be managed.
+	 *
+	 * @return	The result lifecycle manager to use. <i>MAY be NULL</i>
+	 *
+	 * @throws TAPException	If any error occurs while creating this manager.
+	 *
+	 * @since 2.4
+	 */
+	public ResultLifecycleManager createResultLifecycleManager(final UWSService uws) throws TAPException{
+		return null;
+	}
+
 	/**
 	 * <p>Creates a (PENDING) UWS job from the given HTTP request.</p>
 	 *
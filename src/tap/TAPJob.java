@@ -16,7 +16,7 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -32,6 +32,7 @@ import uws.job.ExecutionPhase;
 import uws.job.JobThread;
 import uws.job.Result;
 import uws.job.UWSJob;
+import uws.job.VirtualThreads;
 import uws.job.parameters.UWSParameters;
 import uws.job.user.JobOwner;
 import uws.service.log.UWSLog.LogLevel;
@@ -48,7 +49,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.2 (09/2017)
+ * @version 2.4 (10/2026)
  */
 public class TAPJob extends UWSJob {
 	private static final long serialVersionUID = 1L;
@@ -387,6 +388,20 @@ public class TAPJob extends UWSJob {
 		return thread != null && ((AsyncThread)thread).isReadyForExecution();
 	}
 
+	/**
+	 * Tell whether this job is cheap enough to bypass the execution queue.
+	 *
+	 * @return	<i>true</i> if this job is cheap,
+	 *        	<i>false</i> otherwise (or if its thread is not yet created).
+	 *
+	 * @see AsyncThread#isCheap()
+	 *
+	 * @since 2.4
+	 */
+	public final boolean isCheap(){
+		return thread != null && ((AsyncThread)thread).isCheap();
+	}
+
 	@Override
 	public final void start(final boolean useManager) throws UWSException{
 		// This job must know its jobs list and this jobs list must know its UWS:
@@ -424,7 +439,7 @@ public class TAPJob extends UWSJob {
 
 			// Run the job:
 			thread.start();
-			(new JobTimeOut()).start();
+			VirtualThreads.start(new JobTimeOut());
 
 			// Log the start of this job:
 			getLogger().logJob(LogLevel.INFO, this, "START", "Job \"" + jobId + "\" started.", null);
@@ -447,7 +462,7 @@ public class TAPJob extends UWSJob {
 				// Wait a little for its end:
 				if (waitForStop > 0){
 					try{
-						thread.join(waitForStop);
+						thread.waitForEnd(waitForStop);
 					}catch(InterruptedException ie){
 						getLogger().logJob(LogLevel.WARNING, this, "END", "Unexpected InterruptedException while waiting for the end of the execution of the job \"" + jobId + "\" (thread ID: " + thread.getId() + ")!", ie);
 					}
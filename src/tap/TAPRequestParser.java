@@ -16,21 +16,26 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2014-2017 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2014-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
 import uws.UWSException;
+import tap.resource.Sync;
 import uws.UWSToolBox;
 import uws.service.file.UWSFileManager;
 import uws.service.request.FormEncodedParser;
 import uws.service.request.MultipartParser;
 import uws.service.request.RequestParser;
+import uws.service.request.StreamedUploadFile;
 import uws.service.request.UploadFile;
 
 /**
@@ -49,13 +54,23 @@ import uws.service.request.UploadFile;
  * 	{@link #TAPRequestParser(UWSFileManager, boolean, long, long)}
  * </p>
  *
+ * <p>
+ * 	If {@link #setStreamingUploads(boolean)} is enabled, the files uploaded
+ * 	with a multipart request sent to the <code>/sync</code> resource are not
+ * 	stored on the server: they are read directly from the request body while
+ * 	they are loaded in the database (see {@link StreamedUploadFile}).
+ * 	For that, the parameter UPLOAD (and all other parameters) must precede
+ * 	the files in the request body. Otherwise, the files are stored as usual.
+ * 	Asynchronous jobs always store their uploaded files.
+ * </p>
+ *
  * <p><i>Note:
  * 	If you want to support other request parsing, you have to write your own
  * 	{@link RequestParser} implementation.
  * </i></p>
  *
  * @author Gr&eacute;gory Mantelet (ARI;CDS)
- * @version 2.3 (09/2018)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public class TAPRequestParser implements RequestParser {
@@ -74,7 +89,7 @@ public class TAPRequestParser implements RequestParser {
 	/** {@link RequestParser} to use when a multipart/form-data request must be
 	 * parsed. This attribute is set by {@link #parse(HttpServletRequest)}
 	 * only when needed, by calling the function {@link #getMultipartParser()}. */
-	private RequestParser multipartParser = null;
+	private MultipartParser multipartParser = null;
 
 	/** Indicates whether this parser should allow uploaded files.
 	 * @since 2.3 */
@@ -90,6 +105,11 @@ public class TAPRequestParser implements RequestParser {
 	 * @since 2.3 */
 	private final long maxMultipartSize;
 
+	/** Indicates whether the files uploaded in a synchronous request are
+	 * read directly from the request body instead of being stored.
+	 * @since 2.4 */
+	private boolean streamingUploads = false;
+
 	/**
 	 * Build a {@link RequestParser} able to choose the most appropriate
 	 * {@link RequestParser} in function of the request content-type.
@@ -126,6 +146,55 @@ public class TAPRequestParser implements RequestParser {
 		this.maxMultipartSize = maxRequestSize;
 	}
 
+	/**
+	 * Tell whether the files uploaded in a synchronous request are read
+	 * directly from the request body.
+	 *
+	 * @return	<code>true</code> if streamed,
+	 *        	<code>false</code> if stored (default).
+	 *
+	 * @since 2.4
+	 */
+	public final boolean isStreamingUploads(){
+		return streamingUploads;
+	}
+
+	/**
+	 * Let read the files uploaded in a synchronous request directly from the
+	 * request body, instead of storing them first in the temporary directory.
+	 *
+	 * @param streaming	<code>true</code> to stream the synchronous uploads,
+	 *                 	<code>false</code> to store them.
+	 *
+	 * @since 2.4
+	 */
+	public void setStreamingUploads(final boolean streaming){
+		streamingUploads = streaming;
+	}
+
+	/**
+	 * Tell whether the uploads of the given multipart request can be read
+	 * directly from the request body.
+	 *
+	 * <p>
+	 * 	By default, it is possible only if {@link #isStreamingUploads()} and
+	 * 	if the request is sent to the synchronous resource.
+	 * </p>
+	 *
+	 * @param req	The request to parse.
+	 *
+	 * @return	<code>true</code> to stream the uploaded files,
+	 *        	<code>false</code> to store them.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isStreamable(final HttpServletRequest req){
+		if (!streamingUploads || !allowUpload || req.getPathInfo() == null)
+			return false;
+		String[] resourcePath = req.getPathInfo().split("/");
+		return resourcePath.length == 2 && resourcePath[1].trim().equalsIgnoreCase(Sync.RESOURCE_NAME);
+	}
+
 	@Override
 	public Map<String, Object> parse(final HttpServletRequest req) throws UWSException{
 		if (req == null)
@@ -141,7 +210,7 @@ public class TAPRequestParser implements RequestParser {
 			if (FormEncodedParser.isFormEncodedRequest(req))
 				params = getFormParser().parse(req);
 			else if (MultipartParser.isMultipartContent(req))
-				params = getMultipartParser().parse(req);
+				params = isStreamable(req) ? getMultipartParser().parseStreaming(req) : getMultipartParser().parse(req);
 			else
 				params = new HashMap<String, Object>(0);
 
@@ -191,7 +260,7 @@ public class TAPRequestParser implements RequestParser {
 	 * @return	The {@link RequestParser} to use for multipart/form-data
 	 *        	requests. <i>Never NULL</i>
 	 */
-	private synchronized final RequestParser getMultipartParser(){
+	private synchronized final MultipartParser getMultipartParser(){
 		return (multipartParser != null) ? multipartParser : (multipartParser = new MultipartParser(allowUpload, fileManager, maxFileSize, maxMultipartSize) {
 			@Override
 			protected void consumeParameter(String name, Object value, final Map<String, Object> allParams){
@@ -217,6 +286,22 @@ public class TAPRequestParser implements RequestParser {
 				// Update the map, normally:
 				super.consumeParameter(name, value, allParams);
 			}
+
+			@Override
+			protected Collection<String> getStreamedFiles(final Map<String, Object> params){
+				// Only the files referenced by the UPLOAD parameter can be streamed:
+				if (!(params.get(TAPJob.PARAM_UPLOAD) instanceof String[]))
+					return null;
+				LinkedHashSet<String> files = new LinkedHashSet<String>();
+				for(String upload : (String[])params.get(TAPJob.PARAM_UPLOAD)){
+					for(String item : upload.split(";")){
+						int sep = item.indexOf(',');
+						if (sep > 0 && item.substring(sep + 1).toLowerCase().startsWith("param:"))
+							files.add(item.substring(sep + 7));
+					}
+				}
+				return files;
+			}
 		});
 	}
 
@@ -16,7 +16,7 @@ package tap;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -24,12 +24,15 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.Iterator;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import tap.parameters.TAPParameters;
 import uws.UWSException;
 import uws.job.JobThread;
+import uws.job.VirtualThreads;
 import uws.service.log.UWSLog.LogLevel;
+import uws.service.wait.AsyncWait;
 import uws.service.request.UploadFile;
 
 /**
@@ -50,10 +53,15 @@ import uws.service.request.UploadFile;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.1 (03/2017)
+ * @version 2.4 (10/2026)
  */
 public class TAPSyncJob {
 
+	/** Name of the HTTP request attribute in which a job suspending its HTTP request is stored
+	 * (see {@link #startAsync(HttpServletRequest, HttpServletResponse)}).
+	 * @since 2.4 */
+	public final static String REQ_ATTRIBUTE_SYNC_JOB = "TAP_SYNC_JOB";
+
 	/** The time (in ms) to wait the end of the thread after an interruption. */
 	protected long waitForStop = 1000;
 
@@ -81,6 +89,15 @@ public class TAPSyncJob {
 	 * if NULL, the second starting is not considered and an exception is thrown.</i></p> */
 	private Date startedAt = null;
 
+	/** Indicate whether the execution of this job has exceeded its maximum duration.
+	 * @since 2.4 */
+	protected volatile boolean timedOut = false;
+
+	/** Object suspending the HTTP request during the execution of this job.
+	 * NULL if the thread of the HTTP request is blocked until the end of the execution.
+	 * @since 2.4 */
+	protected AsyncWait asyncWait = null;
+
 	/**
 	 * Create a synchronous TAP job.
 	 *
@@ -206,6 +223,99 @@ public class TAPSyncJob {
 	 * @see SyncThread
 	 */
 	public synchronized boolean start(final HttpServletResponse response) throws IllegalStateException, IOException, TAPException{
+		// Start the thread executing the query:
+		launch(response, null, null);
+
+		// Wait the end of the thread until the maximum execution duration is reached:
+		try{
+			// wait the end:
+			thread.waitForEnd(tapParams.getExecutionDuration() * 1000);
+			// if still alive after this duration, interrupt it:
+			if (thread.isActive()){
+				timedOut = true;
+				thread.interrupt();
+				thread.waitForEnd(waitForStop);
+			}
+		}catch(InterruptedException ie){
+			/* Having a such exception here, is not surprising, because we may have interrupted the thread! */
+		}
+
+		// Report the end of the execution:
+		return finish();
+	}
+
+	/**
+	 * <p>Start the execution of this job, but without blocking the thread of the given HTTP request.</p>
+	 *
+	 * <p>
+	 * 	The HTTP request is suspended (see {@link AsyncWait}) until the end of the execution (or until the maximum
+	 * 	execution duration is reached). Then, it is dispatched again to the servlet, which must then call
+	 * 	{@link #finish()} in order to report the end of the execution. The job to finish can be retrieved from
+	 * 	the HTTP request attribute {@link #REQ_ATTRIBUTE_SYNC_JOB}.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	If the asynchronous processing is not supported by the servlet (see {@link AsyncWait#isSupported(HttpServletRequest)}),
+	 * 	this function behaves exactly like {@link #start(HttpServletResponse)} and returns <i>true</i>.
+	 * </i></p>
+	 *
+	 * <p><b>Important:</b>
+	 * 	No error should be written in this function. If any error occurs it should be thrown, in order to be manager on a top level.
+	 * </p>
+	 *
+	 * @param request	The HTTP request asking for this execution.
+	 * @param response	Response in which the result must be written.
+	 *
+	 * @return	<i>true</i> if the execution is already finished (because the request could not be suspended),
+	 *        	<i>false</i> if the request has been suspended.
+	 *
+	 * @throws IllegalStateException	If this synchronous job has already been started before.
+	 * @throws IOException				If any error occurs while writing the query result in the given {@link HttpServletResponse}.
+	 * @throws TAPException				If any error occurs while executing the ADQL query.
+	 *
+	 * @since 2.4
+	 */
+	public synchronized boolean startAsync(final HttpServletRequest request, final HttpServletResponse response) throws IllegalStateException, IOException, TAPException{
+		// Block the request thread if no asynchronous processing is possible:
+		if (!AsyncWait.isSupported(request)){
+			start(response);
+			return true;
+		}
+
+		// Start the execution and suspend the request:
+		launch(response, request, new AsyncWait(){
+			@Override
+			protected void timeout(){
+				// if still running after the execution duration, interrupt the execution:
+				if (!timedOut){
+					timedOut = true;
+					thread.interrupt();
+					// ...and wait a little for its end:
+					waitFor(Math.max(1, waitForStop));
+				}
+				// if still running after this additional time, stop waiting:
+				else
+					end();
+			}
+		});
+		return false;
+	}
+
+	/**
+	 * Start the thread executing the query.
+	 *
+	 * @param response	Response in which the result must be written.
+	 * @param request	The HTTP request to suspend during the execution.
+	 *               	<i>NULL if the request thread is blocked.</i>
+	 * @param wait		Object suspending the given HTTP request.
+	 *            		<i>NULL if the request thread is blocked.</i>
+	 *
+	 * @throws IllegalStateException	If this synchronous job has already been started before.
+	 * @throws TAPException				If no DB connection is available.
+	 *
+	 * @since 2.4
+	 */
+	private void launch(final HttpServletResponse response, final HttpServletRequest request, final AsyncWait wait) throws IllegalStateException, TAPException{
 		if (startedAt != null)
 			throw new IllegalStateException("Impossible to restart a synchronous TAP query!");
 
@@ -215,44 +325,77 @@ public class TAPSyncJob {
 		// Create the object having the knowledge about how to execute an ADQL query:
 		ADQLExecutor executor = service.getFactory().createADQLExecutor();
 		try{
-			executor.initDBConnection(ID);
+			executor.initDBConnection(ID, tapParams);
 		}catch(TAPException te){
-			service.getLogger().logDB(LogLevel.ERROR, null, "CONNECTION_LACK", "No more database connection available for the moment!", te);
+			service.getLogger().logDB(LogLevel.ERROR, null, "CONNECTION_LACK", "No more database connection (or execution resource) available for the moment!", te);
 			service.getLogger().logTAP(LogLevel.ERROR, this, "END", "Synchronous job " + ID + " execution aborted: no database connection available!", null);
 			throw new TAPException("TAP service too busy! No connection available for the moment. You should try later or create an asynchronous query (which will be executed when enough resources will be available again).", UWSException.SERVICE_UNAVAILABLE);
 		}
 
+		startedAt = new Date();
+
 		// Give to a thread which will execute the query:
 		thread = new SyncThread(executor, ID, tapParams, response);
+
+		// Suspend the HTTP request until the end of the execution (if asked):
+		if (wait != null){
+			asyncWait = wait;
+			request.setAttribute(REQ_ATTRIBUTE_SYNC_JOB, this);
+			wait.start(request, response, tapParams.getExecutionDuration() * 1000, null);
+		}
+
 		thread.start();
 
-		// Wait the end of the thread until the maximum execution duration is reached:
-		boolean timeout = false;
-		try{
-			// wait the end:
-			thread.join(tapParams.getExecutionDuration() * 1000);
-			// if still alive after this duration, interrupt it:
-			if (thread.isAlive()){
-				timeout = true;
-				thread.interrupt();
-				thread.join(waitForStop);
-			}
-		}catch(InterruptedException ie){
-			/* Having a such exception here, is not surprising, because we may have interrupted the thread! */
-		}finally{
-			// Whatever the way the execution stops (normal, cancel or error), an execution report must be fulfilled:
-			execReport = thread.getExecutionReport();
+	}
 
-			// Delete uploaded files:
-			deleteUploads(tapParams);
+	/**
+	 * <p>Report the end of the execution of this job.</p>
+	 *
+	 * <p>
+	 * 	This function is called automatically at the end of {@link #start(HttpServletResponse)}. It must be called
+	 * 	explicitly only after {@link #startAsync(HttpServletRequest, HttpServletResponse)}, when the suspended HTTP
+	 * 	request is dispatched again to the servlet.
+	 * </p>
+	 *
+	 * <p><b>Important:</b>
+	 * 	No error should be written in this function. If any error occurs it should be thrown, in order to be manager on a top level.
+	 * </p>
+	 *
+	 * @return	<i>true</i> if the execution was successful, <i>false</i> otherwise.
+	 *
+	 * @throws IllegalStateException	If this synchronous job has never been started.
+	 * @throws IOException				If any error occurred while writing the query result in the HTTP response.
+	 * @throws TAPException				If any error occurred while executing the ADQL query.
+	 *
+	 * @since 2.4
+	 */
+	public synchronized boolean finish() throws IllegalStateException, IOException, TAPException{
+		if (thread == null)
+			throw new IllegalStateException("This synchronous TAP query has never been started!");
+
+		/* A suspended request is resumed by the thread itself, at the very end
+		 * of its execution but while it is still alive: wait a little for its
+		 * real end, otherwise a successful execution would be seen as failed: */
+		if (thread.isActive()){
+			try{
+				thread.waitForEnd(Math.max(1, waitForStop));
+			}catch(InterruptedException ie){
+				/* Nothing to do: the state of the thread is checked below. */
+			}
 		}
 
+		// Whatever the way the execution stops (normal, cancel or error), an execution report must be fulfilled:
+		execReport = thread.getExecutionReport();
+
+		// Delete uploaded files:
+		deleteUploads(tapParams);
+
 		// Report any error that may have occurred while the thread execution:
 		Throwable error = thread.getError();
 		// CASE: TIMEOUT
-		if (timeout && error != null && error instanceof InterruptedException){
+		if (timedOut && error != null && error instanceof InterruptedException){
 			// Log the timeout:
-			if (thread.isAlive())
+			if (thread.isActive())
 				service.getLogger().logTAP(LogLevel.WARNING, this, "TIME_OUT", "Time out (after " + tapParams.getExecutionDuration() + " seconds) for the synchonous job " + ID + ", but the thread can not be interrupted!", null);
 			else
 				service.getLogger().logTAP(LogLevel.INFO, this, "TIME_OUT", "Time out (after " + tapParams.getExecutionDuration() + " seconds) for the synchonous job " + ID + ".", null);
@@ -328,8 +471,14 @@ public class TAPSyncJob {
 	 * 	with the given {@link ADQLExecutor} and TAP parameters (containing the ADQL query to execute).
 	 * </p>
 	 *
+	 * <p><i>Note:
+	 * 	This thread may be run by a virtual thread (see {@link VirtualThreads}).
+	 * 	That's why {@link #isActive()} and {@link #waitForEnd(long)} should be
+	 * 	used instead of {@link #isAlive()} and {@link #join(long)}.
+	 * </i></p>
+	 *
 	 * @author Gr&eacute;gory Mantelet (CDS;ARI)
-	 * @version 2.1 (03/2017)
+	 * @version 2.4 (10/2026)
 	 */
 	protected class SyncThread extends Thread {
 
@@ -348,6 +497,11 @@ public class TAPSyncJob {
 		/** Query execution report. NULL if the execution has not yet started. */
 		protected TAPExecutionReport report = null;
 
+		/** Virtual thread running this thread (see {@link VirtualThreads}).
+		 * NULL if this thread is run as a usual platform thread or if not yet started.
+		 * @since 2.4 */
+		private volatile Thread runner = null;
+
 		/**
 		 * Create a thread that will run the given executor with the given parameters.
 		 *
@@ -371,7 +525,7 @@ public class TAPSyncJob {
 		 *        	<i>false</i> otherwise (or if this thread is still executed).
 		 */
 		public final boolean isSuccess(){
-			return !isAlive() && report != null && exception == null;
+			return !isActive() && report != null && exception == null;
 		}
 
 		/**
@@ -394,12 +548,90 @@ public class TAPSyncJob {
 			return report;
 		}
 
+		/**
+		 * <p>Start the execution of this thread.</p>
+		 *
+		 * <p>
+		 * 	If the virtual threads mode is enabled (see
+		 * 	{@link VirtualThreads#isEnabled()}), this thread is not started
+		 * 	itself: its {@link #run()} function is run by a new virtual thread.
+		 * </p>
+		 *
+		 * @since 2.4
+		 */
+		@Override
+		public synchronized void start(){
+			if (runner != null)
+				throw new IllegalThreadStateException();
+
+			Thread virtualThread = VirtualThreads.newVirtualThread(getName(), this);
+			if (virtualThread == null)
+				super.start();
+			else{
+				runner = virtualThread;
+				virtualThread.start();
+			}
+		}
+
 		@Override
 		public void interrupt(){
-			super.interrupt();
+			Thread r = runner;
+			if (r != null)
+				r.interrupt();
+			else
+				super.interrupt();
 			executor.cancelQuery();
 		}
 
+		/** @since 2.4 */
+		@Override
+		public boolean isInterrupted(){
+			Thread r = runner;
+			return (r != null) ? r.isInterrupted() : super.isInterrupted();
+		}
+
+		/**
+		 * Tell whether this thread is still running.
+		 *
+		 * <p><i>Note:
+		 * 	This function must be used instead of {@link #isAlive()} which does
+		 * 	not take into account the virtual thread running this thread.
+		 * </i></p>
+		 *
+		 * @return	<i>true</i> if this thread (or the virtual thread running it)
+		 *        	is alive,
+		 *        	<i>false</i> otherwise.
+		 *
+		 * @since 2.4
+		 */
+		public final boolean isActive(){
+			Thread r = runner;
+			return (r != null) ? r.isAlive() : isAlive();
+		}
+
+		/**
+		 * Wait at most the given duration for the end of this thread.
+		 *
+		 * <p><i>Note:
+		 * 	This function must be used instead of {@link #join(long)} which does
+		 * 	not take into account the virtual thread running this thread.
+		 * </i></p>
+		 *
+		 * @param millis	Maximum time to wait (in milliseconds).
+		 *              	<i>0 means forever.</i>
+		 *
+		 * @throws InterruptedException	If the current thread is interrupted while waiting.
+		 *
+		 * @since 2.4
+		 */
+		public final void waitForEnd(final long millis) throws InterruptedException{
+			Thread r = runner;
+			if (r != null)
+				r.join(millis);
+			else
+				join(millis);
+		}
+
 		@Override
 		public void run(){
 			// Log the start of this thread:
@@ -427,6 +659,10 @@ public class TAPSyncJob {
 				else
 					// GRAVE error:
 					executor.getLogger().logThread(LogLevel.FATAL, this, "END", "Synchronous thread \"" + ID + "\" ended with a FATAL error.", null);
+			}finally{
+				// Resume the suspended HTTP request (if any):
+				if (asyncWait != null)
+					asyncWait.end();
 			}
 		}
 
@@ -16,7 +16,7 @@ package tap.config;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2016-2019 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2016-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -55,11 +55,18 @@ import static tap.config.TAPConfiguration.KEY_METADATA_FILE;
 import static tap.config.TAPConfiguration.KEY_MIN_LOG_LEVEL;
 import static tap.config.TAPConfiguration.KEY_OUTPUT_FORMATS;
 import static tap.config.TAPConfiguration.KEY_PROVIDER_NAME;
+import static tap.config.TAPConfiguration.KEY_RESULT_ARCHIVE_PATH;
 import static tap.config.TAPConfiguration.KEY_SERVICE_DESCRIPTION;
 import static tap.config.TAPConfiguration.KEY_SYNC_FETCH_SIZE;
 import static tap.config.TAPConfiguration.KEY_TAP_FACTORY;
 import static tap.config.TAPConfiguration.KEY_UDFS;
 import static tap.config.TAPConfiguration.KEY_UPLOAD_ENABLED;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_ALLOWED_DIRS;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_CACHE_MAX_SIZE;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_CONNECT_TIMEOUT;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_PARALLELISM;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_READ_TIMEOUT;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_FETCH_RETRIES;
 import static tap.config.TAPConfiguration.KEY_UPLOAD_MAX_FILE_SIZE;
 import static tap.config.TAPConfiguration.KEY_UPLOAD_MAX_REQUEST_SIZE;
 import static tap.config.TAPConfiguration.KEY_USER_IDENTIFIER;
@@ -124,6 +131,7 @@ import uk.ac.starlink.votable.VOTableVersion;
 import uws.UWSException;
 import uws.service.UserIdentifier;
 import uws.service.file.LocalUWSFileManager;
+import uws.service.file.URIFetcher;
 import uws.service.file.UWSFileManager;
 import uws.service.log.UWSLog.LogLevel;
 
@@ -138,7 +146,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (03/2019)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public final class ConfigurableServiceConnection implements ServiceConnection {
@@ -298,6 +306,8 @@ public final class ConfigurableServiceConnection implements ServiceConnection {
 		initUploadLimits(tapConfig);
 		// set the maximum upload file size:
 		initMaxUploadSize(tapConfig);
+		// bound the size of the tables uploaded by URL which may be stored on disk:
+		initMaxDownloadSize();
 
 		// 9. SET A USER IDENTIFIER:
 		initUserIdentifier(tapConfig);
@@ -349,12 +359,99 @@ public final class ConfigurableServiceConnection implements ServiceConnection {
 			}catch(UWSException e){
 				throw new TAPException("The property \"" + KEY_FILE_ROOT_PATH + "\" (" + rootPath + ") is incorrect: " + e.getMessage());
 			}
+
+			// Set the directory in which idle results must be archived, if any:
+			String archivePath = getProperty(tapConfig, KEY_RESULT_ARCHIVE_PATH);
+			if (archivePath != null && !((LocalUWSFileManager)fileManager).setArchiveDirectory(getFile(archivePath, webAppRootDir, KEY_RESULT_ARCHIVE_PATH)))
+				throw new TAPException("The property \"" + KEY_RESULT_ARCHIVE_PATH + "\" (" + archivePath + ") is incorrect: the directory can not be created, read or written!");
+
+			// Configure the fetching of the tables uploaded by URL:
+			initURIFetcher(tapConfig, webAppRootDir, rootFile, (LocalUWSFileManager)fileManager);
 		}
 		// CUSTOM file manager:
 		else
 			fileManager = newInstance(fileManagerType, KEY_FILE_MANAGER, UWSFileManager.class, new Class<?>[]{ Properties.class }, new Object[]{ tapConfig });
 	}
 
+	/**
+	 * Configure the object fetching the tables uploaded by URL in the given local file manager.
+	 *
+	 * @param tapConfig		The content of the TAP configuration file.
+	 * @param webAppRootDir	The directory of the Web Application running this TAP service.
+	 * @param rootFile		The root TAP directory, in which the fetched tables may be cached.
+	 * @param fileManager	The file manager to configure.
+	 *
+	 * @throws TAPException	If a property is wrong.
+	 *
+	 * @since 2.4
+	 */
+	private void initURIFetcher(final Properties tapConfig, final String webAppRootDir, final File rootFile, final LocalUWSFileManager fileManager) throws TAPException{
+		URIFetcher fetcher = fileManager.getURIFetcher();
+
+		// Timeouts and retries:
+		String propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_CONNECT_TIMEOUT);
+		if (propValue != null)
+			fetcher.setConnectTimeout(parseInt(propValue, KEY_UPLOAD_FETCH_CONNECT_TIMEOUT) * 1000);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_READ_TIMEOUT);
+		if (propValue != null)
+			fetcher.setReadTimeout(parseInt(propValue, KEY_UPLOAD_FETCH_READ_TIMEOUT) * 1000);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_RETRIES);
+		if (propValue != null)
+			fetcher.setNbRetries(parseInt(propValue, KEY_UPLOAD_FETCH_RETRIES));
+
+		// Parallel download of large files:
+		propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_PARALLELISM);
+		if (propValue != null)
+			fetcher.setParallelism(parseInt(propValue, KEY_UPLOAD_FETCH_PARALLELISM));
+
+		// Cache of the downloaded files:
+		propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_CACHE_MAX_SIZE);
+		if (propValue != null){
+			Object[] limit = parseLimit(propValue, KEY_UPLOAD_FETCH_CACHE_MAX_SIZE, true, true);
+			if (!LimitUnit.bytes.isCompatibleWith((LimitUnit)limit[1]))
+				throw new TAPException("The property \"" + KEY_UPLOAD_FETCH_CACHE_MAX_SIZE + "\" (here: " + propValue + ") can not be expressed in a unit different from bytes (B, kB, MB, GB)!");
+			long maxSize = (Long)limit[0] * ((LimitUnit)limit[1]).bytesFactor();
+			if (maxSize > 0 && !fetcher.setCache(new File(rootFile, "fetch_cache"), maxSize))
+				throw new TAPException("The property \"" + KEY_UPLOAD_FETCH_CACHE_MAX_SIZE + "\" can not be applied: the cache directory \"" + new File(rootFile, "fetch_cache").getPath() + "\" can not be created, read or written!");
+		}
+
+		// Local directories allowed for "file" URIs:
+		propValue = getProperty(tapConfig, KEY_UPLOAD_FETCH_ALLOWED_DIRS);
+		if (propValue != null){
+			for(String path : propValue.split(",")){
+				if (path.trim().length() == 0)
+					continue;
+				File dir = getFile(path.trim(), webAppRootDir, KEY_UPLOAD_FETCH_ALLOWED_DIRS);
+				try{
+					if (!fetcher.addAllowedDirectory(dir))
+						throw new TAPException("The property \"" + KEY_UPLOAD_FETCH_ALLOWED_DIRS + "\" is incorrect: \"" + path.trim() + "\" is not an existing directory!");
+				}catch(IOException ioe){
+					throw new TAPException("The property \"" + KEY_UPLOAD_FETCH_ALLOWED_DIRS + "\" is incorrect: the path of \"" + path.trim() + "\" can not be resolved! Cause: " + ioe.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse the given value of the specified property as an integer.
+	 *
+	 * @param propValue	The value to parse.
+	 * @param propName	Name of the property.
+	 *
+	 * @return	The parsed integer.
+	 *
+	 * @throws TAPException	If the value is not an integer.
+	 *
+	 * @since 2.4
+	 */
+	private static int parseInt(final String propValue, final String propName) throws TAPException{
+		try{
+			return Integer.parseInt(propValue);
+		}catch(NumberFormatException nfe){
+			throw new TAPException("Integer expected for the property \"" + propName + "\", instead of: \"" + propValue + "\"!");
+		}
+	}
+
 	/**
 	 * <p>Resolve the given file name/path.</p>
 	 *
@@ -1069,6 +1166,28 @@ public final class ConfigurableServiceConnection implements ServiceConnection {
 		}
 	}
 
+	/**
+	 * Bound the size of the tables uploaded by URL which may be downloaded on
+	 * disk (cache or parallel download), so that such download can never
+	 * exceed the upload limits.
+	 *
+	 * <p>
+	 * 	The bound is the maximum upload limit if expressed in bytes, or the
+	 * 	maximum size of an upload request otherwise. Bigger tables are streamed
+	 * 	and then checked by the upload limits while read.
+	 * </p>
+	 *
+	 * @since 2.4
+	 */
+	private void initMaxDownloadSize(){
+		if (!(fileManager instanceof LocalUWSFileManager))
+			return;
+		long maxSize = maxUploadSize;
+		if (uploadLimits[1] > 0 && uploadLimitTypes[1] != null && LimitUnit.bytes.isCompatibleWith(uploadLimitTypes[1]))
+			maxSize = uploadLimits[1] * uploadLimitTypes[1].bytesFactor();
+		((LocalUWSFileManager)fileManager).getURIFetcher().setMaxDownloadSize(maxSize);
+	}
+
 	/**
 	 * Initialize the TAP user identification method.
 	 *
@@ -16,31 +16,83 @@ package tap.config;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2016-2017 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2016-2026 - Astronomisches Rechen Institut (ARI)
  */
 
 import static tap.config.TAPConfiguration.DEFAULT_BACKUP_BY_USER;
 import static tap.config.TAPConfiguration.DEFAULT_BACKUP_FREQUENCY;
+import static tap.config.TAPConfiguration.DEFAULT_BACKUP_FSYNC;
+import static tap.config.TAPConfiguration.DEFAULT_BACKUP_MODE;
+import static tap.config.TAPConfiguration.DEFAULT_BACKUP_RESTORE_BACKGROUND;
+import static tap.config.TAPConfiguration.DEFAULT_BACKUP_RESTORE_THREADS;
+import static tap.config.TAPConfiguration.DEFAULT_CLUSTER_MODE;
+import static tap.config.TAPConfiguration.DEFAULT_JOB_STORE;
+import static tap.config.TAPConfiguration.DEFAULT_VIRTUAL_THREADS;
 import static tap.config.TAPConfiguration.KEY_BACKUP_BY_USER;
 import static tap.config.TAPConfiguration.KEY_BACKUP_FREQUENCY;
+import static tap.config.TAPConfiguration.KEY_BACKUP_FSYNC;
+import static tap.config.TAPConfiguration.KEY_BACKUP_MODE;
+import static tap.config.TAPConfiguration.KEY_BACKUP_RESTORE_BACKGROUND;
+import static tap.config.TAPConfiguration.KEY_BACKUP_RESTORE_THREADS;
+import static tap.config.TAPConfiguration.KEY_CHEAP_JOB_MAX_COST;
+import static tap.config.TAPConfiguration.KEY_CHEAP_JOB_MAX_RESULT_SIZE;
+import static tap.config.TAPConfiguration.KEY_COST_ESTIMATOR;
 import static tap.config.TAPConfiguration.KEY_DATABASE_ACCESS;
 import static tap.config.TAPConfiguration.KEY_DATASOURCE_JNDI_NAME;
 import static tap.config.TAPConfiguration.KEY_DB_PASSWORD;
 import static tap.config.TAPConfiguration.KEY_DB_USERNAME;
 import static tap.config.TAPConfiguration.KEY_JDBC_DRIVER;
 import static tap.config.TAPConfiguration.KEY_JDBC_URL;
+import static tap.config.TAPConfiguration.KEY_CLUSTER_MODE;
+import static tap.config.TAPConfiguration.KEY_CLUSTER_NODE_ID;
+import static tap.config.TAPConfiguration.KEY_JOB_STORE;
+import static tap.config.TAPConfiguration.KEY_RESULT_ARCHIVE_DELAY;
+import static tap.config.TAPConfiguration.KEY_RESULT_COMPRESSION_DELAY;
+import static tap.config.TAPConfiguration.KEY_RESULT_LIFECYCLE_IO_LIMIT;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_BATCH_BYTES;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_BATCH_ROWS;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_BULK_LOADER;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_AUTO_INDEX;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_TABLE_TYPE;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_PARALLELISM;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_CACHE;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_CACHE_MAX_SIZE;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_CACHE_PER_USER;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_CACHE_TTL;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_STREAMING;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_AUTO_INDEX;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_PARALLELISM;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_CACHE_PER_USER;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_CACHE_TTL;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_STREAMING;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_NARROW_TYPES;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_NARROW_SAMPLE;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_NARROW_TYPES;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_NARROW_SAMPLE;
+import static tap.config.TAPConfiguration.KEY_UPLOAD_PIPELINING;
+import static tap.config.TAPConfiguration.DEFAULT_UPLOAD_PIPELINING;
+import static tap.config.TAPConfiguration.KEY_MAX_DB_CONNECTIONS;
+import static tap.config.TAPConfiguration.KEY_MAX_ESTIMATED_COST;
+import static tap.config.TAPConfiguration.KEY_MAX_ESTIMATED_RESULT_SIZE;
 import static tap.config.TAPConfiguration.KEY_SQL_TRANSLATOR;
+import static tap.config.TAPConfiguration.KEY_VIRTUAL_THREADS;
+import static tap.config.TAPConfiguration.VALUE_DUMP;
+import static tap.config.TAPConfiguration.VALUE_EMBEDDED;
+import static tap.config.TAPConfiguration.VALUE_MEMORY;
 import static tap.config.TAPConfiguration.VALUE_JDBC;
 import static tap.config.TAPConfiguration.VALUE_JDBC_DRIVERS;
 import static tap.config.TAPConfiguration.VALUE_JNDI;
+import static tap.config.TAPConfiguration.VALUE_JOURNAL;
 import static tap.config.TAPConfiguration.VALUE_MYSQL;
 import static tap.config.TAPConfiguration.VALUE_NEVER;
+import static tap.config.TAPConfiguration.VALUE_NONE;
 import static tap.config.TAPConfiguration.VALUE_PGSPHERE;
 import static tap.config.TAPConfiguration.VALUE_POSTGRESQL;
 import static tap.config.TAPConfiguration.VALUE_SQLSERVER;
 import static tap.config.TAPConfiguration.VALUE_USER_ACTION;
 import static tap.config.TAPConfiguration.getProperty;
 
+import java.io.File;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -57,16 +109,35 @@ import adql.translator.PgSphereTranslator;
 import adql.translator.PostgreSQLTranslator;
 import adql.translator.SQLServerTranslator;
 import tap.AbstractTAPFactory;
+import tap.CostEstimator;
+import tap.ExecutionBudget;
 import tap.ServiceConnection;
+import tap.ServiceConnection.LimitUnit;
 import tap.TAPException;
 import tap.TAPFactory;
+import tap.TAPRequestParser;
 import tap.backup.DefaultTAPBackupManager;
 import tap.db.DBConnection;
 import tap.db.JDBCConnection;
+import tap.db.UploadBulkLoader;
+import tap.upload.UploadCache;
+import tap.upload.Uploader;
 import uws.UWSException;
+import uws.job.JobList;
+import uws.job.VirtualThreads;
+import uws.job.manager.ClusterExecutionManager;
+import uws.job.manager.ExecutionManager;
 import uws.service.UWSService;
+import uws.service.backup.FrozenJobStore;
+import uws.service.backup.JDBCJobStore;
+import uws.service.backup.JobStore;
+import uws.service.backup.JournalUWSBackupManager;
 import uws.service.backup.UWSBackupManager;
+import uws.service.file.LocalUWSFileManager;
+import uws.service.file.ResultLifecycleManager;
+import uws.service.file.UWSFileManager;
 import uws.service.log.UWSLog.LogLevel;
+import uws.service.request.RequestParser;
 
 /**
  * <p>Concrete implementation of a {@link TAPFactory} which is parameterized by a TAP configuration file.</p>
@@ -74,11 +145,11 @@ import uws.service.log.UWSLog.LogLevel;
  * <p>
  * 	All abstract or NULL-implemented methods/functions left by {@link AbstractTAPFactory} are implemented using values
  *  of a TAP configuration file. The concerned methods are: {@link #getConnection(String)}, {@link #freeConnection(DBConnection)},
- *  {@link #destroy()}, {@link #createADQLTranslator()} and {@link #createUWSBackupManager(UWSService)}.
+ *  {@link #destroy()}, {@link #createADQLTranslator()}, {@link #createUWSBackupManager(UWSService)} and {@link #getExecutionBudget()}.
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (ARI)
- * @version 2.1 (08/2017)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public class ConfigurableTAPFactory extends AbstractTAPFactory {
@@ -112,6 +183,81 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 	protected boolean backupByUser;
 	/** Frequency at which the jobs must be backuped. */
 	protected long backupFrequency;
+	/** Indicate whether the jobs must be backuped in a journal (<i>true</i>) or regularly dumped (<i>false</i>).
+	 * @since 2.4 */
+	protected boolean backupJournal;
+	/** Policy forcing the backup journal on the disk (only if {@link #backupJournal} is <i>true</i>).
+	 * @since 2.4 */
+	protected JournalUWSBackupManager.FsyncPolicy backupFsync;
+	/** Maximum number of threads reading simultaneously the backup files at restoration.
+	 * @since 2.4 */
+	protected int backupRestoreThreads;
+	/** Indicate whether the jobs must be restored in background.
+	 * @since 2.4 */
+	protected boolean backupRestoreBackground;
+	/** JDBC URL of the database in which the finished jobs must be stored.
+	 * <em>NULL if all jobs must stay in memory.</em>
+	 * @since 2.4 */
+	protected String jobStoreUrl = null;
+	/** Indicate whether the finished jobs must be kept in memory in a compact form.
+	 * @since 2.4 */
+	protected boolean jobStoreInMemory = false;
+	/** Indicate whether the asynchronous jobs are executed by a cluster of TAP services.
+	 * @since 2.4 */
+	protected boolean clusterMode = false;
+	/** ID of this TAP service in the cluster. <em>NULL to use the name of the JVM.</em>
+	 * @since 2.4 */
+	protected String clusterNodeId = null;
+
+	/* Result lifecycle: */
+	/** Idle time (in milliseconds) after which a result file is gzipped. <em>Never if negative.</em>
+	 * @since 2.4 */
+	protected long resultCompressionDelay = -1;
+	/** Idle time (in milliseconds) after which a result file is archived. <em>Never if negative.</em>
+	 * @since 2.4 */
+	protected long resultArchiveDelay = -1;
+	/** Maximum number of bytes read per second while compressing or archiving result files. <em>No limit if negative.</em>
+	 * @since 2.4 */
+	protected long resultIOLimit = -1;
+
+	/** Maximum number of uploaded rows inserted in one batch.
+	 * @since 2.4 */
+	protected int uploadBatchRows = JDBCConnection.DEFAULT_UPLOAD_BATCH_ROWS;
+	/** Maximum amount of bytes of uploaded rows inserted in one batch.
+	 * @since 2.4 */
+	protected long uploadBatchBytes = JDBCConnection.DEFAULT_UPLOAD_BATCH_BYTES;
+	/** Indicate whether the next batch of uploaded rows is read while the previous one is inserted.
+	 * @since 2.4 */
+	protected boolean uploadPipelining = DEFAULT_UPLOAD_PIPELINING;
+	/** How the uploaded rows must be bulk-loaded: NULL for the default loader of the connection,
+	 * {@link TAPConfiguration#VALUE_NONE} to always use batch updates, or the class name of an {@link UploadBulkLoader}.
+	 * @since 2.4 */
+	protected String uploadBulkLoader = null;
+	/** Kind of table to create for the uploaded tables.
+	 * @since 2.4 */
+	protected JDBCConnection.UploadTableType uploadTableType = JDBCConnection.UploadTableType.REGULAR;
+	/** Indicate whether the columns of the uploaded tables used in join or WHERE conditions must be indexed.
+	 * @since 2.4 */
+	protected boolean uploadAutoIndex = DEFAULT_UPLOAD_AUTO_INDEX;
+	/** Maximum number of uploaded tables read and loaded at the same time.
+	 * @since 2.4 */
+	protected int uploadParallelism = DEFAULT_UPLOAD_PARALLELISM;
+	/** Cache of the uploaded tables shared by all jobs. <em>NULL if the uploaded tables are not cached.</em>
+	 * @since 2.4 */
+	protected UploadCache uploadCache = null;
+	/** Indicate whether the files uploaded in a synchronous request are read directly from the request body.
+	 * @since 2.4 */
+	protected boolean uploadStreaming = DEFAULT_UPLOAD_STREAMING;
+	/** Number of rows read to narrow the declared column types of the uploaded tables.
+	 * <i>0 if the declared types are kept.</i>
+	 * @since 2.4 */
+	protected int uploadNarrowSample = 0;
+
+	/* Execution budget: */
+	/** Resource budget shared by all synchronous and asynchronous queries.
+	 * <em>NULL if no budget limit is set in the TAP configuration file.</em>
+	 * @since 2.4 */
+	protected ExecutionBudget executionBudget = null;
 
 	/**
 	 * Build a {@link TAPFactory} using the given TAP service description and TAP configuration file.
@@ -250,6 +396,249 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 		// Specify whether the backup must be organized by user or not:
 		propValue = getProperty(tapConfig, KEY_BACKUP_BY_USER);
 		backupByUser = (propValue == null) ? DEFAULT_BACKUP_BY_USER : Boolean.parseBoolean(propValue);
+		// Specify whether the backup must be a journal or a regular dump:
+		propValue = getProperty(tapConfig, KEY_BACKUP_MODE);
+		if (propValue == null)
+			propValue = DEFAULT_BACKUP_MODE;
+		if (propValue.equalsIgnoreCase(VALUE_JOURNAL))
+			backupJournal = true;
+		else if (propValue.equalsIgnoreCase(VALUE_DUMP))
+			backupJournal = false;
+		else
+			throw new TAPException("Unknown value for the property \"" + KEY_BACKUP_MODE + "\": \"" + propValue + "\"! Only \"" + VALUE_DUMP + "\" or \"" + VALUE_JOURNAL + "\" are allowed.");
+		if (backupJournal){
+			if (backupFrequency == DefaultTAPBackupManager.AT_USER_ACTION)
+				throw new TAPException("The value \"" + VALUE_USER_ACTION + "\" of the property \"" + KEY_BACKUP_FREQUENCY + "\" can not be used with \"" + KEY_BACKUP_MODE + "=" + VALUE_JOURNAL + "\"!");
+			propValue = getProperty(tapConfig, KEY_BACKUP_FSYNC);
+			if (propValue == null)
+				propValue = DEFAULT_BACKUP_FSYNC;
+			try{
+				backupFsync = JournalUWSBackupManager.FsyncPolicy.valueOf(propValue.toUpperCase());
+			}catch(IllegalArgumentException iae){
+				throw new TAPException("Unknown value for the property \"" + KEY_BACKUP_FSYNC + "\": \"" + propValue + "\"! Only \"always\", \"periodic\" or \"never\" are allowed.");
+			}
+		}
+		// Specify how the jobs must be restored:
+		propValue = getProperty(tapConfig, KEY_BACKUP_RESTORE_THREADS);
+		if (propValue == null)
+			backupRestoreThreads = DEFAULT_BACKUP_RESTORE_THREADS;
+		else{
+			try{
+				backupRestoreThreads = Integer.parseInt(propValue);
+			}catch(NumberFormatException nfe){
+				throw new TAPException("Integer expected for the property \"" + KEY_BACKUP_RESTORE_THREADS + "\", instead of: \"" + propValue + "\"!");
+			}
+			if (backupRestoreThreads < 1)
+				throw new TAPException("Incorrect value for the property \"" + KEY_BACKUP_RESTORE_THREADS + "\": \"" + propValue + "\"! It must be a positive integer.");
+		}
+		propValue = getProperty(tapConfig, KEY_BACKUP_RESTORE_BACKGROUND);
+		backupRestoreBackground = (propValue == null) ? DEFAULT_BACKUP_RESTORE_BACKGROUND : Boolean.parseBoolean(propValue);
+		// Specify where the finished jobs must be stored:
+		propValue = getProperty(tapConfig, KEY_JOB_STORE);
+		if (propValue == null)
+			propValue = DEFAULT_JOB_STORE;
+		if (propValue.equalsIgnoreCase(VALUE_NONE))
+			jobStoreUrl = null;
+		else if (propValue.equalsIgnoreCase(VALUE_MEMORY))
+			jobStoreInMemory = true;
+		else if (propValue.equalsIgnoreCase(VALUE_EMBEDDED)){
+			if (!(service.getFileManager() instanceof LocalUWSFileManager))
+				throw new TAPException("Impossible to create an embedded job store: the UWS file manager is not a LocalUWSFileManager!");
+			jobStoreUrl = "jdbc:h2:" + new File(((LocalUWSFileManager)service.getFileManager()).getOwnerDirectory(null), "uws_jobs").getAbsolutePath();
+		}else if (propValue.toLowerCase().startsWith("jdbc:"))
+			jobStoreUrl = propValue;
+		else
+			throw new TAPException("Unknown value for the property \"" + KEY_JOB_STORE + "\": \"" + propValue + "\"! Only \"" + VALUE_NONE + "\", \"" + VALUE_MEMORY + "\", \"" + VALUE_EMBEDDED + "\" or a JDBC URL are allowed.");
+		/* note: the restoration of a backup starts by destroying all jobs, and
+		 *       so, would also destroy all the stored jobs: */
+		if (jobStoreUrl != null && (backupJournal || backupFrequency != DefaultTAPBackupManager.MANUAL))
+			throw new TAPException("The property \"" + KEY_JOB_STORE + "\" can be used only with \"" + KEY_BACKUP_FREQUENCY + "=" + VALUE_NEVER + "\" and \"" + KEY_BACKUP_MODE + "=" + VALUE_DUMP + "\"!");
+		/* note: the frozen jobs are still saved by a dump backup, but the
+		 *       journal does not follow their modifications: */
+		else if (jobStoreInMemory && backupJournal)
+			throw new TAPException("The property \"" + KEY_JOB_STORE + "=" + VALUE_MEMORY + "\" can be used only with \"" + KEY_BACKUP_MODE + "=" + VALUE_DUMP + "\"!");
+		// Share the jobs and their execution with the other nodes of a cluster, if asked:
+		propValue = getProperty(tapConfig, KEY_CLUSTER_MODE);
+		clusterMode = (propValue == null) ? DEFAULT_CLUSTER_MODE : Boolean.parseBoolean(propValue);
+		if (clusterMode){
+			if (jobStoreUrl == null)
+				throw new TAPException("The property \"" + KEY_CLUSTER_MODE + "\" requires a database job store (\"" + KEY_JOB_STORE + "=" + VALUE_EMBEDDED + "\" or a JDBC URL)!");
+			/* note: an embedded H2 database must be accessible by the other
+			 *       JVMs of the cluster: */
+			if (VALUE_EMBEDDED.equalsIgnoreCase(getProperty(tapConfig, KEY_JOB_STORE)))
+				jobStoreUrl += ";AUTO_SERVER=TRUE";
+			clusterNodeId = getProperty(tapConfig, KEY_CLUSTER_NODE_ID);
+		}
+		// Compress and/or archive the idle result files, if asked:
+		resultCompressionDelay = parseLong(tapConfig, KEY_RESULT_COMPRESSION_DELAY);
+		resultArchiveDelay = parseLong(tapConfig, KEY_RESULT_ARCHIVE_DELAY);
+		resultIOLimit = parseBytes(tapConfig, KEY_RESULT_LIFECYCLE_IO_LIMIT);
+		if (resultCompressionDelay > 0 || resultArchiveDelay > 0){
+			if (!(service.getFileManager() instanceof LocalUWSFileManager))
+				throw new TAPException("The properties \"" + KEY_RESULT_COMPRESSION_DELAY + "\" and \"" + KEY_RESULT_ARCHIVE_DELAY + "\" can be used only with a LocalUWSFileManager!");
+			else if (resultArchiveDelay > 0 && ((LocalUWSFileManager)service.getFileManager()).getArchiveDirectory() == null)
+				throw new TAPException("The property \"" + KEY_RESULT_ARCHIVE_DELAY + "\" requires the property \"" + TAPConfiguration.KEY_RESULT_ARCHIVE_PATH + "\"!");
+			resultCompressionDelay = (resultCompressionDelay > 0) ? resultCompressionDelay * 1000 : -1;
+			resultArchiveDelay = (resultArchiveDelay > 0) ? resultArchiveDelay * 1000 : -1;
+		}
+		// Size of the batches inserting the uploaded rows:
+		propValue = getProperty(tapConfig, KEY_UPLOAD_BATCH_ROWS);
+		if (propValue != null){
+			try{
+				uploadBatchRows = Integer.parseInt(propValue);
+			}catch(NumberFormatException nfe){
+				throw new TAPException("Integer expected for the property \"" + KEY_UPLOAD_BATCH_ROWS + "\", instead of: \"" + propValue + "\"!");
+			}
+		}
+		if (getProperty(tapConfig, KEY_UPLOAD_BATCH_BYTES) != null)
+			uploadBatchBytes = parseBytes(tapConfig, KEY_UPLOAD_BATCH_BYTES);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_PIPELINING);
+		uploadPipelining = (propValue == null) ? DEFAULT_UPLOAD_PIPELINING : Boolean.parseBoolean(propValue);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_TABLE_TYPE);
+		if (propValue != null){
+			try{
+				uploadTableType = JDBCConnection.UploadTableType.valueOf(propValue.toUpperCase());
+			}catch(IllegalArgumentException iae){
+				throw new TAPException("Unsupported value for the property \"" + KEY_UPLOAD_TABLE_TYPE + "\": \"" + propValue + "\"! Allowed values: regular, unlogged or temporary.");
+			}
+		}
+		propValue = getProperty(tapConfig, KEY_UPLOAD_AUTO_INDEX);
+		uploadAutoIndex = (propValue == null) ? DEFAULT_UPLOAD_AUTO_INDEX : Boolean.parseBoolean(propValue);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_PARALLELISM);
+		if (propValue != null){
+			try{
+				uploadParallelism = Integer.parseInt(propValue);
+			}catch(NumberFormatException nfe){
+				throw new TAPException("Integer expected for the property \"" + KEY_UPLOAD_PARALLELISM + "\", instead of: \"" + propValue + "\"!");
+			}
+		}
+		propValue = getProperty(tapConfig, KEY_UPLOAD_CACHE);
+		if (propValue != null && Boolean.parseBoolean(propValue)){
+			long ttl = (getProperty(tapConfig, KEY_UPLOAD_CACHE_TTL) == null) ? DEFAULT_UPLOAD_CACHE_TTL : parseLong(tapConfig, KEY_UPLOAD_CACHE_TTL);
+			propValue = getProperty(tapConfig, KEY_UPLOAD_CACHE_PER_USER);
+			uploadCache = new UploadCache((ttl < 0) ? -1 : ttl * 1000, parseBytes(tapConfig, KEY_UPLOAD_CACHE_MAX_SIZE), (propValue == null) ? DEFAULT_UPLOAD_CACHE_PER_USER : Boolean.parseBoolean(propValue), service.getLogger());
+		}
+		propValue = getProperty(tapConfig, KEY_UPLOAD_STREAMING);
+		uploadStreaming = (propValue == null) ? DEFAULT_UPLOAD_STREAMING : Boolean.parseBoolean(propValue);
+		propValue = getProperty(tapConfig, KEY_UPLOAD_NARROW_TYPES);
+		if ((propValue == null) ? DEFAULT_UPLOAD_NARROW_TYPES : Boolean.parseBoolean(propValue)){
+			propValue = getProperty(tapConfig, KEY_UPLOAD_NARROW_SAMPLE);
+			try{
+				uploadNarrowSample = (propValue == null) ? DEFAULT_UPLOAD_NARROW_SAMPLE : Integer.parseInt(propValue);
+			}catch(NumberFormatException nfe){
+				throw new TAPException("Integer expected for the property \"" + KEY_UPLOAD_NARROW_SAMPLE + "\", instead of: \"" + propValue + "\"!");
+			}
+			if (uploadNarrowSample <= 0)
+				throw new TAPException("The property \"" + KEY_UPLOAD_NARROW_SAMPLE + "\" must be a positive integer, instead of: \"" + propValue + "\"!");
+		}
+		uploadBulkLoader = getProperty(tapConfig, KEY_UPLOAD_BULK_LOADER);
+		if (uploadBulkLoader != null && !uploadBulkLoader.equalsIgnoreCase(VALUE_NONE))
+			TAPConfiguration.newInstance(uploadBulkLoader, KEY_UPLOAD_BULK_LOADER, UploadBulkLoader.class);
+
+		/* 6. Set the execution budget shared by sync and async queries */
+		initExecutionBudget(tapConfig);
+
+		/* 7. Run queries on virtual threads, if asked */
+		propValue = getProperty(tapConfig, KEY_VIRTUAL_THREADS);
+		VirtualThreads.setEnabled((propValue == null) ? DEFAULT_VIRTUAL_THREADS : Boolean.parseBoolean(propValue));
+	}
+
+	/**
+	 * Build the {@link ExecutionBudget} shared by all queries thanks to the
+	 * properties max_db_connections, max_estimated_result_size,
+	 * max_estimated_cost, cost_estimator, cheap_job_max_result_size and
+	 * cheap_job_max_cost.
+	 *
+	 * <p><i>Note:
+	 * 	If none of these properties is set, no execution budget is created.
+	 * </i></p>
+	 *
+	 * @param tapConfig	The content of the TAP configuration file.
+	 *
+	 * @throws TAPException	If one of these properties has a wrong value.
+	 *
+	 * @since 2.4
+	 */
+	protected void initExecutionBudget(final Properties tapConfig) throws TAPException{
+		// Read all the limits:
+		int maxConnections = ExecutionBudget.NO_LIMIT;
+		String propValue = getProperty(tapConfig, KEY_MAX_DB_CONNECTIONS);
+		if (propValue != null){
+			try{
+				maxConnections = Integer.parseInt(propValue);
+			}catch(NumberFormatException nfe){
+				throw new TAPException("Integer expected for the property \"" + KEY_MAX_DB_CONNECTIONS + "\", instead of: \"" + propValue + "\"!");
+			}
+		}
+		long maxResultSize = parseBytes(tapConfig, KEY_MAX_ESTIMATED_RESULT_SIZE);
+		long maxCost = parseLong(tapConfig, KEY_MAX_ESTIMATED_COST);
+		long cheapResultSize = parseBytes(tapConfig, KEY_CHEAP_JOB_MAX_RESULT_SIZE);
+		long cheapCost = parseLong(tapConfig, KEY_CHEAP_JOB_MAX_COST);
+
+		// Create the cost estimator, if any:
+		CostEstimator costEstimator = null;
+		propValue = getProperty(tapConfig, KEY_COST_ESTIMATOR);
+		if (propValue != null)
+			costEstimator = TAPConfiguration.newInstance(propValue, KEY_COST_ESTIMATOR, CostEstimator.class);
+
+		// Create the budget only if at least one limit is set:
+		if (maxConnections > 0 || maxResultSize > 0 || (costEstimator != null && maxCost > 0) || cheapResultSize >= 0){
+			executionBudget = new ExecutionBudget(service, maxConnections, maxResultSize, maxCost);
+			executionBudget.setCostEstimator(costEstimator);
+			executionBudget.setCheapThresholds(cheapResultSize, cheapCost);
+		}else
+			executionBudget = null;
+	}
+
+	/**
+	 * Parse the specified property as an amount of bytes (e.g. 10MB).
+	 *
+	 * @param tapConfig	The content of the TAP configuration file.
+	 * @param key		Name of the property to parse.
+	 *
+	 * @return	The amount of bytes, or -1 if the property is not set.
+	 *
+	 * @throws TAPException	If the value is not an amount of bytes.
+	 *
+	 * @since 2.4
+	 */
+	private static long parseBytes(final Properties tapConfig, final String key) throws TAPException{
+		String propValue = getProperty(tapConfig, key);
+		if (propValue == null)
+			return -1;
+		Object[] limit = TAPConfiguration.parseLimit(propValue, key, true, true);
+		if (limit[1] == LimitUnit.rows)
+			throw new TAPException("An amount of bytes is expected for the property \"" + key + "\" (e.g. 100kB, 2GB), instead of: \"" + propValue + "\"!");
+		long value = (Long)limit[0];
+		return (value < 0) ? -1 : value * ((LimitUnit)limit[1]).bytesFactor();
+	}
+
+	/**
+	 * Parse the specified property as a long.
+	 *
+	 * @param tapConfig	The content of the TAP configuration file.
+	 * @param key		Name of the property to parse.
+	 *
+	 * @return	The parsed value, or -1 if the property is not set.
+	 *
+	 * @throws TAPException	If the value is not a long.
+	 *
+	 * @since 2.4
+	 */
+	private static long parseLong(final Properties tapConfig, final String key) throws TAPException{
+		String propValue = getProperty(tapConfig, key);
+		if (propValue == null)
+			return -1;
+		try{
+			return Long.parseLong(propValue);
+		}catch(NumberFormatException nfe){
+			throw new TAPException("Long expected for the property \"" + key + "\", instead of: \"" + propValue + "\"!");
+		}
+	}
+
+	@Override
+	public ExecutionBudget getExecutionBudget(){
+		return executionBudget;
 	}
 
 	/**
@@ -282,12 +671,68 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 	public DBConnection getConnection(String jobID) throws TAPException{
 		if (datasource != null){
 			try{
-				return new JDBCConnection(datasource.getConnection(), createADQLTranslator(), jobID, this.service.getLogger());
+				return configureConnection(new JDBCConnection(datasource.getConnection(), createADQLTranslator(), jobID, this.service.getLogger()));
 			}catch(SQLException se){
 				throw new TAPException("Impossible to establish a connection to the database using the set up datasource!", se);
 			}
 		}else
-			return new JDBCConnection(driverPath, dbUrl, dbUser, dbPassword, createADQLTranslator(), jobID, this.service.getLogger());
+			return configureConnection(new JDBCConnection(driverPath, dbUrl, dbUser, dbPassword, createADQLTranslator(), jobID, this.service.getLogger()));
+	}
+
+	/**
+	 * Apply the upload properties of the TAP configuration file
+	 * (upload_batch_rows, upload_batch_bytes, upload_pipelining, upload_bulk_loader,
+	 * upload_table_type and upload_auto_index)
+	 * to the given connection.
+	 *
+	 * @param conn	The connection to configure.
+	 *
+	 * @return	The given connection.
+	 *
+	 * @throws TAPException	If the bulk loader can not be created.
+	 *
+	 * @since 2.4
+	 */
+	protected JDBCConnection configureConnection(final JDBCConnection conn) throws TAPException{
+		conn.setUploadBatchSize(uploadBatchRows, uploadBatchBytes);
+		conn.setUploadPipelining(uploadPipelining);
+		conn.setUploadTableType(uploadTableType);
+		conn.setUploadAutoIndex(uploadAutoIndex);
+		if (uploadBulkLoader != null)
+			conn.setUploadBulkLoader(uploadBulkLoader.equalsIgnoreCase(VALUE_NONE) ? null : TAPConfiguration.newInstance(uploadBulkLoader, KEY_UPLOAD_BULK_LOADER, UploadBulkLoader.class));
+		return conn;
+	}
+
+	/**
+	 * Build the {@link TAPRequestParser} of {@link TAPFactory}, reading the
+	 * files uploaded in a synchronous request directly from the request body
+	 * if enabled with the property upload_streaming.
+	 *
+	 * @see tap.TAPFactory#createRequestParser(uws.service.file.UWSFileManager)
+	 */
+	@Override
+	public RequestParser createRequestParser(final UWSFileManager fileManager) throws UWSException{
+		RequestParser parser = super.createRequestParser(fileManager);
+		if (parser instanceof TAPRequestParser)
+			((TAPRequestParser)parser).setStreamingUploads(uploadStreaming);
+		return parser;
+	}
+
+	/**
+	 * Build an {@link Uploader} loading at most as many tables at the same time
+	 * as specified by the property upload_parallelism, using the upload cache
+	 * (if enabled with the property upload_cache) and narrowing the column types
+	 * (if enabled with the property upload_narrow_types).
+	 *
+	 * @see tap.AbstractTAPFactory#createUploader(tap.db.DBConnection)
+	 */
+	@Override
+	public Uploader createUploader(final DBConnection dbConn) throws TAPException{
+		Uploader uploader = super.createUploader(dbConn);
+		uploader.setParallelism(uploadParallelism);
+		uploader.setCache(uploadCache);
+		uploader.setTypeNarrowingSample(uploadNarrowSample);
+		return uploader;
 	}
 
 	@Override
@@ -304,6 +749,20 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 
 	@Override
 	public void destroy(){
+		// Drop all the cached upload tables:
+		if (uploadCache != null){
+			try{
+				DBConnection dbConn = getConnection("UPLOAD_CACHE");
+				try{
+					uploadCache.clear(dbConn);
+				}finally{
+					freeConnection(dbConn);
+				}
+			}catch(TAPException te){
+				service.getLogger().logTAP(LogLevel.ERROR, null, "STOP", "Impossible to drop the cached upload tables!", te);
+			}
+		}
+
 		// Unregister the JDBC driver, only if registered by the library (i.e. database_access=jdbc):
 		if (dbUrl != null){
 			// Now deregister JDBC drivers in this context's ClassLoader:
@@ -332,7 +791,12 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 	 *
 	 * Note: If the specified backup_frequency is negative, no backup manager is returned.
 	 *
-	 * @return	null if the specified backup frequency is negative, or an instance of {@link DefaultTAPBackupManager} otherwise.
+	 * Note: If backup_mode=journal, a {@link JournalUWSBackupManager} writing in the sub-directory
+	 *       "journal" of the root directory is returned ; backup_frequency is then the frequency of
+	 *       its snapshots ("never" meaning: only when the service stops or when the journal is too big).
+	 *
+	 * @return	null if the specified backup frequency is negative, or an instance of {@link DefaultTAPBackupManager}
+	 *        	(or {@link JournalUWSBackupManager}) otherwise.
 	 *
 	 * @see tap.AbstractTAPFactory#createUWSBackupManager(uws.service.UWSService)
 	 * @see DefaultTAPBackupManager
@@ -340,10 +804,98 @@ public class ConfigurableTAPFactory extends AbstractTAPFactory {
 	@Override
 	public UWSBackupManager createUWSBackupManager(UWSService uws) throws TAPException{
 		try{
-			return (backupFrequency < 0) ? null : new DefaultTAPBackupManager(uws, backupByUser, backupFrequency);
+			if (backupJournal){
+				if (!(uws.getFileManager() instanceof LocalUWSFileManager))
+					throw new TAPException("Impossible to create a backup journal: the UWS file manager is not a LocalUWSFileManager!");
+				File directory = new File(((LocalUWSFileManager)uws.getFileManager()).getOwnerDirectory(null), "journal");
+				return new JournalUWSBackupManager(uws, new DefaultTAPBackupManager(uws, DefaultTAPBackupManager.MANUAL), directory, backupFsync, backupFrequency);
+			}
+			if (backupFrequency < 0)
+				return null;
+			DefaultTAPBackupManager backupManager = new DefaultTAPBackupManager(uws, backupByUser, backupFrequency);
+			backupManager.setRestoreThreads(backupRestoreThreads);
+			backupManager.setBackgroundRestoration(backupRestoreBackground);
+			return backupManager;
 		}catch(UWSException ex){
 			throw new TAPException("Impossible to create a backup manager, because: " + ex.getMessage(), ex);
 		}
 	}
 
+	/**
+	 * Build a {@link ClusterExecutionManager} if the property cluster_mode is true.
+	 *
+	 * Note: The queue of jobs is then stored in the same database as the jobs (see the property job_store),
+	 *       and at most max_async_jobs jobs run simultaneously on this node.
+	 *
+	 * @return	null if cluster_mode=false (i.e. local queue), an instance of {@link ClusterExecutionManager} otherwise.
+	 *
+	 * @see tap.TAPFactory#createExecutionManager(uws.job.JobList)
+	 *
+	 * @since 2.4
+	 */
+	@Override
+	public ExecutionManager createExecutionManager(final JobList jobList) throws TAPException{
+		if (!clusterMode)
+			return null;
+		try{
+			return new ClusterExecutionManager(jobList, service.getLogger(), jobStoreUrl, null, null, clusterNodeId, service.getNbMaxAsyncJobs(), ClusterExecutionManager.DEFAULT_LEASE_DURATION);
+		}catch(UWSException ex){
+			throw new TAPException("Impossible to create a cluster execution manager, because: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Build a {@link ResultLifecycleManager} if the property result_compression_delay or result_archive_delay is set.
+	 *
+	 * Note: The results are then archived in the directory result_archive_path and all copies are limited
+	 *       by the property result_lifecycle_io_limit.
+	 *
+	 * @return	null if neither result_compression_delay nor result_archive_delay is set,
+	 *        	an instance of {@link ResultLifecycleManager} otherwise.
+	 *
+	 * @see tap.TAPFactory#createResultLifecycleManager(uws.service.UWSService)
+	 *
+	 * @since 2.4
+	 */
+	@Override
+	public ResultLifecycleManager createResultLifecycleManager(final UWSService uws) throws TAPException{
+		if (resultCompressionDelay <= 0 && resultArchiveDelay <= 0)
+			return null;
+		ResultLifecycleManager manager = new ResultLifecycleManager(uws, (LocalUWSFileManager)service.getFileManager());
+		manager.setCompressionDelay(resultCompressionDelay);
+		manager.setArchiveDelay(resultArchiveDelay);
+		manager.setMaxBytesPerSecond(resultIOLimit);
+		return manager;
+	}
+
+	/**
+	 * Build a {@link JDBCJobStore} or a {@link FrozenJobStore} thanks to the property job_store.
+	 *
+	 * Note: If job_store=none, no job store is returned.
+	 *
+	 * Note: If job_store=memory, the finished jobs are kept in memory in a compact form ({@link FrozenJobStore}).
+	 *
+	 * Note: If job_store=embedded, the jobs are stored in an H2 database created in the root directory
+	 *       (the H2 driver must then be available in the classpath).
+	 *
+	 * @return	null if job_store=none, an instance of {@link FrozenJobStore} if job_store=memory,
+	 *        	or an instance of {@link JDBCJobStore} otherwise.
+	 *
+	 * @see tap.TAPFactory#createJobStore(uws.service.UWSService)
+	 *
+	 * @since 2.4
+	 */
+	@Override
+	public JobStore createJobStore(final UWSService uws) throws TAPException{
+		if (jobStoreInMemory)
+			return new FrozenJobStore(uws, new DefaultTAPBackupManager(uws, DefaultTAPBackupManager.MANUAL));
+		else if (jobStoreUrl == null)
+			return null;
+		try{
+			return new JDBCJobStore(uws, new DefaultTAPBackupManager(uws, DefaultTAPBackupManager.MANUAL), jobStoreUrl, null, null);
+		}catch(UWSException ex){
+			throw new TAPException("Impossible to create a job store, because: " + ex.getMessage(), ex);
+		}
+	}
+
 }
@@ -16,7 +16,7 @@ package tap.config;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2015-2019 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2015-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -41,7 +41,7 @@ import tap.backup.DefaultTAPBackupManager;
  * </i></p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (03/2019)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public final class TAPConfiguration {
@@ -75,6 +75,23 @@ public final class TAPConfiguration {
 	public final static String KEY_GROUP_USER_DIRECTORIES = "group_user_directories";
 	/** Default value of the property {@link #KEY_GROUP_USER_DIRECTORIES}: {@value #DEFAULT_GROUP_USER_DIRECTORIES}. */
 	public final static boolean DEFAULT_GROUP_USER_DIRECTORIES = false;
+	/** Name/Key of the property setting the local directory in which the idle result files must be archived
+	 * (see {@link #KEY_RESULT_ARCHIVE_DELAY}).
+	 * <em>This property is used only if {@link #KEY_FILE_MANAGER} is set to {@link #VALUE_LOCAL}.</em>
+	 * @since 2.4 */
+	public final static String KEY_RESULT_ARCHIVE_PATH = "result_archive_path";
+	/** Name/Key of the property specifying the idle time (in seconds) after which a result file is gzipped.
+	 * <em>This property is used only if {@link #KEY_FILE_MANAGER} is set to {@link #VALUE_LOCAL}.</em>
+	 * @since 2.4 */
+	public final static String KEY_RESULT_COMPRESSION_DELAY = "result_compression_delay";
+	/** Name/Key of the property specifying the idle time (in seconds) after which a result file is moved into
+	 * the directory {@link #KEY_RESULT_ARCHIVE_PATH}.
+	 * @since 2.4 */
+	public final static String KEY_RESULT_ARCHIVE_DELAY = "result_archive_delay";
+	/** Name/Key of the property limiting the amount of bytes read per second while compressing or archiving
+	 * result files (e.g. 10MB).
+	 * @since 2.4 */
+	public final static String KEY_RESULT_LIFECYCLE_IO_LIMIT = "result_lifecycle_io_limit";
 	/** Name/Key of the property specifying the default period (in seconds) while a job must remain on the server.
 	 * This value is set automatically to any job whose the retention period has never been specified by the user. */
 	public final static String KEY_DEFAULT_RETENTION_PERIOD = "default_retention_period";
@@ -126,6 +143,69 @@ public final class TAPConfiguration {
 	/** Default value of the property {@link #KEY_BACKUP_BY_USER}: {@value #DEFAULT_BACKUP_BY_USER}.
 	 * This property can be enabled only if a user identification method is provided. */
 	public final static boolean DEFAULT_BACKUP_BY_USER = false;
+	/** Name/Key of the property specifying how jobs are backuped: "dump" (default ; all jobs are regularly
+	 * written in a backup file) or "journal" (each job modification is appended in a journal which is regularly
+	 * compacted into a snapshot ; the property {@link #KEY_BACKUP_FREQUENCY} is then the snapshot frequency).
+	 * @since 2.4 */
+	public final static String KEY_BACKUP_MODE = "backup_mode";
+	/** Value of the property {@link #KEY_BACKUP_MODE} asking a regular dump of all jobs.
+	 * @since 2.4 */
+	public final static String VALUE_DUMP = "dump";
+	/** Value of the property {@link #KEY_BACKUP_MODE} asking a journal of all job modifications.
+	 * @since 2.4 */
+	public final static String VALUE_JOURNAL = "journal";
+	/** Default value of the property {@link #KEY_BACKUP_MODE}: {@value #DEFAULT_BACKUP_MODE}.
+	 * @since 2.4 */
+	public final static String DEFAULT_BACKUP_MODE = VALUE_DUMP;
+	/** Name/Key of the property specifying when the journal must be forced on the disk (only if
+	 * {@link #KEY_BACKUP_MODE}=journal): "always" (after each write), "periodic" (at most every second)
+	 * or "never" (decided by the operating system).
+	 * @since 2.4 */
+	public final static String KEY_BACKUP_FSYNC = "backup_fsync";
+	/** Default value of the property {@link #KEY_BACKUP_FSYNC}: {@value #DEFAULT_BACKUP_FSYNC}.
+	 * @since 2.4 */
+	public final static String DEFAULT_BACKUP_FSYNC = "periodic";
+	/** Name/Key of the property specifying the maximum number of threads reading simultaneously the backup
+	 * files when restoring the jobs (only if {@link #KEY_BACKUP_BY_USER}=true and {@link #KEY_BACKUP_MODE}=dump).
+	 * @since 2.4 */
+	public final static String KEY_BACKUP_RESTORE_THREADS = "backup_restore_threads";
+	/** Default value of the property {@link #KEY_BACKUP_RESTORE_THREADS}: {@value #DEFAULT_BACKUP_RESTORE_THREADS}
+	 * (i.e. sequential restoration).
+	 * @since 2.4 */
+	public final static int DEFAULT_BACKUP_RESTORE_THREADS = 1;
+	/** Name/Key of the property indicating whether the jobs must be restored in background, so that the
+	 * service accepts new jobs before all former jobs are restored (only if {@link #KEY_BACKUP_MODE}=dump).
+	 * @since 2.4 */
+	public final static String KEY_BACKUP_RESTORE_BACKGROUND = "backup_restore_background";
+	/** Default value of the property {@link #KEY_BACKUP_RESTORE_BACKGROUND}: {@value #DEFAULT_BACKUP_RESTORE_BACKGROUND}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_BACKUP_RESTORE_BACKGROUND = false;
+	/** Name/Key of the property specifying where the finished asynchronous jobs must be stored instead of being kept
+	 * in memory: {@link #VALUE_NONE}, {@link #VALUE_MEMORY}, {@link #VALUE_EMBEDDED} or a JDBC URL.
+	 * @since 2.4 */
+	public final static String KEY_JOB_STORE = "job_store";
+	/** Value of the property {@link #KEY_JOB_STORE} storing the finished jobs in an embedded H2 database created in
+	 * the root directory of the service.
+	 * @since 2.4 */
+	public final static String VALUE_EMBEDDED = "embedded";
+	/** Value of the property {@link #KEY_JOB_STORE} keeping the finished jobs in memory, but in a compact form
+	 * (see {@link uws.service.backup.FrozenJobStore}).
+	 * @since 2.4 */
+	public final static String VALUE_MEMORY = "memory";
+	/** Default value of the property {@link #KEY_JOB_STORE}: {@value #DEFAULT_JOB_STORE}.
+	 * @since 2.4 */
+	public final static String DEFAULT_JOB_STORE = TAPConfiguration.VALUE_NONE;
+	/** Name/Key of the property indicating whether the asynchronous jobs are executed by a cluster of TAP services
+	 * sharing the job store (which must then be a database, see {@link #KEY_JOB_STORE}) and a queue of jobs.
+	 * @since 2.4 */
+	public final static String KEY_CLUSTER_MODE = "cluster_mode";
+	/** Default value of the property {@link #KEY_CLUSTER_MODE}: {@value #DEFAULT_CLUSTER_MODE}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_CLUSTER_MODE = false;
+	/** Name/Key of the property specifying the ID of this TAP service in the cluster (only if {@link #KEY_CLUSTER_MODE}=true).
+	 * By default, the name of the JVM (i.e. pid@hostname) is used.
+	 * @since 2.4 */
+	public final static String KEY_CLUSTER_NODE_ID = "cluster_node_id";
 
 	/* ASYNCHRONOUS JOBS */
 	/** Name/Key of the property specifying the maximum number of asynchronous jobs that can run simultaneously.
@@ -134,6 +214,41 @@ public final class TAPConfiguration {
 	/** Default value of the property {@link #KEY_MAX_ASYNC_JOBS}: {@value #DEFAULT_MAX_ASYNC_JOBS}. */
 	public final static int DEFAULT_MAX_ASYNC_JOBS = 0;
 
+	/* EXECUTION BUDGET */
+	/** Name/Key of the property specifying the maximum number of DB connections that synchronous and asynchronous
+	 * queries can use simultaneously. A negative or null value means "no limit".
+	 * @since 2.4 */
+	public final static String KEY_MAX_DB_CONNECTIONS = "max_db_connections";
+	/** Name/Key of the property specifying the maximum sum of the estimated result sizes of all running queries
+	 * (synchronous and asynchronous). Its value must be expressed in bytes (e.g. 2GB).
+	 * A negative or null value means "no limit".
+	 * @since 2.4 */
+	public final static String KEY_MAX_ESTIMATED_RESULT_SIZE = "max_estimated_result_size";
+	/** Name/Key of the property specifying the maximum sum of the estimated costs of all running queries.
+	 * It is used only if a cost estimator is set with {@link #KEY_COST_ESTIMATOR}.
+	 * A negative or null value means "no limit".
+	 * @since 2.4 */
+	public final static String KEY_MAX_ESTIMATED_COST = "max_estimated_cost";
+	/** Name/Key of the property specifying the {@link tap.CostEstimator} to use in order to estimate the cost of a query.
+	 * By default, no cost is estimated.
+	 * @since 2.4 */
+	public final static String KEY_COST_ESTIMATOR = "cost_estimator";
+	/** Name/Key of the property specifying the maximum estimated result size (in bytes ; e.g. 100kB) under which
+	 * an asynchronous job is considered as cheap and can then bypass the queue. By default, no job is cheap.
+	 * @since 2.4 */
+	public final static String KEY_CHEAP_JOB_MAX_RESULT_SIZE = "cheap_job_max_result_size";
+	/** Name/Key of the property specifying the maximum estimated cost under which an asynchronous job is considered
+	 * as cheap. It is used only if a cost estimator is set with {@link #KEY_COST_ESTIMATOR}.
+	 * @since 2.4 */
+	public final static String KEY_CHEAP_JOB_MAX_COST = "cheap_job_max_cost";
+	/** Name/Key of the property telling whether synchronous and asynchronous queries (and all the threads watching them)
+	 * must be run on virtual threads. This is possible only with Java 21+ ; platform threads are used otherwise.
+	 * @since 2.4 */
+	public final static String KEY_VIRTUAL_THREADS = "virtual_threads";
+	/** Default value of the property {@link #KEY_VIRTUAL_THREADS}: {@value #DEFAULT_VIRTUAL_THREADS}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_VIRTUAL_THREADS = false;
+
 	/* EXECUTION DURATION */
 	/** Name/Key of the property specifying the default execution duration (in milliseconds) set automatically to a job
 	 * if none has been specified by the user. */
@@ -283,6 +398,122 @@ public final class TAPConfiguration {
 	 * {@value #DEFAULT_UPLOAD_MAX_REQUEST_SIZE}.
 	 * @since 2.3 */
 	public final static int DEFAULT_UPLOAD_MAX_REQUEST_SIZE = 250 * 1024 * 1024;
+	/** Name/Key of the property specifying the maximum number of uploaded rows
+	 * inserted in the database in one batch.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_BATCH_ROWS = "upload_batch_rows";
+	/** Name/Key of the property specifying the maximum amount of bytes of
+	 * uploaded rows inserted in the database in one batch.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_BATCH_BYTES = "upload_batch_bytes";
+	/** Name/Key of the property letting read the next batch of uploaded rows
+	 * while the previous one is inserted in the database.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_PIPELINING = "upload_pipelining";
+	/** Default value of the property {@value #KEY_UPLOAD_PIPELINING} =
+	 * {@value #DEFAULT_UPLOAD_PIPELINING}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_UPLOAD_PIPELINING = false;
+	/** Name/Key of the property specifying how the uploaded rows must be bulk-loaded in the database:
+	 * automatically (COPY with PostgreSQL), never ({@link #VALUE_NONE}) or with a custom
+	 * {@link tap.db.UploadBulkLoader}.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_BULK_LOADER = "upload_bulk_loader";
+	/** Name/Key of the property specifying the kind of table to create for the
+	 * uploaded tables: regular, unlogged or temporary.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_TABLE_TYPE = "upload_table_type";
+	/** Name/Key of the property letting index the columns of the uploaded tables
+	 * used in join or WHERE conditions, and update the statistics of these tables.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_AUTO_INDEX = "upload_auto_index";
+	/** Default value of the property {@value #KEY_UPLOAD_AUTO_INDEX} =
+	 * {@value #DEFAULT_UPLOAD_AUTO_INDEX}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_UPLOAD_AUTO_INDEX = true;
+	/** Name/Key of the property specifying the maximum number of uploaded
+	 * tables read and loaded at the same time (each through its own database
+	 * connection).
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_PARALLELISM = "upload_parallelism";
+	/** Default value of the property {@value #KEY_UPLOAD_PARALLELISM} =
+	 * {@value #DEFAULT_UPLOAD_PARALLELISM}.
+	 * @since 2.4 */
+	public final static int DEFAULT_UPLOAD_PARALLELISM = 1;
+	/** Name/Key of the property enabling the cache of uploaded tables: the
+	 * files uploaded with the same content are loaded only once and the
+	 * loaded table is reused by the next jobs.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_CACHE = "upload_cache";
+	/** Name/Key of the property specifying the time (in seconds) after which
+	 * an unused cached upload table is dropped.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_CACHE_TTL = "upload_cache_ttl";
+	/** Default value of the property {@value #KEY_UPLOAD_CACHE_TTL} =
+	 * {@value #DEFAULT_UPLOAD_CACHE_TTL}.
+	 * @since 2.4 */
+	public final static long DEFAULT_UPLOAD_CACHE_TTL = 3600;
+	/** Name/Key of the property specifying the maximum amount of uploaded
+	 * bytes kept in the cache of uploaded tables.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_CACHE_MAX_SIZE = "upload_cache_max_size";
+	/** Name/Key of the property specifying whether a cached upload table can
+	 * be reused only by the user who uploaded it.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_CACHE_PER_USER = "upload_cache_per_user";
+	/** Default value of the property {@value #KEY_UPLOAD_CACHE_PER_USER} =
+	 * {@value #DEFAULT_UPLOAD_CACHE_PER_USER}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_UPLOAD_CACHE_PER_USER = true;
+	/** Name/Key of the property letting read the files uploaded in a
+	 * synchronous request directly from the request body, instead of storing
+	 * them first in the temporary directory.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_STREAMING = "upload_streaming";
+	/** Default value of the property {@value #KEY_UPLOAD_STREAMING} =
+	 * {@value #DEFAULT_UPLOAD_STREAMING}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_UPLOAD_STREAMING = false;
+	/** Name/Key of the property letting narrow the declared column types of
+	 * the uploaded tables (e.g. strings containing only numbers).
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_NARROW_TYPES = "upload_narrow_types";
+	/** Default value of the property {@value #KEY_UPLOAD_NARROW_TYPES} =
+	 * {@value #DEFAULT_UPLOAD_NARROW_TYPES}.
+	 * @since 2.4 */
+	public final static boolean DEFAULT_UPLOAD_NARROW_TYPES = false;
+	/** Name/Key of the property setting the maximum number of rows kept in memory to narrow
+	 * the declared column types of the uploaded tables.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_NARROW_SAMPLE = "upload_narrow_sample";
+	/** Default value of the property {@value #KEY_UPLOAD_NARROW_SAMPLE} =
+	 * {@value #DEFAULT_UPLOAD_NARROW_SAMPLE}.
+	 * @since 2.4 */
+	public final static int DEFAULT_UPLOAD_NARROW_SAMPLE = 1000;
+	/** Name/Key of the property setting the timeout (in seconds) for the
+	 * connection to a server hosting a table uploaded by URL.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_CONNECT_TIMEOUT = "upload_fetch_connect_timeout";
+	/** Name/Key of the property setting the timeout (in seconds) while
+	 * waiting for the data of a table uploaded by URL.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_READ_TIMEOUT = "upload_fetch_read_timeout";
+	/** Name/Key of the property setting the number of times a failed
+	 * download of a table uploaded by URL is tried again.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_RETRIES = "upload_fetch_retries";
+	/** Name/Key of the property setting the maximum number of ranges of a
+	 * large table uploaded by URL downloaded in parallel.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_PARALLELISM = "upload_fetch_parallelism";
+	/** Name/Key of the property setting the maximum amount of bytes of the
+	 * cache of the tables uploaded by URL.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_CACHE_MAX_SIZE = "upload_fetch_cache_max_size";
+	/** Name/Key of the property listing the local directories whose files
+	 * can be uploaded with a <code>file</code> URI.
+	 * @since 2.4 */
+	public final static String KEY_UPLOAD_FETCH_ALLOWED_DIRS = "upload_fetch_allowed_dirs";
 
 	/* OUTPUT KEYS */
 	/** Name/Key of the property specifying the list of all result output formats to support.
@@ -0,0 +1,517 @@
+package tap.data;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+
+import adql.db.DBType;
+import adql.db.DBType.DBDatatype;
+import tap.metadata.TAPColumn;
+
+/**
+ * <p>{@link TableIterator} which lets iterate over a CSV input stream (RFC 4180).</p>
+ *
+ * <p>
+ * 	The first line must be a header listing the column names. A value may be enclosed
+ * 	between double quotes (<code>"</code>) ; then, it may contain the separator, line breaks
+ * 	and doubled double quotes (<code>""</code>). Empty lines are ignored and an empty value is NULL.
+ * </p>
+ *
+ * <h4>Type inference</h4>
+ *
+ * <p>
+ * 	The type of each column is inferred from the first rows (by default {@value #DEFAULT_SAMPLE_SIZE}):
+ * 	BIGINT if all non-empty values are integers, DOUBLE if they are all numbers, and VARCHAR otherwise.
+ * 	An integer written with leading zeros (e.g. <code>007</code>) is more likely an identifier: its
+ * 	column stays VARCHAR. Only these first rows are kept in memory ; all the other rows are read while
+ * 	iterating.
+ * </p>
+ *
+ * <p><b>Important:</b>
+ * 	If a value read after the first rows does not match the inferred type (e.g. <code>1.5</code> or
+ * 	<code>N/A</code> in a BIGINT column), a {@link DataReadException} is thrown: the column types are
+ * 	already used (e.g. to create a table in the database) and can not be widened anymore. To avoid that,
+ * 	when the document can be read twice, the types should be inferred from all rows with
+ * 	{@link #inferTypesFromAllRows()} and given to the iterator which will really read the rows with
+ * 	{@link #setColumnTypes(DBType[])}. A sample size of 0 is also possible: all columns are then VARCHAR.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The input stream is expected to be encoded in UTF-8.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ *
+ * @see TSVTableIterator
+ */
+public class CSVTableIterator implements TableIterator {
+
+	/** Default number of rows read to infer the column types. */
+	public final static int DEFAULT_SAMPLE_SIZE = 1000;
+
+	/** Greatest integer (2<sup>53</sup>) below which all integers can be exactly stored in a DOUBLE. */
+	protected final static long MAX_EXACT_INTEGER = 1L << 53;
+
+	/** Regular expression of a number accepted for a DOUBLE column. */
+	protected final static String NUMBER_REGEXP = "[+-]?([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][+-]?[0-9]+)?|[+-]?(NaN|Infinity)";
+
+	/** Reader of the CSV input stream. */
+	protected final BufferedReader input;
+	/** Character separating two values. */
+	protected final char separator;
+	/** Indicate whether values may be enclosed between double quotes. */
+	protected final boolean quoted;
+
+	/** Metadata of all columns (read in the header and inferred from the first rows). */
+	protected final TAPColumn[] colsMeta;
+	/** Rows read to infer the column types, and not yet returned. */
+	private final Deque<String[]> sample = new ArrayDeque<String[]>();
+
+	/** Indicate whether the row iteration has already started. */
+	protected boolean iterationStarted = false;
+	/** Indicate whether the last row has already been reached. */
+	protected boolean endReached = false;
+	/** The last read row. Column iteration is done on this array. */
+	protected String[] row;
+	/** Index of the last read column (=0 just after {@link #nextRow()} and before {@link #nextCol()}). */
+	protected int indCol = -1;
+	/** Number of rows returned so far. */
+	protected int nbRows = 0;
+
+	/** Character read in advance and not yet consumed. <i>-2 if none.</i> */
+	private int nextChar = -2;
+
+	/**
+	 * Build a TableIterator able to read rows and columns inside the given CSV input stream.
+	 *
+	 * @param input	Input stream over a CSV document.
+	 *
+	 * @throws NullPointerException	If NULL is given in parameter.
+	 * @throws DataReadException	If the header can not be read.
+	 */
+	public CSVTableIterator(final InputStream input) throws DataReadException{
+		this(input, ',', true, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Build a TableIterator able to read rows and columns inside the given character-separated values.
+	 *
+	 * @param input			Input stream over a character-separated values document.
+	 * @param separator		Character separating two values.
+	 * @param quoted		<i>true</i> if the values may be enclosed between double quotes,
+	 *              		<i>false</i> if double quotes are normal characters.
+	 * @param sampleSize	Number of rows read to infer the column types.
+	 *                  	<i>If negative or 0, only the header is read and all columns are VARCHAR.</i>
+	 *
+	 * @throws NullPointerException	If NULL is given in parameter.
+	 * @throws DataReadException	If the header can not be read.
+	 */
+	public CSVTableIterator(final InputStream input, final char separator, final boolean quoted, final int sampleSize) throws DataReadException{
+		// An input stream MUST BE provided:
+		if (input == null)
+			throw new NullPointerException("Missing CSV document input stream over which to iterate!");
+		try{
+			this.input = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+		}catch(IOException ioe){
+			throw new DataReadException("Unable to read the given CSV input stream!", ioe);
+		}
+		this.separator = separator;
+		this.quoted = quoted;
+
+		// Read the header:
+		String[] header = readRecord();
+		if (header == null)
+			throw new DataReadException("Missing CSV header! The first line must list the column names.");
+		if (header.length > 0 && header[0] != null && header[0].startsWith("\uFEFF"))
+			header[0] = header[0].substring(1);
+
+		// Read the rows from which the column types are inferred:
+		for(int i = 0; i < sampleSize; i++){
+			String[] record = readRecord();
+			if (record == null)
+				break;
+			sample.addLast(record);
+		}
+
+		// Build the columns metadata:
+		colsMeta = new TAPColumn[header.length];
+		for(int c = 0; c < header.length; c++){
+			String name = (header[c] == null) ? "col" + (c + 1) : header[c].trim();
+			TAPColumn col = new TAPColumn(name, inferType(c));
+			col.setPrincipal(false);
+			col.setIndexed(false);
+			col.setStd(false);
+			colsMeta[c] = col;
+		}
+	}
+
+	/**
+	 * Infer the type of the specified column from all the read rows.
+	 *
+	 * @param indCol	Index of the column (starting from 0).
+	 *
+	 * @return	BIGINT, DOUBLE or VARCHAR.
+	 */
+	protected DBType inferType(final int indCol){
+		// 0 = no value, 1 = integers, 2 = numbers, 3 = strings, 4 = integers not exact as DOUBLE:
+		int kind = 0;
+		for(String[] record : sample){
+			kind = widen(kind, (indCol < record.length) ? record[indCol] : null);
+			if (kind == 3)
+				break;
+		}
+		return toType(kind);
+	}
+
+	/**
+	 * <p>Infer the type of all columns from all the rows of the document, instead of only the first ones.</p>
+	 *
+	 * <p>
+	 * 	All remaining rows are read but not kept in memory: this iterator is then at the end of the document
+	 * 	and can not be used anymore to read rows. The returned types should be given with
+	 * 	{@link #setColumnTypes(DBType[])} to another iterator reading the same document.
+	 * </p>
+	 *
+	 * @return	The type of each column (BIGINT, DOUBLE or VARCHAR).
+	 *
+	 * @throws IllegalStateException	If the row iteration has already started.
+	 * @throws DataReadException		If the document can not be read.
+	 */
+	public DBType[] inferTypesFromAllRows() throws IllegalStateException, DataReadException{
+		if (iterationStarted)
+			throw new IllegalStateException("The row iteration has already started!");
+		iterationStarted = true;
+
+		int[] kinds = new int[colsMeta.length];
+		String[] record;
+		while((record = sample.isEmpty() ? readRecord() : sample.pollFirst()) != null){
+			for(int c = 0; c < kinds.length; c++)
+				kinds[c] = widen(kinds[c], (c < record.length) ? record[c] : null);
+		}
+		endReached = true;
+
+		DBType[] types = new DBType[kinds.length];
+		for(int c = 0; c < kinds.length; c++)
+			types[c] = toType(kinds[c]);
+		return types;
+	}
+
+	/**
+	 * Set the type of all columns, instead of the ones inferred from the first rows.
+	 *
+	 * @param types	The type of each column. <i>Only BIGINT, DOUBLE and VARCHAR are supported ; any other type
+	 *             	is considered as VARCHAR.</i>
+	 *
+	 * @throws IllegalStateException	If the row iteration has already started.
+	 * @throws IllegalArgumentException	If the number of types is not the number of columns.
+	 */
+	public void setColumnTypes(final DBType[] types) throws IllegalStateException, IllegalArgumentException{
+		if (iterationStarted)
+			throw new IllegalStateException("The row iteration has already started!");
+		else if (types == null || types.length != colsMeta.length)
+			throw new IllegalArgumentException("Incorrect number of column types: " + (types == null ? 0 : types.length) + " instead of " + colsMeta.length + "!");
+		for(int c = 0; c < types.length; c++){
+			DBDatatype type = (types[c] == null) ? null : types[c].type;
+			colsMeta[c].setDatatype((type == DBDatatype.BIGINT || type == DBDatatype.DOUBLE) ? types[c] : new DBType(DBDatatype.VARCHAR));
+		}
+	}
+
+	/**
+	 * Widen the given kind of values so that it also covers the given value.
+	 *
+	 * <p><i>Note:
+	 * 	Integers which can not be exactly stored in a DOUBLE (i.e. beyond 2<sup>53</sup>, like most long
+	 * 	identifiers) can not be mixed with decimal numbers: the column is then VARCHAR, so that no digit is lost.
+	 * </i></p>
+	 *
+	 * @param kind	Current kind: 0 = no value, 1 = integers, 2 = numbers, 3 = strings,
+	 *            	4 = integers with some of them not exact as DOUBLE.
+	 * @param value	A value of the column. <i>NULL if empty.</i>
+	 *
+	 * @return	The widened kind.
+	 */
+	private static int widen(final int kind, String value){
+		if (value == null || kind == 3)
+			return kind;
+		value = value.trim();
+		if (isInteger(value)){
+			long l = Long.parseLong(value);
+			if (l >= -MAX_EXACT_INTEGER && l <= MAX_EXACT_INTEGER)
+				return (kind == 0) ? 1 : kind;
+			else
+				return (kind == 2) ? 3 : 4;
+		}else if (!isZeroPadded(value) && !value.matches("[+-]?[0-9]+") && value.matches(NUMBER_REGEXP))
+			return (kind == 4) ? 3 : 2;
+		else
+			return 3;
+	}
+
+	/**
+	 * Get the column type corresponding to the given kind of values.
+	 *
+	 * @param kind	0 = no value, 1 or 4 = integers, 2 = numbers, 3 = strings.
+	 *
+	 * @return	BIGINT, DOUBLE or VARCHAR.
+	 */
+	private static DBType toType(final int kind){
+		if (kind == 1 || kind == 4)
+			return new DBType(DBDatatype.BIGINT);
+		else if (kind == 2)
+			return new DBType(DBDatatype.DOUBLE);
+		else
+			return new DBType(DBDatatype.VARCHAR);
+	}
+
+	/**
+	 * Tell whether the given string is an integer fitting in a BIGINT, and not written with leading zeros.
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	<i>true</i> if a BIGINT value, <i>false</i> otherwise.
+	 */
+	private static boolean isInteger(final String value){
+		if (isZeroPadded(value))
+			return false;
+		try{
+			Long.parseLong(value);
+			return true;
+		}catch(NumberFormatException nfe){
+			return false;
+		}
+	}
+
+	/**
+	 * Tell whether the given string is an integer written with leading zeros (e.g. <code>007</code>),
+	 * which is then more likely an identifier than a number.
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	<i>true</i> if zero-padded, <i>false</i> otherwise.
+	 */
+	protected static boolean isZeroPadded(final String value){
+		int start = (value.startsWith("+") || value.startsWith("-")) ? 1 : 0;
+		return value.length() > start + 1 && value.charAt(start) == '0' && Character.isDigit(value.charAt(start + 1));
+	}
+
+	/**
+	 * Read the next record (i.e. line, except for the line breaks of quoted values).
+	 *
+	 * @return	All values of the record (empty values are NULL),
+	 *        	or NULL if the end of the stream has been reached.
+	 *
+	 * @throws DataReadException	If the stream can not be read or if a quoted value is not terminated.
+	 */
+	protected String[] readRecord() throws DataReadException{
+		try{
+			ArrayList<String> values = new ArrayList<String>();
+			StringBuilder value = new StringBuilder();
+			boolean inQuotes = false, wasQuoted = false, empty = true;
+			while(true){
+				int c = read();
+
+				// End of stream:
+				if (c < 0){
+					if (inQuotes)
+						throw new DataReadException("Unexpected end of CSV document: a quoted value is not terminated!");
+					else if (empty)
+						return null;
+					values.add(toValue(value, wasQuoted));
+					return values.toArray(new String[values.size()]);
+				}
+
+				// Quoted value:
+				if (inQuotes){
+					if (c == '"'){
+						int n = read();
+						if (n == '"')
+							value.append('"');
+						else{
+							inQuotes = false;
+							nextChar = n;
+						}
+					}else
+						value.append((char)c);
+				}
+				// End of value:
+				else if (c == separator){
+					values.add(toValue(value, wasQuoted));
+					value.setLength(0);
+					wasQuoted = false;
+					empty = false;
+				}
+				// End of record:
+				else if (c == '\n' || c == '\r'){
+					if (c == '\r'){
+						int n = read();
+						if (n != '\n')
+							nextChar = n;
+					}
+					// ignore empty lines:
+					if (empty && value.length() == 0 && !wasQuoted)
+						continue;
+					values.add(toValue(value, wasQuoted));
+					return values.toArray(new String[values.size()]);
+				}
+				// Start of a quoted value:
+				else if (c == '"' && quoted && value.length() == 0 && !wasQuoted){
+					inQuotes = true;
+					wasQuoted = true;
+					empty = false;
+				}
+				// Normal character:
+				else{
+					value.append((char)c);
+					empty = false;
+				}
+			}
+		}catch(IOException ioe){
+			throw new DataReadException("Unable to read the CSV input stream!", ioe);
+		}
+	}
+
+	/**
+	 * Read the next character.
+	 *
+	 * @return	The next character, or -1 at the end of the stream.
+	 *
+	 * @throws IOException	If the stream can not be read.
+	 */
+	private int read() throws IOException{
+		if (nextChar != -2){
+			int c = nextChar;
+			nextChar = -2;
+			return c;
+		}else
+			return input.read();
+	}
+
+	/**
+	 * Get the value to return for the given read characters.
+	 *
+	 * @param value		The read characters.
+	 * @param wasQuoted	Whether the value was enclosed between double quotes.
+	 *
+	 * @return	The value, or NULL if empty and not quoted.
+	 */
+	private static String toValue(final StringBuilder value, final boolean wasQuoted){
+		return (value.length() == 0 && !wasQuoted) ? null : value.toString();
+	}
+
+	@Override
+	public TAPColumn[] getMetadata() throws DataReadException{
+		return colsMeta;
+	}
+
+	@Override
+	public boolean nextRow() throws DataReadException{
+		// If no more rows, return false directly:
+		if (endReached)
+			return false;
+		iterationStarted = true;
+
+		// Fetch the row (first from the rows read to infer the types):
+		row = sample.isEmpty() ? readRecord() : sample.pollFirst();
+		indCol = 0;
+		if (row == null){
+			endReached = true;
+			return false;
+		}
+		nbRows++;
+
+		// Check the number of values:
+		if (row.length > colsMeta.length)
+			throw new DataReadException("[l. " + nbRows + "] Too many values! Only " + colsMeta.length + " columns are declared in the CSV header.");
+
+		return true;
+	}
+
+	@Override
+	public boolean hasNextCol() throws IllegalStateException, DataReadException{
+		checkReadState();
+		return (indCol < colsMeta.length);
+	}
+
+	@Override
+	public Object nextCol() throws NoSuchElementException, IllegalStateException, DataReadException{
+		// Check the read state and ensure there is still at least one column to read:
+		if (!hasNextCol())
+			throw new NoSuchElementException("No more field to read!");
+
+		// Get the column value (missing values are NULL):
+		String value = (indCol < row.length) ? row[indCol] : null;
+		DBDatatype type = colsMeta[indCol++].getDatatype().type;
+		if (value == null || type == DBDatatype.VARCHAR)
+			return value;
+
+		// Convert the numeric values:
+		value = value.trim();
+		if (type == DBDatatype.BIGINT && isInteger(value))
+			return Long.parseLong(value);
+		else if (type == DBDatatype.DOUBLE && widen(2, value) == 2)
+			return Double.parseDouble(value);
+		throw new DataReadException("[l. " + nbRows + ", c. " + indCol + "] Unexpected value \"" + value + "\": the column \"" + colsMeta[indCol - 1].getADQLName() + "\" has been inferred as " + type + " from the first rows! Its type can not be changed anymore.");
+	}
+
+	@Override
+	public DBType getColType() throws IllegalStateException, DataReadException{
+		// Basically check the read state (for rows iteration):
+		checkReadState();
+
+		// Check deeper the read state (for columns iteration):
+		if (indCol <= 0)
+			throw new IllegalStateException("No field has yet been read!");
+		else if (indCol > colsMeta.length)
+			throw new IllegalStateException("All fields have already been read!");
+
+		// Return the column type:
+		return colsMeta[indCol - 1].getDatatype();
+	}
+
+	@Override
+	public void close() throws DataReadException{
+		endReached = true;
+		sample.clear();
+	}
+
+	/**
+	 * <p>Check the row iteration state. That's to say whether:</p>
+	 * <ul>
+	 * 	<li>the row iteration has started = the first row has been read = a first call of {@link #nextRow()} has been done</li>
+	 * 	<li>AND the row iteration is not finished = the last row has been read.</li>
+	 * </ul>
+	 * @throws IllegalStateException
+	 */
+	protected void checkReadState() throws IllegalStateException{
+		if (!iterationStarted)
+			throw new IllegalStateException("No row has yet been read!");
+		else if (endReached)
+			throw new IllegalStateException("End of CSV document already reached!");
+	}
+
+}
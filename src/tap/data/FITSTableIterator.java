@@ -0,0 +1,56 @@
+package tap.data;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.InputStream;
+
+/**
+ * <p>{@link TableIterator} which lets iterate over the first binary table (BINTABLE) of a FITS input stream using STIL.</p>
+ *
+ * <p>
+ * 	The FITS file is streamed exactly as a VOTable by {@link VOTableIterator}: the rows are read by STIL
+ * 	in a separated thread and handed over to this iterator by batches. Thus, the whole table is never in memory.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The FITS columns are not described with a VOTable datatype. {@link #getColType()} then returns a TAP type
+ * 	deduced from the class of the column values (e.g. <code>D</code> &rarr; DOUBLE, <code>J</code> &rarr; INTEGER,
+ * 	<code>A</code> &rarr; VARCHAR).
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public class FITSTableIterator extends VOTableIterator {
+
+	/**
+	 * Build a TableIterator able to read rows and columns of the first table of the given FITS input stream.
+	 *
+	 * @param input	Input stream over a FITS file.
+	 *
+	 * @throws NullPointerException	If NULL is given in parameter.
+	 * @throws DataReadException	If the given FITS file can not be parsed.
+	 */
+	public FITSTableIterator(final InputStream input) throws DataReadException{
+		super(input, "fits");
+	}
+
+}
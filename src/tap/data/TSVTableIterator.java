@@ -0,0 +1,51 @@
+package tap.data;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.InputStream;
+
+/**
+ * <p>{@link TableIterator} which lets iterate over a TSV input stream (tab-separated values).</p>
+ *
+ * <p>
+ * 	As for {@link CSVTableIterator}, the first line must list the column names and the column types are inferred
+ * 	from the first rows. However, as specified by the MIME type <code>text/tab-separated-values</code>,
+ * 	the values can not be quoted: a value can contain neither a tabulation nor a line break.
+ * </p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public class TSVTableIterator extends CSVTableIterator {
+
+	/**
+	 * Build a TableIterator able to read rows and columns inside the given TSV input stream.
+	 *
+	 * @param input	Input stream over a TSV document.
+	 *
+	 * @throws NullPointerException	If NULL is given in parameter.
+	 * @throws DataReadException	If the header can not be read.
+	 */
+	public TSVTableIterator(final InputStream input) throws DataReadException{
+		super(input, '\t', false, DEFAULT_SAMPLE_SIZE);
+	}
+
+}
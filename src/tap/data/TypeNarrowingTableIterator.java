@@ -0,0 +1,660 @@
+package tap.data;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+
+import adql.db.DBType;
+import adql.db.DBType.DBDatatype;
+import adql.db.STCS;
+import adql.db.STCS.Region;
+import adql.db.STCS.RegionType;
+import tap.metadata.TAPColumn;
+import uws.ISO8601Format;
+
+/**
+ * <p>Wrap a {@link TableIterator} in order to narrow the declared type of its columns
+ * to the most compact type able to store their values.</p>
+ *
+ * <p>
+ * 	Clients often declare all columns of an uploaded table as <code>char(*)</code> or <code>double</code>,
+ * 	which results in wide text columns in the database and in slow joins. So, all the values of the
+ * 	wrapped iterator are checked in order to infer a narrower type for each column:
+ * </p>
+ * <ul>
+ * 	<li><b>CHAR/VARCHAR</b> columns become BIGINT if all non-empty values are integers,
+ * 		DOUBLE if they are all numbers, TIMESTAMP if they are all ISO-8601 dates,
+ * 		POINT if they are all STC-S positions and REGION if they are all STC-S regions,</li>
+ * 	<li><b>DOUBLE/REAL</b> columns become BIGINT if all non-NULL values are integral (NaN being then NULL).</li>
+ * </ul>
+ *
+ * <p>
+ * 	The values of a narrowed column are converted accordingly (empty strings become NULL).
+ * 	TIMESTAMP and geometries are only checked: they are still returned as strings, since they
+ * 	are converted by the database connection (see
+ * 	{@link tap.db.JDBCConnection#convertUploadedValue(TAPColumn, Object, int, int) JDBCConnection.convertUploadedValue(...)}).
+ * </p>
+ *
+ * <p><i>Note 1:
+ * 	Integers written with leading zeros (e.g. <code>007</code>) are considered as identifiers:
+ * 	the column is then kept as a string. Integers which a DOUBLE can not exactly store (i.e. beyond
+ * 	2<sup>53</sup>) are never narrowed to DOUBLE.
+ * </i></p>
+ *
+ * <p><b>Important:</b>
+ * 	A valid table must never be rejected because of a narrowed type. So, the column types are narrowed only
+ * 	if all values have been checked:
+ * </p>
+ * <ul>
+ * 	<li>either because the whole table fits in the first rows kept in memory (by default
+ * 		{@value #DEFAULT_SAMPLE_SIZE}) ; otherwise, the declared types are kept,</li>
+ * 	<li>or because the table has been read a first time by another iterator (see {@link #narrowTypesFromAllRows()})
+ * 		and the resulting types given to this one with {@link #setNarrowedTypes(DBType[])}. No row is then
+ * 		kept in memory.</li>
+ * </ul>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public class TypeNarrowingTableIterator implements TableIterator {
+
+	/** Default number of rows read to narrow the column types. */
+	public final static int DEFAULT_SAMPLE_SIZE = 1000;
+
+	/** Regular expression of an integer accepted for a BIGINT column. */
+	protected final static String INTEGER_REGEXP = "[+-]?[0-9]+";
+
+	/** The wrapped iterator. */
+	protected final TableIterator innerIt;
+
+	/** Maximum number of rows kept in memory to narrow the column types. */
+	protected final int sampleSize;
+
+	/** Metadata of all columns, with their narrowed type.
+	 * <i>NULL before the sample is read, or if the wrapped iterator gives no metadata.</i> */
+	protected TAPColumn[] colsMeta = null;
+
+	/** Indicate, for each column, whether its type has been narrowed. */
+	protected boolean[] narrowed = null;
+
+	/** Rows read to narrow the column types, and not yet returned. */
+	private final Deque<Object[]> sample = new ArrayDeque<Object[]>();
+
+	/** Indicate whether the sample has already been read. */
+	private boolean initialized = false;
+
+	/** Current row, if coming from the sample. <i>NULL if read from the wrapped iterator.</i> */
+	private Object[] row = null;
+
+	/** Indicate whether the row iteration has already started. */
+	private boolean iterationStarted = false;
+
+	/** Indicate whether the last row has already been reached. */
+	private boolean endReached = false;
+
+	/** Indicate whether the wrapped iterator has no more row. */
+	private boolean innerEnd = false;
+
+	/** Number of rows already returned. */
+	private int nbRows = 0;
+
+	/** Index of the last read column (starting from 1). */
+	private int indCol = 0;
+
+	/**
+	 * Wrap the given iterator, narrowing its column types if it has no more than {@value #DEFAULT_SAMPLE_SIZE} rows.
+	 *
+	 * @param it	The iterator to wrap. <b>MUST NOT be NULL</b>
+	 */
+	public TypeNarrowingTableIterator(final TableIterator it){
+		this(it, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Wrap the given iterator, narrowing its column types if it has no more than the given number of rows.
+	 *
+	 * @param it			The iterator to wrap. <b>MUST NOT be NULL</b>
+	 * @param sampleSize	Maximum number of rows kept in memory in order to narrow the column types.
+	 *                  	<i>If &lt;= 0, {@value #DEFAULT_SAMPLE_SIZE} is used.</i>
+	 */
+	public TypeNarrowingTableIterator(final TableIterator it, final int sampleSize){
+		if (it == null)
+			throw new NullPointerException("Missing TableIterator to wrap!");
+		innerIt = it;
+		this.sampleSize = (sampleSize <= 0) ? DEFAULT_SAMPLE_SIZE : sampleSize;
+	}
+
+	/**
+	 * Get the wrapped iterator.
+	 *
+	 * @return	The wrapped iterator.
+	 */
+	public final TableIterator getWrappedIterator(){
+		return innerIt;
+	}
+
+	/**
+	 * Read the sample rows and narrow the column types if they are all the rows, if not already done.
+	 *
+	 * @throws DataReadException	If the wrapped iterator can not be read.
+	 */
+	private void init() throws DataReadException{
+		if (initialized)
+			return;
+		initialized = true;
+
+		// Get the declared columns:
+		TAPColumn[] columns = innerIt.getMetadata();
+		if (columns == null)
+			return;
+		colsMeta = columns.clone();
+
+		// Read the sample (+ 1 row, to know whether it contains all rows):
+		while(sample.size() <= sampleSize){
+			if (!innerIt.nextRow()){
+				innerEnd = true;
+				break;
+			}
+			Object[] values = new Object[colsMeta.length];
+			for(int c = 0; innerIt.hasNextCol(); c++){
+				Object value = innerIt.nextCol();
+				if (c < values.length)
+					values[c] = value;
+			}
+			sample.add(values);
+		}
+
+		// Narrow the column types, only if all values have been checked:
+		narrowed = new boolean[colsMeta.length];
+		if (!innerEnd)
+			return;
+		for(int c = 0; c < colsMeta.length; c++){
+			DBType type = narrowType(colsMeta[c], c);
+			if (type != null)
+				setNarrowedType(c, type);
+		}
+	}
+
+	/**
+	 * <p>Get the narrowest type of all columns, from all the rows of the wrapped iterator.</p>
+	 *
+	 * <p>
+	 * 	All rows are read but not kept in memory: this iterator is then at the end of the table and can not be
+	 * 	used anymore to read rows. The returned types should be given with {@link #setNarrowedTypes(DBType[])}
+	 * 	to another iterator reading the same table.
+	 * </p>
+	 *
+	 * @return	The narrowed type of each column (NULL items for the columns whose declared type must be kept),
+	 *        	or NULL if the wrapped iterator gives no metadata.
+	 *
+	 * @throws IllegalStateException	If the column types have already been narrowed.
+	 * @throws DataReadException		If the wrapped iterator can not be read.
+	 */
+	public DBType[] narrowTypesFromAllRows() throws IllegalStateException, DataReadException{
+		if (initialized)
+			throw new IllegalStateException("The column types have already been narrowed!");
+		initialized = iterationStarted = innerEnd = endReached = true;
+
+		colsMeta = innerIt.getMetadata();
+		if (colsMeta == null)
+			return null;
+
+		ColumnNarrowing[] narrowings = new ColumnNarrowing[colsMeta.length];
+		for(int c = 0; c < colsMeta.length; c++)
+			narrowings[c] = new ColumnNarrowing(colsMeta[c].getDatatype());
+		while(innerIt.nextRow()){
+			for(int c = 0; innerIt.hasNextCol(); c++){
+				Object value = innerIt.nextCol();
+				if (c < narrowings.length)
+					narrowings[c].add(value);
+			}
+		}
+
+		DBType[] types = new DBType[colsMeta.length];
+		for(int c = 0; c < colsMeta.length; c++)
+			types[c] = narrowings[c].getType();
+		return types;
+	}
+
+	/**
+	 * Set the narrowed type of all columns, instead of reading the first rows.
+	 *
+	 * @param types	The narrowed type of each column (NULL items for the columns whose declared type must be kept),
+	 *             	as returned by {@link #narrowTypesFromAllRows()}.
+	 *
+	 * @throws IllegalStateException	If the column types have already been narrowed.
+	 * @throws IllegalArgumentException	If the number of types is not the number of columns.
+	 * @throws DataReadException		If the metadata of the wrapped iterator can not be read.
+	 */
+	public void setNarrowedTypes(final DBType[] types) throws IllegalStateException, IllegalArgumentException, DataReadException{
+		if (initialized)
+			throw new IllegalStateException("The column types have already been narrowed!");
+
+		TAPColumn[] columns = innerIt.getMetadata();
+		if (columns == null || types == null || types.length != columns.length)
+			throw new IllegalArgumentException("Incorrect number of column types: " + (types == null ? 0 : types.length) + " instead of " + (columns == null ? 0 : columns.length) + "!");
+		initialized = true;
+		colsMeta = columns.clone();
+
+		narrowed = new boolean[colsMeta.length];
+		for(int c = 0; c < colsMeta.length; c++){
+			if (types[c] != null)
+				setNarrowedType(c, types[c]);
+		}
+	}
+
+	/**
+	 * <p>Narrow the type of the specified column.</p>
+	 *
+	 * <p><i>Note:
+	 * 	The metadata of the wrapped iterator are not modified (it may rely on the declared types to read
+	 * 	its values): the column is copied.
+	 * </i></p>
+	 *
+	 * @param indCol	Index of the column (starting from 0).
+	 * @param type		Its narrowed type.
+	 */
+	private void setNarrowedType(final int indCol, final DBType type){
+		colsMeta[indCol] = (TAPColumn)colsMeta[indCol].copy();
+		colsMeta[indCol].setDatatype(type);
+		narrowed[indCol] = true;
+	}
+
+	/**
+	 * Get the narrowest type able to store all the sample values of the specified column.
+	 *
+	 * @param col		Metadata of the column (with its declared type).
+	 * @param indCol	Index of the column in the sample rows (starting from 0).
+	 *
+	 * @return	The narrowed type,
+	 *        	or NULL if the declared type must be kept.
+	 */
+	protected DBType narrowType(final TAPColumn col, final int indCol){
+		ColumnNarrowing narrowing = new ColumnNarrowing(col.getDatatype());
+		for(Object[] values : sample){
+			if (!narrowing.add(values[indCol]))
+				break;
+		}
+		return narrowing.getType();
+	}
+
+	/**
+	 * Narrowest type able to store all the values of a column, updated value after value:
+	 * <ul>
+	 * 	<li>a CHAR/VARCHAR column becomes BIGINT, DOUBLE, TIMESTAMP, POINT or REGION,</li>
+	 * 	<li>a DOUBLE/REAL column becomes BIGINT.</li>
+	 * </ul>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	private static class ColumnNarrowing {
+		/** Declared type of the column. <i>NULL if unknown.</i> */
+		private final DBDatatype declared;
+
+		/** Indicate whether the column can still be narrowed. */
+		private boolean narrowable;
+
+		/** Indicate whether at least one non-empty value has been checked. */
+		private boolean hasValue = false;
+
+		/** Indicate whether all the string values are numbers. */
+		private boolean numbers = true;
+
+		/** Indicate whether one string value is a decimal number. */
+		private boolean decimals = false;
+
+		/** Indicate whether one string value is an integer that a DOUBLE can not exactly store. */
+		private boolean largeIntegers = false;
+
+		/** Indicate whether all the string values are ISO-8601 dates. */
+		private boolean timestamps = true;
+
+		/** Indicate whether all the string values are STC-S regions. */
+		private boolean geometries = true;
+
+		/** Indicate whether all the STC-S regions are positions. */
+		private boolean points = true;
+
+		/**
+		 * Start the narrowing of a column.
+		 *
+		 * @param declared	Declared type of the column. <i>MAY be NULL</i>
+		 */
+		public ColumnNarrowing(final DBType declared){
+			this.declared = (declared == null) ? null : declared.type;
+			narrowable = (this.declared == DBDatatype.CHAR || this.declared == DBDatatype.VARCHAR || this.declared == DBDatatype.DOUBLE || this.declared == DBDatatype.REAL);
+		}
+
+		/**
+		 * Check the given value.
+		 *
+		 * @param value	A value of the column. <i>MAY be NULL</i>
+		 *
+		 * @return	<i>true</i> if the column can still be narrowed, <i>false</i> otherwise.
+		 */
+		public boolean add(final Object value){
+			if (!narrowable || value == null)
+				return narrowable;
+
+			// Decimal column:
+			if (declared == DBDatatype.DOUBLE || declared == DBDatatype.REAL){
+				// NaN is the NULL value of floating point numbers:
+				if (value instanceof Number && Double.isNaN(((Number)value).doubleValue()))
+					return true;
+				else if (!(value instanceof Number) || toLong((Number)value) == null)
+					narrowable = false;
+				hasValue = true;
+				return narrowable;
+			}
+
+			// String column:
+			if (!(value instanceof String))
+				return (narrowable = false);
+			String str = ((String)value).trim();
+			if (str.length() == 0)
+				return true;
+			hasValue = true;
+
+			// Numbers:
+			if (numbers){
+				if (isInteger(str) && !CSVTableIterator.isZeroPadded(str)){
+					long l = Long.parseLong(str.startsWith("+") ? str.substring(1) : str);
+					if (l < -CSVTableIterator.MAX_EXACT_INTEGER || l > CSVTableIterator.MAX_EXACT_INTEGER)
+						largeIntegers = true;
+				}else if (isDouble(str))
+					decimals = true;
+				else
+					numbers = false;
+				// a DOUBLE would lose digits of the large integers:
+				if (largeIntegers && decimals)
+					numbers = false;
+			}
+
+			// Dates:
+			if (timestamps && !isTimestamp(str))
+				timestamps = false;
+
+			// Geometries:
+			if (geometries){
+				Region region = parseGeometry(str);
+				if (region == null)
+					geometries = false;
+				else if (region.type != RegionType.POSITION)
+					points = false;
+			}
+
+			if (!numbers && !timestamps && !geometries)
+				narrowable = false;
+			return narrowable;
+		}
+
+		/**
+		 * Get the narrowest type able to store all the checked values.
+		 *
+		 * @return	The narrowed type,
+		 *        	or NULL if the declared type must be kept.
+		 */
+		public DBType getType(){
+			if (!narrowable || !hasValue)
+				return null;
+			else if (declared == DBDatatype.DOUBLE || declared == DBDatatype.REAL)
+				return new DBType(DBDatatype.BIGINT);
+			else if (numbers)
+				return new DBType(decimals ? DBDatatype.DOUBLE : DBDatatype.BIGINT);
+			else if (timestamps)
+				return new DBType(DBDatatype.TIMESTAMP);
+			else
+				return new DBType(points ? DBDatatype.POINT : DBDatatype.REGION);
+		}
+	}
+
+	/**
+	 * Convert the given value into the narrowed type of the specified column.
+	 *
+	 * @param indCol	Index of the column (starting from 1).
+	 * @param value		The value to convert. <i>MAY be NULL</i>
+	 *
+	 * @return	The converted value.
+	 *
+	 * @throws DataReadException	If the value does not match the narrowed type.
+	 */
+	protected Object convert(final int indCol, final Object value) throws DataReadException{
+		if (value == null || narrowed == null || indCol > narrowed.length || !narrowed[indCol - 1])
+			return value;
+
+		DBDatatype type = colsMeta[indCol - 1].getDatatype().type;
+
+		// Narrowed decimal column:
+		if (value instanceof Number){
+			if (type == DBDatatype.BIGINT){
+				if (Double.isNaN(((Number)value).doubleValue()))
+					return null;
+				Long longValue = toLong((Number)value);
+				if (longValue != null)
+					return longValue;
+			}
+		}
+		// Narrowed string column:
+		else if (value instanceof String){
+			String str = ((String)value).trim();
+			if (str.length() == 0)
+				return null;
+			switch(type){
+				case BIGINT:
+					if (isInteger(str) && !CSVTableIterator.isZeroPadded(str)){
+						try{
+							return Long.parseLong(str.startsWith("+") ? str.substring(1) : str);
+						}catch(NumberFormatException nfe){}
+					}
+					break;
+				case DOUBLE:
+					if (isDouble(str) || (isInteger(str) && !CSVTableIterator.isZeroPadded(str) && Math.abs(Double.parseDouble(str)) <= CSVTableIterator.MAX_EXACT_INTEGER))
+						return Double.parseDouble(str);
+					break;
+				case TIMESTAMP:
+					if (isTimestamp(str))
+						return str;
+					break;
+				case POINT:
+				case REGION:
+					Region region = parseGeometry(str);
+					if (region != null && (type == DBDatatype.REGION || region.type == RegionType.POSITION))
+						return str;
+					break;
+				default:
+					return value;
+			}
+		}
+
+		throw new DataReadException("[l. " + nbRows + ", c. " + indCol + "] Unexpected value \"" + value + "\": the column \"" + colsMeta[indCol - 1].getADQLName() + "\" has been narrowed to " + colsMeta[indCol - 1].getDatatype() + "!");
+	}
+
+	/**
+	 * Tell whether the given string is an integer.
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	<i>true</i> if an integer, <i>false</i> otherwise.
+	 */
+	protected static boolean isInteger(final String value){
+		if (!value.matches(INTEGER_REGEXP))
+			return false;
+		try{
+			Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+			return true;
+		}catch(NumberFormatException nfe){
+			return false;
+		}
+	}
+
+	/**
+	 * Tell whether the given string is a decimal number that a DOUBLE can store.
+	 *
+	 * <p><i>Note:
+	 * 	Integers are not accepted: they must be checked with {@link #isInteger(String)}
+	 * 	in order to not lose digits of the large ones.
+	 * </i></p>
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	<i>true</i> if a decimal number, <i>false</i> otherwise.
+	 */
+	protected static boolean isDouble(final String value){
+		return !CSVTableIterator.isZeroPadded(value) && !value.matches(INTEGER_REGEXP) && value.matches(CSVTableIterator.NUMBER_REGEXP);
+	}
+
+	/**
+	 * Tell whether the given string is a date formatted in ISO-8601.
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	<i>true</i> if a date, <i>false</i> otherwise.
+	 */
+	protected static boolean isTimestamp(final String value){
+		try{
+			ISO8601Format.parse(value);
+			return true;
+		}catch(ParseException pe){
+			return false;
+		}
+	}
+
+	/**
+	 * Parse the given string as an STC-S region.
+	 *
+	 * @param value	A trimmed string.
+	 *
+	 * @return	The parsed region, or NULL if not an STC-S region.
+	 */
+	protected static Region parseGeometry(final String value){
+		if (!Character.isLetter(value.charAt(0)))
+			return null;
+		try{
+			return STCS.parseRegion(value);
+		}catch(adql.parser.ParseException pe){
+			return null;
+		}
+	}
+
+	/**
+	 * Get the given number as a long, if integral.
+	 *
+	 * @param number	A number.
+	 *
+	 * @return	The corresponding long, or NULL if not integral or out of range.
+	 */
+	protected static Long toLong(final Number number){
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+			return number.longValue();
+		double d = number.doubleValue();
+		if (Double.isInfinite(d) || Double.isNaN(d) || d != Math.rint(d) || d < Long.MIN_VALUE || d > Long.MAX_VALUE)
+			return null;
+		return (long)d;
+	}
+
+	@Override
+	public TAPColumn[] getMetadata() throws DataReadException{
+		init();
+		return colsMeta;
+	}
+
+	@Override
+	public boolean nextRow() throws DataReadException{
+		init();
+		iterationStarted = true;
+		indCol = 0;
+
+		// Rows of the sample first:
+		row = sample.poll();
+		if (row != null){
+			nbRows++;
+			return true;
+		}
+
+		// ...then the other rows:
+		if (innerEnd || endReached || !innerIt.nextRow()){
+			innerEnd = endReached = true;
+			return false;
+		}
+		nbRows++;
+		return true;
+	}
+
+	@Override
+	public boolean hasNextCol() throws IllegalStateException, DataReadException{
+		checkReadState();
+		return (row != null) ? indCol < row.length : innerIt.hasNextCol();
+	}
+
+	@Override
+	public Object nextCol() throws NoSuchElementException, IllegalStateException, DataReadException{
+		checkReadState();
+		Object value;
+		if (row != null){
+			if (indCol >= row.length)
+				throw new NoSuchElementException("No more column to read!");
+			value = row[indCol];
+		}else
+			value = innerIt.nextCol();
+		indCol++;
+		return convert(indCol, value);
+	}
+
+	@Override
+	public DBType getColType() throws IllegalStateException, DataReadException{
+		checkReadState();
+		if (indCol <= 0)
+			throw new IllegalStateException("No column has yet been read!");
+		else if (colsMeta != null && indCol <= colsMeta.length)
+			return colsMeta[indCol - 1].getDatatype();
+		else
+			return innerIt.getColType();
+	}
+
+	@Override
+	public void close() throws DataReadException{
+		endReached = true;
+		sample.clear();
+		innerIt.close();
+	}
+
+	/**
+	 * Check the row iteration state. That's to say whether:
+	 * <ul>
+	 * 	<li>the row iteration has started = the first row has been read = a first call of {@link #nextRow()} has been done</li>
+	 * 	<li>AND the row iteration is not finished = the last row has been read.</li>
+	 * </ul>
+	 *
+	 * @throws IllegalStateException	If the row iteration has not started or is finished.
+	 */
+	protected void checkReadState() throws IllegalStateException{
+		if (!iterationStarted)
+			throw new IllegalStateException("No row has yet been read!");
+		else if (endReached)
+			throw new IllegalStateException("End of table already reached!");
+	}
+
+}
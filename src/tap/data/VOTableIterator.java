@@ -16,11 +16,15 @@ package tap.data;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2015-2017 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2015-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.NoSuchElementException;
 
 import org.xml.sax.SAXParseException;
@@ -43,8 +47,8 @@ import uk.ac.starlink.table.TableSink;
  * 
  * <p>{@link #getColType()} will return TAP type based on the type declared in the VOTable metadata part.</p>
  * 
- * @author Gr&eacute;gory Mantelet (ARI)
- * @version 2.1 (03/2017)
+ * @author Gr&eacute;gory Mantelet (CDS;ARI)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public class VOTableIterator implements TableIterator {
@@ -56,7 +60,10 @@ public class VOTableIterator implements TableIterator {
 	 * <p>This class lets consume the metadata and rows of a VOTable document.</p>
 	 * 
 	 * <p>
-	 * 	On the contrary to a usual TableSink, this one will stop after each row until this row has been fetched by {@link VOTableIterator}.
+	 * 	On the contrary to a usual TableSink, this one hands the accepted rows over to {@link VOTableIterator} by batches
+	 * 	(of {@link #DEFAULT_BATCH_SIZE} rows by default) through a bounded queue (of {@link #DEFAULT_QUEUE_CAPACITY} batches by default).
+	 * 	The VOTable reading stops when this queue is full, until the oldest batch has been fetched by {@link VOTableIterator}.
+	 * 	Thus, the two threads synchronize only once per batch instead of once per row.
 	 * </p>
 	 * 
 	 * <p>
@@ -65,12 +72,25 @@ public class VOTableIterator implements TableIterator {
 	 * 	{@link VOTableIterator}.
 	 * </p>
 	 * 
-	 * @author Gr&eacute;gory Mantelet (ARI)
-	 * @version 2.1 (03/2017)
+	 * <p><i>Note:
+	 * 	This queue has exactly one producer (the thread reading the VOTable) and one consumer (the thread calling {@link #getRow()}).
+	 * 	The batch being filled is only accessed by the producer and the batch being read only by the consumer.
+	 * </i></p>
+	 * 
+	 * @author Gr&eacute;gory Mantelet (CDS;ARI)
+	 * @version 2.4 (10/2026)
 	 * @since 2.0
 	 */
 	protected static class StreamVOTableSink implements TableSink {
 
+		/** Default number of rows handed over at once to {@link VOTableIterator}.
+		 * @since 2.4 */
+		public final static int DEFAULT_BATCH_SIZE = 1024;
+
+		/** Default maximum number of batches waiting to be fetched by {@link VOTableIterator}.
+		 * @since 2.4 */
+		public final static int DEFAULT_QUEUE_CAPACITY = 4;
+
 		/** <p>The accepted VOTable metadata, after conversion from StarTable metadata.</p>
 		 * <p><i>Note: this may be NULL after the metadata has been read if an error occurred while performing the conversion.
 		 * In this case, metaError contains this error.</> */
@@ -79,12 +99,64 @@ public class VOTableIterator implements TableIterator {
 		/** The error which happened while converting the StarTable metadata into TAP metadata. */
 		private DataReadException metaError = null;
 
-		/** The last accepted row. */
-		private Object[] pendingRow = null;
+		/** Maximum number of rows in a batch.
+		 * @since 2.4 */
+		private final int batchSize;
+
+		/** Maximum number of batches in {@link #queue}.
+		 * @since 2.4 */
+		private final int queueCapacity;
+
+		/** Batches of accepted rows not yet fetched. <i>A batch is never empty.</i>
+		 * @since 2.4 */
+		private final Deque<Object[][]> queue;
+
+		/** Batch being filled by the thread reading the VOTable.
+		 * @since 2.4 */
+		private Object[][] fillBatch;
+
+		/** Number of rows in {@link #fillBatch}.
+		 * @since 2.4 */
+		private int fillCount = 0;
+
+		/** Batch being read by {@link #getRow()}.
+		 * @since 2.4 */
+		private Object[][] readBatch = null;
+
+		/** Index of the next row to return in {@link #readBatch}.
+		 * @since 2.4 */
+		private int readPos = 0;
+
+		/** The thread reading the VOTable (i.e. the one which accepted the first row).
+		 * @since 2.4 */
+		private volatile Thread producer = null;
 
 		/** Flag meaning that the end of the stream has been reached
 		 * OR if the VOTable reading should be stopped before reading more rows. */
-		private boolean endReached = false;
+		private volatile boolean endReached = false;
+
+		/**
+		 * Build a TableSink handing the rows over by batches of {@link #DEFAULT_BATCH_SIZE} rows,
+		 * with at most {@link #DEFAULT_QUEUE_CAPACITY} batches waiting to be fetched.
+		 */
+		public StreamVOTableSink(){
+			this(DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+		}
+
+		/**
+		 * Build a TableSink handing the rows over by batches.
+		 * 
+		 * @param batchSize		Maximum number of rows in a batch. <i>If &lt;= 0, 1 is used.</i>
+		 * @param queueCapacity	Maximum number of batches waiting to be fetched. <i>If &lt;= 0, 1 is used.</i>
+		 * 
+		 * @since 2.4
+		 */
+		public StreamVOTableSink(final int batchSize, final int queueCapacity){
+			this.batchSize = (batchSize <= 0) ? 1 : batchSize;
+			this.queueCapacity = (queueCapacity <= 0) ? 1 : queueCapacity;
+			queue = new ArrayDeque<Object[][]>(this.queueCapacity + 1);
+			fillBatch = new Object[this.batchSize][];
+		}
 
 		/**
 		 * <p>Stop nicely reading the VOTable.</p>
@@ -106,6 +178,12 @@ public class VOTableIterator implements TableIterator {
 		 * 	but no exception should be thrown to VOTableIterator.
 		 * </p>
 		 * 
+		 * <p><i>Note:
+		 * 	When called by the thread reading the VOTable (e.g. because of a read error), the rows accepted so far
+		 * 	can still be fetched with {@link #getRow()}. Otherwise (e.g. {@link VOTableIterator#close()}), all the
+		 * 	rows not yet fetched are discarded.
+		 * </i></p>
+		 * 
 		 * @param reason	Reason why this Sink should be stop.
 		 *              	<i>This should be used in case of external grave error that
 		 *              	should be raised when trying to access data through
@@ -113,6 +191,16 @@ public class VOTableIterator implements TableIterator {
 		 *              	Example: a wrong VOTable format.</i>
 		 */
 		public synchronized void stop(final Throwable reason){
+			/* Keep the rows accepted before a read error (unless the reading has already been aborted),
+			 * or forget all rows if the reading is aborted: */
+			if (Thread.currentThread() == producer){
+				if (!endReached && fillCount > 0)
+					queue.addLast(takeFillBatch());
+			}else{
+				queue.clear();
+				readBatch = null;
+			}
+
 			// Prevent further attempt to read the input stream:
 			endReached = true;
 
@@ -160,33 +248,78 @@ public class VOTableIterator implements TableIterator {
 		}
 
 		@Override
-		public synchronized void acceptRow(final Object[] row) throws IOException{
+		public void acceptRow(final Object[] row) throws IOException{
+			if (producer == null)
+				producer = Thread.currentThread();
+
+			/* If the end has been reached, this is not normal
+			 * (because endRows() is always called after acceptRow()...so, it means the iteration has been aborted before the end)
+			 * and so the stream reading should be interrupted: */
+			if (endReached)
+				throw new IOException(STREAM_ABORTED_MESSAGE);
+
+			/* Security for the cases where a row to accept is NULL.
+			 * This case is not supposed to happen because the caller of acceptRow(...) should not give a NULL row...
+			 * ...which should then mean that the end of the stream has been reached. */
+			if (row == null){
+				endRows();
+				return;
+			}
+
+			// Otherwise, keep the given row...
+			fillBatch[fillCount++] = row;
+
+			// ...and hand the batch over once full:
+			if (fillCount == batchSize && !publish())
+				throw new IOException(STREAM_ABORTED_MESSAGE);
+		}
+
+		@Override
+		public void endRows() throws IOException{
+			// Hand over the last rows:
+			publish();
+
+			synchronized(this){
+				// Set the END flag:
+				endReached = true;
+				// Notify all waiting threads that the end has been reached:
+				notifyAll();
+			}
+		}
+
+		/**
+		 * <p>Append the batch being filled to the queue, waiting for a free slot if the queue is full.</p>
+		 * 
+		 * <p><i>Note:
+		 * 	If the thread is interrupted while waiting, this TableSink is set in a state similar to
+		 * 	when the end of the stream has been reached.
+		 * </i></p>
+		 * 
+		 * @return	<i>true</i> if the batch has been appended (or was empty),
+		 *        	<i>false</i> if the reading has been stopped.
+		 * 
+		 * @since 2.4
+		 */
+		private synchronized boolean publish(){
+			if (fillCount == 0)
+				return !endReached;
 			try{
-				// Wait until the last accepted row has been consumed:
-				while(!endReached && pendingRow != null)
+				// Wait until the oldest batch has been consumed:
+				while(!endReached && queue.size() >= queueCapacity)
 					wait();
 
-				/* If the end has been reached, this is not normal
-				 * (because endRows() is always called after acceptRow()...so, it means the iteration has been aborted before the end)
-				 * and so the stream reading should be interrupted: */
+				// If the reading has been stopped, the rows will never be consumed:
 				if (endReached)
-					throw new IOException(STREAM_ABORTED_MESSAGE);
-
-				// Otherwise, keep the given row:
-				pendingRow = row;
+					return false;
 
-				/* Security for the cases where a row to accept is NULL.
-				 * In such case, pendingRow will be set to NULL and the function getRow() will wait for ever.
-				 * This case is not supposed to happen because the caller of acceptRow(...) should not give a NULL row...
-				 * ...which should then mean that the end of the stream has been reached. */
-				if (pendingRow == null)
-					endReached = true;
+				queue.addLast(takeFillBatch());
+				return true;
 
 			}catch(InterruptedException ie){
 				/* If the thread has been interrupted, set this TableSink in a state similar to
 				 * when the end of the stream has been reached: */
-				pendingRow = null;
 				endReached = true;
+				return false;
 
 			}finally{
 				// In all cases, all waiting threads must be freed:
@@ -194,22 +327,18 @@ public class VOTableIterator implements TableIterator {
 			}
 		}
 
-		@Override
-		public synchronized void endRows() throws IOException{
-			try{
-				// Wait until the last accepted row has been consumed:
-				while(!endReached && pendingRow != null)
-					wait();
-			}catch(InterruptedException ie){
-				/* Nothing to do in particular ; the end of the stream will be set anyway. */
-			}finally{
-				// No more rows are available:
-				pendingRow = null;
-				// Set the END flag:
-				endReached = true;
-				// Notify all waiting threads that the end has been reached:
-				notifyAll();
-			}
+		/**
+		 * Get the rows of the batch being filled, and start a new batch.
+		 * 
+		 * @return	The accepted rows not yet handed over. <i>Never empty.</i>
+		 * 
+		 * @since 2.4
+		 */
+		private Object[][] takeFillBatch(){
+			Object[][] batch = (fillCount == batchSize) ? fillBatch : Arrays.copyOf(fillBatch, fillCount);
+			fillBatch = new Object[batchSize][];
+			fillCount = 0;
+			return batch;
 		}
 
 		/**
@@ -256,45 +385,61 @@ public class VOTableIterator implements TableIterator {
 		}
 
 		/**
-		 * <p>Get the last accepted row.</p>
+		 * <p>Get the next accepted row.</p>
 		 * 
 		 * <p><i>Note:
-		 * 	This function is blocking until a row has been accepted or the end of the stream has been reached.
+		 * 	This function is blocking only when all the fetched batches have been read, until a new batch of rows
+		 * 	has been accepted or the end of the stream has been reached.
 		 * 	A Thread interruption will also make this function returning.
 		 * </i></p>
 		 * 
-		 * @return	The last accepted row,
+		 * @return	The next accepted row,
 		 * 			or <i>NULL</i> if no more rows are available or if the iteration has been interrupted/canceled.
 		 */
-		public synchronized Object[] getRow(){
-			try{
-				// Wait until a row has been accepted or the end has been reached:
-				while(!endReached && pendingRow == null)
-					wait();
+		public Object[] getRow(){
+			// Read the current batch without any synchronization:
+			if (readBatch != null && readPos < readBatch.length)
+				return nextReadRow();
 
-				// If there is no more rows, just return NULL (meaning for the called "end of stream"):
-				if (endReached && pendingRow == null)
+			synchronized(this){
+				try{
+					// Wait until a batch has been accepted or the end has been reached:
+					while(!endReached && queue.isEmpty())
+						wait();
+
+					// If there is no more rows, just return NULL (meaning for the called "end of stream"):
+					readBatch = queue.pollFirst();
+					readPos = 0;
+					return (readBatch == null) ? null : nextReadRow();
+
+				}catch(InterruptedException ie){
+					/* If the thread has been interrupted, set this TableSink in a state similar to
+					 * when the end of the stream has been reached: */
+					endReached = true;
+					readBatch = null;
+					// Return NULL, meaning the end of the stream has been reached:
 					return null;
 
-				/* Otherwise, reset pendingRow to NULL in order to enable the reading of the next row,
-				 * and finally return the last accepted row: */
-				Object[] row = pendingRow;
-				pendingRow = null;
-				return row;
-
-			}catch(InterruptedException ie){
-				/* If the thread has been interrupted, set this TableSink in a state similar to
-				 * when the end of the stream has been reached: */
-				endReached = true;
-				// Return NULL, meaning the end of the stream has been reached:
-				return null;
-
-			}finally{
-				// In all cases, the waiting threads must be freed:
-				notifyAll();
+				}finally{
+					// In all cases, the waiting threads must be freed (a slot of the queue may be free now):
+					notifyAll();
+				}
 			}
 		}
 
+		/**
+		 * Get the next row of the batch being read, and forget it in this batch.
+		 * 
+		 * @return	The next row of {@link #readBatch}.
+		 * 
+		 * @since 2.4
+		 */
+		private Object[] nextReadRow(){
+			Object[] row = readBatch[readPos];
+			readBatch[readPos++] = null;
+			return row;
+		}
+
 		/**
 		 * Extract an array of {@link TAPColumn} objects. Each corresponds to one of the columns listed in the given table,
 		 * and so corresponds to the metadata of a column.
@@ -314,8 +459,10 @@ public class VOTableIterator implements TableIterator {
 				// get the field:
 				ColumnInfo colInfo = table.getColumnInfo(i);
 
-				// get the datatype:
+				// get the datatype (or guess it if not a VOTable):
 				String datatype = getAuxDatumValue(colInfo, "Datatype");
+				if (datatype == null)
+					datatype = guessDatatype(colInfo.getContentClass());
 
 				// get the arraysize:
 				String arraysize = ColumnInfo.formatShape(colInfo.getShape());
@@ -347,6 +494,43 @@ public class VOTableIterator implements TableIterator {
 			return columns;
 		}
 
+		/**
+		 * <p>Get the VOTable datatype corresponding to the given class of column values.</p>
+		 * 
+		 * <p>
+		 * 	It is used for the formats whose the columns are not described with a VOTable datatype (e.g. FITS).
+		 * 	Arrays are described by the datatype of their items ; their size is given by the column shape.
+		 * </p>
+		 * 
+		 * @param contentClass	Class of the column values.
+		 * 
+		 * @return	The corresponding VOTable datatype,
+		 *        	or "char" if the class is unknown.
+		 * 
+		 * @since 2.4
+		 */
+		protected String guessDatatype(Class<?> contentClass){
+			if (contentClass == null)
+				return "char";
+			else if (contentClass.isArray())
+				contentClass = contentClass.getComponentType();
+
+			if (contentClass == Boolean.class || contentClass == boolean.class)
+				return "boolean";
+			else if (contentClass == Byte.class || contentClass == byte.class || contentClass == Short.class || contentClass == short.class)
+				return "short";
+			else if (contentClass == Integer.class || contentClass == int.class)
+				return "int";
+			else if (contentClass == Long.class || contentClass == long.class)
+				return "long";
+			else if (contentClass == Float.class || contentClass == float.class)
+				return "float";
+			else if (contentClass == Double.class || contentClass == double.class)
+				return "double";
+			else
+				return "char";
+		}
+
 		/**
 		 * Extract the specified auxiliary datum value from the given {@link ColumnInfo}.
 		 * 
@@ -388,15 +572,36 @@ public class VOTableIterator implements TableIterator {
 	 * @throws DataReadException	If the given VOTable can not be parsed.
 	 */
 	public VOTableIterator(final InputStream input) throws DataReadException{
+		this(input, "votable");
+	}
+
+	/**
+	 * <p>Build a TableIterator able to read rows and columns inside the given input stream,
+	 * with the specified STIL table format.</p>
+	 * 
+	 * <p><i>Note:
+	 * 	The STIL handler of this format must be able to stream the table
+	 * 	(see {@link TableBuilder#streamStarTable(InputStream, TableSink, String)}).
+	 * </i></p>
+	 * 
+	 * @param input		Input stream over a table document.
+	 * @param format	Name of the STIL table format (e.g. "votable", "fits").
+	 * 
+	 * @throws NullPointerException	If NULL is given in parameter.
+	 * @throws DataReadException	If the given table can not be parsed.
+	 * 
+	 * @since 2.4
+	 */
+	protected VOTableIterator(final InputStream input, final String format) throws DataReadException{
 		// An input stream MUST BE provided:
 		if (input == null)
-			throw new NullPointerException("Missing VOTable document input stream over which to iterate!");
+			throw new NullPointerException("Missing " + format + " document input stream over which to iterate!");
 		this.input = input;
 
 		try{
 
-			// Set the VOTable builder/interpreter:
-			final TableBuilder tb = (new StarTableFactory()).getTableBuilder("votable");
+			// Set the table builder/interpreter:
+			final TableBuilder tb = (new StarTableFactory()).getTableBuilder(format);
 
 			// Build the TableSink to use:
 			sink = new StreamVOTableSink();
@@ -411,13 +616,17 @@ public class VOTableIterator implements TableIterator {
 						/* Stop the VOTable sink
 						 *(otherwise it may still waiting for a Thread notification to wake it up): */
 						sink.stop(e);
+					}catch(RuntimeException re){
+						/* Same for unexpected errors (e.g. STIL may fail to report
+						 * an aborted streaming with an IllegalStateException): */
+						sink.stop(re);
 					}
 				}
 			};
 			streamThread.start();
 
 		}catch(Exception ex){
-			throw new DataReadException("Unable to parse/read the given VOTable input stream!", ex);
+			throw new DataReadException("Unable to parse/read the given " + format + " input stream!", ex);
 		}
 	}
 
@@ -16,7 +16,7 @@ package tap.db;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -33,18 +33,31 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import adql.db.DBColumn;
+import adql.db.DBTable;
 import adql.db.DBType;
 import adql.db.DBType.DBDatatype;
 import adql.db.STCS;
 import adql.db.STCS.Region;
+import adql.query.ADQLObject;
 import adql.query.ADQLQuery;
 import adql.query.IdentifierField;
+import adql.query.from.ADQLJoin;
+import adql.query.from.ADQLTable;
+import adql.query.operand.ADQLColumn;
+import adql.search.ISearchHandler;
+import adql.search.SimpleSearchHandler;
 import adql.translator.ADQLTranslator;
 import adql.translator.JDBCTranslator;
 import adql.translator.TranslationException;
@@ -180,8 +193,33 @@ import uws.service.log.UWSLog.LogLevel;
  * 	{@link ResultSetTableIterator#close()} for more details).
  * </i></p>
  *
+ * <h3>Upload batches</h3>
+ *
+ * <p>
+ * 	The rows of an uploaded table are inserted by chunks: the rows are read and converted until a maximum number of rows
+ * 	or an (estimated) amount of bytes is reached, and then inserted in one batch. Thus, the memory used by an upload
+ * 	stays bounded whatever is the size of the uploaded table. These limits can be changed with
+ * 	{@link #setUploadBatchSize(int, long)}.
+ * </p>
+ *
+ * <p>
+ * 	Besides, the next chunk may be read and converted by another thread while the previous one is inserted in the database.
+ * 	This pipelining is disabled by default ; it can be enabled with {@link #setUploadPipelining(boolean)}.
+ * </p>
+ *
+ * <p>
+ * 	With PostgreSQL, the rows are not inserted by batches but streamed with a <code>COPY ... FROM STDIN</code>
+ * 	(see {@link PgCopyBulkLoader}). Another bulk-load strategy can be set with {@link #setUploadBulkLoader(UploadBulkLoader)}.
+ * </p>
+ *
+ * <p>
+ * 	Uploaded tables may be created as UNLOGGED or TEMPORARY tables when supported by the DBMS (see {@link #setUploadTableType(UploadTableType)}).
+ * 	Besides, just before executing a query, the columns of the uploaded tables used in its join or WHERE conditions are indexed
+ * 	and the statistics of these tables are updated (see {@link #setUploadAutoIndex(boolean)}).
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (10/2018)
+ * @version 2.4 (10/2026)
  * @since 2.0
  */
 public class JDBCConnection implements DBConnection {
@@ -198,6 +236,10 @@ public class JDBCConnection implements DBConnection {
 	/** DBMS name of Oracle used in the database URL. */
 	protected final static String DBMS_ORACLE = "oracle";
 
+	/** DBMS name of H2 used in the database URL.
+	 * @since 2.4 */
+	protected final static String DBMS_H2 = "h2";
+
 	/** Name of the database column giving the database name of a TAP column,
 	 * table or schema. */
 	protected final static String DB_NAME_COLUMN = "dbname";
@@ -319,6 +361,73 @@ public class JDBCConnection implements DBConnection {
 	 * @since 2.1 */
 	protected Map<String, String> dbMapping = null;
 
+	/* UPLOAD BATCHES */
+
+	/** Default maximum number of rows inserted in one batch while filling an uploaded table.
+	 * @since 2.4 */
+	public final static int DEFAULT_UPLOAD_BATCH_ROWS = 1000;
+
+	/** Default maximum amount of bytes (estimated) inserted in one batch while filling an uploaded table.
+	 * @since 2.4 */
+	public final static long DEFAULT_UPLOAD_BATCH_BYTES = 4 * 1024 * 1024;
+
+	/** Maximum number of rows inserted in one batch while filling an uploaded table.
+	 * <i>No limit if negative or null.</i>
+	 * @since 2.4 */
+	protected int uploadBatchRows = DEFAULT_UPLOAD_BATCH_ROWS;
+
+	/** Maximum amount of bytes (estimated with {@link #estimateSize(Object)}) inserted in one batch while filling an uploaded table.
+	 * <i>No limit if negative or null.</i>
+	 * @since 2.4 */
+	protected long uploadBatchBytes = DEFAULT_UPLOAD_BATCH_BYTES;
+
+	/** Indicate whether the next chunk of an uploaded table must be read and converted in another thread
+	 * while the previous one is inserted in the database.
+	 * @since 2.4 */
+	protected boolean uploadPipelining = false;
+
+	/** Strategy loading the uploaded rows with a DBMS specific bulk-load API.
+	 * <i>If NULL, or if it can not load a table, the rows are inserted with batch updates (see {@link #fillUploadedTable(TAPTable, TableIterator)}).</i>
+	 * <p>By default, a {@link PgCopyBulkLoader} is set for PostgreSQL connections.</p>
+	 * @since 2.4 */
+	protected UploadBulkLoader uploadBulkLoader = null;
+
+	/**
+	 * Kind of table to create for the uploaded tables.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	public static enum UploadTableType{
+		/** Normal table. */
+		REGULAR,
+		/** Table whose the modifications are not written in the transaction log (PostgreSQL only).
+		 * <i>Faster to fill, but not crash-safe ; which does not matter for an uploaded table.</i> */
+		UNLOGGED,
+		/** Table visible only by the database session which has created it (PostgreSQL, MySQL, H2 and SQLite). */
+		TEMPORARY;
+	}
+
+	/** Kind of table to create for the uploaded tables.
+	 * <i>If not supported by the DBMS, a regular table is created.</i>
+	 * @since 2.4 */
+	protected UploadTableType uploadTableType = UploadTableType.REGULAR;
+
+	/** Indicate whether indexes must be created on the columns of the uploaded tables used in join or WHERE conditions
+	 * (see {@link #indexUploadedTables(ADQLQuery)}).
+	 * @since 2.4 */
+	protected boolean uploadAutoIndex = true;
+
+	/** Tables uploaded with this connection and not yet dropped.
+	 * @since 2.4 */
+	protected final List<TAPTable> uploadedTables = new ArrayList<TAPTable>();
+
+	/** Indexes (<code>table(column)</code>) already created and tables (<code>table</code>) already analyzed
+	 * by {@link #indexUploadedTables(ADQLQuery)}.
+	 * @since 2.4 */
+	protected final Set<String> optimizedUploads = new HashSet<String>();
+
 	/**
 	 * <p>Creates a JDBC connection to the specified database and with the specified JDBC driver.
 	 * This connection is established using the given user name and password.<p>
@@ -383,6 +492,15 @@ public class JDBCConnection implements DBConnection {
 		}catch(SQLException se){
 			throw new DBException("Unable to access to one or several DB metadata (url, supportsTransaction, supportsBatchUpdates, supportsDataDefinitionAndDataManipulationTransactions, supportsSchemasInTableDefinitions, storesLowerCaseIdentifiers, storesUpperCaseIdentifiers, supportsMixedCaseIdentifiers, storesLowerCaseQuotedIdentifiers, storesMixedCaseQuotedIdentifiers, storesUpperCaseQuotedIdentifiers and supportsMixedCaseQuotedIdentifiers) from the given Connection!");
 		}
+
+		// Use the COPY command of PostgreSQL to fill uploaded tables:
+		if (DBMS_POSTGRES.equalsIgnoreCase(dbms)){
+			try{
+				uploadBulkLoader = new PgCopyBulkLoader();
+			}catch(LinkageError le){
+				/* no PostgreSQL driver in the classpath => batch updates */
+			}
+		}
 	}
 
 	/**
@@ -690,6 +808,10 @@ public class JDBCConnection implements DBConnection {
 		String sql = null;
 		ResultSet result = null;
 		try{
+			// 0. Index the uploaded tables used by this query:
+			if (uploadAutoIndex && !uploadedTables.isEmpty())
+				indexUploadedTables(adqlQuery);
+
 			// 1. Translate the ADQL query into SQL:
 			if (logger != null)
 				logger.logDB(LogLevel.INFO, this, "TRANSLATE", "Translating ADQL: " + adqlQuery.toADQL().replaceAll("(\t|\r?\n)+", " "), null);
@@ -2334,21 +2456,19 @@ public class JDBCConnection implements DBConnection {
 
 		try{
 
-			// Start a transaction:
-			startTransaction();
-			// ...create a statement:
+			// Create a statement:
 			getStatement();
 
 			DatabaseMetaData dbMeta = connection.getMetaData();
 
-			// 1. Create the upload schema, if it does not already exist:
-			if (!isSchemaExisting(tableDef.getDBSchemaName(), dbMeta)){
-				stmt.executeUpdate("CREATE SCHEMA " + translator.getQualifiedSchemaName(tableDef));
-				if (logger != null)
-					logger.logDB(LogLevel.INFO, this, "SCHEMA_CREATED", "Schema \"" + tableDef.getADQLSchemaName() + "\" (in DB: " + translator.getQualifiedSchemaName(tableDef) + ") created.", null);
-			}
+			// 1. Create the upload schema, if it does not already exist (before the transaction, so that concurrent uploads can share it):
+			createUploadSchema(tableDef, dbMeta);
+
+			// Start a transaction:
+			startTransaction();
+
 			// 1bis. Ensure the table does not already exist and if it is the case, throw an understandable exception:
-			else if (isTableExisting(tableDef.getDBSchemaName(), tableDef.getDBName(), dbMeta)){
+			if (isTableExisting(tableDef.getDBSchemaName(), tableDef.getDBName(), dbMeta)){
 				DBException de = new DBException("Impossible to create the user uploaded table in the database: " + translator.getTableName(tableDef, supportsSchema) + "! This table already exists.");
 				if (logger != null)
 					logger.logDB(LogLevel.ERROR, this, "ADD_UPLOAD_TABLE", de.getMessage(), de);
@@ -2361,7 +2481,7 @@ public class JDBCConnection implements DBConnection {
 
 			// 2. Create the table:
 			// ...build the SQL query:
-			StringBuffer sqlBuf = new StringBuffer("CREATE TABLE ");
+			StringBuffer sqlBuf = new StringBuffer(getCreateUploadedTableCommand());
 			sqlBuf.append(translator.getTableName(tableDef, supportsSchema)).append(" (");
 			Iterator<TAPColumn> it = tableDef.getColumns();
 			while(it.hasNext()){
@@ -2383,13 +2503,16 @@ public class JDBCConnection implements DBConnection {
 			if (isCancelled())
 				throw new DBCancelledException();
 
-			// 3. Fill the table:
-			int nbUploadedRows = fillUploadedTable(tableDef, data);
+			// 3. Fill the table (with the bulk loader if any and able to load it):
+			int nbUploadedRows = (uploadBulkLoader == null) ? -1 : uploadBulkLoader.load(this, tableDef, data);
+			if (nbUploadedRows < 0)
+				nbUploadedRows = fillUploadedTable(tableDef, data);
 			if (isCancelled())
 				throw new DBCancelledException();
 
 			// Commit the transaction:
 			commit();
+			uploadedTables.add(tableDef);
 
 			// Log the end:
 			if (logger != null)
@@ -2416,16 +2539,133 @@ public class JDBCConnection implements DBConnection {
 		}
 	}
 
+	/**
+	 * <p>Create the schema of the given uploaded table, if it does not already exist.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This schema may be created at the same time by another connection (e.g. when several tables are uploaded
+	 * 	concurrently). So, if its creation fails, it is not considered as an error if the schema exists afterwards.
+	 * </i></p>
+	 *
+	 * @param tableDef	Definition of the uploaded table.
+	 * @param dbMeta	Metadata of the database.
+	 *
+	 * @throws SQLException	If the schema does not exist and can not be created.
+	 *
+	 * @since 2.4
+	 */
+	private void createUploadSchema(final TAPTable tableDef, final DatabaseMetaData dbMeta) throws SQLException{
+		if (isSchemaExisting(tableDef.getDBSchemaName(), dbMeta))
+			return;
+		try{
+			stmt.executeUpdate("CREATE SCHEMA " + translator.getQualifiedSchemaName(tableDef));
+			if (logger != null)
+				logger.logDB(LogLevel.INFO, this, "SCHEMA_CREATED", "Schema \"" + tableDef.getADQLSchemaName() + "\" (in DB: " + translator.getQualifiedSchemaName(tableDef) + ") created.", null);
+		}catch(SQLException se){
+			if (!isSchemaExisting(tableDef.getDBSchemaName(), dbMeta))
+				throw se;
+		}
+	}
+
+	/**
+	 * <p>Declare a table uploaded (and committed) through another connection.</p>
+	 *
+	 * <p>
+	 * 	Such table is then handled exactly as if it had been uploaded with
+	 * 	{@link #addUploadedTable(TAPTable, TableIterator)}: its columns are
+	 * 	indexed when used by a query (see {@link #setUploadAutoIndex(boolean)})
+	 * 	and it is forgotten by {@link #dropUploadedTable(TAPTable)}.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	This is used by {@link tap.upload.Uploader} when several tables are
+	 * 	loaded concurrently through different connections.
+	 * </i></p>
+	 *
+	 * @param tableDef	Definition of the uploaded table.
+	 *                	<i>Nothing is done if NULL.</i>
+	 *
+	 * @since 2.4
+	 */
+	public void registerUploadedTable(final TAPTable tableDef){
+		registerUploadedTable(tableDef, false);
+	}
+
+	/**
+	 * <p>Declare a table uploaded (and committed) through another connection,
+	 * telling whether its statistics are already up-to-date.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This is used by {@link tap.upload.Uploader} for a table reused from
+	 * 	its cache: such table has already been analyzed when it has been
+	 * 	cached (see {@link #analyzeUploadedTable(TAPTable)}), and its content
+	 * 	never changes. Its existing indexes are also not created again (see
+	 * 	{@link #indexUploadedTables(ADQLQuery)}).
+	 * </i></p>
+	 *
+	 * @param tableDef	Definition of the uploaded table.
+	 *                	<i>Nothing is done if NULL.</i>
+	 * @param analyzed	<i>true</i> if the table must not be analyzed again,
+	 *                	<i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	public synchronized void registerUploadedTable(final TAPTable tableDef, final boolean analyzed){
+		if (tableDef != null && !uploadedTables.contains(tableDef)){
+			uploadedTables.add(tableDef);
+			if (analyzed)
+				optimizedUploads.add(translator.getTableName(tableDef, supportsSchema));
+		}
+	}
+
+	/**
+	 * <p>Update now the statistics of the given uploaded table, if not already done by this connection.</p>
+	 *
+	 * <p><i>Note:
+	 * 	Errors are just logged: missing statistics should never prevent the query execution.
+	 * </i></p>
+	 *
+	 * @param tableDef	Definition of the uploaded table.
+	 *                	<i>Nothing is done if NULL.</i>
+	 *
+	 * @see #getAnalyzeCommand(TAPTable)
+	 *
+	 * @since 2.4
+	 */
+	public void analyzeUploadedTable(final TAPTable tableDef){
+		String analyze = (tableDef == null) ? null : getAnalyzeCommand(tableDef);
+		if (analyze == null || !optimizedUploads.add(translator.getTableName(tableDef, supportsSchema)))
+			return;
+		Statement st = null;
+		try{
+			st = connection.createStatement();
+			executeOptimization(st, analyze);
+		}catch(SQLException se){
+			if (logger != null)
+				logger.logDB(LogLevel.WARNING, this, "INDEX_UPLOAD", "Impossible to analyze the uploaded table \"" + tableDef.getADQLName() + "\"!", se);
+		}finally{
+			close(st);
+		}
+	}
+
 	/**
 	 * <p>Fill the table uploaded by the user with the given data.</p>
 	 *
+	 * <p>
+	 * 	The rows are inserted by chunks: rows are read and converted (see {@link #convertUploadedValue(TAPColumn, Object, int, int)})
+	 * 	until {@link #uploadBatchRows} rows or {@link #uploadBatchBytes} bytes are reached ; then the whole chunk is inserted
+	 * 	in one batch and forgotten before reading the next one. If {@link #uploadPipelining} is enabled, the next chunk is
+	 * 	read and converted by another thread while the previous one is inserted.
+	 * </p>
+	 *
 	 * <p><i>Note:
 	 * 	Batch updates may be done here if its supported by the DBMS connection.
 	 * 	In case of any failure while using this feature, it will be flagged as unsupported and one-by-one updates will be processed.
 	 * </i></p>
 	 *
 	 * <p><i>Note:
-	 * 	This function proceeds to a formatting of TIMESTAMP and GEOMETRY (point, circle, box, polygon) values.
+	 * 	The cancellation of the upload is checked before inserting each chunk. The time spent to read, bind and execute
+	 * 	each chunk is logged (as DEBUG).
 	 * </i></p>
 	 *
 	 * @param metaTable	Description of the updated table.
@@ -2459,82 +2699,324 @@ public class JDBCConnection implements DBConnection {
 
 		// 2. Prepare the statement:
 		PreparedStatement stmt = null;
-		int nbRows = 0;
+		UploadChunkReader reader = null;
+		int nbRows = 0, nbChunks = 0;
 		try{
 			stmt = connection.prepareStatement(sql.toString());
+			reader = (uploadPipelining ? new PipelinedUploadChunkReader(data, cols) : new UploadChunkReader(data, cols));
 
-			// 3. Execute the query for each given row:
-			while(data.nextRow()){
-				nbRows++;
-				int c = 1;
-				while(data.hasNextCol()){
-					Object val = data.nextCol();
-					if (val != null && cols[c - 1] != null){
-						/* TIMESTAMP FORMATTING */
-						if (cols[c - 1].getDatatype().type == DBDatatype.TIMESTAMP){
-							try{
-								val = new Timestamp(ISO8601Format.parse(val.toString()));
-							}catch(ParseException pe){
-								if (logger != null)
-									logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + nbRows + ", c. " + c + "] Unexpected date format for the value: \"" + val + "\"! A date formatted in ISO8601 was expected.", pe);
-								throw new DBException("[l. " + nbRows + ", c. " + c + "] Unexpected date format for the value: \"" + val + "\"! A date formatted in ISO8601 was expected.", pe);
-							}
-						}
-						/* GEOMETRY FORMATTING */
-						else if (cols[c - 1].getDatatype().type == DBDatatype.POINT || cols[c - 1].getDatatype().type == DBDatatype.REGION){
-							Region region;
-							// parse the region as an STC-S expression:
-							try{
-								region = STCS.parseRegion(val.toString());
-							}catch(adql.parser.ParseException e){
-								if (logger != null)
-									logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + nbRows + ", c. " + c + "] Incorrect STC-S syntax for the geometrical value \"" + val + "\"! " + e.getMessage(), e);
-								throw new DataReadException("[l. " + nbRows + ", c. " + c + "] Incorrect STC-S syntax for the geometrical value \"" + val + "\"! " + e.getMessage(), e);
-							}
-							// translate this STC region into the corresponding column value:
-							try{
-								val = translator.translateGeometryToDB(region);
-							}catch(adql.parser.ParseException e){
-								if (logger != null)
-									logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + nbRows + ", c. " + c + "] Impossible to import the ADQL geometry \"" + val + "\" into the database! " + e.getMessage(), e);
-								throw new DataReadException("[l. " + nbRows + ", c. " + c + "] Impossible to import the ADQL geometry \"" + val + "\" into the database! " + e.getMessage(), e);
-							}
-						}
-						/* BOOLEAN CASE (more generally, type incompatibility) */
-						else if (val != null && cols[c - 1].getDatatype().type == DBDatatype.SMALLINT && val instanceof Boolean)
-							val = ((Boolean)val) ? (short)1 : (short)0;
-						/* NULL CHARACTER CASE (JUST FOR POSTGRESQL) */
-						else if ((dbms == null || dbms.equalsIgnoreCase(DBMS_POSTGRES)) && val instanceof Character && (Character)val == 0x00)
-							val = null;
-					}
-
-					// If the query has been aborted, return immediately:
-					if (isCancelled())
-						throw new DBCancelledException();
-					else
-						stmt.setObject(c++, val);
-				}
+			// 3. Insert the rows chunk by chunk:
+			long start = System.nanoTime();
+			List<Object[]> chunk;
+			while((chunk = reader.nextChunk()) != null){
+				long readTime = System.nanoTime() - start;
+				nbChunks++;
 
 				// If the query has been aborted, return immediately:
 				if (isCancelled())
 					throw new DBCancelledException();
-				else
-					executeUpdate(stmt, nbRows);
+
+				// ...bind all the rows of the chunk:
+				long bindStart = System.nanoTime();
+				for(int r = 0; r < chunk.size(); r++){
+					Object[] row = chunk.get(r);
+					for(int c = 0; c < row.length; c++)
+						stmt.setObject(c + 1, row[c]);
+					/* note: each chunk is a new batch, so a failure of addBatch()
+					 *       on its first row can still fall back on executeUpdate(): */
+					executeUpdate(stmt, (supportsBatchUpdates ? r + 1 : nbRows + r + 1));
+				}
+
+				// ...and insert them:
+				long execStart = System.nanoTime();
+				executeBatchUpdates(stmt, chunk.size());
+				nbRows += chunk.size();
+
+				if (logger != null)
+					logger.logDB(LogLevel.DEBUG, this, "UPLOAD", "Chunk " + nbChunks + " of " + chunk.size() + " rows inserted in " + translator.getTableName(metaTable, supportsSchema) + " (total: " + nbRows + " rows) [read: " + ((bindStart - start) / 1000000) + "ms, bind: " + ((execStart - bindStart) / 1000000) + "ms, execute: " + ((System.nanoTime() - execStart) / 1000000) + "ms]", null);
+
+				// Forget this chunk before reading the next one:
+				chunk.clear();
+				start = System.nanoTime();
 			}
 
 			// If the query has been aborted, return immediately:
 			if (isCancelled())
 				throw new DBCancelledException();
-			else
-				executeBatchUpdates(stmt, nbRows);
 
 			return nbRows;
 
 		}finally{
+			if (reader != null)
+				reader.close();
 			close(stmt);
 		}
 	}
 
+	/**
+	 * <p>Convert the given value of an uploaded table into the value to insert in the database.</p>
+	 *
+	 * <p><i>Note:
+	 * 	This function proceeds to a formatting of TIMESTAMP and GEOMETRY (point, circle, box, polygon) values.
+	 * 	Booleans are converted into 0 or 1 when the column is a SMALLINT, and for PostgreSQL, the NULL character is replaced by NULL.
+	 * </i></p>
+	 *
+	 * <p><i>Note:
+	 * 	If {@link #uploadPipelining} is enabled, this function is not called by the thread inserting the rows.
+	 * </i></p>
+	 *
+	 * @param col		Description of the column. <i>May be NULL.</i>
+	 * @param val		The value to convert. <i>May be NULL.</i>
+	 * @param indRow	Index of the row (starting from 1). It is used only for error management purpose.
+	 * @param indCol	Index of the column (starting from 1). It is used only for error management purpose.
+	 *
+	 * @return	The value to insert.
+	 *
+	 * @throws DBException			If the value is a date not formatted in ISO8601.
+	 * @throws DataReadException	If the value is a geometry that can not be parsed or translated.
+	 *
+	 * @since 2.4
+	 */
+	public Object convertUploadedValue(final TAPColumn col, Object val, final int indRow, final int indCol) throws DBException, DataReadException{
+		if (val == null || col == null)
+			return val;
+
+		/* TIMESTAMP FORMATTING */
+		if (col.getDatatype().type == DBDatatype.TIMESTAMP){
+			try{
+				val = new Timestamp(ISO8601Format.parse(val.toString()));
+			}catch(ParseException pe){
+				if (logger != null)
+					logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + indRow + ", c. " + indCol + "] Unexpected date format for the value: \"" + val + "\"! A date formatted in ISO8601 was expected.", pe);
+				throw new DBException("[l. " + indRow + ", c. " + indCol + "] Unexpected date format for the value: \"" + val + "\"! A date formatted in ISO8601 was expected.", pe);
+			}
+		}
+		/* GEOMETRY FORMATTING */
+		else if (col.getDatatype().type == DBDatatype.POINT || col.getDatatype().type == DBDatatype.REGION){
+			Region region;
+			// parse the region as an STC-S expression:
+			try{
+				region = STCS.parseRegion(val.toString());
+			}catch(adql.parser.ParseException e){
+				if (logger != null)
+					logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + indRow + ", c. " + indCol + "] Incorrect STC-S syntax for the geometrical value \"" + val + "\"! " + e.getMessage(), e);
+				throw new DataReadException("[l. " + indRow + ", c. " + indCol + "] Incorrect STC-S syntax for the geometrical value \"" + val + "\"! " + e.getMessage(), e);
+			}
+			// translate this STC region into the corresponding column value:
+			try{
+				val = translator.translateGeometryToDB(region);
+			}catch(adql.parser.ParseException e){
+				if (logger != null)
+					logger.logDB(LogLevel.ERROR, this, "UPLOAD", "[l. " + indRow + ", c. " + indCol + "] Impossible to import the ADQL geometry \"" + val + "\" into the database! " + e.getMessage(), e);
+				throw new DataReadException("[l. " + indRow + ", c. " + indCol + "] Impossible to import the ADQL geometry \"" + val + "\" into the database! " + e.getMessage(), e);
+			}
+		}
+		/* BOOLEAN CASE (more generally, type incompatibility) */
+		else if (col.getDatatype().type == DBDatatype.SMALLINT && val instanceof Boolean)
+			val = ((Boolean)val) ? (short)1 : (short)0;
+		/* NULL CHARACTER CASE (JUST FOR POSTGRESQL) */
+		else if ((dbms == null || dbms.equalsIgnoreCase(DBMS_POSTGRES)) && val instanceof Character && (Character)val == 0x00)
+			val = null;
+
+		return val;
+	}
+
+	/**
+	 * <p>Estimate the amount of memory taken by the given value once converted for the upload.</p>
+	 *
+	 * <p>This estimation is used to limit the size of the chunks inserted in one batch (see {@link #uploadBatchBytes}).</p>
+	 *
+	 * @param val	The value to measure. <i>May be NULL.</i>
+	 *
+	 * @return	An estimation (in bytes) of its size.
+	 *
+	 * @since 2.4
+	 */
+	protected long estimateSize(final Object val){
+		if (val == null)
+			return 4;
+		else if (val instanceof CharSequence)
+			return 40 + 2 * ((CharSequence)val).length();
+		else if (val instanceof byte[])
+			return 16 + ((byte[])val).length;
+		else if (val instanceof Number || val instanceof Boolean || val instanceof Character || val instanceof java.util.Date)
+			return 16 + 8;
+		else if (val.getClass().isArray())
+			return 16 + 8 * java.lang.reflect.Array.getLength(val);
+		else
+			return 40 + 2 * val.toString().length();
+	}
+
+	/**
+	 * Read and convert the rows of an uploaded table by chunks of at most {@link #uploadBatchRows} rows
+	 * and {@link #uploadBatchBytes} bytes.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	private class UploadChunkReader {
+		/** Rows to read. */
+		protected final TableIterator data;
+		/** Description of the read columns. */
+		protected final TAPColumn[] cols;
+		/** Maximum number of rows per chunk. <i>No limit if negative.</i> */
+		protected final int maxRows;
+		/** Maximum amount of bytes per chunk. <i>No limit if negative.</i> */
+		protected final long maxBytes;
+		/** Number of rows read so far. */
+		protected int nbRows = 0;
+		/** Indicate whether all rows have been read. */
+		protected boolean ended = false;
+
+		public UploadChunkReader(final TableIterator data, final TAPColumn[] cols){
+			this.data = data;
+			this.cols = cols;
+			this.maxRows = uploadBatchRows;
+			this.maxBytes = uploadBatchBytes;
+		}
+
+		/**
+		 * Read and convert the next chunk of rows.
+		 *
+		 * @return	The converted rows, or NULL if there is no more row.
+		 *
+		 * @throws DBException			If a value can not be converted.
+		 * @throws DataReadException	If the rows can not be read.
+		 */
+		public List<Object[]> nextChunk() throws DBException, DataReadException{
+			List<Object[]> chunk = new ArrayList<Object[]>((maxRows > 0) ? Math.min(maxRows, 1024) : 1024);
+			long nbBytes = 0;
+			while(!ended && (maxRows <= 0 || chunk.size() < maxRows) && (maxBytes <= 0 || nbBytes < maxBytes)){
+				if (!data.nextRow()){
+					ended = true;
+					break;
+				}
+				nbRows++;
+				Object[] row = new Object[cols.length];
+				int c = 0;
+				while(data.hasNextCol()){
+					if (c >= cols.length)
+						throw new DataReadException("[l. " + nbRows + "] Too many columns! Only " + cols.length + " columns are expected.");
+					row[c] = convertUploadedValue(cols[c], data.nextCol(), nbRows, c + 1);
+					nbBytes += estimateSize(row[c++]);
+				}
+				chunk.add(row);
+			}
+			return chunk.isEmpty() ? null : chunk;
+		}
+
+		/** Stop reading the rows. */
+		public void close(){}
+	}
+
+	/**
+	 * Read and convert the chunks of an uploaded table in a separated thread, so that the next chunk
+	 * is prepared while the previous one is inserted in the database.
+	 *
+	 * <p><i>Note:
+	 * 	At most one chunk is waiting to be inserted. So, with the chunk being inserted and the chunk being read,
+	 * 	no more than 3 chunks are in memory at the same time.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	private class PipelinedUploadChunkReader extends UploadChunkReader implements Runnable {
+		/** Chunks read but not yet inserted, followed by {@link #END} or by the error which stopped the reading. */
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(1);
+		/** Thread reading the chunks. */
+		private final Thread thread;
+		/** Indicate whether the reading must stop. */
+		private volatile boolean stopped = false;
+
+		public PipelinedUploadChunkReader(final TableIterator data, final TAPColumn[] cols){
+			super(data, cols);
+			thread = new Thread(this, "TAP-Upload-" + ID);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void run(){
+			try{
+				List<Object[]> chunk;
+				while(!stopped && !isCancelled() && (chunk = super.nextChunk()) != null)
+					put(chunk);
+				put(END);
+			}catch(Throwable t){
+				put(t);
+			}
+		}
+
+		/**
+		 * Wait until the given item can be given to the inserting thread,
+		 * or until the reading is stopped.
+		 */
+		private void put(final Object item){
+			try{
+				while(!stopped && !queue.offer(item, 100, TimeUnit.MILLISECONDS));
+			}catch(InterruptedException ie){
+				stopped = true;
+			}
+		}
+
+		@Override
+		public List<Object[]> nextChunk() throws DBException, DataReadException{
+			if (stopped)
+				return null;
+
+			// Wait for the next chunk:
+			Object item;
+			try{
+				item = queue.take();
+			}catch(InterruptedException ie){
+				throw new DBCancelledException();
+			}
+
+			// Return it, or throw the error which stopped the reading:
+			if (item == END){
+				stopped = true;
+				return null;
+			}else if (item instanceof DBException)
+				throw (DBException)item;
+			else if (item instanceof DataReadException)
+				throw (DataReadException)item;
+			else if (item instanceof RuntimeException)
+				throw (RuntimeException)item;
+			else if (item instanceof Error)
+				throw (Error)item;
+			else if (item instanceof Throwable)
+				throw new DataReadException("Impossible to read the uploaded rows!", (Throwable)item);
+			else{
+				@SuppressWarnings("unchecked")
+				List<Object[]> chunk = (List<Object[]>)item;
+				return chunk;
+			}
+		}
+
+		/**
+		 * Stop the reading thread and wait for its end,
+		 * so that the rows are no longer read once the upload is finished.
+		 */
+		@Override
+		public void close(){
+			stopped = true;
+			queue.clear();
+			thread.interrupt();
+			try{
+				thread.join();
+			}catch(InterruptedException ie){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/** Marker of the end of the rows read by a {@link PipelinedUploadChunkReader}.
+	 * @since 2.4 */
+	private final static Object END = new Object();
+
 	/**
 	 * <p><i><b>Important note:</b>
 	 * 	Only tables uploaded by users can be dropped from the database. To ensure that, the schema name of this table MUST be {@link STDSchema#UPLOADSCHEMA} ("TAP_UPLOAD") in ADQL.
@@ -2569,6 +3051,16 @@ public class JDBCConnection implements DBConnection {
 
 		try{
 
+			// Forget its indexes and statistics:
+			String dbTableName = translator.getTableName(tableDef, supportsSchema);
+			uploadedTables.remove(tableDef);
+			Iterator<String> itOptimized = optimizedUploads.iterator();
+			while(itOptimized.hasNext()){
+				String item = itOptimized.next();
+				if (item.equals(dbTableName) || item.startsWith(dbTableName + "("))
+					itOptimized.remove();
+			}
+
 			// Check the existence of the table to drop:
 			if (!isTableExisting(tableDef.getDBSchemaName(), tableDef.getDBName(), connection.getMetaData()))
 				return true;
@@ -2597,6 +3089,287 @@ public class JDBCConnection implements DBConnection {
 		}
 	}
 
+	/**
+	 * <p>Get the beginning of the SQL command creating an uploaded table, in function of {@link #uploadTableType} and of the DBMS.</p>
+	 *
+	 * <ul>
+	 * 	<li><b>UNLOGGED:</b> <code>CREATE UNLOGGED TABLE</code> with PostgreSQL,</li>
+	 * 	<li><b>TEMPORARY:</b> <code>CREATE TEMPORARY TABLE</code> with PostgreSQL and MySQL, <code>CREATE LOCAL TEMPORARY TABLE</code> with H2
+	 * 		and <code>CREATE TEMP TABLE</code> with SQLite,</li>
+	 * 	<li><code>CREATE TABLE</code> otherwise.</li>
+	 * </ul>
+	 *
+	 * @return	The beginning of the CREATE TABLE command (ending with a space).
+	 *
+	 * @since 2.4
+	 */
+	protected String getCreateUploadedTableCommand(){
+		if (uploadTableType == UploadTableType.UNLOGGED && DBMS_POSTGRES.equalsIgnoreCase(dbms))
+			return "CREATE UNLOGGED TABLE ";
+		else if (uploadTableType == UploadTableType.TEMPORARY){
+			if (DBMS_POSTGRES.equalsIgnoreCase(dbms) || DBMS_MYSQL.equalsIgnoreCase(dbms))
+				return "CREATE TEMPORARY TABLE ";
+			else if (DBMS_H2.equalsIgnoreCase(dbms))
+				return "CREATE LOCAL TEMPORARY TABLE ";
+			else if (DBMS_SQLITE.equalsIgnoreCase(dbms))
+				return "CREATE TEMP TABLE ";
+		}
+		return "CREATE TABLE ";
+	}
+
+	/**
+	 * Tell whether the uploaded tables must be created without schema prefix.
+	 *
+	 * <p>
+	 * 	It is the case when schemas are not supported, and for temporary tables with PostgreSQL
+	 * 	and SQLite (whose temporary tables are always in a special schema).
+	 * </p>
+	 *
+	 * @return	<i>true</i> if the schema of the uploaded tables must be merged into their name,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isUploadSchemaless(){
+		return !supportsSchema || (uploadTableType == UploadTableType.TEMPORARY && (DBMS_POSTGRES.equalsIgnoreCase(dbms) || DBMS_SQLITE.equalsIgnoreCase(dbms)));
+	}
+
+	/**
+	 * <p>Create indexes on the columns of the uploaded tables used by the given query in join or WHERE conditions,
+	 * and update the statistics of these tables.</p>
+	 *
+	 * <p>
+	 * 	Only the tables uploaded with this connection are concerned. Each index is created and each table is analyzed
+	 * 	only once, even if several queries use them. An index already existing in the database (e.g. created by
+	 * 	another connection on a cached uploaded table) is not created again.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	Geometrical and binary columns are never indexed. Columns of a NATURAL join are not taken into account.
+	 * </i></p>
+	 *
+	 * <p><i>Note:
+	 * 	Errors are just logged: a missing index or missing statistics should never prevent the query execution.
+	 * </i></p>
+	 *
+	 * @param adqlQuery	The checked ADQL query about to be executed.
+	 *
+	 * @throws DBCancelledException	If {@link #cancel(boolean)} has been called during the processing.
+	 *
+	 * @since 2.4
+	 */
+	protected void indexUploadedTables(final ADQLQuery adqlQuery) throws DBCancelledException{
+		// 1. List the columns of the uploaded tables used in join or WHERE conditions:
+		Map<TAPTable, List<TAPColumn>> usedColumns = new LinkedHashMap<TAPTable, List<TAPColumn>>();
+		ISearchHandler handler = new SimpleSearchHandler(true){
+			@Override
+			public boolean match(final ADQLObject obj){
+				return (obj instanceof ADQLColumn) || (obj instanceof ADQLJoin);
+			}
+		};
+		for(ADQLObject clause : new ADQLObject[]{adqlQuery.getFrom(),adqlQuery.getWhere()}){
+			handler.search(clause);
+			for(ADQLObject obj : handler){
+				// column used in a condition:
+				if (obj instanceof ADQLColumn){
+					DBColumn dbCol = ((ADQLColumn)obj).getDBLink();
+					if (dbCol != null)
+						addUsedColumn(usedColumns, findUploadedTable(dbCol.getTable()), dbCol.getDBName(), false);
+				}
+				// columns of a USING join:
+				else if (((ADQLJoin)obj).hasJoinedColumns() && !((ADQLJoin)obj).isNatural()){
+					Iterator<ADQLColumn> itJoined = ((ADQLJoin)obj).getJoinedColumns();
+					while(itJoined.hasNext()){
+						String colName = itJoined.next().getColumnName();
+						for(ADQLTable t : ((ADQLJoin)obj).getTables())
+							addUsedColumn(usedColumns, findUploadedTable(t.getDBLink()), colName, true);
+					}
+				}
+			}
+		}
+		// ...and the uploaded tables used without condition:
+		for(ADQLTable t : adqlQuery.getFrom().getTables()){
+			TAPTable upload = findUploadedTable(t.getDBLink());
+			if (upload != null && !usedColumns.containsKey(upload))
+				usedColumns.put(upload, new ArrayList<TAPColumn>());
+		}
+		if (usedColumns.isEmpty())
+			return;
+
+		// 2. Create the missing indexes and analyze the tables:
+		Statement st = null;
+		try{
+			st = connection.createStatement();
+			DatabaseMetaData dbMeta = connection.getMetaData();
+			for(Map.Entry<TAPTable, List<TAPColumn>> entry : usedColumns.entrySet()){
+				final TAPTable table = entry.getKey();
+				final String dbTableName = translator.getTableName(table, supportsSchema);
+				for(TAPColumn col : entry.getValue()){
+					if (isCancelled())
+						throw new DBCancelledException();
+					if (optimizedUploads.add(dbTableName + "(" + col.getDBName() + ")") && !isIndexExisting(table, col, dbMeta)){
+						String indexName = ("INDEX_" + table.getDBName() + "_" + col.getDBName()).replaceAll("[^a-zA-Z0-9_]", "_");
+						if (indexName.length() > 60)
+							indexName = indexName.substring(0, 50) + "_" + Integer.toHexString(indexName.hashCode());
+						executeOptimization(st, "CREATE INDEX " + indexName + " ON " + dbTableName + "(" + translator.getColumnName(col) + ")");
+					}
+				}
+				String analyze = getAnalyzeCommand(table);
+				if (analyze != null && optimizedUploads.add(dbTableName)){
+					if (isCancelled())
+						throw new DBCancelledException();
+					executeOptimization(st, analyze);
+				}
+			}
+		}catch(SQLException se){
+			if (!isCancelled() && logger != null)
+				logger.logDB(LogLevel.WARNING, this, "INDEX_UPLOAD", "Impossible to optimize the uploaded tables!", se);
+		}finally{
+			close(st);
+		}
+	}
+
+	/**
+	 * Add the specified column of the given uploaded table to the columns to index.
+	 *
+	 * @param usedColumns	Columns to index for each uploaded table.
+	 * @param upload		The uploaded table. <i>Nothing is done if NULL.</i>
+	 * @param colName		DB name (or ADQL name if <code>byAdqlName</code>) of the column to index.
+	 * @param byAdqlName	<i>true</i> if the column name is an ADQL name, <i>false</i> if it is a DB name.
+	 */
+	private void addUsedColumn(final Map<TAPTable, List<TAPColumn>> usedColumns, final TAPTable upload, final String colName, final boolean byAdqlName){
+		if (upload == null)
+			return;
+		List<TAPColumn> columns = usedColumns.get(upload);
+		if (columns == null)
+			usedColumns.put(upload, (columns = new ArrayList<TAPColumn>()));
+		TAPColumn col = (TAPColumn)upload.getColumn(colName, byAdqlName);
+		if (col != null && !columns.contains(col)){
+			DBDatatype type = (col.getDatatype() == null) ? null : col.getDatatype().type;
+			if (type != DBDatatype.POINT && type != DBDatatype.REGION && type != DBDatatype.BLOB && type != DBDatatype.CLOB && type != DBDatatype.BINARY && type != DBDatatype.VARBINARY)
+				columns.add(col);
+		}
+	}
+
+	/**
+	 * Get the table uploaded with this connection and described by the given table.
+	 *
+	 * @param table	A table referenced in an ADQL query (maybe a copy of the uploaded table, with an alias).
+	 *
+	 * @return	The corresponding uploaded table, or NULL if the given table has not been uploaded with this connection.
+	 */
+	private TAPTable findUploadedTable(final DBTable table){
+		if (table == null)
+			return null;
+		for(TAPTable upload : uploadedTables){
+			if (upload.getDBName().equals(table.getDBName()) && (upload.getDBSchemaName() == null ? table.getDBSchemaName() == null : upload.getDBSchemaName().equals(table.getDBSchemaName())))
+				return upload;
+		}
+		return null;
+	}
+
+	/**
+	 * <p>Tell whether the given column of an uploaded table is already the first column of an index.</p>
+	 *
+	 * <p><i>Note:
+	 * 	Any error is just logged: the index is then considered as missing.
+	 * </i></p>
+	 *
+	 * @param table		An uploaded table.
+	 * @param column	One of its columns.
+	 * @param dbMeta	Database metadata.
+	 *
+	 * @return	<i>true</i> if such an index exists, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isIndexExisting(final TAPTable table, final TAPColumn column, final DatabaseMetaData dbMeta){
+		boolean schemaCaseSensitive = translator.isCaseSensitive(IdentifierField.SCHEMA);
+		boolean tableCaseSensitive = translator.isCaseSensitive(IdentifierField.TABLE);
+		boolean columnCaseSensitive = translator.isCaseSensitive(IdentifierField.COLUMN);
+		String schemaName = supportsSchema ? table.getDBSchemaName() : null;
+		ResultSet rs = null;
+		try{
+			rs = dbMeta.getIndexInfo(null, (schemaName == null) ? null : toStoredName(schemaName, schemaCaseSensitive), toStoredName(table.getDBName(), tableCaseSensitive), false, true);
+			while(rs.next()){
+				if (rs.getShort(7) != DatabaseMetaData.tableIndexStatistic && rs.getShort(8) == 1 && equals(rs.getString(9), column.getDBName(), columnCaseSensitive))
+					return true;
+			}
+			return false;
+		}catch(SQLException se){
+			if (logger != null)
+				logger.logDB(LogLevel.WARNING, this, "INDEX_UPLOAD", "Impossible to list the indexes of the uploaded table \"" + table.getADQLName() + "\"!", se);
+			return false;
+		}finally{
+			close(rs);
+		}
+	}
+
+	/**
+	 * Get the given identifier as stored by the database.
+	 *
+	 * @param name			An identifier (e.g. a table name).
+	 * @param caseSensitive	<i>true</i> if the identifier is quoted, <i>false</i> otherwise.
+	 *
+	 * @return	The name to look for in the database metadata.
+	 *
+	 * @since 2.4
+	 */
+	private String toStoredName(final String name, final boolean caseSensitive){
+		if (caseSensitive){
+			if (supportsMixedCaseQuotedIdentifier || mixedCaseQuoted)
+				return name;
+			else if (lowerCaseQuoted)
+				return name.toLowerCase();
+			else if (upperCaseQuoted)
+				return name.toUpperCase();
+		}else if (!supportsMixedCaseUnquotedIdentifier){
+			if (lowerCaseUnquoted)
+				return name.toLowerCase();
+			else if (upperCaseUnquoted)
+				return name.toUpperCase();
+		}
+		return name;
+	}
+
+	/**
+	 * Execute the given index creation or statistics update, and just log any error.
+	 */
+	private void executeOptimization(final Statement st, final String sql){
+		try{
+			long start = System.currentTimeMillis();
+			st.executeUpdate(sql);
+			if (logger != null)
+				logger.logDB(LogLevel.INFO, this, "INDEX_UPLOAD", sql + " (" + (System.currentTimeMillis() - start) + "ms)", null);
+		}catch(SQLException se){
+			if (!isCancelled() && logger != null)
+				logger.logDB(LogLevel.WARNING, this, "INDEX_UPLOAD", "Impossible to execute: " + sql, se);
+		}
+	}
+
+	/**
+	 * <p>Get the SQL command updating the statistics of the given uploaded table.</p>
+	 *
+	 * <p>
+	 * 	<code>ANALYZE table</code> with PostgreSQL and SQLite, <code>ANALYZE TABLE table</code> with MySQL,
+	 * 	and NULL for the other DBMS.
+	 * </p>
+	 *
+	 * @param table	An uploaded table.
+	 *
+	 * @return	The SQL command to execute, or NULL if none.
+	 *
+	 * @since 2.4
+	 */
+	protected String getAnalyzeCommand(final TAPTable table){
+		if (DBMS_POSTGRES.equalsIgnoreCase(dbms) || DBMS_SQLITE.equalsIgnoreCase(dbms))
+			return "ANALYZE " + translator.getTableName(table, supportsSchema);
+		else if (DBMS_MYSQL.equalsIgnoreCase(dbms))
+			return "ANALYZE TABLE " + translator.getTableName(table, supportsSchema);
+		else
+			return null;
+	}
+
 	/**
 	 * <p>Ensures that the given table MUST be inside the upload schema in ADQL.</p>
 	 *
@@ -2622,7 +3395,7 @@ public class JDBCConnection implements DBConnection {
 		if (tableDef.getSchema() == null || !tableDef.getSchema().getADQLName().equals(STDSchema.UPLOADSCHEMA.label))
 			throw new DBException("Missing upload schema! An uploaded table must be inside a schema whose the ADQL name is strictly equals to \"" + STDSchema.UPLOADSCHEMA.label + "\" (but the DB name may be different).");
 
-		if (!supportsSchema){
+		if (isUploadSchemaless()){
 			if (tableDef.getADQLSchemaName() != null && tableDef.getADQLSchemaName().trim().length() > 0 && !tableDef.getDBName().startsWith(tableDef.getADQLSchemaName() + "_"))
 				tableDef.setDBName(tableDef.getADQLSchemaName() + "_" + tableDef.getDBName());
 			if (tableDef.getSchema() != null)
@@ -3659,4 +4432,155 @@ public class JDBCConnection implements DBConnection {
 		supportsFetchSize = true;
 		fetchSize = (size > 0) ? size : IGNORE_FETCH_SIZE;
 	}
+
+	/**
+	 * Get the maximum number of rows inserted in one batch while filling an uploaded table.
+	 *
+	 * @return	Maximum number of rows per batch. <i>No limit if negative or null.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final int getUploadBatchRows(){
+		return uploadBatchRows;
+	}
+
+	/**
+	 * Get the maximum amount of bytes (estimated) inserted in one batch while filling an uploaded table.
+	 *
+	 * @return	Maximum amount of bytes per batch. <i>No limit if negative or null.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final long getUploadBatchBytes(){
+		return uploadBatchBytes;
+	}
+
+	/**
+	 * <p>Set the size of the chunks of rows inserted in one batch while filling an uploaded table.</p>
+	 *
+	 * <p>A chunk is inserted as soon as one of these limits is reached.</p>
+	 *
+	 * <p><i>Note:
+	 * 	If both limits are negative or null, all the rows of an uploaded table are inserted in one single batch.
+	 * </i></p>
+	 *
+	 * @param maxRows	Maximum number of rows per batch. <i>No limit if negative or null.</i>
+	 * @param maxBytes	Maximum amount of bytes (estimated with {@link #estimateSize(Object)}) per batch. <i>No limit if negative or null.</i>
+	 *
+	 * @since 2.4
+	 */
+	public void setUploadBatchSize(final int maxRows, final long maxBytes){
+		uploadBatchRows = (maxRows > 0) ? maxRows : -1;
+		uploadBatchBytes = (maxBytes > 0) ? maxBytes : -1;
+	}
+
+	/**
+	 * Tell whether the next chunk of an uploaded table is read and converted in another thread
+	 * while the previous one is inserted in the database.
+	 *
+	 * @return	<i>true</i> if the upload is pipelined, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	public final boolean isUploadPipelining(){
+		return uploadPipelining;
+	}
+
+	/**
+	 * Let read and convert the next chunk of an uploaded table in another thread
+	 * while the previous one is inserted in the database.
+	 *
+	 * <p><i>Note:
+	 * 	A {@link PreparedStatement} can not be used by several threads at the same time. So, only the reading of the
+	 * 	uploaded rows and the conversion of their values are done in parallel of the database insertion ; the values
+	 * 	are still bound to the statement by the thread executing {@link #addUploadedTable(TAPTable, TableIterator)}.
+	 * </i></p>
+	 *
+	 * @param pipelining	<i>true</i> to pipeline the upload, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	public void setUploadPipelining(final boolean pipelining){
+		uploadPipelining = pipelining;
+	}
+
+	/**
+	 * Get the strategy loading the uploaded rows with a DBMS specific bulk-load API.
+	 *
+	 * @return	The bulk loader, or NULL if the rows are always inserted with batch updates.
+	 *
+	 * @since 2.4
+	 */
+	public final UploadBulkLoader getUploadBulkLoader(){
+		return uploadBulkLoader;
+	}
+
+	/**
+	 * Set the strategy loading the uploaded rows with a DBMS specific bulk-load API.
+	 *
+	 * @param loader	The bulk loader to use, or NULL to always insert the rows with batch updates.
+	 *
+	 * @since 2.4
+	 */
+	public void setUploadBulkLoader(final UploadBulkLoader loader){
+		uploadBulkLoader = loader;
+	}
+
+	/**
+	 * Get the kind of table to create for the uploaded tables.
+	 *
+	 * @return	The kind of uploaded tables.
+	 *
+	 * @since 2.4
+	 */
+	public final UploadTableType getUploadTableType(){
+		return uploadTableType;
+	}
+
+	/**
+	 * <p>Set the kind of table to create for the uploaded tables.</p>
+	 *
+	 * <p><i>Note:
+	 * 	If the given kind of table is not supported by the DBMS, a regular table is created
+	 * 	(see {@link #getCreateUploadedTableCommand()}).
+	 * </i></p>
+	 *
+	 * <p><i><b>Warning:</b>
+	 * 	With PostgreSQL and SQLite, temporary tables can not be created in the upload schema.
+	 * 	So, as when schemas are not supported, the schema name is merged into the table name.
+	 * 	This setting must then not be changed between the upload and the drop of a table.
+	 * </i></p>
+	 *
+	 * @param type	The kind of uploaded tables. <i>If NULL, {@link UploadTableType#REGULAR}.</i>
+	 *
+	 * @since 2.4
+	 */
+	public void setUploadTableType(final UploadTableType type){
+		uploadTableType = (type == null) ? UploadTableType.REGULAR : type;
+	}
+
+	/**
+	 * Tell whether indexes are created on the columns of the uploaded tables used in join or WHERE conditions.
+	 *
+	 * @return	<i>true</i> if the uploaded tables are automatically indexed, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	public final boolean isUploadAutoIndex(){
+		return uploadAutoIndex;
+	}
+
+	/**
+	 * Let create indexes on the columns of the uploaded tables used in join or WHERE conditions,
+	 * and update the statistics of the uploaded tables, just before executing a query.
+	 *
+	 * @param autoIndex	<i>true</i> to automatically index the uploaded tables, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 *
+	 * @see #indexUploadedTables(ADQLQuery)
+	 */
+	public void setUploadAutoIndex(final boolean autoIndex){
+		uploadAutoIndex = autoIndex;
+	}
 }
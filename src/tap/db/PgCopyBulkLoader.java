@@ -0,0 +1,305 @@
+package tap.db;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import tap.data.DataReadException;
+import tap.data.TableIterator;
+import tap.metadata.TAPColumn;
+import tap.metadata.TAPTable;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * <p>{@link UploadBulkLoader} streaming the uploaded rows to PostgreSQL with a <code>COPY ... FROM STDIN</code>.</p>
+ *
+ * <p>
+ * 	The rows are read from the {@link TableIterator} only when the PostgreSQL driver asks for more data,
+ * 	and are encoded in the text format of the COPY command. Thus, no more than a few kilobytes of rows
+ * 	are in memory at the same time.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The values are converted with {@link JDBCConnection#convertUploadedValue(TAPColumn, Object, int, int)},
+ * 	exactly as with the generic batch updates. Geometries are then written with the textual representation
+ * 	of the object returned by the translator (e.g. a {@link org.postgresql.util.PGobject} with pgSphere).
+ * </i></p>
+ *
+ * <p><i>Note:
+ * 	This loader can only be used with a connection to PostgreSQL (or a wrapper of such connection).
+ * 	Otherwise, {@link #load(JDBCConnection, TAPTable, TableIterator)} returns -1 and the generic
+ * 	batch updates are used.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public class PgCopyBulkLoader implements UploadBulkLoader {
+
+	/** Number of characters of rows encoded before being given to the PostgreSQL driver. */
+	protected final static int BUFFER_SIZE = 65536;
+
+	@Override
+	public int load(final JDBCConnection conn, final TAPTable metaTable, final TableIterator data) throws SQLException, DBCancelledException, DBException, DataReadException{
+		// Get the COPY API of the PostgreSQL connection, if any:
+		CopyManager copyManager = getCopyManager(conn.getInnerConnection());
+		if (copyManager == null)
+			return -1;
+
+		// Build the COPY command:
+		TAPColumn[] cols = data.getMetadata();
+		StringBuffer sql = new StringBuffer("COPY ");
+		sql.append(conn.translator.getTableName(metaTable, conn.supportsSchema)).append(" (");
+		for(int c = 0; c < cols.length; c++){
+			if (c > 0)
+				sql.append(", ");
+			sql.append(conn.translator.getColumnName(cols[c]));
+		}
+		sql.append(") FROM STDIN");
+
+		// Stream all rows:
+		long start = System.currentTimeMillis();
+		CopyReader reader = new CopyReader(conn, data, cols);
+		long nbCopied;
+		try{
+			nbCopied = copyManager.copyIn(sql.toString(), reader, BUFFER_SIZE);
+		}catch(IOException ioe){
+			// an error occurred while reading or converting the rows:
+			if (reader.failure instanceof DBException)
+				throw (DBException)reader.failure;
+			else if (reader.failure instanceof DataReadException)
+				throw (DataReadException)reader.failure;
+			else if (reader.failure instanceof RuntimeException)
+				throw (RuntimeException)reader.failure;
+			else
+				throw new DBException("Impossible to send the uploaded rows to the database!", ioe, sql.toString());
+		}
+
+		// If the query has been aborted, return immediately:
+		if (conn.isCancelled())
+			throw new DBCancelledException();
+
+		// Check all rows have been inserted:
+		if (nbCopied != reader.nbRows){
+			if (conn.logger != null)
+				conn.logger.logDB(LogLevel.ERROR, conn, "UPLOAD", "ROWS not all copied (" + reader.nbRows + " to copy ; " + nbCopied + " copied)!", null);
+			throw new DBException("ROWS not all copied (" + reader.nbRows + " to copy ; " + nbCopied + " copied)!");
+		}
+
+		if (conn.logger != null)
+			conn.logger.logDB(LogLevel.DEBUG, conn, "UPLOAD", reader.nbRows + " rows copied in " + conn.translator.getTableName(metaTable, conn.supportsSchema) + " in " + (System.currentTimeMillis() - start) + "ms.", null);
+
+		return reader.nbRows;
+	}
+
+	/**
+	 * Get the COPY API of the given connection.
+	 *
+	 * @param connection	A JDBC connection.
+	 *
+	 * @return	Its COPY API,
+	 *        	or NULL if it is not a PostgreSQL connection.
+	 *
+	 * @throws SQLException	If the PostgreSQL connection can not be unwrapped.
+	 */
+	protected CopyManager getCopyManager(final Connection connection) throws SQLException{
+		if (connection instanceof PGConnection)
+			return ((PGConnection)connection).getCopyAPI();
+		else if (connection.isWrapperFor(PGConnection.class))
+			return connection.unwrap(PGConnection.class).getCopyAPI();
+		else
+			return null;
+	}
+
+	/**
+	 * <p>Append the given value to the given buffer, as expected by the text format of the PostgreSQL COPY command.</p>
+	 *
+	 * <p>
+	 * 	NULL is written as <code>\N</code>, binary data as an hexadecimal <code>bytea</code> and arrays with
+	 * 	the PostgreSQL syntax (<code>{1,2,3}</code>). All other values are written with their {@link Object#toString()}.
+	 * 	Backslashes, tabulations and new lines are escaped.
+	 * </p>
+	 *
+	 * @param buf	The buffer to fill.
+	 * @param val	The value to write. <i>May be NULL.</i>
+	 */
+	protected static void appendValue(final StringBuilder buf, final Object val){
+		if (val == null)
+			buf.append("\\N");
+		else if (val instanceof byte[]){
+			final char[] hex = "0123456789abcdef".toCharArray();
+			buf.append("\\\\x");
+			for(byte b : (byte[])val)
+				buf.append(hex[(b >> 4) & 0x0F]).append(hex[b & 0x0F]);
+		}else if (val.getClass().isArray()){
+			StringBuilder array = new StringBuilder("{");
+			for(int i = 0; i < Array.getLength(val); i++){
+				Object item = Array.get(val, i);
+				if (i > 0)
+					array.append(',');
+				if (item == null)
+					array.append("NULL");
+				else if (item instanceof CharSequence || item instanceof Character)
+					array.append('"').append(item.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+				else
+					array.append(item);
+			}
+			appendEscaped(buf, array.append('}'));
+		}else
+			appendEscaped(buf, val.toString());
+	}
+
+	/**
+	 * Append the given text to the given buffer, escaping the characters
+	 * having a special meaning in the text format of the PostgreSQL COPY command.
+	 *
+	 * @param buf	The buffer to fill.
+	 * @param text	The text to write.
+	 */
+	protected static void appendEscaped(final StringBuilder buf, final CharSequence text){
+		for(int i = 0; i < text.length(); i++){
+			char ch = text.charAt(i);
+			switch(ch){
+				case '\\':
+					buf.append("\\\\");
+					break;
+				case '\t':
+					buf.append("\\t");
+					break;
+				case '\n':
+					buf.append("\\n");
+					break;
+				case '\r':
+					buf.append("\\r");
+					break;
+				default:
+					buf.append(ch);
+			}
+		}
+	}
+
+	/**
+	 * {@link Reader} reading the rows of an uploaded table only when asked by the PostgreSQL driver,
+	 * and encoding them in the text format of the COPY command.
+	 *
+	 * <p><i>Note:
+	 * 	Any error while reading or converting the rows is kept in {@link #failure}
+	 * 	and thrown as an {@link IOException} to stop the COPY.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	protected static class CopyReader extends Reader {
+		/** Connection in which the rows are copied. */
+		private final JDBCConnection conn;
+		/** Rows to read. */
+		private final TableIterator data;
+		/** Description of the read columns. */
+		private final TAPColumn[] cols;
+		/** Encoded rows not yet read by the driver. */
+		private final StringBuilder buf = new StringBuilder(BUFFER_SIZE + 1024);
+		/** Position of the next character to read in {@link #buf}. */
+		private int pos = 0;
+		/** Indicate whether all rows have been read. */
+		private boolean ended = false;
+
+		/** Number of rows read so far. */
+		protected int nbRows = 0;
+		/** Error which stopped the reading. <i>NULL if none.</i> */
+		protected Exception failure = null;
+
+		public CopyReader(final JDBCConnection conn, final TableIterator data, final TAPColumn[] cols){
+			this.conn = conn;
+			this.data = data;
+			this.cols = cols;
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException{
+			if (failure != null)
+				throw new IOException(failure);
+			else if (len == 0)
+				return 0;
+
+			// Encode more rows, if needed:
+			if (pos >= buf.length()){
+				buf.setLength(0);
+				pos = 0;
+				try{
+					fill();
+				}catch(Exception ex){
+					failure = ex;
+					throw new IOException(ex);
+				}
+				if (buf.length() == 0)
+					return -1;
+			}
+
+			// Give them to the driver:
+			int n = Math.min(len, buf.length() - pos);
+			buf.getChars(pos, pos + n, cbuf, off);
+			pos += n;
+			return n;
+		}
+
+		/**
+		 * Read and encode rows until {@link PgCopyBulkLoader#BUFFER_SIZE} characters or the last row.
+		 */
+		private void fill() throws DBException, DataReadException{
+			while(!ended && buf.length() < BUFFER_SIZE){
+				// If the query has been aborted, stop immediately:
+				if (conn.isCancelled())
+					throw new DBCancelledException();
+				if (!data.nextRow()){
+					ended = true;
+					return;
+				}
+				nbRows++;
+				int c = 0;
+				while(data.hasNextCol()){
+					if (c >= cols.length)
+						throw new DataReadException("[l. " + nbRows + "] Too many columns! Only " + cols.length + " columns are expected.");
+					if (c > 0)
+						buf.append('\t');
+					appendValue(buf, conn.convertUploadedValue(cols[c], data.nextCol(), nbRows, c + 1));
+					c++;
+				}
+				// missing values are NULL:
+				for(; c < cols.length; c++)
+					buf.append((c > 0) ? "\t\\N" : "\\N");
+				buf.append('\n');
+			}
+		}
+
+		@Override
+		public void close(){}
+	}
+
+}
@@ -0,0 +1,71 @@
+package tap.db;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.sql.SQLException;
+
+import tap.data.DataReadException;
+import tap.data.TableIterator;
+import tap.metadata.TAPTable;
+
+/**
+ * <p>Strategy loading all the rows of an uploaded table in the database with a DBMS specific bulk-load API.</p>
+ *
+ * <p>
+ * 	A {@link JDBCConnection} uses its {@link UploadBulkLoader} (if any) once the uploaded table has been created,
+ * 	in the same transaction. If the loader can not be used for this table, the rows are inserted with the generic
+ * 	batch updates of {@link JDBCConnection#fillUploadedTable(TAPTable, TableIterator)}.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	An implementation should convert the read values with {@link JDBCConnection#convertUploadedValue(tap.metadata.TAPColumn, Object, int, int)},
+ * 	so that TIMESTAMP, geometries and NULL characters are handled as with the generic batch updates.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ *
+ * @see PgCopyBulkLoader
+ */
+public interface UploadBulkLoader {
+
+	/**
+	 * <p>Load all the given rows in the given table.</p>
+	 *
+	 * <p><b>Important:</b>
+	 * 	If this loader can not be used for this connection or for this table, it MUST return -1
+	 * 	<b>without reading any row</b> of the given iterator.
+	 * </p>
+	 *
+	 * @param conn		The connection in which the table has just been created.
+	 * @param metaTable	Description of the table to fill.
+	 * @param data		Iterator over the rows to insert.
+	 *
+	 * @return	Number of inserted rows, or -1 if this loader can not be used.
+	 *
+	 * @throws DBCancelledException	If {@link JDBCConnection#cancel(boolean)} has been called during the processing,
+	 * @throws DBException			If rows can not be inserted.
+	 * @throws SQLException			If any other SQL exception occurs.
+	 * @throws DataReadException	If there is any error while reading the data from the given {@link TableIterator}.
+	 */
+	public int load(final JDBCConnection conn, final TAPTable metaTable, final TableIterator data) throws SQLException, DBCancelledException, DBException, DataReadException;
+
+}
@@ -16,7 +16,8 @@ package tap.parameters;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2014 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2014-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.IOException;
@@ -34,7 +35,10 @@ import java.util.regex.Pattern;
 
 import tap.TAPException;
 import tap.TAPJob;
+import tap.upload.UploadFormat;
 import uws.UWSException;
+import uws.service.file.LocalUWSFileManager;
+import uws.service.file.URIFetcher;
 import uws.service.file.UWSFileManager;
 import uws.service.file.UnsupportedURIProtocolException;
 import uws.service.request.RequestParser;
@@ -95,8 +99,8 @@ import uws.service.request.UploadFile;
  * 	done by setting the second parameter of {@link #getDALIUploads(Map, boolean, UWSFileManager)} to <i>false</i>.
  * </i></p>
  * 
- * @author Gr&eacute;gory Mantelet (ARI)
- * @version 2.0 (12/2014)
+ * @author Gr&eacute;gory Mantelet (CDS;ARI)
+ * @version 2.4 (10/2026)
  * @since 2.0
  * 
  * @see RequestParser
@@ -159,6 +163,10 @@ public class DALIUpload {
 	 * 	The used syntax was then: "{label},{URI}".
 	 * </p>
 	 * 
+	 * <p><i>Note:
+	 * 	A "file" URI is rejected, unless the file manager explicitly allows it (see {@link #isFileSchemeAllowed(UWSFileManager)}).
+	 * </i></p>
+	 * 
 	 * @param label			Label of the DALIUpload (i.e. {label} inside an "UPLOAD" parameter value "{label},{URI}"). <i>Note: If NULL, the URI will be used as label.</i>
 	 * @param uri			URI toward a distant file. <i><b>The scheme of this URI must be different from "param".</b> This scheme is indeed reserved by the DALI syntax to reference a HTTP request parameter containing an inline file.</i>
 	 * @param fileManager	The file manager to use when a stream will be opened toward the given URI. This file manager should know how to access it,
@@ -169,7 +177,7 @@ public class DALIUpload {
 			throw new NullPointerException("Missing URI! => Can not build a DaliUpload instance.");
 		else if (uri.getScheme() != null && uri.getScheme().equalsIgnoreCase("param"))
 			throw new IllegalArgumentException("Wrong URI scheme: \"param\" is reserved to reference a HTTP request parameter! If used, the content of this parameter must be stored in a file, then the parameter must be represented by an UploadFile and integrated into a DALIUpload with the other constructor.");
-		else if (uri.getScheme() != null && uri.getScheme().equalsIgnoreCase("file"))
+		else if (uri.getScheme() != null && uri.getScheme().equalsIgnoreCase("file") && !isFileSchemeAllowed(fileManager))
 			throw new IllegalArgumentException("Wrong URI scheme: \"file\" is forbidden!");
 		else if (fileManager == null)
 			throw new NullPointerException("Missing File Manager! => Can not build a DaliUpload instance.");
@@ -205,6 +213,47 @@ public class DALIUpload {
 			return file.open();
 	}
 
+	/**
+	 * <p>Identify the format of this upload.</p>
+	 *
+	 * <p>
+	 * 	The MIME type of an uploaded file is used first. If unknown or too generic
+	 * 	(e.g. <code>application/octet-stream</code>), or if this upload is a reference,
+	 * 	the format is identified with the first bytes of the given stream
+	 * 	(see {@link UploadFormat#fromMagicBytes(byte[], int)}). These bytes are read
+	 * 	with {@link InputStream#mark(int)} and {@link InputStream#reset()} ; thus, they can still be read after.
+	 * </p>
+	 *
+	 * @param input	Stream opened with {@link #open()}. <i>It should support mark/reset (e.g. a {@link java.io.BufferedInputStream}).
+	 *             	Otherwise, VOTable is returned if no MIME type is known.</i>
+	 *
+	 * @return	The identified format.
+	 *
+	 * @throws IOException	If the first bytes can not be read.
+	 *
+	 * @since 2.4
+	 */
+	public UploadFormat getFormat(final InputStream input) throws IOException{
+		// Use the MIME type, if any:
+		UploadFormat format = (file == null) ? null : UploadFormat.fromMimeType(file.mimeType);
+		if (format != null)
+			return format;
+		else if (input == null || !input.markSupported())
+			return UploadFormat.VOTABLE;
+
+		// ...or else, the first bytes:
+		byte[] header = new byte[UploadFormat.MAGIC_BYTES_LENGTH];
+		int length = 0, nbRead;
+		input.mark(header.length);
+		try{
+			while(length < header.length && (nbRead = input.read(header, length, header.length - length)) >= 0)
+				length += nbRead;
+		}finally{
+			input.reset();
+		}
+		return UploadFormat.fromMagicBytes(header, length);
+	}
+
 	@Override
 	public String toString(){
 		return label + "," + (file != null ? "param:" + file.paramName : uri.toString());
@@ -583,12 +632,12 @@ public class DALIUpload {
 		else{
 			// extract the URI as it is given:
 			uri = uri.trim();
-			if (uri.toLowerCase().startsWith("file:"))
-				throw new TAPException("Wrong URI scheme in the upload specification labeled \"" + label + "\": \"file\" is forbidden!", UWSException.BAD_REQUEST);
 			// decode it in case there is any illegal character:
 			try{
 				uri = URLDecoder.decode(uri, "UTF-8");
 			}catch(UnsupportedEncodingException uee){}
+			if (uri.toLowerCase().startsWith("file:") && !isFileSchemeAllowed(fileManager))
+				throw new TAPException("Wrong URI scheme in the upload specification labeled \"" + label + "\": \"file\" is forbidden!", UWSException.BAD_REQUEST);
 			try{
 				// build the LOB:
 				return new DALIUpload(label, new URI(uri), fileManager);
@@ -598,4 +647,27 @@ public class DALIUpload {
 		}
 	}
 
+	/**
+	 * <p>Tell whether a "file" URI may be uploaded with the given file manager.</p>
+	 *
+	 * <p>
+	 * 	Since a "file" URI gives access to the files of the server, it is
+	 * 	forbidden, unless the file manager explicitly restricts such access.
+	 * 	It is the case only of a {@link LocalUWSFileManager} whose the
+	 * 	{@link URIFetcher} has at least one allowed directory (see
+	 * 	{@link URIFetcher#addAllowedDirectory(java.io.File)}) ; any other
+	 * 	file manager could open any local file.
+	 * </p>
+	 *
+	 * @param fileManager	The file manager which will open the URI.
+	 *
+	 * @return	<i>true</i> if a "file" URI may be uploaded,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	public static boolean isFileSchemeAllowed(final UWSFileManager fileManager){
+		return (fileManager instanceof LocalUWSFileManager) && !((LocalUWSFileManager)fileManager).getURIFetcher().getAllowedDirectories().isEmpty();
+	}
+
 }
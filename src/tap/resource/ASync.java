@@ -16,17 +16,19 @@ package tap.resource;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012-2015 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import tap.ExecutionBudget;
 import tap.ServiceConnection;
 import tap.TAPException;
 import tap.TAPJob;
@@ -34,9 +36,13 @@ import uws.UWSException;
 import uws.job.JobList;
 import uws.job.UWSJob;
 import uws.job.manager.AbstractQueuedExecutionManager;
+import uws.job.manager.ClusterExecutionManager;
+import uws.job.manager.ExecutionManager;
 import uws.job.manager.QueuedExecutionManager;
 import uws.service.UWSService;
+import uws.service.backup.DefaultUWSBackupManager;
 import uws.service.backup.UWSBackupManager;
+import uws.service.file.ResultLifecycleManager;
 import uws.service.log.UWSLog;
 import uws.service.log.UWSLog.LogLevel;
 
@@ -63,7 +69,8 @@ import uws.service.log.UWSLog.LogLevel;
  * 	<li><b>Job execution management:</b> an execution manager is created at the creation of this resource. It is queuing jobs when a maximum number of asynchronous jobs
  * 	                                     is already running. This maximum is provided by the TAP service description: {@link ServiceConnection#getNbMaxAsyncJobs()}. Jobs are also queued if no more DB
  * 	                                     connection is available ; when connection(s) will be available, this resource will be notified by {@link #freeConnectionAvailable()} so that the execution manager
- * 	                                     can be refreshed.</li>
+ * 	                                     can be refreshed. If the TAP factory provides an {@link ExecutionBudget}, jobs are also queued until enough resources
+ * 	                                     of this budget (shared with the /sync resource) are available ; cheap jobs are however allowed to bypass the queue.</li>
  * 	<li><b>Backup and Restoration:</b> UWS jobs can be saved at any defined moment. It is particularly useful when an grave error occurs and merely when the service must be restarted.
  * 	                                   Then, at the creation of this resource, the jobs are restored. Thus, the restart has been transparent for the users: they did not lose any job
  * 	                                   (except those at the origin of the grave error maybe).</li>
@@ -71,7 +78,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </ul>
  * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.0 (04/2015)
+ * @version 2.4 (10/2026)
  * 
  * @see UWSService
  */
@@ -86,6 +93,9 @@ public class ASync implements TAPResource {
 	protected final UWSService uws;
 	/** The only jobs' list managed by the inner UWS service. This resource represent the UWS but also this jobs' list. */
 	protected final JobList jobList;
+	/** Service compressing and/or archiving the idle results. <i>NULL if results stay as written.</i>
+	 * @since 2.4 */
+	protected final ResultLifecycleManager resultLifecycleManager;
 
 	/**
 	 * Build an Asynchronous Resource of a TAP service.
@@ -107,32 +117,79 @@ public class ASync implements TAPResource {
 		if (uws.getJobList(getName()) == null){
 			jobList = new JobList(getName());
 			uws.addJobList(jobList);
-			jobList.setExecutionManager(new AsyncExecutionManager(service.getLogger(), service.getNbMaxAsyncJobs()));
+			ExecutionManager manager = service.getFactory().createExecutionManager(jobList);
+			jobList.setExecutionManager((manager == null) ? new AsyncExecutionManager(service.getLogger(), service.getNbMaxAsyncJobs()) : manager);
 		}else
 			jobList = uws.getJobList(getName());
 
+		// Store the finished jobs outside of the memory, if asked (all jobs, if shared by a cluster):
+		if (jobList.getJobStore() == null)
+			jobList.setJobStore(service.getFactory().createJobStore(uws), jobList.getExecutionManager() instanceof ClusterExecutionManager);
+
 		if (uws.getBackupManager() == null)
 			uws.setBackupManager(service.getFactory().createUWSBackupManager(uws));
 
-		UWSBackupManager backupManager = uws.getBackupManager();
+		final UWSBackupManager backupManager = uws.getBackupManager();
 		if (backupManager != null){
 			backupManager.setEnabled(false);
-			int[] report = uws.getBackupManager().restoreAll();
-			String errorMsg = null;
-			if (report == null || report.length == 0)
-				errorMsg = "GRAVE error while the restoration of the asynchronous jobs!";
-			else if (report.length < 4)
-				errorMsg = "Incorrect restoration report format! => Impossible to know the restoration status!";
-			else if (report[0] != report[1])
-				errorMsg = "FAILED restoration of the asynchronous jobs: " + report[0] + " on " + report[1] + " restored!";
-			else
-				backupManager.setEnabled(true);
 
-			if (errorMsg != null){
-				errorMsg += " => Backup disabled.";
-				service.getLogger().logTAP(LogLevel.FATAL, null, "ASYNC_INIT", errorMsg, null);
-				throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, errorMsg);
+			// Restore the jobs in background, if asked (the service is then immediately available for new jobs):
+			if (backupManager instanceof DefaultUWSBackupManager && ((DefaultUWSBackupManager)backupManager).isBackgroundRestoration()){
+				final Future<int[]> restoration = ((DefaultUWSBackupManager)backupManager).restoreAllInBackground();
+				Thread checker = new Thread(new Runnable(){
+					@Override
+					public void run(){
+						String errorMsg;
+						try{
+							errorMsg = checkRestoration(restoration.get());
+						}catch(Exception ex){
+							errorMsg = "GRAVE error while the restoration of the asynchronous jobs: " + ex.getMessage();
+						}
+						if (errorMsg != null)
+							service.getLogger().logTAP(LogLevel.FATAL, null, "ASYNC_INIT", errorMsg + " => Backup disabled.", null);
+					}
+				}, "TAP-Async-Restoration");
+				checker.setDaemon(true);
+				checker.start();
 			}
+			// Otherwise, wait for the end of the restoration:
+			else{
+				String errorMsg = checkRestoration(backupManager.restoreAll());
+				if (errorMsg != null){
+					errorMsg += " => Backup disabled.";
+					service.getLogger().logTAP(LogLevel.FATAL, null, "ASYNC_INIT", errorMsg, null);
+					throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, errorMsg);
+				}
+			}
+		}
+
+		// Compress and/or archive the idle results in background, if asked:
+		resultLifecycleManager = service.getFactory().createResultLifecycleManager(uws);
+		if (resultLifecycleManager != null)
+			resultLifecycleManager.start();
+	}
+
+	/**
+	 * Check the given restoration report and enable the backup manager if
+	 * the restoration has succeeded.
+	 *
+	 * @param report	Report returned by {@link UWSBackupManager#restoreAll()}.
+	 *
+	 * @return	NULL if the restoration has succeeded,
+	 *        	or an error message otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected String checkRestoration(final int[] report){
+		if (report == null || report.length == 0)
+			return "GRAVE error while the restoration of the asynchronous jobs!";
+		else if (report.length < 4)
+			return "Incorrect restoration report format! => Impossible to know the restoration status!";
+		else if (report[0] != report[1])
+			return "FAILED restoration of the asynchronous jobs: " + report[0] + " on " + report[1] + " restored!";
+		else{
+			uws.getBackupManager().setEnabled(true);
+			return null;
 		}
 	}
 
@@ -175,6 +232,8 @@ public class ASync implements TAPResource {
 
 	@Override
 	public void destroy(){
+		if (resultLifecycleManager != null)
+			resultLifecycleManager.stop();
 		if (uws != null)
 			uws.destroy();
 	}
@@ -201,7 +260,7 @@ public class ASync implements TAPResource {
 	 * when no more DB connection is available for the moment.
 	 * 
 	 * @author Gr&eacute;gory Mantelet (CDS;ARI)
-	 * @version 2.0 (02/2015)
+	 * @version 2.4 (10/2026)
 	 * @since 2.0
 	 */
 	private class AsyncExecutionManager extends AbstractQueuedExecutionManager {
@@ -222,12 +281,24 @@ public class ASync implements TAPResource {
 
 		@Override
 		public boolean isReadyForExecution(final UWSJob jobToExecute){
-			if (!hasQueue())
+			if (!hasQueue() || ((TAPJob)jobToExecute).isCheap())
 				return ((TAPJob)jobToExecute).isReadyForExecution();
 			else
 				return (runningJobs.size() < nbMaxRunningJobs) && ((TAPJob)jobToExecute).isReadyForExecution();
 		}
 
+		/**
+		 * Cheap jobs (see {@link TAPJob#isCheap()}) are allowed to bypass the queue.
+		 * They are then not counted in the maximum number of running jobs, but they
+		 * still have to get a DB connection and a part of the execution budget.
+		 *
+		 * @since 2.4
+		 */
+		@Override
+		protected boolean canBypassQueue(final UWSJob queuedJob){
+			return ((TAPJob)queuedJob).isCheap();
+		}
+
 	}
 
 }
@@ -16,7 +16,7 @@ package tap.resource;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012-2016 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -44,8 +44,14 @@ import uws.service.UWS;
  * 	Besides, generally, the execution time is much more limited than an asynchronous query. 
  * </p>
  * 
+ * <p>
+ * 	If the servlet supports the asynchronous processing, the HTTP request is suspended during the execution of a query
+ * 	(see {@link TAPSyncJob#startAsync(HttpServletRequest, HttpServletResponse)}). It is then dispatched again to this
+ * 	resource at the end of the execution, so that errors can be reported as usual.
+ * </p>
+ * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.1 (01/2016)
+ * @version 2.4 (10/2026)
  */
 public class Sync implements TAPResource {
 
@@ -92,6 +98,14 @@ public class Sync implements TAPResource {
 
 	@Override
 	public boolean executeResource(final HttpServletRequest request, final HttpServletResponse response) throws IOException, TAPException{
+		// CASE 0: END OF A SUSPENDED EXECUTION
+		/* If this request has been suspended during the execution of a query, just report the end of this execution. */
+		Object suspendedJob = request.getAttribute(TAPSyncJob.REQ_ATTRIBUTE_SYNC_JOB);
+		if (suspendedJob != null && suspendedJob instanceof TAPSyncJob){
+			((TAPSyncJob)suspendedJob).finish();
+			return true;
+		}
+
 		// Retrieve the execution parameters:
 		TAPParameters params = service.getFactory().createTAPParameters(request);
 		params.check();
@@ -111,9 +125,9 @@ public class Sync implements TAPResource {
 		if (request != null && request.getAttribute(UWS.REQ_ATTRIBUTE_ID) != null && request.getAttribute(UWS.REQ_ATTRIBUTE_ID) instanceof String)
 			requestID = (String)request.getAttribute(UWS.REQ_ATTRIBUTE_ID);
 
-		// Execute synchronously the given job:
+		// Execute synchronously the given job (if possible, without holding the request thread):
 		TAPSyncJob syncJob = new TAPSyncJob(service, params, requestID);
-		syncJob.start(response);
+		syncJob.startAsync(request, response);
 
 		return true;
 
@@ -16,7 +16,7 @@ package tap.resource;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -60,7 +60,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (08/2018)
+ * @version 2.4 (10/2026)
  */
 public class TAP implements VOSIResource {
 
@@ -1031,11 +1031,15 @@ public class TAP implements VOSIResource {
 					throw new TAPException("Unknown TAP resource: \"" + resourceName + "\"!", UWSException.NOT_IMPLEMENTED);
 			}
 
-			response.flushBuffer();
+			/* If the request has been suspended, the response will be written
+			 * only when it is dispatched again: */
+			if (!request.isAsyncStarted()){
+				response.flushBuffer();
 
-			// Log the successful execution of the action, only if the asked resource is not UWS (because UWS is already logging the received request):
-			if (!resourceName.equalsIgnoreCase(ASync.RESOURCE_NAME))
-				getLogger().logHttp(LogLevel.INFO, response, reqID, user, "Action \"" + resourceName + "\" successfully executed.", null);
+				// Log the successful execution of the action, only if the asked resource is not UWS (because UWS is already logging the received request):
+				if (!resourceName.equalsIgnoreCase(ASync.RESOURCE_NAME))
+					getLogger().logHttp(LogLevel.INFO, response, reqID, user, "Action \"" + resourceName + "\" successfully executed.", null);
+			}
 
 		}catch(IOException ioe){
 			/*
@@ -1087,7 +1091,7 @@ public class TAP implements VOSIResource {
 
 		}finally{
 			// Notify the queue of the asynchronous jobs that a new connection may be available:
-			if (resourceName.equalsIgnoreCase(Sync.RESOURCE_NAME))
+			if (resourceName.equalsIgnoreCase(Sync.RESOURCE_NAME) && !request.isAsyncStarted())
 				getASync().freeConnectionAvailable();
 		}
 	}
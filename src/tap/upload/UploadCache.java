@@ -0,0 +1,422 @@
+package tap.upload;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import tap.db.DBConnection;
+import tap.db.DBException;
+import tap.log.TAPLog;
+import tap.metadata.TAPColumn;
+import tap.metadata.TAPTable;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * Cache of uploaded tables shared by all the jobs of a TAP service.
+ *
+ * <p>
+ * 	An uploaded table is identified by a <i>content key</i>: a SHA-256 hash of
+ * 	the uploaded bytes, of the column metadata derived from them and, if
+ * 	{@link #isPerUser()}, of the ID of the user (see
+ * 	{@link #getKey(String, TAPColumn[], String)}). When a job uploads a table
+ * 	whose key is already in this cache, the table already loaded in the
+ * 	database is reused (read-only) instead of being parsed and loaded again.
+ * </p>
+ *
+ * <p>
+ * 	Each job using a cached table holds a reference on it
+ * 	({@link #acquire(String, DBConnection)} or
+ * 	{@link #put(String, TAPTable, long, DBConnection)}) and gives it back at
+ * 	the end of its execution ({@link #release(TAPTable)}). A cached table is
+ * 	dropped from the database only when no job uses it anymore and:
+ * </p>
+ * <ul>
+ * 	<li>it has not been used since more than the TTL,</li>
+ * 	<li>OR space is needed for a new table (least recently used tables first)
+ * 		because the sum of the cached tables sizes would exceed the storage cap.</li>
+ * </ul>
+ *
+ * <p><i>Note 1:
+ * 	The size of a cached table is the number of uploaded bytes. It is only an
+ * 	estimation of the storage used in the database.
+ * </i></p>
+ *
+ * <p><i>Note 2:
+ * 	The expired tables are dropped only when this cache is used (i.e. there is
+ * 	no background thread). All the remaining unused tables are dropped by
+ * 	{@link #clear(DBConnection)}, which should be called when the service
+ * 	stops.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ *
+ * @see Uploader
+ */
+public class UploadCache {
+
+	/** Time (in milliseconds) after which an unused cached table is dropped.
+	 * <i>Never if negative.</i> */
+	protected final long ttl;
+
+	/** Maximum number of uploaded bytes kept in this cache.
+	 * <i>No limit if negative.</i> */
+	protected final long maxSize;
+
+	/** Indicate whether a cached table can be reused only by the user who
+	 * uploaded it. */
+	protected final boolean perUser;
+
+	/** Logger to use. <i>MAY be NULL.</i> */
+	protected final TAPLog logger;
+
+	/** All cached tables, by content key, from the least to the most recently
+	 * used. */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/** Sum of the size of all cached tables. */
+	private long size = 0;
+
+	/**
+	 * Build an upload cache.
+	 *
+	 * @param ttl		Time (in milliseconds) after which an unused cached
+	 *           		table is dropped. <i>Never if negative.</i>
+	 * @param maxSize	Maximum number of uploaded bytes kept in this cache.
+	 *               	<i>No limit if negative.</i>
+	 * @param perUser	<code>true</code> if a cached table can be reused only
+	 *               	by the user who uploaded it,
+	 *               	<code>false</code> if it can be reused by anybody.
+	 * @param logger	Logger to use. <i>MAY be NULL.</i>
+	 */
+	public UploadCache(final long ttl, final long maxSize, final boolean perUser, final TAPLog logger){
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+		this.perUser = perUser;
+		this.logger = logger;
+	}
+
+	/**
+	 * Get the time after which an unused cached table is dropped.
+	 *
+	 * @return	The TTL (in milliseconds). <i>Never if negative.</i>
+	 */
+	public final long getTTL(){
+		return ttl;
+	}
+
+	/**
+	 * Get the maximum number of uploaded bytes kept in this cache.
+	 *
+	 * @return	The storage cap. <i>No limit if negative.</i>
+	 */
+	public final long getMaxSize(){
+		return maxSize;
+	}
+
+	/**
+	 * Tell whether a cached table can be reused only by the user who uploaded
+	 * it.
+	 *
+	 * @return	<code>true</code> if the cached tables are isolated per user,
+	 *        	<code>false</code> otherwise.
+	 */
+	public final boolean isPerUser(){
+		return perUser;
+	}
+
+	/**
+	 * Get the number of cached tables.
+	 *
+	 * @return	Number of tables in this cache.
+	 */
+	public synchronized int getNbTables(){
+		return entries.size();
+	}
+
+	/**
+	 * Get the sum of the size of all cached tables.
+	 *
+	 * @return	Number of uploaded bytes kept in this cache.
+	 */
+	public synchronized long getSize(){
+		return size;
+	}
+
+	/**
+	 * Compute the SHA-256 hash of all the bytes of the given stream.
+	 *
+	 * <p><i>Note:
+	 * 	The given stream is entirely read but not closed.
+	 * </i></p>
+	 *
+	 * @param input	The stream to read.
+	 *
+	 * @return	An array of 2 items: the hexadecimal hash of the read bytes and
+	 *        	the number of read bytes (as a {@link Long}).
+	 *
+	 * @throws IOException	If the stream can not be read.
+	 */
+	public static Object[] hash(final InputStream input) throws IOException{
+		MessageDigest digest = createDigest();
+		byte[] buffer = new byte[65536];
+		long nbBytes = 0;
+		int n;
+		while((n = input.read(buffer)) >= 0){
+			digest.update(buffer, 0, n);
+			nbBytes += n;
+		}
+		return new Object[]{ toHex(digest.digest()), nbBytes };
+	}
+
+	/**
+	 * Build the content key of an uploaded table.
+	 *
+	 * @param contentHash	Hash of the uploaded bytes
+	 *                   	(see {@link #hash(InputStream)}).
+	 * @param columns		Column metadata derived from the uploaded bytes.
+	 * @param userID		ID of the user who uploaded the table.
+	 *              		<i>Ignored if not {@link #isPerUser()}.</i>
+	 *
+	 * @return	The corresponding key,
+	 *        	or NULL if this table can not be cached (i.e. no user ID while
+	 *        	{@link #isPerUser()}).
+	 */
+	public String getKey(final String contentHash, final TAPColumn[] columns, final String userID){
+		if (perUser && userID == null)
+			return null;
+
+		StringBuffer buf = new StringBuffer(contentHash);
+		for(TAPColumn col : columns)
+			buf.append('|').append(col.getADQLName()).append(':').append(col.getDatatype());
+		if (perUser)
+			buf.append("|user:").append(userID);
+
+		MessageDigest digest = createDigest();
+		return toHex(digest.digest(buf.toString().getBytes(Charset.forName("UTF-8"))));
+	}
+
+	/**
+	 * Get the cached table having the given content key, and hold a reference
+	 * on it.
+	 *
+	 * <p><i>Note:
+	 * 	The expired tables are dropped first, with the given connection.
+	 * </i></p>
+	 *
+	 * @param key	Content key of the uploaded table.
+	 * @param conn	Connection to use to drop the expired tables.
+	 *
+	 * @return	The description of the cached table (with the DB name to use),
+	 *        	or NULL if no such table is cached.
+	 */
+	public synchronized TAPTable acquire(final String key, final DBConnection conn){
+		evictExpired(conn);
+
+		Entry entry = entries.get(key);
+		if (entry == null)
+			return null;
+
+		entry.nbRefs++;
+		if (logger != null)
+			logger.logDB(LogLevel.INFO, conn, "UPLOAD_CACHE", "Reuse of the cached upload table " + entry.table.getDBName() + " (" + entry.nbRefs + " references).", null);
+		return entry.table;
+	}
+
+	/**
+	 * Add the given table to this cache, and hold a reference on it.
+	 *
+	 * <p>
+	 * 	If needed, the least recently used tables are dropped so that the
+	 * 	storage cap is not exceeded.
+	 * </p>
+	 *
+	 * @param key		Content key of the uploaded table.
+	 * @param table		The uploaded table, already loaded in the database.
+	 * @param tableSize	Number of uploaded bytes.
+	 * @param conn		Connection to use to drop the expired or the least
+	 *            		recently used tables.
+	 *
+	 * @return	<code>true</code> if the table is now cached,
+	 *        	<code>false</code> if another table has already this key or if
+	 *        	the table can not fit in this cache (then, it must be dropped
+	 *        	as usual at the end of the job).
+	 */
+	public synchronized boolean put(final String key, final TAPTable table, final long tableSize, final DBConnection conn){
+		evictExpired(conn);
+
+		if (key == null || table == null || entries.containsKey(key))
+			return false;
+
+		// Make some space, if needed:
+		if (maxSize >= 0){
+			Iterator<Entry> it = entries.values().iterator();
+			while(size + tableSize > maxSize && it.hasNext()){
+				Entry entry = it.next();
+				if (entry.nbRefs == 0 && drop(entry, conn)){
+					it.remove();
+					size -= entry.size;
+				}
+			}
+			if (size + tableSize > maxSize)
+				return false;
+		}
+
+		Entry entry = new Entry(table, tableSize);
+		entry.nbRefs = 1;
+		entries.put(key, entry);
+		size += tableSize;
+		if (logger != null)
+			logger.logDB(LogLevel.INFO, conn, "UPLOAD_CACHE", "Upload table " + table.getDBName() + " cached (" + tableSize + " bytes).", null);
+		return true;
+	}
+
+	/**
+	 * Give back the reference held on the given table.
+	 *
+	 * @param table	Description of an uploaded table (the one returned by
+	 *             	{@link #acquire(String, DBConnection)} or given to
+	 *             	{@link #put(String, TAPTable, long, DBConnection)}, or a
+	 *             	copy with the same DB name).
+	 *
+	 * @return	<code>true</code> if the given table is cached (and so, it must
+	 *        	not be dropped),
+	 *        	<code>false</code> otherwise.
+	 */
+	public synchronized boolean release(final TAPTable table){
+		if (table == null)
+			return false;
+		for(Entry entry : entries.values()){
+			if (entry.table.getDBName().equals(table.getDBName())){
+				if (entry.nbRefs > 0)
+					entry.nbRefs--;
+				entry.lastUse = System.currentTimeMillis();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drop from the database all the cached tables not used anymore.
+	 *
+	 * @param conn	Connection to use to drop the tables.
+	 */
+	public synchronized void clear(final DBConnection conn){
+		Iterator<Entry> it = entries.values().iterator();
+		while(it.hasNext()){
+			Entry entry = it.next();
+			if (entry.nbRefs == 0 && drop(entry, conn)){
+				it.remove();
+				size -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * Drop from the database all the cached tables not used since more than
+	 * the TTL.
+	 *
+	 * @param conn	Connection to use to drop the tables.
+	 */
+	protected void evictExpired(final DBConnection conn){
+		if (ttl < 0)
+			return;
+		long now = System.currentTimeMillis();
+		Iterator<Entry> it = entries.values().iterator();
+		while(it.hasNext()){
+			Entry entry = it.next();
+			if (entry.nbRefs == 0 && now - entry.lastUse > ttl && drop(entry, conn)){
+				it.remove();
+				size -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * Drop the given cached table from the database.
+	 *
+	 * @param entry	The cached table to drop.
+	 * @param conn	Connection to use.
+	 *
+	 * @return	<code>true</code> if the table has been dropped,
+	 *        	<code>false</code> otherwise (the error is just logged).
+	 */
+	private boolean drop(final Entry entry, final DBConnection conn){
+		try{
+			conn.dropUploadedTable(entry.table);
+			if (logger != null)
+				logger.logDB(LogLevel.INFO, conn, "UPLOAD_CACHE", "Cached upload table " + entry.table.getDBName() + " dropped.", null);
+			return true;
+		}catch(DBException de){
+			if (logger != null)
+				logger.logDB(LogLevel.ERROR, conn, "UPLOAD_CACHE", "Unable to drop the cached upload table " + entry.table.getDBName() + "!", de);
+			return false;
+		}
+	}
+
+	private static MessageDigest createDigest(){
+		try{
+			return MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException nsae){
+			// SHA-256 must be supported by all Java platforms:
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	private static String toHex(final byte[] bytes){
+		final char[] hex = "0123456789abcdef".toCharArray();
+		StringBuffer buf = new StringBuffer(bytes.length * 2);
+		for(byte b : bytes)
+			buf.append(hex[(b >> 4) & 0x0F]).append(hex[b & 0x0F]);
+		return buf.toString();
+	}
+
+	/**
+	 * Table of this cache.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 2.4 (10/2026)
+	 * @since 2.4
+	 */
+	private static class Entry {
+		/** Description of the table loaded in the database. */
+		private final TAPTable table;
+		/** Number of uploaded bytes. */
+		private final long size;
+		/** Number of jobs using this table. */
+		private int nbRefs = 0;
+		/** Last time this table has been released. */
+		private long lastUse = System.currentTimeMillis();
+
+		private Entry(final TAPTable table, final long size){
+			this.table = table;
+			this.size = size;
+		}
+	}
+
+}
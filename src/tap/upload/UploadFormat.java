@@ -0,0 +1,146 @@
+package tap.upload;
+
+/*
+ * This file is part of TAPLibrary.
+ *
+ * TAPLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TAPLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.nio.charset.StandardCharsets;
+
+import tap.data.CSVTableIterator;
+import tap.data.FITSTableIterator;
+import tap.data.TSVTableIterator;
+import tap.data.TableIterator;
+import tap.data.VOTableIterator;
+
+/**
+ * <p>Formats of table accepted for an upload, with the {@link TableIterator} able to read each of them.</p>
+ *
+ * <p>
+ * 	The format of an upload is identified with its MIME type (see {@link #fromMimeType(String)}) or,
+ * 	if unknown or too generic, with the first bytes of its content (see {@link #fromMagicBytes(byte[], int)}).
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Parquet files are recognized, but can not be read: no Parquet reader is available in this library.
+ * 	Besides, a Parquet file can not be streamed since its metadata are at the end of the file.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 2.4 (10/2026)
+ * @since 2.4
+ */
+public enum UploadFormat {
+	VOTABLE(VOTableIterator.class, "application/x-votable+xml", "application/votable+xml", "text/xml", "application/xml"),
+	FITS(FITSTableIterator.class, "application/fits", "image/fits"),
+	CSV(CSVTableIterator.class, "text/csv"),
+	TSV(TSVTableIterator.class, "text/tab-separated-values"),
+	PARQUET(null, "application/vnd.apache.parquet", "application/x-parquet");
+
+	/** Number of bytes needed by {@link #fromMagicBytes(byte[], int)}. */
+	public final static int MAGIC_BYTES_LENGTH = 2048;
+
+	/** Class of the {@link TableIterator} reading this format.
+	 * <i>NULL if this format can not be read.</i> */
+	public final Class<? extends TableIterator> iteratorClass;
+
+	/** MIME types identifying this format. */
+	private final String[] mimeTypes;
+
+	private UploadFormat(final Class<? extends TableIterator> iteratorClass, final String... mimeTypes){
+		this.iteratorClass = iteratorClass;
+		this.mimeTypes = mimeTypes;
+	}
+
+	/**
+	 * Tell whether a table in this format can be read.
+	 *
+	 * @return	<i>true</i> if a {@link TableIterator} is available for this format,
+	 *        	<i>false</i> otherwise.
+	 */
+	public final boolean isSupported(){
+		return (iteratorClass != null);
+	}
+
+	/**
+	 * Get the format identified by the given MIME type.
+	 *
+	 * @param mimeType	A MIME type (parameters, like <code>;charset=...</code>, are ignored). <i>MAY be NULL</i>
+	 *
+	 * @return	The corresponding format,
+	 *        	or NULL if the MIME type is unknown or too generic (e.g. <code>application/octet-stream</code>).
+	 */
+	public static UploadFormat fromMimeType(String mimeType){
+		if (mimeType == null)
+			return null;
+		int sep = mimeType.indexOf(';');
+		mimeType = ((sep >= 0) ? mimeType.substring(0, sep) : mimeType).trim();
+		for(UploadFormat format : values()){
+			for(String type : format.mimeTypes){
+				if (type.equalsIgnoreCase(mimeType))
+					return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>Get the format identified by the first bytes of a table document.</p>
+	 *
+	 * <ul>
+	 * 	<li><b>FITS</b>: starts with <code>SIMPLE&nbsp;&nbsp;=</code>,</li>
+	 * 	<li><b>Parquet</b>: starts with <code>PAR1</code>,</li>
+	 * 	<li><b>VOTable</b>: starts with <code>&lt;</code> (after an eventual BOM and white spaces),</li>
+	 * 	<li><b>TSV</b>: the first line contains more tabulations than commas,</li>
+	 * 	<li><b>CSV</b>: any other text.</li>
+	 * </ul>
+	 *
+	 * @param header	The first bytes of the document.
+	 * @param length	Number of bytes available in the given array.
+	 *
+	 * @return	The identified format. <i>By default, {@link #VOTABLE}.</i>
+	 */
+	public static UploadFormat fromMagicBytes(final byte[] header, final int length){
+		String start = new String(header, 0, Math.max(0, length), StandardCharsets.ISO_8859_1);
+
+		// Binary formats:
+		if (start.startsWith("SIMPLE  ="))
+			return FITS;
+		else if (start.startsWith("PAR1"))
+			return PARQUET;
+
+		// XML (i.e. VOTable), after an eventual UTF-8 BOM:
+		if (start.startsWith("\u00EF\u00BB\u00BF"))
+			start = start.substring(3);
+		String trimmed = start.trim();
+		if (trimmed.length() == 0 || trimmed.charAt(0) == '<')
+			return VOTABLE;
+
+		// Character-separated values:
+		int eol = start.indexOf('\n');
+		String firstLine = (eol >= 0) ? start.substring(0, eol) : start;
+		int nbTabs = 0, nbCommas = 0;
+		for(char c : firstLine.toCharArray()){
+			if (c == '\t')
+				nbTabs++;
+			else if (c == ',')
+				nbCommas++;
+		}
+		return (nbTabs > nbCommas) ? TSV : CSV;
+	}
+
+}
@@ -16,25 +16,47 @@ package tap.upload;
  * You should have received a copy of the GNU Lesser General Public License
  * along with TAPLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import adql.db.DBType;
 
 import tap.upload.ExceededSizeException;
 
+import tap.ExecutionBudget;
 import tap.ServiceConnection;
 import tap.ServiceConnection.LimitUnit;
 import tap.TAPException;
+import tap.data.CSVTableIterator;
 import tap.data.DataReadException;
 import tap.data.LimitedTableIterator;
 import tap.data.TableIterator;
+import tap.data.TypeNarrowingTableIterator;
 import tap.data.VOTableIterator;
+import tap.db.DBCancelledException;
 import tap.db.DBConnection;
 import tap.db.DBException;
+import tap.db.JDBCConnection;
+import tap.log.TAPLog;
 import tap.metadata.TAPColumn;
 import tap.metadata.TAPMetadata;
 import tap.metadata.TAPMetadata.STDSchema;
@@ -43,6 +65,8 @@ import tap.metadata.TAPTable;
 import tap.parameters.DALIUpload;
 import uws.UWSException;
 import uws.service.file.UnsupportedURIProtocolException;
+import uws.service.log.UWSLog.LogLevel;
+import uws.service.request.StreamedUploadFile;
 
 /**
  * Let create properly given VOTable inputs in the "database".
@@ -52,8 +76,28 @@ import uws.service.file.UnsupportedURIProtocolException;
  * 	creating a {@link LimitedTableIterator} with a {@link VOTableIterator}.
  * </p>
  *
+ * <p>
+ * 	Besides VOTable, uploaded tables may also be FITS binary tables, CSV or TSV
+ * 	documents. The format of each upload is identified with its MIME type or its
+ * 	first bytes (see {@link DALIUpload#getFormat(InputStream)}) ; then, the
+ * 	{@link TableIterator} of this {@link UploadFormat} is used.
+ * </p>
+ *
+ * <p>
+ * 	By default, the tables are read and loaded one after another. If a
+ * 	parallelism greater than 1 is set (see {@link #setParallelism(int)}),
+ * 	several tables are read and loaded at the same time, each one through its
+ * 	own connection (see {@link #uploadInParallel(DALIUpload[])}).
+ * </p>
+ *
+ * <p>
+ * 	If an {@link UploadCache} is set (see {@link #setCache(UploadCache)}), an
+ * 	uploaded file whose content has already been loaded by a previous job is
+ * 	not loaded again: the same table is reused.
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 2.3 (08/2018)
+ * @version 2.4 (10/2026)
  *
  * @see LimitedTableIterator
  * @see VOTableIterator
@@ -77,6 +121,22 @@ public class Uploader {
 	/** Number of rows already loaded. */
 	protected int nbRows = 0;
 
+	/** Maximum number of tables read and loaded at the same time.
+	 * <i>1 (default) to load the tables one after another.</i>
+	 * @since 2.4 */
+	protected int parallelism = 1;
+
+	/** Cache of the tables already loaded by previous jobs.
+	 * <i>NULL if no table is cached.</i>
+	 * @since 2.4 */
+	protected UploadCache cache = null;
+
+	/** Maximum number of rows kept in memory to narrow the declared column types of each
+	 * uploaded table (see {@link TypeNarrowingTableIterator}).
+	 * <i>0 (default) if the declared types are kept.</i>
+	 * @since 2.4 */
+	protected int typeNarrowingSample = 0;
+
 	/**
 	 * Build an {@link Uploader} object.
 	 *
@@ -137,6 +197,97 @@ public class Uploader {
 			throw new TAPException("Upload aborted: this functionality is disabled in this TAP service!");
 	}
 
+	/**
+	 * Get the maximum number of tables read and loaded at the same time.
+	 *
+	 * @return	The maximum number of concurrent uploads.
+	 *        	<i>1 if the tables are loaded one after another.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final int getParallelism(){
+		return parallelism;
+	}
+
+	/**
+	 * Set the maximum number of tables read and loaded at the same time.
+	 *
+	 * <p><i>Note:
+	 * 	Each concurrent upload, except one, uses an additional connection
+	 * 	got from the {@link tap.TAPFactory TAPFactory}.
+	 * </i></p>
+	 *
+	 * @param parallelism	The maximum number of concurrent uploads.
+	 *                   	<i>If &lt;= 1, the tables are loaded one after
+	 *                   	another.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final void setParallelism(final int parallelism){
+		this.parallelism = (parallelism <= 1) ? 1 : parallelism;
+	}
+
+	/**
+	 * Get the cache of the tables already loaded by previous jobs.
+	 *
+	 * @return	The upload cache, or NULL if no table is cached.
+	 *
+	 * @since 2.4
+	 */
+	public final UploadCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Set the cache of the tables already loaded by previous jobs.
+	 *
+	 * <p><i>Note:
+	 * 	The cached tables must not be dropped at the end of the job, but given
+	 * 	back to the cache with {@link #releaseCachedTable(TAPTable)}.
+	 * </i></p>
+	 *
+	 * @param cache	The upload cache to use. <i>NULL to cache no table.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final void setCache(final UploadCache cache){
+		this.cache = cache;
+	}
+
+	/**
+	 * Get the maximum number of rows kept in memory to narrow the declared column types of each
+	 * uploaded table.
+	 *
+	 * @return	The sample size, or 0 if the declared types are kept.
+	 *
+	 * @since 2.4
+	 */
+	public final int getTypeNarrowingSample(){
+		return typeNarrowingSample;
+	}
+
+	/**
+	 * Set the maximum number of rows kept in memory to narrow the declared column types of each
+	 * uploaded table (e.g. strings containing only numbers or doubles
+	 * containing only integers ; see {@link TypeNarrowingTableIterator}).
+	 *
+	 * <p><i>Note:
+	 * 	A valid table must never be rejected because of a narrowed type: so,
+	 * 	all values are checked. A file stored on the server side is read a
+	 * 	first time to narrow the types (no row being kept in memory). For the
+	 * 	other tables (streamed files and URIs), at most this number of rows are
+	 * 	kept in memory: the declared types are kept if the table has more rows.
+	 * </i></p>
+	 *
+	 * @param sampleSize	The sample size. <i>If &lt;= 0, the declared types
+	 *                  	are kept.</i>
+	 *
+	 * @since 2.4
+	 */
+	public final void setTypeNarrowingSample(final int sampleSize){
+		typeNarrowingSample = (sampleSize <= 0) ? 0 : sampleSize;
+	}
+
 	/**
 	 * Upload all the given VOTable inputs.
 	 *
@@ -166,76 +317,171 @@ public class Uploader {
 	 * @see DBConnection#addUploadedTable(TAPTable, tap.data.TableIterator)
 	 */
 	public TAPSchema upload(final DALIUpload[] uploads) throws TAPException{
-		TableIterator dataIt = null;
-		InputStream votable = null;
+		// Check uniqueness of the table names inside TAP_UPLOAD:
 		HashSet<String> tableNames = new HashSet<String>(uploads.length);
-		String tableName = null;
+		for(DALIUpload upl : uploads){
+			boolean uniqueTableName = tableNames.add(upl.label.toLowerCase());
+			if (!uniqueTableName)
+				throw new TAPException("Non unique table name (case insensitive) among all tables to upload: \"" + upl.label + "\"!", UWSException.BAD_REQUEST);
+		}
+
 		try{
-			// Iterate over the full list of uploaded tables:
+			// Load all tables concurrently, if allowed...
+			if (isParallelUpload(uploads))
+				uploadInParallel(uploads);
+			// ...or one after another:
+			else{
+				for(DALIUpload upl : uploads)
+					uploadTable(upl, dbConn);
+			}
+
+			// Ensure no parameter has been ignored after the streamed files:
 			for(DALIUpload upl : uploads){
-				tableName = upl.label;
+				if (upl.file instanceof StreamedUploadFile){
+					try{
+						((StreamedUploadFile)upl.file).checkEnd();
+					}catch(IOException ioe){
+						throw new TAPException("Incorrect HTTP request: " + ioe.getMessage(), ioe, UWSException.BAD_REQUEST);
+					}
+					break;
+				}
+			}
+		}catch(TAPException te){
+			// Drop uploaded tables:
+			dropUploadedTables();
+			// Report the error:
+			throw te;
+		}
 
-				// Check uniqueness of the table name inside TAP_UPLOAD:
-				boolean uniqueTableName = tableNames.add(tableName.toLowerCase());
-				if (!uniqueTableName)
-					throw new TAPException("Non unique table name (case insensitive) among all tables to upload: \"" + tableName + "\"!", UWSException.BAD_REQUEST);
+		/* Return the TAP_UPLOAD schema (containing just the description of the
+		 * uploaded tables): */
+		return uploadSchema;
+	}
 
-				// Open a stream toward the VOTable:
-				votable = upl.open();
+	/**
+	 * Read the given VOTable input and load it in the database through the
+	 * given connection.
+	 *
+	 * <p><i>Note:
+	 * 	The created table is added to the TAP_UPLOAD schema <b>before</b> being
+	 * 	loaded, so that it is dropped by {@link #dropUploadedTables()} in case
+	 * 	of error. However, this function never drops any table by itself.
+	 * </i></p>
+	 *
+	 * @param upl		The table to upload.
+	 * @param conn		The connection through which the table must be created
+	 *            		and filled.
+	 *
+	 * @return	Description of the uploaded table.
+	 *
+	 * @throws TAPException	If any error occurs while reading the VOTable input
+	 *                     	or while uploading the table into the "database".
+	 *
+	 * @since 2.4
+	 */
+	protected TAPTable uploadTable(final DALIUpload upl, final DBConnection conn) throws TAPException{
+		TableIterator dataIt = null;
+		InputStream votable = null;
+		final String tableName = upl.label;
+		try{
+			// Hash the uploaded bytes, if this table may be cached:
+			String contentHash = null;
+			long contentSize = -1;
+			final String userID = getUserID(upl);
+			if (isCacheable(upl, conn)){
+				InputStream content = upl.open();
+				try{
+					Object[] hash = UploadCache.hash(content);
+					contentHash = (String)hash[0];
+					contentSize = (Long)hash[1];
+				}finally{
+					content.close();
+				}
+			}
 
-				// Start reading the VOTable (with the identified limit, if any):
-				dataIt = new LimitedTableIterator(VOTableIterator.class, votable, limitUnit, limit);
+			// Open a stream toward the table and identify its format:
+			votable = new BufferedInputStream(upl.open());
+			UploadFormat format = upl.getFormat(votable);
+			if (!format.isSupported())
+				throw new TAPException("Unsupported format for the uploaded table \"" + tableName + "\": " + format + "! Only VOTable, FITS, CSV and TSV can be uploaded.", UWSException.BAD_REQUEST);
 
-				// Define the table to upload:
-				TAPColumn[] columns = dataIt.getMetadata();
+			// Start reading the table (with the identified limit, if any):
+			dataIt = new LimitedTableIterator(format.iteratorClass, votable, limitUnit, limit);
 
-				// Check uniqueness of all column names:
-				HashSet<String> columnNames = new HashSet<String>(columns.length);
-				for(TAPColumn col : columns){
-					boolean uniqueColumnName = columnNames.add(col.getADQLName().toLowerCase());
-					if (!uniqueColumnName)
-						throw new TAPException("Non unique column name (case insensitive) among all columns of the table \"" + tableName + "\": \"" + col.getADQLName() + "\"!", UWSException.BAD_REQUEST);
-				}
+			// Infer the CSV/TSV column types from all rows (and not only the first ones), if the table can be read twice:
+			TableIterator wrappedIt = ((LimitedTableIterator)dataIt).getWrappedIterator();
+			DBType[] csvTypes = null;
+			if (wrappedIt instanceof CSVTableIterator && isRereadable(upl)){
+				csvTypes = inferColumnTypes(upl, format);
+				((CSVTableIterator)wrappedIt).setColumnTypes(csvTypes);
+			}
+
+			// Narrow the declared column types, if asked
+			// (from all rows if the table can be read twice, otherwise only if it fits in the sample):
+			if (typeNarrowingSample > 0){
+				dataIt = new TypeNarrowingTableIterator(dataIt, typeNarrowingSample);
+				if (isRereadable(upl))
+					((TypeNarrowingTableIterator)dataIt).setNarrowedTypes(narrowColumnTypes(upl, format, csvTypes));
+			}
 
-				TAPTable table = new TAPTable(tableName);
-				table.setDBName(tableName + "_" + System.currentTimeMillis());
-				for(TAPColumn col : columns)
-					table.addColumn(col);
+			// Define the table to upload:
+			TAPColumn[] columns = dataIt.getMetadata();
 
-				// Add the table to the TAP_UPLOAD schema:
-				uploadSchema.addTable(table);
+			// Check uniqueness of all column names:
+			HashSet<String> columnNames = new HashSet<String>(columns.length);
+			for(TAPColumn col : columns){
+				boolean uniqueColumnName = columnNames.add(col.getADQLName().toLowerCase());
+				if (!uniqueColumnName)
+					throw new TAPException("Non unique column name (case insensitive) among all columns of the table \"" + tableName + "\": \"" + col.getADQLName() + "\"!", UWSException.BAD_REQUEST);
+			}
+
+			// Reuse the same table if already loaded and cached:
+			String cacheKey = (contentHash == null) ? null : cache.getKey(contentHash, columns, userID);
+			TAPTable cachedTable = (cacheKey == null) ? null : cache.acquire(cacheKey, conn);
+
+			TAPTable table = new TAPTable(tableName);
+			table.setDBName((cachedTable != null) ? cachedTable.getDBName() : tableName + "_" + System.currentTimeMillis());
+			for(TAPColumn col : columns)
+				table.addColumn(col);
 
-				// Create and fill the corresponding table in the database:
-				dbConn.addUploadedTable(table, dataIt);
+			// Add the table to the TAP_UPLOAD schema:
+			synchronized(uploadSchema){
+				uploadSchema.addTable(table);
+			}
 
-				// Close the VOTable stream:
-				dataIt.close();
-				votable.close();
-				votable = null;
+			if (cachedTable != null){
+				// Declare the reused (and already analyzed) table to the connection (so that it can be automatically indexed):
+				if (conn == dbConn && dbConn instanceof JDBCConnection)
+					((JDBCConnection)dbConn).registerUploadedTable(table, true);
+				return table;
 			}
+
+			// Create and fill the corresponding table in the database:
+			conn.addUploadedTable(table, dataIt);
+
+			// Keep this table for the next jobs uploading the same content (with up-to-date statistics, since it is never modified):
+			if (cacheKey != null && cache.put(cacheKey, table, contentSize, conn) && conn instanceof JDBCConnection)
+				((JDBCConnection)conn).analyzeUploadedTable(table);
+
+			// Close the VOTable stream:
+			dataIt.close();
+			votable.close();
+			votable = null;
+
+			return table;
+
 		}catch(DataReadException dre){
-			// Drop uploaded tables:
-			dropUploadedTables();
 			// Report the error:
 			if (dre.getCause() instanceof ExceededSizeException)
 				throw dre;
 			else
 				throw new TAPException("Error while reading the VOTable \"" + tableName + "\": " + dre.getMessage(), dre, UWSException.BAD_REQUEST);
 		}catch(IOException ioe){
-			// Drop uploaded tables:
-			dropUploadedTables();
 			// Report the error:
 			throw new TAPException("IO error while reading the VOTable of \"" + tableName + "\"!", ioe);
 		}catch(UnsupportedURIProtocolException e){
-			// Drop uploaded tables:
-			dropUploadedTables();
 			// Report the error:
 			throw new TAPException("URI error while trying to open the VOTable of \"" + tableName + "\"!", e);
-		}catch(TAPException te){
-			// Drop uploaded tables:
-			dropUploadedTables();
-			// Report the error:
-			throw te;
 		}finally{
 			try{
 				if (dataIt != null)
@@ -246,10 +492,362 @@ public class Uploader {
 				;
 			}
 		}
+	}
 
-		/* Return the TAP_UPLOAD schema (containing just the description of the
-		 * uploaded tables): */
-		return uploadSchema;
+	/**
+	 * Tell whether the given tables can be loaded concurrently.
+	 *
+	 * <p>
+	 * 	It is the case only if several tables are uploaded, if
+	 * 	{@link #getParallelism()} is greater than 1 and if the uploaded tables
+	 * 	are visible from any connection (i.e. they are not
+	 * 	{@link JDBCConnection.UploadTableType#TEMPORARY TEMPORARY} tables).
+	 * 	Files read directly from the HTTP request ({@link StreamedUploadFile})
+	 * 	can only be read one after another ; so they are never loaded
+	 * 	concurrently.
+	 * </p>
+	 *
+	 * @param uploads	Tables to upload.
+	 *
+	 * @return	<code>true</code> if the tables can be loaded concurrently,
+	 *        	<code>false</code> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isParallelUpload(final DALIUpload[] uploads){
+		if (parallelism <= 1 || uploads.length <= 1)
+			return false;
+		for(DALIUpload upl : uploads){
+			if (upl.file instanceof StreamedUploadFile)
+				return false;
+		}
+		if (dbConn instanceof JDBCConnection)
+			return ((JDBCConnection)dbConn).getUploadTableType() != JDBCConnection.UploadTableType.TEMPORARY;
+		else
+			return true;
+	}
+
+	/**
+	 * Read and load concurrently all the given VOTable inputs.
+	 *
+	 * <p>
+	 * 	At most {@link #getParallelism()} tables are read and loaded at the
+	 * 	same time, each through its own connection: the connection of this
+	 * 	{@link Uploader} and additional connections got from the
+	 * 	{@link tap.TAPFactory TAPFactory} (freed at the end of this function).
+	 * 	If no more connection can be got, less tables are loaded at the same
+	 * 	time.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	If an {@link ExecutionBudget} is set, each additional connection is
+	 * 	first reserved in this budget with
+	 * 	{@link ExecutionBudget#acquireConnection()}. If the budget is exhausted,
+	 * 	the tables are loaded with the connections already got (so, possibly
+	 * 	one after another with only the connection of this {@link Uploader}).
+	 * </i></p>
+	 *
+	 * <p>
+	 * 	As soon as a table can not be uploaded, all other uploads are cancelled.
+	 * 	This function returns or fails only once all uploads are stopped, so
+	 * 	that the tables loaded so far can be safely dropped.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	The tables loaded through an additional connection are declared to
+	 * 	the connection of this {@link Uploader} with
+	 * 	{@link JDBCConnection#registerUploadedTable(TAPTable)} (if it is a
+	 * 	{@link JDBCConnection}), so that they can be automatically indexed.
+	 * </i></p>
+	 *
+	 * @param uploads	Tables to upload.
+	 *
+	 * @throws TAPException	If any error occurs while reading the VOTable inputs
+	 *                     	or while uploading the tables into the "database".
+	 *
+	 * @since 2.4
+	 */
+	protected void uploadInParallel(final DALIUpload[] uploads) throws TAPException{
+		// Get the connections to use (at least the one of this Uploader):
+		final ExecutionBudget budget = service.getFactory().getExecutionBudget();
+		final TAPLog logger = service.getLogger();
+		final List<DBConnection> connections = new ArrayList<DBConnection>(parallelism);
+		connections.add(dbConn);
+		while(connections.size() < Math.min(parallelism, uploads.length)){
+			/* Reserve the connection in the budget shared by all queries
+			 * (without waiting, so that already admitted jobs are not starved): */
+			if (budget != null && !budget.acquireConnection()){
+				if (logger != null)
+					logger.logDB(LogLevel.INFO, dbConn, "UPLOAD", "No more database connection in the execution budget for uploads! Only " + connections.size() + " tables will be loaded at the same time.", null);
+				break;
+			}
+			try{
+				connections.add(service.getFactory().getConnection(dbConn.getID()));
+			}catch(TAPException te){
+				if (budget != null)
+					budget.releaseConnection();
+				if (logger != null)
+					logger.logDB(LogLevel.WARNING, dbConn, "UPLOAD", "No more database connection available for uploads! Only " + connections.size() + " tables will be loaded at the same time.", te);
+				break;
+			}
+		}
+
+		final String threadName = "TAP-Upload-" + dbConn.getID();
+		ExecutorService workers = Executors.newFixedThreadPool(connections.size(), new ThreadFactory(){
+			@Override
+			public Thread newThread(final Runnable r){
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		final AtomicInteger nextUpload = new AtomicInteger(0);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		final List<TAPTable> otherTables = Collections.synchronizedList(new ArrayList<TAPTable>(uploads.length));
+		TAPException error = null;
+		boolean interrupted = false;
+		try{
+			// Each connection loads the next table to upload until all are loaded or one fails:
+			CompletionService<Void> completion = new ExecutorCompletionService<Void>(workers);
+			for(final DBConnection conn : connections){
+				completion.submit(new Callable<Void>(){
+					@Override
+					public Void call() throws TAPException{
+						int indUpload;
+						while(!failed.get() && (indUpload = nextUpload.getAndIncrement()) < uploads.length){
+							TAPTable table = uploadTable(uploads[indUpload], conn);
+							if (conn != dbConn)
+								otherTables.add(table);
+						}
+						return null;
+					}
+				});
+			}
+
+			// Wait for all of them, cancelling all uploads at the first error:
+			for(int nbDone = 0; nbDone < connections.size();){
+				Future<Void> done;
+				try{
+					done = completion.take();
+				}catch(InterruptedException ie){
+					// the job has been aborted => stop all uploads:
+					if (!interrupted){
+						interrupted = true;
+						if (error == null)
+							error = new DBCancelledException("Upload interrupted!");
+						cancelUploads(connections, failed);
+						workers.shutdownNow();
+					}
+					continue;
+				}
+				nbDone++;
+				try{
+					done.get();
+				}catch(ExecutionException ee){
+					if (error == null){
+						if (ee.getCause() instanceof TAPException)
+							error = (TAPException)ee.getCause();
+						else
+							error = new TAPException("Unexpected error while uploading the tables!", ee.getCause());
+						cancelUploads(connections, failed);
+					}
+				}catch(InterruptedException ie){
+					// not possible: this upload is already done
+				}
+			}
+
+		}finally{
+			workers.shutdownNow();
+			// Free the additional connections:
+			for(DBConnection conn : connections){
+				if (conn != dbConn){
+					try{
+						service.getFactory().freeConnection(conn);
+					}finally{
+						if (budget != null)
+							budget.releaseConnection();
+					}
+				}
+			}
+			// Restore the interruption flag of the job thread:
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		if (error != null)
+			throw error;
+
+		// Declare to the connection of this Uploader the tables loaded by the other connections:
+		if (dbConn instanceof JDBCConnection){
+			for(TAPTable table : otherTables)
+				((JDBCConnection)dbConn).registerUploadedTable(table);
+		}
+	}
+
+	/**
+	 * Tell whether the given upload may be reused from or kept in the
+	 * {@link UploadCache} of this {@link Uploader}.
+	 *
+	 * <p>
+	 * 	Only the files uploaded with the request are cached: the content of a
+	 * 	remote URI may change and would have to be downloaded twice (once to
+	 * 	compute its hash and once to read it). Besides, TEMPORARY upload tables
+	 * 	are visible only by the connection creating them ; so they can not be
+	 * 	cached. A file read directly from the HTTP request
+	 * 	({@link StreamedUploadFile}) can be read only once ; so it is not
+	 * 	cached either. Finally, if the cache is isolated per user, the owner
+	 * 	of the upload must be known.
+	 * </p>
+	 *
+	 * @param upl	The table to upload.
+	 * @param conn	The connection through which the table would be loaded.
+	 *
+	 * @return	<code>true</code> if the table may be cached,
+	 *        	<code>false</code> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isCacheable(final DALIUpload upl, final DBConnection conn){
+		if (cache == null || !isRereadable(upl))
+			return false;
+		else if (cache.isPerUser() && getUserID(upl) == null)
+			return false;
+		else if (conn instanceof JDBCConnection)
+			return ((JDBCConnection)conn).getUploadTableType() != JDBCConnection.UploadTableType.TEMPORARY;
+		else
+			return true;
+	}
+
+	/**
+	 * <p>Tell whether the given uploaded table can be read several times without being transferred again.</p>
+	 *
+	 * <p><i>Note:
+	 * 	Only the files stored on the server side are re-readable ; the streamed files and the tables
+	 * 	referenced by a URI are not.
+	 * </i></p>
+	 *
+	 * @param upl	An uploaded table.
+	 *
+	 * @return	<i>true</i> if it can be read again, <i>false</i> otherwise.
+	 *
+	 * @since 2.4
+	 */
+	protected boolean isRereadable(final DALIUpload upl){
+		return upl.file != null && !(upl.file instanceof StreamedUploadFile);
+	}
+
+	/**
+	 * <p>Infer the type of all columns of the given CSV/TSV table from all its rows.</p>
+	 *
+	 * <p>
+	 * 	The table is read entirely a first time (with the same limit as the real reading), without keeping
+	 * 	any row in memory. Thus, a value after the first rows can not be rejected because it does not match
+	 * 	a type inferred only from these first rows.
+	 * </p>
+	 *
+	 * @param upl		The uploaded table. <i>It must be re-readable ; see {@link #isRereadable(DALIUpload)}.</i>
+	 * @param format	Its format (CSV or TSV).
+	 *
+	 * @return	The type of each column.
+	 *
+	 * @throws UnsupportedURIProtocolException	If the table can not be opened.
+	 * @throws IOException			If the table can not be opened.
+	 * @throws DataReadException	If the table can not be read.
+	 *
+	 * @since 2.4
+	 */
+	protected DBType[] inferColumnTypes(final DALIUpload upl, final UploadFormat format) throws UnsupportedURIProtocolException, IOException, DataReadException{
+		LimitedTableIterator scanIt = new LimitedTableIterator(format.iteratorClass, new BufferedInputStream(upl.open()), limitUnit, limit);
+		try{
+			return ((CSVTableIterator)scanIt.getWrappedIterator()).inferTypesFromAllRows();
+		}finally{
+			scanIt.close();
+		}
+	}
+
+	/**
+	 * <p>Get the narrowest type of all columns of the given table, from all its rows
+	 * (see {@link TypeNarrowingTableIterator#narrowTypesFromAllRows()}).</p>
+	 *
+	 * <p>
+	 * 	The table is read entirely a first time (with the same limit as the real reading), without keeping
+	 * 	any row in memory. Thus, no valid value can be rejected because of a narrowed type.
+	 * </p>
+	 *
+	 * @param upl		The uploaded table. <i>It must be re-readable ; see {@link #isRereadable(DALIUpload)}.</i>
+	 * @param format	Its format.
+	 * @param csvTypes	The column types of a CSV/TSV table, as returned by {@link #inferColumnTypes(DALIUpload, UploadFormat)}.
+	 *                	<i>NULL for the other formats.</i>
+	 *
+	 * @return	The narrowed type of each column (NULL items for the declared types to keep).
+	 *
+	 * @throws UnsupportedURIProtocolException	If the table can not be opened.
+	 * @throws IOException			If the table can not be opened.
+	 * @throws DataReadException	If the table can not be read.
+	 *
+	 * @since 2.4
+	 */
+	protected DBType[] narrowColumnTypes(final DALIUpload upl, final UploadFormat format, final DBType[] csvTypes) throws UnsupportedURIProtocolException, IOException, DataReadException{
+		LimitedTableIterator scanIt = new LimitedTableIterator(format.iteratorClass, new BufferedInputStream(upl.open()), limitUnit, limit);
+		try{
+			if (csvTypes != null)
+				((CSVTableIterator)scanIt.getWrappedIterator()).setColumnTypes(csvTypes);
+			return new TypeNarrowingTableIterator(scanIt).narrowTypesFromAllRows();
+		}finally{
+			scanIt.close();
+		}
+	}
+
+	/**
+	 * Get the ID of the user who uploaded the given table.
+	 *
+	 * @param upl	An uploaded table.
+	 *
+	 * @return	ID of its owner,
+	 *        	or NULL if unknown (e.g. anonymous user or synchronous job).
+	 *
+	 * @since 2.4
+	 */
+	protected String getUserID(final DALIUpload upl){
+		if (upl.file == null || upl.file.getOwner() == null || upl.file.getOwner().getOwner() == null)
+			return null;
+		else
+			return upl.file.getOwner().getOwner().getID();
+	}
+
+	/**
+	 * Give back to the {@link UploadCache} (if any) the given table.
+	 *
+	 * <p><b>Important:</b>
+	 * 	If this function returns <code>true</code>, the given table is still
+	 * 	used by the cache and so it <b>MUST NOT</b> be dropped.
+	 * </p>
+	 *
+	 * @param table	A table uploaded by this {@link Uploader}.
+	 *
+	 * @return	<code>true</code> if the given table is cached,
+	 *        	<code>false</code> if it must be dropped as usual.
+	 *
+	 * @since 2.4
+	 */
+	public boolean releaseCachedTable(final TAPTable table){
+		return (cache != null && cache.release(table));
+	}
+
+	/**
+	 * Stop as soon as possible all the uploads running through the given
+	 * connections.
+	 *
+	 * @param connections	Connections loading the uploaded tables.
+	 * @param failed		Flag to set so that no more upload is started.
+	 *
+	 * @since 2.4
+	 */
+	private void cancelUploads(final List<DBConnection> connections, final AtomicBoolean failed){
+		failed.set(true);
+		for(DBConnection conn : connections)
+			conn.cancel(true);
 	}
 
 	/**
@@ -263,7 +861,8 @@ public class Uploader {
 
 		for(TAPTable table : uploadSchema){
 			try{
-				dbConn.dropUploadedTable(table);
+				if (!releaseCachedTable(table))
+					dbConn.dropUploadedTable(table);
 			}catch(DBException e){
 				service.getLogger().error("Unable to drop the uploaded table " + table.getFullName() + "!", e);
 			}
@@ -0,0 +1,699 @@
+package uws.job;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uws.UWSException;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * Bus delivering the events of jobs (phase changes, new results and
+ * parameters updated by the execution) to {@link JobObserver}s on its own
+ * threads, instead of the thread modifying the job.
+ *
+ * <p>
+ * 	By default, a job notifies its observers synchronously: a slow observer
+ * 	then delays the execution of the job or the HTTP response changing its
+ * 	phase. An observer can opt into an asynchronous delivery by subscribing
+ * 	to this bus (see {@link #subscribe(JobObserver, int, OverflowPolicy)}):
+ * 	the returned {@link Subscription} is the observer to add to the jobs
+ * 	(see {@link UWSJob#addObserver(JobObserver)}). It just puts the events in
+ * 	a bounded queue, dedicated to the subscribed observer, and returns
+ * 	immediately. The events of this queue are then delivered by a thread of
+ * 	this bus, in the order in which they occurred (and so, in order for each
+ * 	job).
+ * </p>
+ *
+ * <p>
+ * 	When the queue of an observer is full, the new event is handled in
+ * 	function of the {@link OverflowPolicy} of the subscription: the new
+ * 	event or the oldest one is dropped, or the new event is merged with the
+ * 	pending event about the same thing (e.g. the phase of the same job).
+ * </p>
+ *
+ * <p>
+ * 	The depth of the queues, the number of delivered, dropped and coalesced
+ * 	events, and the dispatch latency (i.e. the time between the occurrence of
+ * 	an event and the end of its delivery) are measured for each subscription
+ * 	and for the whole bus.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Observers which must be notified before the job goes on (e.g.
+ * 	{@link uws.service.wait.WaitObserver} or a backup journal) should keep
+ * 	the synchronous delivery, i.e. be added directly to the jobs.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see UWSJob#notifyObservers(ExecutionPhase)
+ */
+public class JobEventBus {
+
+	/** Default maximum number of events waiting to be delivered to one
+	 * observer. */
+	public final static int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/** Maximum number of events delivered in a row to the same observer,
+	 * before letting the other observers use the thread. */
+	protected final static int MAX_BATCH = 64;
+
+	/**
+	 * Policy applied when an event must be put in a full queue.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	public static enum OverflowPolicy {
+		/** The new event is dropped. */
+		DROP_NEWEST,
+		/** The oldest pending event is dropped to make room for the new
+		 * one. */
+		DROP_OLDEST,
+		/** The new event replaces the pending event about the same thing (same
+		 * job phase or same job parameter), keeping the first former phase
+		 * for a phase change. If there is no such event, the new one is
+		 * dropped. */
+		COALESCE;
+	}
+
+	/** The bus shared by default. */
+	private static JobEventBus defaultBus = null;
+
+	/** Threads delivering the events. */
+	private final ExecutorService dispatchers;
+
+	/** Total number of events waiting to be delivered. */
+	private final AtomicInteger queueDepth = new AtomicInteger(0);
+
+	/** Total number of delivered events. */
+	private final AtomicLong nbDispatched = new AtomicLong(0);
+
+	/** Total number of dropped events. */
+	private final AtomicLong nbDropped = new AtomicLong(0);
+
+	/** Total number of coalesced events. */
+	private final AtomicLong nbCoalesced = new AtomicLong(0);
+
+	/** Sum of the dispatch latencies (in nanoseconds). */
+	private final AtomicLong totalLatency = new AtomicLong(0);
+
+	/** Maximum dispatch latency (in nanoseconds). */
+	private final AtomicLong maxLatency = new AtomicLong(0);
+
+	/**
+	 * Build an event bus whose the delivery threads are named with the given
+	 * prefix.
+	 *
+	 * @param name	Prefix of the name of the delivery threads.
+	 *            	<i>If NULL, <code>UWS_EVENT_BUS</code>.</i>
+	 */
+	public JobEventBus(final String name){
+		final String threadName = (name == null) ? "UWS_EVENT_BUS" : name;
+		dispatchers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory(){
+			@Override
+			public Thread newThread(final Runnable r){
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Get the event bus shared by default.
+	 *
+	 * @return	The default event bus.
+	 */
+	public static synchronized JobEventBus getDefault(){
+		if (defaultBus == null)
+			defaultBus = new JobEventBus(null);
+		return defaultBus;
+	}
+
+	/**
+	 * Subscribe the given observer with a queue of
+	 * {@link #DEFAULT_QUEUE_CAPACITY} events and the policy
+	 * {@link OverflowPolicy#COALESCE COALESCE}.
+	 *
+	 * @param observer	The observer to notify asynchronously.
+	 *
+	 * @return	The observer to add to the jobs.
+	 *
+	 * @see #subscribe(JobObserver, int, OverflowPolicy)
+	 */
+	public Subscription subscribe(final JobObserver observer){
+		return subscribe(observer, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.COALESCE);
+	}
+
+	/**
+	 * Subscribe the given observer, so that the job events are delivered to
+	 * it asynchronously by this bus.
+	 *
+	 * <p><b>Important:</b>
+	 * 	The returned subscription is the observer that must be added to (and
+	 * 	removed from) the jobs, instead of the given one.
+	 * </p>
+	 *
+	 * @param observer	The observer to notify asynchronously.
+	 * @param capacity	Maximum number of events waiting to be delivered to
+	 *                	this observer. <i>If &le;0,
+	 *                	{@link #DEFAULT_QUEUE_CAPACITY}.</i>
+	 * @param policy	What to do when an event arrives while the queue is
+	 *              	full. <i>If NULL,
+	 *              	{@link OverflowPolicy#COALESCE COALESCE}.</i>
+	 *
+	 * @return	The observer to add to the jobs.
+	 */
+	public Subscription subscribe(final JobObserver observer, final int capacity, final OverflowPolicy policy){
+		if (observer == null)
+			throw new NullPointerException("Missing observer! Can not subscribe to the job events.");
+		return new Subscription(this, observer, (capacity <= 0) ? DEFAULT_QUEUE_CAPACITY : capacity, (policy == null) ? OverflowPolicy.COALESCE : policy);
+	}
+
+	/**
+	 * Get the total number of events waiting to be delivered.
+	 *
+	 * @return	Depth of all queues.
+	 */
+	public final int getQueueDepth(){
+		return queueDepth.get();
+	}
+
+	/**
+	 * Get the total number of delivered events.
+	 *
+	 * @return	Number of delivered events.
+	 */
+	public final long getNbDispatched(){
+		return nbDispatched.get();
+	}
+
+	/**
+	 * Get the total number of dropped events.
+	 *
+	 * @return	Number of dropped events.
+	 */
+	public final long getNbDropped(){
+		return nbDropped.get();
+	}
+
+	/**
+	 * Get the total number of events merged with a pending one.
+	 *
+	 * @return	Number of coalesced events.
+	 */
+	public final long getNbCoalesced(){
+		return nbCoalesced.get();
+	}
+
+	/**
+	 * Get the mean time between the occurrence of an event and the end of its
+	 * delivery.
+	 *
+	 * @return	Mean dispatch latency (in milliseconds).
+	 */
+	public final double getMeanDispatchLatency(){
+		long n = nbDispatched.get();
+		return (n == 0) ? 0 : totalLatency.get() / (n * 1000000.0);
+	}
+
+	/**
+	 * Get the maximum time between the occurrence of an event and the end of
+	 * its delivery.
+	 *
+	 * @return	Maximum dispatch latency (in milliseconds).
+	 */
+	public final double getMaxDispatchLatency(){
+		return maxLatency.get() / 1000000.0;
+	}
+
+	/**
+	 * Stop the delivery threads of this bus. The pending events are not
+	 * delivered any more.
+	 */
+	public void shutdown(){
+		dispatchers.shutdownNow();
+	}
+
+	/**
+	 * Update the maximum of the given counter.
+	 *
+	 * @param max	The counter to update.
+	 * @param value	The new value.
+	 */
+	private static void updateMax(final AtomicLong max, final long value){
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value))
+			current = max.get();
+	}
+
+	/* ****** */
+	/* EVENTS */
+	/* ****** */
+
+	/**
+	 * An event about a job, waiting to be delivered.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private final static class Event {
+		/** The job concerned by this event. */
+		final UWSJob job;
+		/** Phase before a phase change. <i>NULL if not a phase change.</i> */
+		final ExecutionPhase oldPhase;
+		/** Phase after a phase change. <i>NULL if not a phase change.</i> */
+		final ExecutionPhase newPhase;
+		/** The added result. <i>NULL if not a new result.</i> */
+		final Result result;
+		/** Name of the updated parameter. <i>NULL if not a parameter update.</i> */
+		final String paramName;
+		/** New value of the updated parameter. */
+		final Object paramValue;
+		/** Time (in nanoseconds) at which the event occurred. */
+		final long time;
+
+		Event(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase, final Result result, final String paramName, final Object paramValue, final long time){
+			this.job = job;
+			this.oldPhase = oldPhase;
+			this.newPhase = newPhase;
+			this.result = result;
+			this.paramName = paramName;
+			this.paramValue = paramValue;
+			this.time = time;
+		}
+
+		/**
+		 * Tell whether the given event can replace this one.
+		 *
+		 * @param e	A more recent event.
+		 *
+		 * @return	<i>true</i> if both events are about the phase or the same
+		 *        	parameter of the same job, <i>false</i> otherwise.
+		 */
+		boolean isReplacedBy(final Event e){
+			if (job != e.job || result != null || e.result != null)
+				return false;
+			else if (newPhase != null)
+				return e.newPhase != null;
+			else
+				return e.paramName != null && e.paramName.equals(paramName);
+		}
+	}
+
+	/* ************ */
+	/* SUBSCRIPTION */
+	/* ************ */
+
+	/**
+	 * Observer delivering asynchronously the job events to a subscribed
+	 * observer, through a bounded queue.
+	 *
+	 * <p>
+	 * 	This is the observer to add to the jobs (see
+	 * 	{@link UWSJob#addObserver(JobObserver)}). The events about new
+	 * 	results and updated parameters are delivered only if the subscribed
+	 * 	observer is a {@link JobEventObserver}.
+	 * </p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 *
+	 * @see JobEventBus#subscribe(JobObserver, int, OverflowPolicy)
+	 */
+	public final static class Subscription implements JobEventObserver {
+		private static final long serialVersionUID = 1L;
+
+		/** The bus delivering the events. */
+		private final transient JobEventBus bus;
+
+		/** The subscribed observer. */
+		private final JobObserver observer;
+
+		/** Maximum number of pending events. */
+		private final int capacity;
+
+		/** What to do when the queue is full. */
+		private final OverflowPolicy policy;
+
+		/** Events waiting to be delivered. */
+		private final transient LinkedList<Event> queue = new LinkedList<Event>();
+
+		/** Indicate whether a thread is delivering the events of the queue. */
+		private final transient AtomicBoolean dispatching = new AtomicBoolean(false);
+
+		/** Indicate whether this subscription is cancelled. */
+		private volatile boolean cancelled = false;
+
+		/** Maximum depth reached by the queue. */
+		private volatile int maxDepth = 0;
+
+		/** Number of delivered events. */
+		private final AtomicLong nbDispatched = new AtomicLong(0);
+
+		/** Number of dropped events. */
+		private final AtomicLong nbDropped = new AtomicLong(0);
+
+		/** Number of coalesced events. */
+		private final AtomicLong nbCoalesced = new AtomicLong(0);
+
+		/** Sum of the dispatch latencies (in nanoseconds). */
+		private final AtomicLong totalLatency = new AtomicLong(0);
+
+		/** Maximum dispatch latency (in nanoseconds). */
+		private final AtomicLong maxLatency = new AtomicLong(0);
+
+		/**
+		 * Build a subscription.
+		 *
+		 * @param bus		The bus delivering the events.
+		 * @param observer	The subscribed observer.
+		 * @param capacity	Maximum number of pending events.
+		 * @param policy	What to do when the queue is full.
+		 */
+		private Subscription(final JobEventBus bus, final JobObserver observer, final int capacity, final OverflowPolicy policy){
+			this.bus = bus;
+			this.observer = observer;
+			this.capacity = capacity;
+			this.policy = policy;
+		}
+
+		/**
+		 * Get the subscribed observer.
+		 *
+		 * @return	The observer notified asynchronously.
+		 */
+		public JobObserver getObserver(){
+			return observer;
+		}
+
+		/**
+		 * Get the maximum number of pending events.
+		 *
+		 * @return	Capacity of the queue.
+		 */
+		public int getCapacity(){
+			return capacity;
+		}
+
+		/**
+		 * Get the policy applied when the queue is full.
+		 *
+		 * @return	The overflow policy.
+		 */
+		public OverflowPolicy getOverflowPolicy(){
+			return policy;
+		}
+
+		/**
+		 * Get the number of events waiting to be delivered.
+		 *
+		 * @return	Depth of the queue.
+		 */
+		public int getQueueDepth(){
+			synchronized(queue){
+				return queue.size();
+			}
+		}
+
+		/**
+		 * Get the maximum number of events which have been waiting at the same
+		 * time.
+		 *
+		 * @return	Maximum depth of the queue.
+		 */
+		public int getMaxQueueDepth(){
+			return maxDepth;
+		}
+
+		/**
+		 * Get the number of delivered events.
+		 *
+		 * @return	Number of delivered events.
+		 */
+		public long getNbDispatched(){
+			return nbDispatched.get();
+		}
+
+		/**
+		 * Get the number of dropped events.
+		 *
+		 * @return	Number of dropped events.
+		 */
+		public long getNbDropped(){
+			return nbDropped.get();
+		}
+
+		/**
+		 * Get the number of events merged with a pending one.
+		 *
+		 * @return	Number of coalesced events.
+		 */
+		public long getNbCoalesced(){
+			return nbCoalesced.get();
+		}
+
+		/**
+		 * Get the mean time between the occurrence of an event and the end of
+		 * its delivery.
+		 *
+		 * @return	Mean dispatch latency (in milliseconds).
+		 */
+		public double getMeanDispatchLatency(){
+			long n = nbDispatched.get();
+			return (n == 0) ? 0 : totalLatency.get() / (n * 1000000.0);
+		}
+
+		/**
+		 * Get the maximum time between the occurrence of an event and the end
+		 * of its delivery.
+		 *
+		 * @return	Maximum dispatch latency (in milliseconds).
+		 */
+		public double getMaxDispatchLatency(){
+			return maxLatency.get() / 1000000.0;
+		}
+
+		/**
+		 * Stop delivering events to the subscribed observer. The pending
+		 * events are dropped.
+		 *
+		 * <p><i>Note:
+		 * 	This subscription should also be removed from the observed jobs.
+		 * </i></p>
+		 */
+		public void cancel(){
+			cancelled = true;
+			synchronized(queue){
+				bus.queueDepth.addAndGet(-queue.size());
+				queue.clear();
+			}
+		}
+
+		/**
+		 * Tell whether this subscription is cancelled.
+		 *
+		 * @return	<i>true</i> if cancelled, <i>false</i> otherwise.
+		 */
+		public boolean isCancelled(){
+			return cancelled;
+		}
+
+		@Override
+		public void update(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase) throws UWSException{
+			put(new Event(job, oldPhase, newPhase, null, null, null, System.nanoTime()));
+		}
+
+		@Override
+		public void resultAdded(final UWSJob job, final Result result) throws UWSException{
+			if (observer instanceof JobEventObserver)
+				put(new Event(job, null, null, result, null, null, System.nanoTime()));
+		}
+
+		@Override
+		public void parameterChanged(final UWSJob job, final String name, final Object newValue) throws UWSException{
+			if (observer instanceof JobEventObserver)
+				put(new Event(job, null, null, null, name, newValue, System.nanoTime()));
+		}
+
+		/**
+		 * Put the given event in the queue (in function of the overflow
+		 * policy if full) and plan its delivery.
+		 *
+		 * @param event	The event to deliver.
+		 */
+		private void put(final Event event){
+			if (cancelled)
+				return;
+
+			synchronized(queue){
+				if (queue.size() < capacity){
+					queue.addLast(event);
+					bus.queueDepth.incrementAndGet();
+				}else if (policy == OverflowPolicy.DROP_OLDEST){
+					queue.removeFirst();
+					drop();
+					queue.addLast(event);
+				}else if (policy != OverflowPolicy.COALESCE || !coalesce(event)){
+					drop();
+					return;
+				}
+				if (queue.size() > maxDepth)
+					maxDepth = queue.size();
+			}
+
+			scheduleDispatch();
+		}
+
+		/**
+		 * Remove from the queue the last pending event which can be replaced
+		 * by the given one.
+		 *
+		 * <p><i>Note:
+		 * 	The given event is then put at the end of the queue, so that the
+		 * 	order of the events of the same job is preserved.
+		 * </i></p>
+		 *
+		 * @param event	The new event.
+		 *
+		 * @return	<i>true</i> if an event has been removed,
+		 *        	<i>false</i> otherwise.
+		 */
+		private boolean coalesce(final Event event){
+			Iterator<Event> it = queue.descendingIterator();
+			while(it.hasNext()){
+				Event pending = it.next();
+				if (pending.isReplacedBy(event)){
+					it.remove();
+					nbCoalesced.incrementAndGet();
+					bus.nbCoalesced.incrementAndGet();
+					// (the merged phase change starts from the first former phase)
+					if (event.newPhase != null)
+						queue.addLast(new Event(event.job, pending.oldPhase, event.newPhase, null, null, null, pending.time));
+					else
+						queue.addLast(new Event(event.job, null, null, null, event.paramName, event.paramValue, pending.time));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Count a dropped event.
+		 */
+		private void drop(){
+			nbDropped.incrementAndGet();
+			bus.nbDropped.incrementAndGet();
+		}
+
+		/**
+		 * Plan the delivery of the pending events (if not already planned).
+		 */
+		private void scheduleDispatch(){
+			if (dispatching.compareAndSet(false, true)){
+				try{
+					bus.dispatchers.execute(new Runnable(){
+						@Override
+						public void run(){
+							dispatch();
+						}
+					});
+				}catch(RejectedExecutionException ree){
+					dispatching.set(false);
+				}
+			}
+		}
+
+		/**
+		 * Deliver the pending events (at most {@link JobEventBus#MAX_BATCH}),
+		 * in their order of arrival.
+		 */
+		private void dispatch(){
+			try{
+				List<Event> batch = new ArrayList<Event>(MAX_BATCH);
+				synchronized(queue){
+					while(!queue.isEmpty() && batch.size() < MAX_BATCH)
+						batch.add(queue.removeFirst());
+					bus.queueDepth.addAndGet(-batch.size());
+				}
+				for(Event e : batch){
+					if (cancelled)
+						return;
+					deliver(e);
+					long latency = System.nanoTime() - e.time;
+					nbDispatched.incrementAndGet();
+					bus.nbDispatched.incrementAndGet();
+					totalLatency.addAndGet(latency);
+					bus.totalLatency.addAndGet(latency);
+					updateMax(maxLatency, latency);
+					updateMax(bus.maxLatency, latency);
+				}
+			}finally{
+				dispatching.set(false);
+			}
+
+			// Events may have arrived while delivering:
+			if (getQueueDepth() > 0 && !cancelled)
+				scheduleDispatch();
+		}
+
+		/**
+		 * Deliver the given event to the subscribed observer.
+		 *
+		 * <p><i>Note:
+		 * 	Any error is logged by the logger of the concerned job.
+		 * </i></p>
+		 *
+		 * @param e	The event to deliver.
+		 */
+		private void deliver(final Event e){
+			try{
+				if (e.newPhase != null)
+					observer.update(e.job, e.oldPhase, e.newPhase);
+				else if (e.result != null)
+					((JobEventObserver)observer).resultAdded(e.job, e.result);
+				else
+					((JobEventObserver)observer).parameterChanged(e.job, e.paramName, e.paramValue);
+			}catch(Throwable t){
+				e.job.getLogger().logJob(LogLevel.WARNING, e.job, "NOTIFY", "An observer of the job \"" + e.job.getJobId() + "\" can not have been updated: " + t.getMessage(), t);
+			}
+		}
+	}
+
+}
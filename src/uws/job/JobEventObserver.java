@@ -0,0 +1,68 @@
+package uws.job;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import uws.UWSException;
+
+/**
+ * A {@link JobObserver} which wants to be notified also of the other
+ * modifications of a running job: a new result and the update of an
+ * informative parameter (e.g. the progression of a TAP query execution).
+ *
+ * <p><i>Note:
+ * 	Like {@link JobObserver#update(UWSJob, ExecutionPhase, ExecutionPhase)},
+ * 	these functions are called by the thread modifying the job (generally,
+ * 	the thread executing it). So, they should return as fast as possible,
+ * 	or be notified asynchronously through a {@link JobEventBus}.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see UWSJob#addObserver(JobObserver)
+ * @see UWSJob#notifyResultAdded(Result)
+ * @see UWSJob#notifyParameterChanged(String)
+ */
+public interface JobEventObserver extends JobObserver {
+
+	/**
+	 * Used when a result has been added to one of the observed jobs.
+	 *
+	 * @param job		The observed job which notifies the observer.
+	 * @param result	The added result.
+	 *
+	 * @throws UWSException	If there is an error during the call of this method.
+	 */
+	public void resultAdded(UWSJob job, Result result) throws UWSException;
+
+	/**
+	 * Used when a parameter of one of the observed jobs has been modified
+	 * (or removed) by its execution.
+	 *
+	 * @param job		The observed job which notifies the observer.
+	 * @param name		Name of the modified parameter.
+	 * @param newValue	The new value of this parameter. <i>NULL if removed.</i>
+	 *
+	 * @throws UWSException	If there is an error during the call of this method.
+	 */
+	public void parameterChanged(UWSJob job, String name, Object newValue) throws UWSException;
+
+}
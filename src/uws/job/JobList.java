@@ -16,17 +16,27 @@ package uws.job;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.servlet.ServletOutputStream;
 
@@ -44,6 +54,8 @@ import uws.service.UWS;
 import uws.service.UWSService;
 import uws.service.UWSUrl;
 import uws.service.UserIdentifier;
+import uws.service.backup.IncrementalBackupManager;
+import uws.service.backup.JobStore;
 import uws.service.backup.UWSBackupManager;
 import uws.service.log.UWSLog;
 import uws.service.log.UWSLog.LogLevel;
@@ -174,8 +186,31 @@ import uws.service.log.UWSLog.LogLevel;
  * 	ACTION=DELETE on {jobs}/{job-id}).
  * </i></p>
  *
+ * <h3>Job store</h3>
+ *
+ * <p>
+ * 	By default, all jobs stay in memory until their destruction. With a
+ * 	{@link JobStore} (see {@link #setJobStore(JobStore)}), only the active
+ * 	jobs stay in memory: a finished job is saved in the store and then
+ * 	forgotten (except in a small cache of the recently accessed jobs ; see
+ * 	{@link #setCacheSize(int)}). Stored jobs are loaded again only when
+ * 	needed, and the job filters are evaluated by the store. The destruction
+ * 	of the stored jobs is checked regularly by the store (see
+ * 	{@link #PURGE_PERIOD}), instead of by the destruction manager.
+ * </p>
+ *
+ * <p>
+ * 	A job store can also be shared by several nodes (i.e. several instances of
+ * 	the same service ; see {@link #setJobStore(JobStore, boolean)}). Then,
+ * 	ALL jobs are saved in the store, and only the jobs executed by this node
+ * 	stay in memory. Any modification of a job is immediately saved in the
+ * 	store, so that any node can serve it. The execution of the jobs must then
+ * 	be distributed among the nodes by an execution manager like
+ * 	{@link uws.job.manager.ClusterExecutionManager}.
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (10/2017)
+ * @version 4.5 (10/2026)
  *
  * @see UWSJob
  */
@@ -195,10 +230,29 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	/** <b>[Required]</b> List of jobs per owner. */
 	protected final Map<JobOwner,Map<String,UWSJob>> ownerJobs;
 
+	/** <b>[Required]</b> Secondary indexes (by phase and creation time) of
+	 * all jobs.
+	 * @since 4.5 */
+	protected final JobListIndex index;
+
+	/** <b>[Required]</b> Secondary indexes (by phase and creation time) of the
+	 * jobs of each owner.
+	 * @since 4.5 */
+	protected final Map<JobOwner,JobListIndex> ownerIndexes;
+
+	/** Objects notified of the jobs added to or removed from this list.
+	 * @since 4.5 */
+	private final CopyOnWriteArrayList<JobListObserver> observers = new CopyOnWriteArrayList<JobListObserver>();
+
 	/** The destruction manager to use to take into account the destructionTime
 	 * field of contained jobs. */
 	private DestructionManager destructionManager = null;
 
+	/** Jobs whose the destruction scheduling has been deferred.
+	 * <i>NULL if the destruction scheduling is not deferred.</i>
+	 * @since 4.5 */
+	private volatile ConcurrentLinkedQueue<UWSJob> deferredDestructions = null;
+
 	/** Indicate how this job list behaves when a job destruction is asked.
 	 * <p>
 	 * 	By default, a job is always destroyed (i.e. when the destruction is
@@ -214,6 +268,51 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	/** <b>[Optional]</b> Useful only to get the URL of this job list. */
 	private UWS uws = null;
 
+	/** Default maximum number of stored jobs kept in memory after an access.
+	 * @since 4.5 */
+	public final static int DEFAULT_CACHE_SIZE = 1000;
+
+	/** Time (in milliseconds) between two destructions of the stored jobs
+	 * whose the destruction time is reached: 1 minute.
+	 * @since 4.5 */
+	public final static long PURGE_PERIOD = 60000;
+
+	/** Number of job keys read at once from the job store while iterating
+	 * on the stored jobs.
+	 * @since 4.5 */
+	protected final static int STORE_PAGE_SIZE = 500;
+
+	/** <b>[Optional]</b> Store of the finished jobs.
+	 * <i>If NULL, all jobs stay in memory.</i>
+	 * @since 4.5 */
+	private transient volatile JobStore jobStore = null;
+
+	/** Indicate whether the job store is shared with other nodes.
+	 * <i>If <code>true</code>, all jobs are stored and only the jobs executed
+	 * by this node stay in memory.</i>
+	 * @since 4.5 */
+	private transient volatile boolean sharedStore = false;
+
+	/** Jobs released by this node (see {@link #releaseJob(UWSJob)}), whose the
+	 * modifications must not be saved any more in the shared job store.
+	 * <i>NULL if no job has been released.</i>
+	 * @since 4.5 */
+	private transient Set<UWSJob> releasedJobs = null;
+
+	/** Maximum number of stored jobs kept in {@link #jobCache}.
+	 * @since 4.5 */
+	private volatile int cacheSize = DEFAULT_CACHE_SIZE;
+
+	/** Stored jobs recently accessed, by access order (LRU).
+	 * <i>NULL if there is no job store.</i>
+	 * @since 4.5 */
+	private transient Map<String,UWSJob> jobCache = null;
+
+	/** Timer destroying the stored jobs whose the destruction time is reached.
+	 * <i>NULL if there is no job store.</i>
+	 * @since 4.5 */
+	private transient Timer purgeTimer = null;
+
 	/* ************ */
 	/* CONSTRUCTORS */
 	/* ************ */
@@ -288,6 +387,8 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		name = jobListName;
 		jobsList = new ConcurrentHashMap<String,UWSJob>();
 		ownerJobs = new ConcurrentHashMap<JobOwner,Map<String,UWSJob>>();
+		index = new JobListIndex();
+		ownerIndexes = new ConcurrentHashMap<JobOwner,JobListIndex>();
 
 		this.executionManager = executionManager;
 
@@ -392,12 +493,222 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		DestructionManager oldManager = destructionManager;
 		destructionManager = newManager;
 
-		for(UWSJob job : this){
+		for(UWSJob job : jobsList.values()){
 			oldManager.remove(job);
 			destructionManager.update(job);
 		}
 	}
 
+	/**
+	 * Defer the destruction scheduling of all the jobs added from now in this
+	 * jobs list, until {@link #resumeDestructionScheduling()} is called.
+	 *
+	 * <p>
+	 * 	This is useful when a lot of jobs are added at once (e.g. while
+	 * 	restoring a UWS): the destruction manager is then updated only once
+	 * 	per job at the end, instead of being refreshed at each addition.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	If the destruction scheduling is already deferred, nothing is done.
+	 * </i></p>
+	 *
+	 * @see #resumeDestructionScheduling()
+	 *
+	 * @since 4.5
+	 */
+	public final synchronized void deferDestructionScheduling(){
+		if (deferredDestructions == null)
+			deferredDestructions = new ConcurrentLinkedQueue<UWSJob>();
+	}
+
+	/**
+	 * Give to the destruction manager all the jobs whose the destruction
+	 * scheduling has been deferred, and stop deferring it.
+	 *
+	 * <p><i>Note:
+	 * 	Jobs removed from this jobs list in the meantime are ignored.
+	 * </i></p>
+	 *
+	 * @see #deferDestructionScheduling()
+	 *
+	 * @since 4.5
+	 */
+	public final void resumeDestructionScheduling(){
+		ConcurrentLinkedQueue<UWSJob> deferred;
+		synchronized(this){
+			deferred = deferredDestructions;
+			deferredDestructions = null;
+		}
+		if (deferred != null){
+			for(UWSJob job : deferred)
+				updateDestruction(job);
+		}
+	}
+
+	/**
+	 * Gets the store of the finished jobs of this jobs list.
+	 *
+	 * @return	The job store,
+	 *        	or <i>null</i> if all jobs stay in memory.
+	 *
+	 * @since 4.5
+	 */
+	public final JobStore getJobStore(){
+		return jobStore;
+	}
+
+	/**
+	 * Sets the store in which the finished jobs of this jobs list must be
+	 * saved, instead of being kept in memory.
+	 *
+	 * <p>
+	 * 	All the finished jobs currently in memory are immediately moved into
+	 * 	the given store. Then, the store is regularly asked for the jobs whose
+	 * 	the destruction time is reached (see {@link #PURGE_PERIOD}).
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	Jobs saved in the former store (if any) are not moved back in memory.
+	 * 	This store is not closed either.
+	 * </i></p>
+	 *
+	 * @param store	The job store to use.
+	 *             	<i>If NULL, all jobs will stay in memory from now.</i>
+	 *
+	 * @since 4.5
+	 */
+	public final void setJobStore(final JobStore store){
+		setJobStore(store, false);
+	}
+
+	/**
+	 * Sets the store in which the jobs of this jobs list must be saved,
+	 * instead of being kept in memory.
+	 *
+	 * <p>
+	 * 	If the store is not shared, this function behaves exactly like
+	 * 	{@link #setJobStore(JobStore)}.
+	 * </p>
+	 *
+	 * <p>
+	 * 	Otherwise, the store is supposed to be shared with other nodes serving
+	 * 	the same jobs list. Then, ALL jobs (and not only the finished ones) are
+	 * 	saved in the store, and only the jobs executed by this node stay in
+	 * 	memory. No cache is used, any modification of a job is immediately
+	 * 	saved in the store, and lists of jobs are entirely read from the store.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	In a shared job store, the job executions must be shared as well by an
+	 * 	execution manager like {@link uws.job.manager.ClusterExecutionManager}.
+	 * </i></p>
+	 *
+	 * @param store		The job store to use.
+	 *             		<i>If NULL, all jobs will stay in memory from now.</i>
+	 * @param shared	<i>true</i> if the given store is shared with other
+	 *              	nodes,
+	 *              	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final synchronized void setJobStore(final JobStore store, final boolean shared){
+		// Stop using the former store:
+		if (purgeTimer != null){
+			purgeTimer.cancel();
+			purgeTimer = null;
+		}
+		jobCache = null;
+		jobStore = store;
+		sharedStore = (store != null && shared);
+
+		if (store != null){
+			jobCache = Collections.synchronizedMap(new LinkedHashMap<String,UWSJob>(16, 0.75f, true){
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String,UWSJob> eldest){
+					return size() > cacheSize;
+				}
+			});
+
+			// Move all the finished jobs in the store (all jobs not running, if shared):
+			for(UWSJob job : new ArrayList<UWSJob>(jobsList.values())){
+				if (job.isFinished() || (sharedStore && !job.isRunning()))
+					evictJob(job);
+				else if (sharedStore){
+					try{
+						store.save(job);
+					}catch(UWSException ue){
+						getLogger().logJob(LogLevel.ERROR, job, "STORE", "Impossible to save the job \"" + job.getJobId() + "\" in the shared job store!", ue);
+					}
+				}
+			}
+
+			// Destroy regularly the expired stored jobs:
+			purgeTimer = new Timer("UWS-JobStore-Purge-" + name, true);
+			purgeTimer.schedule(new TimerTask(){
+				@Override
+				public void run(){
+					purgeStoredJobs();
+				}
+			}, PURGE_PERIOD, PURGE_PERIOD);
+		}
+	}
+
+	/**
+	 * Tell whether the job store is shared with other nodes.
+	 *
+	 * @return	<i>true</i> if all jobs are saved in a shared job store,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @see #setJobStore(JobStore, boolean)
+	 *
+	 * @since 4.5
+	 */
+	public final boolean isJobStoreShared(){
+		return sharedStore;
+	}
+
+	/**
+	 * Gets the maximum number of stored jobs kept in memory after an access.
+	 *
+	 * @return	Size of the cache of stored jobs.
+	 *
+	 * @since 4.5
+	 */
+	public final int getCacheSize(){
+		return cacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of stored jobs kept in memory after an access.
+	 *
+	 * <p><i>Note:
+	 * 	This cache is used only with a job store.
+	 * </i></p>
+	 *
+	 * @param size	Size of the cache of stored jobs.
+	 *            	<i>If negative, 0 is set (i.e. no cache).</i>
+	 *
+	 * @since 4.5
+	 */
+	public final void setCacheSize(final int size){
+		cacheSize = (size < 0) ? 0 : size;
+
+		// Forget the least recently accessed jobs, if the cache is now too big:
+		Map<String,UWSJob> cache = jobCache;
+		if (cache != null){
+			synchronized(cache){
+				Iterator<String> it = cache.keySet().iterator();
+				while(cache.size() > cacheSize && it.hasNext()){
+					it.next();
+					it.remove();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Gets the used execution manager.
 	 *
@@ -435,7 +746,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		executionManager = manager;
 
 		if (oldManager != null){
-			for(UWSJob job : this){
+			for(UWSJob job : jobsList.values()){
 				if (job.getPhase() != ExecutionPhase.PENDING && !job.isFinished()){
 					oldManager.remove(job);
 					executionManager.execute(job);
@@ -502,7 +813,10 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 *        	given ID.
 	 */
 	public final UWSJob getJob(String jobID){
-		return jobsList.get(jobID);
+		UWSJob job = jobsList.get(jobID);
+		if (job == null && jobID != null && jobStore != null)
+			job = getStoredJob(jobID, true);
+		return job;
 	}
 
 	/**
@@ -524,7 +838,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 			throw new UWSException(UWSException.PERMISSION_DENIED, UWSExceptionFactory.readPermissionDenied(user, true, getName()));
 
 		// Get the specified job:
-		UWSJob job = jobsList.get(jobID);
+		UWSJob job = getJob(jobID);
 
 		// Check the right of the specified user to see the job:
 		if (user != null && job != null && job.getOwner() != null){
@@ -562,7 +876,12 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		if (user == null)
 			return iterator();
 		else{
-			if (ownerJobs.containsKey(user))
+			if (sharedStore)
+				return new StoredJobsIterator(user, null, null, 0, null, -1);
+			else if (jobStore != null){
+				Map<String,UWSJob> jobs = ownerJobs.get(user);
+				return new ConcatIterator((jobs == null) ? null : jobs.values().iterator(), new StoredJobsIterator(user, null, null, 0, null, -1));
+			}else if (ownerJobs.containsKey(user))
 				return ownerJobs.get(user).values().iterator();
 			else
 				return new Iterator<UWSJob>(){
@@ -584,6 +903,147 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		}
 	}
 
+	/**
+	 * Gets the secondary indexes (by phase and creation time) of the jobs of
+	 * the specified user.
+	 *
+	 * <p>
+	 * 	These indexes let evaluate the most common filters on a jobs list (see
+	 * 	{@link JobListRefiner}) without reading all jobs.
+	 * </p>
+	 *
+	 * <p><b>Warning:</b>
+	 * 	The returned index must contain exactly the jobs returned by
+	 * 	{@link #getJobs(JobOwner)}. So, if this latter function is overwritten,
+	 * 	this function should be overwritten too ; returning NULL forces the
+	 * 	filtering of the jobs returned by {@link #getJobs(JobOwner)}.
+	 * </p>
+	 *
+	 * @param user 	The owner/user who asks for this operation
+	 *            	(may be <i>null</i>).
+	 *
+	 * @return	The index of the jobs of the given user (empty if this user
+	 *        	has no job),
+	 *        	the index of all jobs if <i>user</i> is <i>null</i>,
+	 *        	or <i>null</i> if no index can be used.
+	 *
+	 * @since 4.5
+	 */
+	public JobListIndex getIndex(final JobOwner user){
+		if (jobStore != null){
+			/* With a job store, the selection is a merge of the one done in
+			 * the memory index and of the one done by the store (the only
+			 * one if shared, since all jobs are then stored): */
+			final JobListIndex memoryIndex = sharedStore ? null : ((user == null) ? index : ownerIndexes.get(user));
+			return new JobListIndex(){
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Iterator<UWSJob> select(final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit){
+					List<Iterator<UWSJob>> sources = new ArrayList<Iterator<UWSJob>>(2);
+					if (memoryIndex != null)
+						sources.add(memoryIndex.select(phases, after, fromTime, fromJobId, limit));
+					sources.add(new StoredJobsIterator(user, phases, after, fromTime, fromJobId, limit));
+					return new MergeIterator(sources, limit);
+				}
+			};
+		}else if (user == null)
+			return index;
+		else{
+			JobListIndex ownerIndex = ownerIndexes.get(user);
+			return (ownerIndex == null) ? new JobListIndex() : ownerIndex;
+		}
+	}
+
+	/**
+	 * Lets notify the given object of the jobs added to or removed from this
+	 * list.
+	 *
+	 * @param observer	The object to notify.
+	 *
+	 * @return	<i>true</i> if the given object has been added,
+	 *        	<i>false</i> if NULL or already observing this list.
+	 *
+	 * @since 4.5
+	 */
+	public final boolean addObserver(final JobListObserver observer){
+		return (observer != null) && observers.addIfAbsent(observer);
+	}
+
+	/**
+	 * Stop notifying the given object of the jobs added to or removed from
+	 * this list.
+	 *
+	 * @param observer	The object to stop notifying.
+	 *
+	 * @return	<i>true</i> if the given object was observing this list,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final boolean removeObserver(final JobListObserver observer){
+		return observers.remove(observer);
+	}
+
+	/**
+	 * Gets the number of objects observing this list.
+	 *
+	 * @return	Number of {@link JobListObserver}s.
+	 *
+	 * @since 4.5
+	 */
+	public final int getNbObservers(){
+		return observers.size();
+	}
+
+	/**
+	 * Update the secondary indexes after a change of phase of the given job.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by {@link UWSJob#setPhase(ExecutionPhase, boolean)}.
+	 * </i></p>
+	 *
+	 * @param job	The job whose the phase has changed.
+	 *
+	 * @since 4.5
+	 */
+	final void updatePhaseIndex(final UWSJob job){
+		if (job == null)
+			return;
+		else if (jobsList.get(job.getJobId()) != job){
+			// Save the new phase of a stored job:
+			saveStoredJob(job);
+			return;
+		}
+		index.updatePhase(job);
+		if (job.getOwner() != null){
+			JobListIndex ownerIndex = ownerIndexes.get(job.getOwner());
+			if (ownerIndex != null)
+				ownerIndex.updatePhase(job);
+		}
+		// Propagate the new phase to the other nodes:
+		if (sharedStore)
+			saveStoredJob(job);
+	}
+
+	/**
+	 * Save the modifications of the given job in the job store, if it is a
+	 * stored job or if the store is shared.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by {@link UWSJob} when a parameter or a
+	 * 	result is modified.
+	 * </i></p>
+	 *
+	 * @param job	The modified job.
+	 *
+	 * @since 4.5
+	 */
+	final void jobUpdated(final UWSJob job){
+		if (jobStore != null && job != null)
+			saveStoredJob(job);
+	}
+
 	/**
 	 * Gets an iterator on the jobs list.
 	 *
@@ -591,7 +1051,12 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 */
 	@Override
 	public final Iterator<UWSJob> iterator(){
-		return jobsList.values().iterator();
+		if (sharedStore)
+			return new StoredJobsIterator(null, null, null, 0, null, -1);
+		else if (jobStore != null)
+			return new ConcatIterator(jobsList.values().iterator(), new StoredJobsIterator(null, null, null, 0, null, -1));
+		else
+			return jobsList.values().iterator();
 	}
 
 	/**
@@ -600,7 +1065,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 * @return	Number of jobs.
 	 */
 	public final int getNbJobs(){
-		return jobsList.size();
+		return (sharedStore ? 0 : jobsList.size()) + countStoredJobs(null);
 	}
 
 	/**
@@ -615,16 +1080,18 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		if (user == null)
 			return getNbJobs();
 		else{
-			if (ownerJobs.containsKey(user))
-				return ownerJobs.get(user).size();
-			else
-				return 0;
+			Map<String,UWSJob> jobs = sharedStore ? null : ownerJobs.get(user);
+			return ((jobs == null) ? 0 : jobs.size()) + countStoredJobs(user);
 		}
 	}
 
 	/**
 	 * Gets all users that own at least one job in this list.
 	 *
+	 * <p><i>Note:
+	 * 	With a job store, only the owners of the jobs in memory are returned.
+	 * </i></p>
+	 *
 	 * @return	An iterator on owners.
 	 */
 	public final Iterator<JobOwner> getUsers(){
@@ -634,6 +1101,10 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	/**
 	 * Gets the number of all users that have at least one job in this list.
 	 *
+	 * <p><i>Note:
+	 * 	With a job store, only the owners of the jobs in memory are counted.
+	 * </i></p>
+	 *
 	 * @return	The number of job owners.
 	 */
 	public final int getNbUsers(){
@@ -686,7 +1157,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	public synchronized String addNewJob(final UWSJob j) throws UWSException{
 		if (uws == null)
 			throw new IllegalStateException("Jobs can not be added to this job list until this job list is linked to a UWS!");
-		else if (j == null || jobsList.containsKey(j.getJobId())){
+		else if (j == null || jobsList.containsKey(j.getJobId()) || (jobStore != null && getStoredJob(j.getJobId(), false) != null)){
 			return null;
 		}else{
 			JobOwner owner = j.getOwner();
@@ -698,21 +1169,40 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 			// Set its job list:
 			j.setJobList(this);
 
+			// Share it immediately with the other nodes, if any:
+			if (sharedStore)
+				jobStore.save(j);
+
 			// Add the job to the jobs list:
 			jobsList.put(j.getJobId(), j);
+			index.add(j);
 			if (owner != null){
 				// Index also this job in function of its owner:
-				if (!ownerJobs.containsKey(owner))
+				if (!ownerJobs.containsKey(owner)){
 					ownerJobs.put(owner, new ConcurrentHashMap<String,UWSJob>());
+					ownerIndexes.put(owner, new JobListIndex());
+				}
 				ownerJobs.get(owner).put(j.getJobId(), j);
+				ownerIndexes.get(owner).add(j);
 			}
 
+			// Notify an incremental backup manager:
+			if (uws.getBackupManager() instanceof IncrementalBackupManager)
+				((IncrementalBackupManager)uws.getBackupManager()).jobAdded(this, j);
+
+			// Notify the observers of this list:
+			for(JobListObserver observer : observers)
+				observer.jobAdded(this, j);
+
 			// Save the owner jobs list:
 			if (owner != null && uws.getBackupManager() != null && j.getRestorationDate() == null)
 				uws.getBackupManager().saveOwner(j.getOwner());
 
-			// Add it to the destruction manager:
-			destructionManager.update(j);
+			// Add it to the destruction manager (or defer it):
+			if (deferredDestructions != null)
+				deferredDestructions.add(j);
+			else
+				destructionManager.update(j);
 
 			// Execute the job if asked in the additional parameters:
 			j.applyPhaseParam(null);	// Note: can not throw an exception since no user is specified (so, no permission check is done).
@@ -721,6 +1211,10 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 			if (j.getRestorationDate() == null)
 				getLogger().logJob(LogLevel.INFO, j, "CREATED", "Job \"" + j.getJobId() + "\" successfully created and added in the job list \"" + getName() + "\".", null);
 
+			// Move it immediately in the job store if already finished (or not executed by this node, if shared):
+			if (jobStore != null && (j.isFinished() || (sharedStore && !j.isRunning())))
+				evictJob(j);
+
 			return j.getJobId();
 		}
 	}
@@ -807,8 +1301,19 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 * @see DestructionManager#update(UWSJob)
 	 */
 	public final void updateDestruction(UWSJob job){
-		if (destructionManager != null && job != null && job.getJobList() != null && job.getJobList().equals(this))
-			destructionManager.update(job);
+		if (destructionManager != null && job != null && job.getJobList() != null && job.getJobList().equals(this)){
+			// The destruction of a stored job is checked by the store:
+			if (jobStore != null && jobsList.get(job.getJobId()) != job){
+				saveStoredJob(job);
+				return;
+			}else if (sharedStore)
+				saveStoredJob(job);
+			ConcurrentLinkedQueue<UWSJob> deferred = deferredDestructions;
+			if (deferred != null)
+				deferred.add(job);
+			else
+				destructionManager.update(job);
+		}
 	}
 
 	/**
@@ -825,18 +1330,41 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		// Remove the specified job:
 		UWSJob removedJob = (jobId == null) ? null : jobsList.remove(jobId);
 
+		// Remove it from the job store, if not in memory (or always, if shared):
+		if (removedJob == null && jobId != null && jobStore != null){
+			removedJob = getStoredJob(jobId, false);
+			if (removedJob != null)
+				unstoreJob(jobId);
+		}else if (removedJob != null && sharedStore)
+			unstoreJob(jobId);
+
 		if (removedJob != null){
+			index.remove(removedJob);
+
 			// Clear its owner index:
 			JobOwner owner = removedJob.getOwner();
 			if (owner != null && ownerJobs.containsKey(owner)){
 				ownerJobs.get(owner).remove(jobId);
-				if (ownerJobs.get(owner).isEmpty())
+				if (ownerIndexes.containsKey(owner))
+					ownerIndexes.get(owner).remove(removedJob);
+				if (ownerJobs.get(owner).isEmpty()){
 					ownerJobs.remove(owner);
+					ownerIndexes.remove(owner);
+				}
 			}
 
 			// Remove it from the destruction manager:
 			if (destructionManager != null)
 				destructionManager.remove(removedJob);
+
+			// Notify an incremental backup manager:
+			if (uws != null && uws.getBackupManager() instanceof IncrementalBackupManager)
+				((IncrementalBackupManager)uws.getBackupManager()).jobRemoved(this, removedJob);
+
+			// Notify the observers of this list:
+			for(JobListObserver observer : observers)
+				observer.jobRemoved(this, removedJob);
+
 			return removedJob;
 		}else
 			return null;
@@ -974,6 +1502,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 */
 	public synchronized void clear(){
 		ArrayList<String> jobIDs = new ArrayList<String>(jobsList.keySet());
+		jobIDs.addAll(getStoredJobIds(null));
 		for(String id : jobIDs)
 			destroyJob(id);
 	}
@@ -1000,7 +1529,500 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 				for(String id : jobIDs)
 					destroyJob(id);
 				ownerJobs.remove(owner);
+				ownerIndexes.remove(owner);
+			}
+			for(String id : getStoredJobIds(owner))
+				destroyJob(id);
+		}
+	}
+
+	/* ******************** */
+	/* JOB STORE MANAGEMENT */
+	/* ******************** */
+	/**
+	 * Move the given job in the job store, if any, because it is finished.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by {@link UWSJob#setEndTime(Date)}.
+	 * </i></p>
+	 *
+	 * @param job	The finished job.
+	 *
+	 * @since 4.5
+	 */
+	final void jobFinished(final UWSJob job){
+		if (jobStore != null && job != null && job.isFinished())
+			evictJob(job);
+	}
+
+	/**
+	 * Save the given job in the job store and then forget it in memory
+	 * (except in the cache of the stored jobs).
+	 *
+	 * <p>
+	 * 	Contrary to {@link #removeJob(String)}, the job is not destroyed: it is
+	 * 	still part of this jobs list (and so, no backup manager is notified).
+	 * 	If the job can not be saved, it stays in memory.
+	 * </p>
+	 *
+	 * @param job	The job to move in the job store.
+	 *
+	 * @since 4.5
+	 */
+	protected void evictJob(final UWSJob job){
+		JobStore store = jobStore;
+		if (store == null || job == null || jobsList.get(job.getJobId()) != job)
+			return;
+
+		// Save the job:
+		try{
+			store.save(job);
+		}catch(UWSException ue){
+			getLogger().logJob(LogLevel.ERROR, job, "STORE", "Impossible to save the job \"" + job.getJobId() + "\" in the job store! It stays in memory.", ue);
+			return;
+		}
+
+		// Forget it in memory:
+		jobsList.remove(job.getJobId());
+		index.remove(job);
+		JobOwner owner = job.getOwner();
+		if (owner != null && ownerJobs.containsKey(owner)){
+			ownerJobs.get(owner).remove(job.getJobId());
+			if (ownerIndexes.containsKey(owner))
+				ownerIndexes.get(owner).remove(job);
+			if (ownerJobs.get(owner).isEmpty()){
+				ownerJobs.remove(owner);
+				ownerIndexes.remove(owner);
+			}
+		}
+		if (destructionManager != null)
+			destructionManager.remove(job);
+
+		// ...but keep it in the cache, since it may be fetched soon (except if modifiable by other nodes):
+		Map<String,UWSJob> cache = jobCache;
+		if (cache != null && cacheSize > 0 && !sharedStore)
+			cache.put(job.getJobId(), job);
+	}
+
+	/**
+	 * Get the specified job from the cache of the stored jobs, or else from
+	 * the job store.
+	 *
+	 * @param jobId		ID of the job to get.
+	 * @param useCache	<i>true</i> to put the loaded job in the cache,
+	 *                	<i>false</i> otherwise (e.g. while iterating on all
+	 *                	jobs).
+	 *
+	 * @return	The stored job,
+	 *        	or <i>null</i> if unknown or if there is no job store.
+	 *
+	 * @since 4.5
+	 */
+	protected final UWSJob getStoredJob(final String jobId, final boolean useCache){
+		JobStore store = jobStore;
+		Map<String,UWSJob> cache = jobCache;
+		if (store == null || jobId == null)
+			return null;
+
+		// If shared, the jobs executed by this node are in memory (and never in the cache):
+		if (sharedStore){
+			cache = null;
+			UWSJob job = jobsList.get(jobId);
+			if (job != null)
+				return job;
+		}
+
+		UWSJob job = (cache == null) ? null : cache.get(jobId);
+		if (job == null){
+			try{
+				job = store.load(this, jobId);
+			}catch(UWSException ue){
+				getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to load the job \"" + jobId + "\" from the job store!", ue);
+				return null;
+			}
+			if (job != null){
+				job.setJobList(this);
+				if (useCache && cache != null && cacheSize > 0)
+					cache.put(jobId, job);
+			}
+		}
+		return job;
+	}
+
+	/**
+	 * Save the modifications of the given job, if it is a stored job of this
+	 * jobs list (or any job of this jobs list, if the store is shared).
+	 *
+	 * <p><i>Note:
+	 * 	A job removed from the store in the meantime (e.g. destroyed) is not
+	 * 	stored again. The modifications of a job released by this node are
+	 * 	ignored.
+	 * </i></p>
+	 *
+	 * @param job	The modified job.
+	 *
+	 * @since 4.5
+	 */
+	private void saveStoredJob(final UWSJob job){
+		JobStore store = jobStore;
+		Set<UWSJob> released = releasedJobs;
+		if (store != null && job.getJobList() == this && (sharedStore || jobsList.get(job.getJobId()) != job) && (released == null || !released.contains(job))){
+			try{
+				store.update(job);
+			}catch(UWSException ue){
+				getLogger().logJob(LogLevel.ERROR, job, "STORE", "Impossible to save the modifications of the job \"" + job.getJobId() + "\" in the job store!", ue);
+			}
+		}
+	}
+
+	/**
+	 * Load in memory the specified job of the shared job store, so that it can
+	 * be executed by this node.
+	 *
+	 * <p>
+	 * 	The job stays in memory until it is finished or released (see
+	 * 	{@link #releaseJob(UWSJob)}). In the meantime, any request about this
+	 * 	job on this node is answered with this instance, while its
+	 * 	modifications are still saved in the shared store.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by an execution manager when it has claimed
+	 * 	the execution of the given job (see
+	 * 	{@link uws.job.manager.ClusterExecutionManager}).
+	 * </i></p>
+	 *
+	 * @param jobId	ID of the job to load.
+	 *
+	 * @return	The job in memory,
+	 *        	or <i>null</i> if unknown or if the job store is not shared.
+	 *
+	 * @since 4.5
+	 */
+	public final synchronized UWSJob adoptJob(final String jobId){
+		if (!sharedStore || jobId == null)
+			return null;
+
+		// Nothing to do if already in memory:
+		UWSJob job = jobsList.get(jobId);
+		if (job != null)
+			return job;
+
+		// Load the stored job:
+		job = getStoredJob(jobId, false);
+		if (job == null)
+			return null;
+
+		// Add it in memory:
+		jobsList.put(jobId, job);
+		index.add(job);
+		JobOwner owner = job.getOwner();
+		if (owner != null){
+			if (!ownerJobs.containsKey(owner)){
+				ownerJobs.put(owner, new ConcurrentHashMap<String,UWSJob>());
+				ownerIndexes.put(owner, new JobListIndex());
+			}
+			ownerJobs.get(owner).put(jobId, job);
+			ownerIndexes.get(owner).add(job);
+		}
+		if (destructionManager != null)
+			destructionManager.update(job);
+		return job;
+	}
+
+	/**
+	 * Forget in memory the given job of the shared job store, because it must
+	 * not be executed by this node any more (e.g. it has been destroyed or
+	 * claimed by another node).
+	 *
+	 * <p>
+	 * 	The execution of the job is stopped. But, contrary to an abortion, the
+	 * 	job is neither saved nor removed from the store: all the subsequent
+	 * 	modifications of the given instance are ignored.
+	 * </p>
+	 *
+	 * @param job	The job to forget.
+	 *
+	 * @since 4.5
+	 */
+	public final void releaseJob(final UWSJob job){
+		if (job == null)
+			return;
+
+		synchronized(this){
+			if (!sharedStore || jobsList.get(job.getJobId()) != job)
+				return;
+
+			// Ignore its next modifications:
+			if (releasedJobs == null)
+				releasedJobs = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<UWSJob,Boolean>()));
+			else{
+				// (and forget the former released jobs that are now stopped)
+				synchronized(releasedJobs){
+					Iterator<UWSJob> it = releasedJobs.iterator();
+					while(it.hasNext()){
+						if (it.next().isStopped())
+							it.remove();
+					}
+				}
 			}
+			releasedJobs.add(job);
+
+			// Forget it in memory:
+			jobsList.remove(job.getJobId());
+			index.remove(job);
+			JobOwner owner = job.getOwner();
+			if (owner != null && ownerJobs.containsKey(owner)){
+				ownerJobs.get(owner).remove(job.getJobId());
+				if (ownerIndexes.containsKey(owner))
+					ownerIndexes.get(owner).remove(job);
+				if (ownerJobs.get(owner).isEmpty()){
+					ownerJobs.remove(owner);
+					ownerIndexes.remove(owner);
+				}
+			}
+			if (destructionManager != null)
+				destructionManager.remove(job);
+		}
+
+		// Stop its execution:
+		job.stop();
+	}
+
+	/**
+	 * Tell whether the given job has been released by this node.
+	 *
+	 * @param job	A job.
+	 *
+	 * @return	<i>true</i> if the given instance has been released,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @see #releaseJob(UWSJob)
+	 *
+	 * @since 4.5
+	 */
+	public final boolean isReleased(final UWSJob job){
+		Set<UWSJob> released = releasedJobs;
+		return (job != null && released != null && released.contains(job));
+	}
+
+	/**
+	 * Remove the specified job from the job store and from its cache.
+	 *
+	 * @param jobId	ID of the job to forget.
+	 *
+	 * @since 4.5
+	 */
+	private void unstoreJob(final String jobId){
+		JobStore store = jobStore;
+		Map<String,UWSJob> cache = jobCache;
+		if (cache != null)
+			cache.remove(jobId);
+		if (store != null){
+			try{
+				store.remove(this, jobId);
+			}catch(UWSException ue){
+				getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to remove the job \"" + jobId + "\" from the job store!", ue);
+			}
+		}
+	}
+
+	/**
+	 * Count the stored jobs of the given user.
+	 *
+	 * @param owner	The owner of the jobs to count.
+	 *             	<i>If NULL, all stored jobs are counted.</i>
+	 *
+	 * @return	Number of stored jobs (0 if there is no job store).
+	 *
+	 * @since 4.5
+	 */
+	private int countStoredJobs(final JobOwner owner){
+		JobStore store = jobStore;
+		if (store == null)
+			return 0;
+		try{
+			return store.count(this, owner);
+		}catch(UWSException ue){
+			getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to count the stored jobs of the jobs list \"" + name + "\"!", ue);
+			return 0;
+		}
+	}
+
+	/**
+	 * Get the IDs of all the stored jobs of the given user.
+	 *
+	 * @param owner	The owner of the jobs to list.
+	 *             	<i>If NULL, all stored jobs are listed.</i>
+	 *
+	 * @return	IDs of the stored jobs (empty if there is no job store).
+	 *
+	 * @since 4.5
+	 */
+	private List<String> getStoredJobIds(final JobOwner owner){
+		List<String> ids = new ArrayList<String>();
+		JobStore store = jobStore;
+		if (store != null){
+			try{
+				for(JobStore.Key key : store.select(this, owner, null, null, 0, null, -1))
+					ids.add(key.jobId);
+			}catch(UWSException ue){
+				getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to list the stored jobs of the jobs list \"" + name + "\"!", ue);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Destroy all the stored jobs whose the destruction time is reached.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called regularly (see {@link #PURGE_PERIOD}) while a
+	 * 	job store is set.
+	 * </i></p>
+	 *
+	 * @see #destroyJob(String)
+	 *
+	 * @since 4.5
+	 */
+	protected void purgeStoredJobs(){
+		JobStore store = jobStore;
+		if (store == null)
+			return;
+		try{
+			for(String id : store.selectExpired(this, new Date()))
+				destroyJob(id);
+		}catch(Exception ex){
+			getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to destroy the expired stored jobs of the jobs list \"" + name + "\"!", ex);
+		}
+	}
+
+	/**
+	 * Iterator on the stored jobs, loaded page by page.
+	 *
+	 * <p>
+	 * 	Only the keys of the jobs are read by pages of {@link #STORE_PAGE_SIZE}
+	 * 	from the job store. Jobs are loaded one by one only when returned.
+	 * </p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private final class StoredJobsIterator implements Iterator<UWSJob> {
+		private final JobOwner owner;
+		private final Collection<ExecutionPhase> phases;
+		private final Date after;
+		/** Key of the last read job. */
+		private long lastTime;
+		private String lastId;
+		/** Number of jobs still to return. <i>Negative if no limit.</i> */
+		private int remaining;
+		/** Keys of the current page. */
+		private Iterator<JobStore.Key> page = null;
+		/** Tells whether the last page has been read. */
+		private boolean lastPage = false;
+		/** Next job to return. */
+		private UWSJob next;
+
+		public StoredJobsIterator(final JobOwner owner, final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit){
+			this.owner = owner;
+			this.phases = phases;
+			this.after = after;
+			this.lastTime = fromTime;
+			this.lastId = fromJobId;
+			this.remaining = limit;
+			next = fetch();
+		}
+
+		/**
+		 * Load the next stored job.
+		 *
+		 * @return	The next job, or NULL if no more.
+		 */
+		private UWSJob fetch(){
+			while(true){
+				// Read the next page of keys, if needed:
+				if (page == null || !page.hasNext()){
+					JobStore store = jobStore;
+					int size = (remaining < 0 || remaining > STORE_PAGE_SIZE) ? STORE_PAGE_SIZE : remaining;
+					if (lastPage || size == 0 || store == null)
+						return null;
+					List<JobStore.Key> keys;
+					try{
+						keys = store.select(JobList.this, owner, phases, after, lastTime, lastId, size);
+					}catch(UWSException ue){
+						getLogger().logUWS(LogLevel.ERROR, null, "STORE", "Impossible to list the stored jobs of the jobs list \"" + name + "\"!", ue);
+						return null;
+					}
+					lastPage = (keys.size() < size);
+					page = keys.iterator();
+					if (!page.hasNext())
+						return null;
+				}
+
+				// Load the next job (it may have been destroyed in the meantime):
+				JobStore.Key key = page.next();
+				lastTime = key.creationTime;
+				lastId = key.jobId;
+				UWSJob job = getStoredJob(key.jobId, false);
+				if (job != null){
+					if (remaining > 0)
+						remaining--;
+					return job;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext(){
+			return next != null;
+		}
+
+		@Override
+		public UWSJob next(){
+			if (next == null)
+				throw new NoSuchElementException("No more stored jobs!");
+			UWSJob job = next;
+			next = fetch();
+			return job;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException("No remove operation possible on this iterator of stored jobs!");
+		}
+	}
+
+	/**
+	 * Iterator on the jobs in memory and then on the stored jobs.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private final static class ConcatIterator implements Iterator<UWSJob> {
+		private final Iterator<UWSJob> first;
+		private final Iterator<UWSJob> second;
+
+		public ConcatIterator(final Iterator<UWSJob> first, final Iterator<UWSJob> second){
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean hasNext(){
+			return (first != null && first.hasNext()) || second.hasNext();
+		}
+
+		@Override
+		public UWSJob next(){
+			return (first != null && first.hasNext()) ? first.next() : second.next();
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException("No remove operation possible on this iterator of jobs!");
 		}
 	}
 
@@ -1024,7 +2046,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 	 * @throws Exception		If there is any other error during the
 	 *                  		serialization.
 	 *
-	 * @see UWSSerializer#getJobList(JobList, JobOwner, JobListRefiner, boolean)
+	 * @see UWSSerializer#writeJobList(java.io.OutputStream, JobList, JobOwner, JobListRefiner, boolean)
 	 *
 	 * @since 4.3
 	 */
@@ -1035,12 +2057,8 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 		if (owner != null && !owner.hasReadPermission(this))
 			throw new UWSException(UWSException.PERMISSION_DENIED, UWSExceptionFactory.writePermissionDenied(owner, true, getName()));
 
-		String serialization = serializer.getJobList(this, owner, listRefiner, true);
-		if (serialization != null){
-			output.print(serialization);
-			output.flush();
-		}else
-			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, "Incorrect serialization value (=NULL) ! => impossible to serialize " + toString() + ".");
+		// Write progressively the serialization (job after job) in the stream:
+		serializer.writeJobList(output, this, owner, listRefiner, true);
 	}
 
 	/* ***************** */
@@ -1056,7 +2074,7 @@ public class JobList extends SerializableUWSObject implements Iterable<UWSJob> {
 
 	@Override
 	public String toString(){
-		return "JOB_LIST {name: \"" + getName() + "\"; nbJobs: " + jobsList.size() + "}";
+		return "JOB_LIST {name: \"" + getName() + "\"; nbJobs: " + getNbJobs() + "}";
 	}
 
 }
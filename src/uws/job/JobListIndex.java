@@ -0,0 +1,409 @@
+package uws.job;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes of the jobs of a {@link JobList} (or of the jobs of one
+ * owner in a {@link JobList}).
+ *
+ * <p>
+ * 	All indexed jobs are sorted by descending creation time in skip lists:
+ * 	one for all jobs and one for each execution phase. Thus, the most common
+ * 	filters on a jobs list (PHASE, AFTER and LAST ; see
+ * 	{@link uws.job.serializer.filter.JobListRefiner}) can be evaluated
+ * 	without reading all the jobs of the list: see
+ * 	{@link #select(Collection, Date, int)}. They can also be read page by
+ * 	page: see {@link #select(Collection, Date, long, String, int)}.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	This index is maintained by {@link JobList} (when a job is added or
+ * 	removed) and by {@link UWSJob#setPhase(ExecutionPhase, boolean)} (when
+ * 	the phase of a job changes). All these operations are thread-safe.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class JobListIndex implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** All indexed jobs sorted by descending creation time. */
+	protected final ConcurrentSkipListMap<Key,UWSJob> all = new ConcurrentSkipListMap<Key,UWSJob>();
+
+	/** Indexed jobs of each execution phase, sorted by descending creation time. */
+	protected final Map<ExecutionPhase,ConcurrentSkipListMap<Key,UWSJob>> byPhase;
+
+	/** Key and phase under which each job (identified by its ID) is indexed. */
+	protected final Map<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+
+	/**
+	 * Build an empty index.
+	 */
+	public JobListIndex(){
+		byPhase = new EnumMap<ExecutionPhase,ConcurrentSkipListMap<Key,UWSJob>>(ExecutionPhase.class);
+		for(ExecutionPhase p : ExecutionPhase.values())
+			byPhase.put(p, new ConcurrentSkipListMap<Key,UWSJob>());
+	}
+
+	/**
+	 * Get the number of indexed jobs.
+	 *
+	 * @return	Number of jobs.
+	 */
+	public final int size(){
+		return entries.size();
+	}
+
+	/**
+	 * Get the number of indexed jobs having the given execution phase.
+	 *
+	 * @param phase	An execution phase.
+	 *
+	 * @return	Number of jobs in this phase.
+	 */
+	public final int size(final ExecutionPhase phase){
+		return (phase == null) ? 0 : byPhase.get(phase).size();
+	}
+
+	/**
+	 * Index the given job.
+	 *
+	 * @param job	The job to index.
+	 */
+	synchronized void add(final UWSJob job){
+		if (job == null || entries.containsKey(job.getJobId()))
+			return;
+		Key key = new Key(job);
+		ExecutionPhase phase = job.getPhase();
+		entries.put(job.getJobId(), new Entry(key, phase));
+		all.put(key, job);
+		byPhase.get(phase).put(key, job);
+	}
+
+	/**
+	 * Remove the given job from this index.
+	 *
+	 * @param job	The job to forget.
+	 */
+	synchronized void remove(final UWSJob job){
+		if (job == null)
+			return;
+		Entry entry = entries.remove(job.getJobId());
+		if (entry != null){
+			all.remove(entry.key);
+			byPhase.get(entry.phase).remove(entry.key);
+		}
+	}
+
+	/**
+	 * Move the given job in the index of its current phase.
+	 *
+	 * @param job	The job whose the phase has changed.
+	 */
+	synchronized void updatePhase(final UWSJob job){
+		if (job == null)
+			return;
+		Entry entry = entries.get(job.getJobId());
+		ExecutionPhase newPhase = job.getPhase();
+		if (entry != null && entry.phase != newPhase){
+			byPhase.get(entry.phase).remove(entry.key);
+			byPhase.get(newPhase).put(entry.key, job);
+			entries.put(job.getJobId(), new Entry(entry.key, newPhase));
+		}
+	}
+
+	/**
+	 * Select the indexed jobs having one of the given phases, created after
+	 * the given date. They are returned by descending creation time.
+	 *
+	 * <p><i>Note:
+	 * 	The returned iterator is weakly consistent: it never fails but may
+	 * 	not reflect the modifications done after its creation.
+	 * </i></p>
+	 *
+	 * @param phases	The phases of the jobs to select.
+	 *              	<i>If NULL, jobs of all phases are selected.</i>
+	 * @param after		The date after which the jobs to select must have been
+	 *             		created.
+	 *             		<i>If NULL, no constraint on the creation date.</i>
+	 * @param limit		Maximum number of jobs to select.
+	 *             		<i>If negative, no limit.</i>
+	 *
+	 * @return	An iterator on the selected jobs.
+	 */
+	public Iterator<UWSJob> select(final Collection<ExecutionPhase> phases, final Date after, final int limit){
+		return select(phases, after, 0, null, limit);
+	}
+
+	/**
+	 * Select the indexed jobs having one of the given phases, created after
+	 * the given date and coming strictly after the given job in this index.
+	 * They are returned by descending creation time (and then by ascending
+	 * job ID).
+	 *
+	 * <p>
+	 * 	This function lets paginate a jobs list: the job given as
+	 * 	<code>(fromTime, fromJobId)</code> is the last one of the previous page.
+	 * 	It does not need to still be in this index. Only the jobs of the
+	 * 	requested page are read.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	The returned iterator is weakly consistent: it never fails but may
+	 * 	not reflect the modifications done after its creation.
+	 * </i></p>
+	 *
+	 * @param phases	The phases of the jobs to select.
+	 *              	<i>If NULL, jobs of all phases are selected.</i>
+	 * @param after		The date after which the jobs to select must have been
+	 *             		created.
+	 *             		<i>If NULL, no constraint on the creation date.</i>
+	 * @param fromTime	Creation time (in milliseconds) of the job after which
+	 *                	jobs must be selected.
+	 *                	<i>Ignored if fromJobId is NULL.</i>
+	 * @param fromJobId	ID of the job after which jobs must be selected.
+	 *                 	<i>If NULL, jobs are selected from the most recent one.</i>
+	 * @param limit		Maximum number of jobs to select.
+	 *             		<i>If negative, no limit.</i>
+	 *
+	 * @return	An iterator on the selected jobs.
+	 */
+	public Iterator<UWSJob> select(final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit){
+		Key from = (fromJobId == null) ? null : new Key(fromTime, fromJobId);
+		List<Iterator<UWSJob>> sources = new ArrayList<Iterator<UWSJob>>();
+		if (phases == null)
+			sources.add(range(all, from, after));
+		else{
+			for(ExecutionPhase p : new HashSet<ExecutionPhase>(phases)){
+				if (p != null && !byPhase.get(p).isEmpty())
+					sources.add(range(byPhase.get(p), from, after));
+			}
+		}
+		return new MergeIterator(sources, limit);
+	}
+
+	/**
+	 * Get an iterator on the jobs of the given skip list coming after the
+	 * given key and created after the given date.
+	 *
+	 * @param map	A skip list of jobs.
+	 * @param from	The key after which jobs must be read.
+	 *            	<i>MAY be NULL</i>
+	 * @param after	The date after which jobs must have been created.
+	 *             	<i>MAY be NULL</i>
+	 *
+	 * @return	An iterator on the corresponding jobs.
+	 */
+	private static Iterator<UWSJob> range(final ConcurrentSkipListMap<Key,UWSJob> map, final Key from, final Date after){
+		/* note: jobs are sorted by descending creation time, so the jobs
+		 *       created strictly after the given date are all before the key
+		 *       (date, "") which is the smallest one of this date: */
+		Key to = (after == null) ? null : new Key(after.getTime(), "");
+		ConcurrentNavigableMap<Key,UWSJob> range;
+		if (from == null)
+			range = (to == null) ? map : map.headMap(to, false);
+		else if (to == null)
+			range = map.tailMap(from, false);
+		else if (from.compareTo(to) < 0)
+			range = map.subMap(from, false, to, false);
+		else
+			return new ArrayList<UWSJob>(0).iterator();
+		return range.values().iterator();
+	}
+
+	/**
+	 * Key of a job in an index: its creation time (descending) and then its ID.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	protected final static class Key implements Comparable<Key>, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** Creation time of the job (in milliseconds). */
+		public final long time;
+		/** ID of the job. */
+		public final String jobId;
+
+		public Key(final UWSJob job){
+			this((job.getCreationTime() == null) ? 0 : job.getCreationTime().getTime(), job.getJobId());
+		}
+
+		public Key(final long time, final String jobId){
+			this.time = time;
+			this.jobId = (jobId == null) ? "" : jobId;
+		}
+
+		@Override
+		public int compareTo(final Key k){
+			if (time != k.time)
+				return (time > k.time) ? -1 : 1;
+			else
+				return jobId.compareTo(k.jobId);
+		}
+
+		@Override
+		public boolean equals(final Object obj){
+			return (obj instanceof Key) && compareTo((Key)obj) == 0;
+		}
+
+		@Override
+		public int hashCode(){
+			return jobId.hashCode() ^ (int)(time ^ (time >>> 32));
+		}
+	}
+
+	/**
+	 * Key and indexed phase of a job.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	protected final static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** Key of the job in the skip lists. */
+		public final Key key;
+		/** Phase under which the job is indexed. */
+		public final ExecutionPhase phase;
+
+		public Entry(final Key key, final ExecutionPhase phase){
+			this.key = key;
+			this.phase = phase;
+		}
+	}
+
+	/**
+	 * Merge several iterators on jobs sorted by descending creation time into
+	 * one, still sorted by descending creation time, and stop after a given
+	 * number of jobs.
+	 *
+	 * <p><i>Note:
+	 * 	A job whose the phase changes while iterating may be found in several
+	 * 	sources ; it is returned only once.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	protected final static class MergeIterator implements Iterator<UWSJob> {
+
+		/** Iterators to merge. */
+		private final List<Iterator<UWSJob>> sources;
+		/** Next job of each source. <i>NULL if the source is exhausted.</i> */
+		private final UWSJob[] heads;
+		/** Keys of the next job of each source. */
+		private final Key[] keys;
+		/** IDs of the returned jobs. <i>NULL if only one source.</i> */
+		private final Set<String> returned;
+		/** Maximum number of jobs to return. <i>Negative if no limit.</i> */
+		private final int limit;
+		/** Number of returned jobs. */
+		private int count = 0;
+		/** Next job to return. */
+		private UWSJob next = null;
+
+		public MergeIterator(final List<Iterator<UWSJob>> sources, final int limit){
+			this.sources = sources;
+			this.limit = limit;
+			heads = new UWSJob[sources.size()];
+			keys = new Key[sources.size()];
+			returned = (sources.size() > 1) ? new HashSet<String>() : null;
+			for(int i = 0; i < heads.length; i++)
+				advance(i);
+			next = fetch();
+		}
+
+		/**
+		 * Read the next job of the specified source.
+		 *
+		 * @param i	Index of the source to read.
+		 */
+		private void advance(final int i){
+			Iterator<UWSJob> it = sources.get(i);
+			heads[i] = it.hasNext() ? it.next() : null;
+			keys[i] = (heads[i] == null) ? null : new Key(heads[i]);
+		}
+
+		/**
+		 * Get the most recent job among the heads of all sources.
+		 *
+		 * @return	The next job to return, or NULL if no more.
+		 */
+		private UWSJob fetch(){
+			if (limit >= 0 && count >= limit)
+				return null;
+			while(true){
+				int best = -1;
+				for(int i = 0; i < heads.length; i++){
+					if (heads[i] != null && (best < 0 || keys[i].compareTo(keys[best]) < 0))
+						best = i;
+				}
+				if (best < 0)
+					return null;
+				UWSJob job = heads[best];
+				advance(best);
+				if (returned == null || returned.add(job.getJobId()))
+					return job;
+			}
+		}
+
+		@Override
+		public boolean hasNext(){
+			return next != null;
+		}
+
+		@Override
+		public UWSJob next(){
+			if (next == null)
+				throw new NoSuchElementException("No more jobs in this index selection!");
+			UWSJob job = next;
+			count++;
+			next = fetch();
+			return job;
+		}
+
+		@Override
+		public void remove(){
+			throw new UnsupportedOperationException("No remove operation possible on this iterator of indexed jobs!");
+		}
+	}
+
+}
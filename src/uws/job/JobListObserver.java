@@ -0,0 +1,57 @@
+package uws.job;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.Serializable;
+
+/**
+ * Object which wants to be notified of the jobs added to (or removed from)
+ * a {@link JobList}.
+ *
+ * <p><i>Note:
+ * 	These functions are called by the thread modifying the jobs list, while
+ * 	this list is locked. So, they must return as fast as possible.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see JobList#addObserver(JobListObserver)
+ */
+public interface JobListObserver extends Serializable {
+
+	/**
+	 * Used when a job has been added to the observed jobs list.
+	 *
+	 * @param jobList	The observed jobs list.
+	 * @param job		The added job.
+	 */
+	public void jobAdded(JobList jobList, UWSJob job);
+
+	/**
+	 * Used when a job has been removed from the observed jobs list.
+	 *
+	 * @param jobList	The observed jobs list.
+	 * @param job		The removed job.
+	 */
+	public void jobRemoved(JobList jobList, UWSJob job);
+
+}
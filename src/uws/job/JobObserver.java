@@ -16,7 +16,7 @@ package uws.job;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
  */
 
 import java.io.Serializable;
@@ -27,8 +27,13 @@ import uws.UWSException;
  * Any object which wants to follow the progression of any instance of {@link UWSJob}.
  * It will be notified at each execution phase transition of the observer job.
  * 
+ * <p><i>Note:
+ * 	An observer is notified by the thread changing the phase of the job. A slow observer should rather be notified
+ * 	asynchronously, by adding to the jobs its subscription to a {@link JobEventBus}.
+ * </i></p>
+ * 
  * @author Gr&eacute;gory Mantelet (CDS)
- * @version 05/2012
+ * @version 4.5 (10/2026)
  * 
  * @see UWSJob
  * @see UWSJob#addObserver(JobObserver)
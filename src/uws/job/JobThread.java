@@ -16,7 +16,7 @@ package uws.job;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012-2015 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -60,7 +60,13 @@ import uws.service.log.UWSLog.LogLevel;
  * </ul>
  * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.1 (04/2015)
+ * @version 4.5 (10/2026)
+ * 
+ * <p><i>Note:
+ * 	This thread may be run by a virtual thread (see {@link VirtualThreads}).
+ * 	That's why {@link #isActive()} and {@link #waitForEnd(long)} should be
+ * 	used instead of {@link #isAlive()} and {@link #join(long)}.
+ * </i></p>
  * 
  * @see UWSJob#start()
  * @see UWSJob#abort()
@@ -98,6 +104,11 @@ public abstract class JobThread extends Thread {
 	/** Group of threads in which this job thread will run. */
 	public final static ThreadGroup tg = new ThreadGroup("UWS_GROUP");
 
+	/** Virtual thread running this job thread (see {@link VirtualThreads}).
+	 * NULL if this thread is run as a usual platform thread or if not yet started.
+	 * @since 4.5 */
+	private volatile Thread runner = null;
+
 	/**
 	 * Builds the JobThread instance which will be used by the given job to execute its task.
 	 * 
@@ -217,6 +228,99 @@ public abstract class JobThread extends Thread {
 		return finished;
 	}
 
+	/**
+	 * <p>Start the execution of this thread.</p>
+	 *
+	 * <p>
+	 * 	If the virtual threads mode is enabled (see
+	 * 	{@link VirtualThreads#isEnabled()}), this thread is not started itself:
+	 * 	its {@link #run()} function is run by a new virtual thread.
+	 * </p>
+	 *
+	 * @since 4.5
+	 */
+	@Override
+	public synchronized void start(){
+		if (runner != null)
+			throw new IllegalThreadStateException();
+
+		Thread virtualThread = VirtualThreads.newVirtualThread(getName(), this);
+		if (virtualThread == null)
+			super.start();
+		else{
+			runner = virtualThread;
+			virtualThread.start();
+		}
+	}
+
+	/**
+	 * Interrupt this thread, or the virtual thread running it.
+	 *
+	 * @since 4.5
+	 */
+	@Override
+	public void interrupt(){
+		Thread r = runner;
+		if (r != null)
+			r.interrupt();
+		else
+			super.interrupt();
+	}
+
+	/**
+	 * Tell whether this thread, or the virtual thread running it, has been
+	 * interrupted.
+	 *
+	 * @since 4.5
+	 */
+	@Override
+	public boolean isInterrupted(){
+		Thread r = runner;
+		return (r != null) ? r.isInterrupted() : super.isInterrupted();
+	}
+
+	/**
+	 * Tell whether this thread is still running.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be used instead of {@link #isAlive()} which does
+	 * 	not take into account the virtual thread running this thread.
+	 * </i></p>
+	 *
+	 * @return	<i>true</i> if this thread (or the virtual thread running it)
+	 *        	is alive,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final boolean isActive(){
+		Thread r = runner;
+		return (r != null) ? r.isAlive() : isAlive();
+	}
+
+	/**
+	 * Wait at most the given duration for the end of this thread.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be used instead of {@link #join(long)} which does
+	 * 	not take into account the virtual thread running this thread.
+	 * </i></p>
+	 *
+	 * @param millis	Maximum time to wait (in milliseconds).
+	 *              	<i>0 means forever.</i>
+	 *
+	 * @throws InterruptedException	If the current thread is interrupted while waiting.
+	 *
+	 * @since 4.5
+	 */
+	public final void waitForEnd(final long millis) throws InterruptedException{
+		Thread r = runner;
+		if (r != null)
+			r.join(millis);
+		else
+			join(millis);
+	}
+
 	/**
 	 * Lets changing the execution phase of the job and setting its endTime.
 	 * 
@@ -16,7 +16,7 @@ package uws.job;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -29,7 +29,7 @@ import uws.service.UWSUrl;
  * This class gives a short description (mainly an ID and a URL) of a job result.
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.1 (09/2017)
+ * @version 4.5 (10/2026)
  */
 public class Result extends SerializableUWSObject {
 	private static final long serialVersionUID = 1L;
@@ -51,6 +51,11 @@ public class Result extends SerializableUWSObject {
 	/** <i>[Optional]</i> The size of the corresponding result file. */
 	protected long size = -1;
 
+	/** <i>[Optional]</i> Date (in milliseconds since 1/1/1970) at which this result has been published,
+	 * i.e. added to its job. <i>Negative if unknown.</i>
+	 * @since 4.5 */
+	protected long lastModified = -1;
+
 	/**
 	 * Tells whether a redirection toward the given URL is required to get the result content.
 	 * If FALSE, the content must be read from the corresponding file managed by the {@link uws.service.file.UWSFileManager}. */
@@ -259,6 +264,55 @@ public class Result extends SerializableUWSObject {
 		this.size = size;
 	}
 
+	/**
+	 * Gets the date at which this result has been published.
+	 *
+	 * @return	Publication date (in milliseconds since 1/1/1970),
+	 *        	or a negative value if unknown.
+	 *
+	 * @since 4.5
+	 */
+	public final long getLastModified(){
+		return lastModified;
+	}
+
+	/**
+	 * Sets the date at which this result has been published.
+	 *
+	 * <p><i>Note:
+	 * 	This date is set automatically by {@link UWSJob#addResult(Result)}, if
+	 * 	not already set.
+	 * </i></p>
+	 *
+	 * @param lastModified	Publication date (in milliseconds since 1/1/1970).
+	 *
+	 * @since 4.5
+	 */
+	public final void setLastModified(long lastModified){
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Gets the HTTP entity tag identifying the content of this result.
+	 *
+	 * <p>
+	 * 	This tag is built from the ID, the size and the publication date of
+	 * 	this result. Thus, it does not change when the result file is moved or
+	 * 	compressed (see {@link uws.service.file.ResultLifecycleManager}).
+	 * </p>
+	 *
+	 * @return	A strong entity tag (quotes included),
+	 *        	or <i>null</i> if the publication date is unknown.
+	 *
+	 * @since 4.5
+	 */
+	public final String getETag(){
+		if (lastModified < 0)
+			return null;
+		else
+			return "\"" + Integer.toHexString(id.hashCode()) + "-" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+	}
+
 	/* ***************** */
 	/* INHERITED METHODS */
 	/* ***************** */
@@ -16,7 +16,7 @@ package uws.job;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -125,12 +125,15 @@ import uws.service.request.UploadFile;
  * 		<b>{@link #addObserver(JobObserver)}:</b>
  * 		An instance of any kind of AbstractJob can be observed by objects which
  * 		implements {@link JobObserver} (i.e. {@link uws.service.UWSService}).
- * 		Observers are notified at any change of the execution phase.
+ * 		Observers are notified at any change of the execution phase. Observers
+ * 		implementing {@link JobEventObserver} are also notified when a result
+ * 		is added and when an informative parameter (e.g. a progression) is
+ * 		updated by the job execution.
  * 	</li>
  * </ul>
  *
  * @author	Gr&eacute;gory Mantelet (CDS;ARI)
- * @version	4.4 (09/2018)
+ * @version	4.5 (10/2026)
  */
 public class UWSJob extends SerializableUWSObject {
 	private static final long serialVersionUID = 1L;
@@ -800,6 +803,10 @@ public class UWSJob extends SerializableUWSObject {
 			ExecutionPhase oldPhase = phase.getPhase();
 			phase.setPhase(p, force);
 
+			// Update the phase index of the jobs list:
+			if (getJobList() != null && oldPhase != phase.getPhase())
+				getJobList().updatePhaseIndex(this);
+
 			if (!force)
 				getLogger().logJob(LogLevel.INFO, this, "CHANGE_PHASE", "The job \"" + getJobId() + "\" goes from " + oldPhase + " to " + p, null);
 
@@ -861,6 +868,9 @@ public class UWSJob extends SerializableUWSObject {
 	 */
 	protected final void setStartTime(Date newDateTime){
 		startTime = newDateTime;
+
+		// Notify the observers interested by this change:
+		notifyParameterChanged(PARAM_START_TIME);
 	}
 
 	/**
@@ -880,12 +890,19 @@ public class UWSJob extends SerializableUWSObject {
 	protected final void setEndTime(Date newDateTime){
 		endTime = newDateTime;
 
+		// Notify the observers interested by this change:
+		notifyParameterChanged(PARAM_END_TIME);
+
 		// Save the owner jobs list:
 		if (phase.isFinished() && owner != null && getJobList() != null && getJobList().getUWS() != null && getJobList().getUWS().getBackupManager() != null)
 			getJobList().getUWS().getBackupManager().saveOwner(owner);
 
 		// Log the end of this job:
 		getLogger().logJob(LogLevel.INFO, this, "END", "Job \"" + jobId + "\" ended with the status " + phase, null);
+
+		// Move this job in the job store of its jobs list, if any:
+		if (phase.isFinished() && getJobList() != null)
+			getJobList().jobFinished(this);
 	}
 
 	/**
@@ -916,6 +933,7 @@ public class UWSJob extends SerializableUWSObject {
 		if (phase.isJobUpdatable()){
 			try{
 				inputParams.set(PARAM_EXECUTION_DURATION, executionDuration);
+				notifyParameterChanged(PARAM_EXECUTION_DURATION);
 			}catch(UWSException ue){
 				;
 			}
@@ -951,6 +969,7 @@ public class UWSJob extends SerializableUWSObject {
 				inputParams.set(PARAM_DESTRUCTION_TIME, destructionTime);
 				if (myJobList != null)
 					myJobList.updateDestruction(this);
+				notifyParameterChanged(PARAM_DESTRUCTION_TIME);
 			}catch(UWSException ue){
 				getLogger().logJob(LogLevel.WARNING, this, "SET_DESTRUCTION", "Can not set the destruction time of the job \"" + getJobId() + "\" to \"" + destructionTime + "\"!", ue);
 			}
@@ -1037,6 +1056,7 @@ public class UWSJob extends SerializableUWSObject {
 		if (!phase.isFinished()){
 			try{
 				inputParams.set(PARAM_RUN_ID, name);
+				notifyParameterChanged(PARAM_RUN_ID);
 			}catch(UWSException ue){
 				;
 			}
@@ -1170,7 +1190,7 @@ public class UWSJob extends SerializableUWSObject {
 			inputParams.set(paramName, paramValue);
 
 			// CASE DESTRUCTION_TIME: update the thread dedicated to the destruction:
-			if (paramValue.equals(PARAM_DESTRUCTION_TIME)){
+			if (PARAM_DESTRUCTION_TIME.equalsIgnoreCase(paramName)){
 				if (myJobList != null)
 					myJobList.updateDestruction(this);
 			}
@@ -1186,6 +1206,9 @@ public class UWSJob extends SerializableUWSObject {
 				}
 			}
 
+			// Save the modification and notify the observers:
+			notifyParameterChanged(paramName);
+
 			// Apply the retrieved phase:
 			applyPhaseParam(user);
 
@@ -1321,6 +1344,14 @@ public class UWSJob extends SerializableUWSObject {
 			}
 		}
 
+		// Save the modifications in the job store, if any:
+		if (updated.length > 0 && myJobList != null)
+			myJobList.jobUpdated(this);
+
+		// Notify the observers:
+		for(String updatedParam : updated)
+			fireParameterChanged(updatedParam);
+
 		// Apply the retrieved phase:
 		applyPhaseParam(user);
 
@@ -1354,6 +1385,12 @@ public class UWSJob extends SerializableUWSObject {
 					getLogger().logJob(LogLevel.WARNING, this, "MOVE_UPLOAD", "Can not delete the uploaded file \"" + paramName + "\" of the job \"" + jobId + "\"!", ioe);
 				}
 			}
+			// Save the modification in the job store, if any:
+			if (removed != null && myJobList != null)
+				myJobList.jobUpdated(this);
+			// ...and notify the observers:
+			if (removed != null)
+				fireParameterChanged(paramName);
 			return true;
 		}
 	}
@@ -1417,10 +1454,15 @@ public class UWSJob extends SerializableUWSObject {
 				if (results.containsKey(res.getId()))
 					return false;
 				else{
+					if (res.getLastModified() < 0)
+						res.setLastModified(System.currentTimeMillis());
 					results.put(res.getId(), res);
-					return true;
 				}
 			}
+			if (myJobList != null)
+				myJobList.jobUpdated(this);
+			notifyResultAdded(res);
+			return true;
 		}
 	}
 
@@ -1470,6 +1512,10 @@ public class UWSJob extends SerializableUWSObject {
 
 		// Replace the former jobInfo by the given one:
 		this.jobInfo = newJobInfo;
+
+		// Save the modification in the job store, if any:
+		if (myJobList != null)
+			myJobList.jobUpdated(this);
 	}
 
 	/**
@@ -1631,7 +1677,7 @@ public class UWSJob extends SerializableUWSObject {
 
 			// Run the job:
 			thread.start();
-			(new JobTimeOut()).start();
+			VirtualThreads.start(new JobTimeOut());
 
 			// Log the start of this job:
 			getLogger().logJob(LogLevel.INFO, this, "START", "Job \"" + jobId + "\" started.", null);
@@ -1641,8 +1687,13 @@ public class UWSJob extends SerializableUWSObject {
 	/**
 	 * Stop/Cancel this job when its maximum execution duration has been reached.
 	 *
+	 * <p><i>Note:
+	 * 	This thread is run on a virtual thread if the virtual threads mode is
+	 * 	enabled (see {@link VirtualThreads}).
+	 * </i></p>
+	 *
 	 * @author Gr&eacute;gory Mantelet (CDS;ARI)
-	 * @version 4.1 (09/2014)
+	 * @version 4.5 (10/2026)
 	 */
 	protected final class JobTimeOut extends Thread {
 		public JobTimeOut(){
@@ -1652,9 +1703,9 @@ public class UWSJob extends SerializableUWSObject {
 		@Override
 		public void run(){
 			long maxDuration = getExecutionDuration();
-			if (thread != null && thread.isAlive() && maxDuration != UNLIMITED_DURATION && maxDuration > 0){
+			if (thread != null && thread.isActive() && maxDuration != UNLIMITED_DURATION && maxDuration > 0){
 				try{
-					thread.join(maxDuration * 1000);
+					thread.waitForEnd(maxDuration * 1000);
 					if (!isFinished())
 						UWSJob.this.abort();
 				}catch(InterruptedException ie){
@@ -1735,7 +1786,7 @@ public class UWSJob extends SerializableUWSObject {
 
 				// Set the end time:
 				setEndTime(new Date());
-			}else if ((thread == null || (thread != null && !thread.isAlive())) && phase.getPhase() != ExecutionPhase.ABORTED)
+			}else if ((thread == null || (thread != null && !thread.isActive())) && phase.getPhase() != ExecutionPhase.ABORTED)
 				throw new UWSException(UWSException.BAD_REQUEST, UWSExceptionFactory.incorrectPhaseTransition(getJobId(), phase.getPhase(), ExecutionPhase.ABORTED));
 		}else
 			getLogger().logJob(LogLevel.WARNING, this, "ABORT", "Abortion of the job \"" + getJobId() + "\" asked but not yet effective (after having waited " + waitForStop + "ms)!", null);
@@ -1779,7 +1830,7 @@ public class UWSJob extends SerializableUWSObject {
 
 				// Set the end time:
 				setEndTime(new Date());
-			}else if (thread != null && !thread.isAlive())
+			}else if (thread != null && !thread.isActive())
 				throw new UWSException(UWSException.BAD_REQUEST, UWSExceptionFactory.incorrectPhaseTransition(jobId, phase.getPhase(), ExecutionPhase.ERROR));
 		}else
 			getLogger().logJob(LogLevel.WARNING, this, "ERROR", "Stopping of the job \"" + getJobId() + "\" with error asked but not yet effective (after having waited " + waitForStop + "ms)!", null);
@@ -1803,7 +1854,7 @@ public class UWSJob extends SerializableUWSObject {
 				// Wait a little for its end:
 				if (waitForStop > 0){
 					try{
-						thread.join(waitForStop);
+						thread.waitForEnd(waitForStop);
 					}catch(InterruptedException ie){
 						getLogger().logJob(LogLevel.WARNING, this, "END", "Unexpected InterruptedException while waiting for the end of the execution of the job \"" + jobId + "\" (thread ID: " + thread.getId() + ")!", ie);
 					}
@@ -1831,7 +1882,7 @@ public class UWSJob extends SerializableUWSObject {
 	 *        	<i>false</i> otherwise.
 	 */
 	protected final boolean isStopped(){
-		return thread == null || !thread.isAlive() || thread.isFinished();
+		return thread == null || !thread.isActive() || thread.isFinished();
 	}
 
 	/**
@@ -1999,6 +2050,12 @@ public class UWSJob extends SerializableUWSObject {
 	 * Lets adding an observer of this job. The observer will be notified each
 	 * time the execution phase changes.
 	 *
+	 * <p><i>Note:
+	 * 	Observers are notified by the thread modifying this job. To be notified
+	 * 	asynchronously, the subscription of an observer to a
+	 * 	{@link JobEventBus} must be added instead of the observer itself.
+	 * </i></p>
+	 *
 	 * @param observer	A new observer of this job.
 	 *
 	 * @return	<i>true</i> if the given object has been successfully added as
@@ -2061,7 +2118,10 @@ public class UWSJob extends SerializableUWSObject {
 	public final void notifyObservers(ExecutionPhase oldPhase){
 		String errors = null;
 
-		for(JobObserver observer : observers){
+		/* note: a copy of the list is iterated because observers may be
+		 *       removed while being notified (e.g. by a blocked request
+		 *       which is then released). */
+		for(JobObserver observer : observers.toArray(new JobObserver[0])){
 			// Update this observer:
 			try{
 				observer.update(this, oldPhase, getPhase());
@@ -2077,6 +2137,96 @@ public class UWSJob extends SerializableUWSObject {
 			getLogger().logJob(LogLevel.WARNING, this, "NOTIFY", "Some observers of the job \"" + jobId + "\" can not have been updated:\n" + errors, null);
 	}
 
+	/**
+	 * Notifies all the {@link JobEventObserver}s of this job that a result
+	 * has been added.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by {@link #addResult(Result)}.
+	 * </i></p>
+	 *
+	 * @param result	The added result.
+	 *
+	 * @since 4.5
+	 */
+	public final void notifyResultAdded(final Result result){
+		String errors = null;
+		for(JobObserver observer : observers.toArray(new JobObserver[0])){
+			if (observer instanceof JobEventObserver){
+				try{
+					((JobEventObserver)observer).resultAdded(this, result);
+				}catch(UWSException ex){
+					if (errors == null)
+						errors = "\t* " + ex.getMessage();
+					else
+						errors += "\n\t* " + ex.getMessage();
+				}
+			}
+		}
+
+		if (errors != null)
+			getLogger().logJob(LogLevel.WARNING, this, "NOTIFY", "Some observers of the job \"" + jobId + "\" can not have been updated:\n" + errors, null);
+	}
+
+	/**
+	 * Notifies all the {@link JobEventObserver}s of this job that the given
+	 * parameter has been modified (or removed) by the job execution.
+	 *
+	 * <p><i>Note:
+	 * 	This function is called by all the setters of this job. But the
+	 * 	parameters of a job can also be modified directly in its
+	 * 	{@link UWSParameters} without any notification of this job. That's why
+	 * 	this function must be called explicitly by the code modifying an
+	 * 	informative parameter (e.g. the progression of a TAP query execution).
+	 * </i></p>
+	 *
+	 * @param name	Name of the modified parameter.
+	 *
+	 * @since 4.5
+	 */
+	public final void notifyParameterChanged(final String name){
+		if (name == null)
+			return;
+
+		// Save the modification in the job store, if any:
+		if (myJobList != null)
+			myJobList.jobUpdated(this);
+
+		fireParameterChanged(name);
+	}
+
+	/**
+	 * Notifies all the {@link JobEventObserver}s of this job that the given
+	 * parameter has been modified (or removed), without saving this job in
+	 * the job store of its jobs list.
+	 *
+	 * @param name	Name of the modified parameter.
+	 *
+	 * @since 4.5
+	 */
+	private void fireParameterChanged(final String name){
+		if (name == null)
+			return;
+
+		String errors = null;
+		Object value = getParameter(name);
+		for(JobObserver observer : observers.toArray(new JobObserver[0])){
+			if (observer instanceof JobEventObserver){
+				try{
+					((JobEventObserver)observer).parameterChanged(this, name, value);
+				}catch(UWSException ex){
+					if (errors == null)
+						errors = "\t* " + ex.getMessage();
+					else
+						errors += "\n\t* " + ex.getMessage();
+				}
+			}
+		}
+
+		if (errors != null)
+			getLogger().logJob(LogLevel.WARNING, this, "NOTIFY", "Some observers of the job \"" + jobId + "\" can not have been updated:\n" + errors, null);
+	}
+
 	/* **************** */
 	/* ERROR MANAGEMENT */
 	/* **************** */
@@ -2097,7 +2247,7 @@ public class UWSJob extends SerializableUWSObject {
 	 *        	running.
 	 */
 	public final UWSException getWorkError(){
-		return (thread == null || !thread.isAlive()) ? null : thread.getError();
+		return (thread == null || !thread.isActive()) ? null : thread.getError();
 	}
 
 	/* ************* */
@@ -2111,6 +2261,28 @@ public class UWSJob extends SerializableUWSObject {
 		return serializer.getJob(this, true);
 	}
 
+	/**
+	 * Serializes the whole job in the given output stream.
+	 *
+	 * <p><i>Note:
+	 * 	The serialization is written progressively in the stream thanks to
+	 * 	{@link UWSSerializer#writeJob(java.io.OutputStream, UWSJob, boolean)} ;
+	 * 	it is never entirely built in memory.
+	 * </i></p>
+	 *
+	 * @since 4.5
+	 */
+	@Override
+	public void serialize(ServletOutputStream output, UWSSerializer serializer, JobOwner user) throws UWSException, IOException, Exception{
+		if (output == null)
+			throw new NullPointerException("Missing serialization output stream!");
+
+		if (user != null && !user.equals(getOwner()) && !user.hasReadPermission(this))
+			throw new UWSException(UWSException.PERMISSION_DENIED, UWSExceptionFactory.readPermissionDenied(user, false, getJobId()));
+
+		serializer.writeJob(output, this, true);
+	}
+
 	/**
 	 * Serializes the specified attribute of this job by using the given
 	 * serializer.
@@ -2156,6 +2328,12 @@ public class UWSJob extends SerializableUWSObject {
 		if (output == null)
 			throw new NullPointerException("Missing serialization output stream when serializing " + errorMsgPart + "!");
 
+		// The whole job can be written progressively:
+		if (attributes == null || attributes.length <= 0){
+			serializer.writeJob(output, this, true);
+			return;
+		}
+
 		String serialization = serialize(attributes, serializer);
 		if (serialization == null){
 			getLogger().logJob(LogLevel.ERROR, this, "SERIALIZE", "Error while serializing " + errorMsgPart + ": NULL was returned.", null);
@@ -0,0 +1,232 @@
+package uws.job;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Let run job executions (and all the threads around them: time-out
+ * watchers, synchronous executions, ...) on virtual threads.
+ *
+ * <p>
+ * 	Virtual threads are available only since Java 21. Since this library must
+ * 	still be usable with older versions of Java, they are created by
+ * 	reflection. If they are not available, {@link #isSupported()} returns
+ * 	<i>false</i> and all threads are still created as usual platform threads,
+ * 	even if the virtual threads mode is enabled.
+ * </p>
+ *
+ * <p>
+ * 	A virtual thread can not be an extension of {@link Thread}. That's why
+ * 	threads like {@link JobThread} are still created as {@link Thread}
+ * 	objects, but - when the virtual threads mode is enabled - they are not
+ * 	started themselves: their {@link Thread#run()} function is run by a virtual
+ * 	thread (see {@link #newVirtualThread(String, Runnable)}). Such thread
+ * 	then forwards interruptions to this virtual thread and provides functions
+ * 	replacing {@link Thread#isAlive()} and {@link Thread#join(long)} (which
+ * 	are final) ; see for instance {@link JobThread#isActive()} and
+ * 	{@link JobThread#waitForEnd(long)}.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Virtual threads do not belong to the {@link ThreadGroup}
+ * 	{@link JobThread#tg}. In order to still be able to interrupt all of them
+ * 	when a service is stopped, all running virtual threads created by this
+ * 	class are kept and can be interrupted with {@link #interruptAll()}.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public final class VirtualThreads {
+
+	/** <code>Thread.ofVirtual()</code> ; NULL if virtual threads are not supported. */
+	private static final Method OF_VIRTUAL;
+	/** <code>Thread.Builder.name(String)</code> ; NULL if virtual threads are not supported. */
+	private static final Method BUILDER_NAME;
+	/** <code>Thread.Builder.unstarted(Runnable)</code> ; NULL if virtual threads are not supported. */
+	private static final Method BUILDER_UNSTARTED;
+	/** <code>Thread.isVirtual()</code> ; NULL if virtual threads are not supported. */
+	private static final Method IS_VIRTUAL;
+
+	static{
+		Method ofVirtual = null, name = null, unstarted = null, isVirtual = null;
+		try{
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class);
+			unstarted = builderClass.getMethod("unstarted", Runnable.class);
+			isVirtual = Thread.class.getMethod("isVirtual");
+		}catch(Exception e){
+			ofVirtual = name = unstarted = isVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_UNSTARTED = unstarted;
+		IS_VIRTUAL = isVirtual;
+	}
+
+	/** Indicate whether the virtual threads mode is enabled. <i>Disabled by default.</i> */
+	private static volatile boolean enabled = false;
+
+	/** All virtual threads created by this class and still running. */
+	private static final Set<Thread> runningThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread,Boolean>());
+
+	/** No instance of this class should be created. */
+	private VirtualThreads(){}
+
+	/**
+	 * Tell whether virtual threads are supported by the current JVM.
+	 *
+	 * @return	<i>true</i> if virtual threads can be created (Java 21+),
+	 *        	<i>false</i> otherwise.
+	 */
+	public static boolean isSupported(){
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Tell whether threads must be run on virtual threads.
+	 *
+	 * @return	<i>true</i> if the virtual threads mode is enabled AND
+	 *        	virtual threads are supported by the current JVM,
+	 *        	<i>false</i> otherwise.
+	 */
+	public static boolean isEnabled(){
+		return enabled && isSupported();
+	}
+
+	/**
+	 * Enable or disable the virtual threads mode.
+	 *
+	 * <p><i>Note:
+	 * 	Only the threads started after this function call are affected.
+	 * 	Enabling this mode has no effect if virtual threads are not supported
+	 * 	(see {@link #isSupported()}).
+	 * </i></p>
+	 *
+	 * @param enable	<i>true</i> to run threads on virtual threads (if
+	 *              	supported),
+	 *              	<i>false</i> to always use platform threads.
+	 */
+	public static void setEnabled(final boolean enable){
+		enabled = enable;
+	}
+
+	/**
+	 * Tell whether the given thread is a virtual thread.
+	 *
+	 * @param thread	The thread to test.
+	 *
+	 * @return	<i>true</i> if the given thread is a virtual thread,
+	 *        	<i>false</i> otherwise (or if NULL).
+	 */
+	public static boolean isVirtual(final Thread thread){
+		if (thread == null || IS_VIRTUAL == null)
+			return false;
+		try{
+			return (Boolean)IS_VIRTUAL.invoke(thread);
+		}catch(Exception e){
+			return false;
+		}
+	}
+
+	/**
+	 * Create a new virtual thread (not yet started) running the given task.
+	 *
+	 * <p><i>Note:
+	 * 	Until its end, the created thread is kept by this class so that it can
+	 * 	be interrupted by {@link #interruptAll()}.
+	 * </i></p>
+	 *
+	 * @param name	Name of the thread to create.
+	 * @param task	The task to run.
+	 *
+	 * @return	The created (unstarted) virtual thread,
+	 *        	or NULL if the virtual threads mode is disabled or if virtual
+	 *        	threads are not supported.
+	 */
+	public static Thread newVirtualThread(final String name, final Runnable task){
+		if (!isEnabled() || task == null)
+			return null;
+		try{
+			final Thread[] created = new Thread[1];
+			Object builder = OF_VIRTUAL.invoke(null);
+			if (name != null)
+				builder = BUILDER_NAME.invoke(builder, name);
+			created[0] = (Thread)BUILDER_UNSTARTED.invoke(builder, new Runnable(){
+				@Override
+				public void run(){
+					try{
+						task.run();
+					}finally{
+						runningThreads.remove(created[0]);
+					}
+				}
+			});
+			runningThreads.add(created[0]);
+			return created[0];
+		}catch(Exception e){
+			return null;
+		}
+	}
+
+	/**
+	 * Start the given thread: either directly, or - if the virtual threads
+	 * mode is enabled - by running its {@link Thread#run()} function on a
+	 * new virtual thread.
+	 *
+	 * <p><b>Warning:</b>
+	 * 	This function must not be used for a thread whose the function
+	 * 	{@link Thread#start()} has been overwritten in order to use this class
+	 * 	(like {@link JobThread}) ; such thread must just be started normally.
+	 * </p>
+	 *
+	 * @param thread	The thread to start.
+	 *
+	 * @return	The thread actually running the given one
+	 *        	(i.e. the given thread itself if not run on a virtual thread).
+	 */
+	public static Thread start(final Thread thread){
+		Thread runner = newVirtualThread(thread.getName(), thread);
+		if (runner == null)
+			runner = thread;
+		runner.start();
+		return runner;
+	}
+
+	/**
+	 * Interrupt all running virtual threads created by this class.
+	 *
+	 * <p><i>Note:
+	 * 	This function is the equivalent of <code>{@link JobThread#tg}.interrupt()</code>
+	 * 	for virtual threads.
+	 * </i></p>
+	 */
+	public static void interruptAll(){
+		for(Thread t : runningThreads.toArray(new Thread[0]))
+			t.interrupt();
+	}
+
+}
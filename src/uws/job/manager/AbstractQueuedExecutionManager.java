@@ -16,10 +16,11 @@ package uws.job.manager;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -42,6 +43,8 @@ import uws.service.log.UWSLog.LogLevel;
  * 	A call to {@link #refresh()}, reads this list and tries to execute the first
  * 	job of the list. The function {@link #isReadyForExecution(UWSJob)} decides
  * 	whether the first job of the queue can be executed NOW or not.
+ * 	Then, the other queued jobs allowed to bypass the queue (see
+ * 	{@link #canBypassQueue(UWSJob)}) are started if they can be executed NOW.
  * </p>
  *
  * <p><i>Note:
@@ -56,7 +59,7 @@ import uws.service.log.UWSLog.LogLevel;
  * </i></p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (09/2017)
+ * @version 4.5 (10/2026)
  */
 public abstract class AbstractQueuedExecutionManager implements ExecutionManager {
 
@@ -126,6 +129,31 @@ public abstract class AbstractQueuedExecutionManager implements ExecutionManager
 	 */
 	public abstract boolean isReadyForExecution(UWSJob jobToExecute);
 
+	/**
+	 * Tells whether the given queued job is allowed to bypass the jobs queued
+	 * before it.
+	 *
+	 * <p>
+	 * 	When <i>true</i> is returned, the given job is started as soon as
+	 * 	{@link #isReadyForExecution(UWSJob)} returns <i>true</i> for it, even if
+	 * 	it is not the first job of the queue.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	By default, no job can bypass the queue.
+	 * </i></p>
+	 *
+	 * @param queuedJob	A queued job.
+	 *
+	 * @return	<i>true</i> if this job can bypass the queue,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	protected boolean canBypassQueue(final UWSJob queuedJob){
+		return false;
+	}
+
 	/* **************************** */
 	/* EXECUTION MANAGEMENT METHODS */
 	/* **************************** */
@@ -165,6 +193,20 @@ public abstract class AbstractQueuedExecutionManager implements ExecutionManager
 				logger.logJob(LogLevel.ERROR, jobToStart, "START", "Can not start the job \"" + jobToStart.getJobId() + "\"! This job is not any more part of its execution manager.", ue);
 			}
 		}
+
+		// Start the other queued jobs which are allowed to bypass the queue:
+		if (queuedJobs.size() > 1){
+			for(UWSJob queuedJob : new ArrayList<UWSJob>(queuedJobs.subList(1, queuedJobs.size()))){
+				if (canBypassQueue(queuedJob) && isReadyForExecution(queuedJob)){
+					queuedJobs.remove(queuedJob);
+					try{
+						startJob(queuedJob);
+					}catch(UWSException ue){
+						logger.logJob(LogLevel.ERROR, queuedJob, "START", "Can not start the job \"" + queuedJob.getJobId() + "\"! This job is not any more part of its execution manager.", ue);
+					}
+				}
+			}
+		}
 	}
 
 	/**
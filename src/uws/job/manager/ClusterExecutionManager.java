@@ -0,0 +1,910 @@
+package uws.job.manager;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uws.UWSException;
+import uws.UWSToolBox;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.UWSJob;
+import uws.service.log.UWSLog;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * {@link ExecutionManager} sharing its execution queue with the other nodes
+ * of a cluster, through a table of a database accessed with JDBC.
+ *
+ * <p>
+ * 	Each node of the cluster runs the same UWS service with a shared job store
+ * 	(see {@link JobList#setJobStore(uws.service.backup.JobStore, boolean)}) and
+ * 	with an instance of this manager. When a job is executed, it is put in
+ * 	the queue table (by default <code>uws_queue</code>) shared by all the
+ * 	nodes. Every node polls regularly this table and claims as many queued
+ * 	jobs as it can execute. A claimed job is loaded from the shared store (see
+ * 	{@link JobList#adoptJob(String)}) and started on the claiming node.
+ * </p>
+ *
+ * <p>
+ * 	A claim is a lease on the row of the job in the queue table: it expires
+ * 	after a given duration (see {@link #getLeaseDuration()}) and must then be
+ * 	renewed by the claiming node, every third of this duration, while the job
+ * 	is running. So:
+ * </p>
+ * <ul>
+ * 	<li>if a node stops (even abruptly), its jobs are claimed and executed
+ * 		again by another node once their lease has expired,</li>
+ * 	<li>if the lease of a running job can not be renewed (e.g. because the job
+ * 		has been aborted or destroyed by another node), its execution is
+ * 		stopped on this node (see {@link JobList#releaseJob(UWSJob)}).</li>
+ * </ul>
+ *
+ * <p>
+ * 	All the phase changes and the results of a running job are saved in the
+ * 	shared job store, so that all nodes can answer any request about any job.
+ * 	However, the results themselves are written by the
+ * 	{@link uws.service.file.UWSFileManager} of the executing node: it must
+ * 	then write on a filesystem shared by all the nodes (e.g. a
+ * 	{@link uws.service.file.LocalUWSFileManager} whose the root directory is
+ * 	a shared mount).
+ * </p>
+ *
+ * <p>
+ * 	Only standard SQL is used. So, any database with a JDBC driver should be
+ * 	usable. To share an H2 database between several JVMs, either an H2 server
+ * 	has to be started (URL like <code>jdbc:h2:tcp://host/path/to/uws</code>)
+ * 	or the automatic mixed mode must be enabled (URL like
+ * 	<code>jdbc:h2:/path/to/uws;AUTO_SERVER=TRUE</code>).
+ * </p>
+ *
+ * <p><i>Note:
+ * 	{@link #getRunningJobs()} and {@link #getNbRunningJobs()} concern only the
+ * 	jobs executed by this node, whereas {@link #getQueuedJobs()} and
+ * 	{@link #getNbQueuedJobs()} concern the queue shared by all nodes.
+ * </i></p>
+ *
+ * <p><i>Note:
+ * 	After a call to {@link #stopAll()}, the jobs running on this node are
+ * 	given back to the queue, so that other nodes can execute them. This
+ * 	manager is still able to execute new jobs: the connection to the database
+ * 	is then re-opened.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class ClusterExecutionManager implements ExecutionManager {
+
+	/** Default name of the table in which queued jobs are stored. */
+	public final static String DEFAULT_TABLE_NAME = "uws_queue";
+
+	/** Default duration (in milliseconds) of a claim on a job. */
+	public final static long DEFAULT_LEASE_DURATION = 60000;
+
+	/** The jobs list whose the jobs are executed by this manager. */
+	protected final JobList jobList;
+
+	/** Logger to use to report any error. */
+	protected final UWSLog logger;
+
+	/** ID of this node in the cluster. */
+	protected final String nodeId;
+
+	/** Maximum number of jobs that can run at the same time on this node.
+	 * <i>{@link QueuedExecutionManager#NO_QUEUE} if unlimited.</i> */
+	protected final int maxRunningJobs;
+
+	/** Duration (in milliseconds) of a claim on a job. */
+	protected final long leaseDuration;
+
+	/** Name of the table in which queued jobs are stored. */
+	protected final String table;
+
+	/** JDBC URL of the database. */
+	private final String url;
+
+	/** Name of the database user. <i>MAY be NULL</i> */
+	private final String user;
+
+	/** Password of the database user. <i>MAY be NULL</i> */
+	private final String password;
+
+	/** Connection to the database. <i>Used by only one thread at a time.</i> */
+	private volatile Connection connection = null;
+
+	/** Jobs running on this node. */
+	private final Map<String,UWSJob> runningJobs = new ConcurrentHashMap<String,UWSJob>();
+
+	/** Timer polling the queue table. <i>NULL if stopped.</i> */
+	private Timer timer = null;
+
+	/**
+	 * Build a manager sharing its queue in the table
+	 * {@link #DEFAULT_TABLE_NAME} of the specified database.
+	 *
+	 * @param jobList			The jobs list whose the jobs must be executed.
+	 *               			Its job store must be shared.
+	 * @param logger			Logger to use. <i>If NULL, the default UWS
+	 *              			logger is used.</i>
+	 * @param url				JDBC URL of the database.
+	 * @param user				Name of the database user. <i>MAY be NULL</i>
+	 * @param password			Password of the database user.
+	 *                			<i>MAY be NULL</i>
+	 * @param nodeId			ID of this node in the cluster. It must be
+	 *              			unique in the cluster. <i>If NULL, the name of
+	 *              			the JVM (i.e. <code>pid@hostname</code>) is
+	 *              			used.</i>
+	 * @param maxRunningJobs	Maximum number of jobs that can run at the
+	 *                      	same time on this node. <i>If &le;0,
+	 *                      	unlimited.</i>
+	 * @param leaseDuration		Duration (in milliseconds) of a claim on a
+	 *                     		job. <i>If &le;0,
+	 *                     		{@link #DEFAULT_LEASE_DURATION}.</i>
+	 *
+	 * @throws UWSException	If the connection to the database fails or if the
+	 *                     	queue table can not be created.
+	 */
+	public ClusterExecutionManager(final JobList jobList, final UWSLog logger, final String url, final String user, final String password, final String nodeId, final int maxRunningJobs, final long leaseDuration) throws UWSException{
+		if (jobList == null)
+			throw new NullPointerException("Missing jobs list! Can not create a ClusterExecutionManager.");
+		if (url == null)
+			throw new NullPointerException("Missing database URL! Can not create a ClusterExecutionManager.");
+		this.jobList = jobList;
+		this.logger = (logger == null) ? UWSToolBox.getDefaultLogger() : logger;
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.nodeId = (nodeId == null || nodeId.trim().isEmpty()) ? ManagementFactory.getRuntimeMXBean().getName() : nodeId.trim();
+		this.maxRunningJobs = (maxRunningJobs <= 0) ? QueuedExecutionManager.NO_QUEUE : maxRunningJobs;
+		this.leaseDuration = (leaseDuration <= 0) ? DEFAULT_LEASE_DURATION : leaseDuration;
+		this.table = DEFAULT_TABLE_NAME;
+		open();
+	}
+
+	/* ***************** */
+	/* GETTERS & SETTERS */
+	/* ***************** */
+	/**
+	 * Get the ID of this node in the cluster.
+	 *
+	 * @return	ID of this node.
+	 */
+	public final String getNodeId(){
+		return nodeId;
+	}
+
+	/**
+	 * Get the maximum number of jobs that can run at the same time on this
+	 * node.
+	 *
+	 * @return	The maximum number of running jobs,
+	 *        	or {@link QueuedExecutionManager#NO_QUEUE} if unlimited.
+	 */
+	public final int getMaxRunningJobs(){
+		return maxRunningJobs;
+	}
+
+	/**
+	 * Get the duration of a claim on a job.
+	 *
+	 * @return	Lease duration (in milliseconds).
+	 */
+	public final long getLeaseDuration(){
+		return leaseDuration;
+	}
+
+	@Override
+	public final Iterator<UWSJob> getRunningJobs(){
+		return runningJobs.values().iterator();
+	}
+
+	@Override
+	public final int getNbRunningJobs(){
+		return runningJobs.size();
+	}
+
+	@Override
+	public final Iterator<UWSJob> getQueuedJobs(){
+		List<UWSJob> jobs = new ArrayList<UWSJob>();
+		try{
+			for(String jobId : selectClaimable(-1)){
+				UWSJob job = jobList.getJob(jobId);
+				if (job != null)
+					jobs.add(job);
+			}
+		}catch(SQLException se){
+			logger.logUWS(LogLevel.ERROR, null, "QUEUE", "Impossible to list the queued jobs of the jobs list \"" + jobList.getName() + "\"!", se);
+		}
+		return jobs.iterator();
+	}
+
+	@Override
+	public final int getNbQueuedJobs(){
+		try{
+			return countClaimable();
+		}catch(SQLException se){
+			logger.logUWS(LogLevel.ERROR, null, "QUEUE", "Impossible to count the queued jobs of the jobs list \"" + jobList.getName() + "\"!", se);
+			return 0;
+		}
+	}
+
+	/**
+	 * Tells whether the given claimed job can be executed NOW on this node.
+	 *
+	 * <p>
+	 * 	If not, the claim is given up, so that the job can be executed later
+	 * 	by this node or by another one.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	By default, all jobs are ready. The limit of running jobs is checked
+	 * 	before calling this function.
+	 * </i></p>
+	 *
+	 * @param jobToExecute	A claimed job.
+	 *
+	 * @return	<i>true</i> if the given job can be executed NOW,
+	 *        	<i>false</i> otherwise.
+	 */
+	protected boolean isReadyForExecution(final UWSJob jobToExecute){
+		return true;
+	}
+
+	/* **************************** */
+	/* EXECUTION MANAGEMENT METHODS */
+	/* **************************** */
+	/**
+	 * Ask for a poll of the queue table as soon as possible.
+	 *
+	 * <p><i>Note:
+	 * 	The poll is done asynchronously, by the thread polling regularly the
+	 * 	queue table.
+	 * </i></p>
+	 *
+	 * @see uws.job.manager.ExecutionManager#refresh()
+	 */
+	@Override
+	public final void refresh(){
+		wake();
+	}
+
+	/**
+	 * Put the given job in the queue shared by all nodes.
+	 *
+	 * <p><i>Note:
+	 * 	If the job store of the jobs list is not shared, the job can not be
+	 * 	executed by another node: it is then put in the phase
+	 * 	{@link ExecutionPhase#HELD HELD}.
+	 * </i></p>
+	 *
+	 * @see uws.job.manager.ExecutionManager#execute(UWSJob)
+	 */
+	@Override
+	public ExecutionPhase execute(final UWSJob jobToExecute){
+		if (jobToExecute == null)
+			return null;
+
+		// If the job is already running here, ensure it is in the list of running jobs:
+		if (jobToExecute.isRunning()){
+			if (!jobList.isReleased(jobToExecute) && jobList.getJob(jobToExecute.getJobId()) == jobToExecute)
+				runningJobs.put(jobToExecute.getJobId(), jobToExecute);
+
+		}// If the job is already finished, ensure it is not any more in the queue:
+		else if (jobToExecute.isFinished())
+			remove(jobToExecute);
+
+		// Otherwise, change the phase to QUEUED and put it into the shared queue:
+		else{
+			try{
+				if (!jobList.isJobStoreShared())
+					throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, "The job store of the jobs list \"" + jobList.getName() + "\" is not shared! The job can not be executed by the cluster.");
+
+				// (re-open the queue if stopped)
+				open();
+
+				if (jobToExecute.getPhase() != ExecutionPhase.QUEUED)
+					jobToExecute.setPhase(ExecutionPhase.QUEUED);
+
+				enqueue(jobToExecute.getJobId());
+				wake();
+			}catch(Exception ex){
+				// log the error:
+				logger.logJob(LogLevel.ERROR, jobToExecute, "QUEUE", "Can not put the job \"" + jobToExecute.getJobId() + "\" in the cluster queue!", ex);
+				// set the phase HELD (meaning it is impossible to set the job into a QUEUED phase):
+				try{
+					jobToExecute.setPhase(ExecutionPhase.HELD);
+				}catch(UWSException e){}
+			}
+		}
+
+		return jobToExecute.getPhase();
+	}
+
+	/**
+	 * Removes the given job from the shared queue and then polls again the
+	 * queue.
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done for a job released by this node: its execution has
+	 * 	been given to another node.
+	 * </i></p>
+	 *
+	 * @see uws.job.manager.ExecutionManager#remove(uws.job.UWSJob)
+	 */
+	@Override
+	public void remove(final UWSJob jobToRemove){
+		if (jobToRemove == null || jobList.isReleased(jobToRemove))
+			return;
+
+		runningJobs.remove(jobToRemove.getJobId());
+		if (connection == null)
+			return;
+		try{
+			delete(jobToRemove.getJobId());
+		}catch(SQLException se){
+			logger.logJob(LogLevel.ERROR, jobToRemove, "QUEUE", "Impossible to remove the job \"" + jobToRemove.getJobId() + "\" from the cluster queue!", se);
+		}
+		wake();
+	}
+
+	/**
+	 * Stops the polling of the queue table and gives back to the queue all
+	 * the jobs running on this node, so that other nodes can execute them.
+	 *
+	 * @see uws.job.manager.ExecutionManager#stopAll()
+	 */
+	@Override
+	public void stopAll(){
+		synchronized(this){
+			if (timer != null){
+				timer.cancel();
+				timer = null;
+			}
+		}
+
+		for(UWSJob job : new ArrayList<UWSJob>(runningJobs.values())){
+			runningJobs.remove(job.getJobId());
+			try{
+				unclaim(job.getJobId());
+			}catch(SQLException se){
+				logger.logJob(LogLevel.WARNING, job, "ABORT", "Impossible to give back the job \"" + job.getJobId() + "\" to the cluster queue! It will be executed again only once its lease has expired.", se);
+			}
+			jobList.releaseJob(job);
+		}
+
+		close();
+	}
+
+	/**
+	 * Poll the queue table.
+	 *
+	 * <p>
+	 * 	The lease of all jobs running on this node is renewed. A job whose the
+	 * 	lease can not be renewed is stopped and released. Then, as many queued
+	 * 	jobs as possible are claimed and started on this node.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	This function is executed only by the thread polling regularly the
+	 * 	queue table.
+	 * </i></p>
+	 */
+	protected void poll(){
+		// Renew the lease of the jobs running on this node:
+		for(UWSJob job : new ArrayList<UWSJob>(runningJobs.values())){
+			try{
+				if (job.isFinished() || jobList.isReleased(job)){
+					runningJobs.remove(job.getJobId());
+					if (!jobList.isReleased(job))
+						delete(job.getJobId());
+				}else if (!renew(job.getJobId())){
+					runningJobs.remove(job.getJobId());
+					if (!job.isFinished()){
+						logger.logJob(LogLevel.WARNING, job, "EXECUTING", "Lease lost on the job \"" + job.getJobId() + "\" (aborted, destroyed or claimed by another node)! Its execution is stopped on this node.", null);
+						jobList.releaseJob(job);
+					}
+				}
+			}catch(SQLException se){
+				logger.logJob(LogLevel.ERROR, job, "EXECUTING", "Impossible to renew the lease on the job \"" + job.getJobId() + "\"!", se);
+			}
+		}
+
+		if (!jobList.isJobStoreShared())
+			return;
+
+		// Claim and start as many queued jobs as possible:
+		int free = maxRunningJobs - runningJobs.size();
+		if (free <= 0)
+			return;
+		try{
+			for(String jobId : selectClaimable(free)){
+				if (!claim(jobId))
+					continue;
+
+				UWSJob job = jobList.adoptJob(jobId);
+				if (job == null){
+					delete(jobId);
+					continue;
+				}else if (job.isFinished()){
+					jobList.releaseJob(job);
+					delete(jobId);
+					continue;
+				}else if (!isReadyForExecution(job)){
+					jobList.releaseJob(job);
+					unclaim(jobId);
+					break;
+				}
+
+				runningJobs.put(jobId, job);
+				try{
+					if (job.getPhase() != ExecutionPhase.QUEUED)
+						job.setPhase(ExecutionPhase.QUEUED, true);
+					job.start(false);
+				}catch(UWSException ue){
+					// the job can not start now (e.g. no resource available) => give it back to the queue:
+					runningJobs.remove(jobId);
+					if (job.isRunning() || job.isFinished())
+						delete(jobId);
+					else{
+						jobList.releaseJob(job);
+						unclaim(jobId);
+						logger.logJob(LogLevel.WARNING, job, "START", "Can not start the job \"" + jobId + "\" now! It is given back to the cluster queue.", ue);
+						break;
+					}
+				}catch(Exception ex){
+					runningJobs.remove(jobId);
+					delete(jobId);
+					logger.logJob(LogLevel.ERROR, job, "START", "Can not start the job \"" + jobId + "\"! This job is not any more part of the cluster queue.", ex);
+				}
+			}
+		}catch(SQLException se){
+			logger.logUWS(LogLevel.ERROR, null, "QUEUE", "Impossible to poll the cluster queue of the jobs list \"" + jobList.getName() + "\"!", se);
+		}
+	}
+
+	/**
+	 * Ask for a poll of the queue table as soon as possible.
+	 */
+	protected final synchronized void wake(){
+		if (timer != null){
+			timer.schedule(new TimerTask(){
+				@Override
+				public void run(){
+					poll();
+				}
+			}, 0);
+		}
+	}
+
+	/* ************** */
+	/* DATABASE QUERY */
+	/* ************** */
+	/**
+	 * Open the connection to the database (if not already open), create the
+	 * queue table (if it does not exist yet) and start the regular poll of
+	 * this table.
+	 *
+	 * @throws UWSException	If the connection fails or if the table can not
+	 *                     	be created.
+	 */
+	protected synchronized void open() throws UWSException{
+		if (connection == null){
+			Statement stmt = null;
+			try{
+				connection = (user == null) ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+				stmt = connection.createStatement();
+				// (the existence is checked in the database metadata, since IF NOT EXISTS is not supported by all DBMS)
+				if (!isTableExisting()){
+					try{
+						stmt.executeUpdate("CREATE TABLE " + table + " (job_list VARCHAR(255) NOT NULL, job_id VARCHAR(255) NOT NULL, node_id VARCHAR(255), lease_expiry BIGINT NOT NULL, queue_time BIGINT NOT NULL, PRIMARY KEY(job_list, job_id))");
+					}catch(SQLException se){
+						// another node may have just created it:
+						if (!isTableExisting())
+							throw se;
+					}
+				}
+				String indexName = getUnqualifiedName(table) + "_lease_idx";
+				if (!isIndexExisting(indexName)){
+					try{
+						stmt.executeUpdate("CREATE INDEX " + indexName + " ON " + table + " (job_list, lease_expiry, queue_time)");
+					}catch(SQLException se){
+						if (!isIndexExisting(indexName))
+							throw se;
+					}
+				}
+			}catch(SQLException se){
+				close();
+				throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to open the cluster queue \"" + table + "\" in the database \"" + url + "\"!");
+			}finally{
+				close(stmt);
+			}
+		}
+		if (timer == null){
+			timer = new Timer("UWS-Cluster-" + jobList.getName(), true);
+			timer.schedule(new TimerTask(){
+				@Override
+				public void run(){
+					poll();
+				}
+			}, 0, Math.max(1, leaseDuration / 3));
+		}
+	}
+
+	/**
+	 * Tell whether the queue table exists in the database.
+	 *
+	 * @return	<i>true</i> if it exists, <i>false</i> otherwise.
+	 *
+	 * @throws SQLException	If the database metadata can not be read.
+	 */
+	private boolean isTableExisting() throws SQLException{
+		ResultSet rs = null;
+		try{
+			DatabaseMetaData dbMeta = getConnection().getMetaData();
+			rs = dbMeta.getTables(null, toStoredName(dbMeta, getSchemaName(table)), toStoredName(dbMeta, getUnqualifiedName(table)), null);
+			return rs.next();
+		}finally{
+			close(rs);
+		}
+	}
+
+	/**
+	 * Tell whether the given index of the queue table exists in the database.
+	 *
+	 * @param indexName	Name of the index.
+	 *
+	 * @return	<i>true</i> if it exists, <i>false</i> otherwise.
+	 *
+	 * @throws SQLException	If the database metadata can not be read.
+	 */
+	private boolean isIndexExisting(final String indexName) throws SQLException{
+		ResultSet rs = null;
+		try{
+			DatabaseMetaData dbMeta = getConnection().getMetaData();
+			rs = dbMeta.getIndexInfo(null, toStoredName(dbMeta, getSchemaName(table)), toStoredName(dbMeta, getUnqualifiedName(table)), false, true);
+			while(rs.next()){
+				if (indexName.equalsIgnoreCase(rs.getString(6)))
+					return true;
+			}
+			return false;
+		}finally{
+			close(rs);
+		}
+	}
+
+	/**
+	 * Get the given unquoted identifier as stored by the database.
+	 *
+	 * @param dbMeta	Database metadata.
+	 * @param name		An unquoted identifier. <i>MAY be NULL</i>
+	 *
+	 * @return	The name to look for in the database metadata.
+	 *
+	 * @throws SQLException	If the database metadata can not be read.
+	 */
+	private static String toStoredName(final DatabaseMetaData dbMeta, final String name) throws SQLException{
+		if (name == null)
+			return null;
+		else if (dbMeta.storesUpperCaseIdentifiers())
+			return name.toUpperCase();
+		else if (dbMeta.storesLowerCaseIdentifiers())
+			return name.toLowerCase();
+		else
+			return name;
+	}
+
+	/**
+	 * Get the schema prefix of the given table name.
+	 *
+	 * @param tableName	A table name, maybe prefixed by a schema (<code>schema.table</code>).
+	 *
+	 * @return	The schema name, or NULL if none.
+	 */
+	private static String getSchemaName(final String tableName){
+		int indDot = tableName.lastIndexOf('.');
+		return (indDot < 0) ? null : tableName.substring(0, indDot);
+	}
+
+	/**
+	 * Get the given table name without its schema prefix.
+	 *
+	 * @param tableName	A table name, maybe prefixed by a schema (<code>schema.table</code>).
+	 *
+	 * @return	The table name alone.
+	 */
+	private static String getUnqualifiedName(final String tableName){
+		return tableName.substring(tableName.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * Get the connection to the database.
+	 *
+	 * @return	The connection.
+	 *
+	 * @throws SQLException	If this manager is stopped.
+	 */
+	private Connection getConnection() throws SQLException{
+		if (connection == null)
+			throw new SQLException("This execution manager is stopped!");
+		return connection;
+	}
+
+	/**
+	 * Close the connection to the database.
+	 */
+	protected synchronized void close(){
+		if (connection != null){
+			try{
+				connection.close();
+			}catch(SQLException se){
+				logger.logUWS(LogLevel.WARNING, null, "QUEUE", "Error while closing the cluster queue database connection!", se);
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Add the specified job at the end of the queue, if not already queued.
+	 *
+	 * @param jobId	ID of the job to queue.
+	 *
+	 * @throws SQLException	If the job can not be queued.
+	 */
+	protected synchronized void enqueue(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT 1 FROM " + table + " WHERE job_list = ? AND job_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			rs = stmt.executeQuery();
+			if (rs.next())
+				return;
+			close(rs);
+			close(stmt);
+
+			stmt = getConnection().prepareStatement("INSERT INTO " + table + " (job_list, job_id, node_id, lease_expiry, queue_time) VALUES (?, ?, NULL, 0, ?)");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			stmt.setLong(3, System.currentTimeMillis());
+			try{
+				stmt.executeUpdate();
+			}catch(SQLException se){
+				// the job may have been queued by another node in the meantime:
+				if (!isQueued(jobId))
+					throw se;
+			}
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Tell whether the specified job is in the queue table.
+	 *
+	 * @param jobId	ID of a job.
+	 *
+	 * @return	<i>true</i> if queued or running, <i>false</i> otherwise.
+	 *
+	 * @throws SQLException	If the table can not be read.
+	 */
+	private boolean isQueued(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT 1 FROM " + table + " WHERE job_list = ? AND job_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			rs = stmt.executeQuery();
+			return rs.next();
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	/**
+	 * List the jobs that can be claimed now (i.e. never claimed or whose the
+	 * lease has expired), in the order of the queue.
+	 *
+	 * @param limit	Maximum number of jobs to list. <i>If &le;0, no limit.</i>
+	 *
+	 * @return	IDs of the claimable jobs.
+	 *
+	 * @throws SQLException	If the table can not be read.
+	 */
+	protected synchronized List<String> selectClaimable(final int limit) throws SQLException{
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT job_id FROM " + table + " WHERE job_list = ? AND lease_expiry < ? ORDER BY queue_time, job_id");
+			stmt.setString(1, jobList.getName());
+			stmt.setLong(2, System.currentTimeMillis());
+			if (limit > 0)
+				stmt.setMaxRows(limit);
+			rs = stmt.executeQuery();
+			List<String> ids = new ArrayList<String>();
+			while(rs.next())
+				ids.add(rs.getString(1));
+			return ids;
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Count the jobs that can be claimed now.
+	 *
+	 * @return	Number of claimable jobs.
+	 *
+	 * @throws SQLException	If the table can not be read.
+	 */
+	protected synchronized int countClaimable() throws SQLException{
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE job_list = ? AND lease_expiry < ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setLong(2, System.currentTimeMillis());
+			rs = stmt.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Claim the specified job for this node, if nobody else holds a valid
+	 * lease on it.
+	 *
+	 * @param jobId	ID of the job to claim.
+	 *
+	 * @return	<i>true</i> if claimed by this node, <i>false</i> otherwise.
+	 *
+	 * @throws SQLException	If the table can not be updated.
+	 */
+	protected synchronized boolean claim(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		try{
+			long now = System.currentTimeMillis();
+			stmt = getConnection().prepareStatement("UPDATE " + table + " SET node_id = ?, lease_expiry = ? WHERE job_list = ? AND job_id = ? AND lease_expiry < ?");
+			stmt.setString(1, nodeId);
+			stmt.setLong(2, now + leaseDuration);
+			stmt.setString(3, jobList.getName());
+			stmt.setString(4, jobId);
+			stmt.setLong(5, now);
+			return stmt.executeUpdate() == 1;
+		}catch(SQLException se){
+			// the row may be locked by another node claiming it at the same time:
+			logger.logUWS(LogLevel.DEBUG, null, "QUEUE", "Can not claim the job \"" + jobId + "\": " + se.getMessage(), null);
+			return false;
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Renew the lease of this node on the specified job.
+	 *
+	 * @param jobId	ID of the job whose the lease must be renewed.
+	 *
+	 * @return	<i>true</i> if renewed, <i>false</i> if this node does not hold
+	 *        	the lease any more (or if the job is not queued any more).
+	 *
+	 * @throws SQLException	If the table can not be updated.
+	 */
+	protected synchronized boolean renew(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		try{
+			stmt = getConnection().prepareStatement("UPDATE " + table + " SET lease_expiry = ? WHERE job_list = ? AND job_id = ? AND node_id = ?");
+			stmt.setLong(1, System.currentTimeMillis() + leaseDuration);
+			stmt.setString(2, jobList.getName());
+			stmt.setString(3, jobId);
+			stmt.setString(4, nodeId);
+			return stmt.executeUpdate() == 1;
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Give up the lease of this node on the specified job, so that it can be
+	 * claimed immediately by any node.
+	 *
+	 * @param jobId	ID of the job to give back to the queue.
+	 *
+	 * @throws SQLException	If the table can not be updated.
+	 */
+	protected synchronized void unclaim(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		try{
+			stmt = getConnection().prepareStatement("UPDATE " + table + " SET node_id = NULL, lease_expiry = 0 WHERE job_list = ? AND job_id = ? AND node_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			stmt.setString(3, nodeId);
+			stmt.executeUpdate();
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Remove the specified job from the queue table.
+	 *
+	 * @param jobId	ID of the job to remove.
+	 *
+	 * @throws SQLException	If the table can not be updated.
+	 */
+	protected synchronized void delete(final String jobId) throws SQLException{
+		PreparedStatement stmt = null;
+		try{
+			stmt = getConnection().prepareStatement("DELETE FROM " + table + " WHERE job_list = ? AND job_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			stmt.executeUpdate();
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Close silently the given statement.
+	 *
+	 * @param stmt	The statement to close. <i>MAY be NULL</i>
+	 */
+	private static void close(final Statement stmt){
+		try{
+			if (stmt != null)
+				stmt.close();
+		}catch(SQLException se){}
+	}
+
+	/**
+	 * Close silently the given result set.
+	 *
+	 * @param rs	The result set to close. <i>MAY be NULL</i>
+	 */
+	private static void close(final ResultSet rs){
+		try{
+			if (rs != null)
+				rs.close();
+		}catch(SQLException se){}
+	}
+
+}
@@ -16,10 +16,14 @@ package uws.job.serializer;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 import org.json.JSONException;
 import org.json.Json4Uws;
 
@@ -37,7 +41,7 @@ import uws.service.UWSUrl;
  * Lets serializing any UWS resource in JSON.
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (03/2018)
+ * @version 4.5 (10/2026)
  *
  * @see Json4Uws
  */
@@ -56,7 +60,19 @@ public class JSONSerializer extends UWSSerializer {
 
 	@Override
 	public String getJobList(final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws JSONException{
-		return Json4Uws.getJson(jobsList, owner, listRefiner).toString();
+		StringWriter json = new StringWriter();
+		try{
+			Json4Uws.writeJson(json, jobsList, owner, listRefiner);
+		}catch(IOException ioe){
+			// should never happen with a StringWriter
+			throw new JSONException(ioe);
+		}
+		return json.toString();
+	}
+
+	@Override
+	public void writeJobList(final Writer output, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws IOException, JSONException{
+		Json4Uws.writeJson(output, jobsList, owner, listRefiner);
 	}
 
 	@Override
@@ -64,6 +80,11 @@ public class JSONSerializer extends UWSSerializer {
 		return Json4Uws.getJson(job, null, false).toString();
 	}
 
+	@Override
+	public void writeJob(final Writer output, final UWSJob job, final boolean root) throws IOException, JSONException{
+		Json4Uws.getJson(job, null, false).write(output);
+	}
+
 	@Override
 	public String getJobRef(final UWSJob job, final UWSUrl jobsListUrl) throws JSONException{
 		return Json4Uws.getJson(job, jobsListUrl, true).toString();
@@ -16,14 +16,20 @@ package uws.job.serializer;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
 
 import uws.ISO8601Format;
 import uws.UWSException;
+import uws.UWSToolBox;
 import uws.job.ErrorSummary;
 import uws.job.JobList;
 import uws.job.Result;
@@ -41,8 +47,23 @@ import uws.service.UWSUrl;
  * 	<li>JSON by the class {@link JSONSerializer}</li>
  * </ul>
  *
+ * <p>
+ * 	The potentially big resources (i.e. a jobs list and a job) can also be
+ * 	written directly in a {@link Writer} or an {@link OutputStream} (see
+ * 	{@link #writeJobList(Writer, JobList, JobOwner, JobListRefiner, boolean)}
+ * 	and {@link #writeJob(Writer, UWSJob, boolean)}), without building first
+ * 	their whole serialization in memory. By default, these functions just
+ * 	write the string returned by {@link #getJobList(JobList, JobOwner, JobListRefiner, boolean)}
+ * 	and {@link #getJob(UWSJob, boolean)} ; they should be overwritten in
+ * 	order to really write the serialization incrementally (as done by
+ * 	{@link XMLSerializer} and {@link JSONSerializer}). However, the
+ * 	<code>get...</code> functions stay the reference: if one of them is
+ * 	overwritten by a sub-class but not its <code>write...</code>
+ * 	equivalent, the serialization is not written incrementally.
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (10/2017)
+ * @version 4.5 (10/2026)
  *
  * @see XMLSerializer
  * @see JSONSerializer
@@ -261,6 +282,104 @@ public abstract class UWSSerializer implements Serializable {
 	 */
 	public abstract String getJobList(final JobList jobsList, JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws Exception;
 
+	/**
+	 * Serializes the given jobs list, by filtering using user-specified
+	 * filters, directly in the given writer.
+	 *
+	 * <p>
+	 * 	By default, this function writes the string returned by
+	 * 	{@link #getJobList(JobList, JobOwner, JobListRefiner, boolean)}.
+	 * 	It should be overwritten so that jobs are written one after the other
+	 * 	(i.e. without building the whole serialization in memory).
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	The given writer is neither flushed nor closed.
+	 * </i></p>
+	 *
+	 * @param output		The writer in which the serialization must be written.
+	 * @param jobsList		The jobs list to serialize.
+	 * @param owner			The user which has asked the serialization of the
+	 *             			given jobs list. If NULL, all anonymous jobs are
+	 *             			displayed.
+	 * @param listRefiner	Represent all the specified job filters to apply ;
+	 *                    	only the job that pass through this filter should be
+	 *                    	displayed. If NULL, all jobs are displayed.
+	 * @param root			<code>false</code> if the jobs list to serialize
+	 *            			will be included in a top level serialization (for a
+	 *            			jobs list: uws),
+	 *            			<code>true</code> otherwise.
+	 *
+	 * @throws IOException	If an error occurs while writing the serialization.
+	 * @throws Exception	If there is an error during the serialization.
+	 *
+	 * @since 4.5
+	 */
+	public void writeJobList(final Writer output, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws IOException, Exception{
+		writeJobListString(output, jobsList, owner, listRefiner, root);
+	}
+
+	/**
+	 * Write the string returned by
+	 * {@link #getJobList(JobList, JobOwner, JobListRefiner, boolean)} in the
+	 * given writer.
+	 *
+	 * @see #writeJobList(Writer, JobList, JobOwner, JobListRefiner, boolean)
+	 *
+	 * @since 4.5
+	 */
+	private void writeJobListString(final Writer output, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws IOException, Exception{
+		String serialization = getJobList(jobsList, owner, listRefiner, root);
+		if (serialization == null)
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, "Incorrect serialization value (=NULL) ! => impossible to serialize " + jobsList + ".");
+		output.write(serialization);
+	}
+
+	/**
+	 * Serializes the given jobs list, by filtering using user-specified
+	 * filters, directly in the given output stream (encoded in UTF-8).
+	 *
+	 * <p><i>Note 1:
+	 * 	If {@link #getJobList(JobList, JobOwner, JobListRefiner, boolean)}
+	 * 	is overwritten more specifically than
+	 * 	{@link #writeJobList(Writer, JobList, JobOwner, JobListRefiner, boolean)},
+	 * 	the string it returns is written instead, so that a sub-class
+	 * 	customizing only this function keeps working.
+	 * </i></p>
+	 *
+	 * <p><i>Note 2:
+	 * 	The given stream is flushed but not closed.
+	 * </i></p>
+	 *
+	 * @param output		The stream in which the serialization must be written.
+	 * @param jobsList		The jobs list to serialize.
+	 * @param owner			The user which has asked the serialization of the
+	 *             			given jobs list. If NULL, all anonymous jobs are
+	 *             			displayed.
+	 * @param listRefiner	Represent all the specified job filters to apply ;
+	 *                    	only the job that pass through this filter should be
+	 *                    	displayed. If NULL, all jobs are displayed.
+	 * @param root			<code>false</code> if the jobs list to serialize
+	 *            			will be included in a top level serialization (for a
+	 *            			jobs list: uws),
+	 *            			<code>true</code> otherwise.
+	 *
+	 * @throws IOException	If an error occurs while writing the serialization.
+	 * @throws Exception	If there is an error during the serialization.
+	 *
+	 * @see #writeJobList(Writer, JobList, JobOwner, JobListRefiner, boolean)
+	 *
+	 * @since 4.5
+	 */
+	public final void writeJobList(final OutputStream output, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws IOException, Exception{
+		Writer writer = getWriter(output);
+		if (isStreamable("getJobList", JobList.class, JobOwner.class, JobListRefiner.class, boolean.class))
+			writeJobList(writer, jobsList, owner, listRefiner, root);
+		else
+			writeJobListString(writer, jobsList, owner, listRefiner, root);
+		writer.flush();
+	}
+
 	/**
 	 * Serializes the whole given job.
 	 *
@@ -274,6 +393,137 @@ public abstract class UWSSerializer implements Serializable {
 	 */
 	public abstract String getJob(final UWSJob job, final boolean root) throws Exception;
 
+	/**
+	 * Serializes the whole given job directly in the given writer.
+	 *
+	 * <p>
+	 * 	By default, this function writes the string returned by
+	 * 	{@link #getJob(UWSJob, boolean)}. It should be overwritten so that
+	 * 	the job is written part by part (i.e. without building the whole
+	 * 	serialization in memory).
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	The given writer is neither flushed nor closed.
+	 * </i></p>
+	 *
+	 * @param output		The writer in which the serialization must be written.
+	 * @param job			The job to serialize.
+	 * @param root			<i>false</i> if the job to serialize will be included
+	 * 						in a top level serialization (for a job: jobList), <i>true</i> otherwise.
+	 *
+	 * @throws IOException	If an error occurs while writing the serialization.
+	 * @throws Exception	If there is an error during the serialization.
+	 *
+	 * @since 4.5
+	 */
+	public void writeJob(final Writer output, final UWSJob job, final boolean root) throws IOException, Exception{
+		writeJobString(output, job, root);
+	}
+
+	/**
+	 * Write the string returned by {@link #getJob(UWSJob, boolean)} in the
+	 * given writer.
+	 *
+	 * @see #writeJob(Writer, UWSJob, boolean)
+	 *
+	 * @since 4.5
+	 */
+	private void writeJobString(final Writer output, final UWSJob job, final boolean root) throws IOException, Exception{
+		String serialization = getJob(job, root);
+		if (serialization == null)
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, "Incorrect serialization value (=NULL) ! => impossible to serialize the job \"" + job.getJobId() + "\".");
+		output.write(serialization);
+	}
+
+	/**
+	 * Serializes the whole given job directly in the given output stream
+	 * (encoded in UTF-8).
+	 *
+	 * <p><i>Note 1:
+	 * 	If {@link #getJob(UWSJob, boolean)} is overwritten more specifically
+	 * 	than {@link #writeJob(Writer, UWSJob, boolean)}, the string it returns
+	 * 	is written instead, so that a sub-class customizing only this function
+	 * 	keeps working.
+	 * </i></p>
+	 *
+	 * <p><i>Note 2:
+	 * 	The given stream is flushed but not closed.
+	 * </i></p>
+	 *
+	 * @param output		The stream in which the serialization must be written.
+	 * @param job			The job to serialize.
+	 * @param root			<i>false</i> if the job to serialize will be included
+	 * 						in a top level serialization (for a job: jobList), <i>true</i> otherwise.
+	 *
+	 * @throws IOException	If an error occurs while writing the serialization.
+	 * @throws Exception	If there is an error during the serialization.
+	 *
+	 * @see #writeJob(Writer, UWSJob, boolean)
+	 *
+	 * @since 4.5
+	 */
+	public final void writeJob(final OutputStream output, final UWSJob job, final boolean root) throws IOException, Exception{
+		Writer writer = getWriter(output);
+		if (isStreamable("getJob", UWSJob.class, boolean.class))
+			writeJob(writer, job, root);
+		else
+			writeJobString(writer, job, root);
+		writer.flush();
+	}
+
+	/**
+	 * Tell whether the given serialization function can be replaced by its
+	 * <code>write...</code> equivalent (i.e. same name but starting with
+	 * "write" instead of "get", and with a {@link Writer} as first parameter).
+	 *
+	 * <p>
+	 * 	It is the case only if the <code>write...</code> function is
+	 * 	implemented in the same class as the <code>get...</code> one, or in a
+	 * 	sub-class of it. Otherwise, the <code>get...</code> function has been
+	 * 	customized without its <code>write...</code> equivalent, which would
+	 * 	then not return the same serialization.
+	 * </p>
+	 *
+	 * @param getter		Name of the function returning a serialization.
+	 * @param paramTypes	Types of its parameters.
+	 *
+	 * @return	<code>true</code> if the <code>write...</code> function can be
+	 *        	used,
+	 *        	<code>false</code> if the <code>get...</code> one must be used.
+	 *
+	 * @since 4.5
+	 */
+	private boolean isStreamable(final String getter, final Class<?>... paramTypes){
+		Class<?>[] writerParams = new Class<?>[paramTypes.length + 1];
+		writerParams[0] = Writer.class;
+		System.arraycopy(paramTypes, 0, writerParams, 1, paramTypes.length);
+		try{
+			Class<?> getterClass = getClass().getMethod(getter, paramTypes).getDeclaringClass();
+			Class<?> writerClass = getClass().getMethod("write" + getter.substring(3), writerParams).getDeclaringClass();
+			return getterClass.isAssignableFrom(writerClass);
+		}catch(NoSuchMethodException nsme){
+			return false;
+		}
+	}
+
+	/**
+	 * Get a buffered writer encoding characters in UTF-8 in the given stream.
+	 *
+	 * @param output	The stream to write into.
+	 *
+	 * @return	The corresponding writer.
+	 *
+	 * @throws IOException	If the encoding is not supported.
+	 *
+	 * @since 4.5
+	 */
+	protected static Writer getWriter(final OutputStream output) throws IOException{
+		if (output == null)
+			throw new NullPointerException("Missing serialization output stream!");
+		return new BufferedWriter(new OutputStreamWriter(output, UWSToolBox.DEFAULT_CHAR_ENCODING));
+	}
+
 	/**
 	 * Serializes just a reference on the given job.
 	 *
@@ -16,11 +16,14 @@ package uws.job.serializer;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLEncoder;
 import java.util.Iterator;
 
@@ -40,8 +43,20 @@ import uws.service.request.UploadFile;
 /**
  * Lets serializing any UWS resource in XML.
  *
+ * <p><i>Note:
+ * 	A jobs list and a job are written incrementally by
+ * 	{@link #writeJobList(Writer, JobList, JobOwner, JobListRefiner, boolean)}
+ * 	and {@link #writeJob(Writer, UWSJob, boolean)}. The functions
+ * 	{@link #getJobList(JobList, JobOwner, JobListRefiner, boolean)} and
+ * 	{@link #getJob(UWSJob, boolean)} just return what these functions write.
+ * 	So, to customize these serializations, the <code>write...</code>
+ * 	functions should be overwritten. If only a <code>get...</code> function
+ * 	is overwritten, the string it returns is written instead (see
+ * 	{@link UWSSerializer#writeJob(java.io.OutputStream, UWSJob, boolean)}).
+ * </i></p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (04/2018)
+ * @version 4.5 (10/2026)
  */
 public class XMLSerializer extends UWSSerializer {
 	private static final long serialVersionUID = 1L;
@@ -180,7 +195,14 @@ public class XMLSerializer extends UWSSerializer {
 
 	@Override
 	public String getJobList(final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws Exception{
-		StringBuffer xml = new StringBuffer(getHeader());
+		StringWriter xml = new StringWriter();
+		writeJobList(xml, jobsList, owner, listRefiner, root);
+		return xml.toString();
+	}
+
+	@Override
+	public void writeJobList(final Writer xml, final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws IOException, Exception{
+		xml.write(getHeader());
 
 		xml.append("<jobs version=\"").append(UWS.VERSION).append('"').append(getUWSNamespace(true));
 		/* NOTE: NO ATTRIBUTE "name" IN THE XML SCHEMA!
@@ -192,26 +214,38 @@ public class XMLSerializer extends UWSSerializer {
 
 		UWSUrl jobsListUrl = jobsList.getUrl();
 
-		// Security filter: retrieve only the jobs of the specified owner:
-		Iterator<UWSJob> it = jobsList.getJobs(owner);
-
-		/* User filter: filter the jobs in function of filters specified by the
-		 * user: */
-		if (listRefiner != null)
-			it = listRefiner.refine(it);
+		/* Security filter: retrieve only the jobs of the specified owner
+		 * + User filter: filter the jobs in function of filters specified by the
+		 * user (if possible, thanks to the indexes of the jobs list): */
+		Iterator<UWSJob> it = (listRefiner != null) ? listRefiner.refine(jobsList, owner) : jobsList.getJobs(owner);
 
-		// Append the jobs' description:
+		// Append the jobs' description (one after the other):
 		while(it.hasNext())
 			xml.append("\n\t").append(getJobRef(it.next(), jobsListUrl));
 
+		/* note: no link to the next page (if any) here, since the UWS 1.1
+		 *       schema does not allow it ; it is given by ListJobs in the
+		 *       HTTP header "Link". */
+
 		xml.append("\n</jobs>");
+	}
 
+	@Override
+	public String getJob(final UWSJob job, final boolean root) throws UWSException{
+		StringWriter xml = new StringWriter();
+		try{
+			writeJob(xml, job, root);
+		}catch(IOException ioe){
+			// should never happen with a StringWriter
+			throw new UWSException(ioe);
+		}
 		return xml.toString();
 	}
 
 	@Override
-	public String getJob(final UWSJob job, final boolean root) throws UWSException{
-		StringBuffer xml = new StringBuffer(root ? getHeader() : "");
+	public void writeJob(final Writer xml, final UWSJob job, final boolean root) throws IOException, UWSException{
+		if (root)
+			xml.write(getHeader());
 		String newLine = "\n\t";
 
 		// general information:
@@ -230,23 +264,25 @@ public class XMLSerializer extends UWSSerializer {
 
 		tabPrefix = "\t";
 		newLine = "\n";
+		try{
+			// parameters:
+			xml.append(newLine).append(getAdditionalParameters(job, false));
 
-		// parameters:
-		xml.append(newLine).append(getAdditionalParameters(job, false));
-
-		// results:
-		xml.append(newLine).append(getResults(job, false));
+			// results:
+			xml.append(newLine).append(getResults(job, false));
 
-		// errorSummary:
-		if (job.getErrorSummary() != null)
-			xml.append(newLine).append(getErrorSummary(job.getErrorSummary(), false));
+			// errorSummary:
+			if (job.getErrorSummary() != null)
+				xml.append(newLine).append(getErrorSummary(job.getErrorSummary(), false));
 
-		// jobInfo:
-		if (job.getJobInfo() != null)
-			xml.append(newLine).append(getJobInfo(job));
+			// jobInfo:
+			if (job.getJobInfo() != null)
+				xml.append(newLine).append(getJobInfo(job));
+		}finally{
+			tabPrefix = "";
+		}
 
-		tabPrefix = "";
-		return xml.append("\n</job>").toString();
+		xml.append("\n</job>");
 	}
 
 	@Override
@@ -0,0 +1,172 @@
+package uws.job.serializer.filter;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.UnsupportedEncodingException;
+
+import javax.xml.bind.DatatypeConverter;
+
+import uws.UWSToolBox;
+import uws.job.UWSJob;
+
+/**
+ * Job filter keeping only the jobs coming after a given position in a jobs
+ * list sorted by descending creation time and then by ascending job ID.
+ *
+ * <p>
+ * 	This position is given by a cursor (i.e. the value of the parameter
+ * 	<code>CURSOR</code>) returned with the previous page of a jobs list (see
+ * 	{@link JobListRefiner#getNextCursor()}). This cursor is opaque for the
+ * 	client ; it is just an URL-safe Base-64 encoding of:
+ * </p>
+ * <ul>
+ * 	<li>the creation time of the last job of the previous page,</li>
+ * 	<li>the ID of this job,</li>
+ * 	<li>the number of jobs already returned in the previous pages (so that a
+ * 		<code>LAST</code> filter still applies to the whole list).</li>
+ * </ul>
+ *
+ * <p><i>Note:
+ * 	Since jobs are identified by their creation time and ID, a cursor stays
+ * 	valid even if the last job of the previous page has been destroyed in the
+ * 	meantime.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public final class CursorFilter implements JobFilter {
+
+	/** Creation time (in milliseconds) of the last job of the previous page. */
+	private final long time;
+
+	/** ID of the last job of the previous page. */
+	private final String jobId;
+
+	/** Number of jobs returned in all the previous pages. */
+	private final int offset;
+
+	/**
+	 * Build a {@link CursorFilter} keeping only the jobs after the given one.
+	 *
+	 * @param time		Creation time (in milliseconds) of the last returned job.
+	 * @param jobId		ID of the last returned job.
+	 * @param offset	Number of jobs already returned.
+	 *
+	 * @throws NullPointerException	If the given job ID is NULL.
+	 */
+	public CursorFilter(final long time, final String jobId, final int offset) throws NullPointerException{
+		if (jobId == null)
+			throw new NullPointerException("Missing job ID! Can not create a CursorFilter.");
+		this.time = time;
+		this.jobId = jobId;
+		this.offset = offset;
+	}
+
+	/**
+	 * Build the {@link CursorFilter} corresponding to the given cursor.
+	 *
+	 * @param cursor	A cursor, as returned by {@link #toString()}.
+	 *
+	 * @return	The corresponding filter.
+	 *
+	 * @throws IllegalArgumentException	If the given cursor is incorrect.
+	 */
+	public static CursorFilter parse(final String cursor) throws IllegalArgumentException{
+		if (cursor == null || cursor.trim().isEmpty())
+			throw new IllegalArgumentException("Empty cursor!");
+		try{
+			// Decode the URL-safe Base-64 string:
+			StringBuffer buf = new StringBuffer(cursor.trim().replace('-', '+').replace('_', '/'));
+			while(buf.length() % 4 != 0)
+				buf.append('=');
+			String decoded = new String(DatatypeConverter.parseBase64Binary(buf.toString()), UWSToolBox.DEFAULT_CHAR_ENCODING);
+
+			// Extract the 3 items: time, offset and job ID:
+			int sep1 = decoded.indexOf(':'), sep2 = (sep1 < 0) ? -1 : decoded.indexOf(':', sep1 + 1);
+			if (sep2 < 0)
+				throw new IllegalArgumentException("Unknown cursor format!");
+			int offset = Integer.parseInt(decoded.substring(sep1 + 1, sep2));
+			if (offset < 0)
+				throw new IllegalArgumentException("Negative offset!");
+			return new CursorFilter(Long.parseLong(decoded.substring(0, sep1)), decoded.substring(sep2 + 1), offset);
+		}catch(NumberFormatException nfe){
+			throw new IllegalArgumentException("Unknown cursor format!", nfe);
+		}catch(UnsupportedEncodingException uee){
+			throw new IllegalArgumentException("Unknown cursor format!", uee);
+		}
+	}
+
+	/**
+	 * Get the creation time of the last job of the previous page.
+	 *
+	 * @return	A creation time (in milliseconds).
+	 */
+	public final long getTime(){
+		return time;
+	}
+
+	/**
+	 * Get the ID of the last job of the previous page.
+	 *
+	 * @return	A job ID.
+	 */
+	public final String getJobId(){
+		return jobId;
+	}
+
+	/**
+	 * Get the number of jobs returned in all the previous pages.
+	 *
+	 * @return	Number of already returned jobs.
+	 */
+	public final int getOffset(){
+		return offset;
+	}
+
+	@Override
+	public boolean match(final UWSJob job){
+		if (job == null || job.getCreationTime() == null)
+			return false;
+		long jobTime = job.getCreationTime().getTime();
+		return (jobTime < time) || (jobTime == time && job.getJobId().compareTo(jobId) > 0);
+	}
+
+	/**
+	 * Get the opaque and URL-safe representation of this cursor.
+	 *
+	 * @return	The cursor to give back in the parameter <code>CURSOR</code>.
+	 */
+	@Override
+	public String toString(){
+		try{
+			String b64 = DatatypeConverter.printBase64Binary((time + ":" + offset + ":" + jobId).getBytes(UWSToolBox.DEFAULT_CHAR_ENCODING));
+			int end = b64.length();
+			while(end > 0 && b64.charAt(end - 1) == '=')
+				end--;
+			return b64.substring(0, end).replace('+', '-').replace('/', '_');
+		}catch(UnsupportedEncodingException uee){
+			// should never happen with UTF-8
+			throw new IllegalStateException(uee);
+		}
+	}
+
+}
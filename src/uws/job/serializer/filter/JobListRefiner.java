@@ -16,9 +16,12 @@ package uws.job.serializer.filter;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2017-2018 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2017-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ *                       Astronomisches Rechen Institut (ARI)
  */
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.text.ParseException;
 import java.util.AbstractList;
 import java.util.ArrayList;
@@ -34,8 +37,13 @@ import javax.servlet.http.HttpServletRequest;
 
 import uws.ISO8601Format;
 import uws.UWSException;
+import uws.UWSToolBox;
 import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.JobListIndex;
 import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+import uws.service.UWSUrl;
 
 /**
  * Let filter (and optionally order) a list of jobs according to the filter
@@ -67,7 +75,23 @@ import uws.job.UWSJob;
  *
  * 	                 <p><i><b>Note:</b> If several <code>LAST</code>
  * 	                 parameters are provided, only the smallest positive (and
- * 	                 not null) value will be taken into account.</i></p>
+ * 	                 not null) value will be taken into account.</i></p></li>
+ *
+ * 	<li><b>MAXJOBS</b>: a positive integer number is expected. Only the
+ * 	                    MAXJOBS first jobs will be returned. The jobs will be
+ * 	                    sorted by descending creationTime and then by
+ * 	                    ascending jobId. If more jobs are available, an
+ * 	                    opaque cursor is provided to get the next page (see
+ * 	                    {@link #getNextCursor()} and
+ * 	                    {@link #getNextPageURL(UWSUrl)}).
+ *
+ * 	                    <p><i><b>Note:</b> If several <code>MAXJOBS</code>
+ * 	                    parameters are provided, only the smallest positive
+ * 	                    (and not null) value will be taken into account.</i></p></li>
+ *
+ * 	<li><b>CURSOR</b>: a cursor returned with a previous page is expected.
+ * 	                   Only the jobs coming after this previous page will
+ * 	                   pass through the filter (see {@link CursorFilter}).</li>
  * </ul>
  *
  * <p><i><b>IMPORTANT Note:</b>
@@ -77,8 +101,21 @@ import uws.job.UWSJob;
  * 	existed.
  * </i></p>
  *
- * @author Gr&eacute;gory Mantelet (ARI)
- * @version 4.3 (10/2017)
+ * <p><i>Note:
+ * 	When only these filters are set, {@link #refine(JobList, JobOwner)}
+ * 	evaluates them thanks to the secondary indexes of the jobs list (see
+ * 	{@link JobList#getIndex(JobOwner)}) instead of reading all jobs. Then,
+ * 	reading a page of MAXJOBS jobs costs only about MAXJOBS reads, whatever
+ * 	is the size of the jobs list.
+ * </i></p>
+ *
+ * <p><i>Note:
+ * 	An instance of this class is designed for one request: the cursor of the
+ * 	next page is the one of the last refined list of jobs.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (ARI;CDS)
+ * @version 4.5 (10/2026)
  * @since 4.3
  */
 public class JobListRefiner {
@@ -117,6 +154,51 @@ public class JobListRefiner {
 	 * </i></p> */
 	protected boolean reverseOrder = false;
 
+	/** Maximum number of jobs to return in one page.
+	 *
+	 * <p><i>Note:
+	 * 	If negative, all jobs are returned in one page.
+	 * </i></p>
+	 *
+	 * @since 4.5 */
+	protected int maxJobs = -1;
+
+	/** Position after which jobs must be returned.
+	 * <i>NULL if the first page is requested.</i>
+	 *
+	 * @since 4.5 */
+	protected CursorFilter cursor = null;
+
+	/** Cursor of the page following the last refined list of jobs.
+	 * <i>NULL if there is no next page.</i>
+	 *
+	 * @since 4.5 */
+	protected String nextCursor = null;
+
+	/** HTTP-GET parameters (name and values) interpreted by this refiner,
+	 * except CURSOR. They are copied in the URL of the next page.
+	 *
+	 * @since 4.5 */
+	protected final List<String[]> queryParams = new ArrayList<String[]>();
+
+	/** Jobs of the page prepared by {@link #preparePage(JobList, JobOwner)}.
+	 * <i>NULL if no page has been prepared.</i>
+	 *
+	 * @since 4.5 */
+	protected List<UWSJob> preparedPage = null;
+
+	/** Jobs list of the page prepared by
+	 * {@link #preparePage(JobList, JobOwner)}.
+	 *
+	 * @since 4.5 */
+	protected JobList preparedList = null;
+
+	/** Owner of the jobs of the page prepared by
+	 * {@link #preparePage(JobList, JobOwner)}.
+	 *
+	 * @since 4.5 */
+	protected JobOwner preparedOwner = null;
+
 	/**
 	 * Empty constructor. No filter and no sorting is done here.
 	 * All jobs given to the {@link #refine(Iterator)} function will then be
@@ -161,7 +243,16 @@ public class JobListRefiner {
 	 *
 	 * 	                 <p><i><b>Note:</b> If several <code>LAST</code>
 	 * 	                 parameters are provided, only the smallest positive
-	 * 	                 (and not null) value will be taken into account.</i></p>
+	 * 	                 (and not null) value will be taken into account.</i></p></li>
+	 *
+	 * 	<li><b>MAXJOBS</b>: a positive integer number is expected. Only the
+	 * 	                    MAXJOBS first jobs will be returned, sorted by
+	 * 	                    descending creationTime and then by ascending
+	 * 	                    jobId.</li>
+	 *
+	 * 	<li><b>CURSOR</b>: a cursor returned with a previous page is expected.
+	 * 	                   Only the jobs coming after this previous page will
+	 * 	                   pass through the filter.</li>
 	 * </ul>
 	 *
 	 * <p><i><b>IMPORTANT Note:</b>
@@ -174,8 +265,8 @@ public class JobListRefiner {
 	 * @param request	An HTTP request in which HTTP-GET parameters correspond
 	 *               	to Job filters to create.
 	 *
-	 * @throws UWSException	If the value of at least one AFTER, PHASE or LAST
-	 *                     	parameter is incorrect.
+	 * @throws UWSException	If the value of at least one AFTER, PHASE, LAST,
+	 *                     	MAXJOBS or CURSOR parameter is incorrect.
 	 */
 	public JobListRefiner(final HttpServletRequest request) throws UWSException{
 		String pName;
@@ -244,6 +335,41 @@ public class JobListRefiner {
 						}
 					}
 				}
+			}else if (pName.toUpperCase().equals("MAXJOBS")){
+				for(String p : values){
+					if (p != null){
+						try{
+							// resolve the number of jobs to fetch in one page:
+							int max = Integer.parseInt(p);
+							/* update the page size (the value is updated only
+							 * if the new value is positive and smaller): */
+							if (max > 0 && (maxJobs < 0 || max < maxJobs))
+								maxJobs = max;
+							else if (max <= 0)
+								throw new UWSException(UWSException.BAD_REQUEST, "Incorrect MAXJOBS value: \"" + p + "\"! A strictly positive integer was expected.");
+						}catch(NumberFormatException nfe){
+							throw new UWSException(UWSException.BAD_REQUEST, "Incorrect MAXJOBS value: \"" + p + "\"! A strictly positive integer was expected.");
+						}
+					}
+				}
+			}else if (pName.toUpperCase().equals("CURSOR")){
+				if (values.length > 1)
+					throw new UWSException(UWSException.BAD_REQUEST, "Too many CURSOR values! Only one cursor is allowed.");
+				else if (values.length == 1 && values[0] != null){
+					try{
+						cursor = CursorFilter.parse(values[0]);
+					}catch(IllegalArgumentException iae){
+						throw new UWSException(UWSException.BAD_REQUEST, "Incorrect CURSOR value: \"" + values[0] + "\"! It must be the cursor returned with the previous page of jobs.");
+					}
+				}
+				continue;
+			}else
+				continue;
+
+			// Remember the interpreted parameter, to build the URL of the next page:
+			for(String p : values){
+				if (p != null)
+					queryParams.add(new String[]{pName,p});
 			}
 		}
 
@@ -261,6 +387,10 @@ public class JobListRefiner {
 		if (afterFilter != null)
 			filters.add(afterFilter);
 
+		// Set the CURSOR filter:
+		if (cursor != null)
+			filters.add(cursor);
+
 		// Set the LAST filter:
 		if (topSize >= 0){
 			/* jobs are sorted by descending creation-time (so that only the
@@ -271,6 +401,238 @@ public class JobListRefiner {
 			reverseOrder = false;
 		}
 
+		// Set the pagination (MAXJOBS and/or CURSOR):
+		if (maxJobs > 0 || cursor != null){
+			/* pages need a stable total order: by descending creation-time
+			 * and then by ascending job ID (like the jobs list index): */
+			sortComp = new JobKeyComparator();
+			reverseOrder = false;
+		}
+
+	}
+
+	/**
+	 * Filter (and eventually sort and/or limit in size) the jobs of the given
+	 * user in the given jobs list.
+	 *
+	 * <p>
+	 * 	If all the filters of this refiner can be evaluated with the secondary
+	 * 	indexes of the jobs list (i.e. only {@link PhasesFilter},
+	 * 	{@link NoArchivedFilter} and {@link AfterFilter}) and if this class is
+	 * 	not extended, only the selected
+	 * 	jobs are read ; they are then returned by descending creation time.
+	 * 	Otherwise, this function is equivalent to
+	 * 	<code>refine(jobList.getJobs(owner))</code>.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	If a page of the same jobs list and owner has already been prepared
+	 * 	with {@link #preparePage(JobList, JobOwner)}, this page is returned
+	 * 	without filtering the jobs again.
+	 * </i></p>
+	 *
+	 * @param jobList	Jobs list to filter.
+	 * @param owner		Owner of the jobs to filter.
+	 *             		<i>If NULL, all jobs of the list are filtered.</i>
+	 *
+	 * @return	The filtered (and eventually sorted/limited) job list.
+	 *
+	 * @see #refine(Iterator)
+	 *
+	 * @since 4.5
+	 */
+	public Iterator<UWSJob> refine(final JobList jobList, final JobOwner owner){
+		// Page already prepared:
+		if (preparedPage != null && preparedList == jobList && preparedOwner == owner)
+			return preparedPage.iterator();
+
+		JobListIndex index = (jobList == null) ? null : jobList.getIndex(owner);
+
+		// Determine whether all filters can be evaluated with the index:
+		List<ExecutionPhase> phases = null;
+		Date after = null;
+		/* note: an extension of this class may filter jobs differently in
+		 *       refine(Iterator) ; then, the index can not be used: */
+		boolean indexable = (index != null) && getClass() == JobListRefiner.class && (sortComp == null || sortComp instanceof JobComparator || sortComp instanceof JobKeyComparator) && !reverseOrder;
+		for(int i = 0; indexable && i < filters.size(); i++){
+			JobFilter filter = filters.get(i);
+			if (filter instanceof PhasesFilter){
+				if (phases == null)
+					phases = new ArrayList<ExecutionPhase>(((PhasesFilter)filter).phases);
+				else
+					phases.retainAll(((PhasesFilter)filter).phases);
+			}else if (filter instanceof NoArchivedFilter && filter.getClass() == NoArchivedFilter.class){
+				List<ExecutionPhase> notArchived = new ArrayList<ExecutionPhase>();
+				for(ExecutionPhase p : ExecutionPhase.values()){
+					if (p != ExecutionPhase.ARCHIVED)
+						notArchived.add(p);
+				}
+				if (phases == null)
+					phases = notArchived;
+				else
+					phases.retainAll(notArchived);
+			}else if (filter instanceof AfterFilter){
+				Date d = ((AfterFilter)filter).getDate();
+				if (after == null || d.after(after))
+					after = d;
+			}else if (filter != cursor)
+				indexable = false;
+		}
+
+		if (indexable){
+			if (cursor == null)
+				return paginate(index.select(phases, after, getRemainingSize()));
+			else
+				return paginate(index.select(phases, after, cursor.getTime(), cursor.getJobId(), getRemainingSize()));
+		}else
+			return refine((jobList == null) ? new ArrayList<UWSJob>().iterator() : jobList.getJobs(owner));
+	}
+
+	/**
+	 * Get the maximum number of jobs that can still be returned with respect
+	 * to the LAST filter, considering the jobs returned in the previous pages.
+	 *
+	 * @return	The remaining number of jobs,
+	 *        	or a negative value if there is no LAST filter.
+	 *
+	 * @since 4.5
+	 */
+	protected final int getRemainingSize(){
+		if (topSize < 0 || cursor == null)
+			return topSize;
+		else
+			return Math.max(0, topSize - cursor.getOffset());
+	}
+
+	/**
+	 * Read (at most) the {@link #maxJobs} first jobs of the given iterator
+	 * and, if more jobs are available, prepare the cursor of the next page.
+	 *
+	 * <p><i>Note:
+	 * 	If there is no MAXJOBS parameter, the given iterator is returned as
+	 * 	such.
+	 * </i></p>
+	 *
+	 * @param it	Iterator on all the filtered and sorted jobs.
+	 *
+	 * @return	Iterator on the jobs of the requested page.
+	 *
+	 * @see #getNextCursor()
+	 *
+	 * @since 4.5
+	 */
+	protected Iterator<UWSJob> paginate(final Iterator<UWSJob> it){
+		nextCursor = null;
+		if (maxJobs <= 0)
+			return it;
+
+		/* note: the page is read immediately, so that the cursor of the next
+		 *       page is known before serializing the jobs: */
+		List<UWSJob> page = new ArrayList<UWSJob>(Math.min(maxJobs, 1024));
+		while(page.size() < maxJobs && it.hasNext())
+			page.add(it.next());
+
+		if (!page.isEmpty() && it.hasNext()){
+			UWSJob last = page.get(page.size() - 1);
+			int offset = ((cursor == null) ? 0 : cursor.getOffset()) + page.size();
+			nextCursor = (new CursorFilter(last.getCreationTime().getTime(), last.getJobId(), offset)).toString();
+		}
+
+		return page.iterator();
+	}
+
+	/**
+	 * Get the cursor to use to get the page following the last refined list
+	 * of jobs.
+	 *
+	 * @return	The cursor of the next page,
+	 *        	or NULL if there is no next page (or if nothing has been
+	 *        	refined yet).
+	 *
+	 * @since 4.5
+	 */
+	public final String getNextCursor(){
+		return nextCursor;
+	}
+
+	/**
+	 * Get the URL of the page following the last refined list of jobs.
+	 *
+	 * <p>
+	 * 	This URL is the URL of the jobs list with all the filter parameters
+	 * 	given to build this refiner (e.g. PHASE, AFTER, MAXJOBS), plus the
+	 * 	CURSOR of the next page.
+	 * </p>
+	 *
+	 * @param jobsListUrl	URL of the jobs list.
+	 *                   	<i>If NULL, a relative URL (i.e. just the query
+	 *                   	part) is returned.</i>
+	 *
+	 * @return	URL of the next page,
+	 *        	or NULL if there is no next page.
+	 *
+	 * @since 4.5
+	 */
+	public String getNextPageURL(final UWSUrl jobsListUrl){
+		if (nextCursor == null)
+			return null;
+
+		StringBuffer url = new StringBuffer();
+		if (jobsListUrl != null && jobsListUrl.getRequestURL() != null)
+			url.append(jobsListUrl.getRequestURL());
+		url.append('?');
+		try{
+			for(String[] param : queryParams)
+				url.append(URLEncoder.encode(param[0], UWSToolBox.DEFAULT_CHAR_ENCODING)).append('=').append(URLEncoder.encode(param[1], UWSToolBox.DEFAULT_CHAR_ENCODING)).append('&');
+		}catch(UnsupportedEncodingException uee){
+			// should never happen with UTF-8
+			throw new IllegalStateException(uee);
+		}
+		// note: the cursor is already URL-safe
+		url.append("CURSOR=").append(nextCursor);
+
+		return url.toString();
+	}
+
+	/**
+	 * Select now the page of jobs to return, so that the cursor and the URL
+	 * of the next page are known before serializing this page.
+	 *
+	 * <p>
+	 * 	The next call to {@link #refine(JobList, JobOwner)} with the same jobs
+	 * 	list and owner returns this page.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done if there is no MAXJOBS parameter: the filtered jobs
+	 * 	would then all be kept in memory.
+	 * </i></p>
+	 *
+	 * @param jobList	Jobs list to filter.
+	 * @param owner		Owner of the jobs to filter.
+	 *             		<i>If NULL, all jobs of the list are filtered.</i>
+	 *
+	 * @return	<code>true</code> if the page has been prepared,
+	 *        	<code>false</code> if there is no pagination.
+	 *
+	 * @see #getNextPageURL(UWSUrl)
+	 *
+	 * @since 4.5
+	 */
+	public boolean preparePage(final JobList jobList, final JobOwner owner){
+		preparedPage = null;
+		if (maxJobs <= 0)
+			return false;
+
+		List<UWSJob> page = new ArrayList<UWSJob>(Math.min(maxJobs, 1024));
+		Iterator<UWSJob> it = refine(jobList, owner);
+		while(it.hasNext())
+			page.add(it.next());
+
+		preparedList = jobList;
+		preparedOwner = owner;
+		preparedPage = page;
+		return true;
 	}
 
 	/**
@@ -327,12 +689,13 @@ public class JobListRefiner {
 		}
 
 		// Return an iterator on this whole filtered job list:
-		if (topSize < 0)
-			return this.jobList.iterator();
+		int top = getRemainingSize();
+		if (top < 0)
+			return paginate(this.jobList.iterator());
 
 		// OR Return an iterator on the topSize first jobs (in the current order or reverse):
 		else
-			return new TopIterator(this.jobList, topSize, reverseOrder);
+			return paginate(new TopIterator(this.jobList, top, reverseOrder));
 	}
 
 	/**
@@ -388,6 +751,31 @@ public class JobListRefiner {
 		}
 	}
 
+	/**
+	 * Compare the 2 given {@link UWSJob} instances by using their creation
+	 * date/time and then their ID. The most recently created job is
+	 * considered as inferior ; jobs created at the same time are sorted by
+	 * ascending job ID. So, this comparator aims to sort jobs by descending
+	 * creation date/time, in a stable order (as required by the pagination).
+	 *
+	 * <p><i><b>WARNING!</b>
+	 * 	It must be ensured that all compared jobs have always a NOT-NULL
+	 * 	creationTime attribute. Otherwise this comparator may fail or return an
+	 * 	incorrect value.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	public final static class JobKeyComparator implements Comparator<UWSJob> {
+		@Override
+		public int compare(UWSJob o1, UWSJob o2){
+			int comp = -(o1.getCreationTime().compareTo(o2.getCreationTime()));
+			return (comp != 0) ? comp : o1.getJobId().compareTo(o2.getJobId());
+		}
+	}
+
 	/**
 	 * This iterator is designed to return just the N first items of the given
 	 * list.
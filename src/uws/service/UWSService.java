@@ -16,7 +16,7 @@ package uws.service;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -39,6 +39,7 @@ import uws.UWSException;
 import uws.UWSToolBox;
 import uws.job.JobList;
 import uws.job.JobThread;
+import uws.job.VirtualThreads;
 import uws.job.serializer.JSONSerializer;
 import uws.job.serializer.UWSSerializer;
 import uws.job.serializer.XMLSerializer;
@@ -46,12 +47,14 @@ import uws.job.user.JobOwner;
 import uws.service.actions.AddJob;
 import uws.service.actions.DestroyJob;
 import uws.service.actions.GetJobParam;
+import uws.service.actions.JobEvents;
 import uws.service.actions.JobSummary;
 import uws.service.actions.ListJobs;
 import uws.service.actions.SetJobParam;
 import uws.service.actions.SetUWSParameter;
 import uws.service.actions.ShowHomePage;
 import uws.service.actions.UWSAction;
+import uws.service.backup.JobStore;
 import uws.service.backup.UWSBackupManager;
 import uws.service.error.DefaultUWSErrorWriter;
 import uws.service.error.ServiceErrorWriter;
@@ -121,6 +124,7 @@ import uws.service.wait.BlockingPolicy;
  * 	<li>{@link GetJobParam}</li>
  * 	<li>{@link SetJobParam}</li>
  * 	<li>{@link ListJobs}</li>
+ * 	<li>{@link JobEvents} <i>(stream of Server-Sent Events ; when the HTTP header Accept asks for <code>text/event-stream</code>)</i></li>
  * </ul>
  * <p>
  * 	To add an action, you should use the function {@link #addUWSAction(UWSAction)}, to remove one {@link #removeUWSAction(int)} or {@link #removeUWSAction(String)}.
@@ -139,7 +143,7 @@ import uws.service.wait.BlockingPolicy;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.4 (08/2018)
+ * @version 4.5 (10/2026)
  */
 public class UWSService implements UWS {
 
@@ -287,6 +291,7 @@ public class UWSService implements UWS {
 
 		// Load the default UWS actions:
 		uwsActions.add(new ShowHomePage(this));
+		uwsActions.add(new JobEvents(this));
 		uwsActions.add(new ListJobs(this));
 		uwsActions.add(new AddJob(this));
 		uwsActions.add(new SetUWSParameter(this));
@@ -403,9 +408,19 @@ public class UWSService implements UWS {
 			jl.getDestructionManager().stop();
 		}
 
+		// Close the job stores (after having stopped all jobs, so that they are saved as finished):
+		for(JobList jl : mapJobLists.values()){
+			JobStore store = jl.getJobStore();
+			if (store != null){
+				jl.setJobStore(null);
+				store.close();
+			}
+		}
+
 		// Just in case that previous clean "stop"s did not work, try again an interruption for all running threads:
 		/* note: timers are not part of this ThreadGroup and so, they won't be affected by this function call. */
 		JobThread.tg.interrupt();
+		VirtualThreads.interruptAll();
 
 		// Log the service is stopped:
 		if (logger != null)
@@ -1185,10 +1200,14 @@ public class UWSService implements UWS {
 			if (action == null)
 				throw new UWSException(UWSException.NOT_IMPLEMENTED, "Unknown UWS action!");
 
-			response.flushBuffer();
+			/* If the request has been suspended, the response will be written
+			 * only when it is dispatched again: */
+			if (!request.isAsyncStarted()){
+				response.flushBuffer();
 
-			// Log the successful execution of the action:
-			logger.logHttp(LogLevel.INFO, response, reqID, user, "UWS action \"" + ((action != null) ? action.getName() : null) + "\" successfully executed.", null);
+				// Log the successful execution of the action:
+				logger.logHttp(LogLevel.INFO, response, reqID, user, "UWS action \"" + ((action != null) ? action.getName() : null) + "\" successfully executed.", null);
+			}
 
 		}catch(IOException ioe){
 			/*
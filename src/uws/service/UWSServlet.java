@@ -16,7 +16,7 @@ package uws.service;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -48,6 +48,7 @@ import uws.job.JobList;
 import uws.job.JobThread;
 import uws.job.Result;
 import uws.job.UWSJob;
+import uws.job.VirtualThreads;
 import uws.job.jobInfo.JobInfo;
 import uws.job.parameters.DestructionTimeController;
 import uws.job.parameters.DestructionTimeController.DateField;
@@ -65,6 +66,7 @@ import uws.service.backup.UWSBackupManager;
 import uws.service.error.DefaultUWSErrorWriter;
 import uws.service.error.ServiceErrorWriter;
 import uws.service.file.LocalUWSFileManager;
+import uws.service.file.ResultDownloader;
 import uws.service.file.UWSFileManager;
 import uws.service.log.DefaultUWSLog;
 import uws.service.log.UWSLog;
@@ -153,7 +155,7 @@ import uws.service.wait.BlockingPolicy;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.4 (08/2018)
+ * @version 4.5 (10/2026)
  */
 public abstract class UWSServlet extends HttpServlet implements UWS, UWSFactory {
 	private static final long serialVersionUID = 1L;
@@ -292,6 +294,7 @@ public abstract class UWSServlet extends HttpServlet implements UWS, UWSFactory
 		// Just in case that previous clean "stop"s did not work, try again an interruption for all running threads:
 		/* note: timers are not part of this ThreadGroup and so, they won't be affected by this function call. */
 		JobThread.tg.interrupt();
+		VirtualThreads.interruptAll();
 
 		// Log the service is stopped:
 		if (logger != null)
@@ -457,10 +460,14 @@ public abstract class UWSServlet extends HttpServlet implements UWS, UWSFactory
 			else
 				throw new UWSException(UWSException.NOT_IMPLEMENTED, "Unknown UWS action!");
 
-			resp.flushBuffer();
+			/* If the request has been suspended, the response will be written
+			 * only when it is dispatched again: */
+			if (!req.isAsyncStarted()){
+				resp.flushBuffer();
 
-			// Log the successful execution of the action:
-			logger.logHttp(LogLevel.INFO, resp, reqID, user, "UWS action \"" + uwsAction + "\" successfully executed.", null);
+				// Log the successful execution of the action:
+				logger.logHttp(LogLevel.INFO, resp, reqID, user, "UWS action \"" + uwsAction + "\" successfully executed.", null);
+			}
 
 		}catch(IOException ioe){
 			/*
@@ -659,8 +666,11 @@ public abstract class UWSServlet extends HttpServlet implements UWS, UWSFactory
 		// Get the job:
 		UWSJob job = getJob(requestUrl);
 
-		// Block if necessary:
-		JobSummary.block(waitPolicy, req, job, user);
+		/* Block if necessary (if possible, without holding the request
+		 * thread ; the job summary will then be written when this request
+		 * will be dispatched again at the end of the blocking): */
+		if (JobSummary.blockAsync(waitPolicy, req, resp, job, user))
+			return;
 
 		// Write the job summary:
 		UWSSerializer serializer = getSerializer(req.getHeader("Accept"));
@@ -691,16 +701,11 @@ public abstract class UWSServlet extends HttpServlet implements UWS, UWSFactory
 			else if (result.getHref() != null && !result.getHref().trim().isEmpty() && !result.getHref().equalsIgnoreCase(req.getRequestURL().toString()))
 				redirect(result.getHref(), req, user, UWSAction.GET_JOB_PARAM, resp);
 			else{
-				InputStream input = null;
 				try{
-					input = getFileManager().getResultInput(result, job);
-					UWSToolBox.write(input, result.getMimeType(), result.getSize(), resp);
+					ResultDownloader.write(getFileManager(), result, job, req, resp);
 				}catch(IOException ioe){
 					getLogger().logUWS(LogLevel.ERROR, result, "GET_RESULT", "Can not read the content of the result \"" + result.getId() + "\" of the job \"" + job.getJobId() + "\"!", ioe);
 					throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, ioe, "Can not read the content of the result " + result.getId() + " (job ID: " + job.getJobId() + ").");
-				}finally{
-					if (input != null)
-						input.close();
 				}
 			}
 		}
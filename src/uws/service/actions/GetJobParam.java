@@ -16,7 +16,7 @@ package uws.service.actions;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -37,6 +37,7 @@ import uws.job.serializer.UWSSerializer;
 import uws.job.user.JobOwner;
 import uws.service.UWSService;
 import uws.service.UWSUrl;
+import uws.service.file.ResultDownloader;
 import uws.service.log.UWSLog.LogLevel;
 import uws.service.request.UploadFile;
 
@@ -51,7 +52,7 @@ import uws.service.request.UploadFile;
  * The serializer is choosen in function of the HTTP Accept header.</p>
  * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.2 (06/2017)
+ * @version 4.5 (10/2026)
  */
 public class GetJobParam extends UWSAction {
 	private static final long serialVersionUID = 1L;
@@ -119,16 +120,11 @@ public class GetJobParam extends UWSAction {
 			else if (result.isRedirectionRequired())
 				uws.redirect(result.getHref(), request, user, getName(), response);
 			else{
-				InputStream input = null;
 				try{
-					input = uws.getFileManager().getResultInput(result, job);
-					UWSToolBox.write(input, result.getMimeType(), result.getSize(), response);
+					ResultDownloader.write(uws.getFileManager(), result, job, request, response);
 				}catch(IOException ioe){
 					getLogger().logUWS(LogLevel.ERROR, result, "GET_RESULT", "Can not read the content of the result \"" + result.getId() + "\" of the job \"" + job.getJobId() + "\"!", ioe);
 					throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, ioe, "Can not read the content of the result " + result.getId() + " (job ID: " + job.getJobId() + ").");
-				}finally{
-					if (input != null)
-						input.close();
 				}
 			}
 		}
@@ -0,0 +1,204 @@
+package uws.service.actions;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import uws.UWSException;
+import uws.job.user.JobOwner;
+import uws.service.UWSService;
+import uws.service.UWSUrl;
+import uws.service.events.JobEventStream;
+import uws.service.wait.AsyncWait;
+
+/**
+ * The "Job Events" action of a UWS.
+ *
+ * <p><i>Note:
+ * 	The corresponding name is {@link UWSAction#JOB_EVENTS}.
+ * </i></p>
+ *
+ * <p>
+ * 	This action streams - as Server-Sent Events - the changes of phase, the
+ * 	progression and the new results of either the job specified in the given
+ * 	UWS URL, or of all the jobs of the current user in the specified jobs
+ * 	list. It is applied instead of {@link JobSummary} or {@link ListJobs}
+ * 	when the HTTP header Accept asks for <code>text/event-stream</code>
+ * 	(as done by an <code>EventSource</code> in a web browser).
+ * </p>
+ *
+ * <p>
+ * 	See {@link JobEventStream} for the list of events and the way they are
+ * 	written.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	If the asynchronous processing is not supported by the servlet, only the
+ * 	current state of the job(s) is written and the client is asked to
+ * 	reconnect a bit later.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class JobEvents extends UWSAction {
+	private static final long serialVersionUID = 1L;
+
+	/** Maximum number of events waiting to be written for each connection. */
+	protected int bufferSize = JobEventStream.DEFAULT_BUFFER_SIZE;
+
+	/** Time (in milliseconds) between two heartbeats. */
+	protected long heartbeatPeriod = JobEventStream.DEFAULT_HEARTBEAT_PERIOD;
+
+	/** Name of the job parameter containing the progression of a job. */
+	protected String progressionParam = JobEventStream.DEFAULT_PROGRESSION_PARAMETER;
+
+	public JobEvents(UWSService u){
+		super(u);
+	}
+
+	/**
+	 * @see UWSAction#JOB_EVENTS
+	 * @see uws.service.actions.UWSAction#getName()
+	 */
+	@Override
+	public String getName(){
+		return JOB_EVENTS;
+	}
+
+	@Override
+	public String getDescription(){
+		return "Lets following the changes of the specified job or of all the jobs of a list. (URL: {baseUWS_URL}/{jobListName}[/{job-id}], Method: HTTP-GET, Header: Accept: text/event-stream)";
+	}
+
+	/**
+	 * Get the maximum number of events waiting to be written for each
+	 * connection.
+	 *
+	 * @return	The buffer size.
+	 */
+	public final int getBufferSize(){
+		return bufferSize;
+	}
+
+	/**
+	 * Set the maximum number of events waiting to be written for each
+	 * connection.
+	 *
+	 * @param size	The new buffer size.
+	 *            	<i>If negative or null, the default value is set.</i>
+	 */
+	public final void setBufferSize(final int size){
+		bufferSize = (size > 0) ? size : JobEventStream.DEFAULT_BUFFER_SIZE;
+	}
+
+	/**
+	 * Get the time between two heartbeats.
+	 *
+	 * @return	The heartbeat period (in milliseconds).
+	 */
+	public final long getHeartbeatPeriod(){
+		return heartbeatPeriod;
+	}
+
+	/**
+	 * Set the time between two heartbeats.
+	 *
+	 * @param period	The new heartbeat period (in milliseconds).
+	 *              	<i>If negative or null, no heartbeat is sent.</i>
+	 */
+	public final void setHeartbeatPeriod(final long period){
+		heartbeatPeriod = period;
+	}
+
+	/**
+	 * Get the name of the job parameter containing the progression of a job.
+	 *
+	 * @return	Name of the progression parameter.
+	 */
+	public final String getProgressionParameter(){
+		return progressionParam;
+	}
+
+	/**
+	 * Set the name of the job parameter containing the progression of a job.
+	 *
+	 * @param name	Name of the progression parameter.
+	 *            	<i>If NULL, the default value is set.</i>
+	 */
+	public final void setProgressionParameter(final String name){
+		progressionParam = (name == null) ? JobEventStream.DEFAULT_PROGRESSION_PARAMETER : name;
+	}
+
+	/**
+	 * Checks whether:
+	 * <ul>
+	 * 	<li>a job list name is specified in the given UWS URL
+	 * 		<i>(<u>note:</u> the existence of the jobs list is not checked)</i>,
+	 * 	</li>
+	 * 	<li>there is no job attribute,</li>
+	 * 	<li>the HTTP method is HTTP-GET,</li>
+	 * 	<li>the HTTP header Accept contains <code>text/event-stream</code>.</li>
+	 * </ul>
+	 *
+	 * @see uws.service.actions.UWSAction#match(UWSUrl, JobOwner, HttpServletRequest)
+	 */
+	@Override
+	public boolean match(UWSUrl urlInterpreter, JobOwner user, HttpServletRequest request) throws UWSException{
+		if (!urlInterpreter.hasJobList() || urlInterpreter.hasAttribute() || !request.getMethod().equalsIgnoreCase("get"))
+			return false;
+		String accept = request.getHeader("Accept");
+		return (accept != null && accept.toLowerCase().contains(JobEventStream.MIME_TYPE));
+	}
+
+	/**
+	 * Observes the specified job (or all jobs of the given user in the
+	 * specified jobs list) and streams their events in the given response.
+	 *
+	 * @see #getJob(UWSUrl, JobOwner)
+	 * @see #getJobsList(UWSUrl)
+	 * @see JobEventStream
+	 *
+	 * @see uws.service.actions.UWSAction#apply(UWSUrl, JobOwner, HttpServletRequest, HttpServletResponse)
+	 */
+	@Override
+	public boolean apply(UWSUrl urlInterpreter, JobOwner user, HttpServletRequest request, HttpServletResponse response) throws UWSException, IOException{
+		JobEventStream stream = new JobEventStream(bufferSize, heartbeatPeriod, progressionParam);
+
+		// Observe the job(s):
+		if (urlInterpreter.hasJob())
+			stream.observe(getJob(urlInterpreter, user));
+		else
+			stream.observe(getJobsList(urlInterpreter), user);
+
+		// Stream the events (if possible, without holding the request thread):
+		if (AsyncWait.isSupported(request))
+			stream.start(request, response);
+		else
+			stream.writeOnce(response);
+
+		return true;
+	}
+
+}
@@ -16,7 +16,7 @@ package uws.service.actions;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -36,6 +36,7 @@ import uws.job.user.JobOwner;
 import uws.service.UWSService;
 import uws.service.UWSUrl;
 import uws.service.log.UWSLog.LogLevel;
+import uws.service.wait.AsyncWait;
 import uws.service.wait.BlockingPolicy;
 import uws.service.wait.WaitObserver;
 
@@ -52,8 +53,14 @@ import uws.service.wait.WaitObserver;
  * 	of the HTTP Accept header.
  * </p>
  *
+ * <p><i>Note:
+ * 	If a blocking is asked (parameter WAIT) and if the asynchronous processing
+ * 	is supported by the servlet, the HTTP request is suspended instead of
+ * 	blocking its thread (see {@link #blockAsync(BlockingPolicy, HttpServletRequest, HttpServletResponse, UWSJob, JobOwner)}).
+ * </i></p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (11/2017)
+ * @version 4.5 (10/2026)
  */
 public class JobSummary extends UWSAction {
 	private static final long serialVersionUID = 1L;
@@ -116,8 +123,11 @@ public class JobSummary extends UWSAction {
 		// Get the job:
 		UWSJob job = getJob(urlInterpreter);
 
-		// Block if necessary:
-		JobSummary.block(uws.getWaitPolicy(), request, job, user);
+		/* Block if necessary (if possible, without holding the request
+		 * thread ; the job summary will then be written when this request
+		 * will be dispatched again at the end of the blocking): */
+		if (JobSummary.blockAsync(uws.getWaitPolicy(), request, response, job, user))
+			return true;
 
 		// Write the job summary:
 		UWSSerializer serializer = uws.getSerializer(request.getHeader("Accept"));
@@ -202,12 +212,76 @@ public class JobSummary extends UWSAction {
 	 * @since 4.3
 	 */
 	public static void block(final BlockingPolicy policy, final HttpServletRequest req, final UWSJob job, final JobOwner user){
+		// Get the time to wait:
+		long waitingTime = getWaitingTime(req, job);
+
+		/* The HTTP-GET request should block until either the specified time
+		 * (or the timeout) is reached or if the job phase changed: */
+		if (waitingTime != 0){
+			Thread threadToBlock = Thread.currentThread();
+			WaitObserver observer = null;
+
+			/* Eventually limit the waiting time in function of the chosen
+			 * policy: */
+			if (policy != null)
+				waitingTime = policy.block(threadToBlock, waitingTime, job, user, req);
+
+			/* Blocking ONLY IF the duration is NOT NULL (i.e. wait during 0
+			 * seconds): */
+			if (waitingTime != 0){
+				try{
+					/* Watch the job in order to detect an execution phase
+					 * modification: */
+					observer = new WaitObserver(threadToBlock);
+					job.addObserver(observer);
+
+					/* If the job is still processing, then wait the specified
+					 * time: */
+					if (job.getPhase() == ExecutionPhase.PENDING || job.getPhase() == ExecutionPhase.QUEUED || job.getPhase() == ExecutionPhase.EXECUTING){
+						/* note: a negative duration means an "unlimited"
+						 *       duration (the wait will stop only if the job
+						 *       phase changes). */
+						WaitObserver.waitFor(waitingTime);
+					}
+
+				}catch(InterruptedException ie){
+					/* If the WAIT has been interrupted, the blocking
+					 * is stopped and nothing special should happen. */
+				}
+				/* Clear all retained resources. */
+				finally{
+					// Do not observe any more the job:
+					if (observer != null)
+						job.removeObserver(observer);
+
+					/* Notify the BlockingPolicy that this Thread is no longer
+					 * blocked: */
+					if (policy != null)
+						policy.unblocked(threadToBlock, job, user, req);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the time to wait, as asked by the parameters WAIT and PHASE of the
+	 * given HTTP request (see {@link #block(BlockingPolicy, HttpServletRequest, UWSJob, JobOwner)}).
+	 *
+	 * @param req	The HTTP request which asked for the blocking.
+	 * @param job	The job associate with the HTTP request.
+	 *
+	 * @return	The time to wait (in seconds) ; a negative value for an
+	 *        	unlimited time, and 0 if no blocking must be performed.
+	 *
+	 * @since 4.5
+	 */
+	protected static long getWaitingTime(final HttpServletRequest req, final UWSJob job){
 		if (req == null || job == null)
-			return;
+			return 0;
 
 		/* No blocking if the job is not in an "active" phase: */
 		if (job.getPhase() != ExecutionPhase.PENDING && job.getPhase() != ExecutionPhase.QUEUED && job.getPhase() != ExecutionPhase.EXECUTING)
-			return;
+			return 0;
 
 		/* Extract the parameters WAIT (only the smallest waiting time is taken
 		 * into account) and PHASE (only the last legal occurrence is taken into
@@ -251,57 +325,108 @@ public class JobSummary extends UWSAction {
 			}
 		}
 
-		/* The HTTP-GET request should block until either the specified time
-		 * (or the timeout) is reached or if the job phase changed: */
-		if (waitingTime != 0 && (phase == null || job.getPhase() == phase)){
-			Thread threadToBlock = Thread.currentThread();
-			WaitObserver observer = null;
+		/* Block only if the job is in the expected phase (if any): */
+		if (waitingTime != 0 && (phase == null || job.getPhase() == phase))
+			return waitingTime;
+		else
+			return 0;
+	}
 
-			/* Eventually limit the waiting time in function of the chosen
-			 * policy: */
-			if (policy != null)
-				waitingTime = policy.block(threadToBlock, waitingTime, job, user, req);
+	/**
+	 * Block - without holding the thread of the HTTP request - until the
+	 * specified duration (in seconds) is elapsed or if the execution phase of
+	 * the target job changes.
+	 *
+	 * <p>
+	 * 	This function behaves exactly like
+	 * 	{@link #block(BlockingPolicy, HttpServletRequest, UWSJob, JobOwner)},
+	 * 	except that the HTTP request is suspended (see {@link AsyncWait})
+	 * 	instead of blocking its thread. When the blocking ends, the request is
+	 * 	dispatched again to the servlet ; at this moment, this function has no
+	 * 	effect and the job summary can be written as usual.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	If the asynchronous processing is not supported for the given request
+	 * 	(see {@link AsyncWait#isSupported(HttpServletRequest)}), the thread of
+	 * 	this request is blocked with
+	 * 	{@link #block(BlockingPolicy, HttpServletRequest, UWSJob, JobOwner)}.
+	 * </i></p>
+	 *
+	 * @param policy		Strategy to adopt for the blocking behavior.
+	 *              		<i>If NULL, the standard blocking behavior will be
+	 *              		performed: block the duration (eventually unlimited)
+	 *              		specified by the user.</i>
+	 * @param req			The HTTP request which asked for the blocking.
+	 *           			<b>MUST NOT be NULL, otherwise no blocking will be
+	 *           			performed.</b>
+	 * @param resp			The HTTP response of this request.
+	 * @param job			The job associate with the HTTP request.
+	 *           			<b>MUST NOT be NULL, otherwise no blocking will be
+	 *           			performed.</b>
+	 * @param user			The user who asked for the blocking behavior.
+	 *            			<i>NULL if no user is logged in.</i>
+	 *
+	 * @return	<i>true</i> if the HTTP request has been suspended (the
+	 *        	response must then NOT be written now),
+	 *        	<i>false</i> if the blocking is over or if no blocking was
+	 *        	needed (the response can be written).
+	 *
+	 * @since 4.5
+	 */
+	public static boolean blockAsync(final BlockingPolicy policy, final HttpServletRequest req, final HttpServletResponse resp, final UWSJob job, final JobOwner user){
+		// Nothing to do if the request has already been suspended:
+		if (AsyncWait.isOver(req))
+			return false;
 
-			/* Blocking ONLY IF the duration is NOT NULL (i.e. wait during 0
-			 * seconds): */
-			if (waitingTime != 0){
-				try{
-					/* Watch the job in order to detect an execution phase
-					 * modification: */
-					observer = new WaitObserver(threadToBlock);
-					job.addObserver(observer);
+		// Block the request thread if no asynchronous processing is possible:
+		if (!AsyncWait.isSupported(req)){
+			block(policy, req, job, user);
+			return false;
+		}
 
-					/* If the job is still processing, then wait the specified
-					 * time: */
-					if (job.getPhase() == ExecutionPhase.PENDING || job.getPhase() == ExecutionPhase.QUEUED || job.getPhase() == ExecutionPhase.EXECUTING){
-						synchronized(threadToBlock){
-							// Limited duration:
-							if (waitingTime > 0)
-								threadToBlock.wait(waitingTime * 1000);
-							/* "Unlimited" duration (the wait will stop only if
-							 * the job phase changes): */
-							else
-								threadToBlock.wait();
-						}
-					}
+		// Get the time to wait:
+		long waitingTime = getWaitingTime(req, job);
+		if (waitingTime == 0)
+			return false;
 
-				}catch(InterruptedException ie){
-					/* If the WAIT has been interrupted, the blocking
-					 * is stopped and nothing special should happen. */
-				}
-				/* Clear all retained resources. */
-				finally{
-					// Do not observe any more the job:
-					if (observer != null)
-						job.removeObserver(observer);
+		final AsyncWait wait = new AsyncWait();
 
-					/* Notify the BlockingPolicy that this Thread is no longer
-					 * blocked: */
-					if (policy != null)
-						policy.unblocked(threadToBlock, job, user, req);
-				}
+		/* Eventually limit the waiting time in function of the chosen
+		 * policy: */
+		if (policy != null)
+			waitingTime = policy.block(wait.getToken(), waitingTime, job, user, req);
+
+		/* Blocking ONLY IF the duration is NOT NULL (i.e. wait during 0
+		 * seconds): */
+		if (waitingTime == 0)
+			return false;
+
+		/* Watch the job in order to detect an execution phase
+		 * modification: */
+		final WaitObserver observer = new WaitObserver(wait.getToken());
+
+		// Suspend the request:
+		wait.start(req, resp, (waitingTime > 0) ? waitingTime * 1000 : -1, new Runnable(){
+			@Override
+			public void run(){
+				// Do not observe any more the job:
+				job.removeObserver(observer);
+
+				/* Notify the BlockingPolicy that this request is no longer
+				 * blocked: */
+				if (policy != null)
+					policy.unblocked(wait.getToken(), job, user, req);
 			}
-		}
+		});
+		job.addObserver(observer);
+
+		/* If the job is not processing any more, stop immediately the
+		 * blocking: */
+		if (job.getPhase() != ExecutionPhase.PENDING && job.getPhase() != ExecutionPhase.QUEUED && job.getPhase() != ExecutionPhase.EXECUTING)
+			wait.end();
+
+		return true;
 	}
 
 }
@@ -16,7 +16,7 @@ package uws.service.actions;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2017 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -49,8 +49,22 @@ import uws.service.log.UWSLog.LogLevel;
  * 	chosen in function of the HTTP Accept header.
  * </p>
  *
+ * <p>
+ * 	The jobs may be filtered thanks to the HTTP-GET parameters PHASE, AFTER
+ * 	and LAST. They may also be read page by page thanks to the parameters
+ * 	MAXJOBS and CURSOR ; the URL of the next page is then given in the HTTP
+ * 	header <code>Link</code> (with <code>rel="next"</code>). See
+ * 	{@link JobListRefiner} for more details.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The JSON serialization of a page also contains this URL (member
+ * 	<code>next</code>), but not the XML one: the UWS 1.1 schema does not
+ * 	allow it.
+ * </i></p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.3 (10/2017)
+ * @version 4.5 (10/2026)
  */
 public class ListJobs extends UWSAction {
 	private static final long serialVersionUID = 1L;
@@ -96,6 +110,7 @@ public class ListJobs extends UWSAction {
 	 *
 	 * @see #getJobsList(UWSUrl)
 	 * @see JobListRefiner#JobListRefiner(HttpServletRequest)
+	 * @see JobListRefiner#preparePage(JobList, JobOwner)
 	 * @see UWSService#getSerializer(String)
 	 * @see JobList#serialize(ServletOutputStream, UWSSerializer, JobOwner, JobListRefiner)
 	 *
@@ -106,12 +121,21 @@ public class ListJobs extends UWSAction {
 		// Get the jobs list:
 		JobList jobsList = getJobsList(urlInterpreter);
 
+		/* Select the requested page (if any), so that the link to the next
+		 * page can be set in the HTTP header before writing the jobs list: */
+		JobListRefiner refiner = new JobListRefiner(request);
+		if (refiner.preparePage(jobsList, user)){
+			String nextUrl = refiner.getNextPageURL(jobsList.getUrl());
+			if (nextUrl != null)
+				response.setHeader("Link", "<" + nextUrl + ">; rel=\"next\"");
+		}
+
 		// Write the jobs list:
 		UWSSerializer serializer = uws.getSerializer(request.getHeader("Accept"));
 		response.setContentType(serializer.getMimeType());
 		response.setCharacterEncoding(UWSToolBox.DEFAULT_CHAR_ENCODING);
 		try{
-			jobsList.serialize(response.getOutputStream(), serializer, user, new JobListRefiner(request));
+			jobsList.serialize(response.getOutputStream(), serializer, user, refiner);
 		}catch(Exception e){
 			if (!(e instanceof UWSException)){
 				getLogger().logUWS(LogLevel.ERROR, urlInterpreter, "SERIALIZE", "Can not serialize the jobs list \"" + jobsList.getName() + "\"!", e);
@@ -16,7 +16,7 @@ package uws.service.actions;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  * 
- * Copyright 2012,2014 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -42,7 +42,7 @@ import uws.service.log.UWSLog;
  * By default the name of a UWS action is the full java name of the class !</b></p>
  * 
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.1 (11/2014)
+ * @version 4.5 (10/2026)
  * 
  * @see UWSService
  */
@@ -66,6 +66,9 @@ public abstract class UWSAction implements Serializable {
 	public final static String SET_JOB_PARAM = "Set Job Parameter";
 	/** Name of the UWS action {@link ShowHomePage}. */
 	public final static String HOME_PAGE = "Show UWS Home Page";
+	/** Name of the UWS action {@link JobEvents}.
+	 * @since 4.5 */
+	public final static String JOB_EVENTS = "Job Events";
 
 	/** The UWS on which this action must be applied. */
 	protected final UWSService uws;
@@ -16,7 +16,7 @@ package uws.service.backup;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -39,6 +39,16 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -85,8 +95,16 @@ import uws.service.request.UploadFile;
  * </ul>
  * <p>Another positive value will be considered as the frequency (in milliseconds) of the automatic backup (= {@link #saveAll()}).</p>
  *
+ * <p>
+ * 	In the mode <u>by user</u>, the backup files can be read in parallel by several threads at the restoration
+ * 	(see {@link #setRestoreThreads(int)}). The UWS can also be restored in background (see {@link #restoreAllInBackground()}),
+ * 	so that new jobs can be created before all former jobs are restored. In both cases, the destruction of the
+ * 	restored jobs is scheduled only at the end of the restoration, and the progress is logged regularly
+ * 	(see {@link #getRestorationProgress()}).
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.4 (08/2018)
+ * @version 4.5 (10/2026)
  */
 public class DefaultUWSBackupManager implements UWSBackupManager {
 
@@ -116,6 +134,43 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 	/** Timer which saves the backup each <i>backupFreq</i> milliseconds. */
 	protected Timer timAutoBackup = null;
 
+	/** Minimum time (in milliseconds) between two logs of the restoration progress: 10 seconds.
+	 * @since 4.5 */
+	public static final long PROGRESS_LOG_PERIOD = 10000;
+
+	/** Maximum number of threads reading simultaneously backup files during the restoration.
+	 * <i>Used only in the "by user" mode ; 1 means a sequential restoration.</i>
+	 * @since 4.5 */
+	protected int restoreThreads = 1;
+
+	/** Tells whether the UWS should be restored in background, so that the service is available
+	 * for new jobs before all former jobs are restored.
+	 * @since 4.5 */
+	protected boolean backgroundRestoration = false;
+
+	/** Tells whether a restoration is running.
+	 * @since 4.5 */
+	protected volatile boolean restoring = false;
+
+	/** Number of backup files read during the current (or last) restoration.
+	 * @since 4.5 */
+	protected final AtomicInteger nbReadFiles = new AtomicInteger(0);
+	/** Number of jobs restored during the current (or last) restoration.
+	 * @since 4.5 */
+	protected final AtomicInteger nbRestoredJobs = new AtomicInteger(0);
+	/** Number of jobs found during the current (or last) restoration.
+	 * @since 4.5 */
+	protected final AtomicInteger nbJobs = new AtomicInteger(0);
+	/** Number of users restored during the current (or last) restoration.
+	 * @since 4.5 */
+	protected final AtomicInteger nbRestoredUsers = new AtomicInteger(0);
+	/** Number of users found during the current (or last) restoration.
+	 * @since 4.5 */
+	protected final AtomicInteger nbUsers = new AtomicInteger(0);
+	/** Time of the last log of the restoration progress.
+	 * @since 4.5 */
+	private final AtomicLong lastProgressLog = new AtomicLong(0);
+
 	/**
 	 * Builds a backup manager in the mode "auto": one file for all users and all jobs, and the backup
 	 * is done all minutes (see {@link #DEFAULT_FREQUENCY}.
@@ -279,6 +334,94 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 		}
 	}
 
+	/**
+	 * Gets the maximum number of threads reading simultaneously backup files
+	 * during the restoration.
+	 *
+	 * @return	Number of restoration threads (1 = sequential restoration).
+	 *
+	 * @since 4.5
+	 */
+	public final int getRestoreThreads(){
+		return restoreThreads;
+	}
+
+	/**
+	 * Sets the maximum number of threads reading simultaneously backup files
+	 * during the restoration.
+	 *
+	 * <p><i>Note:
+	 * 	A parallel restoration is possible only in the "by user" mode (one
+	 * 	backup file per user). Jobs are then parsed in parallel ; their
+	 * 	insertion in their jobs list stays synchronized.
+	 * </i></p>
+	 *
+	 * @param nbThreads	Number of restoration threads.
+	 *                 	<i>If &lt; 1, 1 is set (= sequential restoration).</i>
+	 *
+	 * @since 4.5
+	 */
+	public final void setRestoreThreads(final int nbThreads){
+		restoreThreads = (nbThreads < 1) ? 1 : nbThreads;
+	}
+
+	/**
+	 * Tells whether the UWS should be restored in background, so that the
+	 * service is available for new jobs before all former jobs are restored.
+	 *
+	 * <p><i>Note:
+	 * 	This is only an indication for the object restoring the UWS (e.g.
+	 * 	{@link tap.resource.ASync}) ; it should then call
+	 * 	{@link #restoreAllInBackground()} instead of {@link #restoreAll()}.
+	 * </i></p>
+	 *
+	 * @return	<i>true</i> if the restoration should be done in background,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final boolean isBackgroundRestoration(){
+		return backgroundRestoration;
+	}
+
+	/**
+	 * Tells whether the UWS should be restored in background, so that the
+	 * service is available for new jobs before all former jobs are restored.
+	 *
+	 * @param background	<i>true</i> if the restoration should be done in
+	 *                  	background, <i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final void setBackgroundRestoration(final boolean background){
+		backgroundRestoration = background;
+	}
+
+	/**
+	 * Tells whether a restoration is running.
+	 *
+	 * @return	<i>true</i> if {@link #restoreAll()} is running,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public final boolean isRestoring(){
+		return restoring;
+	}
+
+	/**
+	 * Gets the progress of the current (or last) restoration.
+	 *
+	 * @return	An array of 5 items: the number of read backup files, the number
+	 *        	of restored jobs, the number of found jobs, the number of
+	 *        	restored users and the number of found users.
+	 *
+	 * @since 4.5
+	 */
+	public final int[] getRestorationProgress(){
+		return new int[]{ nbReadFiles.get(), nbRestoredJobs.get(), nbJobs.get(), nbRestoredUsers.get(), nbUsers.get() };
+	}
+
 	/**
 	 * Gets the date of the last restoration
 	 *
@@ -735,8 +878,69 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 		for(JobList jl : uws)
 			jl.clear();
 
-		int nbRestoredJobs = 0, nbRestoredUsers = 0;
-		int nbJobs = 0, nbUsers = 0;
+		return restoreBackupFiles();
+	}
+
+	/**
+	 * Restore the UWS in a separated thread, so that new jobs can be created
+	 * while the former ones are restored.
+	 *
+	 * <p>
+	 * 	All current jobs are removed from the UWS before this function returns.
+	 * 	Then, the backup files are read in background. The returned object lets
+	 * 	waiting for the end of the restoration and getting its report (the same
+	 * 	as the one of {@link #restoreAll()}).
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	This backup manager should stay disabled until the end of the
+	 * 	restoration ; otherwise, a backup would not contain all jobs.
+	 * </i></p>
+	 *
+	 * @return	The running restoration.
+	 *
+	 * @see #getRestorationProgress()
+	 *
+	 * @since 4.5
+	 */
+	public Future<int[]> restoreAllInBackground(){
+		// Removes all current jobs from the UWS before restoring it from files:
+		for(JobList jl : uws)
+			jl.clear();
+		restoring = true;
+
+		FutureTask<int[]> task = new FutureTask<int[]>(new Callable<int[]>(){
+			@Override
+			public int[] call(){
+				return restoreBackupFiles();
+			}
+		});
+		Thread thread = new Thread(task, "UWS-Restoration");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+
+	/**
+	 * Restore all jobs and users from the backup file(s).
+	 *
+	 * <p><i>Note:
+	 * 	Jobs already in the UWS are kept.
+	 * </i></p>
+	 *
+	 * @return	The restoration report (see {@link #restoreAll()}),
+	 *        	or NULL if the restoration failed.
+	 *
+	 * @since 4.5
+	 */
+	protected int[] restoreBackupFiles(){
+		// Reset the restoration progress:
+		nbReadFiles.set(0);
+		nbRestoredJobs.set(0);
+		nbJobs.set(0);
+		nbRestoredUsers.set(0);
+		nbUsers.set(0);
+		lastProgressLog.set(System.currentTimeMillis());
 
 		boolean userIdentificationEnabled = (uws.getUserIdentifier() != null);
 
@@ -747,6 +951,7 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 		if (byUser){
 			if (!userIdentificationEnabled){
 				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Impossible to restore a UWS by user if the user identification is disabled (that's to say, the UWS has no UserIdentifier)!", null);
+				restoring = false;
 				return null;
 			}else
 				itInput = fileManager.getAllUserBackupInputs();
@@ -755,45 +960,206 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 				itInput = new SingleInputIterator(fileManager.getBackupInput());
 			}catch(IOException ioe){
 				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Restoration of the UWS " + uws.getName() + " failed because an unexpected IO error has occured.", ioe);
+				restoring = false;
 				return null;
 			}
 		}
 
-		// For each backup file...
+		// The destruction of the restored jobs will be scheduled only at the end:
+		for(JobList jl : uws)
+			jl.deferDestructionScheduling();
+
+		restoring = true;
+		try{
+			// Read all backup files (in parallel if possible):
+			boolean success = (byUser && restoreThreads > 1) ? restoreInParallel(itInput) : restoreSequentially(itInput);
+			if (!success)
+				return null;
+		}finally{
+			restoring = false;
+			// Schedule now the destruction of all restored jobs:
+			for(JobList jl : uws)
+				jl.resumeDestructionScheduling();
+		}
+
+		if (!userIdentificationEnabled && nbUsers.get() > 0)
+			getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", nbUsers.get() + " job owners have not been restored because the user identification is disabled in this UWS! => Jobs of these users have not been restored.", null);
+
+		// Build the restoration report and log it:
+		int[] report = new int[]{ nbRestoredJobs.get(), nbJobs.get(), nbRestoredUsers.get(), nbUsers.get() };
+		getLogger().logUWS(LogLevel.INFO, report, "RESTORED", "UWS restored!", null);
+
+		return report;
+	}
+
+	/**
+	 * Restore one after the other all the given backup files.
+	 *
+	 * @param itInput	Input streams on all the backup files to read.
+	 *
+	 * @return	<i>true</i> if all files have been successfully read,
+	 *        	<i>false</i> if the restoration has been stopped because of an
+	 *        	error.
+	 *
+	 * @see #restoreFile(InputStream)
+	 *
+	 * @since 4.5
+	 */
+	protected boolean restoreSequentially(final Iterator<InputStream> itInput){
 		while(itInput.hasNext()){
 			InputStream inputStream = itInput.next();
-			if (inputStream == null)
-				continue;
-
-			// Create the JSON reader:
-			JSONTokener in = new JSONTokener(new InputStreamReader(inputStream));
+			if (inputStream != null && !restoreFile(inputStream))
+				return false;
+		}
+		return true;
+	}
 
-			HashMap<String, JobOwner> users = new HashMap<String, JobOwner>();
-			String key;
-			JSONObject object = null;
+	/**
+	 * Restore in parallel all the given backup files, with at most
+	 * {@link #getRestoreThreads()} threads.
+	 *
+	 * <p><i>Note:
+	 * 	Backup files are opened only when a thread is ready to read them (or
+	 * 	almost), so that the number of simultaneously opened files stays
+	 * 	bounded.
+	 * </i></p>
+	 *
+	 * @param itInput	Input streams on all the backup files to read.
+	 *
+	 * @return	<i>true</i> if all files have been successfully read,
+	 *        	<i>false</i> if the restoration has been stopped because of an
+	 *        	error.
+	 *
+	 * @see #restoreFile(InputStream)
+	 *
+	 * @since 4.5
+	 */
+	protected boolean restoreInParallel(final Iterator<InputStream> itInput){
+		final AtomicBoolean success = new AtomicBoolean(true);
+
+		/* Bounded pool: when all threads are busy and the queue is full, the
+		 * current thread reads itself the next file (so that no more file is
+		 * opened in the meantime): */
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(restoreThreads, restoreThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(restoreThreads), new ThreadFactory(){
+			private final AtomicInteger count = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(final Runnable r){
+				Thread t = new Thread(r, "UWS-Restoration-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
 
+		try{
+			while(success.get() && itInput.hasNext()){
+				final InputStream inputStream = itInput.next();
+				if (inputStream == null)
+					continue;
+				pool.execute(new Runnable(){
+					@Override
+					public void run(){
+						if (!success.get()){
+							try{
+								inputStream.close();
+							}catch(IOException ioe){}
+						}else if (!restoreFile(inputStream))
+							success.set(false);
+					}
+				});
+			}
+		}finally{
+			pool.shutdown();
 			try{
-				// Reads progressively the general structure (which is theoretically a JSON object):
-				JSONObjectReader itKeys = new JSONObjectReader(in, getLogger());
-				while(itKeys.hasNext()){
+				while(!pool.awaitTermination(1, TimeUnit.SECONDS))
+					;
+			}catch(InterruptedException ie){
+				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Restoration of the UWS " + uws.getName() + " interrupted!", ie);
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+				success.set(false);
+			}
+		}
 
-					// name of the current attribute:
-					key = itKeys.next();
-					if (key == null)
-						break;
+		return success.get();
+	}
 
-					// key=DATE:
-					if (key.equalsIgnoreCase("date"))
-						itKeys.getValue();
+	/**
+	 * Restore all the users and jobs described in the given backup file.
+	 *
+	 * <p><i>Note:
+	 * 	This function may be called simultaneously by several threads (see
+	 * 	{@link #getRestoreThreads()}). The restoration progress (see
+	 * 	{@link #getRestorationProgress()}) is updated while reading the file.
+	 * </i></p>
+	 *
+	 * @param inputStream	Stream toward the backup file to read.
+	 *                   	<i>It is always closed by this function.</i>
+	 *
+	 * @return	<i>true</i> if the file has been successfully read,
+	 *        	<i>false</i> if the JSON format is incorrect or if an
+	 *        	unexpected error occurred.
+	 *
+	 * @since 4.5
+	 */
+	protected boolean restoreFile(final InputStream inputStream){
+		boolean userIdentificationEnabled = (uws.getUserIdentifier() != null);
 
-					// key=USER (note: this key exists only in the backup file of a specified user):
-					else if (key.equalsIgnoreCase("user")){
-						nbUsers++;
+		// Create the JSON reader:
+		JSONTokener in = new JSONTokener(new InputStreamReader(inputStream));
+
+		HashMap<String, JobOwner> users = new HashMap<String, JobOwner>();
+		String key;
+		JSONObject object = null;
+
+		try{
+			// Reads progressively the general structure (which is theoretically a JSON object):
+			JSONObjectReader itKeys = new JSONObjectReader(in, getLogger());
+			while(itKeys.hasNext()){
+
+				// name of the current attribute:
+				key = itKeys.next();
+				if (key == null)
+					break;
+
+				// key=DATE:
+				if (key.equalsIgnoreCase("date"))
+					itKeys.getValue();
+
+				// key=USER (note: this key exists only in the backup file of a specified user):
+				else if (key.equalsIgnoreCase("user")){
+					nbUsers.incrementAndGet();
+					try{
+						// the value is supposed to be a JSON object:
+						object = itKeys.getJSONObject();
+						if (object == null){
+							nbUsers.decrementAndGet();
+							continue;
+						}
+						if (userIdentificationEnabled){
+							// build the corresponding instance of DefaultJobOwner:
+							JobOwner user = getUser(object);
+							if (user != null){
+								users.put(user.getID(), user);
+								nbRestoredUsers.incrementAndGet();
+							}
+						}
+					}catch(UWSException ue){
+						getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "A job owner can not be restored!", ue);
+						//break;	// Because, the key "user" is found ONLY in the backup file of a user. If the user can not be restored, its jobs won't be !
+					}
+
+				}// key=USERS (note: this key exists only in the backup file of the whole UWS):
+				else if (key.equalsIgnoreCase("users")){
+					// the value is supposed to be an array of JSON objects:
+					Iterator<JSONObject> it = itKeys.getArrayReader();
+					while(it.hasNext()){
+						int nbUser = nbUsers.incrementAndGet();
 						try{
-							// the value is supposed to be a JSON object:
-							object = itKeys.getJSONObject();
+							// get the JSON object corresponding to the current user:
+							object = it.next();
 							if (object == null){
-								nbUsers--;
+								nbUsers.decrementAndGet();
 								continue;
 							}
 							if (userIdentificationEnabled){
@@ -801,91 +1167,73 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 								JobOwner user = getUser(object);
 								if (user != null){
 									users.put(user.getID(), user);
-									nbRestoredUsers++;
+									nbRestoredUsers.incrementAndGet();
 								}
 							}
 						}catch(UWSException ue){
-							getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "A job owner can not be restored!", ue);
-							//break;	// Because, the key "user" is found ONLY in the backup file of a user. If the user can not be restored, its jobs won't be !
-						}
-
-					}// key=USERS (note: this key exists only in the backup file of the whole UWS):
-					else if (key.equalsIgnoreCase("users")){
-						// the value is supposed to be an array of JSON objects:
-						Iterator<JSONObject> it = itKeys.getArrayReader();
-						while(it.hasNext()){
-							nbUsers++;
-							try{
-								// get the JSON object corresponding to the current user:
-								object = it.next();
-								if (object == null){
-									nbUsers--;
-									continue;
-								}
-								if (userIdentificationEnabled){
-									// build the corresponding instance of DefaultJobOwner:
-									JobOwner user = getUser(object);
-									if (user != null){
-										users.put(user.getID(), user);
-										nbRestoredUsers++;
-									}
-								}
-							}catch(UWSException ue){
-								getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "The " + nbUsers + "-th user can not be restored!", ue);
-							}
+							getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "The " + nbUser + "-th user can not be restored!", ue);
 						}
+					}
 
-					}// JOBS:
-					else if (key.equalsIgnoreCase("jobs")){
-						// the value is supposed to be an array of JSON objects:
-						Iterator<JSONObject> it = itKeys.getArrayReader();
-						while(it.hasNext()){
-							nbJobs++;
-							try{
-								// get the JSON object corresponding to the current job:
-								object = it.next();
-								if (object == null){
-									nbJobs--;
-									continue;
-								}
-								// build the corresponding instance of UWSJob:
-								if (restoreJob(object, users))
-									nbRestoredJobs++;
-							}catch(UWSException ue){
-								getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "The " + nbJobs + "-th job can not be restored!", ue);
+				}// JOBS:
+				else if (key.equalsIgnoreCase("jobs")){
+					// the value is supposed to be an array of JSON objects:
+					Iterator<JSONObject> it = itKeys.getArrayReader();
+					while(it.hasNext()){
+						int nbJob = nbJobs.incrementAndGet();
+						try{
+							// get the JSON object corresponding to the current job:
+							object = it.next();
+							if (object == null){
+								nbJobs.decrementAndGet();
+								continue;
 							}
+							// build the corresponding instance of UWSJob:
+							if (restoreJob(object, users))
+								nbRestoredJobs.incrementAndGet();
+						}catch(UWSException ue){
+							getLogger().logUWS(LogLevel.ERROR, object, "RESTORATION", "The " + nbJob + "-th job can not be restored!", ue);
 						}
+					}
 
-					}// any other key is ignore but with a warning message:
-					else
-						getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", "Key '" + key + "' ignored because unknown! The UWS may be not completely restored.", null);
-				}
-			}catch(JSONException je){
-				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Incorrect JSON format for a UWS backup file!", je);
-				return null;
-			}catch(Exception e){
-				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Unexpected error while restoring the UWS!", e);
-				return null;
-			}finally{
-				// Close the reader:
-				try{
-					inputStream.close();
-				}catch(IOException ioe){
-					getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Can not close the input stream opened on a user backup file!", ioe);
-				}
-				// Set the last restoration date:
-				lastRestoration = new Date();
+				}// any other key is ignore but with a warning message:
+				else
+					getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", "Key '" + key + "' ignored because unknown! The UWS may be not completely restored.", null);
 			}
+			return true;
+		}catch(JSONException je){
+			getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Incorrect JSON format for a UWS backup file!", je);
+			return false;
+		}catch(Exception e){
+			getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Unexpected error while restoring the UWS!", e);
+			return false;
+		}finally{
+			// Close the reader:
+			try{
+				inputStream.close();
+			}catch(IOException ioe){
+				getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Can not close the input stream opened on a user backup file!", ioe);
+			}
+			// Set the last restoration date:
+			lastRestoration = new Date();
+			// Report the progress:
+			nbReadFiles.incrementAndGet();
+			logProgress();
 		}
+	}
 
-		if (!userIdentificationEnabled && nbUsers > 0)
-			getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", nbUsers + " job owners have not been restored because the user identification is disabled in this UWS! => Jobs of these users have not been restored.", null);
-
-		// Build the restoration report and log it:
-		int[] report = new int[]{ nbRestoredJobs, nbJobs, nbRestoredUsers, nbUsers };
-		getLogger().logUWS(LogLevel.INFO, report, "RESTORED", "UWS restored!", null);
-
-		return report;
+	/**
+	 * Log the restoration progress, if not already done during the last
+	 * {@link #PROGRESS_LOG_PERIOD} milliseconds.
+	 *
+	 * @since 4.5
+	 */
+	protected void logProgress(){
+		long last = lastProgressLog.get(), now = System.currentTimeMillis();
+		if (now - last >= PROGRESS_LOG_PERIOD && lastProgressLog.compareAndSet(last, now)){
+			int[] progress = getRestorationProgress();
+			getLogger().logUWS(LogLevel.INFO, progress, "RESTORATION", "Restoration of the UWS " + uws.getName() + " in progress: " + progress[0] + " backup files read, " + progress[1] + " jobs restored on " + progress[2] + ", " + progress[3] + " users restored on " + progress[4] + ".", null);
+		}
 	}
 
 	/**
@@ -938,11 +1286,42 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 	 * @throws UWSException	If the job ID or the job list name is missing,
 	 * 						or if the job list name is incorrect,
 	 * 						or if there is an error with "parameters", "error" and "results".
+	 *
+	 * @see #buildJob(JSONObject, Map)
 	 */
 	protected boolean restoreJob(final JSONObject json, Map<String, JobOwner> users) throws UWSException{
-		if (json == null || json.length() == 0)
+		UWSJob job = buildJob(json, users);
+		if (job == null)
 			return false;
 
+		// Restore it in its jobs list:
+		String jobListName = null;
+		for(String key : JSONObject.getNames(json)){
+			if (key.equalsIgnoreCase("jobListName"))
+				jobListName = json.optString(key);
+		}
+		return (uws.getJobList(jobListName).addNewJob(job) != null);
+	}
+
+	/**
+	 * Builds the job corresponding to the given JSON object, without adding it in its jobs list.
+	 *
+	 * @param json			The JSON representation of the job to build.
+	 * @param users			The list of all fetched users.
+	 *
+	 * @return				The corresponding job,
+	 *        				or <i>null</i> if it can not be built (the reason is then logged).
+	 *
+	 * @throws UWSException	If the job ID or the job list name is missing,
+	 * 						or if the job list name is incorrect,
+	 * 						or if there is an error with "parameters", "error" and "results".
+	 *
+	 * @since 4.5
+	 */
+	protected UWSJob buildJob(final JSONObject json, Map<String, JobOwner> users) throws UWSException{
+		if (json == null || json.length() == 0)
+			return null;
+
 		String jobListName = null, jobId = null, ownerID = null, tmp;
 		//Date destruction=null;
 		long quote = UWSJob.UNLIMITED_DURATION,
@@ -985,10 +1364,8 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 
 				// key=CREATION_TIME:
 				else if (key.equalsIgnoreCase(UWSJob.PARAM_CREATION_TIME)){
-					tmp = json.getString(key);
 					try{
-						Date d = ISO8601Format.parseToDate(tmp);
-						creationTime = d.getTime();
+						creationTime = getTime(json, key);
 					}catch(ParseException pe){
 						getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Incorrect date format for the '" + key + "' parameter!", pe);
 					}
@@ -1001,28 +1378,23 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 				}// key=DESTRUCTION:
 				else if (key.equalsIgnoreCase(UWSJob.PARAM_DESTRUCTION_TIME)){
 					try{
-						tmp = json.getString(key);
-						inputParams.put(UWSJob.PARAM_DESTRUCTION_TIME, ISO8601Format.parseToDate(tmp));
+						inputParams.put(UWSJob.PARAM_DESTRUCTION_TIME, new Date(getTime(json, key)));
 					}catch(ParseException pe){
 						getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Incorrect date format for the '" + key + "' parameter!", pe);
 					}
 
 				}// key=START_TIME:
 				else if (key.equalsIgnoreCase(UWSJob.PARAM_START_TIME)){
-					tmp = json.getString(key);
 					try{
-						Date d = ISO8601Format.parseToDate(tmp);
-						startTime = d.getTime();
+						startTime = getTime(json, key);
 					}catch(ParseException pe){
 						getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Incorrect date format for the '" + key + "' parameter!", pe);
 					}
 
 				}// key=END_TIME:
 				else if (key.equalsIgnoreCase(UWSJob.PARAM_END_TIME)){
-					tmp = json.getString(key);
 					try{
-						Date d = ISO8601Format.parseToDate(tmp);
-						endTime = d.getTime();
+						endTime = getTime(json, key);
 					}catch(ParseException pe){
 						getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Incorrect date format for the '" + key + "' parameter!", pe);
 					}
@@ -1095,7 +1467,7 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 			// If the specified user is unknown, display a warning and create the job without owner:
 			if (ownerID != null && !ownerID.isEmpty() && owner == null){
 				getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Unknown job owner: " + ownerID + "! => Can not restore the job " + jobId + "!", null);
-				return false;
+				return null;
 			}
 
 			// Build the UWSParameters object:
@@ -1104,7 +1476,7 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 				uwsParams = uws.getFactory().createUWSParameters(inputParams);
 			}catch(UWSException ue){
 				getLogger().logUWS(LogLevel.ERROR, json, "RESTORATION", "Error with at least one of the UWS parameters to restore!", ue);
-				return false;
+				return null;
 			}
 
 			// Create the job:
@@ -1117,10 +1489,9 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 			// Restore other job params if needed:
 			restoreOtherJobParams(json, job);
 
-			// Restore it:
-			return (uws.getJobList(jobListName).addNewJob(job) != null);
+			return job;
 		}
-		return false;
+		return null;
 	}
 
 	/**
@@ -1143,6 +1514,32 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 		;
 	}
 
+	/**
+	 * Get the date stored in the specified attribute of the given JSON object.
+	 *
+	 * <p>
+	 * 	The date may be either expressed in milliseconds (i.e. a number) or
+	 * 	in ISO-8601 (i.e. a string).
+	 * </p>
+	 *
+	 * @param json	The JSON object containing the date.
+	 * @param key	Name of the attribute containing the date.
+	 *
+	 * @return	The date in milliseconds.
+	 *
+	 * @throws JSONException	If the attribute is missing.
+	 * @throws ParseException	If the date is not a valid ISO-8601 date.
+	 *
+	 * @since 4.5
+	 */
+	protected long getTime(final JSONObject json, final String key) throws JSONException, ParseException{
+		Object value = json.get(key);
+		if (value instanceof Number)
+			return ((Number)value).longValue();
+		else
+			return ISO8601Format.parseToDate(value.toString()).getTime();
+	}
+
 	/**
 	 * Builds the list of parameters corresponding to the given JSON object.
 	 *
@@ -1239,7 +1636,7 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 
 		String id = null, type = null, href = null, mime = null;
 		boolean redirection = false;
-		long size = -1;
+		long size = -1, lastModified = -1;
 		String[] names = JSONObject.getNames(obj);
 		for(String n : names){
 			if (n.equalsIgnoreCase("id"))
@@ -1254,6 +1651,8 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 				redirection = obj.getBoolean(n);
 			else if (n.equalsIgnoreCase("size"))
 				size = obj.getLong(n);
+			else if (n.equalsIgnoreCase("last-modified"))
+				lastModified = obj.getLong(n);
 			else
 				getLogger().logUWS(LogLevel.WARNING, obj, "RESTORATION", "The result parameter '" + n + "' has been ignored because unknown! A result may be not completely restored!", null);
 		}
@@ -1265,6 +1664,7 @@ public class DefaultUWSBackupManager implements UWSBackupManager {
 			Result r = new Result(id, type, href, redirection);
 			r.setMimeType(mime);
 			r.setSize(size);
+			r.setLastModified(lastModified);
 			return r;
 		}
 	}
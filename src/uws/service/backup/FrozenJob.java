@@ -0,0 +1,205 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import uws.job.ExecutionPhase;
+import uws.job.user.JobOwner;
+
+/**
+ * Compact and immutable representation of a finished job, as kept in memory
+ * by a {@link FrozenJobStore}.
+ *
+ * <p>
+ * 	Only the attributes needed to list, select and destroy jobs are kept as
+ * 	such: the job ID, the phase, the owner (shared by all the frozen jobs of
+ * 	the same user) and the timestamps (in milliseconds). Everything else
+ * 	(parameters, results, error summary, job info, ...) is packed into a
+ * 	compressed array of bytes, decoded only when the job has to be rebuilt
+ * 	(see {@link #getDescription()}).
+ * </p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see FrozenJobStore
+ */
+public final class FrozenJob {
+
+	/** ID of the job. */
+	public final String jobId;
+
+	/** Phase of the job. */
+	public final ExecutionPhase phase;
+
+	/** Owner of the job. <i>MAY be NULL</i> */
+	public final JobOwner owner;
+
+	/** Creation time of the job (in milliseconds). */
+	public final long creationTime;
+
+	/** Start time of the job (in milliseconds). <i>-1 if none.</i> */
+	public final long startTime;
+
+	/** End time of the job (in milliseconds). <i>-1 if none.</i> */
+	public final long endTime;
+
+	/** Destruction time of the job (in milliseconds). <i>-1 if none.</i> */
+	public final long destructionTime;
+
+	/** Compressed UTF-8 serialization of the rest of the job description. */
+	private final byte[] description;
+
+	/**
+	 * Build a frozen job.
+	 *
+	 * @param jobId				ID of the job.
+	 * @param phase				Phase of the job.
+	 * @param owner				Owner of the job. <i>MAY be NULL</i>
+	 * @param creationTime		Creation time of the job (in milliseconds).
+	 * @param startTime			Start time of the job (in milliseconds).
+	 *                 			<i>-1 if none.</i>
+	 * @param endTime			End time of the job (in milliseconds).
+	 *               			<i>-1 if none.</i>
+	 * @param destructionTime	Destruction time of the job (in milliseconds).
+	 *                       	<i>-1 if none.</i>
+	 * @param description		Serialization of the rest of the job
+	 *                   		description. <i>It will be compressed.</i>
+	 */
+	public FrozenJob(final String jobId, final ExecutionPhase phase, final JobOwner owner, final long creationTime, final long startTime, final long endTime, final long destructionTime, final String description){
+		if (jobId == null)
+			throw new NullPointerException("Missing job ID! Can not freeze a job.");
+		this.jobId = jobId;
+		this.phase = phase;
+		this.owner = owner;
+		this.creationTime = creationTime;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.destructionTime = destructionTime;
+		this.description = pack(description);
+	}
+
+	/**
+	 * Build a frozen job usable only to search the position of a job in a
+	 * sorted set.
+	 *
+	 * @param jobId			ID of the job.
+	 * @param creationTime	Creation time of the job (in milliseconds).
+	 */
+	FrozenJob(final String jobId, final long creationTime){
+		this.jobId = jobId;
+		this.phase = null;
+		this.owner = null;
+		this.creationTime = creationTime;
+		this.startTime = -1;
+		this.endTime = -1;
+		this.destructionTime = -1;
+		this.description = null;
+	}
+
+	/**
+	 * Decode the packed part of the job description.
+	 *
+	 * @return	The serialization given at the creation of this frozen job.
+	 */
+	public String getDescription(){
+		return unpack(description);
+	}
+
+	/**
+	 * Get the size of the packed part of the job description.
+	 *
+	 * @return	Number of bytes of the packed description.
+	 */
+	public int getPackedSize(){
+		return (description == null) ? 0 : description.length;
+	}
+
+	@Override
+	public String toString(){
+		return jobId;
+	}
+
+	/**
+	 * Compress the given string.
+	 *
+	 * @param str	The string to compress. <i>MAY be NULL</i>
+	 *
+	 * @return	The compressed UTF-8 bytes, or <i>null</i> if the given string
+	 *        	is NULL.
+	 */
+	private static byte[] pack(final String str){
+		if (str == null)
+			return null;
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try{
+			deflater.setInput(str.getBytes("UTF-8"));
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(str.length() / 2 + 16);
+			byte[] buffer = new byte[1024];
+			while(!deflater.finished())
+				out.write(buffer, 0, deflater.deflate(buffer));
+			return out.toByteArray();
+		}catch(UnsupportedEncodingException uee){
+			throw new IllegalStateException("UTF-8 not supported!", uee);
+		}finally{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Decompress the given bytes.
+	 *
+	 * @param bytes	The compressed UTF-8 bytes. <i>MAY be NULL</i>
+	 *
+	 * @return	The decompressed string, or <i>null</i> if the given array is
+	 *        	NULL.
+	 */
+	private static String unpack(final byte[] bytes){
+		if (bytes == null)
+			return null;
+		Inflater inflater = new Inflater();
+		try{
+			inflater.setInput(bytes);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+			byte[] buffer = new byte[1024];
+			while(!inflater.finished()){
+				int n = inflater.inflate(buffer);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IllegalStateException("Truncated description for a frozen job!");
+				out.write(buffer, 0, n);
+			}
+			return out.toString("UTF-8");
+		}catch(DataFormatException dfe){
+			throw new IllegalStateException("Corrupted description for a frozen job!", dfe);
+		}catch(UnsupportedEncodingException uee){
+			throw new IllegalStateException("UTF-8 not supported!", uee);
+		}finally{
+			inflater.end();
+		}
+	}
+
+}
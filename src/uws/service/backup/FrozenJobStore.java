@@ -0,0 +1,393 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import uws.UWSException;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+import uws.service.UWS;
+
+/**
+ * {@link JobStore} keeping the finished jobs in memory, but in a compact
+ * form: {@link FrozenJob}.
+ *
+ * <p>
+ * 	A finished job does not need most of the objects a {@link UWSJob} is made
+ * 	of (dates, parameters controllers, results map, thread reference, ...).
+ * 	So, when set to a {@link JobList}, this store lets the jobs list replace
+ * 	its finished jobs by frozen jobs, which keep only primitive timestamps,
+ * 	a reference to the phase and to a shared owner object, and the rest of
+ * 	the job description packed into a compressed array of bytes.
+ * </p>
+ *
+ * <p>
+ * 	A frozen job is thawed (i.e. rebuilt as a {@link UWSJob}) only when
+ * 	needed, as a job of any other {@link JobStore} would be loaded. The
+ * 	serialization and the restoration of the packed part are delegated to a
+ * 	{@link DefaultUWSBackupManager} ; so, a thawed job is exactly the same as
+ * 	a job restored by this backup manager.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Contrary to {@link JDBCJobStore}, the jobs of this store do not survive a
+ * 	restart of the service. Then, a usual backup manager is still needed to
+ * 	save them (see {@link DefaultUWSBackupManager#saveAll()}).
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see FrozenJob
+ */
+public class FrozenJobStore implements JobStore {
+
+	/** Order of {@link uws.job.JobListIndex}: by descending creation time, and then by ascending job ID. */
+	protected final static Comparator<FrozenJob> INDEX_ORDER = new Comparator<FrozenJob>(){
+		@Override
+		public int compare(final FrozenJob j1, final FrozenJob j2){
+			if (j1.creationTime != j2.creationTime)
+				return (j1.creationTime > j2.creationTime) ? -1 : 1;
+			else
+				return j1.jobId.compareTo(j2.jobId);
+		}
+	};
+
+	/** Names of the job attributes kept out of the packed job description. */
+	private final static String[] UNPACKED_KEYS = new String[]{ UWSJob.PARAM_JOB_ID, UWSJob.PARAM_PHASE, UWSJob.PARAM_OWNER, UWSJob.PARAM_CREATION_TIME, UWSJob.PARAM_START_TIME, UWSJob.PARAM_END_TIME, UWSJob.PARAM_DESTRUCTION_TIME, "jobListName" };
+
+	/** The UWS whose the jobs are stored. */
+	protected final UWS uws;
+
+	/** Backup manager used to serialize and restore the packed part of jobs. */
+	protected final DefaultUWSBackupManager format;
+
+	/** Frozen jobs of each jobs list (key = name of the jobs list). */
+	private final Map<String,Partition> partitions = new ConcurrentHashMap<String,Partition>();
+
+	/** Owner of the frozen jobs, shared by all jobs of the same user (key = owner ID). */
+	private final Map<String,JobOwner> owners = new ConcurrentHashMap<String,JobOwner>();
+
+	/**
+	 * Build an empty store of frozen jobs.
+	 *
+	 * @param uws		The UWS whose the jobs must be stored.
+	 * @param format	Backup manager to use to serialize and restore jobs.
+	 *              	<i>If NULL, a {@link DefaultUWSBackupManager} is
+	 *              	used.</i>
+	 */
+	public FrozenJobStore(final UWS uws, final DefaultUWSBackupManager format){
+		if (uws == null)
+			throw new NullPointerException("Missing UWS! Can not create a FrozenJobStore.");
+		this.uws = uws;
+		this.format = (format == null) ? new DefaultUWSBackupManager(uws, DefaultUWSBackupManager.MANUAL) : format;
+	}
+
+	/**
+	 * Get the frozen jobs of the given jobs list.
+	 *
+	 * @param jobList	A jobs list.
+	 * @param create	<i>true</i> to create the partition if none exists yet.
+	 *
+	 * @return	The corresponding partition,
+	 *        	or <i>null</i> if none exists and create is <i>false</i>.
+	 */
+	private Partition getPartition(final JobList jobList, final boolean create){
+		Partition partition = partitions.get(jobList.getName());
+		if (partition == null && create){
+			synchronized(partitions){
+				partition = partitions.get(jobList.getName());
+				if (partition == null){
+					partition = new Partition();
+					partitions.put(jobList.getName(), partition);
+				}
+			}
+		}
+		return partition;
+	}
+
+	/**
+	 * Get the object to use to represent the given job owner in the frozen
+	 * jobs.
+	 *
+	 * @param owner	A job owner. <i>MAY be NULL</i>
+	 *
+	 * @return	The first given owner having the same ID.
+	 */
+	protected final JobOwner intern(final JobOwner owner){
+		if (owner == null || owner.getID() == null)
+			return owner;
+		JobOwner interned = owners.get(owner.getID());
+		if (interned == null){
+			synchronized(owners){
+				interned = owners.get(owner.getID());
+				if (interned == null){
+					owners.put(owner.getID(), owner);
+					interned = owner;
+				}
+			}
+		}
+		return interned;
+	}
+
+	/**
+	 * Build the compact representation of the given job.
+	 *
+	 * @param job	The job to freeze.
+	 *
+	 * @return	The corresponding frozen job.
+	 *
+	 * @throws UWSException	If the job can not be serialized.
+	 */
+	protected FrozenJob freeze(final UWSJob job) throws UWSException{
+		try{
+			JSONObject json = format.getJSONJob(job, job.getJobList().getName());
+			for(String key : UNPACKED_KEYS)
+				json.remove(key);
+			return new FrozenJob(job.getJobId(), job.getPhase(), intern(job.getOwner()), (job.getCreationTime() == null) ? 0 : job.getCreationTime().getTime(), getTime(job.getStartTime()), getTime(job.getEndTime()), getTime(job.getDestructionTime()), json.toString());
+		}catch(JSONException je){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, je, "Impossible to serialize the job \"" + job.getJobId() + "\" in JSON!");
+		}
+	}
+
+	/**
+	 * Rebuild the job represented by the given frozen job.
+	 *
+	 * @param jobList	The jobs list of the job.
+	 * @param frozen	The frozen job to rebuild.
+	 *
+	 * @return	The corresponding job,
+	 *        	or <i>null</i> if it can not be rebuilt (the reason is then
+	 *        	logged by the backup manager).
+	 *
+	 * @throws UWSException	If the job can not be rebuilt.
+	 */
+	protected UWSJob thaw(final JobList jobList, final FrozenJob frozen) throws UWSException{
+		try{
+			// Restore the attributes kept out of the packed description:
+			JSONObject json = new JSONObject(frozen.getDescription());
+			json.put(UWSJob.PARAM_JOB_ID, frozen.jobId);
+			json.put("jobListName", jobList.getName());
+			json.put(UWSJob.PARAM_CREATION_TIME, frozen.creationTime);
+			if (frozen.startTime >= 0)
+				json.put(UWSJob.PARAM_START_TIME, frozen.startTime);
+			if (frozen.endTime >= 0)
+				json.put(UWSJob.PARAM_END_TIME, frozen.endTime);
+			if (frozen.destructionTime >= 0)
+				json.put(UWSJob.PARAM_DESTRUCTION_TIME, frozen.destructionTime);
+			Map<String,JobOwner> users = new HashMap<String,JobOwner>(1);
+			if (frozen.owner != null){
+				json.put(UWSJob.PARAM_OWNER, frozen.owner.getID());
+				users.put(frozen.owner.getID(), frozen.owner);
+			}
+
+			// Rebuild the job:
+			UWSJob job = format.buildJob(json, users);
+
+			/* The phase can not always be deduced from the job description
+			 * (e.g. ARCHIVED, or COMPLETED without result): */
+			if (job != null && job.getPhase() != frozen.phase && frozen.phase != null)
+				job.setPhase(frozen.phase, true);
+
+			return job;
+		}catch(JSONException je){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, je, "Incorrect JSON serialization for the frozen job \"" + frozen.jobId + "\"!");
+		}
+	}
+
+	@Override
+	public void save(final UWSJob job) throws UWSException{
+		if (job == null || job.getJobList() == null)
+			return;
+		FrozenJob frozen = freeze(job);
+		Partition partition = getPartition(job.getJobList(), true);
+		synchronized(partition){
+			FrozenJob old = partition.byId.put(frozen.jobId, frozen);
+			if (old != null)
+				partition.sorted.remove(old);
+			partition.sorted.add(frozen);
+		}
+	}
+
+	@Override
+	public boolean update(final UWSJob job) throws UWSException{
+		if (job == null || job.getJobList() == null)
+			return false;
+		Partition partition = getPartition(job.getJobList(), false);
+		if (partition == null || !partition.byId.containsKey(job.getJobId()))
+			return false;
+		FrozenJob frozen = freeze(job);
+		synchronized(partition){
+			FrozenJob old = partition.byId.get(frozen.jobId);
+			if (old == null)
+				return false;
+			partition.byId.put(frozen.jobId, frozen);
+			partition.sorted.remove(old);
+			partition.sorted.add(frozen);
+			return true;
+		}
+	}
+
+	@Override
+	public UWSJob load(final JobList jobList, final String jobId) throws UWSException{
+		if (jobList == null || jobId == null)
+			return null;
+		Partition partition = getPartition(jobList, false);
+		FrozenJob frozen = (partition == null) ? null : partition.byId.get(jobId);
+		return (frozen == null) ? null : thaw(jobList, frozen);
+	}
+
+	/**
+	 * Get the frozen version of the specified job.
+	 *
+	 * @param jobList	The jobs list of the job.
+	 * @param jobId		ID of the job.
+	 *
+	 * @return	The frozen job, or <i>null</i> if this store does not know the
+	 *        	specified job.
+	 */
+	public FrozenJob getFrozenJob(final JobList jobList, final String jobId){
+		if (jobList == null || jobId == null)
+			return null;
+		Partition partition = getPartition(jobList, false);
+		return (partition == null) ? null : partition.byId.get(jobId);
+	}
+
+	@Override
+	public boolean remove(final JobList jobList, final String jobId) throws UWSException{
+		if (jobList == null || jobId == null)
+			return false;
+		Partition partition = getPartition(jobList, false);
+		if (partition == null)
+			return false;
+		synchronized(partition){
+			FrozenJob old = partition.byId.remove(jobId);
+			if (old != null)
+				partition.sorted.remove(old);
+			return (old != null);
+		}
+	}
+
+	@Override
+	public int count(final JobList jobList, final JobOwner owner) throws UWSException{
+		Partition partition = (jobList == null) ? null : getPartition(jobList, false);
+		if (partition == null)
+			return 0;
+		else if (owner == null)
+			return partition.byId.size();
+		int count = 0;
+		for(FrozenJob frozen : partition.byId.values()){
+			if (frozen.owner != null && owner.getID().equals(frozen.owner.getID()))
+				count++;
+		}
+		return count;
+	}
+
+	@Override
+	public List<Key> select(final JobList jobList, final JobOwner owner, final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit) throws UWSException{
+		List<Key> keys = new ArrayList<Key>();
+		Partition partition = (jobList == null) ? null : getPartition(jobList, false);
+		if (partition == null || limit == 0)
+			return keys;
+
+		NavigableSet<FrozenJob> jobs = (fromJobId == null) ? partition.sorted : partition.sorted.tailSet(new FrozenJob(fromJobId, fromTime), false);
+		for(FrozenJob frozen : jobs){
+			if (after != null && frozen.creationTime <= after.getTime())
+				break;
+			else if (owner != null && (frozen.owner == null || !owner.getID().equals(frozen.owner.getID())))
+				continue;
+			else if (phases != null && !phases.contains(frozen.phase))
+				continue;
+			keys.add(new Key(frozen.creationTime, frozen.jobId));
+			if (limit > 0 && keys.size() >= limit)
+				break;
+		}
+		return keys;
+	}
+
+	@Override
+	public List<String> selectExpired(final JobList jobList, final Date date) throws UWSException{
+		List<String> ids = new ArrayList<String>();
+		Partition partition = (jobList == null || date == null) ? null : getPartition(jobList, false);
+		if (partition == null)
+			return ids;
+		for(FrozenJob frozen : partition.byId.values()){
+			if (frozen.destructionTime >= 0 && frozen.destructionTime <= date.getTime() && frozen.phase != ExecutionPhase.ARCHIVED)
+				ids.add(frozen.jobId);
+		}
+		return ids;
+	}
+
+	/**
+	 * Forget all frozen jobs.
+	 */
+	@Override
+	public void close(){
+		partitions.clear();
+		owners.clear();
+	}
+
+	/**
+	 * Get the given date in milliseconds.
+	 *
+	 * @param date	A date. <i>MAY be NULL</i>
+	 *
+	 * @return	The date in milliseconds, or -1 if NULL.
+	 */
+	private static long getTime(final Date date){
+		return (date == null) ? -1 : date.getTime();
+	}
+
+	/**
+	 * Frozen jobs of one jobs list.
+	 *
+	 * <p><i>Note:
+	 * 	Both collections are concurrent so that they can be read without lock.
+	 * 	Their modifications are synchronized on the partition.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private final static class Partition {
+		/** Frozen jobs by ID. */
+		final Map<String,FrozenJob> byId = new ConcurrentHashMap<String,FrozenJob>();
+		/** Frozen jobs sorted by {@link FrozenJobStore#INDEX_ORDER}. */
+		final ConcurrentSkipListSet<FrozenJob> sorted = new ConcurrentSkipListSet<FrozenJob>(INDEX_ORDER);
+	}
+
+}
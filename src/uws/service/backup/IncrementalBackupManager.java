@@ -0,0 +1,65 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import uws.job.JobList;
+import uws.job.UWSJob;
+
+/**
+ * Backup manager saving the modifications of a UWS as they happen, instead
+ * of (or in addition to) saving regularly the whole UWS.
+ *
+ * <p>
+ * 	A {@link JobList} notifies such backup manager of each job it adds or
+ * 	removes. Then, the backup manager may follow the modifications of each
+ * 	job thanks to the {@link uws.job.JobObserver} interface.
+ * </p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see JournalUWSBackupManager
+ */
+public interface IncrementalBackupManager extends UWSBackupManager {
+
+	/**
+	 * Notify this backup manager that the given job has just been added in
+	 * the given jobs list.
+	 *
+	 * <p><i>Note:
+	 * 	This function is also called when a job is restored.
+	 * </i></p>
+	 *
+	 * @param jobList	The jobs list in which the job has been added.
+	 * @param job		The added job.
+	 */
+	public void jobAdded(final JobList jobList, final UWSJob job);
+
+	/**
+	 * Notify this backup manager that the given job has just been removed
+	 * from the given jobs list.
+	 *
+	 * @param jobList	The jobs list from which the job has been removed.
+	 * @param job		The removed job.
+	 */
+	public void jobRemoved(final JobList jobList, final UWSJob job);
+
+}
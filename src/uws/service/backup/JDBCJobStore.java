@@ -0,0 +1,506 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import uws.UWSException;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+import uws.service.UWS;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * {@link JobStore} saving jobs in a table of a database accessed with JDBC
+ * (e.g. an embedded H2 database).
+ *
+ * <p>
+ * 	All jobs are stored in one table (by default <code>uws_jobs</code>),
+ * 	created if it does not exist yet. Besides the name of the jobs list and the
+ * 	ID of the job (primary key), the columns used to select jobs are stored
+ * 	separately and indexed: owner ID, phase, creation time and destruction
+ * 	time. The whole description of the job and of its owner is stored as
+ * 	JSON. This JSON serialization and the restoration of jobs and users are
+ * 	delegated to a {@link DefaultUWSBackupManager} (or any extension, like
+ * 	{@link tap.backup.DefaultTAPBackupManager}) ; so, a job loaded from this
+ * 	store is exactly the same as a job restored by this backup manager.
+ * </p>
+ *
+ * <p>
+ * 	Only standard SQL is used. So, any database with a JDBC driver should be
+ * 	usable. For instance, an embedded H2 database can be used with a JDBC
+ * 	URL like <code>jdbc:h2:/path/to/uws_jobs</code>.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Jobs are sorted by ascending job ID with the collation of the database.
+ * 	The selection order is then the one of {@link uws.job.JobListIndex} only
+ * 	if this collation is binary (as with H2), which matters only for jobs
+ * 	created at the same millisecond.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class JDBCJobStore implements JobStore {
+
+	/** Default name of the table in which jobs are stored. */
+	public final static String DEFAULT_TABLE_NAME = "uws_jobs";
+
+	/** The UWS whose the jobs are stored. */
+	protected final UWS uws;
+
+	/** Backup manager used to serialize and restore jobs and users. */
+	protected final DefaultUWSBackupManager format;
+
+	/** Name of the table in which jobs are stored. */
+	protected final String table;
+
+	/** Connection to the database. <i>Used by only one thread at a time.</i> */
+	private Connection connection;
+
+	/**
+	 * Build a job store saving jobs in the table {@link #DEFAULT_TABLE_NAME}
+	 * of the specified database.
+	 *
+	 * @param uws		The UWS whose the jobs must be stored.
+	 * @param format	Backup manager to use to serialize and restore jobs and
+	 *              	users. Its own backup should be disabled (i.e.
+	 *              	{@link DefaultUWSBackupManager#MANUAL}).
+	 *              	<i>If NULL, a {@link DefaultUWSBackupManager} is
+	 *              	used.</i>
+	 * @param url		JDBC URL of the database.
+	 * @param user		Name of the database user. <i>MAY be NULL</i>
+	 * @param password	Password of the database user. <i>MAY be NULL</i>
+	 *
+	 * @throws UWSException	If the connection to the database fails or if the
+	 *                     	table can not be created.
+	 */
+	public JDBCJobStore(final UWS uws, final DefaultUWSBackupManager format, final String url, final String user, final String password) throws UWSException{
+		this(uws, format, openConnection(url, user, password), DEFAULT_TABLE_NAME);
+	}
+
+	/**
+	 * Build a job store saving jobs in the given table.
+	 *
+	 * @param uws			The UWS whose the jobs must be stored.
+	 * @param format		Backup manager to use to serialize and restore jobs
+	 *              		and users.
+	 *              		<i>If NULL, a {@link DefaultUWSBackupManager} is
+	 *              		used.</i>
+	 * @param connection	An open connection to the database. It will be
+	 *                  	closed by {@link #close()}.
+	 * @param table			Name of the table in which jobs must be stored.
+	 *             			<i>If NULL, {@link #DEFAULT_TABLE_NAME}.</i>
+	 *
+	 * @throws UWSException	If the table can not be created.
+	 */
+	public JDBCJobStore(final UWS uws, final DefaultUWSBackupManager format, final Connection connection, final String table) throws UWSException{
+		if (uws == null)
+			throw new NullPointerException("Missing UWS! Can not create a JDBCJobStore.");
+		if (connection == null)
+			throw new NullPointerException("Missing database connection! Can not create a JDBCJobStore.");
+		this.uws = uws;
+		this.format = (format == null) ? new DefaultUWSBackupManager(uws, DefaultUWSBackupManager.MANUAL) : format;
+		this.connection = connection;
+		this.table = (table == null || table.trim().isEmpty()) ? DEFAULT_TABLE_NAME : table.trim();
+		createTable();
+	}
+
+	/**
+	 * Open a connection to the specified database.
+	 *
+	 * @param url		JDBC URL of the database.
+	 * @param user		Name of the database user. <i>MAY be NULL</i>
+	 * @param password	Password of the database user. <i>MAY be NULL</i>
+	 *
+	 * @return	The open connection.
+	 *
+	 * @throws UWSException	If the connection fails.
+	 */
+	protected static Connection openConnection(final String url, final String user, final String password) throws UWSException{
+		try{
+			return (user == null) ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to connect to the job store database \"" + url + "\"!");
+		}
+	}
+
+	/**
+	 * Create the table of jobs and its indexes, if they do not exist yet.
+	 *
+	 * @throws UWSException	If the table or one of its indexes can not be
+	 *                     	created.
+	 */
+	protected synchronized void createTable() throws UWSException{
+		Statement stmt = null;
+		try{
+			stmt = getConnection().createStatement();
+			stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " (job_list VARCHAR(255) NOT NULL, job_id VARCHAR(255) NOT NULL, owner_id VARCHAR(255), phase VARCHAR(16) NOT NULL, creation_time BIGINT NOT NULL, destruction_time BIGINT, owner_json VARCHAR, job_json VARCHAR NOT NULL, PRIMARY KEY(job_list, job_id))");
+			stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_owner_idx ON " + table + " (job_list, owner_id, creation_time)");
+			stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_phase_idx ON " + table + " (job_list, phase, creation_time)");
+			stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_destruction_idx ON " + table + " (job_list, destruction_time)");
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to create the job store table \"" + table + "\"!");
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Get the connection to the database.
+	 *
+	 * @return	The connection.
+	 *
+	 * @throws SQLException	If this store is closed.
+	 */
+	protected final Connection getConnection() throws SQLException{
+		if (connection == null)
+			throw new SQLException("This job store is closed!");
+		return connection;
+	}
+
+	@Override
+	public synchronized void save(final UWSJob job) throws UWSException{
+		write(job, true);
+	}
+
+	@Override
+	public synchronized boolean update(final UWSJob job) throws UWSException{
+		return write(job, false);
+	}
+
+	/**
+	 * Update the given job, and insert it if not yet stored and if asked.
+	 *
+	 * @param job		The job to store.
+	 * @param insert	<i>true</i> to insert the job if not yet stored,
+	 *              	<i>false</i> to only update it.
+	 *
+	 * @return	<i>true</i> if the job has been updated or inserted,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @throws UWSException	If the job can not be stored.
+	 */
+	private boolean write(final UWSJob job, final boolean insert) throws UWSException{
+		if (job == null || job.getJobList() == null)
+			return false;
+
+		// Serialize the job and its owner:
+		String jobJson, ownerJson = null;
+		try{
+			jobJson = format.getJSONJob(job, job.getJobList().getName()).toString();
+			if (job.getOwner() != null)
+				ownerJson = format.getJSONUser(job.getOwner()).toString();
+		}catch(JSONException je){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, je, "Impossible to serialize the job \"" + job.getJobId() + "\" in JSON!");
+		}
+
+		// Update the job, or insert it if not yet stored:
+		PreparedStatement stmt = null;
+		try{
+			stmt = getConnection().prepareStatement("UPDATE " + table + " SET owner_id = ?, phase = ?, creation_time = ?, destruction_time = ?, owner_json = ?, job_json = ? WHERE job_list = ? AND job_id = ?");
+			setColumns(stmt, job, ownerJson, jobJson, 1);
+			stmt.setString(7, job.getJobList().getName());
+			stmt.setString(8, job.getJobId());
+			if (stmt.executeUpdate() > 0)
+				return true;
+			else if (!insert)
+				return false;
+			close(stmt);
+			stmt = getConnection().prepareStatement("INSERT INTO " + table + " (owner_id, phase, creation_time, destruction_time, owner_json, job_json, job_list, job_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+			setColumns(stmt, job, ownerJson, jobJson, 1);
+			stmt.setString(7, job.getJobList().getName());
+			stmt.setString(8, job.getJobId());
+			return stmt.executeUpdate() > 0;
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to store the job \"" + job.getJobId() + "\"!");
+		}finally{
+			close(stmt);
+		}
+	}
+
+	/**
+	 * Set the value of the columns describing the given job, in the order:
+	 * owner_id, phase, creation_time, destruction_time, owner_json and
+	 * job_json.
+	 *
+	 * @param stmt			The statement to fill.
+	 * @param job			The job to store.
+	 * @param ownerJson		JSON serialization of the job owner. <i>MAY be NULL</i>
+	 * @param jobJson		JSON serialization of the job.
+	 * @param firstIndex	Index of the first parameter to set.
+	 *
+	 * @throws SQLException	If a parameter can not be set.
+	 */
+	private static void setColumns(final PreparedStatement stmt, final UWSJob job, final String ownerJson, final String jobJson, final int firstIndex) throws SQLException{
+		stmt.setString(firstIndex, (job.getOwner() == null) ? null : job.getOwner().getID());
+		stmt.setString(firstIndex + 1, job.getPhase().name());
+		stmt.setLong(firstIndex + 2, (job.getCreationTime() == null) ? 0 : job.getCreationTime().getTime());
+		if (job.getDestructionTime() == null)
+			stmt.setNull(firstIndex + 3, Types.BIGINT);
+		else
+			stmt.setLong(firstIndex + 3, job.getDestructionTime().getTime());
+		stmt.setString(firstIndex + 4, ownerJson);
+		stmt.setString(firstIndex + 5, jobJson);
+	}
+
+	@Override
+	public synchronized UWSJob load(final JobList jobList, final String jobId) throws UWSException{
+		if (jobList == null || jobId == null)
+			return null;
+
+		// Fetch the stored JSON serializations:
+		String phase, ownerJson, jobJson;
+		long creationTime;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT phase, owner_json, job_json, creation_time FROM " + table + " WHERE job_list = ? AND job_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			rs = stmt.executeQuery();
+			if (!rs.next())
+				return null;
+			phase = rs.getString(1);
+			ownerJson = rs.getString(2);
+			jobJson = rs.getString(3);
+			creationTime = rs.getLong(4);
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to load the job \"" + jobId + "\" from the job store!");
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+
+		// Rebuild the job and its owner:
+		try{
+			Map<String,JobOwner> users = new HashMap<String,JobOwner>(1);
+			if (ownerJson != null){
+				JobOwner owner = format.getUser(new JSONObject(ownerJson));
+				if (owner != null)
+					users.put(owner.getID(), owner);
+			}
+			/* The JSON serialization of the creation time is precise only to
+			 * the second, while the selection cursors need the exact one: */
+			JSONObject json = new JSONObject(jobJson);
+			json.put(UWSJob.PARAM_CREATION_TIME, creationTime);
+			UWSJob job = format.buildJob(json, users);
+
+			/* The phase can not always be deduced from the job description
+			 * (e.g. ARCHIVED, or COMPLETED without result): */
+			if (job != null && !job.getPhase().name().equals(phase)){
+				try{
+					job.setPhase(ExecutionPhase.valueOf(phase), true);
+				}catch(IllegalArgumentException iae){
+					format.getLogger().logUWS(LogLevel.WARNING, null, "JOB_STORE", "Unknown phase for the stored job \"" + jobId + "\": \"" + phase + "\"! The phase " + job.getPhase() + " is kept.", null);
+				}
+			}
+
+			return job;
+		}catch(JSONException je){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, je, "Incorrect JSON serialization for the stored job \"" + jobId + "\"!");
+		}
+	}
+
+	@Override
+	public synchronized boolean remove(final JobList jobList, final String jobId) throws UWSException{
+		if (jobList == null || jobId == null)
+			return false;
+		PreparedStatement stmt = null;
+		try{
+			stmt = getConnection().prepareStatement("DELETE FROM " + table + " WHERE job_list = ? AND job_id = ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setString(2, jobId);
+			return stmt.executeUpdate() > 0;
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to remove the job \"" + jobId + "\" from the job store!");
+		}finally{
+			close(stmt);
+		}
+	}
+
+	@Override
+	public synchronized int count(final JobList jobList, final JobOwner owner) throws UWSException{
+		if (jobList == null)
+			return 0;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE job_list = ?" + ((owner == null) ? "" : " AND owner_id = ?"));
+			stmt.setString(1, jobList.getName());
+			if (owner != null)
+				stmt.setString(2, owner.getID());
+			rs = stmt.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to count the stored jobs of the jobs list \"" + jobList.getName() + "\"!");
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	@Override
+	public synchronized List<Key> select(final JobList jobList, final JobOwner owner, final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit) throws UWSException{
+		List<Key> keys = new ArrayList<Key>();
+		if (jobList == null || limit == 0)
+			return keys;
+
+		// Build the query:
+		List<Object> params = new ArrayList<Object>();
+		StringBuffer sql = new StringBuffer("SELECT creation_time, job_id FROM ");
+		sql.append(table).append(" WHERE job_list = ?");
+		params.add(jobList.getName());
+		if (owner != null){
+			sql.append(" AND owner_id = ?");
+			params.add(owner.getID());
+		}
+		if (phases != null){
+			LinkedHashSet<ExecutionPhase> distinct = new LinkedHashSet<ExecutionPhase>(phases);
+			distinct.remove(null);
+			if (distinct.isEmpty())
+				return keys;
+			sql.append(" AND phase IN (");
+			boolean first = true;
+			for(ExecutionPhase p : distinct){
+				sql.append(first ? "?" : ", ?");
+				params.add(p.name());
+				first = false;
+			}
+			sql.append(')');
+		}
+		if (after != null){
+			sql.append(" AND creation_time > ?");
+			params.add(after.getTime());
+		}
+		if (fromJobId != null){
+			sql.append(" AND (creation_time < ? OR (creation_time = ? AND job_id > ?))");
+			params.add(fromTime);
+			params.add(fromTime);
+			params.add(fromJobId);
+		}
+		sql.append(" ORDER BY creation_time DESC, job_id ASC");
+
+		// Execute it:
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement(sql.toString());
+			for(int i = 0; i < params.size(); i++){
+				if (params.get(i) instanceof Long)
+					stmt.setLong(i + 1, (Long)params.get(i));
+				else
+					stmt.setString(i + 1, (String)params.get(i));
+			}
+			if (limit > 0)
+				stmt.setMaxRows(limit);
+			rs = stmt.executeQuery();
+			while(rs.next() && (limit < 0 || keys.size() < limit))
+				keys.add(new Key(rs.getLong(1), rs.getString(2)));
+			return keys;
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to select the stored jobs of the jobs list \"" + jobList.getName() + "\"!");
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	@Override
+	public synchronized List<String> selectExpired(final JobList jobList, final Date date) throws UWSException{
+		List<String> ids = new ArrayList<String>();
+		if (jobList == null || date == null)
+			return ids;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try{
+			stmt = getConnection().prepareStatement("SELECT job_id FROM " + table + " WHERE job_list = ? AND destruction_time <= ? AND phase <> ?");
+			stmt.setString(1, jobList.getName());
+			stmt.setLong(2, date.getTime());
+			stmt.setString(3, ExecutionPhase.ARCHIVED.name());
+			rs = stmt.executeQuery();
+			while(rs.next())
+				ids.add(rs.getString(1));
+			return ids;
+		}catch(SQLException se){
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, se, "Impossible to select the expired jobs of the jobs list \"" + jobList.getName() + "\"!");
+		}finally{
+			close(rs);
+			close(stmt);
+		}
+	}
+
+	@Override
+	public synchronized void close(){
+		if (connection != null){
+			try{
+				connection.close();
+			}catch(SQLException se){
+				format.getLogger().logUWS(LogLevel.WARNING, null, "JOB_STORE", "Error while closing the job store database connection!", se);
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Close silently the given statement.
+	 *
+	 * @param stmt	The statement to close. <i>MAY be NULL</i>
+	 */
+	private static void close(final Statement stmt){
+		try{
+			if (stmt != null)
+				stmt.close();
+		}catch(SQLException se){}
+	}
+
+	/**
+	 * Close silently the given result set.
+	 *
+	 * @param rs	The result set to close. <i>MAY be NULL</i>
+	 */
+	private static void close(final ResultSet rs){
+		try{
+			if (rs != null)
+				rs.close();
+		}catch(SQLException se){}
+	}
+
+}
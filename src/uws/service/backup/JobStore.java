@@ -0,0 +1,214 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import uws.UWSException;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+
+/**
+ * Persistent storage of the finished jobs of one or several {@link JobList}s.
+ *
+ * <p>
+ * 	When a job store is set to a jobs list (see
+ * 	{@link JobList#setJobStore(JobStore)}), only the active jobs stay in
+ * 	memory. As soon as a job is finished, it is saved in the store and
+ * 	forgotten by the jobs list ; it is then loaded again only when needed
+ * 	(e.g. to get its description or to list the jobs of a user).
+ * </p>
+ *
+ * <p>
+ * 	Jobs are identified in a store by the name of their jobs list and by their
+ * 	ID. The selection functions ({@link #count(JobList, JobOwner)},
+ * 	{@link #select(JobList, JobOwner, Collection, Date, long, String, int)}
+ * 	and {@link #selectExpired(JobList, Date)}) are expected to be answered
+ * 	with indexed queries, without loading any job.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	All functions of a job store may be called concurrently.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ *
+ * @see JDBCJobStore
+ * @see FrozenJobStore
+ */
+public interface JobStore {
+
+	/**
+	 * Save the given job, replacing any former version of it.
+	 *
+	 * @param job	The job to save. <i>It MUST be part of a jobs list.</i>
+	 *
+	 * @throws UWSException	If the job can not be saved.
+	 */
+	public void save(final UWSJob job) throws UWSException;
+
+	/**
+	 * Save the modifications of the given job, but only if it is still
+	 * stored.
+	 *
+	 * <p><i>Note:
+	 * 	Contrary to {@link #save(UWSJob)}, a job removed from this store in the
+	 * 	meantime (e.g. destroyed) is not stored again.
+	 * </i></p>
+	 *
+	 * @param job	The modified job. <i>It MUST be part of a jobs list.</i>
+	 *
+	 * @return	<i>true</i> if the job has been updated,
+	 *        	<i>false</i> if this store does not know it.
+	 *
+	 * @throws UWSException	If the job can not be saved.
+	 */
+	public boolean update(final UWSJob job) throws UWSException;
+
+	/**
+	 * Load the specified job.
+	 *
+	 * <p><i>Note:
+	 * 	The returned job is not yet associated with the given jobs list.
+	 * </i></p>
+	 *
+	 * @param jobList	The jobs list of the job to load.
+	 * @param jobId		ID of the job to load.
+	 *
+	 * @return	The stored job,
+	 *        	or <i>null</i> if this store does not know the specified job.
+	 *
+	 * @throws UWSException	If the job can not be read or rebuilt.
+	 */
+	public UWSJob load(final JobList jobList, final String jobId) throws UWSException;
+
+	/**
+	 * Forget the specified job.
+	 *
+	 * @param jobList	The jobs list of the job to forget.
+	 * @param jobId		ID of the job to forget.
+	 *
+	 * @return	<i>true</i> if the job has been removed,
+	 *        	<i>false</i> if this store did not know it.
+	 *
+	 * @throws UWSException	If the job can not be removed.
+	 */
+	public boolean remove(final JobList jobList, final String jobId) throws UWSException;
+
+	/**
+	 * Count the stored jobs of the given jobs list.
+	 *
+	 * @param jobList	The jobs list whose the jobs must be counted.
+	 * @param owner		The owner of the jobs to count.
+	 *             		<i>If NULL, all jobs are counted.</i>
+	 *
+	 * @return	The number of stored jobs.
+	 *
+	 * @throws UWSException	If the jobs can not be counted.
+	 */
+	public int count(final JobList jobList, final JobOwner owner) throws UWSException;
+
+	/**
+	 * Select the stored jobs of the given jobs list, by descending creation
+	 * time and then by ascending job ID (i.e. the order of
+	 * {@link uws.job.JobListIndex}).
+	 *
+	 * @param jobList	The jobs list whose the jobs must be selected.
+	 * @param owner		The owner of the jobs to select.
+	 *             		<i>If NULL, jobs of all users are selected.</i>
+	 * @param phases	The phases of the jobs to select.
+	 *              	<i>If NULL, jobs of all phases are selected.</i>
+	 * @param after		The date after which the jobs to select must have been
+	 *             		created.
+	 *             		<i>If NULL, no constraint on the creation date.</i>
+	 * @param fromTime	Creation time (in milliseconds) of the job after which
+	 *                	jobs must be selected.
+	 *                	<i>Ignored if fromJobId is NULL.</i>
+	 * @param fromJobId	ID of the job after which jobs must be selected.
+	 *                 	<i>If NULL, jobs are selected from the most recent one.</i>
+	 * @param limit		Maximum number of jobs to select.
+	 *             		<i>If negative, no limit.</i>
+	 *
+	 * @return	The keys of the selected jobs, in the selection order.
+	 *
+	 * @throws UWSException	If the jobs can not be selected.
+	 */
+	public List<Key> select(final JobList jobList, final JobOwner owner, final Collection<ExecutionPhase> phases, final Date after, final long fromTime, final String fromJobId, final int limit) throws UWSException;
+
+	/**
+	 * Select the IDs of the stored jobs of the given jobs list whose the
+	 * destruction time is reached.
+	 *
+	 * <p><i>Note:
+	 * 	Jobs in the phase {@link ExecutionPhase#ARCHIVED ARCHIVED} are never
+	 * 	selected (as done by {@link uws.job.manager.DefaultDestructionManager}).
+	 * </i></p>
+	 *
+	 * @param jobList	The jobs list whose the jobs must be selected.
+	 * @param date		The date at which the destruction time must be reached.
+	 *
+	 * @return	IDs of the jobs to destroy.
+	 *
+	 * @throws UWSException	If the jobs can not be selected.
+	 */
+	public List<String> selectExpired(final JobList jobList, final Date date) throws UWSException;
+
+	/**
+	 * Free all the resources used by this store.
+	 *
+	 * <p><i>Note:
+	 * 	The stored jobs are kept. The store can not be used anymore after a
+	 * 	call to this function. Since a store may be shared by several jobs
+	 * 	lists, calling this function again must have no effect.
+	 * </i></p>
+	 */
+	public void close();
+
+	/**
+	 * Key of a stored job: its creation time and its ID.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	public final static class Key {
+		/** Creation time of the job (in milliseconds). */
+		public final long creationTime;
+		/** ID of the job. */
+		public final String jobId;
+
+		public Key(final long creationTime, final String jobId){
+			this.creationTime = creationTime;
+			this.jobId = jobId;
+		}
+
+		@Override
+		public String toString(){
+			return jobId;
+		}
+	}
+
+}
@@ -0,0 +1,1281 @@
+package uws.service.backup;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.Json4Uws;
+
+import uws.ISO8601Format;
+import uws.UWSException;
+import uws.UWSToolBox;
+import uws.job.ExecutionPhase;
+import uws.job.JobEventObserver;
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+import uws.service.UWS;
+import uws.service.log.UWSLog;
+import uws.service.log.UWSLog.LogLevel;
+import uws.service.request.UploadFile;
+
+/**
+ * Backup manager appending in a journal each modification of the jobs of a
+ * UWS as it happens, instead of saving regularly all the jobs.
+ *
+ * <p>
+ * 	Each modification is written as a compact JSON record (one per line) in
+ * 	the current journal file. The following records exist:
+ * </p>
+ * <ul>
+ * 	<li><code>new</code>: a job has been created (the record contains the
+ * 		whole description of the job and of its owner),</li>
+ * 	<li><code>phase</code>: the phase of a job has changed (with its error
+ * 		summary if the new phase is ERROR),</li>
+ * 	<li><code>param</code>: the start or end time of a job has been set,</li>
+ * 	<li><code>result</code>: a result has been added to a job,</li>
+ * 	<li><code>del</code>: a job has been destroyed.</li>
+ * </ul>
+ *
+ * <p>
+ * 	Records are written by a single thread which writes in one operation all
+ * 	the records waiting to be written (group commit). The data are then
+ * 	forced on the disk in function of the {@link FsyncPolicy}.
+ * </p>
+ *
+ * <p>
+ * 	Regularly (see {@link #getSnapshotFrequency()}), or when the journal
+ * 	becomes too big (see {@link #getMaxJournalSize()}), or when
+ * 	{@link #saveAll()} is called, the journal is compacted into a snapshot:
+ * 	a new journal file is started, all jobs are written as <code>new</code>
+ * 	records in a new snapshot file, and then the former journal files are
+ * 	deleted. {@link #restoreAll()} replays the snapshot and then all journal
+ * 	files.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Replaying a record several times has no effect. So, a record written
+ * 	in the new journal file while the snapshot is being written does not
+ * 	corrupt the restoration.
+ * </i></p>
+ *
+ * <p><i>Note:
+ * 	The JSON description of jobs and users (and their restoration) is
+ * 	delegated to a {@link DefaultUWSBackupManager} (or any extension, like
+ * 	{@link tap.backup.DefaultTAPBackupManager}). So, the restored jobs are
+ * 	exactly the same as with this backup manager. Modifications of job
+ * 	attributes other than the ones listed above (e.g. destruction time) are
+ * 	saved only at the next snapshot.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class JournalUWSBackupManager implements IncrementalBackupManager, JobEventObserver {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Policy forcing (or not) the journal on the disk.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	public static enum FsyncPolicy{
+		/** The journal is forced on the disk after each group commit, and a
+		 * modification is considered as done only once forced on the disk. */
+		ALWAYS,
+		/** The journal is forced on the disk at most every
+		 * {@link JournalUWSBackupManager#getSyncInterval()} milliseconds. */
+		PERIODIC,
+		/** The journal is never explicitly forced on the disk ; the operating
+		 * system decides when. */
+		NEVER;
+	}
+
+	/** Default time (in milliseconds) between two snapshots: 1 hour. */
+	public final static long DEFAULT_SNAPSHOT_FREQUENCY = 3600000;
+
+	/** Default maximum time (in milliseconds) during which written records
+	 * may not be forced on the disk with {@link FsyncPolicy#PERIODIC}: 1 second. */
+	public final static long DEFAULT_SYNC_INTERVAL = 1000;
+
+	/** Default size (in bytes) of the journal above which a snapshot is done: 64MB. */
+	public final static long DEFAULT_MAX_JOURNAL_SIZE = 64 * 1024 * 1024;
+
+	/** Name of the snapshot file. */
+	public final static String SNAPSHOT_FILE_NAME = "uws_snapshot.jsonl";
+
+	/** Prefix of the journal files. It is followed by the number of the
+	 * journal file and by the extension <code>.jsonl</code>. */
+	public final static String JOURNAL_FILE_PREFIX = "uws_journal.";
+
+	/** The UWS to restore/save. */
+	protected final UWS uws;
+
+	/** Backup manager used to serialize and restore jobs and users. */
+	protected final DefaultUWSBackupManager format;
+
+	/** Directory in which the snapshot and the journal files are written. */
+	protected final File directory;
+
+	/** Policy forcing the journal on the disk. */
+	protected FsyncPolicy fsyncPolicy = FsyncPolicy.PERIODIC;
+
+	/** Maximum time (in ms) between two forces on the disk with {@link FsyncPolicy#PERIODIC}. */
+	protected long syncInterval = DEFAULT_SYNC_INTERVAL;
+
+	/** Time (in ms) between two snapshots. <i>If negative or null: only on demand.</i> */
+	protected long snapshotFreq = DEFAULT_SNAPSHOT_FREQUENCY;
+
+	/** Size (in bytes) of the journal above which a snapshot is done.
+	 * <i>If negative or null: no limit.</i> */
+	protected long maxJournalSize = DEFAULT_MAX_JOURNAL_SIZE;
+
+	/** Tells whether modifications are journaled. */
+	protected volatile boolean enabled = true;
+
+	/** Tells whether a restoration is running (nothing is journaled then). */
+	protected volatile boolean restoring = false;
+
+	/** Date of the last restoration. */
+	protected Date lastRestoration = null;
+	/** Date of the last snapshot. */
+	protected Date lastBackup = null;
+
+	/** Lock of the records waiting to be written. */
+	private final Object lock = new Object();
+	/** Records waiting to be written. */
+	private GroupCommit pending = new GroupCommit();
+	/** Number of records appended since the creation of this manager. */
+	private long appendedSeq = 0;
+	/** Number of records written since the creation of this manager. */
+	private long committedSeq = 0;
+	/** Thread writing the records. */
+	private transient Thread committer = null;
+
+	/** Lock of the journal file. */
+	private final Object fileLock = new Object();
+	/** Number of the current journal file. */
+	private long journalNumber = 0;
+	/** Stream toward the current journal file. <i>NULL if not yet opened.</i> */
+	private transient FileOutputStream journalOut = null;
+	/** Size of the current journal file. */
+	private long journalSize = 0;
+	/** Tells whether some records have not yet been forced on the disk. */
+	private boolean unsynced = false;
+	/** Time of the last force on the disk. */
+	private long lastSync = 0;
+
+	/** Lock preventing two simultaneous snapshots. */
+	private final Object snapshotLock = new Object();
+	/** Tells whether a snapshot has already been asked because the journal is too big. */
+	private final AtomicBoolean snapshotAsked = new AtomicBoolean(false);
+	/** Timer doing the snapshots. */
+	private transient Timer timSnapshot = null;
+
+	/** Number of group commits. */
+	private long nbCommits = 0;
+	/** Number of written records. */
+	private long nbRecords = 0;
+	/** Number of forces on the disk. */
+	private long nbSyncs = 0;
+
+	/**
+	 * Build a journaling backup manager for the given UWS, with the default
+	 * parameters (periodic fsync, one snapshot per hour).
+	 *
+	 * @param uws		The UWS to save/restore.
+	 * @param directory	Directory in which the journal and the snapshot must be
+	 *                 	written.
+	 *
+	 * @throws UWSException	If the directory can not be created.
+	 *
+	 * @see #JournalUWSBackupManager(UWS, DefaultUWSBackupManager, File, FsyncPolicy, long)
+	 */
+	public JournalUWSBackupManager(final UWS uws, final File directory) throws UWSException{
+		this(uws, new DefaultUWSBackupManager(uws, DefaultUWSBackupManager.MANUAL), directory, FsyncPolicy.PERIODIC, DEFAULT_SNAPSHOT_FREQUENCY);
+	}
+
+	/**
+	 * Build a journaling backup manager.
+	 *
+	 * @param uws			The UWS to save/restore.
+	 * @param format		Backup manager to use to serialize and restore jobs
+	 *              		and users. Its own backup should be disabled
+	 *              		(i.e. {@link DefaultUWSBackupManager#MANUAL}).
+	 *              		<i>If NULL, a {@link DefaultUWSBackupManager} is
+	 *              		used.</i>
+	 * @param directory		Directory in which the journal and the snapshot
+	 *                 		must be written.
+	 * @param policy		Policy forcing the journal on the disk.
+	 *              		<i>If NULL, {@link FsyncPolicy#PERIODIC}.</i>
+	 * @param snapshotFreq	Time (in milliseconds) between two snapshots.
+	 *                    	<i>If negative or null, snapshots are done only
+	 *                    	when the journal is too big or when
+	 *                    	{@link #saveAll()} is called.</i>
+	 *
+	 * @throws UWSException	If the directory can not be created.
+	 */
+	public JournalUWSBackupManager(final UWS uws, final DefaultUWSBackupManager format, final File directory, final FsyncPolicy policy, final long snapshotFreq) throws UWSException{
+		if (uws == null)
+			throw new NullPointerException("Missing UWS! Can not create a JournalUWSBackupManager.");
+		else if (directory == null)
+			throw new NullPointerException("Missing backup directory! Can not create a JournalUWSBackupManager.");
+
+		this.uws = uws;
+		this.format = (format == null) ? new DefaultUWSBackupManager(uws, DefaultUWSBackupManager.MANUAL) : format;
+		this.directory = directory;
+		if (!directory.exists() && !directory.mkdirs())
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, "Impossible to create the backup directory \"" + directory.getAbsolutePath() + "\"!");
+		if (policy != null)
+			fsyncPolicy = policy;
+		this.snapshotFreq = snapshotFreq;
+
+		// Continue after the last existing journal file:
+		File[] journals = listJournalFiles();
+		if (journals.length > 0)
+			journalNumber = getJournalNumber(journals[journals.length - 1]);
+
+		startSnapshotTimer();
+	}
+
+	/* ******* */
+	/* GETTERS */
+	/* ******* */
+
+	/**
+	 * Tells whether this backup manager is enabled or not.
+	 *
+	 * @return <i>true</i> if the backup is enabled, <i>false</i> otherwise.
+	 */
+	public final boolean isEnabled(){
+		return enabled;
+	}
+
+	/**
+	 * Enable or disable the journal.
+	 *
+	 * <p><i>Note:
+	 * 	When disabled, all the records waiting to be written are written, the
+	 * 	journal is forced on the disk and closed, and the automatic snapshots
+	 * 	are stopped.
+	 * </i></p>
+	 */
+	@Override
+	public void setEnabled(final boolean enabled){
+		this.enabled = enabled;
+		if (enabled)
+			startSnapshotTimer();
+		else{
+			if (timSnapshot != null){
+				timSnapshot.cancel();
+				timSnapshot = null;
+			}
+			flush();
+			synchronized(fileLock){
+				closeJournal();
+			}
+		}
+	}
+
+	/**
+	 * Get the directory in which the journal and the snapshot are written.
+	 *
+	 * @return	The backup directory.
+	 */
+	public final File getDirectory(){
+		return directory;
+	}
+
+	/**
+	 * Get the policy forcing the journal on the disk.
+	 *
+	 * @return	The fsync policy.
+	 */
+	public final FsyncPolicy getFsyncPolicy(){
+		return fsyncPolicy;
+	}
+
+	/**
+	 * Set the policy forcing the journal on the disk.
+	 *
+	 * @param policy	The new fsync policy.
+	 *              	<i>If NULL, {@link FsyncPolicy#PERIODIC}.</i>
+	 */
+	public final void setFsyncPolicy(final FsyncPolicy policy){
+		fsyncPolicy = (policy == null) ? FsyncPolicy.PERIODIC : policy;
+	}
+
+	/**
+	 * Get the maximum time between two forces on the disk
+	 * (only with {@link FsyncPolicy#PERIODIC}).
+	 *
+	 * @return	Time in milliseconds.
+	 */
+	public final long getSyncInterval(){
+		return syncInterval;
+	}
+
+	/**
+	 * Set the maximum time between two forces on the disk
+	 * (only with {@link FsyncPolicy#PERIODIC}).
+	 *
+	 * @param interval	Time in milliseconds.
+	 *                	<i>If negative or null, {@link #DEFAULT_SYNC_INTERVAL}.</i>
+	 */
+	public final void setSyncInterval(final long interval){
+		syncInterval = (interval > 0) ? interval : DEFAULT_SYNC_INTERVAL;
+	}
+
+	/**
+	 * Get the time between two snapshots.
+	 *
+	 * @return	Time in milliseconds.
+	 *        	<i>If negative or null, snapshots are only done on demand.</i>
+	 */
+	public final long getSnapshotFrequency(){
+		return snapshotFreq;
+	}
+
+	/**
+	 * Set the time between two snapshots.
+	 *
+	 * @param freq	Time in milliseconds.
+	 *            	<i>If negative or null, snapshots are only done on demand.</i>
+	 */
+	public final void setSnapshotFrequency(final long freq){
+		snapshotFreq = freq;
+		if (timSnapshot != null){
+			timSnapshot.cancel();
+			timSnapshot = null;
+		}
+		startSnapshotTimer();
+	}
+
+	/**
+	 * Get the size of the journal above which a snapshot is done.
+	 *
+	 * @return	Size in bytes.
+	 *        	<i>If negative or null, no limit.</i>
+	 */
+	public final long getMaxJournalSize(){
+		return maxJournalSize;
+	}
+
+	/**
+	 * Set the size of the journal above which a snapshot is done.
+	 *
+	 * @param size	Size in bytes.
+	 *            	<i>If negative or null, no limit.</i>
+	 */
+	public final void setMaxJournalSize(final long size){
+		maxJournalSize = size;
+	}
+
+	/**
+	 * Gets the date of the last restoration
+	 *
+	 * @return The date of the last restoration (MAY BE NULL).
+	 */
+	public final Date getLastRestoration(){
+		return lastRestoration;
+	}
+
+	/**
+	 * Gets the date of the last snapshot.
+	 *
+	 * @return The date of the last snapshot (MAY BE NULL).
+	 */
+	public final Date getLastBackup(){
+		return lastBackup;
+	}
+
+	/**
+	 * Get some statistics about the journal: the number of group commits,
+	 * the number of written records and the number of forces on the disk.
+	 *
+	 * @return	An array of 3 items: nb of commits, nb of records, nb of fsyncs.
+	 */
+	public final long[] getStatistics(){
+		synchronized(fileLock){
+			return new long[]{nbCommits,nbRecords,nbSyncs};
+		}
+	}
+
+	/**
+	 * Gets the logger of its UWS, or the default one if it is unknown.
+	 *
+	 * @return	A logger.
+	 */
+	public UWSLog getLogger(){
+		return format.getLogger();
+	}
+
+	/* ******* */
+	/* JOURNAL */
+	/* ******* */
+
+	@Override
+	public void jobAdded(final JobList jobList, final UWSJob job){
+		// Follow the modifications of this job:
+		job.addObserver(this);
+
+		// Journal its creation (except if it is being restored):
+		if (enabled && !restoring){
+			try{
+				append(createJobRecord(jobList, job));
+			}catch(Exception ex){
+				getLogger().logUWS(LogLevel.ERROR, job, "BACKUP", "Impossible to journal the creation of the job \"" + job.getJobId() + "\"!", ex);
+			}
+		}
+	}
+
+	@Override
+	public void jobRemoved(final JobList jobList, final UWSJob job){
+		job.removeObserver(this);
+		JSONObject record = createRecord("del", jobList.getName(), job.getJobId());
+		if (record != null){
+			try{
+				append(record);
+			}catch(UWSException ue){
+				getLogger().logUWS(LogLevel.ERROR, job, "BACKUP", "Impossible to journal the destruction of the job \"" + job.getJobId() + "\"!", ue);
+			}
+		}
+	}
+
+	@Override
+	public void update(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase) throws UWSException{
+		if (job.getJobList() == null)
+			return;
+		JSONObject record = createRecord("phase", job.getJobList().getName(), job.getJobId());
+		if (record != null){
+			record.put("phase", newPhase.toString());
+			if (newPhase == ExecutionPhase.ERROR && job.getErrorSummary() != null)
+				record.put(UWSJob.PARAM_ERROR_SUMMARY, Json4Uws.getJson(job.getErrorSummary()));
+			append(record);
+		}
+	}
+
+	@Override
+	public void resultAdded(final UWSJob job, final Result result) throws UWSException{
+		if (job.getJobList() == null)
+			return;
+		JSONObject record = createRecord("result", job.getJobList().getName(), job.getJobId());
+		if (record != null){
+			record.put("result", Json4Uws.getJobResultJson(result));
+			append(record);
+		}
+	}
+
+	/**
+	 * <p><i>Note:
+	 * 	A UWS attribute (e.g. the run ID, the execution duration or the
+	 * 	destruction time) is journaled under its UWS name, while any other
+	 * 	parameter is journaled as an additional parameter. When the new value
+	 * 	is an uploaded file, the whole job is journaled again.
+	 * </i></p>
+	 */
+	@Override
+	public void parameterChanged(final UWSJob job, final String name, final Object newValue) throws UWSException{
+		// The phase has its own record:
+		if (job.getJobList() == null || name == null || UWSJob.PARAM_PHASE.equalsIgnoreCase(name))
+			return;
+
+		// An uploaded file can not be described in a "param" record:
+		if (newValue instanceof UploadFile){
+			if (!enabled || restoring)
+				return;
+			try{
+				append(createJobRecord(job.getJobList(), job));
+			}catch(JSONException je){
+				throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, je, "Can not journal the parameter \"" + name + "\" of the job \"" + job.getJobId() + "\"!");
+			}
+			return;
+		}
+
+		JSONObject record = createRecord("param", job.getJobList().getName(), job.getJobId());
+		if (record != null){
+			String attribute = getUWSAttribute(name);
+			record.put("name", (attribute != null) ? attribute : name);
+			if (attribute == null)
+				record.put("additional", true);
+			if (newValue == null)
+				record.put("value", JSONObject.NULL);
+			else if (newValue instanceof Date)
+				record.put("value", ISO8601Format.format((Date)newValue));
+			else if (newValue.getClass().isArray()){
+				JSONArray array = new JSONArray();
+				for(Object o : (Object[])newValue){
+					if (o != null)
+						array.put(o.toString());
+				}
+				record.put("value", array);
+			}else if (newValue instanceof Number || newValue instanceof Boolean || newValue instanceof String)
+				record.put("value", newValue);
+			else
+				record.put("value", newValue.toString());
+			append(record);
+		}
+	}
+
+	/**
+	 * Get the UWS name of the given job attribute.
+	 *
+	 * @param name	Name of a job parameter (case insensitive).
+	 *
+	 * @return	The UWS name of this attribute,
+	 *        	or NULL if it is an additional parameter.
+	 */
+	protected static String getUWSAttribute(final String name){
+		for(String attribute : new String[]{ UWSJob.PARAM_RUN_ID, UWSJob.PARAM_EXECUTION_DURATION, UWSJob.PARAM_DESTRUCTION_TIME, UWSJob.PARAM_QUOTE, UWSJob.PARAM_START_TIME, UWSJob.PARAM_END_TIME }){
+			if (attribute.equalsIgnoreCase(name))
+				return attribute;
+		}
+		return null;
+	}
+
+	/**
+	 * Create a record about the given job.
+	 *
+	 * @param op		Type of record.
+	 * @param jlName	Name of the jobs list of the job.
+	 * @param jobId		ID of the job.
+	 *
+	 * @return	The record,
+	 *        	or NULL if the journal is disabled (or if restoring).
+	 */
+	protected JSONObject createRecord(final String op, final String jlName, final String jobId){
+		if (!enabled || restoring)
+			return null;
+		JSONObject record = new JSONObject();
+		record.put("op", op);
+		record.put("list", jlName);
+		record.put("id", jobId);
+		return record;
+	}
+
+	/**
+	 * Create the record describing the whole given job (and its owner).
+	 *
+	 * @param jobList	Jobs list of the job.
+	 * @param job		The job to describe.
+	 *
+	 * @return	The corresponding <code>new</code> record.
+	 *
+	 * @throws UWSException		If the job can not be serialized.
+	 * @throws JSONException	If the job can not be serialized.
+	 */
+	protected JSONObject createJobRecord(final JobList jobList, final UWSJob job) throws UWSException, JSONException{
+		JSONObject record = new JSONObject();
+		record.put("op", "new");
+		record.put("job", format.getJSONJob(job, jobList.getName()));
+		if (job.getOwner() != null)
+			record.put("owner", format.getJSONUser(job.getOwner()));
+		return record;
+	}
+
+	/**
+	 * Append the given record to the journal.
+	 *
+	 * <p>
+	 * 	The record is written asynchronously (with the other waiting records)
+	 * 	except with {@link FsyncPolicy#ALWAYS}: then, this function returns
+	 * 	only once the record is written and forced on the disk.
+	 * </p>
+	 *
+	 * @param record	The record to write.
+	 *
+	 * @throws UWSException	With {@link FsyncPolicy#ALWAYS}, if the record
+	 *                     	could not be written and forced on the disk.
+	 */
+	protected void append(final JSONObject record) throws UWSException{
+		if (record == null || !enabled || restoring)
+			return;
+
+		String line = record.toString();
+		synchronized(lock){
+			// Start the writing thread, if not already done:
+			if (committer == null || !committer.isAlive()){
+				committer = new Thread(new Committer(), "UWS-Journal-" + uws.getName());
+				committer.setDaemon(true);
+				committer.start();
+			}
+
+			// Add the record to the next group commit:
+			GroupCommit commit = pending;
+			commit.records.add(line);
+			++appendedSeq;
+			lock.notifyAll();
+
+			// Wait for the commit, if required:
+			if (fsyncPolicy == FsyncPolicy.ALWAYS){
+				while(!commit.done){
+					try{
+						lock.wait();
+					}catch(InterruptedException ie){
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (commit.error != null)
+					throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, commit.error, "Impossible to write a record in the UWS journal!");
+			}
+		}
+	}
+
+	/**
+	 * Wait until all the records appended until now are written and then
+	 * force them on the disk (whatever is the fsync policy).
+	 */
+	public void flush(){
+		synchronized(lock){
+			while(committedSeq < appendedSeq && committer != null && committer.isAlive()){
+				try{
+					lock.wait(100);
+				}catch(InterruptedException ie){
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		synchronized(fileLock){
+			if (unsynced)
+				sync();
+		}
+	}
+
+	/**
+	 * Write the given records at the end of the current journal file
+	 * (opened if needed), and force them on the disk if required by the
+	 * fsync policy.
+	 *
+	 * <p><i>Note:
+	 * 	If an error occurs, the current journal file may end with a partially
+	 * 	written record. So, it is closed and the next records will be written
+	 * 	in a new journal file: an incorrect record can then only be the last
+	 * 	line of a journal file (see {@link #replay(File, Map, Map)}).
+	 * </i></p>
+	 *
+	 * @param records	Records to write.
+	 *
+	 * @throws IOException	If an error occurs while writing (or, with
+	 *                    	{@link FsyncPolicy#ALWAYS}, while forcing the
+	 *                    	records on the disk).
+	 */
+	protected void write(final List<String> records) throws IOException{
+		StringBuffer buf = new StringBuffer();
+		for(String r : records)
+			buf.append(r).append('\n');
+		byte[] bytes = buf.toString().getBytes(UWSToolBox.DEFAULT_CHAR_ENCODING);
+
+		synchronized(fileLock){
+			try{
+				if (journalOut == null){
+					journalOut = openJournal(getJournalFile(journalNumber));
+					journalSize = journalOut.getChannel().size();
+				}
+				journalOut.write(bytes);
+				journalSize += bytes.length;
+				unsynced = true;
+				nbCommits++;
+				nbRecords += records.size();
+
+				if (fsyncPolicy == FsyncPolicy.ALWAYS)
+					force();
+				else if (fsyncPolicy == FsyncPolicy.PERIODIC && System.currentTimeMillis() - lastSync >= syncInterval)
+					sync();
+			}catch(IOException ioe){
+				// Continue in a new journal file:
+				abandonJournal();
+				throw ioe;
+			}
+		}
+
+		// Compact the journal if too big:
+		if (maxJournalSize > 0 && journalSize > maxJournalSize && snapshotAsked.compareAndSet(false, true)){
+			Thread t = new Thread(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						saveAll();
+					}finally{
+						snapshotAsked.set(false);
+					}
+				}
+			}, "UWS-Journal-Snapshot");
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	/**
+	 * Force the current journal file on the disk.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be called while holding {@link #fileLock}.
+	 * </i></p>
+	 */
+	private void sync(){
+		try{
+			force();
+		}catch(IOException ioe){
+			getLogger().logUWS(LogLevel.ERROR, null, "BACKUP", "Impossible to force the UWS journal on the disk!", ioe);
+			unsynced = false;
+			lastSync = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Force the current journal file on the disk, and fail if not possible.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be called while holding {@link #fileLock}.
+	 * </i></p>
+	 *
+	 * @throws IOException	If the journal can not be forced on the disk.
+	 */
+	private void force() throws IOException{
+		if (journalOut != null){
+			journalOut.getChannel().force(false);
+			nbSyncs++;
+		}
+		unsynced = false;
+		lastSync = System.currentTimeMillis();
+	}
+
+	/**
+	 * Open the given journal file in order to append records.
+	 *
+	 * @param file	The journal file to open (created if needed).
+	 *
+	 * @return	The stream toward the end of this file.
+	 *
+	 * @throws IOException	If the file can not be opened.
+	 */
+	protected FileOutputStream openJournal(final File file) throws IOException{
+		return new FileOutputStream(file, true);
+	}
+
+	/**
+	 * Close (without forcing it on the disk) the current journal file after
+	 * a writing error, and start a new one for the next records.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be called while holding {@link #fileLock}.
+	 * </i></p>
+	 */
+	private void abandonJournal(){
+		if (journalOut != null){
+			try{
+				journalOut.close();
+			}catch(IOException ioe){
+				getLogger().logUWS(LogLevel.WARNING, null, "BACKUP", "Impossible to close the UWS journal!", ioe);
+			}
+			journalOut = null;
+		}
+		journalSize = 0;
+		unsynced = false;
+		journalNumber++;
+	}
+
+	/**
+	 * Force on the disk and close the current journal file.
+	 *
+	 * <p><i>Note:
+	 * 	This function must be called while holding {@link #fileLock}.
+	 * </i></p>
+	 */
+	private void closeJournal(){
+		if (journalOut != null){
+			if (unsynced && fsyncPolicy != FsyncPolicy.NEVER)
+				sync();
+			try{
+				journalOut.close();
+			}catch(IOException ioe){
+				getLogger().logUWS(LogLevel.WARNING, null, "BACKUP", "Impossible to close the UWS journal!", ioe);
+			}
+			journalOut = null;
+			journalSize = 0;
+			unsynced = false;
+		}
+	}
+
+	/**
+	 * Records written at once by the {@link Committer}.
+	 *
+	 * <p><i>Note:
+	 * 	The fields of this class must be accessed while holding {@link #lock}.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private static class GroupCommit {
+		/** Records to write. */
+		private final List<String> records = new ArrayList<String>();
+		/** Tells whether the writing of these records is finished (successfully or not). */
+		private boolean done = false;
+		/** Error which prevented to write these records. <i>NULL if written.</i> */
+		private IOException error = null;
+	}
+
+	/**
+	 * Thread writing all waiting records at once (group commit).
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private class Committer implements Runnable {
+		@Override
+		public void run(){
+			while(true){
+				GroupCommit batch;
+				long seq;
+				synchronized(lock){
+					// Wait for records (or for the next periodic fsync):
+					while(pending.records.isEmpty()){
+						boolean waitSync;
+						synchronized(fileLock){
+							waitSync = unsynced && fsyncPolicy == FsyncPolicy.PERIODIC;
+						}
+						try{
+							lock.wait(waitSync ? syncInterval : 0);
+						}catch(InterruptedException ie){
+							return;
+						}
+						if (pending.records.isEmpty() && waitSync){
+							synchronized(fileLock){
+								if (unsynced)
+									sync();
+							}
+						}
+					}
+					batch = pending;
+					pending = new GroupCommit();
+					seq = appendedSeq;
+				}
+
+				try{
+					write(batch.records);
+				}catch(IOException ioe){
+					getLogger().logUWS(LogLevel.ERROR, null, "BACKUP", "Impossible to write " + batch.records.size() + " records in the UWS journal! The next records will be written in a new journal file.", ioe);
+					batch.error = ioe;
+				}
+
+				synchronized(lock){
+					batch.done = true;
+					committedSeq = seq;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/* ******** */
+	/* SNAPSHOT */
+	/* ******** */
+
+	/**
+	 * Start the timer doing regularly a snapshot, if needed.
+	 */
+	protected void startSnapshotTimer(){
+		if (enabled && snapshotFreq > 0 && timSnapshot == null){
+			timSnapshot = new Timer("UWS-Journal-Snapshot", true);
+			timSnapshot.scheduleAtFixedRate(new TimerTask(){
+				@Override
+				public void run(){
+					saveAll();
+				}
+			}, snapshotFreq, snapshotFreq);
+		}
+	}
+
+	/**
+	 * Compact the journal: all jobs are written in a new snapshot and the
+	 * former journal files are deleted.
+	 */
+	@Override
+	public int[] saveAll(){
+		if (!enabled)
+			return null;
+
+		synchronized(snapshotLock){
+			int nbSavedJobs = 0, nbJobs = 0;
+			HashMap<String,JobOwner> users = new HashMap<String,JobOwner>();
+
+			/* 1. Start a new journal file: the modifications done from now will
+			 *    be replayed after the snapshot: */
+			long firstKept;
+			synchronized(fileLock){
+				closeJournal();
+				firstKept = ++journalNumber;
+			}
+
+			// 2. Write all jobs in a temporary snapshot file:
+			File tmpFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+			FileOutputStream out = null;
+			try{
+				out = new FileOutputStream(tmpFile);
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, UWSToolBox.DEFAULT_CHAR_ENCODING));
+				JSONObject header = new JSONObject();
+				header.put("op", "snapshot");
+				header.put("date", ISO8601Format.format(new Date()));
+				writer.write(header.toString());
+				writer.write('\n');
+				for(JobList jl : uws){
+					for(UWSJob job : jl){
+						nbJobs++;
+						try{
+							writer.write(createJobRecord(jl, job).toString());
+							writer.write('\n');
+							nbSavedJobs++;
+							if (job.getOwner() != null)
+								users.put(job.getOwner().getID(), job.getOwner());
+						}catch(UWSException ue){
+							getLogger().logUWS(LogLevel.ERROR, job, "BACKUP", "Unexpected UWS error while saving the job '" + job.getJobId() + "'!", ue);
+						}catch(JSONException je){
+							getLogger().logUWS(LogLevel.ERROR, job, "BACKUP", "Unexpected JSON error while saving the job '" + job.getJobId() + "'!", je);
+						}
+					}
+				}
+				writer.flush();
+				out.getChannel().force(true);
+				writer.close();
+				out = null;
+
+				// 3. Replace atomically the former snapshot:
+				Files.move(tmpFile.toPath(), getSnapshotFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}catch(IOException ioe){
+				getLogger().logUWS(LogLevel.ERROR, null, "BACKUP", "Unexpected IO error while writing a snapshot of the UWS! The journal is kept.", ioe);
+				return null;
+			}finally{
+				if (out != null){
+					try{
+						out.close();
+					}catch(IOException ioe){}
+				}
+			}
+
+			// 4. Delete the former journal files (now included in the snapshot):
+			for(File f : listJournalFiles()){
+				if (getJournalNumber(f) < firstKept && !f.delete())
+					getLogger().logUWS(LogLevel.WARNING, null, "BACKUP", "Impossible to delete the former journal file \"" + f.getAbsolutePath() + "\"!", null);
+			}
+
+			// Build the report and log it:
+			int[] report = new int[]{nbSavedJobs,nbJobs,users.size(),users.size()};
+			getLogger().logUWS(LogLevel.INFO, report, "BACKUPED", "UWS Service \"" + uws.getName() + "\" backuped (snapshot)!", null);
+
+			lastBackup = new Date();
+
+			return report;
+		}
+	}
+
+	/**
+	 * Nothing is done: the modifications of the jobs of this user are already
+	 * in the journal.
+	 *
+	 * @return	<code>{-1, -1}</code>
+	 */
+	@Override
+	public int[] saveOwner(final JobOwner owner) throws IllegalArgumentException{
+		return new int[]{-1,-1};
+	}
+
+	/* *********** */
+	/* RESTORATION */
+	/* *********** */
+
+	/**
+	 * Replay the snapshot and then all the journal files, and restore the
+	 * resulting jobs and users.
+	 */
+	@Override
+	public int[] restoreAll(){
+		restoring = true;
+		try{
+			// Removes all current jobs from the UWS before restoring it:
+			for(JobList jl : uws)
+				jl.clear();
+
+			// Replay the snapshot and the journal:
+			Map<String,JSONObject> jobs = new LinkedHashMap<String,JSONObject>();
+			Map<String,JSONObject> jsonUsers = new HashMap<String,JSONObject>();
+			File snapshot = getSnapshotFile();
+			if (snapshot.exists())
+				replay(snapshot, jobs, jsonUsers);
+			for(File journal : listJournalFiles())
+				replay(journal, jobs, jsonUsers);
+
+			// Restore the users:
+			int nbUsers = 0, nbRestoredUsers = 0;
+			HashMap<String,JobOwner> users = new HashMap<String,JobOwner>();
+			boolean userIdentificationEnabled = (uws.getUserIdentifier() != null);
+			for(JSONObject jsonUser : jsonUsers.values()){
+				nbUsers++;
+				if (userIdentificationEnabled){
+					try{
+						JobOwner user = format.getUser(jsonUser);
+						if (user != null){
+							users.put(user.getID(), user);
+							nbRestoredUsers++;
+						}
+					}catch(UWSException ue){
+						getLogger().logUWS(LogLevel.ERROR, jsonUser, "RESTORATION", "A job owner can not be restored!", ue);
+					}
+				}
+			}
+			if (!userIdentificationEnabled && nbUsers > 0)
+				getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", nbUsers + " job owners have not been restored because the user identification is disabled in this UWS! => Jobs of these users have not been restored.", null);
+
+			// Restore the jobs:
+			int nbJobs = 0, nbRestoredJobs = 0;
+			for(JSONObject jsonJob : jobs.values()){
+				nbJobs++;
+				try{
+					if (format.restoreJob(jsonJob, users))
+						nbRestoredJobs++;
+				}catch(UWSException ue){
+					getLogger().logUWS(LogLevel.ERROR, jsonJob, "RESTORATION", "The " + nbJobs + "-th job can not be restored!", ue);
+				}
+			}
+
+			// Build the restoration report and log it:
+			int[] report = new int[]{nbRestoredJobs,nbJobs,nbRestoredUsers,nbUsers};
+			getLogger().logUWS(LogLevel.INFO, report, "RESTORED", "UWS restored (snapshot + journal)!", null);
+
+			return report;
+		}finally{
+			restoring = false;
+			lastRestoration = new Date();
+		}
+	}
+
+	/**
+	 * Apply all the records of the given file on the given jobs and users.
+	 *
+	 * <p><i>Note:
+	 * 	An incorrect record stops the reading of the file: it can only be the
+	 * 	last record of the journal file, partially written because of a crash.
+	 * </i></p>
+	 *
+	 * @param file		File to read.
+	 * @param jobs		JSON description of the jobs to restore
+	 *            		(key = jobs list name + "/" + job ID).
+	 * @param users		JSON description of the users to restore (key = ID).
+	 */
+	protected void replay(final File file, final Map<String,JSONObject> jobs, final Map<String,JSONObject> users){
+		BufferedReader reader = null;
+		int nbLine = 0;
+		try{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UWSToolBox.DEFAULT_CHAR_ENCODING));
+			String line;
+			while((line = reader.readLine()) != null){
+				nbLine++;
+				if (line.trim().isEmpty())
+					continue;
+				JSONObject record;
+				try{
+					record = new JSONObject(line);
+				}catch(JSONException je){
+					getLogger().logUWS(LogLevel.WARNING, null, "RESTORATION", "Incorrect record at the line " + nbLine + " of \"" + file.getName() + "\" (probably partially written)! The rest of this file is ignored.", je);
+					break;
+				}
+				try{
+					apply(record, jobs, users);
+				}catch(JSONException je){
+					getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Incorrect record at the line " + nbLine + " of \"" + file.getName() + "\"! This record is ignored.", je);
+				}
+			}
+		}catch(IOException ioe){
+			getLogger().logUWS(LogLevel.ERROR, null, "RESTORATION", "Impossible to read the backup file \"" + file.getAbsolutePath() + "\"!", ioe);
+		}finally{
+			if (reader != null){
+				try{
+					reader.close();
+				}catch(IOException ioe){}
+			}
+		}
+	}
+
+	/**
+	 * Apply the given record on the given jobs and users.
+	 *
+	 * @param record	The record to apply.
+	 * @param jobs		JSON description of the jobs to restore
+	 *            		(key = jobs list name + "/" + job ID).
+	 * @param users		JSON description of the users to restore (key = ID).
+	 *
+	 * @throws JSONException	If the record is incorrect.
+	 */
+	protected void apply(final JSONObject record, final Map<String,JSONObject> jobs, final Map<String,JSONObject> users) throws JSONException{
+		String op = record.getString("op");
+
+		// Creation of a job:
+		if (op.equals("new")){
+			JSONObject job = record.getJSONObject("job");
+			jobs.put(job.getString("jobListName") + "/" + job.getString(UWSJob.PARAM_JOB_ID), job);
+			if (record.has("owner")){
+				JSONObject owner = record.getJSONObject("owner");
+				users.put(owner.getString("id"), owner);
+			}
+			return;
+		}else if (op.equals("snapshot"))
+			return;
+
+		// Modification of a job:
+		String key = record.getString("list") + "/" + record.getString("id");
+		JSONObject job = jobs.get(key);
+		if (job == null)
+			return;
+		else if (op.equals("del"))
+			jobs.remove(key);
+		else if (op.equals("phase")){
+			job.put(UWSJob.PARAM_PHASE, record.getString("phase"));
+			if (record.has(UWSJob.PARAM_ERROR_SUMMARY))
+				job.put(UWSJob.PARAM_ERROR_SUMMARY, record.getJSONObject(UWSJob.PARAM_ERROR_SUMMARY));
+		}else if (op.equals("param")){
+			JSONObject target = job;
+			if (record.optBoolean("additional")){
+				target = job.optJSONObject(UWSJob.PARAM_PARAMETERS);
+				if (target == null){
+					target = new JSONObject();
+					job.put(UWSJob.PARAM_PARAMETERS, target);
+				}
+			}
+			if (record.isNull("value"))
+				target.remove(record.getString("name"));
+			else
+				target.put(record.getString("name"), record.get("value"));
+		}else if (op.equals("result")){
+			JSONObject result = record.getJSONObject("result");
+			JSONArray results = job.optJSONArray(UWSJob.PARAM_RESULTS);
+			if (results == null){
+				results = new JSONArray();
+				job.put(UWSJob.PARAM_RESULTS, results);
+			}
+			// replace a result with the same ID, or append it:
+			int i = 0;
+			while(i < results.length() && !result.getString("id").equals(results.getJSONObject(i).optString("id")))
+				i++;
+			results.put(i, result);
+		}else
+			getLogger().logUWS(LogLevel.WARNING, record, "RESTORATION", "Unknown journal record: \"" + op + "\"! It is ignored.", null);
+	}
+
+	/* ***** */
+	/* FILES */
+	/* ***** */
+
+	/**
+	 * Get the snapshot file.
+	 *
+	 * @return	The snapshot file (which may not exist).
+	 */
+	protected File getSnapshotFile(){
+		return new File(directory, SNAPSHOT_FILE_NAME);
+	}
+
+	/**
+	 * Get the journal file having the given number.
+	 *
+	 * @param number	Number of the journal file.
+	 *
+	 * @return	The corresponding journal file (which may not exist).
+	 */
+	protected File getJournalFile(final long number){
+		return new File(directory, JOURNAL_FILE_PREFIX + number + ".jsonl");
+	}
+
+	/**
+	 * Get the number of the given journal file.
+	 *
+	 * @param journal	A journal file.
+	 *
+	 * @return	Its number, or -1 if not a journal file.
+	 */
+	protected static long getJournalNumber(final File journal){
+		String name = journal.getName();
+		try{
+			return Long.parseLong(name.substring(JOURNAL_FILE_PREFIX.length(), name.length() - ".jsonl".length()));
+		}catch(RuntimeException re){
+			return -1;
+		}
+	}
+
+	/**
+	 * List all the journal files of the backup directory, sorted by number.
+	 *
+	 * @return	The existing journal files.
+	 */
+	protected File[] listJournalFiles(){
+		File[] files = directory.listFiles(new FilenameFilter(){
+			@Override
+			public boolean accept(final File dir, final String name){
+				return name.startsWith(JOURNAL_FILE_PREFIX) && name.endsWith(".jsonl");
+			}
+		});
+		TreeMap<Long,File> sorted = new TreeMap<Long,File>();
+		if (files != null){
+			for(File f : files){
+				long n = getJournalNumber(f);
+				if (n >= 0)
+					sorted.put(n, f);
+			}
+		}
+		File[] result = new File[sorted.size()];
+		Iterator<File> it = sorted.values().iterator();
+		for(int i = 0; it.hasNext(); i++)
+			result[i] = it.next();
+		return result;
+	}
+
+}
@@ -0,0 +1,715 @@
+package uws.service.events;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+
+import uws.ISO8601Format;
+import uws.UWSException;
+import uws.UWSToolBox;
+import uws.job.ExecutionPhase;
+import uws.job.JobEventObserver;
+import uws.job.JobList;
+import uws.job.JobListIndex;
+import uws.job.JobListObserver;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.user.JobOwner;
+
+/**
+ * Stream of Server-Sent Events (SSE) about one or several jobs.
+ *
+ * <p>
+ * 	This stream observes jobs (see {@link #observe(UWSJob)} and
+ * 	{@link #observe(JobList, JobOwner)}) and writes the following events in
+ * 	the HTTP response:
+ * </p>
+ * <ul>
+ * 	<li><b><code>phase</code>:</b> new execution phase of a job,</li>
+ * 	<li><b><code>progression</code>:</b> new progression of a job (value of
+ * 		the parameter {@link #getProgressionParameter()}),</li>
+ * 	<li><b><code>parameter</code>:</b> any other parameter updated by the
+ * 		execution of a job,</li>
+ * 	<li><b><code>result</code>:</b> a new result available,</li>
+ * 	<li><b><code>resync</code>:</b> some events have been lost ; the client
+ * 		should fetch again the state of the observed job(s),</li>
+ * 	<li><b><code>end</code>:</b> the observed job is finished ; the stream is
+ * 		then closed.</li>
+ * </ul>
+ * <p>
+ * 	The data of each event is a JSON object. Comments (<code>: heartbeat</code>)
+ * 	are also written regularly so that inactive connections are not closed
+ * 	by proxies and so that disconnected clients are detected.
+ * </p>
+ *
+ * <p>
+ * 	The observed jobs are never blocked by this stream: a notification is just
+ * 	put in a bounded buffer and the events are written later by another
+ * 	thread. In this buffer, a new phase (or progression) of a job replaces
+ * 	the one not yet written. If the buffer is full, other events are dropped
+ * 	and a <code>resync</code> event is written instead.
+ * </p>
+ *
+ * <p>
+ * 	The events of all streams are written by at most {@link #MAX_WRITERS}
+ * 	threads. A client which does not read its events fast enough is
+ * 	disconnected: this happens when a writing lasts more than
+ * 	{@link #MAX_WRITE_TIME} milliseconds, or when no writer is available.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Once started (see {@link #start(HttpServletRequest, HttpServletResponse)}),
+ * 	the HTTP request is in asynchronous mode: no thread is held while waiting
+ * 	for events. If the asynchronous mode is not supported, the current state
+ * 	of the observed jobs can only be written once with {@link #writeOnce(HttpServletResponse)}.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class JobEventStream implements JobEventObserver, JobListObserver, AsyncListener {
+	private static final long serialVersionUID = 1L;
+
+	/** MIME type of a stream of Server-Sent Events. */
+	public final static String MIME_TYPE = "text/event-stream";
+
+	/** Default maximum number of events waiting to be written. */
+	public final static int DEFAULT_BUFFER_SIZE = 100;
+
+	/** Default time (in milliseconds) between two heartbeats. */
+	public final static long DEFAULT_HEARTBEAT_PERIOD = 15000;
+
+	/** Default name of the job parameter containing the progression of a job. */
+	public final static String DEFAULT_PROGRESSION_PARAMETER = "progression";
+
+	/** Time (in milliseconds) after which a client should try to reconnect
+	 * once the stream is closed. */
+	protected final static long RETRY_TIME = 5000;
+
+	/** Maximum number of threads writing the events of all streams. */
+	public final static int MAX_WRITERS = 16;
+
+	/** Maximum number of streams waiting for a writer. Beyond, the stream
+	 * asking for a writer is closed. */
+	public final static int MAX_WAITING_STREAMS = 1000;
+
+	/** Maximum time (in milliseconds) a writing can last. Beyond, the client
+	 * is considered as too slow and the stream is closed. */
+	public final static long MAX_WRITE_TIME = 30000;
+
+	/** Phases of the jobs to observe in a jobs list. */
+	protected final static EnumSet<ExecutionPhase> ACTIVE_PHASES = EnumSet.of(ExecutionPhase.PENDING, ExecutionPhase.QUEUED, ExecutionPhase.EXECUTING, ExecutionPhase.HELD, ExecutionPhase.SUSPENDED, ExecutionPhase.UNKNOWN);
+
+	/** Timer sending the heartbeats of all streams. */
+	private final static Timer timer = new Timer("UWS_EVENTS", true);
+
+	/** Threads writing the events in the HTTP responses. */
+	private final static ExecutorService writers;
+	static{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_WRITERS, MAX_WRITERS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(MAX_WAITING_STREAMS), new ThreadFactory(){
+			@Override
+			public Thread newThread(final Runnable r){
+				Thread t = new Thread(r, "UWS_EVENTS_WRITER");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true);
+		writers = pool;
+	}
+
+	/** Maximum number of events waiting to be written. */
+	protected final int bufferSize;
+
+	/** Time (in milliseconds) between two heartbeats. */
+	protected final long heartbeatPeriod;
+
+	/** Name of the job parameter containing the progression of a job. */
+	protected final String progressionParam;
+
+	/** Events waiting to be written, indexed by a key identifying what they
+	 * are about (e.g. the phase of a given job). */
+	private final LinkedHashMap<String,String> pending = new LinkedHashMap<String,String>();
+
+	/** Indicate whether some events have been dropped because the buffer
+	 * was full. */
+	private boolean overflow = false;
+
+	/** Indicate whether a heartbeat must be written. */
+	private volatile boolean heartbeat = false;
+
+	/** Indicate whether the stream must be closed once all pending events
+	 * are written. */
+	private volatile boolean ending = false;
+
+	/** ID of the next event. */
+	private long nextId = 1;
+
+	/** All observed jobs. */
+	private final Set<UWSJob> jobs = Collections.newSetFromMap(new ConcurrentHashMap<UWSJob,Boolean>());
+
+	/** Jobs list whose all jobs (of {@link #owner}) must be observed.
+	 * <i>NULL if only one job is observed.</i> */
+	private volatile JobList jobList = null;
+
+	/** Owner of the jobs to observe in {@link #jobList}. <i>MAY be NULL</i> */
+	private volatile JobOwner owner = null;
+
+	/** Asynchronous context of the HTTP request. <i>NULL if not started.</i> */
+	private transient volatile AsyncContext context = null;
+
+	/** Stream in which events are written. <i>NULL if not started.</i> */
+	private transient volatile OutputStream output = null;
+
+	/** Indicate whether a writing of pending events is already planned. */
+	private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+	/** Time (in milliseconds) at which the current writing started.
+	 * <i>0 if no writing is in progress.</i> */
+	private volatile long writingSince = 0;
+
+	/** Indicate whether this stream is closed. */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/** Task sending heartbeats. <i>NULL if not started.</i> */
+	private transient TimerTask heartbeatTask = null;
+
+	/**
+	 * Create a stream with the default buffer size, heartbeat period and
+	 * progression parameter.
+	 */
+	public JobEventStream(){
+		this(DEFAULT_BUFFER_SIZE, DEFAULT_HEARTBEAT_PERIOD, DEFAULT_PROGRESSION_PARAMETER);
+	}
+
+	/**
+	 * Create a stream.
+	 *
+	 * @param bufferSize		Maximum number of events waiting to be written.
+	 *                  		<i>If negative or null, {@link #DEFAULT_BUFFER_SIZE}
+	 *                  		is used.</i>
+	 * @param heartbeatPeriod	Time (in milliseconds) between two heartbeats.
+	 *                       	<i>If negative or null, no heartbeat is sent.</i>
+	 * @param progressionParam	Name of the job parameter containing the
+	 *                        	progression of a job.
+	 *                        	<i>If NULL, {@link #DEFAULT_PROGRESSION_PARAMETER}
+	 *                        	is used.</i>
+	 */
+	public JobEventStream(final int bufferSize, final long heartbeatPeriod, final String progressionParam){
+		this.bufferSize = (bufferSize > 0) ? bufferSize : DEFAULT_BUFFER_SIZE;
+		this.heartbeatPeriod = heartbeatPeriod;
+		this.progressionParam = (progressionParam == null) ? DEFAULT_PROGRESSION_PARAMETER : progressionParam;
+	}
+
+	/**
+	 * Get the name of the job parameter containing the progression of a job.
+	 *
+	 * @return	Name of the progression parameter.
+	 */
+	public final String getProgressionParameter(){
+		return progressionParam;
+	}
+
+	/**
+	 * Tell whether this stream is closed.
+	 *
+	 * @return	<i>true</i> if closed, <i>false</i> otherwise.
+	 */
+	public final boolean isClosed(){
+		return closed.get();
+	}
+
+	/**
+	 * Get the number of events waiting to be written.
+	 *
+	 * @return	Number of pending events.
+	 */
+	public final int getNbPendingEvents(){
+		synchronized(pending){
+			return pending.size();
+		}
+	}
+
+	/* *********** */
+	/* OBSERVATION */
+	/* *********** */
+
+	/**
+	 * Observe the given job.
+	 *
+	 * <p>
+	 * 	Its current state (phase, progression and results) is immediately put
+	 * 	in the buffer of events.
+	 * </p>
+	 *
+	 * @param job	The job to observe.
+	 */
+	public void observe(final UWSJob job){
+		if (job == null || closed.get() || !jobs.add(job))
+			return;
+
+		job.addObserver(this);
+
+		// Current state of this job:
+		putPhase(job, null, job.getPhase());
+		Object progression = job.getParameter(progressionParam);
+		if (progression != null)
+			putParameter(job, progressionParam, progression);
+		Iterator<Result> it = job.getResults();
+		while(it.hasNext())
+			putResult(job, it.next());
+
+		if (jobList == null && job.isFinished())
+			ending = true;
+	}
+
+	/**
+	 * Observe all the active (i.e. not finished) jobs of the given user (or
+	 * of all users if no user) in the given jobs list.
+	 *
+	 * <p>
+	 * 	The jobs added later to this list are observed as soon as added (see
+	 * 	{@link JobList#addObserver(JobListObserver)}), and a job stops being
+	 * 	observed once finished.
+	 * </p>
+	 *
+	 * @param list	The jobs list to observe.
+	 * @param user	The owner of the jobs to observe. <i>MAY be NULL</i>
+	 */
+	public void observe(final JobList list, final JobOwner user){
+		if (list == null || closed.get())
+			return;
+		jobList = list;
+		owner = user;
+		ending = false;
+		list.addObserver(this);
+
+		// Select the active jobs, if possible with the index of the list:
+		JobListIndex index = list.getIndex(user);
+		Iterator<UWSJob> it = (index != null) ? index.select(ACTIVE_PHASES, null, -1) : list.getJobs(user);
+		while(it.hasNext()){
+			UWSJob job = it.next();
+			if (ACTIVE_PHASES.contains(job.getPhase()))
+				observe(job);
+		}
+	}
+
+	/**
+	 * Stop observing the given job.
+	 *
+	 * @param job	The job to forget.
+	 */
+	protected void forget(final UWSJob job){
+		if (jobs.remove(job))
+			job.removeObserver(this);
+	}
+
+	@Override
+	public void jobAdded(final JobList list, final UWSJob job){
+		JobOwner user = owner;
+		if (list == jobList && (user == null || user.equals(job.getOwner())) && ACTIVE_PHASES.contains(job.getPhase()))
+			observe(job);
+	}
+
+	@Override
+	public void jobRemoved(final JobList list, final UWSJob job){
+		forget(job);
+	}
+
+	@Override
+	public void update(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase) throws UWSException{
+		putPhase(job, oldPhase, newPhase);
+		if (job.isFinished()){
+			// end of the only observed job => end of the stream:
+			if (jobList == null){
+				ending = true;
+				scheduleFlush();
+			}
+			// ...otherwise, just stop observing this job:
+			else
+				forget(job);
+		}
+	}
+
+	@Override
+	public void resultAdded(final UWSJob job, final Result result) throws UWSException{
+		putResult(job, result);
+	}
+
+	@Override
+	public void parameterChanged(final UWSJob job, final String name, final Object newValue) throws UWSException{
+		putParameter(job, name, newValue);
+	}
+
+	/* ****** */
+	/* EVENTS */
+	/* ****** */
+
+	/**
+	 * Put a <code>phase</code> event in the buffer.
+	 *
+	 * @param job		The job whose the phase has changed.
+	 * @param oldPhase	Its previous phase. <i>MAY be NULL</i>
+	 * @param newPhase	Its new phase.
+	 */
+	protected void putPhase(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase){
+		JSONObject data = new JSONObject();
+		data.put("jobId", job.getJobId());
+		data.put("phase", newPhase.toString());
+		if (oldPhase != null)
+			data.put("previousPhase", oldPhase.toString());
+		put(job.getJobId() + "/phase", "phase", data);
+	}
+
+	/**
+	 * Put a <code>progression</code> or <code>parameter</code> event in the
+	 * buffer.
+	 *
+	 * @param job	The job whose a parameter has changed.
+	 * @param name	Name of the parameter.
+	 * @param value	Its new value. <i>MAY be NULL</i>
+	 */
+	protected void putParameter(final UWSJob job, final String name, final Object value){
+		JSONObject data = new JSONObject();
+		data.put("jobId", job.getJobId());
+		if (name.equalsIgnoreCase(progressionParam)){
+			data.put("progression", (value == null) ? JSONObject.NULL : value.toString());
+			put(job.getJobId() + "/progression", "progression", data);
+		}else{
+			data.put("name", name);
+			data.put("value", (value == null) ? JSONObject.NULL : ((value instanceof Date) ? ISO8601Format.format((Date)value) : value.toString()));
+			put(job.getJobId() + "/param/" + name, "parameter", data);
+		}
+	}
+
+	/**
+	 * Put a <code>result</code> event in the buffer.
+	 *
+	 * @param job		The job which has a new result.
+	 * @param result	The new result.
+	 */
+	protected void putResult(final UWSJob job, final Result result){
+		JSONObject data = new JSONObject();
+		data.put("jobId", job.getJobId());
+		data.put("id", result.getId());
+		if (result.getHref() != null)
+			data.put("href", result.getHref());
+		if (result.getType() != null)
+			data.put("type", result.getType());
+		if (result.getMimeType() != null)
+			data.put("mimeType", result.getMimeType());
+		if (result.getSize() >= 0)
+			data.put("size", result.getSize());
+		put(job.getJobId() + "/result/" + result.getId(), "result", data);
+	}
+
+	/**
+	 * Put the given event in the buffer and plan its writing.
+	 *
+	 * <p>
+	 * 	If an event with the same key is already waiting, it is replaced by
+	 * 	the given one, which is moved at the end of the buffer. Otherwise, if
+	 * 	the buffer is full, the given event is dropped and a <code>resync</code>
+	 * 	event will be written instead.
+	 * </p>
+	 *
+	 * @param key	Key identifying what the event is about.
+	 * @param name	Name of the event.
+	 * @param data	Data of the event.
+	 */
+	protected final void put(final String key, final String name, final JSONObject data){
+		if (closed.get())
+			return;
+
+		synchronized(pending){
+			if (pending.remove(key) == null && pending.size() >= bufferSize){
+				overflow = true;
+				return;
+			}
+			pending.put(key, "event: " + name + "\ndata: " + data.toString() + "\n");
+		}
+
+		scheduleFlush();
+	}
+
+	/**
+	 * Take all events waiting to be written.
+	 *
+	 * @return	The serialized events to write (with their ID).
+	 */
+	private String takePending(){
+		StringBuilder buf = new StringBuilder();
+		synchronized(pending){
+			for(Map.Entry<String,String> e : pending.entrySet())
+				buf.append("id: ").append(nextId++).append('\n').append(e.getValue()).append('\n');
+			pending.clear();
+			if (overflow){
+				buf.append("id: ").append(nextId++).append("\nevent: resync\ndata: {}\n\n");
+				overflow = false;
+			}
+		}
+		return buf.toString();
+	}
+
+	/* ******* */
+	/* WRITING */
+	/* ******* */
+
+	/**
+	 * Set the headers of the given HTTP response.
+	 *
+	 * @param response	The HTTP response in which events will be written.
+	 */
+	protected void setHeaders(final HttpServletResponse response){
+		response.setContentType(MIME_TYPE);
+		response.setCharacterEncoding(UWSToolBox.DEFAULT_CHAR_ENCODING);
+		response.setHeader("Cache-Control", "no-cache");
+	}
+
+	/**
+	 * Write the events of the buffer in the given HTTP response and close it.
+	 *
+	 * <p>
+	 * 	This function should be used only if the HTTP request does not
+	 * 	support the asynchronous mode. The client is then asked to reconnect
+	 * 	after {@link #RETRY_TIME} milliseconds.
+	 * </p>
+	 *
+	 * @param response	The HTTP response in which events must be written.
+	 *
+	 * @throws IOException	If an error occurs while writing the events.
+	 */
+	public void writeOnce(final HttpServletResponse response) throws IOException{
+		try{
+			setHeaders(response);
+			OutputStream out = response.getOutputStream();
+			out.write(("retry: " + RETRY_TIME + "\n\n" + takePending()).getBytes(UWSToolBox.DEFAULT_CHAR_ENCODING));
+			out.flush();
+		}finally{
+			close();
+		}
+	}
+
+	/**
+	 * Put the given HTTP request in asynchronous mode and start writing
+	 * events in its response until the client disconnects (or until the end
+	 * of the observed job).
+	 *
+	 * @param request	The HTTP request asking for events.
+	 * @param response	Its HTTP response.
+	 *
+	 * @throws IOException	If the output stream of the response can not be got.
+	 * @throws IllegalStateException	If the asynchronous mode is not
+	 *                              	supported or if this stream has already
+	 *                              	been started.
+	 */
+	public synchronized void start(final HttpServletRequest request, final HttpServletResponse response) throws IOException, IllegalStateException{
+		if (context != null)
+			throw new IllegalStateException("This event stream has already been started!");
+
+		setHeaders(response);
+		output = response.getOutputStream();
+
+		context = request.startAsync(request, response);
+		// no timeout ; the stream is closed only when the client disconnects:
+		context.setTimeout(0);
+		context.addListener(this);
+
+		if (heartbeatPeriod > 0){
+			heartbeatTask = new TimerTask(){
+				@Override
+				public void run(){
+					heartbeat = true;
+					scheduleFlush();
+				}
+			};
+			timer.schedule(heartbeatTask, heartbeatPeriod, heartbeatPeriod);
+		}
+
+		// Write the current state of the observed jobs:
+		heartbeat = true;
+		scheduleFlush();
+	}
+
+	/**
+	 * Plan the writing of the pending events (if not already planned).
+	 */
+	protected final void scheduleFlush(){
+		if (output == null || closed.get())
+			return;
+
+		// Disconnect a client reading too slowly its events:
+		long since = writingSince;
+		if (since > 0 && System.currentTimeMillis() - since > MAX_WRITE_TIME){
+			close();
+			return;
+		}
+
+		if (flushing.compareAndSet(false, true)){
+			try{
+				writers.execute(new Runnable(){
+					@Override
+					public void run(){
+						flush();
+					}
+				});
+			}catch(Exception e){
+				// no writer available => disconnect this client:
+				flushing.set(false);
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Write all pending events (or a heartbeat if none) in the HTTP response.
+	 *
+	 * <p><i>Note:
+	 * 	If the writing fails (e.g. the client is disconnected or is too slow),
+	 * 	this stream is closed.
+	 * </i></p>
+	 */
+	private void flush(){
+		try{
+			boolean end = ending;
+			String events = takePending();
+			if (events.length() > 0 || heartbeat || end){
+				heartbeat = false;
+				if (events.length() == 0)
+					events = ": heartbeat\n\n";
+				if (end){
+					synchronized(pending){
+						events += "id: " + (nextId++) + "\nevent: end\ndata: {}\n\n";
+					}
+				}
+				writingSince = System.currentTimeMillis();
+				try{
+					output.write(events.getBytes(UWSToolBox.DEFAULT_CHAR_ENCODING));
+					output.flush();
+				}finally{
+					writingSince = 0;
+				}
+			}
+			if (end){
+				close();
+				return;
+			}
+		}catch(IOException ioe){
+			close();
+			return;
+		}finally{
+			flushing.set(false);
+		}
+
+		// Events may have arrived while writing:
+		if (getNbPendingEvents() > 0 || ending)
+			scheduleFlush();
+	}
+
+	/**
+	 * Close this stream: all jobs stop being observed and the HTTP request
+	 * is completed.
+	 *
+	 * <p><i>Note:
+	 * 	Only the first call has an effect.
+	 * </i></p>
+	 */
+	public void close(){
+		if (!closed.compareAndSet(false, true))
+			return;
+
+		synchronized(this){
+			if (heartbeatTask != null)
+				heartbeatTask.cancel();
+			heartbeatTask = null;
+		}
+
+		JobList list = jobList;
+		if (list != null)
+			list.removeObserver(this);
+
+		for(UWSJob job : jobs)
+			job.removeObserver(this);
+		jobs.clear();
+
+		synchronized(pending){
+			pending.clear();
+		}
+
+		if (context != null){
+			try{
+				context.complete();
+			}catch(IllegalStateException ise){
+				// the request is already completed
+			}
+		}
+	}
+
+	/* *************** */
+	/* ASYNC LISTENING */
+	/* *************** */
+
+	@Override
+	public void onComplete(final AsyncEvent event) throws IOException{
+		close();
+	}
+
+	@Override
+	public void onTimeout(final AsyncEvent event) throws IOException{
+		close();
+	}
+
+	@Override
+	public void onError(final AsyncEvent event) throws IOException{
+		close();
+	}
+
+	@Override
+	public void onStartAsync(final AsyncEvent event) throws IOException{
+		;
+	}
+
+}
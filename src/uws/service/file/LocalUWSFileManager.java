@@ -16,7 +16,7 @@ package uws.service.file;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2012-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2012-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.DateFormat;
@@ -41,6 +42,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import uws.UWSException;
 import uws.UWSToolBox;
@@ -77,8 +79,18 @@ import uws.service.request.UploadFile;
  * 	function {@link #setLogRotationFreq(String)}.
  * </p>
  *
+ * <p>
+ * 	A result file may be stored in several tiers: as written by the job, in
+ * 	the owner directory ; gzipped (suffix {@value #COMPRESSED_SUFFIX}) in the
+ * 	same directory ; or, plain or gzipped, in an archive directory tree (see
+ * 	{@link #setArchiveDirectory(File)}) mirroring the root directory. Results
+ * 	are moved between these tiers by a {@link ResultLifecycleManager}, while
+ * 	{@link #getResultInput(Result, UWSJob)} always returns the original
+ * 	(decompressed) content, whatever is its current tier.
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (CDS;ARI)
- * @version 4.4 (08/2018)
+ * @version 4.5 (10/2026)
  */
 public class LocalUWSFileManager implements UWSFileManager {
 
@@ -90,6 +102,10 @@ public class LocalUWSFileManager implements UWSFileManager {
 	/** Default name of the general UWS backup file. */
 	protected static final String DEFAULT_BACKUP_FILE_NAME = "service.backup";
 
+	/** Suffix appended to the name of a result file once gzipped.
+	 * @since 4.5 */
+	public static final String COMPRESSED_SUFFIX = ".gz";
+
 	/** Directory in which all files managed by this class will be written and read. */
 	protected final File rootDirectory;
 
@@ -97,6 +113,15 @@ public class LocalUWSFileManager implements UWSFileManager {
 	 * @since 4.4 */
 	protected File tmpDirectory = new File(System.getProperty("java.io.tmpdir"));
 
+	/** Directory in which idle result files may be archived.
+	 * <i>NULL if results are never archived.</i>
+	 * @since 4.5 */
+	protected File archiveDirectory = null;
+
+	/** Object opening the resources designated by a URI (see {@link #openURI(URI)}).
+	 * @since 4.5 */
+	protected URIFetcher uriFetcher = new URIFetcher();
+
 	/** Output toward the service log file. */
 	protected PrintWriter logOutput = null;
 	/** Frequency at which the log file must be "rotated" (the file is renamed with the date of its first write and a new log file is created).
@@ -460,6 +485,7 @@ public class LocalUWSFileManager implements UWSFileManager {
 			return false;
 		else{
 			tmpDirectory = newTmpDir;
+			uriFetcher.setTmpDirectory(newTmpDir);
 			return true;
 		}
 	}
@@ -474,13 +500,39 @@ public class LocalUWSFileManager implements UWSFileManager {
 		return new FileInputStream(source);
 	}
 
+	/**
+	 * Gets the object used to open the resources designated by a URI.
+	 *
+	 * @return	The URI fetcher.
+	 *
+	 * @since 4.5
+	 */
+	public final URIFetcher getURIFetcher(){
+		return uriFetcher;
+	}
+
+	/**
+	 * Sets the object used to open the resources designated by a URI
+	 * (e.g. with a cache, other timeouts or some allowed local directories).
+	 *
+	 * @param fetcher	The new URI fetcher. <i>If NULL, a default {@link URIFetcher} is set.</i>
+	 *
+	 * @since 4.5
+	 */
+	public final void setURIFetcher(final URIFetcher fetcher){
+		uriFetcher = (fetcher == null) ? new URIFetcher() : fetcher;
+		uriFetcher.setTmpDirectory(tmpDirectory);
+	}
+
+	/**
+	 * <p><i>Note:
+	 * 	Since v4.5, the resource is opened by the {@link URIFetcher} of this
+	 * 	file manager (see {@link #setURIFetcher(URIFetcher)}).
+	 * </i></p>
+	 */
 	@Override
 	public InputStream openURI(final URI uri) throws UnsupportedURIProtocolException, IOException{
-		String scheme = uri.getScheme();
-		if (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("ftp"))
-			return uri.toURL().openStream();
-		else
-			throw new UnsupportedURIProtocolException(uri);
+		return uriFetcher.open(uri);
 	}
 
 	@Override
@@ -602,31 +654,204 @@ public class LocalUWSFileManager implements UWSFileManager {
 		return new File(ownerDir, getResultFileName(result, job));
 	}
 
+	/**
+	 * Gets the file in which the given result is stored once archived.
+	 *
+	 * <p>
+	 * 	The archive directory tree mirrors the root directory: the archived file
+	 * 	has the same path relatively to {@link #getArchiveDirectory()} as the
+	 * 	file returned by {@link #getResultFile(Result, UWSJob)} relatively to the
+	 * 	root directory.
+	 * </p>
+	 *
+	 * @param result	The result whose the archived file is asked.
+	 * @param job		The job which owns the given result.
+	 *
+	 * @return	The archived file corresponding to the given result,
+	 *        	or <i>null</i> if no archive directory is set.
+	 *
+	 * @since 4.5
+	 */
+	protected File getArchivedResultFile(final Result result, final UWSJob job){
+		if (archiveDirectory == null)
+			return null;
+		String relativePath = rootDirectory.toURI().relativize(getResultFile(result, job).toURI()).getPath();
+		return new File(archiveDirectory, relativePath);
+	}
+
+	/**
+	 * Lists all the files in which the given result may be stored, in the
+	 * order of the tiers: as written, gzipped, archived and archived gzipped.
+	 *
+	 * @param result	The result whose the files are asked.
+	 * @param job		The job which owns the given result.
+	 *
+	 * @return	The possible files of the given result (2 or 4 items).
+	 *
+	 * @since 4.5
+	 */
+	protected File[] getResultFiles(final Result result, final UWSJob job){
+		File resultFile = getResultFile(result, job);
+		File archivedFile = getArchivedResultFile(result, job);
+		if (archivedFile == null)
+			return new File[]{resultFile,new File(resultFile.getPath() + COMPRESSED_SUFFIX)};
+		else
+			return new File[]{resultFile,new File(resultFile.getPath() + COMPRESSED_SUFFIX),archivedFile,new File(archivedFile.getPath() + COMPRESSED_SUFFIX)};
+	}
+
+	/**
+	 * Gets the file in which the given result is currently stored, whatever is
+	 * its tier.
+	 *
+	 * @param result	The result whose the file is asked.
+	 * @param job		The job which owns the given result.
+	 *
+	 * @return	The existing file of the given result,
+	 *        	or <i>null</i> if there is none.
+	 *
+	 * @see #getResultFiles(Result, UWSJob)
+	 *
+	 * @since 4.5
+	 */
+	public File findResultFile(final Result result, final UWSJob job){
+		for(File f : getResultFiles(result, job)){
+			if (f.exists())
+				return f;
+		}
+		return null;
+	}
+
+	/**
+	 * Tells whether the given file is a gzipped copy of a result file.
+	 *
+	 * @param file	A file returned by {@link #findResultFile(Result, UWSJob)}.
+	 *
+	 * @return	<i>true</i> if the file content must be decompressed,
+	 *        	<i>false</i> otherwise.
+	 *
+	 * @since 4.5
+	 */
+	public boolean isCompressed(final File file){
+		return file != null && file.getName().endsWith(COMPRESSED_SUFFIX);
+	}
+
+	/**
+	 * Gets the directory in which idle result files are archived.
+	 *
+	 * @return	The archive directory, or <i>null</i> if results are never archived.
+	 *
+	 * @since 4.5
+	 */
+	public final File getArchiveDirectory(){
+		return archiveDirectory;
+	}
+
+	/**
+	 * Sets the directory in which idle result files are archived.
+	 *
+	 * <p><i>Note:
+	 * 	Results already archived in a previous archive directory will not be
+	 * 	found anymore.
+	 * </i></p>
+	 *
+	 * @param newArchiveDir	The new archive directory (created if needed),
+	 *                     	or <i>null</i> to never archive results.
+	 *
+	 * @return	<i>true</i> if the archive directory has been changed,
+	 *        	<i>false</i> if the given directory can not be read or written.
+	 *
+	 * @since 4.5
+	 */
+	public boolean setArchiveDirectory(final File newArchiveDir){
+		if (newArchiveDir != null){
+			if (!newArchiveDir.exists())
+				newArchiveDir.mkdirs();
+			if (!newArchiveDir.isDirectory() || !newArchiveDir.canRead() || !newArchiveDir.canWrite())
+				return false;
+		}
+		archiveDirectory = newArchiveDir;
+		return true;
+	}
+
 	@Override
 	public InputStream getResultInput(Result result, UWSJob job) throws IOException{
-		File resultFile = getResultFile(result, job);
-		return resultFile.exists() ? new FileInputStream(resultFile) : null;
+		for(int attempt = 0;; attempt++){
+			File resultFile = findResultFile(result, job);
+			try{
+				if (resultFile == null)
+					return null;
+				else if (isCompressed(resultFile))
+					return new GZIPInputStream(new FileInputStream(resultFile), 65536);
+				else
+					return new FileInputStream(resultFile);
+			}catch(FileNotFoundException fnfe){
+				// The file may have just been moved to another tier => search it again, once:
+				if (attempt > 0)
+					throw fnfe;
+			}
+		}
 	}
 
 	@Override
 	public OutputStream getResultOutput(Result result, UWSJob job) throws IOException{
-		File resultFile = getResultFile(result, job);
-		createParentDir(resultFile);
-		return new FileOutputStream(resultFile);
+		File[] resultFiles = getResultFiles(result, job);
+		// Remove any older version of this result from the other tiers:
+		for(int i = 1; i < resultFiles.length; i++)
+			resultFiles[i].delete();
+		createParentDir(resultFiles[0]);
+		return new FileOutputStream(resultFiles[0]);
 	}
 
 	@Override
 	public long getResultSize(Result result, UWSJob job) throws IOException{
-		File resultFile = getResultFile(result, job);
-		if (resultFile == null || !resultFile.exists())
+		File resultFile = findResultFile(result, job);
+		if (resultFile == null)
 			return -1;
-		else
+		else if (!isCompressed(resultFile))
 			return resultFile.length();
+		else if (result.getSize() >= 0)
+			return result.getSize();
+		else
+			return getUncompressedSize(resultFile);
+	}
+
+	/**
+	 * Reads the size of the original content of a gzipped file from its
+	 * trailer.
+	 *
+	 * <p><i>Note:
+	 * 	The gzip format stores this size modulo 2^32. So this function is
+	 * 	exact only for contents smaller than 4GB.
+	 * </i></p>
+	 *
+	 * @param gzipFile	A gzipped file.
+	 *
+	 * @return	The uncompressed size, or -1 if the file is too small to be a gzip file.
+	 *
+	 * @throws IOException	If the file can not be read.
+	 *
+	 * @since 4.5
+	 */
+	protected long getUncompressedSize(final File gzipFile) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(gzipFile, "r");
+		try{
+			if (raf.length() < 18)
+				return -1;
+			raf.seek(raf.length() - 4);
+			long size = 0;
+			for(int i = 0; i < 4; i++)
+				size |= ((long)raf.read()) << (8 * i);
+			return size;
+		}finally{
+			raf.close();
+		}
 	}
 
 	@Override
 	public boolean deleteResult(Result result, UWSJob job) throws IOException{
-		boolean deleted = getResultFile(result, job).delete();
+		boolean deleted = false;
+		for(File f : getResultFiles(result, job))
+			deleted = f.delete() || deleted;
 
 		if (deleted)
 			cleanOwnerDirectory(job.getOwner());
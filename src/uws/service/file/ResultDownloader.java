@@ -0,0 +1,506 @@
+package uws.service.file;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import uws.UWSToolBox;
+import uws.job.Result;
+import uws.job.UWSJob;
+
+/**
+ * Write the content of a result in an HTTP response, with support of
+ * conditional and partial requests (RFC 7232 and 7233).
+ *
+ * <p>The following features are supported:</p>
+ * <ul>
+ * 	<li>the headers <code>ETag</code> and <code>Last-Modified</code> are set
+ * 		from {@link Result#getETag()} and {@link Result#getLastModified()},
+ * 		and a <code>304 Not Modified</code> is returned when they match the
+ * 		headers <code>If-None-Match</code> or <code>If-Modified-Since</code>,</li>
+ * 	<li>a <code>Range</code> request (optionally conditioned by
+ * 		<code>If-Range</code>) gets a <code>206 Partial Content</code> response
+ * 		with one range, or a <code>multipart/byteranges</code> response with
+ * 		several ranges (overlapping or adjacent ranges are merged),</li>
+ * 	<li>unsatisfiable ranges get a
+ * 		<code>416 Range Not Satisfiable</code> response.</li>
+ * </ul>
+ *
+ * <p>
+ * 	When the result is an uncompressed file of a {@link LocalUWSFileManager},
+ * 	its content is sent with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * 	or, if the servlet container supports it (e.g. Tomcat with NIO/APR
+ * 	connectors), delegated to the container's <code>sendfile</code>.
+ * 	Otherwise, the content is read from
+ * 	{@link UWSFileManager#getResultInput(Result, UWSJob)}, skipping the bytes
+ * 	before each range.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	Ranges are supported only if the size of the result is known.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public final class ResultDownloader {
+
+	/** Maximum number of ranges accepted in one request. Above, the whole
+	 * content is returned. */
+	public final static int MAX_RANGES = 32;
+
+	/** Request attribute set by Tomcat when the sendfile feature is available. */
+	protected final static String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	/** Request attribute asking Tomcat to send the given file. */
+	protected final static String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	/** Request attribute giving the first byte (included) that Tomcat must send. */
+	protected final static String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	/** Request attribute giving the last byte (excluded) that Tomcat must send. */
+	protected final static String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	/** Size of the buffer used to copy streams. */
+	private final static int BUFFER_SIZE = 65536;
+
+	/** Generator of multipart boundaries. */
+	private final static Random random = new Random();
+
+	/** Order of ranges by start position. */
+	private final static Comparator<long[]> RANGE_COMPARATOR = new Comparator<long[]>(){
+		@Override
+		public int compare(final long[] r1, final long[] r2){
+			return (r1[0] < r2[0]) ? -1 : ((r1[0] == r2[0]) ? 0 : 1);
+		}
+	};
+
+	private ResultDownloader(){}
+
+	/**
+	 * Write the content of the given result, or only the parts of it asked by
+	 * the given request.
+	 *
+	 * @param fileManager	The file manager storing the result.
+	 * @param result		The result to write.
+	 * @param job			The job owning this result.
+	 * @param request		The HTTP request asking this result.
+	 * @param response		The HTTP response in which the result must be written.
+	 *
+	 * @throws IOException	If the result can not be read or written.
+	 */
+	public static void write(final UWSFileManager fileManager, final Result result, final UWSJob job, final HttpServletRequest request, final HttpServletResponse response) throws IOException{
+		String eTag = result.getETag();
+		long lastModified = result.getLastModified();
+		long size = (result.getSize() >= 0) ? result.getSize() : fileManager.getResultSize(result, job);
+
+		// Set the validators of the result:
+		if (eTag != null)
+			response.setHeader("ETag", eTag);
+		if (lastModified >= 0)
+			response.setDateHeader("Last-Modified", lastModified);
+
+		// Nothing to send if the client already has this result:
+		if (isNotModified(request, eTag, lastModified)){
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		// Parse the asked ranges, if any:
+		List<long[]> ranges = null;
+		if (size >= 0){
+			response.setHeader("Accept-Ranges", "bytes");
+			String rangeHeader = request.getHeader("Range");
+			if (rangeHeader != null && "GET".equalsIgnoreCase(request.getMethod()) && isRangeApplicable(request, eTag, lastModified)){
+				ranges = parseRanges(rangeHeader, size);
+				if (ranges != null && ranges.isEmpty()){
+					response.setHeader("Content-Range", "bytes */" + size);
+					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+			}
+		}
+
+		// Get the file to send directly, if possible:
+		File file = null;
+		if (fileManager instanceof LocalUWSFileManager){
+			file = ((LocalUWSFileManager)fileManager).findResultFile(result, job);
+			if (file != null && (((LocalUWSFileManager)fileManager).isCompressed(file) || file.length() != size))
+				file = null;
+		}
+
+		// CASE: whole content
+		if (ranges == null){
+			if (file == null){
+				InputStream input = fileManager.getResultInput(result, job);
+				if (input == null)
+					throw new FileNotFoundException("Missing content for the result \"" + result.getId() + "\" of the job \"" + job.getJobId() + "\"!");
+				try{
+					UWSToolBox.write(input, result.getMimeType(), size, response);
+				}finally{
+					input.close();
+				}
+			}else{
+				setContentType(response, result.getMimeType());
+				UWSToolBox.setContentLength(response, size);
+				send(file, 0, size, request, response);
+			}
+		}
+		// CASE: one range
+		else if (ranges.size() == 1){
+			long[] range = ranges.get(0);
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+			setContentType(response, result.getMimeType());
+			UWSToolBox.setContentLength(response, range[1] - range[0] + 1);
+			if (file != null)
+				send(file, range[0], range[1] - range[0] + 1, request, response);
+			else
+				writeRanges(fileManager, result, job, ranges, null, size, response.getOutputStream());
+		}
+		// CASE: several ranges
+		else{
+			String boundary = "UWS_BYTERANGES_" + Long.toHexString(random.nextLong());
+			long length = 0;
+			for(long[] range : ranges)
+				length += getPartHeader(boundary, result.getMimeType(), range, size).length() + range[1] - range[0] + 1;
+			length += getMultipartEnd(boundary).length();
+
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setContentType("multipart/byteranges; boundary=" + boundary);
+			UWSToolBox.setContentLength(response, length);
+			OutputStream output = response.getOutputStream();
+			if (file != null){
+				FileInputStream input = new FileInputStream(file);
+				try{
+					WritableByteChannel target = Channels.newChannel(output);
+					for(long[] range : ranges){
+						output.write(getPartHeader(boundary, result.getMimeType(), range, size).getBytes("US-ASCII"));
+						transfer(input.getChannel(), range[0], range[1] - range[0] + 1, target);
+					}
+				}finally{
+					input.close();
+				}
+			}else
+				writeRanges(fileManager, result, job, ranges, boundary, size, output);
+			output.write(getMultipartEnd(boundary).getBytes("US-ASCII"));
+			output.flush();
+		}
+	}
+
+	/**
+	 * Tells whether the client already has the current version of the result,
+	 * according to the headers <code>If-None-Match</code> and
+	 * <code>If-Modified-Since</code>.
+	 *
+	 * @param request		The HTTP request.
+	 * @param eTag			Entity tag of the result. <i>May be NULL.</i>
+	 * @param lastModified	Publication date of the result. <i>Negative if unknown.</i>
+	 *
+	 * @return	<i>true</i> if a <code>304 Not Modified</code> must be returned,
+	 *        	<i>false</i> otherwise.
+	 */
+	static boolean isNotModified(final HttpServletRequest request, final String eTag, final long lastModified){
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null){
+			if (eTag == null)
+				return false;
+			for(String tag : ifNoneMatch.split(",")){
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag))
+					return true;
+			}
+			return false;
+		}else if (lastModified >= 0){
+			long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+			return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+		}else
+			return false;
+	}
+
+	/**
+	 * Tells whether the header <code>Range</code> must be applied, according
+	 * to the header <code>If-Range</code>.
+	 *
+	 * @param request		The HTTP request.
+	 * @param eTag			Entity tag of the result. <i>May be NULL.</i>
+	 * @param lastModified	Publication date of the result. <i>Negative if unknown.</i>
+	 *
+	 * @return	<i>true</i> if there is no <code>If-Range</code> or if it matches
+	 *        	the result, <i>false</i> if the whole content must be returned.
+	 */
+	static boolean isRangeApplicable(final HttpServletRequest request, final String eTag, final long lastModified){
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null)
+			return true;
+		ifRange = ifRange.trim();
+		// Entity tag (only strong comparison allowed):
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			return eTag != null && ifRange.equals(eTag);
+		// HTTP date:
+		else{
+			long date = getDateHeader(request, "If-Range");
+			return date >= 0 && lastModified >= 0 && date / 1000 == lastModified / 1000;
+		}
+	}
+
+	/**
+	 * Parse the value of a header <code>Range</code>.
+	 *
+	 * <p>
+	 * 	The returned ranges are sorted ; overlapping or adjacent ranges are
+	 * 	merged.
+	 * </p>
+	 *
+	 * @param rangeHeader	Value of the header <code>Range</code>.
+	 * @param size			Size of the whole content.
+	 *
+	 * @return	The satisfiable ranges as arrays <code>{first, last}</code>
+	 *        	(both included), an empty list if no range is satisfiable,
+	 *        	or <i>null</i> if the header is incorrect, not in bytes or
+	 *        	has more than {@link #MAX_RANGES} ranges (i.e. the whole
+	 *        	content must be sent).
+	 */
+	static List<long[]> parseRanges(final String rangeHeader, final long size){
+		String header = rangeHeader.trim();
+		if (!header.toLowerCase().startsWith("bytes="))
+			return null;
+		String[] specs = header.substring(6).split(",");
+		if (specs.length > MAX_RANGES)
+			return null;
+
+		List<long[]> ranges = new ArrayList<long[]>(specs.length);
+		try{
+			for(String spec : specs){
+				spec = spec.trim();
+				int dash = spec.indexOf('-');
+				if (dash < 0)
+					return null;
+				String first = spec.substring(0, dash).trim(), last = spec.substring(dash + 1).trim();
+				// Suffix range (i.e. the last N bytes):
+				if (first.length() == 0){
+					long suffix = Long.parseLong(last);
+					if (suffix < 0)
+						return null;
+					else if (suffix > 0 && size > 0)
+						ranges.add(new long[]{Math.max(0, size - suffix),size - 1});
+				}
+				// Range from the first byte to the last one (or to the end):
+				else{
+					long start = Long.parseLong(first), end = (last.length() == 0) ? Long.MAX_VALUE : Long.parseLong(last);
+					if (start < 0 || end < start)
+						return null;
+					else if (start < size)
+						ranges.add(new long[]{start,Math.min(end, size - 1)});
+				}
+			}
+		}catch(NumberFormatException nfe){
+			return null;
+		}
+
+		// Merge the overlapping and adjacent ranges:
+		Collections.sort(ranges, RANGE_COMPARATOR);
+		List<long[]> merged = new ArrayList<long[]>(ranges.size());
+		for(long[] range : ranges){
+			long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (previous != null && range[0] <= previous[1] + 1)
+				previous[1] = Math.max(previous[1], range[1]);
+			else
+				merged.add(range);
+		}
+		return merged;
+	}
+
+	/**
+	 * Send a part of the given file, by delegating it to the servlet container
+	 * if it supports <code>sendfile</code>, or with
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+	 * otherwise.
+	 *
+	 * @param file		The file to send.
+	 * @param start		Position of the first byte to send.
+	 * @param length	Number of bytes to send.
+	 * @param request	The HTTP request.
+	 * @param response	The HTTP response (with all headers already set).
+	 *
+	 * @throws IOException	If the file can not be read or written.
+	 */
+	private static void send(final File file, final long start, final long length, final HttpServletRequest request, final HttpServletResponse response) throws IOException{
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))){
+			request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+			request.setAttribute(SENDFILE_START, Long.valueOf(start));
+			request.setAttribute(SENDFILE_END, Long.valueOf(start + length));
+		}else{
+			OutputStream output = response.getOutputStream();
+			FileInputStream input = new FileInputStream(file);
+			try{
+				transfer(input.getChannel(), start, length, Channels.newChannel(output));
+			}finally{
+				input.close();
+			}
+			output.flush();
+		}
+	}
+
+	/**
+	 * Transfer a part of the given file channel into the given target.
+	 *
+	 * @param channel	The file to read.
+	 * @param start		Position of the first byte to transfer.
+	 * @param length	Number of bytes to transfer.
+	 * @param target	The channel in which bytes must be written.
+	 *
+	 * @throws IOException	If the file is shorter than expected or if an I/O error occurs.
+	 */
+	private static void transfer(final FileChannel channel, final long start, final long length, final WritableByteChannel target) throws IOException{
+		long position = start, end = start + length;
+		while(position < end){
+			long nbBytes = channel.transferTo(position, end - position, target);
+			if (nbBytes <= 0)
+				throw new EOFException("Unexpected end of the result file!");
+			position += nbBytes;
+		}
+	}
+
+	/**
+	 * Write the given ranges of the result by reading sequentially its stream.
+	 *
+	 * @param fileManager	The file manager storing the result.
+	 * @param result		The result to write.
+	 * @param job			The job owning this result.
+	 * @param ranges		The sorted ranges to write.
+	 * @param boundary		The multipart boundary. <i>NULL if there is only one range to write, without part header.</i>
+	 * @param size			Size of the whole content.
+	 * @param output		The stream in which the ranges must be written.
+	 *
+	 * @throws IOException	If the result can not be read or written.
+	 */
+	private static void writeRanges(final UWSFileManager fileManager, final Result result, final UWSJob job, final List<long[]> ranges, final String boundary, final long size, final OutputStream output) throws IOException{
+		InputStream input = fileManager.getResultInput(result, job);
+		if (input == null)
+			throw new FileNotFoundException("Missing content for the result \"" + result.getId() + "\" of the job \"" + job.getJobId() + "\"!");
+		try{
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long position = 0;
+			for(long[] range : ranges){
+				if (boundary != null)
+					output.write(getPartHeader(boundary, result.getMimeType(), range, size).getBytes("US-ASCII"));
+
+				// Skip the bytes before the range:
+				while(position < range[0]){
+					long nbSkipped = input.skip(range[0] - position);
+					if (nbSkipped <= 0){
+						if (input.read() < 0)
+							throw new EOFException("Unexpected end of the result content!");
+						nbSkipped = 1;
+					}
+					position += nbSkipped;
+				}
+
+				// Copy the range:
+				long remaining = range[1] - range[0] + 1;
+				while(remaining > 0){
+					int len = input.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+					if (len < 0)
+						throw new EOFException("Unexpected end of the result content!");
+					output.write(buffer, 0, len);
+					remaining -= len;
+				}
+				position = range[1] + 1;
+			}
+		}finally{
+			input.close();
+		}
+		if (boundary == null)
+			output.flush();
+	}
+
+	/**
+	 * Build the header of a part of a <code>multipart/byteranges</code>
+	 * response.
+	 *
+	 * @param boundary	The multipart boundary.
+	 * @param mimeType	MIME type of the result. <i>May be NULL.</i>
+	 * @param range		The range of this part.
+	 * @param size		Size of the whole content.
+	 *
+	 * @return	The part header (starting with the boundary and ending with an empty line).
+	 */
+	private static String getPartHeader(final String boundary, final String mimeType, final long[] range, final long size){
+		return "\r\n--" + boundary + "\r\n" + ((mimeType == null) ? "" : "Content-Type: " + mimeType + "\r\n") + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n";
+	}
+
+	/**
+	 * Build the end of a <code>multipart/byteranges</code> response.
+	 *
+	 * @param boundary	The multipart boundary.
+	 *
+	 * @return	The closing boundary.
+	 */
+	private static String getMultipartEnd(final String boundary){
+		return "\r\n--" + boundary + "--\r\n";
+	}
+
+	/**
+	 * Set the content type and the character encoding of the response, as
+	 * {@link UWSToolBox#write(InputStream, String, long, HttpServletResponse)}
+	 * does.
+	 *
+	 * @param response	The HTTP response.
+	 * @param mimeType	MIME type of the result. <i>May be NULL.</i>
+	 */
+	private static void setContentType(final HttpServletResponse response, final String mimeType){
+		if (mimeType != null)
+			response.setContentType(mimeType);
+		response.setCharacterEncoding(UWSToolBox.DEFAULT_CHAR_ENCODING);
+	}
+
+	/**
+	 * Get the value of a date header.
+	 *
+	 * @param request	The HTTP request.
+	 * @param name		Name of the header.
+	 *
+	 * @return	The date (in milliseconds), or -1 if the header is missing or is not a date.
+	 */
+	private static long getDateHeader(final HttpServletRequest request, final String name){
+		try{
+			return request.getDateHeader(name);
+		}catch(IllegalArgumentException iae){
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,507 @@
+package uws.service.file;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.service.UWS;
+import uws.service.log.UWSLog.LogLevel;
+
+/**
+ * Background service moving the idle result files of finished jobs to
+ * cheaper storage tiers of a {@link LocalUWSFileManager}.
+ *
+ * <p>
+ * 	Periodically (see {@link #setPeriod(long)}), all results stored by the
+ * 	file manager are scanned:
+ * </p>
+ * <ul>
+ * 	<li>results not read nor written since the compression delay
+ * 		({@link #setCompressionDelay(long)}) are gzipped, except if their
+ * 		format is already compressed (see {@link #isCompressible(Result)}),</li>
+ * 	<li>results not read nor written since the archive delay
+ * 		({@link #setArchiveDelay(long)}) are moved into the archive directory
+ * 		of the file manager (see {@link LocalUWSFileManager#setArchiveDirectory(File)}).</li>
+ * </ul>
+ *
+ * <p>
+ * 	The moved results are still returned by
+ * 	{@link LocalUWSFileManager#getResultInput(Result, UWSJob)}, decompressed
+ * 	on the fly. Their size, if not already known, is set in the {@link Result}
+ * 	before compression.
+ * </p>
+ *
+ * <p>
+ * 	The scan runs in a daemon thread with the lowest priority and all its
+ * 	copies are throttled (see {@link #setMaxBytesPerSecond(long)}), so that it
+ * 	does not compete with the jobs and the result downloads.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The idle time of a file is computed from its last modification and last
+ * 	access dates. On file systems not updating the access date (e.g. mounted
+ * 	with <code>noatime</code>), only the last modification is then considered.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class ResultLifecycleManager {
+
+	/** Default period (in milliseconds) between two scans of the results: 1 hour. */
+	public final static long DEFAULT_PERIOD = 3600000;
+
+	/** Size (in bytes) of the buffer used to copy files. */
+	protected final static int BUFFER_SIZE = 65536;
+
+	/** The UWS service whose the results must be managed. */
+	protected final UWS uws;
+
+	/** The file manager storing the results. */
+	protected final LocalUWSFileManager fileManager;
+
+	/** Idle time (in milliseconds) after which a result is compressed. <i>Never if negative or 0.</i> */
+	protected volatile long compressionDelay = -1;
+
+	/** Idle time (in milliseconds) after which a result is archived. <i>Never if negative or 0.</i> */
+	protected volatile long archiveDelay = -1;
+
+	/** Maximum number of bytes read per second while compressing or moving results. <i>No limit if negative or 0.</i> */
+	protected volatile long maxBytesPerSecond = -1;
+
+	/** Period (in milliseconds) between two scans. */
+	protected volatile long period = DEFAULT_PERIOD;
+
+	/** Timer running the scans. <i>NULL if stopped.</i> */
+	private Timer timer = null;
+
+	/** Indicate whether the current scan must be interrupted. */
+	private volatile boolean stopped = false;
+
+	/** Number of compressed results. */
+	private final AtomicLong nbCompressed = new AtomicLong(0);
+
+	/** Number of archived results. */
+	private final AtomicLong nbArchived = new AtomicLong(0);
+
+	/** Number of bytes saved by compression. */
+	private final AtomicLong nbSavedBytes = new AtomicLong(0);
+
+	/**
+	 * Build a manager of the results of the given UWS service.
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done until {@link #start()} is called.
+	 * </i></p>
+	 *
+	 * @param uws			The UWS service whose the results must be managed.
+	 * @param fileManager	The file manager storing these results.
+	 *
+	 * @throws NullPointerException	If one of the parameters is missing.
+	 */
+	public ResultLifecycleManager(final UWS uws, final LocalUWSFileManager fileManager) throws NullPointerException{
+		if (uws == null)
+			throw new NullPointerException("Missing UWS service! Can not manage its results.");
+		if (fileManager == null)
+			throw new NullPointerException("Missing file manager! Can not manage the results.");
+		this.uws = uws;
+		this.fileManager = fileManager;
+	}
+
+	/**
+	 * Gets the idle time after which a result is compressed.
+	 *
+	 * @return	The compression delay (in milliseconds). <i>Never if negative or 0.</i>
+	 */
+	public final long getCompressionDelay(){
+		return compressionDelay;
+	}
+
+	/**
+	 * Sets the idle time after which a result is compressed.
+	 *
+	 * @param delay	The compression delay (in milliseconds). <i>Never if negative or 0.</i>
+	 */
+	public final void setCompressionDelay(final long delay){
+		compressionDelay = delay;
+	}
+
+	/**
+	 * Gets the idle time after which a result is archived.
+	 *
+	 * @return	The archive delay (in milliseconds). <i>Never if negative or 0.</i>
+	 */
+	public final long getArchiveDelay(){
+		return archiveDelay;
+	}
+
+	/**
+	 * Sets the idle time after which a result is archived.
+	 *
+	 * <p><i>Note:
+	 * 	Results are archived only if the file manager has an archive directory.
+	 * </i></p>
+	 *
+	 * @param delay	The archive delay (in milliseconds). <i>Never if negative or 0.</i>
+	 */
+	public final void setArchiveDelay(final long delay){
+		archiveDelay = delay;
+	}
+
+	/**
+	 * Gets the maximum number of bytes read per second while compressing or
+	 * moving results.
+	 *
+	 * @return	The I/O limit (in bytes/second). <i>No limit if negative or 0.</i>
+	 */
+	public final long getMaxBytesPerSecond(){
+		return maxBytesPerSecond;
+	}
+
+	/**
+	 * Sets the maximum number of bytes read per second while compressing or
+	 * moving results.
+	 *
+	 * @param limit	The I/O limit (in bytes/second). <i>No limit if negative or 0.</i>
+	 */
+	public final void setMaxBytesPerSecond(final long limit){
+		maxBytesPerSecond = limit;
+	}
+
+	/**
+	 * Gets the period between two scans of the results.
+	 *
+	 * @return	The period (in milliseconds).
+	 */
+	public final long getPeriod(){
+		return period;
+	}
+
+	/**
+	 * Sets the period between two scans of the results.
+	 *
+	 * <p><i>Note:
+	 * 	If already started, this manager must be restarted to apply this period.
+	 * </i></p>
+	 *
+	 * @param newPeriod	The new period (in milliseconds). <i>The default period is set if negative or 0.</i>
+	 */
+	public final void setPeriod(final long newPeriod){
+		period = (newPeriod <= 0) ? DEFAULT_PERIOD : newPeriod;
+	}
+
+	/**
+	 * Gets the number of results compressed by this manager.
+	 *
+	 * @return	Number of compressed results.
+	 */
+	public final long getNbCompressed(){
+		return nbCompressed.get();
+	}
+
+	/**
+	 * Gets the number of results archived by this manager.
+	 *
+	 * @return	Number of archived results.
+	 */
+	public final long getNbArchived(){
+		return nbArchived.get();
+	}
+
+	/**
+	 * Gets the number of bytes saved by the compression of results.
+	 *
+	 * @return	Number of saved bytes.
+	 */
+	public final long getNbSavedBytes(){
+		return nbSavedBytes.get();
+	}
+
+	/**
+	 * Tells whether the periodic scans are running.
+	 *
+	 * @return	<i>true</i> if started, <i>false</i> otherwise.
+	 */
+	public final synchronized boolean isRunning(){
+		return timer != null;
+	}
+
+	/**
+	 * Start scanning periodically the results, in a low-priority daemon thread.
+	 *
+	 * <p><i>Note:
+	 * 	Nothing is done if already started.
+	 * </i></p>
+	 */
+	public synchronized void start(){
+		if (timer != null)
+			return;
+		stopped = false;
+		timer = new Timer("UWS-ResultLifecycle", true);
+		timer.schedule(new TimerTask(){
+			@Override
+			public void run(){
+				Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+				runOnce();
+			}
+		}, period, period);
+	}
+
+	/**
+	 * Stop the periodic scans. The current scan, if any, is interrupted after
+	 * the result being processed.
+	 *
+	 * <p><i>Note:
+	 * 	Once stopped, {@link #runOnce()} does nothing until {@link #start()} is
+	 * 	called again.
+	 * </i></p>
+	 */
+	public synchronized void stop(){
+		stopped = true;
+		if (timer != null){
+			timer.cancel();
+			timer = null;
+		}
+	}
+
+	/**
+	 * Scan once all the results of the finished jobs and move the idle ones to
+	 * the appropriate tier.
+	 *
+	 * <p><i>Note:
+	 * 	Errors are logged and do not stop the scan.
+	 * </i></p>
+	 */
+	public void runOnce(){
+		for(JobList jl : uws){
+			Iterator<UWSJob> itJobs = jl.iterator();
+			while(itJobs.hasNext()){
+				UWSJob job = itJobs.next();
+				if (!job.isFinished())
+					continue;
+				Iterator<Result> itResults = job.getResults();
+				while(itResults.hasNext()){
+					if (stopped)
+						return;
+					Result result = itResults.next();
+					if (result.isRedirectionRequired())
+						continue;
+					try{
+						process(result, job);
+					}catch(IOException ioe){
+						if (uws.getLogger() != null)
+							uws.getLogger().logUWS(LogLevel.WARNING, job, "RESULT_LIFECYCLE", "Can not move the result \"" + result.getId() + "\" of the job \"" + job.getJobId() + "\" to its next storage tier!", ioe);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move, if needed, the given result to its next storage tier.
+	 *
+	 * @param result	The result to process.
+	 * @param job		The job owning this result.
+	 *
+	 * @return	<i>true</i> if the result has been compressed or archived,
+	 *        	<i>false</i> if nothing has been done.
+	 *
+	 * @throws IOException	If the result can not be compressed or moved.
+	 */
+	protected boolean process(final Result result, final UWSJob job) throws IOException{
+		File file = fileManager.findResultFile(result, job);
+		if (file == null)
+			return false;
+
+		File[] tiers = fileManager.getResultFiles(result, job);
+		boolean archived = (tiers.length > 2 && (file.equals(tiers[2]) || file.equals(tiers[3])));
+		boolean compressed = fileManager.isCompressed(file);
+		long idleTime = getIdleTime(file);
+
+		boolean compress = !compressed && compressionDelay > 0 && idleTime >= compressionDelay && isCompressible(result);
+		boolean archive = !archived && tiers.length > 2 && archiveDelay > 0 && idleTime >= archiveDelay;
+
+		if (!compress && !archive)
+			return false;
+
+		// Remember the original size of the result:
+		if (!compressed && result.getSize() < 0)
+			result.setSize(file.length());
+
+		File target = tiers[(archive || archived ? 2 : 0) + (compress || compressed ? 1 : 0)];
+		if (compress || !file.renameTo(target)){
+			transfer(file, target, compress);
+			if (!file.delete()){
+				target.delete();
+				return false;
+			}
+		}
+
+		if (compress){
+			nbCompressed.incrementAndGet();
+			nbSavedBytes.addAndGet(result.getSize() - target.length());
+		}
+		if (archive)
+			nbArchived.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Copy, with throttling and optionally compression, the given file into
+	 * the given target.
+	 *
+	 * <p>
+	 * 	The content is written into a temporary file renamed at the end, so
+	 * 	that the target is never visible partially written. The dates of the
+	 * 	source file are kept, so that the idle time of the result continues to
+	 * 	increase.
+	 * </p>
+	 *
+	 * @param source	The file to copy.
+	 * @param target	The file to create.
+	 * @param compress	<i>true</i> to gzip the content,
+	 *                	<i>false</i> to copy it as it is.
+	 *
+	 * @throws IOException	If the copy fails or the source has been deleted meanwhile.
+	 */
+	protected void transfer(final File source, final File target, final boolean compress) throws IOException{
+		BasicFileAttributes attributes = Files.readAttributes(source.toPath(), BasicFileAttributes.class);
+
+		target.getParentFile().mkdirs();
+		File tmpTarget = new File(target.getPath() + ".tmp");
+		InputStream input = new FileInputStream(source);
+		try{
+			OutputStream output = new FileOutputStream(tmpTarget);
+			if (compress)
+				output = new GZIPOutputStream(output, BUFFER_SIZE);
+			try{
+				copy(input, output);
+			}finally{
+				output.close();
+			}
+		}catch(IOException ioe){
+			tmpTarget.delete();
+			throw ioe;
+		}finally{
+			input.close();
+		}
+
+		Files.getFileAttributeView(tmpTarget.toPath(), BasicFileAttributeView.class).setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), null);
+		if (!tmpTarget.renameTo(target)){
+			tmpTarget.delete();
+			throw new IOException("Impossible to rename \"" + tmpTarget.getPath() + "\" into \"" + target.getPath() + "\"!");
+		}
+
+		// The result may have been deleted during the copy:
+		if (!source.exists()){
+			target.delete();
+			throw new IOException("The result file \"" + source.getPath() + "\" has been deleted during its copy!");
+		}
+	}
+
+	/**
+	 * Copy the given input into the given output, without exceeding
+	 * {@link #getMaxBytesPerSecond()}.
+	 *
+	 * @param input		The stream to read.
+	 * @param output	The stream to write.
+	 *
+	 * @throws IOException	If the copy fails or is interrupted.
+	 */
+	protected void copy(final InputStream input, final OutputStream output) throws IOException{
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long start = System.currentTimeMillis(), nbBytes = 0;
+		int len;
+		while((len = input.read(buffer)) > 0){
+			output.write(buffer, 0, len);
+			nbBytes += len;
+
+			// Sleep if the copy goes faster than allowed:
+			long limit = maxBytesPerSecond;
+			if (limit > 0){
+				long wait = (nbBytes * 1000 / limit) - (System.currentTimeMillis() - start);
+				if (wait > 0){
+					try{
+						Thread.sleep(wait);
+					}catch(InterruptedException ie){
+						Thread.currentThread().interrupt();
+						throw new IOException("Copy interrupted!");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the time elapsed since the last modification or access of the given
+	 * file.
+	 *
+	 * @param file	A result file.
+	 *
+	 * @return	The idle time (in milliseconds).
+	 *
+	 * @throws IOException	If the dates of the file can not be read.
+	 */
+	protected long getIdleTime(final File file) throws IOException{
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		long lastUse = Math.max(attributes.lastModifiedTime().toMillis(), attributes.lastAccessTime().toMillis());
+		return System.currentTimeMillis() - lastUse;
+	}
+
+	/**
+	 * Tells whether the given result is worth compressing.
+	 *
+	 * <p>
+	 * 	By default, only results whose the MIME type is a compressed format
+	 * 	(e.g. gzip, zip, PNG, JPEG) or whose the name already has the suffix
+	 * 	{@value LocalUWSFileManager#COMPRESSED_SUFFIX} are not compressed.
+	 * </p>
+	 *
+	 * @param result	The result to test.
+	 *
+	 * @return	<i>true</i> if the result should be compressed,
+	 *        	<i>false</i> otherwise.
+	 */
+	public boolean isCompressible(final Result result){
+		String mime = (result.getMimeType() == null) ? "" : result.getMimeType().toLowerCase();
+		if (mime.contains("gzip") || mime.contains("zip") || mime.contains("compress") || mime.contains("x-xz") || mime.startsWith("image/png") || mime.startsWith("image/jpeg") || mime.startsWith("image/gif") || mime.startsWith("video/") || mime.startsWith("audio/"))
+			return false;
+		else
+			return result.getId() == null || !result.getId().endsWith(LocalUWSFileManager.COMPRESSED_SUFFIX);
+	}
+
+}
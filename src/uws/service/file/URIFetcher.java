@@ -0,0 +1,825 @@
+package uws.service.file;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Open the resources designated by a URI, typically the tables to upload given by URL.</p>
+ *
+ * <p>The following schemes are supported:</p>
+ * <ul>
+ * 	<li><b>http</b> and <b>https</b>: the resource is downloaded with the connect and read
+ * 		timeouts of this fetcher, and the download is tried again (see {@link #getNbRetries()})
+ * 		if the connection fails, times out or if the server answers with a 5xx status.
+ * 		If a cache directory is set, the downloaded resource is kept on disk and, when requested
+ * 		again, revalidated with its ETag and/or Last-Modified date: if unchanged, the cached copy
+ * 		is returned. If the server accepts byte ranges and the resource is large enough
+ * 		(see {@link #getParallelThreshold()}), it is downloaded by several ranges in parallel.</li>
+ * 	<li><b>ftp</b>: the resource is read directly, with the timeouts of this fetcher.</li>
+ * 	<li><b>file</b>: the file is read only if it is inside one of the allowed directories
+ * 		(see {@link #addAllowedDirectory(File)}). By default, no directory is allowed.</li>
+ * </ul>
+ *
+ * <p>
+ * 	The cache is bounded in size: when a new resource makes it exceed its maximum size,
+ * 	the least recently used resources are deleted. Each cached resource is stored in a file whose
+ * 	name is the SHA-256 of its URI (<code>.data</code>), next to the validators returned by the server
+ * 	(<code>.meta</code>).
+ * </p>
+ *
+ * <p><i>Note:
+ * 	With no cache and no parallel download, an HTTP resource is streamed while downloaded.
+ * 	Otherwise, it is fully downloaded on disk before being read. Only resources the server
+ * 	gave validators for are kept in the cache.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class URIFetcher {
+
+	/** Default timeout (in milliseconds) for the connection to a remote server. */
+	public final static int DEFAULT_CONNECT_TIMEOUT = 30000;
+
+	/** Default timeout (in milliseconds) while waiting for data from a remote server. */
+	public final static int DEFAULT_READ_TIMEOUT = 300000;
+
+	/** Default number of times a failed download is tried again. */
+	public final static int DEFAULT_NB_RETRIES = 2;
+
+	/** Default minimum size (in bytes) of a resource to download it by parallel ranges. */
+	public final static long DEFAULT_PARALLEL_THRESHOLD = 16 * 1024 * 1024;
+
+	/** Extension of the cached resources. */
+	protected final static String DATA_EXT = ".data";
+
+	/** Extension of the validators of the cached resources. */
+	protected final static String META_EXT = ".meta";
+
+	/** Timeout (in milliseconds) for the connection to a remote server. <i>0 means no timeout.</i> */
+	protected int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	/** Timeout (in milliseconds) while waiting for data from a remote server. <i>0 means no timeout.</i> */
+	protected int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/** Number of times a failed download is tried again. */
+	protected int nbRetries = DEFAULT_NB_RETRIES;
+
+	/** Maximum number of ranges downloaded in parallel. <i>1 or less disables the parallel download.</i> */
+	protected int parallelism = 1;
+
+	/** Minimum size (in bytes) of a resource to download it by parallel ranges. */
+	protected long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/** Directory in which downloaded resources are cached. <i>NULL if no cache.</i> */
+	protected File cacheDirectory = null;
+
+	/** Maximum size (in bytes) of the cache. */
+	protected long cacheMaxSize = 0;
+
+	/** Maximum size (in bytes) of a resource downloaded on disk (in the cache or by parallel ranges).
+	 * <i>A negative value means no limit.</i> */
+	protected long maxDownloadSize = -1;
+
+	/** Directory in which temporary downloads are written. <i>NULL for the default temporary directory.</i> */
+	protected File tmpDirectory = null;
+
+	/** Canonical directories whose files can be read with a <code>file</code> URI. */
+	protected final List<File> allowedDirectories = new ArrayList<File>();
+
+	/**
+	 * Get the timeout for the connection to a remote server.
+	 *
+	 * @return	The connect timeout (in milliseconds). <i>0 means no timeout.</i>
+	 */
+	public final int getConnectTimeout(){
+		return connectTimeout;
+	}
+
+	/**
+	 * Set the timeout for the connection to a remote server.
+	 *
+	 * @param timeout	The connect timeout (in milliseconds). <i>0 or less means no timeout.</i>
+	 */
+	public final void setConnectTimeout(final int timeout){
+		connectTimeout = Math.max(0, timeout);
+	}
+
+	/**
+	 * Get the timeout while waiting for data from a remote server.
+	 *
+	 * @return	The read timeout (in milliseconds). <i>0 means no timeout.</i>
+	 */
+	public final int getReadTimeout(){
+		return readTimeout;
+	}
+
+	/**
+	 * Set the timeout while waiting for data from a remote server.
+	 *
+	 * @param timeout	The read timeout (in milliseconds). <i>0 or less means no timeout.</i>
+	 */
+	public final void setReadTimeout(final int timeout){
+		readTimeout = Math.max(0, timeout);
+	}
+
+	/**
+	 * Get the number of times a failed download is tried again.
+	 *
+	 * @return	The number of retries.
+	 */
+	public final int getNbRetries(){
+		return nbRetries;
+	}
+
+	/**
+	 * Set the number of times a failed download is tried again.
+	 *
+	 * @param nbRetries	The number of retries. <i>0 or less means no retry.</i>
+	 */
+	public final void setNbRetries(final int nbRetries){
+		this.nbRetries = Math.max(0, nbRetries);
+	}
+
+	/**
+	 * Get the maximum number of ranges downloaded in parallel.
+	 *
+	 * @return	The number of parallel ranges. <i>1 if the parallel download is disabled.</i>
+	 */
+	public final int getParallelism(){
+		return parallelism;
+	}
+
+	/**
+	 * Set the maximum number of ranges downloaded in parallel.
+	 *
+	 * @param parallelism	The number of parallel ranges. <i>1 or less disables the parallel download.</i>
+	 */
+	public final void setParallelism(final int parallelism){
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Get the minimum size of a resource to download it by parallel ranges.
+	 *
+	 * @return	The minimum size (in bytes).
+	 */
+	public final long getParallelThreshold(){
+		return parallelThreshold;
+	}
+
+	/**
+	 * Set the minimum size of a resource to download it by parallel ranges.
+	 *
+	 * @param threshold	The minimum size (in bytes).
+	 */
+	public final void setParallelThreshold(final long threshold){
+		parallelThreshold = Math.max(0, threshold);
+	}
+
+	/**
+	 * Get the maximum size of a resource downloaded on disk (in the cache or by parallel ranges).
+	 *
+	 * @return	The maximum size (in bytes). <i>A negative value means no limit.</i>
+	 */
+	public final long getMaxDownloadSize(){
+		return maxDownloadSize;
+	}
+
+	/**
+	 * Set the maximum size of a resource downloaded on disk (in the cache or by parallel ranges).
+	 *
+	 * <p>
+	 * 	A resource bigger than this size, or whose the size is not announced by the server,
+	 * 	is never stored on disk: it is streamed, so that the size limits of the reader
+	 * 	(e.g. of the upload) apply while it is downloaded.
+	 * </p>
+	 *
+	 * @param maxSize	The maximum size (in bytes). <i>A negative value means no limit.</i>
+	 */
+	public final void setMaxDownloadSize(final long maxSize){
+		maxDownloadSize = (maxSize < 0) ? -1 : maxSize;
+	}
+
+	/**
+	 * Get the directory in which downloaded resources are cached.
+	 *
+	 * @return	The cache directory, or NULL if there is no cache.
+	 */
+	public final File getCacheDirectory(){
+		return cacheDirectory;
+	}
+
+	/**
+	 * Get the maximum size of the cache.
+	 *
+	 * @return	The maximum size (in bytes) of the cache.
+	 */
+	public final long getCacheMaxSize(){
+		return cacheMaxSize;
+	}
+
+	/**
+	 * Set the cache of the downloaded resources.
+	 *
+	 * @param directory	Directory in which downloaded resources must be cached. It is created if it does not exist.
+	 *                 	<i>NULL to disable the cache.</i>
+	 * @param maxSize	Maximum size (in bytes) of the cache. <i>0 or less disables the cache.</i>
+	 *
+	 * @return	<i>true</i> if the cache has been set,
+	 *        	<i>false</i> if the directory can not be created, read or written.
+	 */
+	public boolean setCache(final File directory, final long maxSize){
+		if (directory == null || maxSize <= 0){
+			cacheDirectory = null;
+			cacheMaxSize = 0;
+			return true;
+		}
+		directory.mkdirs();
+		if (!directory.isDirectory() || !directory.canRead() || !directory.canWrite())
+			return false;
+		cacheDirectory = directory;
+		cacheMaxSize = maxSize;
+		return true;
+	}
+
+	/**
+	 * Set the directory in which resources which can not be cached are downloaded
+	 * before being read (e.g. when downloaded by parallel ranges).
+	 *
+	 * @param directory	The temporary directory. <i>NULL for the default temporary directory.</i>
+	 */
+	public final void setTmpDirectory(final File directory){
+		tmpDirectory = directory;
+	}
+
+	/**
+	 * Get the directories whose files can be read with a <code>file</code> URI.
+	 *
+	 * @return	The allowed directories (canonical paths).
+	 */
+	public final List<File> getAllowedDirectories(){
+		return Collections.unmodifiableList(allowedDirectories);
+	}
+
+	/**
+	 * Allow the files of the given directory (and of all its sub-directories)
+	 * to be read with a <code>file</code> URI.
+	 *
+	 * @param directory	The directory to allow.
+	 *
+	 * @return	<i>true</i> if the directory has been allowed,
+	 *        	<i>false</i> if it is not an existing directory.
+	 *
+	 * @throws IOException	If the canonical path of the directory can not be resolved.
+	 */
+	public boolean addAllowedDirectory(final File directory) throws IOException{
+		if (directory == null || !directory.isDirectory())
+			return false;
+		File canonical = directory.getCanonicalFile();
+		if (!allowedDirectories.contains(canonical))
+			allowedDirectories.add(canonical);
+		return true;
+	}
+
+	/**
+	 * Open a stream toward the resource designated by the given URI.
+	 *
+	 * @param uri	URI of the resource to read.
+	 *
+	 * @return	A stream toward the resource.
+	 *
+	 * @throws UnsupportedURIProtocolException	If the URI scheme is not supported.
+	 * @throws IOException						If the resource is not allowed or can not be read.
+	 */
+	public InputStream open(final URI uri) throws UnsupportedURIProtocolException, IOException{
+		String scheme = uri.getScheme();
+		if (scheme == null)
+			throw new UnsupportedURIProtocolException(uri);
+		else if (scheme.equalsIgnoreCase("file"))
+			return openFile(uri);
+		else if (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))
+			return openHTTP(uri);
+		else if (scheme.equalsIgnoreCase("ftp"))
+			return openFTP(uri);
+		else
+			throw new UnsupportedURIProtocolException(uri);
+	}
+
+	/**
+	 * Open a local file, if inside one of the allowed directories.
+	 *
+	 * @param uri	A <code>file</code> URI.
+	 *
+	 * @return	A stream toward the file.
+	 *
+	 * @throws UnsupportedURIProtocolException	If no directory is allowed.
+	 * @throws IOException						If the file is not in an allowed directory or can not be read.
+	 */
+	protected InputStream openFile(final URI uri) throws UnsupportedURIProtocolException, IOException{
+		if (allowedDirectories.isEmpty())
+			throw new UnsupportedURIProtocolException(uri);
+		File file;
+		try{
+			file = new File(uri).getCanonicalFile();
+		}catch(IllegalArgumentException iae){
+			throw new IOException("Incorrect file URI: \"" + uri + "\"! Cause: " + iae.getMessage());
+		}
+		for(File dir : allowedDirectories){
+			if (file.toPath().startsWith(dir.toPath()))
+				return new FileInputStream(file);
+		}
+		throw new IOException("Forbidden access to \"" + uri + "\": this file is not in a directory allowed for uploads!");
+	}
+
+	/**
+	 * Open an FTP resource, with the timeouts of this fetcher.
+	 *
+	 * @param uri	An <code>ftp</code> URI.
+	 *
+	 * @return	A stream toward the resource.
+	 *
+	 * @throws IOException	If the resource can not be read.
+	 */
+	protected InputStream openFTP(final URI uri) throws IOException{
+		for(int attempt = 0;; attempt++){
+			try{
+				URLConnection conn = uri.toURL().openConnection();
+				conn.setConnectTimeout(connectTimeout);
+				conn.setReadTimeout(readTimeout);
+				return conn.getInputStream();
+			}catch(IOException ioe){
+				waitBeforeRetry(ioe, attempt);
+			}
+		}
+	}
+
+	/**
+	 * Open an HTTP(S) resource, using the cache and the parallel download when enabled.
+	 *
+	 * @param uri	An <code>http</code> or <code>https</code> URI.
+	 *
+	 * @return	A stream toward the resource.
+	 *
+	 * @throws IOException	If the resource can not be downloaded.
+	 */
+	protected InputStream openHTTP(final URI uri) throws IOException{
+		for(int attempt = 0;; attempt++){
+			try{
+				return fetchHTTP(uri);
+			}catch(IOException ioe){
+				waitBeforeRetry(ioe, attempt);
+			}
+		}
+	}
+
+	/**
+	 * Do one attempt of download of an HTTP(S) resource.
+	 *
+	 * @param uri	An <code>http</code> or <code>https</code> URI.
+	 *
+	 * @return	A stream toward the resource.
+	 *
+	 * @throws IOException	If the resource can not be downloaded.
+	 */
+	protected InputStream fetchHTTP(final URI uri) throws IOException{
+		// Get the cached copy, if any:
+		File data = null, meta = null;
+		Properties validators = null;
+		if (cacheDirectory != null){
+			String name = hash(uri.toString());
+			data = new File(cacheDirectory, name + DATA_EXT);
+			meta = new File(cacheDirectory, name + META_EXT);
+			validators = readValidators(uri, data, meta);
+		}
+
+		// Send the request, conditional if a cached copy exists:
+		HttpURLConnection conn = connect(uri);
+		if (validators != null){
+			if (validators.getProperty("ETag") != null)
+				conn.setRequestProperty("If-None-Match", validators.getProperty("ETag"));
+			if (validators.getProperty("Last-Modified") != null)
+				conn.setRequestProperty("If-Modified-Since", validators.getProperty("Last-Modified"));
+		}
+		int code = conn.getResponseCode();
+
+		// Unchanged resource => the cached copy is returned:
+		if (code == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null){
+			conn.disconnect();
+			data.setLastModified(System.currentTimeMillis());
+			try{
+				return new FileInputStream(data);
+			}catch(IOException ioe){
+				// the cached copy has been evicted in between => download it again:
+				meta.delete();
+				return fetchHTTP(uri);
+			}
+		}else if (code != HttpURLConnection.HTTP_OK){
+			conn.disconnect();
+			throw new HTTPStatusException(uri, code);
+		}
+
+		String etag = conn.getHeaderField("ETag"), lastModified = conn.getHeaderField("Last-Modified");
+		long length = conn.getContentLengthLong();
+		/* Only a resource whose size is announced and not too big can be stored on disk
+		 * (otherwise, it is streamed so that the limits of the reader apply): */
+		long maxStored = (maxDownloadSize < 0) ? Long.MAX_VALUE : maxDownloadSize;
+		boolean storable = (length >= 0 && length <= maxStored);
+		boolean parallel = (storable && parallelism > 1 && length > 0 && length >= parallelThreshold && "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges")));
+		boolean cacheable = (storable && cacheDirectory != null && (etag != null || lastModified != null) && length <= cacheMaxSize);
+
+		// Nothing to store => stream the resource:
+		if (!parallel && !cacheable)
+			return conn.getInputStream();
+
+		// Otherwise, download it on disk:
+		File target = File.createTempFile("download_", ".tmp", cacheable ? cacheDirectory : tmpDirectory);
+		try{
+			if (parallel){
+				conn.disconnect();
+				downloadRanges(uri, target, length, etag);
+			}else{
+				InputStream input = conn.getInputStream();
+				try{
+					copy(input, target, length);
+				}finally{
+					input.close();
+				}
+			}
+		}catch(IOException ioe){
+			target.delete();
+			throw ioe;
+		}
+
+		// Keep it in the cache, if possible:
+		if (cacheable){
+			try{
+				Files.move(target.toPath(), data.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				writeValidators(uri, meta, etag, lastModified);
+				evict(data);
+				return new FileInputStream(data);
+			}catch(IOException ioe){
+				// the cache can not be updated => the download is still readable
+				if (!target.exists())
+					throw ioe;
+			}
+		}
+
+		// ...or delete it once read:
+		final File tmpFile = target;
+		return new FilterInputStream(new FileInputStream(tmpFile)){
+			@Override
+			public void close() throws IOException{
+				try{
+					super.close();
+				}finally{
+					tmpFile.delete();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Open a connection toward an HTTP(S) resource, with the timeouts of this fetcher.
+	 *
+	 * @param uri	An <code>http</code> or <code>https</code> URI.
+	 *
+	 * @return	The connection (not yet connected).
+	 *
+	 * @throws IOException	If the URI is not an HTTP URL.
+	 */
+	protected HttpURLConnection connect(final URI uri) throws IOException{
+		URLConnection conn = uri.toURL().openConnection();
+		if (!(conn instanceof HttpURLConnection))
+			throw new IOException("Not an HTTP URL: \"" + uri + "\"!");
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+		conn.setUseCaches(false);
+		return (HttpURLConnection)conn;
+	}
+
+	/**
+	 * Download an HTTP(S) resource by several ranges in parallel.
+	 *
+	 * @param uri		An <code>http</code> or <code>https</code> URI.
+	 * @param target	File in which the resource must be written.
+	 * @param length	Size (in bytes) of the resource.
+	 * @param etag		ETag of the resource, used to ensure all ranges come from the same version. <i>MAY be NULL</i>
+	 *
+	 * @throws IOException	If one range can not be downloaded.
+	 */
+	protected void downloadRanges(final URI uri, final File target, final long length, final String etag) throws IOException{
+		if (length <= 0 || (maxDownloadSize >= 0 && length > maxDownloadSize))
+			throw new IOException("Can not download \"" + uri + "\" by ranges: its size (" + length + " bytes) is unknown or exceeds the limit of " + maxDownloadSize + " bytes!");
+		final int nbRanges = (int)Math.min(parallelism, length);
+		final long rangeSize = (length + nbRanges - 1) / nbRanges;
+		RandomAccessFile file = new RandomAccessFile(target, "rw");
+		ExecutorService executor = Executors.newFixedThreadPool(nbRanges);
+		try{
+			file.setLength(length);
+			final FileChannel channel = file.getChannel();
+			List<Future<Void>> downloads = new ArrayList<Future<Void>>(nbRanges);
+			for(long start = 0; start < length; start += rangeSize){
+				final long first = start, last = Math.min(length, start + rangeSize) - 1;
+				downloads.add(executor.submit(new Callable<Void>(){
+					@Override
+					public Void call() throws IOException{
+						downloadRange(uri, channel, first, last, etag);
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> download : downloads){
+				try{
+					download.get();
+				}catch(InterruptedException ie){
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted download of \"" + uri + "\"!");
+				}catch(ExecutionException ee){
+					if (ee.getCause() instanceof IOException)
+						throw (IOException)ee.getCause();
+					throw new IOException("Error while downloading \"" + uri + "\": " + ee.getCause().getMessage(), ee.getCause());
+				}
+			}
+		}finally{
+			executor.shutdownNow();
+			file.close();
+		}
+	}
+
+	/**
+	 * Download one range of an HTTP(S) resource, trying again if failing.
+	 *
+	 * @param uri		An <code>http</code> or <code>https</code> URI.
+	 * @param channel	File in which the range must be written.
+	 * @param first		Index of the first byte of the range.
+	 * @param last		Index of the last byte of the range.
+	 * @param etag		ETag of the resource. <i>MAY be NULL</i>
+	 *
+	 * @throws IOException	If the range can not be downloaded.
+	 */
+	protected void downloadRange(final URI uri, final FileChannel channel, final long first, final long last, final String etag) throws IOException{
+		long position = first;
+		for(int attempt = 0;; attempt++){
+			try{
+				HttpURLConnection conn = connect(uri);
+				conn.setRequestProperty("Range", "bytes=" + position + "-" + last);
+				if (etag != null)
+					conn.setRequestProperty("If-Range", etag);
+				int code = conn.getResponseCode();
+				if (code != HttpURLConnection.HTTP_PARTIAL){
+					conn.disconnect();
+					throw new HTTPStatusException(uri, code);
+				}
+				InputStream input = conn.getInputStream();
+				try{
+					byte[] buffer = new byte[65536];
+					int nbRead;
+					while(position <= last && (nbRead = input.read(buffer, 0, (int)Math.min(buffer.length, last - position + 1))) > 0){
+						ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, nbRead);
+						while(bytes.hasRemaining())
+							position += channel.write(bytes, position);
+					}
+				}finally{
+					input.close();
+				}
+				if (position <= last)
+					throw new IOException("Incomplete range of \"" + uri + "\": " + (last - position + 1) + " missing bytes!");
+				return;
+			}catch(IOException ioe){
+				waitBeforeRetry(ioe, attempt);
+			}
+		}
+	}
+
+	/**
+	 * Throw the given error if the download can not be tried again, or wait before a new attempt.
+	 *
+	 * @param error		The error of the last attempt.
+	 * @param attempt	Index of the last attempt (0 for the first one).
+	 *
+	 * @throws IOException	The given error, if no more attempt is possible or if the error is not temporary.
+	 */
+	protected void waitBeforeRetry(final IOException error, final int attempt) throws IOException{
+		if (attempt >= nbRetries || (error instanceof HTTPStatusException && ((HTTPStatusException)error).status < 500))
+			throw error;
+		try{
+			Thread.sleep(250L << Math.min(attempt, 5));
+		}catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+			throw error;
+		}
+	}
+
+	/**
+	 * Get the validators of the cached copy of the given resource.
+	 *
+	 * @param uri	URI of the resource.
+	 * @param data	Cached copy of the resource.
+	 * @param meta	File of the validators.
+	 *
+	 * @return	The validators (<code>ETag</code> and/or <code>Last-Modified</code>),
+	 *        	or NULL if there is no (valid) cached copy.
+	 */
+	protected Properties readValidators(final URI uri, final File data, final File meta){
+		if (!data.isFile() || !meta.isFile())
+			return null;
+		Properties validators = new Properties();
+		try{
+			InputStream input = new FileInputStream(meta);
+			try{
+				validators.load(input);
+			}finally{
+				input.close();
+			}
+		}catch(IOException ioe){
+			return null;
+		}
+		// ensure this is the same URI (very unlikely hash collision):
+		return uri.toString().equals(validators.getProperty("URI")) ? validators : null;
+	}
+
+	/**
+	 * Write the validators of a cached resource.
+	 *
+	 * @param uri			URI of the resource.
+	 * @param meta			File of the validators.
+	 * @param etag			ETag of the resource. <i>MAY be NULL</i>
+	 * @param lastModified	Last-Modified date of the resource. <i>MAY be NULL</i>
+	 *
+	 * @throws IOException	If the file can not be written.
+	 */
+	protected void writeValidators(final URI uri, final File meta, final String etag, final String lastModified) throws IOException{
+		Properties validators = new Properties();
+		validators.setProperty("URI", uri.toString());
+		if (etag != null)
+			validators.setProperty("ETag", etag);
+		if (lastModified != null)
+			validators.setProperty("Last-Modified", lastModified);
+		OutputStream output = new FileOutputStream(meta);
+		try{
+			validators.store(output, null);
+		}finally{
+			output.close();
+		}
+	}
+
+	/**
+	 * Delete the least recently used cached resources until the cache size is
+	 * below its maximum.
+	 *
+	 * @param keep	Cached resource which must not be deleted.
+	 */
+	protected synchronized void evict(final File keep){
+		File[] files = cacheDirectory.listFiles(new FileFilter(){
+			@Override
+			public boolean accept(final File f){
+				return f.isFile() && f.getName().endsWith(DATA_EXT);
+			}
+		});
+		if (files == null)
+			return;
+		long size = 0;
+		for(File f : files)
+			size += f.length();
+		if (size <= cacheMaxSize)
+			return;
+		Arrays.sort(files, new Comparator<File>(){
+			@Override
+			public int compare(final File f1, final File f2){
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for(File f : files){
+			if (size <= cacheMaxSize)
+				break;
+			if (f.equals(keep))
+				continue;
+			long fileSize = f.length();
+			String name = f.getName();
+			new File(cacheDirectory, name.substring(0, name.length() - DATA_EXT.length()) + META_EXT).delete();
+			if (f.delete())
+				size -= fileSize;
+		}
+	}
+
+	/**
+	 * Write the whole given stream in the given file.
+	 *
+	 * @param input		Stream to copy.
+	 * @param target	File to write.
+	 * @param maxBytes	Maximum number of bytes to write.
+	 *
+	 * @throws IOException	If the stream can not be read or the file written,
+	 *                    	or if the stream has more bytes than the given maximum.
+	 */
+	protected static void copy(final InputStream input, final File target, final long maxBytes) throws IOException{
+		OutputStream output = new FileOutputStream(target);
+		try{
+			byte[] buffer = new byte[65536];
+			long nbWritten = 0;
+			int nbRead;
+			while((nbRead = input.read(buffer)) > 0){
+				nbWritten += nbRead;
+				if (nbWritten > maxBytes)
+					throw new IOException("Unexpected resource size: more than the " + maxBytes + " announced bytes!");
+				output.write(buffer, 0, nbRead);
+			}
+		}finally{
+			output.close();
+		}
+	}
+
+	/**
+	 * Get the SHA-256 of the given string, in hexadecimal.
+	 *
+	 * @param str	String to hash.
+	 *
+	 * @return	Its hash.
+	 */
+	protected static String hash(final String str){
+		try{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for(byte b : digest)
+				hex.append(String.format("%02x", b & 0xff));
+			return hex.toString();
+		}catch(NoSuchAlgorithmException nsae){
+			throw new IllegalStateException("SHA-256 is not available in this JVM!", nsae);
+		}
+	}
+
+	/**
+	 * Error sent when an HTTP server answers with an unexpected status.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	protected static class HTTPStatusException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		/** The HTTP status code. */
+		public final int status;
+
+		/**
+		 * Build an {@link HTTPStatusException}.
+		 *
+		 * @param uri		The requested URI.
+		 * @param status	The HTTP status code.
+		 */
+		public HTTPStatusException(final URI uri, final int status){
+			super("Unexpected HTTP status " + status + " while fetching \"" + uri + "\"!");
+			this.status = status;
+		}
+	}
+
+}
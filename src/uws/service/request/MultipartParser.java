@@ -16,14 +16,16 @@ package uws.service.request;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2014-2018 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
+ * Copyright 2014-2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS),
  *                       Astronomisches Rechen Institut (ARI)
  */
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +33,8 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
@@ -83,8 +87,20 @@ import uws.service.file.UWSFileManager;
  * 	function {@link #consumeParameter(String, Object, Map)} of this class.
  * </p>
  *
+ * <h4>Streamed uploads</h4>
+ *
+ * <p>
+ * 	With {@link #parseStreaming(HttpServletRequest)}, the uploaded files are
+ * 	not stored on the server: all parameters preceding the first file are
+ * 	read, and then the files listed by
+ * 	{@link #getStreamedFiles(Map)} are put in the map as
+ * 	{@link StreamedUploadFile}s. Their content is read from the request body
+ * 	only when they are opened. This is possible only if the request is
+ * 	processed before the response is sent (e.g. not for an asynchronous job).
+ * </p>
+ *
  * @author Gr&eacute;gory Mantelet (ARI;CDS)
- * @version 4.4 (09/2018)
+ * @version 4.5 (10/2026)
  * @since 4.1
  */
 public class MultipartParser implements RequestParser {
@@ -322,6 +338,131 @@ public class MultipartParser implements RequestParser {
 		return parameters;
 	}
 
+	/**
+	 * <p>Parse the given multipart request without storing the uploaded files
+	 * on the server.</p>
+	 *
+	 * <p>
+	 * 	All parameters are read until the first file. Then, if
+	 * 	{@link #getStreamedFiles(Map)} returns the names of the expected files,
+	 * 	a {@link StreamedUploadFile} is created for each of them and the rest
+	 * 	of the request body is read only when one of these files is opened.
+	 * 	Otherwise, the remaining parts are read and the files stored, as with
+	 * 	{@link #parse(HttpServletRequest)}.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	The size limits ({@link #getMaxFileSize()} and
+	 * 	{@link #getMaxRequestSize()}) are checked while the files are read.
+	 * 	In such case, the stream of the file throws an {@link IOException}.
+	 * </i></p>
+	 *
+	 * <p><i><b>Important:</b>
+	 * 	Once a file has been reached, all other parts of the request body must
+	 * 	be files. A parameter arriving after a streamed file makes fail the
+	 * 	opening of the next streamed files or, if it follows the last one,
+	 * 	{@link StreamedUploadFile#checkEnd()} which must be called once all
+	 * 	the streamed files have been read.
+	 * </i></p>
+	 *
+	 * @param request	The multipart request to parse.
+	 *
+	 * @return	All read parameters.
+	 *
+	 * @throws UWSException	If the request can not be parsed.
+	 *
+	 * @since 4.5
+	 */
+	public final Map<String, Object> parseStreaming(final HttpServletRequest request) throws UWSException{
+		LinkedHashMap<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+		try{
+			FileItemIterator items = fileUpload.getItemIterator(request);
+			while(items.hasNext()){
+				FileItemStream item = items.next();
+				String name = item.getFieldName();
+				if (item.isFormField())
+					consumeParameter(name, Streams.asString(item.openStream()), parameters);
+				else if (!allowUpload)
+					throw new UWSException(UWSException.BAD_REQUEST, "Uploads are not allowed by this service!");
+				else{
+					Collection<String> fileNames = getStreamedFiles(parameters);
+					// stream the expected files:
+					if (fileNames != null && fileNames.size() > 0){
+						StreamedParts parts = new StreamedParts(request, items, item);
+						for(String fileName : fileNames){
+							StreamedUploadFile file = new StreamedUploadFile(fileName, parts, fileManager);
+							parts.files.put(fileName, file);
+							consumeParameter(fileName, file, parameters);
+						}
+						break;
+					}
+					// ...or store this file and the next parts:
+					else{
+						File file = storeFile(request, item);
+						UploadFile lob = new UploadFile(name, FilenameUtils.getName(item.getName()), file.toURI().toString(), fileManager);
+						lob.mimeType = item.getContentType();
+						lob.length = file.length();
+						consumeParameter(name, lob, parameters);
+					}
+				}
+			}
+		}catch(FileUploadException fue){
+			throw new UWSException(UWSException.BAD_REQUEST, fue, "Incorrect HTTP request: " + fue.getMessage() + " (server limits: each file/parameter <= " + (fileUpload.getFileSizeMax() <= 0 ? "unlimited" : fileUpload.getFileSizeMax() + " bytes") + " and the whole request <= " + (fileUpload.getSizeMax() <= 0 ? "unlimited" : fileUpload.getSizeMax()) + " bytes)");
+		}catch(IOException ioe){
+			throw new UWSException(UWSException.BAD_REQUEST, ioe, "Incorrect HTTP request: " + ioe.getMessage());
+		}catch(IllegalArgumentException iae){
+			String confError = iae.getMessage();
+			if (fileManager.getTmpDirectory() == null)
+				confError = "Missing upload directory!";
+			throw new UWSException(UWSException.INTERNAL_SERVER_ERROR, iae, "Internal Error! Incorrect UPLOAD configuration: " + confError);
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * <p>List the files that can be streamed, given all parameters read before
+	 * the first file of the request body.</p>
+	 *
+	 * <p>
+	 * 	By default, nothing is streamed (i.e. NULL is returned).
+	 * </p>
+	 *
+	 * @param params	All parameters read before the first file.
+	 *
+	 * @return	Names of the file parameters to stream,
+	 *        	or NULL if the files must be stored.
+	 *
+	 * @since 4.5
+	 */
+	protected Collection<String> getStreamedFiles(final Map<String, Object> params){
+		return null;
+	}
+
+	/**
+	 * Store the content of the given file part in the temporary directory.
+	 *
+	 * @param request	The parsed request.
+	 * @param item		The file part to store.
+	 *
+	 * @return	The created file.
+	 *
+	 * @throws IOException	If the file part can not be read or stored.
+	 *
+	 * @since 4.5
+	 */
+	protected File storeFile(final HttpServletRequest request, final FileItemStream item) throws IOException{
+		File file = getFileFromParam(request, fileManager.getTmpDirectory().getPath(), FilenameUtils.getName(item.getName()));
+		InputStream stream = item.openStream();
+		try{
+			FileUtils.copyInputStreamToFile(stream, file);
+		}finally{
+			stream.close();
+		}
+		return file;
+	}
+
 	/**
 	 * Return the path of a non-existing file inside the given directory and
 	 * whose the name is built using the given file name and the HTTP request
@@ -397,4 +538,124 @@ public class MultipartParser implements RequestParser {
 		return ServletFileUpload.isMultipartContent(request);
 	}
 
+
+	/**
+	 * <p>Remaining parts of a multipart request body, from which
+	 * {@link StreamedUploadFile}s are read.</p>
+	 *
+	 * <p>
+	 * 	The parts are read in the order of the request body. When a file is
+	 * 	opened, all parts preceding it are skipped, except the other expected
+	 * 	files: these ones are stored in the temporary directory.
+	 * </p>
+	 *
+	 * <p><i>Note:
+	 * 	Opening a file ends the reading of the previously opened one. So, the
+	 * 	streamed files must be read one after another.
+	 * </i></p>
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	public class StreamedParts {
+		/** The request whose the body is read. */
+		private final HttpServletRequest request;
+		/** Iterator over the next parts. */
+		private final FileItemIterator items;
+		/** Part already reached but not yet read. <i>NULL if none.</i> */
+		private FileItemStream pending;
+		/** All expected files. */
+		protected final Map<String, StreamedUploadFile> files = new HashMap<String, StreamedUploadFile>();
+
+		protected StreamedParts(final HttpServletRequest request, final FileItemIterator items, final FileItemStream first){
+			this.request = request;
+			this.items = items;
+			this.pending = first;
+		}
+
+		/**
+		 * Read the request body until the given file and open a stream toward
+		 * its content.
+		 *
+		 * @param file	The file to read.
+		 *
+		 * @return	Stream toward the file content.
+		 *
+		 * @throws IOException	If the file is not in the remaining parts,
+		 *                    	or if a parameter precedes it,
+		 *                    	or if the request body can not be read.
+		 */
+		protected synchronized InputStream open(final StreamedUploadFile file) throws IOException{
+			try{
+				while(true){
+					// Get the next part:
+					FileItemStream item;
+					if (pending != null){
+						item = pending;
+						pending = null;
+					}else if (items.hasNext())
+						item = items.next();
+					else
+						throw new IOException("Missing uploaded file \"" + file.paramName + "\" in the HTTP request!");
+
+					// A parameter can not be processed anymore:
+					String name = item.getFieldName();
+					if (item.isFormField())
+						throw new IOException("Unexpected parameter \"" + name + "\" after the uploaded files! When uploads are streamed, all parameters must precede the files.");
+
+					// Open the asked file:
+					StreamedUploadFile expected = files.get(name);
+					if (expected == file){
+						file.mimeType = item.getContentType();
+						return item.openStream();
+					}
+					// ...store another expected file not yet read:
+					else if (expected != null && !expected.opened && expected.spoolFile == null)
+						expected.setSpoolFile(storeFile(request, item));
+					// ...and skip all other files.
+				}
+			}catch(FileUploadException fue){
+				throw new IOException("Incorrect HTTP request: " + fue.getMessage(), fue);
+			}
+		}
+
+		/**
+		 * <p>Read all the parts remaining after the last read file.</p>
+		 *
+		 * <p>
+		 * 	Expected files not yet read are stored in the temporary directory
+		 * 	and all other files are skipped. But since a parameter can not be
+		 * 	taken into account anymore, an error is raised if one is found.
+		 * 	This function must be called once all expected files have been
+		 * 	read, in order to not silently ignore such parameter.
+		 * </p>
+		 *
+		 * @throws IOException	If a parameter follows the uploaded files,
+		 *                    	or if the request body can not be read.
+		 */
+		protected synchronized void end() throws IOException{
+			try{
+				while(pending != null || items.hasNext()){
+					FileItemStream item;
+					if (pending != null){
+						item = pending;
+						pending = null;
+					}else
+						item = items.next();
+
+					String name = item.getFieldName();
+					if (item.isFormField())
+						throw new IOException("Unexpected parameter \"" + name + "\" after the uploaded files! When uploads are streamed, all parameters must precede the files.");
+
+					StreamedUploadFile expected = files.get(name);
+					if (expected != null && !expected.opened && expected.spoolFile == null)
+						expected.setSpoolFile(storeFile(request, item));
+				}
+			}catch(FileUploadException fue){
+				throw new IOException("Incorrect HTTP request: " + fue.getMessage(), fue);
+			}
+		}
+	}
+
 }
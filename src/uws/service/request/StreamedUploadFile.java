@@ -0,0 +1,165 @@
+package uws.service.request;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import uws.job.UWSJob;
+import uws.service.file.UWSFileManager;
+
+/**
+ * <p>File submitted inline in an HTTP request whose content is read directly
+ * from the request body, without being first stored on the server.</p>
+ *
+ * <p>
+ * 	Such file is created by {@link MultipartParser#parseStreaming(javax.servlet.http.HttpServletRequest)}.
+ * 	The multipart body is then read only when {@link #open()} is called, and
+ * 	up to the end of this file part. If another expected file arrives before
+ * 	it in the request body, that one is stored in the temporary directory of
+ * 	the file manager, exactly as with {@link MultipartParser#parse(javax.servlet.http.HttpServletRequest)}.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The content of a streamed file can be read only once. Besides, since it
+ * 	is coming from the HTTP request being processed, it can be read only
+ * 	while this request is processed ; so, it can not be moved to a job with
+ * 	{@link #move(UWSJob)}.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class StreamedUploadFile extends UploadFile {
+
+	/** Multipart body from which the content of this file must be read. */
+	protected final MultipartParser.StreamedParts parts;
+
+	/** Indicate whether the content of this file has already been read. */
+	protected boolean opened = false;
+
+	/** File in which the content of this file has been stored because it
+	 * arrived before the file being read. <i>NULL if not stored.</i> */
+	protected File spoolFile = null;
+
+	/**
+	 * Build the description of a file whose content is still in the given
+	 * multipart body.
+	 *
+	 * @param paramName		Name of the HTTP request parameter in which the file is expected. <b>MUST NOT be NULL</b>
+	 * @param parts			Multipart body containing this file. <b>MUST NOT be NULL</b>
+	 * @param fileManager	File manager to use in order to delete this file when it had to be stored.
+	 */
+	public StreamedUploadFile(final String paramName, final MultipartParser.StreamedParts parts, final UWSFileManager fileManager){
+		super(paramName, "stream:" + paramName, fileManager);
+		if (parts == null)
+			throw new NullPointerException("Missing multipart body => can not create the StreamedUploadFile!");
+		this.parts = parts;
+	}
+
+	/**
+	 * Tell whether the content of this file is (or was) read directly from
+	 * the HTTP request body.
+	 *
+	 * @return	<i>true</i> if not stored on the server,
+	 *        	<i>false</i> if it had to be stored.
+	 */
+	public boolean isStreamed(){
+		return spoolFile == null;
+	}
+
+	/**
+	 * Keep the file in which the content of this file has been stored.
+	 *
+	 * @param file	The stored content.
+	 */
+	void setSpoolFile(final File file){
+		spoolFile = file;
+		location = file.toURI().toString();
+		length = file.length();
+	}
+
+	/**
+	 * <p>Open a stream toward the content of this file.</p>
+	 *
+	 * <p>
+	 * 	If not already stored, the request body is read until this file part
+	 * 	and the returned stream reads this part as it arrives.
+	 * </p>
+	 *
+	 * @throws IOException	If this file has already been read,
+	 *                    	or if it is not in the request body,
+	 *                    	or if the request body can not be read.
+	 */
+	@Override
+	public InputStream open() throws IOException{
+		synchronized(parts){
+			if (opened)
+				throw new IOException("The uploaded file \"" + paramName + "\" has been streamed and can be read only once!");
+			opened = true;
+			used = true;
+			if (spoolFile != null)
+				return new FileInputStream(spoolFile);
+			else
+				return parts.open(this);
+		}
+	}
+
+	/**
+	 * <p>Read the end of the request body, after the streamed files.</p>
+	 *
+	 * <p>
+	 * 	This function must be called once all the streamed files of the
+	 * 	request have been read. It fails if a parameter has been sent after
+	 * 	them: such parameter has not been taken into account, since the
+	 * 	request has already been processed with the parameters preceding the
+	 * 	files.
+	 * </p>
+	 *
+	 * @throws IOException	If a parameter follows the uploaded files,
+	 *                    	or if the request body can not be read.
+	 */
+	public void checkEnd() throws IOException{
+		parts.end();
+	}
+
+	@Override
+	public void deleteFile() throws IOException{
+		synchronized(parts){
+			used = true;
+			if (spoolFile != null && spoolFile.exists() && !spoolFile.delete())
+				throw new IOException("Can not delete the uploaded file \"" + spoolFile.getAbsolutePath() + "\"!");
+		}
+	}
+
+	/**
+	 * A streamed file can not be moved.
+	 *
+	 * @throws IOException	Always.
+	 */
+	@Override
+	public void move(final UWSJob destination) throws IOException{
+		throw new IOException("The uploaded file \"" + paramName + "\" has been streamed and can not be moved in the job " + (destination == null ? "" : destination.getJobId()) + "!");
+	}
+
+}
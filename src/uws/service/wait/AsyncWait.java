@@ -0,0 +1,336 @@
+package uws.service.wait;
+
+/*
+ * This file is part of UWSLibrary.
+ *
+ * UWSLibrary is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * UWSLibrary is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2026 - UDS/Centre de Données astronomiques de Strasbourg (CDS)
+ */
+
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Wait for an event (e.g. a change of execution phase) without holding the
+ * thread of an HTTP request, thanks to the asynchronous processing of
+ * Servlet 3.
+ *
+ * <p>
+ * 	When started (see {@link #start(HttpServletRequest, HttpServletResponse, long, Runnable)}),
+ * 	the HTTP request is put in asynchronous mode and its thread is given back
+ * 	to the servlet container. The request is then suspended until
+ * 	{@link #end()} is called or until the given waiting time is elapsed. At
+ * 	this moment, the request is dispatched again to the servlet which has
+ * 	received it: the servlet then processes the request again, but knowing
+ * 	that the wait is over (see {@link #isOver(HttpServletRequest)}), it can
+ * 	now write the response normally.
+ * </p>
+ *
+ * <p>
+ * 	A {@link BlockingPolicy} expects the {@link Thread} which is blocked. Since
+ * 	no thread is blocked here, a token thread (never started) is provided
+ * 	instead: see {@link #getToken()}. Like a blocked thread, this token can be
+ * 	woken up with {@link WaitObserver#wakeUp(Thread)} (which calls
+ * 	{@link #wakeUp(Thread)}), so that the limits of a policy like
+ * 	{@link UserLimitedBlockingPolicy} still apply.
+ * </p>
+ *
+ * <p><i>Note:
+ * 	The asynchronous mode can be used only if the servlet (and all filters)
+ * 	processing the request supports it ; i.e. with
+ * 	<code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code> in the
+ * 	file <code>web.xml</code>. If not (see {@link #isSupported(HttpServletRequest)}),
+ * 	the thread of the HTTP request should be blocked as usual.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (CDS)
+ * @version 4.5 (10/2026)
+ * @since 4.5
+ */
+public class AsyncWait implements AsyncListener {
+
+	/** Name of the HTTP request attribute in which the {@link AsyncWait}
+	 * of this request is stored. */
+	public final static String REQ_ATTRIBUTE_ASYNC_WAIT = "UWS_ASYNC_WAIT";
+
+	/** Timer ending all waits whose the waiting time is elapsed. */
+	private final static Timer timer = new Timer("UWS_ASYNC_WAIT", true);
+
+	/** Token to give to a {@link BlockingPolicy} in place of the blocked thread. */
+	protected final Thread token;
+
+	/** Asynchronous context of the suspended request.
+	 * <i>NULL if not yet started.</i> */
+	protected volatile AsyncContext context = null;
+
+	/** Function to run once the wait is over. <i>MAY be NULL</i> */
+	private volatile Runnable cleanup = null;
+
+	/** Indicate whether this wait is over. */
+	private final AtomicBoolean over = new AtomicBoolean(false);
+
+	/** Indicate whether the cleanup function has already been run. */
+	private final AtomicBoolean cleaned = new AtomicBoolean(false);
+
+	/** Task ending this wait after the waiting time.
+	 * <i>NULL if no waiting time.</i> */
+	private TimerTask timeoutTask = null;
+
+	/**
+	 * Create a wait, not yet started.
+	 */
+	public AsyncWait(){
+		token = new Token();
+	}
+
+	/**
+	 * Tell whether the given HTTP request can wait asynchronously.
+	 *
+	 * @param request	The HTTP request to test.
+	 *
+	 * @return	<i>true</i> if the asynchronous mode is supported and not yet
+	 *        	started for the given request,
+	 *        	<i>false</i> otherwise.
+	 */
+	public static boolean isSupported(final HttpServletRequest request){
+		try{
+			return request != null && request.isAsyncSupported() && !request.isAsyncStarted();
+		}catch(Exception e){
+			return false;
+		}
+	}
+
+	/**
+	 * Tell whether the given HTTP request has already waited asynchronously.
+	 *
+	 * <p>
+	 * 	If <i>true</i>, the given request is being processed again after the
+	 * 	end of the wait. So, no wait should be started again and the response
+	 * 	should be written.
+	 * </p>
+	 *
+	 * @param request	The HTTP request to test.
+	 *
+	 * @return	<i>true</i> if the asynchronous wait of the given request is over,
+	 *        	<i>false</i> otherwise.
+	 */
+	public static boolean isOver(final HttpServletRequest request){
+		if (request == null)
+			return false;
+		Object wait = request.getAttribute(REQ_ATTRIBUTE_ASYNC_WAIT);
+		return (wait != null && wait instanceof AsyncWait && ((AsyncWait)wait).isOver());
+	}
+
+	/**
+	 * Get the thread to give to a {@link BlockingPolicy} in place of the
+	 * thread of the HTTP request.
+	 *
+	 * @return	The token thread of this wait. <i>This thread is never started.</i>
+	 */
+	public final Thread getToken(){
+		return token;
+	}
+
+	/**
+	 * Tell whether this wait is over.
+	 *
+	 * @return	<i>true</i> if over,
+	 *        	<i>false</i> if still waiting (or not yet started).
+	 */
+	public final boolean isOver(){
+		return over.get();
+	}
+
+	/**
+	 * Suspend the given HTTP request until {@link #end()} is called or until
+	 * the given waiting time is elapsed.
+	 *
+	 * @param request		The HTTP request to suspend.
+	 * @param response		The HTTP response of this request.
+	 * @param waitingTime	Maximum waiting time (in milliseconds).
+	 *                   	<i>A negative or null value means "until
+	 *                   	{@link #end()} is called".</i>
+	 * @param cleanup		Function to run once the wait is over, whatever is
+	 *               		the way it ends (even if the client is
+	 *               		disconnected).
+	 *               		<i>MAY be NULL</i>
+	 *
+	 * @throws IllegalStateException	If the asynchronous mode is not supported
+	 *                              	or if this wait has already been started.
+	 */
+	public synchronized void start(final HttpServletRequest request, final HttpServletResponse response, final long waitingTime, final Runnable cleanup) throws IllegalStateException{
+		if (context != null)
+			throw new IllegalStateException("This wait has already been started!");
+
+		this.cleanup = cleanup;
+
+		request.setAttribute(REQ_ATTRIBUTE_ASYNC_WAIT, this);
+		context = request.startAsync(request, response);
+		// no timeout from the container ; the waiting time is managed by this object:
+		context.setTimeout(0);
+		context.addListener(this);
+
+		waitFor(waitingTime);
+	}
+
+	/**
+	 * (Re-)Set the maximum waiting time. When elapsed, {@link #timeout()} is
+	 * called.
+	 *
+	 * @param waitingTime	Maximum waiting time (in milliseconds) from now.
+	 *                   	<i>A negative or null value means "until
+	 *                   	{@link #end()} is called".</i>
+	 */
+	public synchronized void waitFor(final long waitingTime){
+		if (timeoutTask != null)
+			timeoutTask.cancel();
+		timeoutTask = null;
+
+		if (waitingTime > 0 && !isOver()){
+			timeoutTask = new TimerTask(){
+				@Override
+				public void run(){
+					timeout();
+				}
+			};
+			timer.schedule(timeoutTask, waitingTime);
+		}
+	}
+
+	/**
+	 * Function called when the waiting time is elapsed.
+	 *
+	 * <p>By default, it just ends this wait (see {@link #end()}).</p>
+	 */
+	protected void timeout(){
+		end();
+	}
+
+	/**
+	 * End this wait: the suspended HTTP request is dispatched again to the
+	 * servlet which has received it.
+	 *
+	 * <p><i>Note:
+	 * 	Only the first call has an effect.
+	 * </i></p>
+	 *
+	 * @return	<i>true</i> if this call has ended the wait,
+	 *        	<i>false</i> if the wait was already over or not yet started.
+	 */
+	public final boolean end(){
+		if (context == null || !over.compareAndSet(false, true))
+			return false;
+
+		synchronized(this){
+			if (timeoutTask != null)
+				timeoutTask.cancel();
+			timeoutTask = null;
+		}
+
+		context.dispatch();
+		return true;
+	}
+
+	/**
+	 * Run the cleanup function, if not already done.
+	 */
+	protected final void cleanup(){
+		if (cleaned.compareAndSet(false, true)){
+			over.set(true);
+			synchronized(this){
+				if (timeoutTask != null)
+					timeoutTask.cancel();
+				timeoutTask = null;
+			}
+			if (cleanup != null)
+				cleanup.run();
+		}
+	}
+
+	/**
+	 * End the asynchronous wait associated with the given token (if any).
+	 *
+	 * @param thread	A thread which may be the token of an asynchronous wait.
+	 *
+	 * @return	<i>true</i> if the given thread is the token of an
+	 *        	asynchronous wait (whatever is the result of {@link #end()}),
+	 *        	<i>false</i> otherwise.
+	 */
+	public static boolean wakeUp(final Thread thread){
+		if (thread != null && thread instanceof Token){
+			((Token)thread).getWait().end();
+			return true;
+		}else
+			return false;
+	}
+
+	/* *************** */
+	/* ASYNC LISTENING */
+	/* *************** */
+
+	@Override
+	public void onComplete(final AsyncEvent event) throws IOException{
+		cleanup();
+	}
+
+	@Override
+	public void onTimeout(final AsyncEvent event) throws IOException{
+		/* note: should never happen since the timeout of the context is
+		 *       disabled. */
+		end();
+	}
+
+	@Override
+	public void onError(final AsyncEvent event) throws IOException{
+		cleanup();
+	}
+
+	@Override
+	public void onStartAsync(final AsyncEvent event) throws IOException{
+		;
+	}
+
+	/**
+	 * Thread representing an {@link AsyncWait} for a {@link BlockingPolicy}.
+	 * It is never started.
+	 *
+	 * @author Gr&eacute;gory Mantelet (CDS)
+	 * @version 4.5 (10/2026)
+	 * @since 4.5
+	 */
+	private final class Token extends Thread {
+		public Token(){
+			super("UWS_ASYNC_WAIT");
+		}
+
+		/**
+		 * Get the wait represented by this token.
+		 *
+		 * @return	The corresponding wait.
+		 */
+		public AsyncWait getWait(){
+			return AsyncWait.this;
+		}
+	}
+
+}
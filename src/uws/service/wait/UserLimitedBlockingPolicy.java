@@ -16,7 +16,7 @@ package uws.service.wait;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2017 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2017-2026 - Astronomisches Rechen Institut (ARI)
  */
 
 import java.util.Collections;
@@ -71,7 +71,7 @@ import uws.job.user.JobOwner;
  * </p>
  *
  * @author Gr&eacute;gory Mantelet (ARI)
- * @version 4.3 (11/2017)
+ * @version 4.5 (10/2026)
  * @since 4.3
  */
 public class UserLimitedBlockingPolicy extends LimitedBlockingPolicy {
@@ -257,11 +257,8 @@ public class UserLimitedBlockingPolicy extends LimitedBlockingPolicy {
 				// Get the oldest blocked thread:
 				Thread old = queue.poll();
 				// Wake it up // Unblock it:
-				if (old != null){
-					synchronized(old){
-						old.notifyAll();
-					}
-				}
+				if (old != null)
+					WaitObserver.wakeUp(old);
 				// Add the thread into the queue:
 				queue.offer(thread);
 			}
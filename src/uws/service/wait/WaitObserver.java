@@ -16,20 +16,30 @@ package uws.service.wait;
  * You should have received a copy of the GNU Lesser General Public License
  * along with UWSLibrary.  If not, see <http://www.gnu.org/licenses/>.
  *
- * Copyright 2017 - Astronomisches Rechen Institut (ARI)
+ * Copyright 2017-2026 - Astronomisches Rechen Institut (ARI)
  */
 
+import java.util.concurrent.locks.LockSupport;
+
 import uws.UWSException;
 import uws.job.ExecutionPhase;
 import uws.job.JobObserver;
 import uws.job.UWSJob;
+import uws.job.VirtualThreads;
 
 /**
  * Job observer that unblock (here: notify) the given thread when a change of
  * the execution phase is detected.
  *
- * @author Gr&eacute;gory Mantelet (ARI)
- * @version 4.3 (11/2017)
+ * <p><i>Note:
+ * 	A thread blocked with {@link #waitFor(long)} should always be unblocked
+ * 	with {@link #wakeUp(Thread)}. Virtual threads are indeed not blocked with
+ * 	{@link Object#wait()} (which would pin their carrier thread) but are
+ * 	parked.
+ * </i></p>
+ *
+ * @author Gr&eacute;gory Mantelet (ARI;CDS)
+ * @version 4.5 (10/2026)
  * @since 4.3
  */
 public class WaitObserver implements JobObserver {
@@ -50,9 +60,66 @@ public class WaitObserver implements JobObserver {
 
 	@Override
 	public void update(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase) throws UWSException{
-		if (oldPhase != null && newPhase != null && oldPhase != newPhase){
-			synchronized(waitingThread){
-				waitingThread.notify();
+		if (oldPhase != null && newPhase != null && oldPhase != newPhase)
+			wakeUp(waitingThread);
+	}
+
+	/**
+	 * Block the current thread until the given duration is elapsed or until
+	 * it is woken up by {@link #wakeUp(Thread)}.
+	 *
+	 * <p><i>Note:
+	 * 	If the current thread is a virtual thread, it is parked instead of
+	 * 	waiting on its monitor. It may then be woken up a bit earlier than
+	 * 	expected (spurious wake-up), which is allowed by the UWS protocol.
+	 * </i></p>
+	 *
+	 * @param waitingTime	Time to wait (in seconds).
+	 *                   	<i>A negative or null value means "until woken up".</i>
+	 *
+	 * @throws InterruptedException	If the current thread is interrupted while waiting.
+	 *
+	 * @since 4.5
+	 */
+	public static void waitFor(final long waitingTime) throws InterruptedException{
+		final Thread current = Thread.currentThread();
+		if (VirtualThreads.isVirtual(current)){
+			if (waitingTime > 0)
+				LockSupport.parkNanos(current, waitingTime * 1000000000L);
+			else
+				LockSupport.park(current);
+			if (Thread.interrupted())
+				throw new InterruptedException();
+		}else{
+			synchronized(current){
+				if (waitingTime > 0)
+					current.wait(waitingTime * 1000);
+				else
+					current.wait();
+			}
+		}
+	}
+
+	/**
+	 * Wake up the given thread if blocked by {@link #waitFor(long)}.
+	 *
+	 * <p><i>Note:
+	 * 	If the given thread is the token of an {@link AsyncWait}, this wait is
+	 * 	ended (see {@link AsyncWait#wakeUp(Thread)}).
+	 * </i></p>
+	 *
+	 * @param thread	The thread to wake up.
+	 *
+	 * @since 4.5
+	 */
+	public static void wakeUp(final Thread thread){
+		if (thread == null || AsyncWait.wakeUp(thread))
+			return;
+		else if (VirtualThreads.isVirtual(thread))
+			LockSupport.unpark(thread);
+		else{
+			synchronized(thread){
+				thread.notifyAll();
 			}
 		}
 	}
@@ -0,0 +1,177 @@
+package tap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import adql.db.DBType;
+import adql.db.DBType.DBDatatype;
+import adql.query.ADQLQuery;
+import tap.db.DBConnection;
+import tap.formatter.ServiceConnection4Test;
+import tap.metadata.TAPMetadata;
+import tap.metadata.TAPSchema;
+import tap.metadata.TAPTable;
+import tap.parameters.TAPParameters;
+
+public class TestExecutionBudget {
+
+	private ServiceConnection4Test service;
+
+	@Before
+	public void setUp() throws Exception{
+		TAPMetadata meta = new TAPMetadata();
+		TAPSchema schema = meta.addSchema("public");
+		TAPTable table = schema.addTable("stars");
+		table.addColumn("id", new DBType(DBDatatype.BIGINT), null, null, null, null);
+		table.addColumn("ra", new DBType(DBDatatype.DOUBLE), null, null, null, null);
+		table.addColumn("name", new DBType(DBDatatype.VARCHAR, 20), null, null, null, null);
+
+		service = new ServiceConnection4Test(meta, null);
+		service.setFactory(new AbstractTAPFactory(service){
+			@Override
+			public DBConnection getConnection(String jobID) throws TAPException{
+				return null;
+			}
+
+			@Override
+			public void freeConnection(DBConnection conn){}
+
+			@Override
+			public void destroy(){}
+		});
+	}
+
+	private TAPParameters params(final String query, final Integer maxRec) throws TAPException{
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put(TAPJob.PARAM_REQUEST, TAPJob.REQUEST_DO_QUERY);
+		map.put(TAPJob.PARAM_LANGUAGE, TAPJob.LANG_ADQL);
+		map.put(TAPJob.PARAM_QUERY, query);
+		if (maxRec != null)
+			map.put(TAPJob.PARAM_MAX_REC, maxRec);
+		return new TAPParameters(service, map);
+	}
+
+	@Test
+	public void testEstimate(){
+		ExecutionBudget budget = new ExecutionBudget(service, -1, -1, -1);
+		try{
+			// Size = MAXREC x (8 + 8 + 20):
+			ExecutionBudget.Estimate est = budget.estimate(params("SELECT id, ra, name FROM stars", 100));
+			assertEquals(100, est.nbRows);
+			assertEquals(100 * 36, est.resultSize);
+			assertEquals(ExecutionBudget.NO_LIMIT, est.cost);
+			// ...and the parsed query is kept for the execution:
+			assertNotNull(est.query);
+			assertEquals("stars", est.query.getFrom().getTables().get(0).getTableName());
+
+			// TOP smaller than MAXREC:
+			est = budget.estimate(params("SELECT TOP 10 * FROM stars", 100));
+			assertEquals(10, est.nbRows);
+			assertEquals(10 * 36, est.resultSize);
+
+			// No row limit => unknown size:
+			est = budget.estimate(params("SELECT id FROM stars", null));
+			assertEquals(ExecutionBudget.NO_LIMIT, est.resultSize);
+
+			// Unknown table => unknown size:
+			est = budget.estimate(params("SELECT id FROM unknownTable", 10));
+			assertEquals(10, est.nbRows);
+			assertEquals(ExecutionBudget.NO_LIMIT, est.resultSize);
+			assertNull(est.query);
+
+			// With a cost estimator:
+			budget.setCostEstimator(new CostEstimator(){
+				@Override
+				public long estimateCost(ADQLQuery query, TAPParameters params){
+					return (query == null) ? -1 : 42;
+				}
+			});
+			est = budget.estimate(params("SELECT id FROM stars", 10));
+			assertEquals(42, est.cost);
+
+			// A failing cost estimator => unknown cost (even without logger):
+			budget.setCostEstimator(new CostEstimator(){
+				@Override
+				public long estimateCost(ADQLQuery query, TAPParameters params){
+					throw new IllegalStateException("no statistics");
+				}
+			});
+			est = budget.estimate(params("SELECT id FROM stars", 10));
+			assertEquals(ExecutionBudget.NO_LIMIT, est.cost);
+		}catch(Exception ex){
+			ex.printStackTrace();
+			fail("Unexpected error: " + ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testAcquireAndRelease(){
+		ExecutionBudget budget = new ExecutionBudget(service, 2, 1000, -1);
+
+		// A job can reserve only once:
+		assertTrue(budget.acquire("job1", new ExecutionBudget.Estimate(10, 600, -1)));
+		assertTrue(budget.acquire("job1", new ExecutionBudget.Estimate(10, 600, -1)));
+		assertEquals(1, budget.getUsedConnections());
+		assertEquals(600, budget.getUsedResultSize());
+
+		// Result size budget exceeded:
+		assertFalse(budget.acquire("job2", new ExecutionBudget.Estimate(10, 500, -1)));
+		// Unknown size while another job is running:
+		assertFalse(budget.acquire("job2", new ExecutionBudget.Estimate(-1, -1, -1)));
+		assertTrue(budget.acquire("job2", new ExecutionBudget.Estimate(10, 400, -1)));
+
+		// Connections budget exceeded:
+		assertFalse(budget.acquire("job3", new ExecutionBudget.Estimate(0, 0, -1)));
+
+		// Release:
+		budget.release("job1");
+		budget.release("job1");
+		assertEquals(1, budget.getUsedConnections());
+		assertEquals(400, budget.getUsedResultSize());
+		assertFalse(budget.hasReservation("job1"));
+		budget.release("job2");
+		assertEquals(0, budget.getUsedConnections());
+		assertEquals(0, budget.getUsedResultSize());
+
+		// A job exceeding alone the whole budget can run if nothing else is running:
+		assertTrue(budget.acquire("job4", new ExecutionBudget.Estimate(-1, -1, -1)));
+		assertFalse(budget.acquire("job5", new ExecutionBudget.Estimate(1, 1, -1)));
+	}
+
+	@Test
+	public void testIsCheap(){
+		ExecutionBudget budget = new ExecutionBudget(service, -1, -1, -1);
+
+		// By default, no job is cheap:
+		assertFalse(budget.isCheap(new ExecutionBudget.Estimate(1, 1, -1)));
+
+		budget.setCheapThresholds(1000, -1);
+		assertTrue(budget.isCheap(new ExecutionBudget.Estimate(1, 1000, -1)));
+		assertFalse(budget.isCheap(new ExecutionBudget.Estimate(1, 1001, -1)));
+		assertFalse(budget.isCheap(new ExecutionBudget.Estimate(-1, -1, -1)));
+		assertFalse(budget.isCheap(null));
+
+		// The cost is considered only with a cost estimator:
+		budget.setCheapThresholds(1000, 10);
+		assertTrue(budget.isCheap(new ExecutionBudget.Estimate(1, 10, 50)));
+		budget.setCostEstimator(new CostEstimator(){
+			@Override
+			public long estimateCost(ADQLQuery query, TAPParameters params){
+				return 0;
+			}
+		});
+		assertFalse(budget.isCheap(new ExecutionBudget.Estimate(1, 10, 50)));
+		assertTrue(budget.isCheap(new ExecutionBudget.Estimate(1, 10, 5)));
+	}
+
+}
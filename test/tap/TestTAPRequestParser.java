@@ -0,0 +1,163 @@
+package tap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.service.file.LocalUWSFileManager;
+import uws.service.request.StreamedUploadFile;
+import uws.service.request.UploadFile;
+
+public class TestTAPRequestParser {
+
+	private final static String BOUNDARY = "xYzBoundary";
+
+	private TAPRequestParser parser;
+
+	@Before
+	public void setUp() throws Exception{
+		parser = new TAPRequestParser(new LocalUWSFileManager(new File(System.getProperty("java.io.tmpdir"))));
+		parser.setStreamingUploads(true);
+	}
+
+	@Test
+	public void testStreamedUploads() throws Exception{
+		// The second file arrives first and an unreferenced file ends the request:
+		String body = field("REQUEST", "doQuery") + field("QUERY", "SELECT * FROM TAP_UPLOAD.t1") + field("UPLOAD", "t1,param:f1;t2,param:f2") + file("f2", "content2") + file("f1", "content1") + file("other", "ignored") + "--" + BOUNDARY + "--\r\n";
+		Map<String,Object> params = parser.parse(request("/sync", body));
+
+		assertEquals("SELECT * FROM TAP_UPLOAD.t1", params.get("QUERY"));
+		assertTrue(params.get("f1") instanceof StreamedUploadFile);
+		assertTrue(params.get("f2") instanceof StreamedUploadFile);
+		assertFalse(params.containsKey("other"));
+		StreamedUploadFile f1 = (StreamedUploadFile)params.get("f1"), f2 = (StreamedUploadFile)params.get("f2");
+
+		// f1 is read from the request body, after having stored f2:
+		assertEquals("content1", read(f1));
+		assertTrue(f1.isStreamed());
+		assertFalse(f2.isStreamed());
+		try{
+			f1.open();
+			fail("A streamed file can be read only once!");
+		}catch(IOException ioe){}
+
+		// f2 is then read from the stored file:
+		assertEquals("content2", read(f2));
+		File stored = new File(new java.net.URI(f2.getLocation()));
+		assertTrue(stored.exists());
+		f2.deleteFile();
+		assertFalse(stored.exists());
+		f1.deleteFile();
+
+		// ...and the unreferenced file at the end of the request is skipped:
+		f1.checkEnd();
+	}
+
+	@Test
+	public void testParameterAfterFiles() throws Exception{
+		String body = field("UPLOAD", "t1,param:f1") + file("f1", "content1") + field("QUERY", "SELECT * FROM TAP_UPLOAD.t1") + "--" + BOUNDARY + "--\r\n";
+		Map<String,Object> params = parser.parse(request("/sync", body));
+		assertFalse(params.containsKey("QUERY"));
+		assertEquals("content1", read((UploadFile)params.get("f1")));
+		try{
+			((StreamedUploadFile)params.get("f1")).checkEnd();
+			fail("A parameter after the last streamed file should be rejected!");
+		}catch(IOException ioe){
+			assertEquals("Unexpected parameter \"QUERY\" after the uploaded files! When uploads are streamed, all parameters must precede the files.", ioe.getMessage());
+		}
+
+		body = field("UPLOAD", "t2,param:f2") + file("f1", "content1") + field("QUERY", "SELECT * FROM TAP_UPLOAD.t1") + file("f2", "content2") + "--" + BOUNDARY + "--\r\n";
+		params = parser.parse(request("/sync", body));
+		try{
+			((UploadFile)params.get("f2")).open();
+			fail("A parameter after the streamed files should be rejected!");
+		}catch(IOException ioe){
+			assertEquals("Unexpected parameter \"QUERY\" after the uploaded files! When uploads are streamed, all parameters must precede the files.", ioe.getMessage());
+		}
+	}
+
+	@Test
+	public void testStoredUploads() throws Exception{
+		String body = field("UPLOAD", "t1,param:f1") + file("f1", "content1") + field("QUERY", "SELECT * FROM TAP_UPLOAD.t1") + "--" + BOUNDARY + "--\r\n";
+
+		// Asynchronous jobs never stream their files:
+		Map<String,Object> params = parser.parse(request("/async", body));
+		assertEquals("SELECT * FROM TAP_UPLOAD.t1", params.get("QUERY"));
+		assertFalse(params.get("f1") instanceof StreamedUploadFile);
+		assertEquals("content1", read((UploadFile)params.get("f1")));
+		((UploadFile)params.get("f1")).deleteFile();
+
+		// ...nor synchronous ones if the streaming is disabled:
+		parser.setStreamingUploads(false);
+		params = parser.parse(request("/sync", body));
+		assertEquals("SELECT * FROM TAP_UPLOAD.t1", params.get("QUERY"));
+		assertFalse(params.get("f1") instanceof StreamedUploadFile);
+		((UploadFile)params.get("f1")).deleteFile();
+	}
+
+	private static String field(final String name, final String value){
+		return "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n";
+	}
+
+	private static String file(final String name, final String content){
+		return "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\"" + name + ".vot\"\r\nContent-Type: application/x-votable+xml\r\n\r\n" + content + "\r\n";
+	}
+
+	private static String read(final UploadFile file) throws IOException{
+		InputStream input = file.open();
+		try{
+			return IOUtils.toString(input, "UTF-8");
+		}finally{
+			input.close();
+		}
+	}
+
+	private static HttpServletRequest request(final String pathInfo, final String body) throws Exception{
+		final byte[] content = body.getBytes("UTF-8");
+		final InputStream input = new ByteArrayInputStream(content);
+		return (HttpServletRequest)Proxy.newProxyInstance(TestTAPRequestParser.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler(){
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable{
+				String name = method.getName();
+				if (name.equals("getMethod"))
+					return "POST";
+				else if (name.equals("getPathInfo"))
+					return pathInfo;
+				else if (name.equals("getContentType"))
+					return "multipart/form-data; boundary=" + BOUNDARY;
+				else if (name.equals("getContentLength"))
+					return content.length;
+				else if (name.equals("getCharacterEncoding"))
+					return "UTF-8";
+				else if (name.equals("getInputStream")){
+					return new ServletInputStream(){
+						@Override
+						public int read() throws IOException{
+							return input.read();
+						}
+					};
+				}else if (method.getReturnType() == boolean.class)
+					return false;
+				return null;
+			}
+		});
+	}
+
+}
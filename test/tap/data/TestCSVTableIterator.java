@@ -0,0 +1,223 @@
+package tap.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import adql.db.DBType;
+import adql.db.DBType.DBDatatype;
+import tap.metadata.TAPColumn;
+import uk.ac.starlink.fits.FitsTableWriter;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableFactory;
+import uk.ac.starlink.util.FileDataSource;
+
+public class TestCSVTableIterator {
+
+	@Test
+	public void testWithNULL(){
+		try{
+			new CSVTableIterator(null);
+			fail("The constructor should have failed, because: the given CSV is NULL.");
+		}catch(Exception ex){
+			assertEquals(NullPointerException.class, ex.getClass());
+		}
+	}
+
+	@Test
+	public void testCSV() throws Exception{
+		String csv = "\uFEFFid,ra,name,flag\r\n1,10.5,\"Vega, alpha Lyr\",\r\n\r\n2,-3e2,\"a \"\"quoted\"\"\nname\",x\n+3,.5,,\n";
+		TableIterator it = new CSVTableIterator(stream(csv));
+
+		TAPColumn[] cols = it.getMetadata();
+		assertEquals(4, cols.length);
+		assertEquals("id", cols[0].getADQLName());
+		assertEquals(DBDatatype.BIGINT, cols[0].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, cols[1].getDatatype().type);
+		assertEquals(DBDatatype.VARCHAR, cols[2].getDatatype().type);
+		assertEquals(DBDatatype.VARCHAR, cols[3].getDatatype().type);
+
+		assertTrue(it.nextRow());
+		assertEquals(1L, it.nextCol());
+		assertEquals(DBDatatype.BIGINT, it.getColType().type);
+		assertEquals(10.5, it.nextCol());
+		assertEquals("Vega, alpha Lyr", it.nextCol());
+		assertNull(it.nextCol());
+		assertFalse(it.hasNextCol());
+
+		assertTrue(it.nextRow());
+		assertEquals(2L, it.nextCol());
+		assertEquals(-300.0, it.nextCol());
+		assertEquals("a \"quoted\"\nname", it.nextCol());
+		assertEquals("x", it.nextCol());
+
+		assertTrue(it.nextRow());
+		assertEquals(3L, it.nextCol());
+		assertEquals(0.5, it.nextCol());
+		assertNull(it.nextCol());
+		assertNull(it.nextCol());
+
+		assertFalse(it.nextRow());
+		it.close();
+	}
+
+	@Test
+	public void testTypeInferredFromSample() throws Exception{
+		// The type is inferred from the first 2 rows only:
+		TableIterator it = new CSVTableIterator(stream("a,b\n1,x\n2,y\nthree,z\n"), ',', true, 2);
+		assertEquals(DBDatatype.BIGINT, it.getMetadata()[0].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals(1L, it.nextCol());
+		assertTrue(it.nextRow());
+		assertEquals(2L, it.nextCol());
+		assertTrue(it.nextRow());
+		try{
+			it.nextCol();
+			fail("\"three\" is not an integer!");
+		}catch(DataReadException dre){
+			assertEquals("[l. 3, c. 1] Unexpected value \"three\": the column \"a\" has been inferred as BIGINT from the first rows! Its type can not be changed anymore.", dre.getMessage());
+		}
+
+		// Too many values:
+		it = new CSVTableIterator(stream("a\n1,2\n"));
+		try{
+			it.nextRow();
+			fail("Only one column is declared!");
+		}catch(DataReadException dre){
+			assertEquals("[l. 1] Too many values! Only 1 columns are declared in the CSV header.", dre.getMessage());
+		}
+
+		// Missing header:
+		try{
+			new CSVTableIterator(stream(""));
+			fail("A header is required!");
+		}catch(DataReadException dre){
+			assertEquals("Missing CSV header! The first line must list the column names.", dre.getMessage());
+		}
+	}
+
+	@Test
+	public void testZeroPaddedValues() throws Exception{
+		// Zero-padded integers are identifiers, not numbers:
+		TableIterator it = new CSVTableIterator(stream("id,x,y\n007,0,-0.5\n012,10,0.25\n"));
+		TAPColumn[] cols = it.getMetadata();
+		assertEquals(DBDatatype.VARCHAR, cols[0].getDatatype().type);
+		assertEquals(DBDatatype.BIGINT, cols[1].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, cols[2].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals("007", it.nextCol());
+
+		// ...even after the first rows:
+		it = new CSVTableIterator(stream("a\n1\n007\n"), ',', true, 1);
+		assertTrue(it.nextRow());
+		assertEquals(1L, it.nextCol());
+		assertTrue(it.nextRow());
+		try{
+			it.nextCol();
+			fail("\"007\" must not be read as an integer!");
+		}catch(DataReadException dre){
+			assertTrue(dre.getMessage().startsWith("[l. 2, c. 1] Unexpected value \"007\""));
+		}
+	}
+
+	@Test
+	public void testLongIntegers() throws Exception{
+		// Integers beyond 2^53 are kept as BIGINT...
+		TableIterator it = new CSVTableIterator(stream("a,b,c\n1,1,1.5\n1234567890123456789,2.5,12345678901234567890\n"));
+		TAPColumn[] cols = it.getMetadata();
+		assertEquals(DBDatatype.BIGINT, cols[0].getDatatype().type);
+		// ...but small integers can be mixed with decimals...
+		assertEquals(DBDatatype.DOUBLE, cols[1].getDatatype().type);
+		// ...while integers out of the BIGINT range stay strings:
+		assertEquals(DBDatatype.VARCHAR, cols[2].getDatatype().type);
+
+		// Mixing long integers with decimals would lose digits:
+		it = new CSVTableIterator(stream("a\n1234567890123456789\n1.5\n"));
+		assertEquals(DBDatatype.VARCHAR, it.getMetadata()[0].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals("1234567890123456789", it.nextCol());
+	}
+
+	@Test
+	public void testTypeInferredFromAllRows() throws Exception{
+		final String csv = "a,b,c\n1,2,x\n2,3,y\n1.5,N/A,z\n";
+
+		CSVTableIterator scan = new CSVTableIterator(stream(csv), ',', true, 2);
+		assertEquals(DBDatatype.BIGINT, scan.getMetadata()[0].getDatatype().type);
+		DBType[] types = scan.inferTypesFromAllRows();
+		assertEquals(DBDatatype.DOUBLE, types[0].type);
+		assertEquals(DBDatatype.VARCHAR, types[1].type);
+		assertEquals(DBDatatype.VARCHAR, types[2].type);
+		assertFalse(scan.nextRow());
+		try{
+			scan.setColumnTypes(types);
+			fail("The iteration has already started!");
+		}catch(IllegalStateException ise){}
+
+		CSVTableIterator it = new CSVTableIterator(stream(csv), ',', true, 2);
+		try{
+			it.setColumnTypes(new DBType[]{ types[0] });
+			fail("3 types are expected!");
+		}catch(IllegalArgumentException iae){}
+		it.setColumnTypes(types);
+		assertEquals(DBDatatype.DOUBLE, it.getMetadata()[0].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals(1.0, it.nextCol());
+		assertEquals("2", it.nextCol());
+		assertTrue(it.nextRow());
+		assertTrue(it.nextRow());
+		assertEquals(1.5, it.nextCol());
+		assertEquals("N/A", it.nextCol());
+		assertFalse(it.nextRow());
+	}
+
+	@Test
+	public void testTSV() throws Exception{
+		TableIterator it = new TSVTableIterator(stream("id\tcomment\n1\t\"not, quoted\"\n"));
+		assertEquals(DBDatatype.BIGINT, it.getMetadata()[0].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals(1L, it.nextCol());
+		assertEquals("\"not, quoted\"", it.nextCol());
+		assertFalse(it.nextRow());
+	}
+
+	@Test
+	public void testFITS() throws Exception{
+		// Convert the test VOTable into FITS:
+		StarTable table = new StarTableFactory().makeStarTable(new FileDataSource(TestVOTableIterator.dataVOTable), "votable");
+		ByteArrayOutputStream fits = new ByteArrayOutputStream();
+		new FitsTableWriter().writeStarTable(table, fits);
+
+		TableIterator it = new FITSTableIterator(new ByteArrayInputStream(fits.toByteArray()));
+		TAPColumn[] cols = it.getMetadata();
+		assertEquals(4, cols.length);
+		assertEquals(DBDatatype.BIGINT, cols[0].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, cols[1].getDatatype().type);
+		assertEquals(DBDatatype.REAL, cols[3].getDatatype().type);
+		int nbRows = 0;
+		while(it.nextRow()){
+			nbRows++;
+			int nbCols = 0;
+			while(it.hasNextCol()){
+				it.nextCol();
+				nbCols++;
+			}
+			assertEquals(4, nbCols);
+		}
+		assertEquals(100, nbRows);
+		it.close();
+	}
+
+	private static InputStream stream(final String content) throws Exception{
+		return new ByteArrayInputStream(content.getBytes("UTF-8"));
+	}
+
+}
@@ -0,0 +1,162 @@
+package tap.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import adql.db.DBType;
+import adql.db.DBType.DBDatatype;
+import tap.metadata.TAPColumn;
+
+public class TestTypeNarrowingTableIterator {
+
+	@Test
+	public void testNarrowedTypes() throws Exception{
+		TableIterator it = new TypeNarrowingTableIterator(votable(new String[]{ "id", "char", "code", "char", "mag", "char", "date", "char", "pos", "char", "area", "char", "name", "char", "nb", "double", "ra", "double" }, new String[][]{ { "1", "007", "12.5", "2020-01-01T10:00:00", "Position ICRS 10 20", "Circle ICRS 10 20 1", "M31", "3", "10.5" }, { "-2", "012", "", "2021-02-03", "Position ICRS 11 21", "Position ICRS 1 2", "2020-01-01", "", "11" }, { "", "", "1e3", "", "", "", "12", "4", "12.25" } }));
+		TAPColumn[] cols = it.getMetadata();
+		assertEquals(9, cols.length);
+		assertEquals(DBDatatype.BIGINT, cols[0].getDatatype().type);
+		assertEquals(DBDatatype.VARCHAR, cols[1].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, cols[2].getDatatype().type);
+		assertEquals(DBDatatype.TIMESTAMP, cols[3].getDatatype().type);
+		assertEquals(DBDatatype.POINT, cols[4].getDatatype().type);
+		assertEquals(DBDatatype.REGION, cols[5].getDatatype().type);
+		assertEquals(DBDatatype.VARCHAR, cols[6].getDatatype().type);
+		assertEquals(DBDatatype.BIGINT, cols[7].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, cols[8].getDatatype().type);
+
+		List<Object[]> rows = readAll(it);
+		assertEquals(3, rows.size());
+		assertEquals(1L, rows.get(0)[0]);
+		assertEquals(-2L, rows.get(1)[0]);
+		assertNull(rows.get(2)[0]);
+		assertEquals("007", rows.get(0)[1]);
+		assertEquals(12.5, rows.get(0)[2]);
+		assertNull(rows.get(1)[2]);
+		assertEquals(1000.0, rows.get(2)[2]);
+		assertEquals("2020-01-01T10:00:00", rows.get(0)[3]);
+		assertEquals("Position ICRS 10 20", rows.get(0)[4]);
+		assertEquals(3L, rows.get(0)[7]);
+		assertNull(rows.get(1)[7]);
+		assertEquals(10.5, rows.get(0)[8]);
+	}
+
+	@Test
+	public void testSample() throws Exception{
+		// A table larger than the sample keeps its declared types, so that no valid value is rejected:
+		TableIterator it = new TypeNarrowingTableIterator(votable(new String[]{ "a", "char", "b", "double" }, new String[][]{ { "1", "1" }, { "2", "2" }, { "3", "3.5" } }), 2);
+		assertEquals(DBDatatype.VARCHAR, it.getMetadata()[0].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, it.getMetadata()[1].getDatatype().type);
+		List<Object[]> rows = readAll(it);
+		assertEquals(3, rows.size());
+		assertEquals("3", rows.get(2)[0]);
+		assertEquals(3.5, rows.get(2)[1]);
+		it.close();
+
+		// ...but a table fitting in the sample is narrowed:
+		it = new TypeNarrowingTableIterator(votable(new String[]{ "a", "char", "b", "double" }, new String[][]{ { "1", "1" }, { "2", "2" }, { "x", "3.5" } }), 3);
+		assertEquals(DBDatatype.VARCHAR, it.getMetadata()[0].getDatatype().type);
+		assertEquals(DBDatatype.DOUBLE, it.getMetadata()[1].getDatatype().type);
+		assertEquals(3, readAll(it).size());
+		assertFalse(it.nextRow());
+		it = new TypeNarrowingTableIterator(votable(new String[]{ "a", "char", "b", "double" }, new String[][]{ { "1", "1" }, { "2", "2" } }), 2);
+		assertEquals(DBDatatype.BIGINT, it.getMetadata()[0].getDatatype().type);
+		assertEquals(DBDatatype.BIGINT, it.getMetadata()[1].getDatatype().type);
+		assertTrue(it.nextRow());
+		assertEquals(1L, it.nextCol());
+		assertEquals(DBDatatype.BIGINT, it.getColType().type);
+		assertEquals(1L, it.nextCol());
+	}
+
+	@Test
+	public void testAllRows() throws Exception{
+		final String[] fields = new String[]{ "a", "char", "b", "double", "id", "char" };
+		final String[][] data = new String[][]{ { "1", "1", "1234567890123456789" }, { "2", "2", "2.5" }, { "3", "3", "3" } };
+
+		// All rows are checked, without keeping them in memory:
+		TypeNarrowingTableIterator scan = new TypeNarrowingTableIterator(votable(fields, data), 1);
+		DBType[] types = scan.narrowTypesFromAllRows();
+		assertEquals(3, types.length);
+		assertEquals(DBDatatype.BIGINT, types[0].type);
+		assertEquals(DBDatatype.BIGINT, types[1].type);
+		// a DOUBLE would lose digits of the long identifier:
+		assertNull(types[2]);
+		assertFalse(scan.nextRow());
+		try{
+			scan.setNarrowedTypes(types);
+			fail("The column types have already been narrowed!");
+		}catch(IllegalStateException ise){}
+
+		// ...and the narrowed types are given to the iterator really reading the table:
+		TypeNarrowingTableIterator it = new TypeNarrowingTableIterator(votable(fields, data), 1);
+		try{
+			it.setNarrowedTypes(new DBType[]{ types[0] });
+			fail("3 types are expected!");
+		}catch(IllegalArgumentException iae){}
+		it.setNarrowedTypes(types);
+		assertEquals(DBDatatype.BIGINT, it.getMetadata()[1].getDatatype().type);
+		assertEquals(DBDatatype.VARCHAR, it.getMetadata()[2].getDatatype().type);
+		List<Object[]> rows = readAll(it);
+		assertEquals(3, rows.size());
+		assertEquals(3L, rows.get(2)[0]);
+		assertEquals(3L, rows.get(2)[1]);
+		assertEquals("1234567890123456789", rows.get(0)[2]);
+
+		// If the table does not match the given types, the error is still detected:
+		it = new TypeNarrowingTableIterator(votable(fields, new String[][]{ { "x", "1", "1" } }));
+		it.setNarrowedTypes(types);
+		assertTrue(it.nextRow());
+		try{
+			it.nextCol();
+			fail("\"x\" does not fit in a BIGINT column!");
+		}catch(DataReadException dre){
+			assertEquals("[l. 1, c. 1] Unexpected value \"x\": the column \"a\" has been narrowed to BIGINT!", dre.getMessage());
+		}
+	}
+
+	@Test
+	public void testEmptyTable() throws Exception{
+		TableIterator it = new TypeNarrowingTableIterator(votable(new String[]{ "a", "char" }, new String[0][]));
+		assertEquals(DBDatatype.VARCHAR, it.getMetadata()[0].getDatatype().type);
+		assertFalse(it.nextRow());
+		try{
+			it.hasNextCol();
+			fail("The end of the table is reached!");
+		}catch(IllegalStateException ise){}
+	}
+
+	private static List<Object[]> readAll(final TableIterator it) throws Exception{
+		List<Object[]> rows = new ArrayList<Object[]>();
+		while(it.nextRow()){
+			List<Object> row = new ArrayList<Object>();
+			while(it.hasNextCol())
+				row.add(it.nextCol());
+			rows.add(row.toArray());
+		}
+		return rows;
+	}
+
+	private static TableIterator votable(final String[] fields, final String[][] rows) throws Exception{
+		StringBuilder buf = new StringBuilder("<?xml version=\"1.0\"?><VOTABLE version=\"1.3\" xmlns=\"http://www.ivoa.net/xml/VOTable/v1.3\"><RESOURCE><TABLE>");
+		for(int i = 0; i < fields.length; i += 2)
+			buf.append("<FIELD name=\"").append(fields[i]).append("\" datatype=\"").append(fields[i + 1]).append("\"").append(fields[i + 1].equals("char") ? " arraysize=\"*\"" : "").append("/>");
+		buf.append("<DATA><TABLEDATA>");
+		for(String[] row : rows){
+			buf.append("<TR>");
+			for(String value : row)
+				buf.append("<TD>").append(value).append("</TD>");
+			buf.append("</TR>");
+		}
+		buf.append("</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>");
+		return new VOTableIterator(new ByteArrayInputStream(buf.toString().getBytes("UTF-8")));
+	}
+
+}
@@ -2,6 +2,7 @@ package tap.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -10,6 +11,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -197,6 +201,109 @@ public class TestVOTableIterator {
 		}
 	}
 
+	@Test
+	public void testBatchedRows() throws Exception{
+		// Hand 5 rows over by batches of 2 rows, with at most 1 batch waiting:
+		final VOTableIterator.StreamVOTableSink sink = new VOTableIterator.StreamVOTableSink(2, 1);
+		Thread producer = new Thread(){
+			@Override
+			public void run(){
+				try{
+					for(int i = 0; i < 5; i++)
+						sink.acceptRow(new Object[]{i});
+					sink.endRows();
+				}catch(IOException ioe){
+					sink.stop(ioe);
+				}
+			}
+		};
+		producer.start();
+		for(int i = 0; i < 5; i++)
+			assertEquals(i, sink.getRow()[0]);
+		assertNull(sink.getRow());
+		assertNull(sink.getRow());
+		producer.join();
+
+		// Stop the reading after the first row => the producer must be aborted:
+		final VOTableIterator.StreamVOTableSink abortedSink = new VOTableIterator.StreamVOTableSink(2, 1);
+		final IOException[] abortError = new IOException[1];
+		producer = new Thread(){
+			@Override
+			public void run(){
+				try{
+					for(int i = 0; i < 100; i++)
+						abortedSink.acceptRow(new Object[]{i});
+					abortedSink.endRows();
+				}catch(IOException ioe){
+					abortError[0] = ioe;
+					abortedSink.stop(ioe);
+				}
+			}
+		};
+		producer.start();
+		assertEquals(0, abortedSink.getRow()[0]);
+		abortedSink.stop();
+		producer.join(5000);
+		assertNotNull(abortError[0]);
+		assertEquals(VOTableIterator.STREAM_ABORTED_MESSAGE, abortError[0].getMessage());
+		assertNull(abortedSink.getRow());
+	}
+
+	@Test
+	public void testStopAfterClose() throws Exception{
+		// The producer accepts some rows (not yet handed over), then fails after the reading has been aborted:
+		final VOTableIterator.StreamVOTableSink sink = new VOTableIterator.StreamVOTableSink(10, 1);
+		final CountDownLatch accepted = new CountDownLatch(1), closed = new CountDownLatch(1);
+		Thread producer = new Thread(){
+			@Override
+			public void run(){
+				try{
+					for(int i = 0; i < 3; i++)
+						sink.acceptRow(new Object[]{ i });
+					accepted.countDown();
+					closed.await(5, TimeUnit.SECONDS);
+				}catch(Exception ex){}
+				sink.stop(new IOException("Read error after close()"));
+			}
+		};
+		producer.start();
+		assertTrue(accepted.await(5, TimeUnit.SECONDS));
+		sink.stop();
+		closed.countDown();
+		producer.join(5000);
+
+		// ...the dropped rows must not become readable again:
+		assertNull(sink.getRow());
+	}
+
+	@Test(timeout = 10000)
+	public void testRuntimeErrorWhileReading() throws Exception{
+		// Fail with a RuntimeException before the end of the header:
+		final byte[] content = Files.readAllBytes(dataVOTable.toPath());
+		InputStream input = new InputStream(){
+			private int pos = 0;
+
+			@Override
+			public int read(){
+				if (pos >= 100)
+					throw new IllegalStateException("Unexpected failure!");
+				return content[pos++] & 0xff;
+			}
+		};
+
+		// ...the error must be reported instead of waiting forever for the metadata:
+		VOTableIterator it = new VOTableIterator(input);
+		try{
+			it.getMetadata();
+			fail("The reading should have failed!");
+		}catch(DataReadException dre){
+			assertEquals("Unexpected error while reading the uploaded VOTable!", dre.getMessage());
+			assertEquals("Unexpected failure!", dre.getCause().getMessage());
+		}finally{
+			it.close();
+		}
+	}
+
 	@Test
 	public void testWithNotAVotable(){
 		// CASE: Empty file!
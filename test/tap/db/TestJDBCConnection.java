@@ -6,6 +6,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -17,6 +18,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.TreeSet;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -37,6 +39,7 @@ import tap.data.DataReadException;
 import tap.data.TableIterator;
 import tap.data.VOTableIterator;
 import tap.db_testtools.DBTools;
+import tap.log.DefaultTAPLog;
 import tap.metadata.TAPColumn;
 import tap.metadata.TAPForeignKey;
 import tap.metadata.TAPMetadata;
@@ -477,6 +480,121 @@ public class TestJDBCConnection {
 		}
 	}
 
+	@Test
+	public void testAddUploadedTableByChunks() throws Exception{
+		JDBCConnection conn = new JDBCConnection(h2Connection, new AstroH2Translator(false), "ChunkedH2", null);
+		// 10 rows by chunks of 3 rows, of 1 row (byte limit), and in a single batch ; with and without pipelining:
+		int[][] batchSizes = new int[][]{{3,-1},{-1,1},{-1,-1}};
+		for(boolean pipelining : new boolean[]{false,true}){
+			for(int[] batchSize : batchSizes){
+				conn.setUploadBatchSize(batchSize[0], batchSize[1]);
+				conn.setUploadPipelining(pipelining);
+				String tableName = "ChunkedUpload" + (pipelining ? "P" : "") + (batchSize[0] > 0 ? batchSize[0] : "") + (batchSize[1] > 0 ? "b" : "");
+				InputStream io = null;
+				try{
+					io = new FileInputStream(uploadExamplePath);
+					TableIterator it = new VOTableIterator(io);
+					TAPTable tableDef = new TAPTable(tableName);
+					for(TAPColumn c : it.getMetadata())
+						tableDef.addColumn(c);
+					TAPSchema schema = new TAPSchema(STDSchema.UPLOADSCHEMA.label);
+					schema.addTable(tableDef);
+
+					assertTrue(conn.addUploadedTable(tableDef, it));
+					Statement stmt = h2Connection.createStatement();
+					try{
+						assertEquals(10, count(stmt, conn.translator.getTableName(tableDef, conn.supportsSchema), tableDef.getADQLName()));
+					}finally{
+						close(stmt);
+					}
+					assertTrue(conn.dropUploadedTable(tableDef));
+				}finally{
+					close(io);
+				}
+			}
+		}
+		assertEquals(-1, conn.getUploadBatchRows());
+		assertEquals(-1, conn.getUploadBatchBytes());
+	}
+
+	@Test
+	public void testUploadTableTypeAndAutoIndex() throws Exception{
+		JDBCConnection conn = new JDBCConnection(h2Connection, new AstroH2Translator(false), "IndexedH2", null);
+		for(JDBCConnection.UploadTableType type : new JDBCConnection.UploadTableType[]{JDBCConnection.UploadTableType.REGULAR,JDBCConnection.UploadTableType.TEMPORARY}){
+			conn.setUploadTableType(type);
+			assertTrue(conn.getCreateUploadedTableCommand().startsWith((type == JDBCConnection.UploadTableType.TEMPORARY) ? "CREATE LOCAL TEMPORARY TABLE" : "CREATE TABLE"));
+			TAPSchema schema = new TAPSchema(STDSchema.UPLOADSCHEMA.label);
+			TAPTable tableA = uploadExample(conn, schema, "IndexedA"), tableB = uploadExample(conn, schema, "IndexedB");
+			try{
+				// Query them with a join and a WHERE condition:
+				ArrayList<DBTable> tables = new ArrayList<DBTable>(2);
+				tables.add(tableA);
+				tables.add(tableB);
+				ADQLQuery query = new ADQLParser(new DBChecker(tables)).parseQuery("SELECT IndexedA.Name FROM TAP_UPLOAD.IndexedA JOIN TAP_UPLOAD.IndexedB ON IndexedA.HD = IndexedB.HD WHERE IndexedA.Vmag < 4 AND IndexedB.ps = 'p'");
+				TableIterator result = conn.executeQuery(query);
+				int nbRows = 0;
+				while(result.nextRow())
+					nbRows++;
+				result.close();
+				assertEquals(3, nbRows);
+
+				// Only the columns used in conditions are indexed:
+				assertEquals("[IndexedA(HD), IndexedA(Vmag), IndexedB(HD), IndexedB(ps)]", getOptimizedUploads(conn, tableA, tableB));
+				Statement stmt = h2Connection.createStatement();
+				try{
+					assertEquals(4, count(stmt, "INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME LIKE 'INDEX_INDEXED%'", "indexes"));
+				}finally{
+					close(stmt);
+				}
+
+				// Another connection reusing these tables (e.g. from the upload cache) does not index them again:
+				ByteArrayOutputStream log = new ByteArrayOutputStream();
+				JDBCConnection conn2 = new JDBCConnection(h2Connection, new AstroH2Translator(false), "IndexedH2bis", new DefaultTAPLog(log));
+				conn2.registerUploadedTable(tableA, true);
+				conn2.registerUploadedTable(tableB, true);
+				result = conn2.executeQuery(query);
+				result.close();
+				assertEquals("[IndexedA, IndexedA(HD), IndexedA(Vmag), IndexedB, IndexedB(HD), IndexedB(ps)]", getOptimizedUploads(conn2, tableA, tableB));
+				assertFalse(log.toString("UTF-8").contains("CREATE INDEX"));
+				stmt = h2Connection.createStatement();
+				try{
+					assertEquals(4, count(stmt, "INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME LIKE 'INDEX_INDEXED%'", "indexes"));
+				}finally{
+					close(stmt);
+				}
+			}finally{
+				assertTrue(conn.dropUploadedTable(tableA));
+				assertTrue(conn.dropUploadedTable(tableB));
+				assertTrue(conn.optimizedUploads.isEmpty());
+			}
+		}
+	}
+
+	private static TAPTable uploadExample(final JDBCConnection conn, final TAPSchema schema, final String tableName) throws Exception{
+		InputStream io = new FileInputStream(uploadExamplePath);
+		try{
+			TableIterator it = new VOTableIterator(io);
+			TAPTable tableDef = new TAPTable(tableName);
+			for(TAPColumn c : it.getMetadata())
+				tableDef.addColumn(c);
+			schema.addTable(tableDef);
+			assertTrue(conn.addUploadedTable(tableDef, it));
+			return tableDef;
+		}finally{
+			close(io);
+		}
+	}
+
+	private static String getOptimizedUploads(final JDBCConnection conn, final TAPTable... tables){
+		TreeSet<String> items = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for(String item : conn.optimizedUploads){
+			for(TAPTable t : tables)
+				item = item.replace(conn.translator.getTableName(t, conn.supportsSchema), t.getDBName());
+			items.add(item);
+		}
+		return items.toString();
+	}
+
 	@Test
 	public void testDropUploadedTable(){
 		TAPTable tableDef = new TAPTable("TableToDrop");
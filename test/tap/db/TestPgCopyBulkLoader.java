@@ -0,0 +1,105 @@
+package tap.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import adql.translator.AstroH2Translator;
+import tap.data.TableIterator;
+import tap.data.VOTableIterator;
+import tap.metadata.TAPColumn;
+import tap.metadata.TAPMetadata.STDSchema;
+import tap.metadata.TAPSchema;
+import tap.metadata.TAPTable;
+
+public class TestPgCopyBulkLoader {
+
+	private final static String UPLOAD_EXAMPLE = "./test/tap/db/upload_example.vot";
+
+	private Connection h2Connection;
+	private JDBCConnection conn;
+	private InputStream input;
+
+	@Before
+	public void setUp() throws Exception{
+		Class.forName("org.h2.Driver");
+		h2Connection = DriverManager.getConnection("jdbc:h2:mem:pgCopy");
+		conn = new JDBCConnection(h2Connection, new AstroH2Translator(false), "H2", null);
+		input = new FileInputStream(UPLOAD_EXAMPLE);
+	}
+
+	@After
+	public void tearDown() throws Exception{
+		input.close();
+		h2Connection.close();
+	}
+
+	@Test
+	public void testAppendValue(){
+		StringBuilder buf = new StringBuilder();
+		PgCopyBulkLoader.appendValue(buf, null);
+		buf.append('|');
+		PgCopyBulkLoader.appendValue(buf, "a\tb\nc\\d\re");
+		buf.append('|');
+		PgCopyBulkLoader.appendValue(buf, 1.5);
+		buf.append('|');
+		PgCopyBulkLoader.appendValue(buf, new byte[]{0x01,(byte)0xAB});
+		buf.append('|');
+		PgCopyBulkLoader.appendValue(buf, new int[]{1,2,3});
+		buf.append('|');
+		PgCopyBulkLoader.appendValue(buf, new String[]{"a\"b",null});
+		assertEquals("\\N|a\\tb\\nc\\\\d\\re|1.5|\\\\x01ab|{1,2,3}|{\"a\\\\\"b\",NULL}", buf.toString());
+	}
+
+	@Test
+	public void testCopyReader() throws Exception{
+		TableIterator it = new VOTableIterator(input);
+		TAPColumn[] cols = it.getMetadata();
+		PgCopyBulkLoader.CopyReader reader = new PgCopyBulkLoader.CopyReader(conn, it, cols);
+
+		// Read the rows by small pieces, as the PostgreSQL driver would do:
+		StringBuilder copied = new StringBuilder();
+		char[] buffer = new char[7];
+		int len;
+		while((len = reader.read(buffer, 0, buffer.length)) >= 0)
+			copied.append(buffer, 0, len);
+
+		assertEquals(10, reader.nbRows);
+		String[] lines = copied.toString().split("\n");
+		assertEquals(10, lines.length);
+		for(String line : lines)
+			assertEquals(cols.length, line.split("\t", -1).length);
+		assertEquals("52.2671\t59.9403\ts\t2H  Cam\t21291\t1035\t4.23\t03 29 04.1\t+59 56 25\tB9Ia\t\\N\tSimbad", lines[0]);
+	}
+
+	@Test
+	public void testFallbackOnBatchUpdates() throws Exception{
+		// Not a PostgreSQL connection => nothing is read:
+		TableIterator it = new VOTableIterator(input);
+		TAPTable tableDef = new TAPTable("CopiedUpload");
+		for(TAPColumn c : it.getMetadata())
+			tableDef.addColumn(c);
+		new TAPSchema(STDSchema.UPLOADSCHEMA.label).addTable(tableDef);
+		assertEquals(-1, new PgCopyBulkLoader().load(conn, tableDef, it));
+
+		// ...so that the batch updates can insert all rows:
+		conn.setUploadBulkLoader(new PgCopyBulkLoader());
+		assertTrue(conn.addUploadedTable(tableDef, it));
+		Statement stmt = h2Connection.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + conn.translator.getTableName(tableDef, conn.supportsSchema));
+		assertTrue(rs.next());
+		assertEquals(10, rs.getInt(1));
+		stmt.close();
+	}
+
+}
@@ -0,0 +1,442 @@
+package tap.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import adql.db.DBType.DBDatatype;
+import adql.translator.AstroH2Translator;
+import tap.AbstractTAPFactory;
+import tap.ExecutionBudget;
+import tap.ServiceConnection.LimitUnit;
+import tap.TAPException;
+import tap.TAPFactory;
+import tap.data.CSVTableIterator;
+import tap.db.DBConnection;
+import tap.db.JDBCConnection;
+import tap.log.TAPLog;
+import tap.metadata.TAPSchema;
+import tap.metadata.TAPTable;
+import tap.parameters.DALIUpload;
+import tap.parameters.ServiceConnectionOfTest;
+import uk.ac.starlink.fits.FitsTableWriter;
+import uk.ac.starlink.table.StarTableFactory;
+import uk.ac.starlink.util.FileDataSource;
+import uws.service.file.LocalUWSFileManager;
+import uws.service.file.UWSFileManager;
+import uws.service.request.UploadFile;
+
+public class TestUploader {
+
+	private final static String DB_URL = "jdbc:h2:mem:uploader;DB_CLOSE_DELAY=-1";
+	private final static String UPLOAD_EXAMPLE = "./test/tap/db/upload_example.vot";
+
+	private Connection h2Connection;
+	private UploadService service;
+	private JDBCConnection dbConn;
+
+	@Before
+	public void setUp() throws Exception{
+		Class.forName("org.h2.Driver");
+		h2Connection = DriverManager.getConnection(DB_URL);
+		service = new UploadService();
+		dbConn = (JDBCConnection)service.getFactory().getConnection("job");
+	}
+
+	@After
+	public void tearDown() throws Exception{
+		dbConn.getInnerConnection().close();
+		Statement stmt = h2Connection.createStatement();
+		stmt.executeUpdate("DROP ALL OBJECTS");
+		stmt.close();
+		h2Connection.close();
+	}
+
+	@Test
+	public void testParallelUpload() throws Exception{
+		Uploader uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(3);
+		TAPSchema schema = uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE), upload("C", UPLOAD_EXAMPLE), upload("D", UPLOAD_EXAMPLE) });
+
+		// All tables are loaded...
+		assertEquals(4, schema.getNbTables());
+		assertEquals(4, countUploadedTables());
+		for(TAPTable t : schema)
+			assertEquals(10, countRows(t));
+
+		// ...through 2 additional connections, all freed:
+		assertEquals(2, service.factory.nbOpened);
+		assertEquals(2, service.factory.nbFreed);
+
+		// ...and all can be dropped with the connection of the uploader:
+		for(TAPTable t : schema)
+			assertTrue(dbConn.dropUploadedTable(t));
+		assertEquals(0, countUploadedTables());
+	}
+
+	@Test
+	public void testParallelUploadFailure() throws Exception{
+		// One table can not be read => all loaded tables must be dropped:
+		Uploader uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(2);
+		try{
+			uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE), upload("C", "./test/tap/upload/missing.vot") });
+			fail("This upload should have failed: one of the uploaded files does not exist!");
+		}catch(TAPException te){
+			assertEquals("IO error while reading the VOTable of \"C\"!", te.getMessage());
+		}
+		assertEquals(0, countUploadedTables());
+		assertEquals(service.factory.nbOpened, service.factory.nbFreed);
+
+		// Too many rows in all tables => all tables must be dropped:
+		service.uploadLimit = 5;
+		uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(2);
+		try{
+			uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE) });
+			fail("This upload should have failed: the uploaded tables have too many rows!");
+		}catch(TAPException te){
+			assertTrue(te.getMessage().endsWith("Data read overflow: the limit of 5 rows has been reached!"));
+		}
+		assertEquals(0, countUploadedTables());
+	}
+
+	@Test
+	public void testParallelUploadBudget() throws Exception{
+		// Only one more connection in the budget:
+		service.factory.budget = new ExecutionBudget(service, 2, -1, -1);
+		assertTrue(service.factory.budget.acquire("job", null));
+		Uploader uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(3);
+		TAPSchema schema = uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE), upload("C", UPLOAD_EXAMPLE) });
+		assertEquals(3, schema.getNbTables());
+		assertEquals(1, service.factory.nbOpened);
+		assertEquals(1, service.factory.nbFreed);
+		assertEquals(1, service.factory.budget.getUsedConnections());
+		for(TAPTable t : schema)
+			assertTrue(dbConn.dropUploadedTable(t));
+
+		// Budget exhausted => all tables loaded through the connection of the uploader:
+		service.factory.budget.release("job");
+		service.factory.budget = new ExecutionBudget(service, 1, -1, -1);
+		assertTrue(service.factory.budget.acquire("job", null));
+		uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(3);
+		schema = uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE) });
+		assertEquals(2, schema.getNbTables());
+		assertEquals(1, service.factory.nbOpened);
+		assertEquals(1, service.factory.budget.getUsedConnections());
+		for(TAPTable t : schema)
+			assertEquals(10, countRows(t));
+	}
+
+	@Test
+	public void testSequentialUpload() throws Exception{
+		// Temporary tables are always loaded one after another through the same connection:
+		dbConn.setUploadTableType(JDBCConnection.UploadTableType.TEMPORARY);
+		Uploader uploader = service.getFactory().createUploader(dbConn);
+		uploader.setParallelism(3);
+		TAPSchema schema = uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE), upload("B", UPLOAD_EXAMPLE) });
+		assertEquals(2, schema.getNbTables());
+		assertEquals(0, service.factory.nbOpened);
+		for(TAPTable t : schema)
+			assertTrue(dbConn.dropUploadedTable(t));
+	}
+
+	@Test
+	public void testUploadCache() throws Exception{
+		UploadCache cache = new UploadCache(-1, new File(UPLOAD_EXAMPLE).length(), false, null);
+
+		// First upload => the table is loaded and cached:
+		Uploader uploader = service.getFactory().createUploader(dbConn);
+		uploader.setCache(cache);
+		TAPTable first = uploader.upload(new DALIUpload[]{ upload("A", UPLOAD_EXAMPLE) }).getTable("A");
+		assertEquals(1, cache.getNbTables());
+		assertEquals(1, countUploadedTables());
+
+		// Same content with another label => the same table is reused:
+		Uploader uploader2 = service.getFactory().createUploader(dbConn);
+		uploader2.setCache(cache);
+		TAPTable second = uploader2.upload(new DALIUpload[]{ upload("B", UPLOAD_EXAMPLE) }).getTable("B");
+		assertEquals(first.getDBName(), second.getDBName());
+		assertEquals(1, countUploadedTables());
+		assertEquals(10, countRows(second));
+
+		// Cached tables must not be dropped at the end of the jobs:
+		assertTrue(uploader.releaseCachedTable(first));
+		assertTrue(uploader2.releaseCachedTable(second));
+		assertEquals(1, countUploadedTables());
+
+		// Another content (exceeding the cache size) => the unused table is dropped to make some space:
+		File other = File.createTempFile("upload", ".vot");
+		try{
+			FileOutputStream out = new FileOutputStream(other);
+			out.write(Files.readAllBytes(new File(UPLOAD_EXAMPLE).toPath()));
+			out.write('\n');
+			out.close();
+			uploader = service.getFactory().createUploader(dbConn);
+			uploader.setCache(cache);
+			TAPTable third = uploader.upload(new DALIUpload[]{ upload("C", other.getPath()) }).getTable("C");
+			assertEquals(0, cache.getNbTables());
+			assertEquals(1, countUploadedTables());
+			assertFalse(uploader.releaseCachedTable(third));
+			assertTrue(dbConn.dropUploadedTable(third));
+		}finally{
+			other.delete();
+		}
+
+		// Per-user cache => the uploads of an unknown user are not cached:
+		cache = new UploadCache(-1, -1, true, null);
+		uploader = service.getFactory().createUploader(dbConn);
+		uploader.setCache(cache);
+		TAPTable fourth = uploader.upload(new DALIUpload[]{ upload("D", UPLOAD_EXAMPLE) }).getTable("D");
+		assertEquals(0, cache.getNbTables());
+		assertFalse(uploader.releaseCachedTable(fourth));
+		assertTrue(dbConn.dropUploadedTable(fourth));
+		assertEquals(0, countUploadedTables());
+	}
+
+	@Test
+	public void testUploadFormats() throws Exception{
+		File csv = File.createTempFile("upload", ".csv"), tsv = File.createTempFile("upload", ".txt"), fits = File.createTempFile("upload", ".fits"), parquet = File.createTempFile("upload", ".parquet");
+		try{
+			Files.write(csv.toPath(), "id,ra,name\n1,10.5,a\n2,11.5,b\n".getBytes("UTF-8"));
+			Files.write(tsv.toPath(), "id\tname\n1\ta\n".getBytes("UTF-8"));
+			Files.write(parquet.toPath(), "PAR1....PAR1".getBytes("UTF-8"));
+			FileOutputStream out = new FileOutputStream(fits);
+			new FitsTableWriter().writeStarTable(new StarTableFactory().makeStarTable(new FileDataSource(new File(UPLOAD_EXAMPLE)), "votable"), out);
+			out.close();
+
+			// Formats identified by the first bytes (CSV and FITS) or the MIME type (TSV):
+			DALIUpload tsvUpload = upload("C", tsv.getPath());
+			tsvUpload.file.mimeType = "text/tab-separated-values; charset=UTF-8";
+			Uploader uploader = service.getFactory().createUploader(dbConn);
+			TAPSchema schema = uploader.upload(new DALIUpload[]{ upload("A", csv.getPath()), upload("B", fits.getPath()), tsvUpload });
+			assertEquals(2, countRows(schema.getTable("A")));
+			assertEquals(DBDatatype.BIGINT, schema.getTable("A").getColumn("id").getDatatype().type);
+			assertEquals(10, countRows(schema.getTable("B")));
+			assertEquals(1, countRows(schema.getTable("C")));
+			for(TAPTable t : schema)
+				assertTrue(dbConn.dropUploadedTable(t));
+
+			// Parquet is recognized but not supported:
+			try{
+				service.getFactory().createUploader(dbConn).upload(new DALIUpload[]{ upload("D", parquet.getPath()) });
+				fail("Parquet files can not be uploaded!");
+			}catch(TAPException te){
+				assertEquals("Unsupported format for the uploaded table \"D\": PARQUET! Only VOTable, FITS, CSV and TSV can be uploaded.", te.getMessage());
+			}
+			assertEquals(0, countUploadedTables());
+		}finally{
+			csv.delete();
+			tsv.delete();
+			fits.delete();
+			parquet.delete();
+		}
+	}
+
+	@Test
+	public void testCSVTypesFromAllRows() throws Exception{
+		File csv = File.createTempFile("upload", ".csv");
+		try{
+			// A decimal and a string after the first 1000 rows:
+			StringBuilder content = new StringBuilder("id,mag\n");
+			for(int i = 1; i <= CSVTableIterator.DEFAULT_SAMPLE_SIZE; i++)
+				content.append(i).append(',').append(i).append('\n');
+			content.append("1.5,N/A\n");
+			Files.write(csv.toPath(), content.toString().getBytes("UTF-8"));
+
+			// ...are taken into account because an uploaded file can be read twice:
+			TAPSchema schema = service.getFactory().createUploader(dbConn).upload(new DALIUpload[]{ upload("A", csv.getPath()) });
+			assertEquals(DBDatatype.DOUBLE, schema.getTable("A").getColumn("id").getDatatype().type);
+			assertEquals(DBDatatype.VARCHAR, schema.getTable("A").getColumn("mag").getDatatype().type);
+			assertEquals(CSVTableIterator.DEFAULT_SAMPLE_SIZE + 1, countRows(schema.getTable("A")));
+			assertTrue(dbConn.dropUploadedTable(schema.getTable("A")));
+		}finally{
+			csv.delete();
+		}
+	}
+
+	@Test
+	public void testTypeNarrowing() throws Exception{
+		File csv = File.createTempFile("upload", ".csv");
+		try{
+			Files.write(csv.toPath(), "id,obs_date,code\n1,2020-01-01T00:00:00,A7\n2,2021-05-06,B12\n".getBytes("UTF-8"));
+
+			// Declared (or inferred) types by default:
+			Uploader uploader = service.getFactory().createUploader(dbConn);
+			TAPSchema schema = uploader.upload(new DALIUpload[]{ upload("A", csv.getPath()) });
+			assertEquals(DBDatatype.VARCHAR, schema.getTable("A").getColumn("obs_date").getDatatype().type);
+			for(TAPTable t : schema)
+				assertTrue(dbConn.dropUploadedTable(t));
+
+			// Narrowed types if asked:
+			uploader = service.getFactory().createUploader(dbConn);
+			uploader.setTypeNarrowingSample(10);
+			schema = uploader.upload(new DALIUpload[]{ upload("B", csv.getPath()) });
+			assertEquals(2, countRows(schema.getTable("B")));
+			assertEquals(DBDatatype.BIGINT, schema.getTable("B").getColumn("id").getDatatype().type);
+			assertEquals(DBDatatype.TIMESTAMP, schema.getTable("B").getColumn("obs_date").getDatatype().type);
+			assertEquals(DBDatatype.VARCHAR, schema.getTable("B").getColumn("code").getDatatype().type);
+			for(TAPTable t : schema)
+				assertTrue(dbConn.dropUploadedTable(t));
+
+			// All rows of a stored file are checked, even beyond the sample:
+			Files.write(csv.toPath(), "id,obs_date\n1,2020-01-01\n2,2021-05-06\n3,unknown\n".getBytes("UTF-8"));
+			uploader = service.getFactory().createUploader(dbConn);
+			uploader.setTypeNarrowingSample(1);
+			schema = uploader.upload(new DALIUpload[]{ upload("C", csv.getPath()) });
+			assertEquals(3, countRows(schema.getTable("C")));
+			assertEquals(DBDatatype.BIGINT, schema.getTable("C").getColumn("id").getDatatype().type);
+			assertEquals(DBDatatype.VARCHAR, schema.getTable("C").getColumn("obs_date").getDatatype().type);
+			for(TAPTable t : schema)
+				assertTrue(dbConn.dropUploadedTable(t));
+		}finally{
+			csv.delete();
+		}
+	}
+
+	@Test
+	public void testFileURI() throws Exception{
+		URI uri = new File(UPLOAD_EXAMPLE).getAbsoluteFile().toURI();
+
+		// By default, a "file" URI is forbidden:
+		try{
+			new DALIUpload("A", uri, service.getFileManager());
+			fail("A file URI should be forbidden by default!");
+		}catch(IllegalArgumentException iae){
+			assertEquals("Wrong URI scheme: \"file\" is forbidden!", iae.getMessage());
+		}
+
+		// ...unless the file manager allows some directories:
+		LocalUWSFileManager fileManager = (LocalUWSFileManager)service.getFileManager();
+		assertTrue(fileManager.getURIFetcher().addAllowedDirectory(new File(UPLOAD_EXAMPLE).getAbsoluteFile().getParentFile()));
+		try{
+			TAPSchema schema = service.getFactory().createUploader(dbConn).upload(new DALIUpload[]{ new DALIUpload("A", uri, fileManager) });
+			assertEquals(10, countRows(schema.getTable("A")));
+			assertTrue(dbConn.dropUploadedTable(schema.getTable("A")));
+		}finally{
+			fileManager.setURIFetcher(null);
+		}
+	}
+
+	private DALIUpload upload(final String label, final String path){
+		return new DALIUpload(label, new UploadFile(label, new File(path).getAbsolutePath(), service.getFileManager()));
+	}
+
+	private int countUploadedTables() throws SQLException{
+		Statement stmt = h2Connection.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'TAP_UPLOAD'");
+			rs.next();
+			return rs.getInt(1);
+		}finally{
+			stmt.close();
+		}
+	}
+
+	private int countRows(final TAPTable table) throws SQLException{
+		Statement stmt = h2Connection.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM TAP_UPLOAD." + table.getDBName().toUpperCase());
+			rs.next();
+			return rs.getInt(1);
+		}finally{
+			stmt.close();
+		}
+	}
+
+	private static class UploadService extends ServiceConnectionOfTest {
+		private final UploadFactory factory = new UploadFactory(this);
+		private final UWSFileManager fileManager;
+		private long uploadLimit = -1;
+
+		public UploadService() throws Exception{
+			fileManager = new LocalUWSFileManager(new File(System.getProperty("java.io.tmpdir")));
+		}
+
+		@Override
+		public boolean uploadEnabled(){
+			return true;
+		}
+
+		@Override
+		public long[] getUploadLimit(){
+			return new long[]{ uploadLimit, uploadLimit };
+		}
+
+		@Override
+		public LimitUnit[] getUploadLimitType(){
+			return new LimitUnit[]{ LimitUnit.rows, LimitUnit.rows };
+		}
+
+		@Override
+		public TAPLog getLogger(){
+			return null;
+		}
+
+		@Override
+		public TAPFactory getFactory(){
+			return factory;
+		}
+
+		@Override
+		public UWSFileManager getFileManager(){
+			return fileManager;
+		}
+	}
+
+	private static class UploadFactory extends AbstractTAPFactory {
+		private int nbOpened = -1;
+		private int nbFreed = 0;
+		private ExecutionBudget budget = null;
+
+		public UploadFactory(final UploadService service){
+			super(service);
+		}
+
+		@Override
+		public synchronized DBConnection getConnection(final String jobID) throws TAPException{
+			try{
+				nbOpened++;
+				return new JDBCConnection(DriverManager.getConnection(DB_URL), new AstroH2Translator(false), jobID, null);
+			}catch(SQLException se){
+				throw new TAPException(se);
+			}
+		}
+
+		@Override
+		public synchronized void freeConnection(final DBConnection conn){
+			try{
+				nbFreed++;
+				((JDBCConnection)conn).getInnerConnection().close();
+			}catch(SQLException se){
+				se.printStackTrace();
+			}
+		}
+
+		@Override
+		public ExecutionBudget getExecutionBudget(){
+			return budget;
+		}
+
+		@Override
+		public void destroy(){}
+	}
+
+}
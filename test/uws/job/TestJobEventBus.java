@@ -0,0 +1,192 @@
+package uws.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.JobEventBus.OverflowPolicy;
+import uws.job.JobEventBus.Subscription;
+import uws.job.parameters.UWSParameters;
+
+public class TestJobEventBus {
+
+	private JobEventBus bus;
+
+	@Before
+	public void setUp(){
+		bus = new JobEventBus("TEST_EVENT_BUS");
+	}
+
+	@After
+	public void tearDown(){
+		bus.shutdown();
+	}
+
+	@Test
+	public void testAsynchronousOrderedDelivery() throws Exception{
+		SlowObserver slow = new SlowObserver(0);
+		Subscription sub = bus.subscribe(slow);
+		UWSJob job1 = new UWSJob(new UWSParameters()), job2 = new UWSJob(new UWSParameters());
+		job1.addObserver(sub);
+		job2.addObserver(sub);
+
+		// A blocked observer does not block the phase changes:
+		slow.block();
+		job1.setPhase(ExecutionPhase.QUEUED, true);
+		slow.waitForBlocked();
+		job2.setPhase(ExecutionPhase.QUEUED, true);
+		job1.setPhase(ExecutionPhase.EXECUTING, true);
+		job1.addResult(new Result("r1", "simple", "http://example.org/r1", false));
+		job2.setPhase(ExecutionPhase.EXECUTING, true);
+		job1.setPhase(ExecutionPhase.COMPLETED, true);
+		assertEquals("", slow.toString());
+		assertEquals(5, sub.getQueueDepth());
+		Thread.sleep(100);
+		slow.unblock();
+
+		// All events are delivered in order:
+		slow.waitFor(6);
+		assertEquals(job1.getJobId() + ":PENDING>QUEUED," + job2.getJobId() + ":PENDING>QUEUED," + job1.getJobId() + ":QUEUED>EXECUTING," + job1.getJobId() + ":result r1," + job2.getJobId() + ":QUEUED>EXECUTING," + job1.getJobId() + ":EXECUTING>COMPLETED", slow.toString());
+		assertEquals(6, sub.getNbDispatched());
+		assertEquals(0, sub.getQueueDepth());
+		assertEquals(5, sub.getMaxQueueDepth());
+		// all events waited at least while the observer was blocked:
+		assertTrue(sub.getMeanDispatchLatency() >= 100);
+		assertTrue(sub.getMaxDispatchLatency() >= 100);
+		assertEquals(6, bus.getNbDispatched());
+		assertEquals(0, bus.getQueueDepth());
+	}
+
+	@Test
+	public void testOverflowPolicies() throws Exception{
+		// DROP_NEWEST:
+		SlowObserver slow = new SlowObserver(0);
+		Subscription sub = bus.subscribe(slow, 2, OverflowPolicy.DROP_NEWEST);
+		UWSJob job = fill(sub, slow);
+		slow.waitFor(3);
+		assertEquals(job.getJobId() + ":PENDING>QUEUED," + job.getJobId() + ":QUEUED>EXECUTING," + job.getJobId() + ":EXECUTING>HELD", slow.toString());
+		assertEquals(3, sub.getNbDropped());
+
+		// DROP_OLDEST:
+		slow = new SlowObserver(0);
+		sub = bus.subscribe(slow, 2, OverflowPolicy.DROP_OLDEST);
+		job = fill(sub, slow);
+		slow.waitFor(3);
+		assertEquals(job.getJobId() + ":PENDING>QUEUED," + job.getJobId() + ":SUSPENDED>EXECUTING," + job.getJobId() + ":EXECUTING>COMPLETED", slow.toString());
+		assertEquals(3, sub.getNbDropped());
+
+		// COALESCE:
+		slow = new SlowObserver(0);
+		sub = bus.subscribe(slow, 2, OverflowPolicy.COALESCE);
+		job = fill(sub, slow);
+		slow.waitFor(3);
+		assertEquals(job.getJobId() + ":PENDING>QUEUED," + job.getJobId() + ":QUEUED>EXECUTING," + job.getJobId() + ":EXECUTING>COMPLETED", slow.toString());
+		assertEquals(0, sub.getNbDropped());
+		assertEquals(3, sub.getNbCoalesced());
+		assertEquals(6, bus.getNbDropped());
+		assertEquals(3, bus.getNbCoalesced());
+	}
+
+	/**
+	 * Block the delivery on the first phase change of a new job, and meanwhile
+	 * change 5 more times its phase with a queue of 2 events.
+	 */
+	private static UWSJob fill(final Subscription sub, final SlowObserver slow) throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		job.addObserver(sub);
+		slow.block();
+		job.setPhase(ExecutionPhase.QUEUED, true);
+		slow.waitForBlocked();
+		job.setPhase(ExecutionPhase.EXECUTING, true);
+		job.setPhase(ExecutionPhase.HELD, true);
+		job.setPhase(ExecutionPhase.SUSPENDED, true);
+		job.setPhase(ExecutionPhase.EXECUTING, true);
+		job.setPhase(ExecutionPhase.COMPLETED, true);
+		assertEquals(2, sub.getQueueDepth());
+		slow.unblock();
+		return job;
+	}
+
+	/** Observer recording the events it receives, after a given delay. */
+	private static class SlowObserver implements JobEventObserver {
+		private static final long serialVersionUID = 1L;
+
+		private final long delay;
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		private volatile CountDownLatch blocked = null;
+		private volatile CountDownLatch release = null;
+
+		public SlowObserver(final long delay){
+			this.delay = delay;
+		}
+
+		public void block(){
+			blocked = new CountDownLatch(1);
+			release = new CountDownLatch(1);
+		}
+
+		public void waitForBlocked() throws InterruptedException{
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		}
+
+		public void unblock(){
+			release.countDown();
+		}
+
+		public void waitFor(final int nbEvents) throws InterruptedException{
+			long end = System.currentTimeMillis() + 5000;
+			while(events.size() < nbEvents && System.currentTimeMillis() < end)
+				Thread.sleep(10);
+			Thread.sleep(50);
+			assertEquals(nbEvents, events.size());
+		}
+
+		private void received(final String event){
+			try{
+				if (release != null){
+					blocked.countDown();
+					release.await(5, TimeUnit.SECONDS);
+					release = null;
+				}
+				Thread.sleep(delay);
+			}catch(InterruptedException ie){}
+			events.add(event);
+		}
+
+		@Override
+		public void update(final UWSJob job, final ExecutionPhase oldPhase, final ExecutionPhase newPhase) throws UWSException{
+			received(job.getJobId() + ":" + oldPhase + ">" + newPhase);
+		}
+
+		@Override
+		public void resultAdded(final UWSJob job, final Result result) throws UWSException{
+			received(job.getJobId() + ":result " + result.getId());
+		}
+
+		@Override
+		public void parameterChanged(final UWSJob job, final String name, final Object newValue) throws UWSException{
+			received(job.getJobId() + ":" + name + "=" + newValue);
+		}
+
+		@Override
+		public String toString(){
+			StringBuffer buf = new StringBuffer();
+			synchronized(events){
+				for(String e : events)
+					buf.append((buf.length() > 0) ? "," : "").append(e);
+			}
+			return buf.toString();
+		}
+	}
+
+}
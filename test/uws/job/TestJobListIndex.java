@@ -0,0 +1,253 @@
+package uws.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.parameters.UWSParameters;
+import uws.job.serializer.XMLSerializer;
+import uws.job.serializer.filter.JobListRefiner;
+import uws.job.user.JobOwner;
+
+public class TestJobListIndex {
+
+	private final List<UWSJob> jobs = new ArrayList<UWSJob>();
+	private JobListIndex index;
+	private JobList list;
+
+	@Before
+	public void setUp() throws Exception{
+		jobs.clear();
+		index = new JobListIndex();
+		ExecutionPhase[] phases = new ExecutionPhase[]{ExecutionPhase.PENDING, ExecutionPhase.EXECUTING, ExecutionPhase.COMPLETED, ExecutionPhase.ARCHIVED, ExecutionPhase.EXECUTING};
+		for(int i = 0; i < 50; i++){
+			UWSJob job = new UWSJob("job" + i, (new GregorianCalendar(2020, 0, 1 + (i / 2), i % 2, 0)).getTimeInMillis(), null, new UWSParameters(), -1, -1, -1, null, null);
+			job.setPhase(phases[i % phases.length], true);
+			jobs.add(job);
+			index.add(job);
+		}
+
+		// A jobs list whose the index is the one built here:
+		list = new JobList("test"){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterator<UWSJob> getJobs(JobOwner user){
+				return jobs.iterator();
+			}
+
+			@Override
+			public JobListIndex getIndex(JobOwner user){
+				return TestJobListIndex.this.index;
+			}
+		};
+	}
+
+	@Test
+	public void testAddRemoveAndUpdate() throws Exception{
+		assertEquals(50, index.size());
+		assertEquals(20, index.size(ExecutionPhase.EXECUTING));
+
+		// Adding twice the same job has no effect:
+		index.add(jobs.get(0));
+		assertEquals(50, index.size());
+
+		// Change of phase:
+		UWSJob job = jobs.get(0);
+		job.setPhase(ExecutionPhase.EXECUTING, true);
+		index.updatePhase(job);
+		assertEquals(21, index.size(ExecutionPhase.EXECUTING));
+		assertEquals(9, index.size(ExecutionPhase.PENDING));
+
+		// Removal:
+		index.remove(job);
+		assertEquals(49, index.size());
+		assertEquals(20, index.size(ExecutionPhase.EXECUTING));
+		index.remove(job);
+		assertEquals(49, index.size());
+	}
+
+	@Test
+	public void testSelect() throws Exception{
+		// LAST 3 EXECUTING jobs, by descending creation time:
+		Iterator<UWSJob> it = index.select(Arrays.asList(ExecutionPhase.EXECUTING), null, 3);
+		assertEquals("job49", it.next().getJobId());
+		assertEquals("job46", it.next().getJobId());
+		assertEquals("job44", it.next().getJobId());
+		assertFalse(it.hasNext());
+
+		// Jobs having the same creation time are all kept:
+		UWSJob twin = new UWSJob("aTwin", jobs.get(49).getCreationTime().getTime(), null, new UWSParameters(), -1, -1, -1, null, null);
+		twin.setPhase(ExecutionPhase.EXECUTING, true);
+		index.add(twin);
+		it = index.select(Arrays.asList(ExecutionPhase.EXECUTING), null, 2);
+		assertEquals("aTwin", it.next().getJobId());
+		assertEquals("job49", it.next().getJobId());
+		index.remove(twin);
+
+		// Several phases + AFTER:
+		it = index.select(Arrays.asList(ExecutionPhase.PENDING, ExecutionPhase.COMPLETED), (new GregorianCalendar(2020, 0, 21)).getTime(), -1);
+		List<String> ids = new ArrayList<String>();
+		while(it.hasNext())
+			ids.add(it.next().getJobId());
+		assertEquals(Arrays.asList("job47", "job45", "job42"), ids);
+	}
+
+	@Test
+	public void testRefineWithIndex() throws Exception{
+		String[][] queries = new String[][]{{},{"PHASE","EXECUTING"},{"PHASE","EXECUTING","LAST","10"},{"PHASE","ARCHIVED","PHASE","PENDING","LAST","4"},{"AFTER","2020-01-10T00:00:00Z"},{"AFTER","2020-01-10T00:00:00Z","LAST","5"},{"PHASE","COMPLETED","AFTER","2020-01-10T00:00:00Z","LAST","0"}};
+		for(String[] q : queries){
+			JobListRefiner refiner = new JobListRefiner(request(q));
+
+			// Result without index:
+			List<String> expected = new ArrayList<String>();
+			Iterator<UWSJob> it = refiner.refine(jobs.iterator());
+			while(it.hasNext())
+				expected.add(it.next().getJobId());
+
+			// Result with the index:
+			List<String> actual = new ArrayList<String>();
+			it = refiner.refine(list, null);
+			while(it.hasNext())
+				actual.add(it.next().getJobId());
+
+			// Without LAST, the order is not imposed:
+			if (!Arrays.asList(q).contains("LAST")){
+				Collections.sort(expected);
+				Collections.sort(actual);
+			}
+			assertEquals(Arrays.toString(q), expected, actual);
+		}
+	}
+
+	@Test
+	public void testPagination() throws Exception{
+		String[][] queries = new String[][]{{"MAXJOBS","7"},{"PHASE","EXECUTING","MAXJOBS","3"},{"AFTER","2020-01-10T00:00:00Z","MAXJOBS","4"},{"LAST","10","MAXJOBS","4"},{"LAST","8","MAXJOBS","4"},{"MAXJOBS","100"}};
+		for(String[] q : queries){
+			// Expected result (one page with all jobs, in the pagination order):
+			List<String> expected = new ArrayList<String>();
+			List<String> params = new ArrayList<String>(Arrays.asList(q));
+			int maxIndex = params.indexOf("MAXJOBS");
+			params.remove(maxIndex + 1);
+			params.remove(maxIndex);
+			JobListRefiner refiner = new JobListRefiner(request(params.toArray(new String[0])));
+			List<UWSJob> filtered = new ArrayList<UWSJob>();
+			Iterator<UWSJob> it = refiner.refine(jobs.iterator());
+			while(it.hasNext())
+				filtered.add(it.next());
+			Collections.sort(filtered, new JobListRefiner.JobKeyComparator());
+			for(UWSJob j : filtered)
+				expected.add(j.getJobId());
+
+			// Read all pages, with and without the index:
+			for(boolean withIndex : new boolean[]{true,false}){
+				List<String> actual = new ArrayList<String>();
+				String cursor = null;
+				int nbPages = 0;
+				do{
+					List<String> pageParams = new ArrayList<String>(Arrays.asList(q));
+					if (cursor != null){
+						pageParams.add("CURSOR");
+						pageParams.add(cursor);
+					}
+					refiner = new JobListRefiner(request(pageParams.toArray(new String[0])));
+					it = withIndex ? refiner.refine(list, null) : refiner.refine(jobs.iterator());
+					int pageSize = 0;
+					while(it.hasNext()){
+						actual.add(it.next().getJobId());
+						pageSize++;
+					}
+					assertTrue(pageSize <= Integer.parseInt(q[maxIndex + 1]));
+					cursor = refiner.getNextCursor();
+					if (cursor != null)
+						assertTrue(refiner.getNextPageURL(null).endsWith("MAXJOBS=" + q[maxIndex + 1] + "&CURSOR=" + cursor));
+					nbPages++;
+				}while(cursor != null && nbPages < 100);
+				assertEquals(Arrays.toString(q), expected, actual);
+			}
+		}
+
+		// Incorrect cursor:
+		try{
+			new JobListRefiner(request(new String[]{"CURSOR","foo"}));
+			fail("An incorrect cursor should be rejected!");
+		}catch(UWSException ue){
+			assertEquals(UWSException.BAD_REQUEST, ue.getHttpErrorCode());
+		}
+	}
+
+	@Test
+	public void testPreparePage() throws Exception{
+		// No pagination => nothing prepared:
+		JobListRefiner refiner = new JobListRefiner(request(new String[]{"PHASE","EXECUTING"}));
+		assertFalse(refiner.preparePage(list, null));
+		assertNull(refiner.getNextCursor());
+
+		// Pagination => the next page is known before reading the jobs:
+		refiner = new JobListRefiner(request(new String[]{"MAXJOBS","3"}));
+		assertTrue(refiner.preparePage(list, null));
+		String cursor = refiner.getNextCursor();
+		assertNotNull(cursor);
+		List<String> page = new ArrayList<String>();
+		Iterator<UWSJob> it = refiner.refine(list, null);
+		while(it.hasNext())
+			page.add(it.next().getJobId());
+		assertEquals(3, page.size());
+		assertEquals(cursor, refiner.getNextCursor());
+
+		// ...and the prepared page is the one serialized (without any link to the next page in XML):
+		StringWriter xml = new StringWriter();
+		new XMLSerializer().writeJobList(xml, list, null, refiner, true);
+		for(String jobId : page)
+			assertTrue(xml.toString().contains("id=\"" + jobId + "\""));
+		assertEquals(3, xml.toString().split("<jobref ").length - 1);
+		assertFalse(xml.toString().contains("<next"));
+		assertFalse(xml.toString().contains(cursor));
+	}
+
+	/**
+	 * Build an HTTP request having only the given parameters.
+	 */
+	private static HttpServletRequest request(final String[] params){
+		final Map<String,List<String>> map = new HashMap<String,List<String>>();
+		for(int i = 0; i + 1 < params.length; i += 2){
+			if (!map.containsKey(params[i]))
+				map.put(params[i], new ArrayList<String>());
+			map.get(params[i]).add(params[i + 1]);
+		}
+		return (HttpServletRequest)Proxy.newProxyInstance(TestJobListIndex.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler(){
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable{
+				if (method.getName().equals("getParameterNames"))
+					return Collections.enumeration(map.keySet());
+				else if (method.getName().equals("getParameterValues"))
+					return map.get(args[0]).toArray(new String[0]);
+				else
+					return null;
+			}
+		});
+	}
+
+}
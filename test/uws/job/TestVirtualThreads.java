@@ -0,0 +1,150 @@
+package uws.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.parameters.UWSParameters;
+import uws.service.AbstractUWSFactory;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+import uws.service.file.LocalUWSFileManager;
+
+public class TestVirtualThreads {
+
+	@After
+	public void tearDown() throws Exception{
+		VirtualThreads.setEnabled(false);
+	}
+
+	private static boolean isJava21(){
+		try{
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		}catch(NoSuchMethodException nsme){
+			return false;
+		}
+	}
+
+	@Test
+	public void testIsSupported(){
+		assertEquals(isJava21(), VirtualThreads.isSupported());
+	}
+
+	@Test
+	public void testDisabled() throws Exception{
+		VirtualThreads.setEnabled(false);
+		assertFalse(VirtualThreads.isEnabled());
+
+		// No virtual thread can be created:
+		assertNull(VirtualThreads.newVirtualThread("test", new Runnable(){
+			@Override
+			public void run(){}
+		}));
+
+		// A thread is started as a platform thread instead:
+		Thread t = new Thread(JobThread.tg, new Runnable(){
+			@Override
+			public void run(){}
+		}, "test");
+		Thread runner = VirtualThreads.start(t);
+		assertSame(t, runner);
+		assertEquals(JobThread.tg, runner.getThreadGroup());
+		assertFalse(VirtualThreads.isVirtual(runner));
+		runner.join(1000);
+	}
+
+	@Test
+	public void testEnabled() throws Exception{
+		VirtualThreads.setEnabled(true);
+		assertEquals(VirtualThreads.isSupported(), VirtualThreads.isEnabled());
+
+		// A thread interrupted while sleeping:
+		final boolean[] interrupted = new boolean[]{false};
+		Thread t = new Thread("toInterrupt"){
+			@Override
+			public void run(){
+				try{
+					Thread.sleep(10000);
+				}catch(InterruptedException ie){
+					interrupted[0] = true;
+				}
+			}
+		};
+		Thread runner = VirtualThreads.start(t);
+		assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(runner));
+		assertTrue(runner.isAlive());
+
+		// Interrupt all virtual threads (or directly the platform thread):
+		if (VirtualThreads.isVirtual(runner))
+			VirtualThreads.interruptAll();
+		else
+			runner.interrupt();
+		runner.join(1000);
+		assertFalse(runner.isAlive());
+		assertTrue(interrupted[0]);
+	}
+
+	@Test
+	public void testAbortVirtualJob() throws Exception{
+		VirtualThreads.setEnabled(true);
+		File root = UWSServiceOfTest.createTmpDirectory("uwsVirtualThreads");
+		try{
+			final boolean[] interrupted = new boolean[]{false};
+			final Thread[] executor = new Thread[1];
+			final JobThread[] jobThread = new JobThread[1];
+			final CountDownLatch started = new CountDownLatch(1);
+
+			// A job whose the execution lasts until it is interrupted:
+			JobList jl = new JobList("jl");
+			UWSService uws = UWSServiceOfTest.createUWS(new AbstractUWSFactory(){
+				@Override
+				public JobThread createJobThread(final UWSJob jobDescription) throws UWSException{
+					jobThread[0] = new JobThread(jobDescription){
+						@Override
+						protected void jobWork() throws UWSException, InterruptedException{
+							executor[0] = Thread.currentThread();
+							started.countDown();
+							try{
+								Thread.sleep(10000);
+							}catch(InterruptedException ie){
+								interrupted[0] = true;
+								throw ie;
+							}
+						}
+					};
+					return jobThread[0];
+				}
+			}, new LocalUWSFileManager(root, false, false), jl);
+			UWSJob job = new UWSJob(new UWSParameters());
+			jl.addNewJob(job);
+			job.start();
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			assertEquals(ExecutionPhase.EXECUTING, job.getPhase());
+			assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(executor[0]));
+			assertTrue(jobThread[0].isActive());
+
+			// The abortion interrupts the thread actually running the job:
+			job.abort();
+			jobThread[0].waitForEnd(1000);
+			assertTrue(interrupted[0]);
+			assertEquals(ExecutionPhase.ABORTED, job.getPhase());
+			assertFalse(jobThread[0].isActive());
+
+			uws.destroy();
+		}finally{
+			UWSServiceOfTest.delete(root);
+		}
+	}
+
+}
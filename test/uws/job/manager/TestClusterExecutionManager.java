@@ -0,0 +1,314 @@
+package uws.job.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.h2.tools.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.JobThread;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.service.AbstractUWSFactory;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+import uws.service.backup.JDBCJobStore;
+import uws.service.file.LocalUWSFileManager;
+
+public class TestClusterExecutionManager {
+
+	private final static long LEASE = 900;
+
+	private final static long TIMEOUT = 20000;
+
+	/** Node executing each job (the last one if executed several times). */
+	private final static Map<String,String> executedBy = new ConcurrentHashMap<String,String>();
+
+	/** Jobs whose the execution has been interrupted. */
+	private final static Set<String> interrupted = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+	/** Jobs allowed to complete. */
+	private final static Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+	/** Tells whether the job executions must be reported on the standard
+	 * output (i.e. when running as the remote node, see {@link #main(String[])}). */
+	private static boolean remote = false;
+
+	private File root;
+	private Server h2Server;
+	private String url;
+	private Process remoteNode;
+	private Writer remoteInput;
+	private final AtomicBoolean remoteReady = new AtomicBoolean(false);
+
+	@Before
+	public void setUp() throws Exception{
+		root = UWSServiceOfTest.createTmpDirectory("uwsCluster");
+		h2Server = Server.createTcpServer("-tcpPort", String.valueOf(getFreePort()), "-baseDir", root.getAbsolutePath(), "-tcpDaemon").start();
+		url = "jdbc:h2:tcp://localhost:" + h2Server.getPort() + "/uws";
+		executedBy.clear();
+		interrupted.clear();
+		completed.clear();
+	}
+
+	@After
+	public void tearDown() throws Exception{
+		if (remoteNode != null){
+			remoteNode.destroyForcibly();
+			remoteNode.waitFor();
+		}
+		h2Server.stop();
+		UWSServiceOfTest.delete(root);
+	}
+
+	@Test
+	public void testTwoNodes() throws Exception{
+		// One node in this JVM, and the other one in another JVM:
+		UWSService node1 = createNode("node1", url, root);
+		startRemoteNode("node2");
+		JobList jl1 = node1.getJobList("jl");
+		assertTrue(jl1.isJobStoreShared());
+
+		// Two jobs submitted to the first node are distributed on both nodes:
+		String[] ids = new String[2];
+		ids[0] = submit(jl1);
+		ids[1] = submit(jl1);
+		waitFor(ids[0], ExecutionPhase.EXECUTING, jl1);
+		waitFor(ids[1], ExecutionPhase.EXECUTING, jl1);
+		waitUntil(new Condition(){
+			@Override
+			boolean test(){
+				return executedBy.size() == 2;
+			}
+		});
+		assertFalse(executedBy.get(ids[0]).equals(executedBy.get(ids[1])));
+		assertEquals(1, jl1.getExecutionManager().getNbRunningJobs());
+		String onNode2 = "node2".equals(executedBy.get(ids[0])) ? ids[0] : ids[1];
+		String onNode1 = (onNode2 == ids[0]) ? ids[1] : ids[0];
+
+		// Aborting from the first node a job running on the second one stops its execution:
+		jl1.getJob(onNode2).abort();
+		waitUntil(interrupted, onNode2);
+		waitFor(onNode2, ExecutionPhase.ABORTED, jl1);
+
+		// The completion and the results of a job executed by the other node are visible here:
+		String id = submit(jl1);
+		waitUntilExecutedBy(id, "node2");
+		completeRemotely(id);
+		waitFor(id, ExecutionPhase.COMPLETED, jl1);
+		assertEquals(1, jl1.getJob(id).getNbResults());
+		assertNotNull(jl1.getJob(id).getResult("r1"));
+
+		// A job of a killed node is executed by the other one once its lease has expired:
+		id = submit(jl1);
+		waitUntilExecutedBy(id, "node2");
+		remoteNode.destroyForcibly();
+		remoteNode.waitFor();
+		remoteNode = null;
+		completed.add(onNode1);
+		waitFor(onNode1, ExecutionPhase.COMPLETED, jl1);
+		waitUntilExecutedBy(id, "node1");
+		assertEquals(ExecutionPhase.EXECUTING, jl1.getJob(id).getPhase());
+		completed.add(id);
+		waitFor(id, ExecutionPhase.COMPLETED, jl1);
+		assertEquals(0, jl1.getExecutionManager().getNbQueuedJobs());
+
+		// Destroyed jobs leave the queue and the store:
+		assertTrue(jl1.destroyJob(id));
+		assertNull(jl1.getJob(id));
+		node1.destroy();
+	}
+
+	/**
+	 * Run a node of the cluster tested by {@link #testTwoNodes()}.
+	 *
+	 * <p>
+	 * 	The start and interruption of job executions are written on the
+	 * 	standard output ("EXECUTING jobId" and "INTERRUPTED jobId"). Each line
+	 * 	"COMPLETE jobId" read on the standard input allows the execution of
+	 * 	the given job to complete.
+	 * </p>
+	 *
+	 * @param args	URL of the shared database, root directory and node ID.
+	 */
+	public static void main(String[] args) throws Exception{
+		remote = true;
+		UWSService uws = createNode(args[2], args[0], new File(args[1]));
+		report("READY", "");
+		BufferedReader input = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+		String line;
+		while((line = input.readLine()) != null){
+			if (line.startsWith("COMPLETE "))
+				completed.add(line.substring("COMPLETE ".length()));
+		}
+		uws.destroy();
+		System.exit(0);
+	}
+
+	private void startRemoteNode(final String nodeId) throws Exception{
+		ProcessBuilder builder = new ProcessBuilder(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath(), "-cp", System.getProperty("java.class.path"), TestClusterExecutionManager.class.getName(), url, root.getAbsolutePath(), nodeId);
+		builder.redirectErrorStream(true);
+		remoteNode = builder.start();
+		remoteInput = new OutputStreamWriter(remoteNode.getOutputStream(), "UTF-8");
+
+		// Read what the remote node reports:
+		final BufferedReader output = new BufferedReader(new InputStreamReader(remoteNode.getInputStream(), "UTF-8"));
+		Thread reader = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				try{
+					String line;
+					while((line = output.readLine()) != null){
+						if (line.equals("READY"))
+							remoteReady.set(true);
+						else if (line.startsWith("EXECUTING "))
+							executedBy.put(line.substring("EXECUTING ".length()), nodeId);
+						else if (line.startsWith("INTERRUPTED "))
+							interrupted.add(line.substring("INTERRUPTED ".length()));
+					}
+				}catch(IOException ioe){
+					// the remote node has been killed
+				}
+			}
+		}, "RemoteNode-" + nodeId);
+		reader.setDaemon(true);
+		reader.start();
+
+		waitUntil(new Condition(){
+			@Override
+			boolean test(){
+				return remoteReady.get();
+			}
+		});
+	}
+
+	private void completeRemotely(final String jobId) throws IOException{
+		remoteInput.write("COMPLETE " + jobId + "\n");
+		remoteInput.flush();
+	}
+
+	private static synchronized void report(final String event, final String jobId){
+		System.out.println(jobId.isEmpty() ? event : event + " " + jobId);
+		System.out.flush();
+	}
+
+	private static int getFreePort() throws IOException{
+		ServerSocket socket = new ServerSocket(0);
+		try{
+			return socket.getLocalPort();
+		}finally{
+			socket.close();
+		}
+	}
+
+	private static void waitUntilExecutedBy(final String jobId, final String nodeId) throws InterruptedException{
+		waitUntil(new Condition(){
+			@Override
+			boolean test(){
+				return nodeId.equals(executedBy.get(jobId));
+			}
+		});
+	}
+
+	private static String submit(final JobList jl) throws UWSException{
+		UWSJob job = new UWSJob(new UWSParameters());
+		String id = jl.addNewJob(job);
+		job.start();
+		return id;
+	}
+
+	private static void waitFor(final String jobId, final ExecutionPhase phase, final JobList... lists) throws InterruptedException{
+		long end = System.currentTimeMillis() + TIMEOUT;
+		for(JobList jl : lists){
+			while(jl.getJob(jobId) == null || jl.getJob(jobId).getPhase() != phase){
+				assertTrue("Job " + jobId + " still not " + phase + "!", System.currentTimeMillis() < end);
+				Thread.sleep(20);
+			}
+		}
+	}
+
+	private static void waitUntil(final Set<String> set, final String jobId) throws InterruptedException{
+		waitUntil(new Condition(){
+			@Override
+			boolean test(){
+				return set.contains(jobId);
+			}
+		});
+	}
+
+	private static void waitUntil(final Condition condition) throws InterruptedException{
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while(!condition.test()){
+			assertTrue(System.currentTimeMillis() < end);
+			Thread.sleep(20);
+		}
+	}
+
+	private static UWSService createNode(final String nodeId, final String url, final File root) throws UWSException{
+		JobList jl = new JobList("jl");
+		UWSService uws = UWSServiceOfTest.createUWS(new AbstractUWSFactory(){
+			@Override
+			public JobThread createJobThread(final UWSJob jobDescription) throws UWSException{
+				return new BlockingThread(jobDescription, nodeId);
+			}
+		}, new LocalUWSFileManager(root, false, false), jl);
+		jl.setExecutionManager(new ClusterExecutionManager(jl, null, url, null, null, nodeId, 1, LEASE));
+		jl.setJobStore(new JDBCJobStore(uws, null, url, null, null), true);
+		return uws;
+	}
+
+	/** Condition to wait for. */
+	private static abstract class Condition {
+		abstract boolean test();
+	}
+
+	/** Job work waiting until the test allows it to complete. */
+	private static class BlockingThread extends JobThread {
+		private final String nodeId;
+
+		public BlockingThread(final UWSJob job, final String nodeId) throws UWSException{
+			super(job);
+			this.nodeId = nodeId;
+		}
+
+		@Override
+		protected void jobWork() throws UWSException, InterruptedException{
+			executedBy.put(getJob().getJobId(), nodeId);
+			if (remote)
+				report("EXECUTING", getJob().getJobId());
+			try{
+				while(!completed.contains(getJob().getJobId()))
+					Thread.sleep(20);
+			}catch(InterruptedException ie){
+				interrupted.add(getJob().getJobId());
+				if (remote)
+					report("INTERRUPTED", getJob().getJobId());
+				throw ie;
+			}
+			getJob().addResult(new Result("r1", "simple", "http://example.org/r1", false));
+		}
+	}
+
+}
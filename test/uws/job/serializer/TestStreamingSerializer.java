@@ -0,0 +1,129 @@
+package uws.job.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.ErrorSummary;
+import uws.job.ErrorType;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.JobListIndex;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.job.serializer.filter.JobListRefiner;
+import uws.job.user.JobOwner;
+
+public class TestStreamingSerializer {
+
+	private final List<UWSJob> jobs = new ArrayList<UWSJob>();
+	private JobList list;
+
+	@Before
+	public void setUp() throws Exception{
+		jobs.clear();
+		for(int i = 0; i < 5; i++){
+			UWSJob job = new UWSJob("job" + i, 1500000000000L + i * 1000, null, new UWSParameters(), -1, -1, -1, null, null);
+			jobs.add(job);
+		}
+		jobs.get(1).setPhase(ExecutionPhase.EXECUTING, true);
+		jobs.get(2).addResult(new Result(jobs.get(2), "r1", "http://example.org/r1"));
+		jobs.get(2).setPhase(ExecutionPhase.COMPLETED, true);
+		jobs.get(3).setErrorSummary(new ErrorSummary("Oops: <é>", ErrorType.FATAL));
+		jobs.get(3).setPhase(ExecutionPhase.ERROR, true);
+
+		list = new JobList("test"){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterator<UWSJob> getJobs(JobOwner user){
+				return jobs.iterator();
+			}
+
+			@Override
+			public JobListIndex getIndex(JobOwner user){
+				return null;
+			}
+		};
+	}
+
+	@Test
+	public void testXML() throws Exception{
+		check(new XMLSerializer());
+	}
+
+	@Test
+	public void testJSON() throws Exception{
+		check(new JSONSerializer());
+	}
+
+	@Test
+	public void testOverwrittenGetters() throws Exception{
+		// Only the String functions are customized => they must be used:
+		UWSSerializer serializer = new XMLSerializer(){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public String getJobList(final JobList jobsList, final JobOwner owner, final JobListRefiner listRefiner, final boolean root) throws Exception{
+				return "<custom>" + super.getJobList(jobsList, owner, listRefiner, root) + "</custom>";
+			}
+
+			@Override
+			public String getJob(final UWSJob job, final boolean root) throws UWSException{
+				return "<custom/>";
+			}
+		};
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		serializer.writeJobList(stream, list, null, null, true);
+		assertTrue(stream.toString("UTF-8").startsWith("<custom>"));
+		assertEquals(serializer.getJobList(list, null, null, true), stream.toString("UTF-8"));
+		stream = new ByteArrayOutputStream();
+		serializer.writeJob(stream, jobs.get(0), true);
+		assertEquals("<custom/>", stream.toString("UTF-8"));
+
+		// Same for a JSON serializer:
+		serializer = new JSONSerializer(){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public String getJob(final UWSJob job, final boolean root){
+				return "{}";
+			}
+		};
+		stream = new ByteArrayOutputStream();
+		serializer.writeJob(stream, jobs.get(0), true);
+		assertEquals("{}", stream.toString("UTF-8"));
+	}
+
+	private void check(final UWSSerializer serializer) throws Exception{
+		// Jobs list:
+		String expected = serializer.getJobList(list, null, null, true);
+		assertTrue(expected.contains("job4"));
+		StringWriter writer = new StringWriter();
+		serializer.writeJobList(writer, list, null, null, true);
+		assertEquals(expected, writer.toString());
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		serializer.writeJobList(stream, list, null, null, true);
+		assertEquals(expected, stream.toString("UTF-8"));
+
+		// Each job:
+		for(UWSJob job : jobs){
+			expected = serializer.getJob(job, true);
+			stream = new ByteArrayOutputStream();
+			serializer.writeJob(stream, job, true);
+			assertEquals(expected, stream.toString("UTF-8"));
+		}
+	}
+
+}
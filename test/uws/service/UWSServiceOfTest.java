@@ -0,0 +1,89 @@
+package uws.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import uws.UWSException;
+import uws.job.JobList;
+import uws.job.JobThread;
+import uws.job.UWSJob;
+import uws.job.user.DefaultJobOwner;
+import uws.job.user.JobOwner;
+import uws.service.file.LocalUWSFileManager;
+import uws.service.file.UWSFileManager;
+
+/**
+ * Fixture shared by the tests needing a {@link UWSService}: a factory whose
+ * jobs are never executed, a user identifier restoring any user, and the
+ * management of a temporary directory.
+ */
+public class UWSServiceOfTest {
+
+	/**
+	 * Create a UWS service whose jobs are never executed. Its files are
+	 * written in the given directory.
+	 */
+	public static UWSService createUWS(final File root, final JobList... jobLists) throws UWSException{
+		return createUWS(new NoExecutionFactory(), new LocalUWSFileManager(root, false, false), jobLists);
+	}
+
+	/**
+	 * Create a UWS service with the given factory and file manager, and
+	 * restoring any user as a {@link DefaultJobOwner}.
+	 */
+	public static UWSService createUWS(final UWSFactory factory, final UWSFileManager fileManager, final JobList... jobLists) throws UWSException{
+		UWSService uws = new UWSService(factory, fileManager);
+		uws.setUserIdentifier(new RestoringUserIdentifier());
+		for(JobList jl : jobLists)
+			uws.addJobList(jl);
+		return uws;
+	}
+
+	/**
+	 * Create an empty temporary directory.
+	 */
+	public static File createTmpDirectory(final String prefix) throws IOException{
+		File dir = File.createTempFile(prefix, "");
+		dir.delete();
+		dir.mkdirs();
+		return dir;
+	}
+
+	/**
+	 * Delete the given file or directory (with all its content).
+	 */
+	public static void delete(final File f){
+		if (f.isDirectory()){
+			for(File child : f.listFiles())
+				delete(child);
+		}
+		f.delete();
+	}
+
+	/** Factory whose the jobs are never executed. */
+	public static class NoExecutionFactory extends AbstractUWSFactory {
+		@Override
+		public JobThread createJobThread(final UWSJob jobDescription) throws UWSException{
+			return null;
+		}
+	}
+
+	/** User identifier identifying nobody, but restoring any user. */
+	public static class RestoringUserIdentifier implements UserIdentifier {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public JobOwner extractUserId(final UWSUrl urlInterpreter, final HttpServletRequest request) throws UWSException{
+			return null;
+		}
+
+		@Override
+		public JobOwner restoreUser(final String id, final String pseudo, final Map<String,Object> otherData) throws UWSException{
+			return new DefaultJobOwner(id, pseudo);
+		}
+	}
+
+}
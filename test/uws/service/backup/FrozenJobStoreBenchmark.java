@@ -0,0 +1,61 @@
+package uws.service.backup;
+
+import java.io.File;
+
+import uws.job.JobList;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+
+/**
+ * Measure the memory used by a finished job, first kept as it is, and then
+ * frozen by a {@link FrozenJobStore}.
+ *
+ * <p>
+ * 	The measure depends on the JVM and on its garbage collector. That's why
+ * 	it is not a JUnit test: it only prints the number of bytes per job.
+ * 	{@link TestFrozenJobStore} checks the deterministic part (all jobs frozen,
+ * 	compressed descriptions, shared owners).
+ * </p>
+ */
+public class FrozenJobStoreBenchmark {
+
+	private final static int NB_JOBS = 5000;
+
+	public static void main(String[] args) throws Throwable{
+		int nbJobs = (args.length > 0) ? Integer.parseInt(args[0]) : NB_JOBS;
+		File root = UWSServiceOfTest.createTmpDirectory("uwsFrozenJobsBenchmark");
+		try{
+			// Memory used by finished jobs kept as they are:
+			UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+			long before = usedMemory();
+			TestFrozenJobStore.fill(uws.getJobList("jl"), nbJobs);
+			long full = (usedMemory() - before) / nbJobs;
+			uws.destroy();
+			uws = null;
+
+			// Memory used by the same finished jobs, but frozen:
+			uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+			JobList jl = uws.getJobList("jl");
+			jl.setJobStore(new FrozenJobStore(uws, null));
+			jl.setCacheSize(0);
+			before = usedMemory();
+			TestFrozenJobStore.fill(jl, nbJobs);
+			long frozen = (usedMemory() - before) / nbJobs;
+			uws.destroy();
+
+			System.out.println("[FrozenJobStoreBenchmark] " + nbJobs + " finished jobs: " + full + " bytes per job kept as is ; " + frozen + " bytes per job once frozen.");
+		}finally{
+			UWSServiceOfTest.delete(root);
+		}
+	}
+
+	private static long usedMemory() throws InterruptedException{
+		Runtime rt = Runtime.getRuntime();
+		for(int i = 0; i < 4; i++){
+			System.gc();
+			Thread.sleep(50);
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
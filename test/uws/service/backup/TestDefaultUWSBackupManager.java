@@ -1,13 +1,24 @@
 package uws.service.backup;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.util.Date;
+
 import org.junit.Test;
 
+import uws.job.JobList;
+import uws.job.UWSJob;
 import uws.job.jobInfo.JobInfo;
 import uws.job.jobInfo.SingleValueJobInfo;
+import uws.job.parameters.UWSParameters;
+import uws.job.user.DefaultJobOwner;
+import uws.job.user.JobOwner;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
 
 public class TestDefaultUWSBackupManager {
 
@@ -62,4 +73,52 @@ public class TestDefaultUWSBackupManager {
 		}
 	}
 
+	@Test
+	public void testParallelRestoration() throws Exception{
+		File root = UWSServiceOfTest.createTmpDirectory("uwsBackup");
+		try{
+			// Save 20 users having 5 jobs each:
+			UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+			DefaultUWSBackupManager backupManager = new DefaultUWSBackupManager(uws, true, DefaultUWSBackupManager.MANUAL);
+			uws.setBackupManager(backupManager);
+			long destruction = System.currentTimeMillis() + 3600000;
+			for(int u = 0; u < 20; u++){
+				JobOwner owner = new DefaultJobOwner("user" + u);
+				for(int j = 0; j < 5; j++){
+					UWSJob job = new UWSJob("job" + u + "_" + j, System.currentTimeMillis(), owner, new UWSParameters(), -1, -1, -1, null, null);
+					uws.getJobList("jl").addNewJob(job);
+					job.setDestructionTime(new Date(destruction + u * 1000 + j));
+				}
+			}
+			backupManager.saveAll();
+
+			// Restore them in parallel:
+			uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+			backupManager = new DefaultUWSBackupManager(uws, true, DefaultUWSBackupManager.MANUAL);
+			backupManager.setRestoreThreads(4);
+			uws.setBackupManager(backupManager);
+			int[] report = backupManager.restoreAll();
+			assertEquals(100, report[0]);
+			assertEquals(100, report[1]);
+			assertEquals(20, report[2]);
+			assertEquals(20, report[3]);
+			assertEquals(100, uws.getJobList("jl").getNbJobs());
+			assertEquals(20, backupManager.getRestorationProgress()[0]);
+			// (the destruction of the restored jobs has been scheduled at the end)
+			assertEquals(destruction / 1000, uws.getJobList("jl").getDestructionManager().getNextDestruction().getTime() / 1000);
+
+			// Restore them in background:
+			uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+			backupManager = new DefaultUWSBackupManager(uws, true, DefaultUWSBackupManager.MANUAL);
+			backupManager.setRestoreThreads(3);
+			uws.setBackupManager(backupManager);
+			report = backupManager.restoreAllInBackground().get();
+			assertFalse(backupManager.isRestoring());
+			assertEquals(100, report[0]);
+			assertEquals(100, uws.getJobList("jl").getNbJobs());
+		}finally{
+			UWSServiceOfTest.delete(root);
+		}
+	}
+
 }
@@ -0,0 +1,185 @@
+package uws.service.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.ErrorSummary;
+import uws.job.ErrorType;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.job.serializer.JSONSerializer;
+import uws.job.serializer.UWSSerializer;
+import uws.job.serializer.XMLSerializer;
+import uws.job.user.DefaultJobOwner;
+import uws.job.user.JobOwner;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+
+public class TestFrozenJobStore {
+
+	private final static int NB_JOBS = 100;
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception{
+		root = UWSServiceOfTest.createTmpDirectory("uwsFrozenJobs");
+	}
+
+	@After
+	public void tearDown(){
+		UWSServiceOfTest.delete(root);
+	}
+
+	@Test
+	public void testSerialization() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		FrozenJobStore store = new FrozenJobStore(uws, null);
+		JobList jl = uws.getJobList("jl");
+		jl.setJobStore(store);
+		jl.setCacheSize(0);
+
+		JobOwner alice = new DefaultJobOwner("alice");
+		TestJob completed = createJob(jl, "completed", 1500000010123L, alice);
+		completed.addResult(new Result("r1", "simple", "http://example.org/r1", false));
+		TestJob failed = createJob(jl, "failed", 1500000020456L, new DefaultJobOwner("alice"));
+		failed.setErrorSummary(new ErrorSummary("Oops: <é>", ErrorType.FATAL));
+		TestJob aborted = createJob(jl, "aborted", 1500000030789L, null);
+		String[] expected = new String[]{ finish(completed, ExecutionPhase.COMPLETED), finish(failed, ExecutionPhase.ERROR), finish(aborted, ExecutionPhase.ABORTED) };
+
+		// Only frozen jobs remain, sharing the same owner:
+		assertEquals(3, store.count(jl, null));
+		assertEquals(2, store.count(jl, alice));
+		assertSame(store.getFrozenJob(jl, "completed").owner, store.getFrozenJob(jl, "failed").owner);
+		assertTrue(store.getFrozenJob(jl, "completed").getPackedSize() > 0);
+
+		// A thawed job is serialized exactly as the original one:
+		String[] ids = new String[]{ "completed", "failed", "aborted" };
+		for(int i = 0; i < ids.length; i++){
+			UWSJob thawed = jl.getJob(ids[i]);
+			assertNotNull(thawed);
+			assertEquals(expected[i], serialize(thawed));
+		}
+		assertNotSame(jl.getJob("completed"), jl.getJob("completed"));
+		assertEquals(1500000010123L, jl.getJob("completed").getCreationTime().getTime());
+
+		// Selection and archiving still work on frozen jobs:
+		assertEquals(Arrays.asList("aborted", "failed", "completed"), ids(jl.getIndex(null).select(null, null, -1)));
+		assertEquals(Arrays.asList("failed", "completed"), ids(jl.getIndex(null).select(null, null, 1500000030789L, "aborted", -1)));
+		assertEquals(Arrays.asList("completed"), ids(jl.getIndex(alice).select(Arrays.asList(ExecutionPhase.COMPLETED), null, -1)));
+		jl.getJob("failed").archive();
+		assertEquals(ExecutionPhase.ARCHIVED, store.getFrozenJob(jl, "failed").phase);
+		assertTrue(jl.destroyJob("aborted"));
+		assertNull(store.getFrozenJob(jl, "aborted"));
+		uws.destroy();
+	}
+
+	@Test
+	public void testPackedSize() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		FrozenJobStore store = new FrozenJobStore(uws, null);
+		JobList jl = uws.getJobList("jl");
+		jl.setJobStore(store);
+		jl.setCacheSize(0);
+		fill(jl, NB_JOBS);
+		assertEquals(NB_JOBS, jl.getNbJobs());
+		assertEquals(NB_JOBS, store.count(jl, null));
+
+		// All finished jobs are frozen, with a compressed description and a shared owner:
+		JobOwner alice = store.getFrozenJob(jl, "job0").owner;
+		for(int i = 0; i < NB_JOBS; i++){
+			FrozenJob frozen = store.getFrozenJob(jl, "job" + i);
+			assertTrue(frozen.getPackedSize() > 0);
+			assertTrue(frozen.getPackedSize() < frozen.getDescription().getBytes("UTF-8").length);
+			if (i % 2 == 0)
+				assertSame(alice, frozen.owner);
+		}
+		uws.destroy();
+	}
+
+	/**
+	 * Add the given number of finished jobs in the given jobs list.
+	 * <i>Also used by {@link FrozenJobStoreBenchmark}.</i>
+	 */
+	static void fill(final JobList jl, final int nbJobs) throws Exception{
+		JobOwner[] owners = new JobOwner[]{ new DefaultJobOwner("alice"), new DefaultJobOwner("bob") };
+		for(int i = 0; i < nbJobs; i++){
+			TestJob job = createJob(jl, "job" + i, 1500000000000L + i * 1000, owners[i % 2]);
+			job.addResult(new Result(job, "result", "http://example.org/results/job" + i + ".xml"));
+			finish(job, ExecutionPhase.COMPLETED);
+		}
+	}
+
+	private static TestJob createJob(final JobList jl, final String jobId, final long creationTime, final JobOwner owner) throws UWSException{
+		Map<String,Object> params = new HashMap<String,Object>();
+		params.put("query", "SELECT TOP 100 * FROM ivoa.obscore WHERE dataproduct_type = 'image'");
+		params.put("lang", "ADQL");
+		params.put("format", "votable");
+		params.put(UWSJob.PARAM_RUN_ID, "run " + jobId);
+		TestJob job = new TestJob(jobId, creationTime, owner, new UWSParameters(params));
+		jl.addNewJob(job);
+		job.setDestructionTime(new Date(4102444800000L + creationTime % 86400000L));
+		return job;
+	}
+
+	private static String finish(final TestJob job, final ExecutionPhase phase) throws Exception{
+		long time = job.getCreationTime().getTime();
+		job.started(new Date(time + 1000));
+		job.setPhase(phase, true);
+		job.ended(new Date(time + 2000));
+		return serialize(job);
+	}
+
+	private static String serialize(final UWSJob job) throws Exception{
+		StringBuffer buf = new StringBuffer();
+		for(UWSSerializer serializer : new UWSSerializer[]{ new XMLSerializer(), new JSONSerializer() })
+			buf.append(serializer.getJob(job, true)).append('\n');
+		return buf.toString();
+	}
+
+	private static List<String> ids(final Iterator<UWSJob> it){
+		List<String> ids = new ArrayList<String>();
+		while(it.hasNext())
+			ids.add(it.next().getJobId());
+		return ids;
+	}
+
+	/** Job whose the start and end times can be set by the test. */
+	private static class TestJob extends UWSJob {
+		private static final long serialVersionUID = 1L;
+
+		public TestJob(final String jobId, final long creationTime, final JobOwner owner, final UWSParameters params){
+			super(jobId, creationTime, owner, params, -1, -1, -1, null, null);
+		}
+
+		public void started(final Date date){
+			setStartTime(date);
+		}
+
+		public void ended(final Date date){
+			setEndTime(date);
+		}
+	}
+
+}
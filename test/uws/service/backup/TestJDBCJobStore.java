@@ -0,0 +1,204 @@
+package uws.service.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.ErrorSummary;
+import uws.job.ErrorType;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.job.user.DefaultJobOwner;
+import uws.job.user.JobOwner;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+
+public class TestJDBCJobStore {
+
+	private File root;
+	private String url;
+
+	@Before
+	public void setUp() throws Exception{
+		root = UWSServiceOfTest.createTmpDirectory("uwsJobStore");
+		url = "jdbc:h2:" + new File(root, "uws_jobs").getAbsolutePath();
+	}
+
+	@After
+	public void tearDown(){
+		UWSServiceOfTest.delete(root);
+	}
+
+	@Test
+	public void testEvictionAndLazyLoading() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new TestJobList("jl"));
+		JDBCJobStore store = new JDBCJobStore(uws, null, url, null, null);
+		TestJobList jl = (TestJobList)uws.getJobList("jl");
+		jl.setJobStore(store);
+
+		JobOwner alice = new DefaultJobOwner("alice"), bob = new DefaultJobOwner("bob");
+
+		// 1 active job and 3 finished ones:
+		TestJob active = new TestJob("active", 1500000040000L, alice);
+		jl.addNewJob(active);
+		active.started(new Date(1500000041000L));
+
+		TestJob done1 = finish(jl, new TestJob("done1", 1500000010000L, alice), ExecutionPhase.COMPLETED);
+		finish(jl, new TestJob("done2", 1500000020000L, bob), ExecutionPhase.COMPLETED);
+		finish(jl, new TestJob("failed", 1500000030000L, alice), ExecutionPhase.ERROR);
+
+		// Only the active job stays in memory:
+		assertEquals(3, store.count(jl, null));
+		assertEquals(2, store.count(jl, alice));
+		assertEquals(4, jl.getNbJobs());
+		assertEquals(3, jl.getNbJobs(alice));
+		assertEquals(Arrays.asList("active"), ids(jl.getIndex(null).select(Arrays.asList(ExecutionPhase.PENDING), null, -1)));
+
+		// A finished job is still accessible (first from the cache):
+		assertSame(done1, jl.getJob("done1"));
+		jl.setCacheSize(0);
+		UWSJob loaded = jl.getJob("done1");
+		assertNotSame(done1, loaded);
+		assertEquals(ExecutionPhase.COMPLETED, loaded.getPhase());
+		assertEquals("alice", loaded.getOwner().getID());
+		assertEquals(1500000012000L, loaded.getEndTime().getTime());
+		assertSame(jl, loaded.getJobList());
+		assertEquals("Oops!", jl.getJob("failed").getErrorSummary().getMessage());
+
+		// Lists and filters merge the jobs in memory and the stored ones:
+		assertEquals(Arrays.asList("active", "failed", "done2", "done1"), ids(jl.getIndex(null).select(null, null, -1)));
+		assertEquals(Arrays.asList("active", "failed", "done1"), ids(jl.getIndex(alice).select(null, null, -1)));
+		assertEquals(Arrays.asList("done2", "done1"), ids(jl.getIndex(null).select(Arrays.asList(ExecutionPhase.COMPLETED), null, -1)));
+		assertEquals(Arrays.asList("failed", "done2"), ids(jl.getIndex(null).select(null, null, 1500000040000L, "active", 2)));
+		assertEquals(Arrays.asList("active", "failed"), ids(jl.getIndex(null).select(null, new Date(1500000025000L), -1)));
+		assertEquals(4, count(jl.iterator()));
+		assertEquals(1, count(jl.getJobs(bob)));
+
+		// A stored job can still be archived:
+		jl.getJob("done2").archive();
+		assertEquals(ExecutionPhase.ARCHIVED, jl.getJob("done2").getPhase());
+
+		// A stored job can be destroyed:
+		assertTrue(jl.destroyJob("done1"));
+		assertNull(jl.getJob("done1"));
+		assertEquals(2, store.count(jl, null));
+
+		// The stored jobs survive a restart:
+		uws.destroy();
+		uws = UWSServiceOfTest.createUWS(root, new TestJobList("jl"));
+		store = new JDBCJobStore(uws, null, url, null, null);
+		jl = (TestJobList)uws.getJobList("jl");
+		jl.setJobStore(store);
+		assertEquals(2, jl.getNbJobs());
+		assertEquals(ExecutionPhase.ARCHIVED, jl.getJob("done2").getPhase());
+		assertEquals(ExecutionPhase.ERROR, jl.getJob("failed").getPhase());
+		// (only the finished jobs are stored)
+		assertNull(jl.getJob("active"));
+		assertFalse(jl.addNewJob(new TestJob("failed", 1500000050000L, null)) != null);
+		uws.destroy();
+	}
+
+	@Test
+	public void testPurge() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new TestJobList("jl"));
+		JDBCJobStore store = new JDBCJobStore(uws, null, url, null, null);
+		TestJobList jl = (TestJobList)uws.getJobList("jl");
+		jl.setJobStore(store);
+
+		TestJob job = new TestJob("job1", 1500000000000L, null);
+		jl.addNewJob(job);
+		job.setDestructionTime(new Date(System.currentTimeMillis() + 500));
+		finish(jl, job, ExecutionPhase.COMPLETED);
+		finish(jl, new TestJob("job2", 1500000010000L, null), ExecutionPhase.COMPLETED);
+		assertEquals(2, store.count(jl, null));
+
+		// Nothing to destroy yet:
+		jl.purge();
+		assertEquals(2, store.count(jl, null));
+
+		// The destruction time of the first job is reached:
+		Thread.sleep(1000);
+		jl.purge();
+		assertEquals(1, store.count(jl, null));
+		assertNull(jl.getJob("job1"));
+		assertNotNull(jl.getJob("job2"));
+		uws.destroy();
+	}
+
+	private static TestJob finish(final JobList jl, final TestJob job, final ExecutionPhase phase) throws UWSException{
+		if (job.getJobList() == null)
+			jl.addNewJob(job);
+		long time = job.getCreationTime().getTime();
+		job.started(new Date(time + 1000));
+		if (phase == ExecutionPhase.ERROR)
+			job.setErrorSummary(new ErrorSummary("Oops!", ErrorType.FATAL));
+		job.setPhase(phase, true);
+		job.ended(new Date(time + 2000));
+		return job;
+	}
+
+	private static int count(final Iterator<UWSJob> it){
+		int n = 0;
+		while(it.hasNext()){
+			it.next();
+			n++;
+		}
+		return n;
+	}
+
+	private static List<String> ids(final Iterator<UWSJob> it){
+		List<String> ids = new ArrayList<String>();
+		while(it.hasNext())
+			ids.add(it.next().getJobId());
+		return ids;
+	}
+
+	/** Jobs list whose the destruction of the expired stored jobs can be triggered by the test. */
+	private static class TestJobList extends JobList {
+		private static final long serialVersionUID = 1L;
+
+		public TestJobList(final String name){
+			super(name);
+		}
+
+		public void purge(){
+			purgeStoredJobs();
+		}
+	}
+
+	/** Job whose the start and end times can be set by the test. */
+	private static class TestJob extends UWSJob {
+		private static final long serialVersionUID = 1L;
+
+		public TestJob(final String jobId, final long creationTime, final JobOwner owner){
+			super(jobId, creationTime, owner, new UWSParameters(), -1, -1, -1, null, null);
+		}
+
+		public void started(final Date date){
+			setStartTime(date);
+		}
+
+		public void ended(final Date date){
+			setEndTime(date);
+		}
+	}
+
+}
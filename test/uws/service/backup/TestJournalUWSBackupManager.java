@@ -0,0 +1,230 @@
+package uws.service.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.UWSException;
+import uws.job.ErrorSummary;
+import uws.job.ErrorType;
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+import uws.service.backup.JournalUWSBackupManager.FsyncPolicy;
+
+public class TestJournalUWSBackupManager {
+
+	private File root;
+	private File journalDir;
+
+	@Before
+	public void setUp() throws Exception{
+		root = UWSServiceOfTest.createTmpDirectory("uwsJournal");
+		journalDir = new File(root, "journal");
+	}
+
+	@After
+	public void tearDown(){
+		UWSServiceOfTest.delete(root);
+	}
+
+	@Test
+	public void testJournalAndRestore() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		JournalUWSBackupManager backup = new JournalUWSBackupManager(uws, null, journalDir, FsyncPolicy.ALWAYS, -1);
+		uws.setBackupManager(backup);
+		JobList jl = uws.getJobList("jl");
+
+		// Create some jobs and modify them:
+		TestJob running = new TestJob("running", 1500000000000L);
+		jl.addNewJob(running);
+		running.started(new Date(1500000001000L));
+		running.setRunId("myRun");
+		running.setExecutionDuration(60);
+		running.setDestructionTime(new Date(4000000000000L));
+		running.addOrUpdateParameter("query", "SELECT 1");
+		running.addOrUpdateParameter("lang", "ADQL");
+		running.removeAdditionalParameter("lang");
+
+		TestJob completed = new TestJob("completed", 1500000010000L);
+		jl.addNewJob(completed);
+		completed.started(new Date(1500000011000L));
+		completed.addResult(new Result(completed, "r1", "http://example.org/r1"));
+		completed.ended(new Date(1500000012000L));
+
+		TestJob failed = new TestJob("failed", 1500000020000L);
+		jl.addNewJob(failed);
+		failed.started(new Date(1500000021000L));
+		failed.setErrorSummary(new ErrorSummary("Oops!", ErrorType.FATAL));
+		failed.setPhase(ExecutionPhase.ERROR, true);
+		failed.ended(new Date(1500000022000L));
+
+		TestJob destroyed = new TestJob("destroyed", 1500000030000L);
+		jl.addNewJob(destroyed);
+		jl.destroyJob("destroyed");
+
+		backup.flush();
+		assertFalse(new File(journalDir, JournalUWSBackupManager.SNAPSHOT_FILE_NAME).exists());
+		assertEquals(1, journalDir.list().length);
+		assertTrue(backup.getStatistics()[1] >= 7);
+
+		// Restore only with the journal:
+		checkRestoration();
+
+		// Compact the journal, and then continue to journal:
+		int[] report = backup.saveAll();
+		assertEquals(3, report[0]);
+		assertEquals(3, report[1]);
+		assertTrue(new File(journalDir, JournalUWSBackupManager.SNAPSHOT_FILE_NAME).exists());
+		running.addResult(new Result(running, "r2", "http://example.org/r2"));
+		backup.setEnabled(false);
+		assertEquals(2, journalDir.list().length);
+
+		// Restore with the snapshot and the journal:
+		JobList restored = checkRestoration();
+		assertEquals(1, restored.getJob("running").getNbResults());
+	}
+
+	@Test
+	public void testTornRecord() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		JournalUWSBackupManager backup = new JournalUWSBackupManager(uws, null, journalDir, FsyncPolicy.NEVER, -1);
+		uws.setBackupManager(backup);
+		uws.getJobList("jl").addNewJob(new TestJob("job1", 1500000000000L));
+		backup.setEnabled(false);
+
+		// Simulate a crash while writing a record:
+		File journal = journalDir.listFiles()[0];
+		FileOutputStream out = new FileOutputStream(journal, true);
+		out.write("{\"op\":\"new\",\"job\":{\"jobId\":\"jo".getBytes("UTF-8"));
+		out.close();
+
+		UWSService uws2 = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		JournalUWSBackupManager backup2 = new JournalUWSBackupManager(uws2, null, journalDir, FsyncPolicy.NEVER, -1);
+		backup2.setEnabled(false);
+		int[] report = backup2.restoreAll();
+		assertEquals(1, report[0]);
+		assertEquals(1, report[1]);
+		assertNotNull(uws2.getJobList("jl").getJob("job1"));
+	}
+
+	@Test
+	public void testWriteError() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		final AtomicBoolean failNextWrite = new AtomicBoolean(false);
+		JournalUWSBackupManager backup = new JournalUWSBackupManager(uws, null, journalDir, FsyncPolicy.ALWAYS, -1){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected FileOutputStream openJournal(final File file) throws IOException{
+				return new FileOutputStream(file, true){
+					@Override
+					public void write(final byte[] b) throws IOException{
+						if (failNextWrite.compareAndSet(true, false)){
+							// only a part of the record is written:
+							super.write(b, 0, b.length / 2);
+							throw new IOException("No space left on device");
+						}else
+							super.write(b);
+					}
+				};
+			}
+		};
+		uws.setBackupManager(backup);
+		JobList jl = uws.getJobList("jl");
+		jl.addNewJob(new TestJob("job1", 1500000000000L));
+
+		// The record can not be written => the caller is informed:
+		failNextWrite.set(true);
+		try{
+			backup.append(backup.createRecord("del", "jl", "job1"));
+			fail("The writing error should have been reported!");
+		}catch(UWSException ue){
+			assertEquals("No space left on device", ue.getCause().getMessage());
+		}
+
+		// ...and the next records are written in a new journal file:
+		jl.addNewJob(new TestJob("job2", 1500000010000L));
+		backup.setEnabled(false);
+		assertEquals(2, journalDir.list().length);
+
+		// Only the torn record is lost:
+		UWSService uws2 = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		JournalUWSBackupManager backup2 = new JournalUWSBackupManager(uws2, null, journalDir, FsyncPolicy.NEVER, -1);
+		backup2.setEnabled(false);
+		int[] report = backup2.restoreAll();
+		assertEquals(2, report[0]);
+		assertNotNull(uws2.getJobList("jl").getJob("job1"));
+		assertNotNull(uws2.getJobList("jl").getJob("job2"));
+	}
+
+	private JobList checkRestoration() throws Exception{
+		UWSService uws = UWSServiceOfTest.createUWS(root, new JobList("jl"));
+		JournalUWSBackupManager backup = new JournalUWSBackupManager(uws, null, journalDir, FsyncPolicy.NEVER, -1);
+		backup.setEnabled(false);
+		uws.setBackupManager(backup);
+		int[] report = backup.restoreAll();
+		assertEquals(3, report[0]);
+		assertEquals(3, report[1]);
+
+		JobList jl = uws.getJobList("jl");
+		assertEquals(3, jl.getNbJobs());
+		assertNull(jl.getJob("destroyed"));
+
+		UWSJob job = jl.getJob("running");
+		assertEquals(1500000000000L, job.getCreationTime().getTime());
+		assertEquals(1500000001000L, job.getStartTime().getTime());
+		assertNull(job.getEndTime());
+		assertEquals("myRun", job.getRunId());
+		assertEquals(60, job.getExecutionDuration());
+		assertEquals(4000000000000L, job.getDestructionTime().getTime());
+		assertEquals("SELECT 1", job.getAdditionalParameterValue("query"));
+		assertNull(job.getAdditionalParameterValue("lang"));
+
+		job = jl.getJob("completed");
+		assertEquals(ExecutionPhase.COMPLETED, job.getPhase());
+		assertEquals(1500000012000L, job.getEndTime().getTime());
+		assertNotNull(job.getResult("r1"));
+
+		job = jl.getJob("failed");
+		assertEquals(ExecutionPhase.ERROR, job.getPhase());
+		assertEquals("Oops!", job.getErrorSummary().getMessage());
+
+		return jl;
+	}
+
+	/** Job whose the start and end times can be set by the test. */
+	private static class TestJob extends UWSJob {
+		private static final long serialVersionUID = 1L;
+
+		public TestJob(final String jobId, final long creationTime){
+			super(jobId, creationTime, null, new UWSParameters(), -1, -1, -1, null, null);
+		}
+
+		public void started(final Date date){
+			setStartTime(date);
+		}
+
+		public void ended(final Date date){
+			setEndTime(date);
+		}
+	}
+
+}
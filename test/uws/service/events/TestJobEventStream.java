@@ -0,0 +1,225 @@
+package uws.service.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+
+public class TestJobEventStream {
+
+	@Test
+	public void testCoalescingAndOverflow() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		JobEventStream stream = new JobEventStream(2, -1, null);
+
+		// The current phase is immediately buffered:
+		stream.observe(job);
+		assertEquals(1, job.getNbObservers());
+		assertEquals(1, stream.getNbPendingEvents());
+
+		// Intermediate phases are coalesced:
+		job.setPhase(ExecutionPhase.QUEUED);
+		job.setPhase(ExecutionPhase.EXECUTING);
+		assertEquals(1, stream.getNbPendingEvents());
+
+		// Same for the progression:
+		job.addOrUpdateParameter("progression", "PARSING");
+		job.notifyParameterChanged("progression");
+		job.addOrUpdateParameter("progression", "EXECUTING_ADQL");
+		job.notifyParameterChanged("progression");
+		assertEquals(2, stream.getNbPendingEvents());
+
+		// The buffer is full => the result event is dropped:
+		job.addResult(new Result(job, "r1", "http://example.org/r1"));
+		assertEquals(2, stream.getNbPendingEvents());
+
+		// Closing stops the observation:
+		stream.close();
+		assertTrue(stream.isClosed());
+		assertEquals(0, job.getNbObservers());
+		assertEquals(0, stream.getNbPendingEvents());
+	}
+
+	@Test
+	public void testJobListObservation() throws Exception{
+		File root = new File(System.getProperty("java.io.tmpdir"), "TestJobEventStream");
+		JobList jl = new JobList("jl");
+		UWSService uws = UWSServiceOfTest.createUWS(root, jl);
+		UWSJob finished = new UWSJob(new UWSParameters()), pending = new UWSJob(new UWSParameters());
+		jl.addNewJob(finished);
+		jl.addNewJob(pending);
+		finished.setPhase(ExecutionPhase.COMPLETED, true);
+
+		// Only the active jobs are observed:
+		JobEventStream stream = new JobEventStream(10, -1, null);
+		stream.observe(jl, null);
+		assertEquals(1, jl.getNbObservers());
+		assertEquals(0, finished.getNbObservers());
+		assertEquals(1, pending.getNbObservers());
+
+		// ...including the new ones, as soon as added:
+		UWSJob added = new UWSJob(new UWSParameters());
+		jl.addNewJob(added);
+		assertEquals(1, added.getNbObservers());
+
+		// A finished job stops being observed, but not the whole list:
+		added.setPhase(ExecutionPhase.ABORTED, true);
+		assertEquals(0, added.getNbObservers());
+		assertFalse(stream.isClosed());
+
+		// Same for a destroyed job:
+		jl.destroyJob(pending.getJobId());
+		assertEquals(0, pending.getNbObservers());
+
+		// Closing stops the observation of the list:
+		stream.close();
+		assertEquals(0, jl.getNbObservers());
+		jl.clear();
+		FileUtils.deleteQuietly(root);
+	}
+
+	@Test
+	public void testStreamUntilEnd() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		TestHttp http = new TestHttp(true);
+		JobEventStream stream = new JobEventStream(10, 100, null);
+
+		stream.observe(job);
+		stream.start(http.request, http.response);
+		assertTrue(http.asyncStarted);
+		assertEquals(JobEventStream.MIME_TYPE, http.contentType);
+
+		// The current phase must be written:
+		assertTrue(http.waitFor("\"phase\":\"PENDING\""));
+
+		// Then, new events:
+		job.setPhase(ExecutionPhase.QUEUED);
+		job.setPhase(ExecutionPhase.EXECUTING);
+		job.addResult(new Result(job, "r1", "http://example.org/r1"));
+		assertTrue(http.waitFor("event: result"));
+		assertTrue(http.getOutput().contains("\"id\":\"r1\""));
+
+		// A heartbeat must be written when nothing happens:
+		assertTrue(http.waitFor(": heartbeat"));
+
+		// The end of the job ends the stream:
+		job.setPhase(ExecutionPhase.COMPLETED);
+		assertTrue(http.waitFor("event: end"));
+		assertTrue(http.getOutput().contains("\"phase\":\"COMPLETED\""));
+		for(int i = 0; i < 20 && !http.completed; i++)
+			Thread.sleep(50);
+		assertTrue(http.completed);
+		assertTrue(stream.isClosed());
+		assertEquals(0, job.getNbObservers());
+	}
+
+	@Test
+	public void testWriteOnce() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		TestHttp http = new TestHttp(false);
+		JobEventStream stream = new JobEventStream();
+
+		stream.observe(job);
+		stream.writeOnce(http.response);
+		assertFalse(http.asyncStarted);
+		assertTrue(http.getOutput().startsWith("retry: "));
+		assertTrue(http.getOutput().contains("\"phase\":\"PENDING\""));
+		assertTrue(stream.isClosed());
+		assertEquals(0, job.getNbObservers());
+	}
+
+	/**
+	 * Minimal HTTP request/response supporting (or not) the asynchronous
+	 * processing.
+	 */
+	private static class TestHttp implements InvocationHandler {
+
+		public final HttpServletRequest request;
+		public final HttpServletResponse response;
+		private final boolean asyncSupported;
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		public volatile boolean asyncStarted = false;
+		public volatile boolean completed = false;
+		public String contentType = null;
+
+		public TestHttp(final boolean asyncSupported){
+			this.asyncSupported = asyncSupported;
+			request = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, this);
+			response = (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, this);
+		}
+
+		public String getOutput() throws Exception{
+			synchronized(output){
+				return output.toString("UTF-8");
+			}
+		}
+
+		public boolean waitFor(final String text) throws Exception{
+			for(int i = 0; i < 40; i++){
+				if (getOutput().contains(text))
+					return true;
+				Thread.sleep(50);
+			}
+			return false;
+		}
+
+		@Override
+		public Object invoke(final Object obj, final Method method, final Object[] args) throws Throwable{
+			String name = method.getName();
+			if (name.equals("isAsyncSupported"))
+				return asyncSupported;
+			else if (name.equals("isAsyncStarted"))
+				return asyncStarted;
+			else if (name.equals("setContentType")){
+				contentType = (String)args[0];
+				return null;
+			}else if (name.equals("getOutputStream")){
+				return new ServletOutputStream(){
+					@Override
+					public void write(int b) throws IOException{
+						synchronized(output){
+							output.write(b);
+						}
+					}
+				};
+			}else if (name.equals("startAsync")){
+				asyncStarted = true;
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AsyncContext.class}, new InvocationHandler(){
+					@Override
+					public Object invoke(final Object obj, final Method method, final Object[] args) throws Throwable{
+						if (method.getName().equals("complete"))
+							completed = true;
+						return null;
+					}
+				});
+			}else if (method.getReturnType() == boolean.class)
+				return false;
+			else
+				return null;
+		}
+	}
+
+}
@@ -0,0 +1,253 @@
+package uws.service.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.job.ExecutionPhase;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+
+public class TestResultDownloader {
+
+	private final static String CONTENT;
+	static{
+		StringBuffer buf = new StringBuffer();
+		for(int i = 0; i < 1000; i++)
+			buf.append((char)('a' + (i % 26)));
+		CONTENT = buf.toString();
+	}
+
+	private File root;
+	private LocalUWSFileManager fileManager;
+	private UWSJob job;
+	private Result result;
+
+	@Before
+	public void setUp() throws Exception{
+		root = File.createTempFile("uwsDownload", "");
+		root.delete();
+		root.mkdirs();
+		fileManager = new LocalUWSFileManager(root, false, false);
+		job = new UWSJob(new UWSParameters());
+		job.setPhase(ExecutionPhase.EXECUTING, true);
+		result = new Result(job, "r1");
+		result.setMimeType("text/plain");
+		OutputStream output = fileManager.getResultOutput(result, job);
+		output.write(CONTENT.getBytes("US-ASCII"));
+		output.close();
+		result.setSize(CONTENT.length());
+		job.addResult(result);
+	}
+
+	@After
+	public void tearDown(){
+		for(File f : root.listFiles())
+			f.delete();
+		root.delete();
+	}
+
+	@Test
+	public void testParseRanges(){
+		assertNull(ResultDownloader.parseRanges("items=0-5", 100));
+		assertNull(ResultDownloader.parseRanges("bytes=5", 100));
+		assertNull(ResultDownloader.parseRanges("bytes=5-2", 100));
+		assertNull(ResultDownloader.parseRanges("bytes=a-b", 100));
+		assertEquals("[0-9]", toString(ResultDownloader.parseRanges("bytes=0-9", 100)));
+		assertEquals("[90-99]", toString(ResultDownloader.parseRanges("bytes=-10", 100)));
+		assertEquals("[0-99]", toString(ResultDownloader.parseRanges("bytes=-500", 100)));
+		assertEquals("[50-99]", toString(ResultDownloader.parseRanges("bytes=50-", 100)));
+		assertEquals("[50-99]", toString(ResultDownloader.parseRanges("bytes=50-1000", 100)));
+		assertEquals("[]", toString(ResultDownloader.parseRanges("bytes=100-", 100)));
+		assertEquals("[0-7][20-29]", toString(ResultDownloader.parseRanges("bytes=20-29, 0-4, 3-7", 100)));
+		assertEquals("[0-9]", toString(ResultDownloader.parseRanges("bytes=0-4,5-9", 100)));
+	}
+
+	@Test
+	public void testWholeAndConditional() throws Exception{
+		// Whole content, with validators:
+		TestHttp http = download(null);
+		assertEquals(HttpServletResponse.SC_OK, http.status);
+		assertEquals(CONTENT, http.getOutput());
+		assertEquals(result.getETag(), http.responseHeaders.get("ETag"));
+		assertEquals(String.valueOf(result.getLastModified()), http.responseHeaders.get("Last-Modified"));
+		assertEquals("bytes", http.responseHeaders.get("Accept-Ranges"));
+		assertEquals(String.valueOf(CONTENT.length()), http.responseHeaders.get("Content-Length"));
+
+		// Not modified:
+		http = new TestHttp();
+		http.requestHeaders.put("If-None-Match", "\"other\", " + result.getETag());
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, http.status);
+		assertEquals("", http.getOutput());
+		http = new TestHttp();
+		http.dateHeaders.put("If-Modified-Since", result.getLastModified() + 1000);
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, http.status);
+
+		// Range ignored if the result has changed:
+		http = new TestHttp();
+		http.requestHeaders.put("Range", "bytes=0-9");
+		http.requestHeaders.put("If-Range", "\"other\"");
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		assertEquals(HttpServletResponse.SC_OK, http.status);
+		assertEquals(CONTENT, http.getOutput());
+
+		// ...but applied otherwise:
+		http = new TestHttp();
+		http.requestHeaders.put("Range", "bytes=0-9");
+		http.requestHeaders.put("If-Range", result.getETag());
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, http.status);
+		assertEquals(CONTENT.substring(0, 10), http.getOutput());
+	}
+
+	@Test
+	public void testRanges() throws Exception{
+		checkRanges();
+
+		// Same results with a compressed result file:
+		File file = fileManager.getResultFile(result, job);
+		GZIPOutputStream output = new GZIPOutputStream(new FileOutputStream(file.getPath() + LocalUWSFileManager.COMPRESSED_SUFFIX));
+		output.write(CONTENT.getBytes("US-ASCII"));
+		output.close();
+		assertTrue(file.delete());
+		checkRanges();
+	}
+
+	private void checkRanges() throws Exception{
+		// One range:
+		TestHttp http = download("bytes=100-199");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, http.status);
+		assertEquals("bytes 100-199/" + CONTENT.length(), http.responseHeaders.get("Content-Range"));
+		assertEquals("100", http.responseHeaders.get("Content-Length"));
+		assertEquals(CONTENT.substring(100, 200), http.getOutput());
+
+		// Last bytes:
+		http = download("bytes=-10");
+		assertEquals(CONTENT.substring(CONTENT.length() - 10), http.getOutput());
+
+		// Several ranges:
+		http = download("bytes=500-509,0-4,3-7");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, http.status);
+		assertTrue(http.contentType.startsWith("multipart/byteranges; boundary="));
+		String boundary = http.contentType.substring(http.contentType.indexOf('=') + 1);
+		String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-7/" + CONTENT.length() + "\r\n\r\n" + CONTENT.substring(0, 8) + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 500-509/" + CONTENT.length() + "\r\n\r\n" + CONTENT.substring(500, 510) + "\r\n--" + boundary + "--\r\n";
+		assertEquals(expected, http.getOutput());
+		assertEquals(String.valueOf(expected.length()), http.responseHeaders.get("Content-Length"));
+
+		// Unsatisfiable range:
+		http = download("bytes=5000-");
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, http.status);
+		assertEquals("bytes */" + CONTENT.length(), http.responseHeaders.get("Content-Range"));
+		assertEquals("", http.getOutput());
+	}
+
+	@Test
+	public void testSendFile() throws Exception{
+		TestHttp http = new TestHttp();
+		http.attributes.put(ResultDownloader.SENDFILE_SUPPORT, Boolean.TRUE);
+		http.requestHeaders.put("Range", "bytes=10-");
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, http.status);
+		assertEquals("", http.getOutput());
+		assertEquals(fileManager.getResultFile(result, job).getCanonicalPath(), http.attributes.get(ResultDownloader.SENDFILE_FILENAME));
+		assertEquals(10L, http.attributes.get(ResultDownloader.SENDFILE_START));
+		assertEquals((long)CONTENT.length(), http.attributes.get(ResultDownloader.SENDFILE_END));
+	}
+
+	private TestHttp download(final String range) throws Exception{
+		TestHttp http = new TestHttp();
+		if (range != null)
+			http.requestHeaders.put("Range", range);
+		ResultDownloader.write(fileManager, result, job, http.request, http.response);
+		return http;
+	}
+
+	private static String toString(final List<long[]> ranges){
+		StringBuffer buf = new StringBuffer();
+		for(long[] r : ranges)
+			buf.append('[').append(r[0]).append('-').append(r[1]).append(']');
+		return (buf.length() == 0) ? "[]" : buf.toString();
+	}
+
+	/**
+	 * Minimal HTTP GET request/response.
+	 */
+	private static class TestHttp implements InvocationHandler {
+
+		public final HttpServletRequest request;
+		public final HttpServletResponse response;
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		public final Map<String,String> requestHeaders = new HashMap<String,String>();
+		public final Map<String,Long> dateHeaders = new HashMap<String,Long>();
+		public final Map<String,Object> attributes = new HashMap<String,Object>();
+		public final Map<String,String> responseHeaders = new HashMap<String,String>();
+		public int status = HttpServletResponse.SC_OK;
+		public String contentType = null;
+
+		public TestHttp(){
+			request = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, this);
+			response = (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, this);
+		}
+
+		public String getOutput() throws Exception{
+			return output.toString("US-ASCII");
+		}
+
+		@Override
+		public Object invoke(final Object obj, final Method method, final Object[] args) throws Throwable{
+			String name = method.getName();
+			if (name.equals("getMethod"))
+				return "GET";
+			else if (name.equals("getHeader"))
+				return requestHeaders.get(args[0]);
+			else if (name.equals("getDateHeader"))
+				return dateHeaders.containsKey(args[0]) ? dateHeaders.get(args[0]) : -1L;
+			else if (name.equals("getAttribute"))
+				return attributes.get(args[0]);
+			else if (name.equals("setAttribute"))
+				attributes.put((String)args[0], args[1]);
+			else if (name.equals("setHeader") || name.equals("setDateHeader"))
+				responseHeaders.put((String)args[0], String.valueOf(args[1]));
+			else if (name.equals("setStatus"))
+				status = (Integer)args[0];
+			else if (name.equals("setContentType"))
+				contentType = (String)args[0];
+			else if (name.equals("getOutputStream")){
+				return new ServletOutputStream(){
+					@Override
+					public void write(int b) throws IOException{
+						output.write(b);
+					}
+				};
+			}else if (method.getReturnType() == boolean.class)
+				return false;
+			return null;
+		}
+	}
+
+}
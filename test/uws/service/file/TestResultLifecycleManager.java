@@ -0,0 +1,198 @@
+package uws.service.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uws.job.ExecutionPhase;
+import uws.job.JobList;
+import uws.job.Result;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.service.UWSService;
+import uws.service.UWSServiceOfTest;
+
+public class TestResultLifecycleManager {
+
+	private final static long HOUR = 3600000;
+
+	private final static String CONTENT;
+	static{
+		StringBuffer buf = new StringBuffer("<VOTABLE><RESOURCE><TABLE><DATA><TABLEDATA>\n");
+		for(int i = 0; i < 2000; i++)
+			buf.append("<TR><TD>").append(i).append("</TD><TD>row ").append(i).append("</TD></TR>\n");
+		CONTENT = buf.append("</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>").toString();
+	}
+
+	private File root;
+	private File archive;
+	private LocalUWSFileManager fileManager;
+	private UWSService uws;
+	private JobList jobList;
+
+	@Before
+	public void setUp() throws Exception{
+		root = UWSServiceOfTest.createTmpDirectory("uwsResults");
+		archive = new File(root, "archive");
+		fileManager = new LocalUWSFileManager(new File(root, "files"), false, false);
+		jobList = new JobList("jl");
+		uws = UWSServiceOfTest.createUWS(new UWSServiceOfTest.NoExecutionFactory(), fileManager, jobList);
+	}
+
+	@After
+	public void tearDown(){
+		uws.destroy();
+		UWSServiceOfTest.delete(root);
+	}
+
+	@Test
+	public void testCompressionAndArchive() throws Exception{
+		assertTrue(fileManager.setArchiveDirectory(archive));
+		UWSJob job = createJob();
+		Result votable = addResult(job, "votable", "application/x-votable+xml");
+		Result gzip = addResult(job, "gzip", "application/gzip");
+		job.setPhase(ExecutionPhase.COMPLETED, true);
+		File votableFile = fileManager.getResultFile(votable, job), gzipFile = fileManager.getResultFile(gzip, job);
+
+		ResultLifecycleManager manager = new ResultLifecycleManager(uws, fileManager);
+		manager.setCompressionDelay(HOUR);
+		manager.setArchiveDelay(24 * HOUR);
+
+		// Recently used results are not touched:
+		setIdleTime(votableFile, HOUR / 2);
+		setIdleTime(gzipFile, HOUR / 2);
+		manager.runOnce();
+		assertEquals(0, manager.getNbCompressed());
+		assertEquals(votableFile, fileManager.findResultFile(votable, job));
+
+		// Idle results are compressed, except if already compressed:
+		setIdleTime(votableFile, 2 * HOUR);
+		setIdleTime(gzipFile, 2 * HOUR);
+		manager.runOnce();
+		assertEquals(1, manager.getNbCompressed());
+		assertFalse(votableFile.exists());
+		File compressedFile = fileManager.findResultFile(votable, job);
+		assertEquals(votableFile.getPath() + LocalUWSFileManager.COMPRESSED_SUFFIX, compressedFile.getPath());
+		assertTrue(compressedFile.length() < CONTENT.length() / 4);
+		assertEquals(CONTENT.length(), manager.getNbSavedBytes() + compressedFile.length());
+		assertTrue(gzipFile.exists());
+
+		// ...but still read and measured as originally written:
+		assertEquals(CONTENT.length(), votable.getSize());
+		assertEquals(CONTENT.length(), fileManager.getResultSize(votable, job));
+		assertEquals(CONTENT, read(votable, job));
+
+		// Without known size, the size is read from the gzip file:
+		votable.setSize(-1);
+		assertEquals(CONTENT.length(), fileManager.getResultSize(votable, job));
+
+		// The idle time is kept => old results are archived (compressed, if possible):
+		setIdleTime(compressedFile, 25 * HOUR);
+		setIdleTime(gzipFile, 25 * HOUR);
+		manager.runOnce();
+		assertEquals(2, manager.getNbArchived());
+		assertFalse(compressedFile.exists());
+		assertFalse(gzipFile.exists());
+		assertTrue(fileManager.findResultFile(votable, job).getPath().startsWith(archive.getPath()));
+		assertTrue(fileManager.isCompressed(fileManager.findResultFile(votable, job)));
+		assertFalse(fileManager.isCompressed(fileManager.findResultFile(gzip, job)));
+		assertEquals(CONTENT, read(votable, job));
+		assertEquals(CONTENT, read(gzip, job));
+
+		// Deleting the results removes them from all tiers:
+		assertTrue(fileManager.deleteResult(votable, job));
+		assertTrue(fileManager.deleteResult(gzip, job));
+		assertNull(fileManager.findResultFile(votable, job));
+		assertNull(fileManager.getResultInput(gzip, job));
+	}
+
+	@Test
+	public void testUnfinishedJobsAndThrottling() throws Exception{
+		UWSJob job = createJob();
+		Result votable = addResult(job, "votable", "application/x-votable+xml");
+		File votableFile = fileManager.getResultFile(votable, job);
+		setIdleTime(votableFile, 2 * HOUR);
+
+		ResultLifecycleManager manager = new ResultLifecycleManager(uws, fileManager);
+		manager.setCompressionDelay(HOUR);
+		manager.setArchiveDelay(HOUR);
+
+		// Results of running jobs are not touched:
+		manager.runOnce();
+		assertEquals(0, manager.getNbCompressed());
+		assertTrue(votableFile.exists());
+
+		// No archive directory => results are only compressed, slowly if asked:
+		job.setPhase(ExecutionPhase.COMPLETED, true);
+		manager.setMaxBytesPerSecond(CONTENT.length() * 2);
+		long start = System.currentTimeMillis();
+		manager.runOnce();
+		assertTrue(System.currentTimeMillis() - start >= 400);
+		assertEquals(1, manager.getNbCompressed());
+		assertEquals(0, manager.getNbArchived());
+		assertEquals(CONTENT, read(votable, job));
+
+		// Writing the result again replaces the compressed version:
+		write(votable, job);
+		assertEquals(votableFile, fileManager.findResultFile(votable, job));
+		assertFalse(new File(votableFile.getPath() + LocalUWSFileManager.COMPRESSED_SUFFIX).exists());
+	}
+
+	private UWSJob createJob() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		jobList.addNewJob(job);
+		job.setPhase(ExecutionPhase.EXECUTING, true);
+		return job;
+	}
+
+	private Result addResult(final UWSJob job, final String id, final String mimeType) throws Exception{
+		Result result = new Result(job, id);
+		result.setMimeType(mimeType);
+		write(result, job);
+		job.addResult(result);
+		return result;
+	}
+
+	private void write(final Result result, final UWSJob job) throws IOException{
+		OutputStream output = fileManager.getResultOutput(result, job);
+		try{
+			output.write(CONTENT.getBytes("UTF-8"));
+		}finally{
+			output.close();
+		}
+	}
+
+	private String read(final Result result, final UWSJob job) throws IOException{
+		InputStream input = fileManager.getResultInput(result, job);
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int len;
+			while((len = input.read(buffer)) > 0)
+				bytes.write(buffer, 0, len);
+			return bytes.toString("UTF-8");
+		}finally{
+			input.close();
+		}
+	}
+
+	private static void setIdleTime(final File f, final long idleTime) throws IOException{
+		FileTime time = FileTime.fromMillis(System.currentTimeMillis() - idleTime);
+		Files.getFileAttributeView(f.toPath(), BasicFileAttributeView.class).setTimes(time, time, null);
+	}
+
+}
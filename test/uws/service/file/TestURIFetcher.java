@@ -0,0 +1,265 @@
+package uws.service.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestURIFetcher {
+
+	private final static File DIR = new File(System.getProperty("java.io.tmpdir"), "TestURIFetcher");
+
+	private HttpServer server;
+
+	private byte[] content;
+
+	private String etag = "\"v1\"";
+
+	private final AtomicInteger nbFailures = new AtomicInteger(0);
+
+	private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+	private URIFetcher fetcher;
+
+	@Before
+	public void setUp() throws Exception{
+		FileUtils.deleteQuietly(DIR);
+		DIR.mkdirs();
+		content = new byte[100000];
+		for(int i = 0; i < content.length; i++)
+			content[i] = (byte)(i % 251);
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler(){
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException{
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				requests.add(exchange.getRequestURI().getPath() + (range != null ? " " + range : "") + (ifNoneMatch != null ? " 304?" : ""));
+				exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+				if (!exchange.getRequestURI().getPath().equals("/noetag"))
+					exchange.getResponseHeaders().set("ETag", etag);
+				if (exchange.getRequestURI().getPath().equals("/missing")){
+					exchange.sendResponseHeaders(404, -1);
+				}else if (exchange.getRequestURI().getPath().equals("/flaky") && nbFailures.getAndDecrement() > 0){
+					exchange.sendResponseHeaders(503, -1);
+				}else if (ifNoneMatch != null && ifNoneMatch.equals(etag)){
+					exchange.sendResponseHeaders(304, -1);
+				}else if (exchange.getRequestURI().getPath().equals("/chunked")){
+					exchange.sendResponseHeaders(200, 0);
+					exchange.getResponseBody().write(content);
+				}else if (range != null){
+					String[] bounds = range.substring("bytes=".length()).split("-");
+					int first = Integer.parseInt(bounds[0]), last = Integer.parseInt(bounds[1]);
+					exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + content.length);
+					exchange.sendResponseHeaders(206, last - first + 1);
+					exchange.getResponseBody().write(content, first, last - first + 1);
+				}else{
+					exchange.sendResponseHeaders(200, content.length);
+					exchange.getResponseBody().write(content);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+
+		fetcher = new URIFetcher();
+		fetcher.setTmpDirectory(DIR);
+	}
+
+	@After
+	public void tearDown() throws Exception{
+		server.stop(0);
+		FileUtils.deleteQuietly(DIR);
+	}
+
+	@Test
+	public void testStreamedDownload() throws Exception{
+		assertArrayEquals(content, read(fetcher.open(uri("/table"))));
+		assertEquals(Collections.singletonList("/table"), requests);
+
+		// no retry for a client error:
+		try{
+			fetcher.open(uri("/missing"));
+			fail("A 404 error was expected!");
+		}catch(IOException ioe){
+			assertTrue(ioe.getMessage().startsWith("Unexpected HTTP status 404"));
+		}
+		assertEquals(2, requests.size());
+
+		// ...but retries for a server error:
+		nbFailures.set(2);
+		assertArrayEquals(content, read(fetcher.open(uri("/flaky"))));
+		assertEquals(5, requests.size());
+		nbFailures.set(3);
+		try{
+			fetcher.open(uri("/flaky"));
+			fail("A 503 error was expected after 2 retries!");
+		}catch(IOException ioe){
+			assertTrue(ioe.getMessage().startsWith("Unexpected HTTP status 503"));
+		}
+	}
+
+	@Test
+	public void testCache() throws Exception{
+		File cacheDir = new File(DIR, "cache");
+		assertTrue(fetcher.setCache(cacheDir, 250000));
+
+		// first download => cached:
+		assertArrayEquals(content, read(fetcher.open(uri("/a"))));
+		assertEquals(2, cacheDir.list().length);
+
+		// unchanged => served from the cache:
+		assertArrayEquals(content, read(fetcher.open(uri("/a"))));
+		assertEquals("/a 304?", requests.get(1));
+
+		// changed => downloaded again:
+		etag = "\"v2\"";
+		content[0] = 42;
+		assertArrayEquals(content, read(fetcher.open(uri("/a"))));
+		assertEquals(2, cacheDir.list().length);
+
+		// no validator => not cached:
+		assertArrayEquals(content, read(fetcher.open(uri("/noetag"))));
+		assertEquals(2, cacheDir.list().length);
+
+		// the least recently used entry is evicted when full:
+		new File(cacheDir, URIFetcher.hash(uri("/a").toString()) + ".data").setLastModified(System.currentTimeMillis() - 60000);
+		read(fetcher.open(uri("/b")));
+		read(fetcher.open(uri("/c")));
+		assertEquals(4, cacheDir.list().length);
+		assertFalse(new File(cacheDir, URIFetcher.hash(uri("/a").toString()) + ".data").exists());
+		assertTrue(new File(cacheDir, URIFetcher.hash(uri("/c").toString()) + ".data").exists());
+	}
+
+	@Test
+	public void testMaxDownloadSize() throws Exception{
+		File cacheDir = new File(DIR, "cache");
+		assertTrue(fetcher.setCache(cacheDir, 250000));
+		fetcher.setParallelism(4);
+		fetcher.setParallelThreshold(1000);
+
+		// unknown size => streamed, neither cached nor downloaded by ranges:
+		assertArrayEquals(content, read(fetcher.open(uri("/chunked"))));
+		assertEquals(0, cacheDir.list().length);
+		assertEquals(Collections.singletonList("/chunked"), requests);
+
+		// size above the limit => streamed too:
+		fetcher.setMaxDownloadSize(content.length - 1);
+		assertArrayEquals(content, read(fetcher.open(uri("/big"))));
+		assertEquals(0, cacheDir.list().length);
+		assertEquals(2, requests.size());
+
+		// size within the limit => downloaded by ranges and cached:
+		fetcher.setMaxDownloadSize(content.length);
+		assertArrayEquals(content, read(fetcher.open(uri("/big"))));
+		assertEquals(2, cacheDir.list().length);
+		assertEquals(7, requests.size());
+	}
+
+	@Test
+	public void testParallelDownload() throws Exception{
+		fetcher.setParallelism(4);
+		fetcher.setParallelThreshold(1000);
+		assertArrayEquals(content, read(fetcher.open(uri("/big"))));
+		assertEquals(5, requests.size());
+		assertTrue(requests.contains("/big bytes=0-24999"));
+		assertTrue(requests.contains("/big bytes=75000-99999"));
+		// the temporary download is deleted once read:
+		assertEquals(0, DIR.list().length);
+
+		// below the threshold, no parallel download:
+		requests.clear();
+		fetcher.setParallelThreshold(1000000);
+		assertArrayEquals(content, read(fetcher.open(uri("/big"))));
+		assertEquals(1, requests.size());
+	}
+
+	@Test
+	public void testFileAllowList() throws Exception{
+		File allowed = new File(DIR, "allowed"), other = new File(DIR, "other");
+		allowed.mkdirs();
+		other.mkdirs();
+		File file = new File(allowed, "t.csv"), forbidden = new File(other, "t.csv");
+		write(file, "a,b\n1,2\n");
+		write(forbidden, "secret");
+
+		// by default, no file is readable:
+		try{
+			fetcher.open(file.toURI());
+			fail("No file URI should be allowed by default!");
+		}catch(UnsupportedURIProtocolException upe){}
+
+		assertTrue(fetcher.addAllowedDirectory(allowed));
+		assertFalse(fetcher.addAllowedDirectory(file));
+		assertEquals("a,b\n1,2\n", new String(read(fetcher.open(file.toURI())), "UTF-8"));
+		try{
+			fetcher.open(forbidden.toURI());
+			fail("A file outside of the allowed directories should be rejected!");
+		}catch(IOException ioe){
+			assertTrue(ioe.getMessage().startsWith("Forbidden access"));
+		}
+		try{
+			fetcher.open(new URI("file://" + allowed.getAbsolutePath() + "/../other/t.csv"));
+			fail("A path escaping the allowed directories should be rejected!");
+		}catch(IOException ioe){
+			assertTrue(ioe.getMessage().startsWith("Forbidden access"));
+		}
+
+		// other schemes:
+		try{
+			fetcher.open(new URI("ivo://foo/bar"));
+			fail("Unsupported scheme!");
+		}catch(UnsupportedURIProtocolException upe){}
+	}
+
+	private URI uri(final String path) throws Exception{
+		return new URI("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static byte[] read(final InputStream input) throws IOException{
+		try{
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int nbRead;
+			while((nbRead = input.read(buffer)) > 0)
+				output.write(buffer, 0, nbRead);
+			return output.toByteArray();
+		}finally{
+			input.close();
+		}
+	}
+
+	private static void write(final File file, final String str) throws IOException{
+		OutputStream output = new FileOutputStream(file);
+		try{
+			output.write(str.getBytes("UTF-8"));
+		}finally{
+			output.close();
+		}
+	}
+
+}
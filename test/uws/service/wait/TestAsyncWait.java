@@ -0,0 +1,166 @@
+package uws.service.wait;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import uws.job.ExecutionPhase;
+import uws.job.UWSJob;
+import uws.job.parameters.UWSParameters;
+import uws.service.actions.JobSummary;
+
+public class TestAsyncWait {
+
+	@Test
+	public void testBlockAsyncPhaseChange() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		TestRequest req = new TestRequest(true, "WAIT", "-1");
+
+		// The request must be suspended:
+		assertTrue(JobSummary.blockAsync(null, req.proxy, null, job, null));
+		assertTrue(req.asyncStarted);
+		assertEquals(0, req.nbDispatch);
+		assertEquals(1, job.getNbObservers());
+
+		// A phase change must end the wait:
+		job.setPhase(ExecutionPhase.QUEUED);
+		assertEquals(1, req.nbDispatch);
+
+		// When dispatched again, no blocking must be performed:
+		assertTrue(AsyncWait.isOver(req.proxy));
+		assertFalse(JobSummary.blockAsync(null, req.proxy, null, job, null));
+
+		// At the end of the request, the observer must be removed:
+		req.complete();
+		assertEquals(0, job.getNbObservers());
+	}
+
+	@Test
+	public void testBlockAsyncTimeout() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		TestRequest req = new TestRequest(true, "WAIT", "1");
+
+		assertTrue(JobSummary.blockAsync(null, req.proxy, null, job, null));
+		assertEquals(0, req.nbDispatch);
+
+		// After the waiting time, the wait must end:
+		Thread.sleep(1500);
+		assertEquals(1, req.nbDispatch);
+		req.complete();
+		assertEquals(0, job.getNbObservers());
+	}
+
+	@Test
+	public void testBlockAsyncNotSupported() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		TestRequest req = new TestRequest(false, "WAIT", "1");
+
+		// No asynchronous processing => the thread must be blocked:
+		long start = System.currentTimeMillis();
+		assertFalse(JobSummary.blockAsync(null, req.proxy, null, job, null));
+		assertTrue(System.currentTimeMillis() - start >= 900);
+		assertFalse(req.asyncStarted);
+	}
+
+	@Test
+	public void testBlockAsyncWithPolicy() throws Exception{
+		UWSJob job = new UWSJob(new UWSParameters());
+		UserLimitedBlockingPolicy policy = new UserLimitedBlockingPolicy(10, 1, true);
+
+		// Only one blocked request is allowed ; the oldest one is unblocked:
+		TestRequest req1 = new TestRequest(true, "WAIT", "-1");
+		TestRequest req2 = new TestRequest(true, "WAIT", "-1");
+		assertTrue(JobSummary.blockAsync(policy, req1.proxy, null, job, null));
+		assertEquals(0, req1.nbDispatch);
+		assertTrue(JobSummary.blockAsync(policy, req2.proxy, null, job, null));
+		assertEquals(1, req1.nbDispatch);
+		assertEquals(0, req2.nbDispatch);
+		req1.complete();
+
+		// Only the second request is still observing the job:
+		assertEquals(1, job.getNbObservers());
+		job.setPhase(ExecutionPhase.QUEUED);
+		assertEquals(1, req2.nbDispatch);
+		req2.complete();
+		assertEquals(0, job.getNbObservers());
+	}
+
+	/**
+	 * Minimal HTTP request supporting (or not) the asynchronous processing.
+	 */
+	private static class TestRequest implements InvocationHandler {
+
+		public final HttpServletRequest proxy;
+		private final boolean asyncSupported;
+		private final Map<String,String[]> params = new HashMap<String,String[]>();
+		private final Map<String,Object> attributes = new HashMap<String,Object>();
+		private final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+
+		public boolean asyncStarted = false;
+		public int nbDispatch = 0;
+
+		public TestRequest(final boolean asyncSupported, final String paramName, final String paramValue){
+			this.asyncSupported = asyncSupported;
+			params.put(paramName, new String[]{paramValue});
+			proxy = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, this);
+		}
+
+		public void complete() throws Exception{
+			for(AsyncListener l : listeners)
+				l.onComplete(new AsyncEvent(null));
+		}
+
+		@Override
+		public Object invoke(final Object obj, final Method method, final Object[] args) throws Throwable{
+			String name = method.getName();
+			if (name.equals("isAsyncSupported"))
+				return asyncSupported;
+			else if (name.equals("isAsyncStarted"))
+				return asyncStarted;
+			else if (name.equals("getParameterNames"))
+				return Collections.enumeration(params.keySet());
+			else if (name.equals("getParameterValues"))
+				return params.get(args[0]);
+			else if (name.equals("getAttribute"))
+				return attributes.get(args[0]);
+			else if (name.equals("setAttribute")){
+				attributes.put((String)args[0], args[1]);
+				return null;
+			}else if (name.equals("getRemoteAddr"))
+				return "127.0.0.1";
+			else if (name.equals("startAsync")){
+				asyncStarted = true;
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AsyncContext.class}, new InvocationHandler(){
+					@Override
+					public Object invoke(final Object obj, final Method method, final Object[] args) throws Throwable{
+						if (method.getName().equals("dispatch"))
+							nbDispatch++;
+						else if (method.getName().equals("addListener"))
+							listeners.add((AsyncListener)args[0]);
+						return null;
+					}
+				});
+			}else if (method.getReturnType() == boolean.class)
+				return false;
+			else
+				return null;
+		}
+	}
+
+}